@@ -0,0 +1,69 @@
+package org.ohmage.benchmark;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.exception.DomainException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures building a Campaign from its XML, which happens whenever a
+ * campaign is read from the database and is not cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CampaignBenchmark {
+	@Param({ "1", "20" })
+	public int numSurveys;
+
+	@Param({ "10", "60" })
+	public int numPrompts;
+
+	private String xml;
+	private Date creationTimestamp;
+
+	/**
+	 * Generates the campaign's XML.
+	 */
+	@Setup
+	public void setUp() {
+		xml = CampaignFixtures.createXml(numSurveys, numPrompts);
+		creationTimestamp = new Date();
+	}
+
+	/**
+	 * Parses the XML and builds the campaign.
+	 * 
+	 * @return The campaign.
+	 * 
+	 * @throws DomainException The XML was not a valid campaign.
+	 */
+	@Benchmark
+	public Campaign fromXml() throws DomainException {
+		return
+			new Campaign(
+				CampaignFixtures.CAMPAIGN_ID,
+				"Benchmark",
+				null,
+				Campaign.RunningState.RUNNING,
+				Campaign.PrivacyState.SHARED,
+				creationTimestamp,
+				xml,
+				false);
+	}
+}
@@ -0,0 +1,514 @@
+package org.ohmage.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.SurveyResponse;
+import org.ohmage.exception.DomainException;
+
+/**
+ * Generates campaigns and survey responses for the benchmarks. Every survey
+ * cycles through number, single choice, multiple choice, and text prompts,
+ * optionally followed by a photo prompt, and the responses are random but
+ * repeatable for a given seed.
+ */
+public final class CampaignFixtures {
+	/**
+	 * The prompt types, in the order in which they are added to a survey.
+	 */
+	private static final String[] PROMPT_TYPES =
+		{ "number", "single_choice", "multi_choice", "text" };
+
+	/**
+	 * The number of choices in every choice prompt.
+	 */
+	private static final int NUM_CHOICES = 5;
+
+	/**
+	 * The words from which text responses are built.
+	 */
+	private static final String[] WORDS = {
+		"slept", "well", "tired", "after", "work", "walked", "home", "ate",
+		"lunch", "with", "friends", "felt", "stressed", "about", "exams",
+		"went", "running", "in", "the", "park", "morning", "evening" };
+
+	public static final String CAMPAIGN_ID = "urn:campaign:benchmark";
+	public static final String USERNAME = "benchmark.user";
+	public static final String CLIENT = "benchmark";
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private CampaignFixtures() {}
+
+	/**
+	 * Creates a campaign's XML.
+	 * 
+	 * @param numSurveys The number of surveys.
+	 * 
+	 * @param numPrompts The number of prompts in each survey.
+	 * 
+	 * @return The campaign's XML.
+	 */
+	public static String createXml(final int numSurveys, final int numPrompts) {
+		return createXml(numSurveys, numPrompts, false);
+	}
+
+	/**
+	 * Creates a campaign's XML.
+	 * 
+	 * @param numSurveys The number of surveys.
+	 * 
+	 * @param numPrompts The number of prompts in each survey, not counting
+	 * 					 the photo prompt.
+	 * 
+	 * @param withPhotos Whether each survey ends with a photo prompt.
+	 * 
+	 * @return The campaign's XML.
+	 */
+	public static String createXml(
+			final int numSurveys,
+			final int numPrompts,
+			final boolean withPhotos) {
+
+		StringBuilder builder = new StringBuilder();
+		builder
+			.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+			.append("<campaign>")
+			.append("<campaignUrn>").append(CAMPAIGN_ID).append("</campaignUrn>")
+			.append("<campaignName>Benchmark</campaignName>")
+			.append("<surveys>");
+
+		for(int s = 0; s < numSurveys; s++) {
+			builder
+				.append("<survey>")
+				.append("<id>").append(getSurveyId(s)).append("</id>")
+				.append("<title>Survey ").append(s).append("</title>")
+				.append("<description>A generated survey.</description>")
+				.append("<submitText>Thank you.</submitText>")
+				.append("<anytime>true</anytime>")
+				.append("<contentList>");
+
+			for(int p = 0; p < numPrompts; p++) {
+				String type = PROMPT_TYPES[p % PROMPT_TYPES.length];
+
+				builder
+					.append("<prompt>")
+					.append("<id>").append(getPromptId(s, p)).append("</id>")
+					.append("<displayLabel>Prompt ").append(p).append("</displayLabel>")
+					.append("<promptText>How about ").append(p).append("?</promptText>")
+					.append("<promptType>").append(type).append("</promptType>")
+					.append("<skippable>true</skippable>")
+					.append("<skipLabel>Skip</skipLabel>")
+					.append("<properties>");
+
+				if("number".equals(type)) {
+					appendProperty(builder, "min", "0");
+					appendProperty(builder, "max", "100");
+				}
+				else if("text".equals(type)) {
+					appendProperty(builder, "min", "1");
+					appendProperty(builder, "max", "500");
+				}
+				else {
+					for(int c = 0; c < NUM_CHOICES; c++) {
+						builder
+							.append("<property>")
+							.append("<key>").append(c).append("</key>")
+							.append("<label>Choice ").append(c).append("</label>")
+							.append("</property>");
+					}
+				}
+
+				builder
+					.append("</properties>")
+					.append("</prompt>");
+			}
+
+			if(withPhotos) {
+				builder
+					.append("<prompt>")
+					.append("<id>").append(getPhotoPromptId(s)).append("</id>")
+					.append("<displayLabel>Photo</displayLabel>")
+					.append("<promptText>Take a photo.</promptText>")
+					.append("<promptType>photo</promptType>")
+					.append("<skippable>true</skippable>")
+					.append("<skipLabel>Skip</skipLabel>")
+					.append("</prompt>");
+			}
+
+			builder
+				.append("</contentList>")
+				.append("</survey>");
+		}
+
+		builder
+			.append("</surveys>")
+			.append("</campaign>");
+
+		return builder.toString();
+	}
+
+	/**
+	 * Creates a campaign.
+	 * 
+	 * @param numSurveys The number of surveys.
+	 * 
+	 * @param numPrompts The number of prompts in each survey.
+	 * 
+	 * @return The campaign.
+	 * 
+	 * @throws DomainException The generated XML was not a valid campaign.
+	 */
+	public static Campaign createCampaign(
+			final int numSurveys,
+			final int numPrompts)
+			throws DomainException {
+
+		return createCampaign(numSurveys, numPrompts, false);
+	}
+
+	/**
+	 * Creates a campaign.
+	 * 
+	 * @param numSurveys The number of surveys.
+	 * 
+	 * @param numPrompts The number of prompts in each survey, not counting
+	 * 					 the photo prompt.
+	 * 
+	 * @param withPhotos Whether each survey ends with a photo prompt.
+	 * 
+	 * @return The campaign.
+	 * 
+	 * @throws DomainException The generated XML was not a valid campaign.
+	 */
+	public static Campaign createCampaign(
+			final int numSurveys,
+			final int numPrompts,
+			final boolean withPhotos)
+			throws DomainException {
+
+		return
+			new Campaign(
+				CAMPAIGN_ID,
+				"Benchmark",
+				null,
+				Campaign.RunningState.RUNNING,
+				Campaign.PrivacyState.SHARED,
+				new Date(),
+				createXml(numSurveys, numPrompts, withPhotos),
+				false);
+	}
+
+	/**
+	 * Creates survey responses as a client would upload them. The responses
+	 * are spread across the campaign's surveys, and every prompt is
+	 * answered.
+	 * 
+	 * @param numSurveys The number of surveys in the campaign.
+	 * 
+	 * @param numPrompts The number of prompts in each survey.
+	 * 
+	 * @param numResponses The number of survey responses.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The survey responses as they would be uploaded.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 */
+	public static JSONArray createUpload(
+			final int numSurveys,
+			final int numPrompts,
+			final int numResponses,
+			final long seed)
+			throws JSONException {
+
+		return createUpload(numSurveys, numPrompts, numResponses, seed, false);
+	}
+
+	/**
+	 * Creates survey responses as a client would upload them. The responses
+	 * are spread across the campaign's surveys, and every prompt is
+	 * answered. Each photo prompt response refers to the image whose ID is
+	 * {@link #getImageId(long, int)}, but the images themselves are not part
+	 * of the responses.
+	 * 
+	 * @param numSurveys The number of surveys in the campaign.
+	 * 
+	 * @param numPrompts The number of prompts in each survey, not counting
+	 * 					 the photo prompt.
+	 * 
+	 * @param numResponses The number of survey responses.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @param withPhotos Whether each survey ends with a photo prompt.
+	 * 
+	 * @return The survey responses as they would be uploaded.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 */
+	public static JSONArray createUpload(
+			final int numSurveys,
+			final int numPrompts,
+			final int numResponses,
+			final long seed,
+			final boolean withPhotos)
+			throws JSONException {
+
+		Random random = new Random(seed);
+		long time = 1380000000000L;
+
+		JSONArray result = new JSONArray();
+		for(int r = 0; r < numResponses; r++) {
+			int s = r % numSurveys;
+			time += random.nextInt(3600000);
+
+			JSONObject response = new JSONObject();
+			response.put("survey_key", new UUID(seed, r).toString());
+			response.put("time", time);
+			response.put("timezone", "America/Los_Angeles");
+			response.put("survey_id", getSurveyId(s));
+			response.put("privacy_state", "shared");
+
+			JSONObject launchContext = new JSONObject();
+			launchContext.put("launch_time", time - 60000);
+			launchContext.put("launch_timezone", "America/Los_Angeles");
+			launchContext.put("active_triggers", new JSONArray());
+			response.put("survey_launch_context", launchContext);
+
+			response.put("location_status", "valid");
+			response.put("location", createLocation(random, time));
+
+			JSONArray responses = new JSONArray();
+			for(int p = 0; p < numPrompts; p++) {
+				JSONObject promptResponse = new JSONObject();
+				promptResponse.put("prompt_id", getPromptId(s, p));
+				promptResponse.put(
+					"value",
+					createValue(PROMPT_TYPES[p % PROMPT_TYPES.length], random));
+				responses.put(promptResponse);
+			}
+			if(withPhotos) {
+				JSONObject promptResponse = new JSONObject();
+				promptResponse.put("prompt_id", getPhotoPromptId(s));
+				promptResponse.put("value", getImageId(seed, r).toString());
+				responses.put(promptResponse);
+			}
+			response.put("responses", responses);
+
+			result.put(response);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates survey responses as they would be after they were uploaded.
+	 * 
+	 * @param campaign The campaign, which must have been created with the
+	 * 				   same number of surveys and prompts.
+	 * 
+	 * @param numSurveys The number of surveys in the campaign.
+	 * 
+	 * @param numPrompts The number of prompts in each survey.
+	 * 
+	 * @param numResponses The number of survey responses.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The survey responses.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 * 
+	 * @throws DomainException A generated response was not valid.
+	 */
+	public static List<SurveyResponse> createSurveyResponses(
+			final Campaign campaign,
+			final int numSurveys,
+			final int numPrompts,
+			final int numResponses,
+			final long seed)
+			throws JSONException, DomainException {
+
+		return
+			createSurveyResponses(
+				campaign,
+				createUpload(numSurveys, numPrompts, numResponses, seed));
+	}
+
+	/**
+	 * Creates survey responses from their upload.
+	 * 
+	 * @param campaign The campaign from which the upload was created.
+	 * 
+	 * @param upload The survey responses as they would be uploaded.
+	 * 
+	 * @return The survey responses.
+	 * 
+	 * @throws JSONException The upload was not valid JSON.
+	 * 
+	 * @throws DomainException A response was not valid.
+	 */
+	public static List<SurveyResponse> createSurveyResponses(
+			final Campaign campaign,
+			final JSONArray upload)
+			throws JSONException, DomainException {
+
+		List<SurveyResponse> result =
+			new ArrayList<SurveyResponse>(upload.length());
+		for(int i = 0; i < upload.length(); i++) {
+			result.add(
+				new SurveyResponse(
+					USERNAME,
+					CAMPAIGN_ID,
+					CLIENT,
+					campaign,
+					upload.getJSONObject(i),
+					false));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a generated survey's ID.
+	 * 
+	 * @param survey The survey's index.
+	 * 
+	 * @return The survey's ID.
+	 */
+	public static String getSurveyId(final int survey) {
+		return "survey" + survey;
+	}
+
+	/**
+	 * Returns a generated prompt's ID.
+	 * 
+	 * @param survey The survey's index.
+	 * 
+	 * @param prompt The prompt's index within the survey.
+	 * 
+	 * @return The prompt's ID.
+	 */
+	public static String getPromptId(final int survey, final int prompt) {
+		return "s" + survey + "p" + prompt;
+	}
+
+	/**
+	 * Returns a generated survey's photo prompt's ID.
+	 * 
+	 * @param survey The survey's index.
+	 * 
+	 * @return The photo prompt's ID.
+	 */
+	public static String getPhotoPromptId(final int survey) {
+		return "s" + survey + "photo";
+	}
+
+	/**
+	 * Returns the ID of the image to which a generated response's photo
+	 * prompt response refers.
+	 * 
+	 * @param seed The seed with which the responses were generated.
+	 * 
+	 * @param response The response's index.
+	 * 
+	 * @return The image's ID.
+	 */
+	public static UUID getImageId(final long seed, final int response) {
+		return new UUID(~seed, response);
+	}
+
+	/**
+	 * Creates a location near Los Angeles as a client would upload it.
+	 * 
+	 * @param random The source of the random values.
+	 * 
+	 * @param time The time at which the location was taken.
+	 * 
+	 * @return The location.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 */
+	static JSONObject createLocation(
+			final Random random,
+			final long time)
+			throws JSONException {
+
+		JSONObject result = new JSONObject();
+		result.put("latitude", 34.0 + random.nextDouble());
+		result.put("longitude", -118.0 - random.nextDouble());
+		result.put("accuracy", 5 + random.nextInt(50));
+		result.put("provider", "gps");
+		result.put("time", time);
+		result.put("timezone", "America/Los_Angeles");
+		return result;
+	}
+
+	/**
+	 * Creates a random prompt response value.
+	 * 
+	 * @param type The prompt's type.
+	 * 
+	 * @param random The source of the random values.
+	 * 
+	 * @return The value.
+	 */
+	private static Object createValue(final String type, final Random random) {
+		if("number".equals(type)) {
+			return random.nextInt(101);
+		}
+		else if("single_choice".equals(type)) {
+			return random.nextInt(NUM_CHOICES);
+		}
+		else if("multi_choice".equals(type)) {
+			JSONArray result = new JSONArray();
+			for(int c = 0; c < NUM_CHOICES; c++) {
+				if(random.nextBoolean()) {
+					result.put(c);
+				}
+			}
+			return result;
+		}
+		else {
+			StringBuilder result = new StringBuilder();
+			int numWords = 3 + random.nextInt(20);
+			for(int w = 0; w < numWords; w++) {
+				if(w > 0) {
+					result.append(' ');
+				}
+				result.append(WORDS[random.nextInt(WORDS.length)]);
+			}
+			return result.toString();
+		}
+	}
+
+	/**
+	 * Appends a property to a prompt's properties.
+	 * 
+	 * @param builder The builder to which the property is appended.
+	 * 
+	 * @param key The property's key.
+	 * 
+	 * @param label The property's label.
+	 */
+	private static void appendProperty(
+			final StringBuilder builder,
+			final String key,
+			final String label) {
+
+		builder
+			.append("<property>")
+			.append("<key>").append(key).append("</key>")
+			.append("<label>").append(label).append("</label>")
+			.append("</property>");
+	}
+}
@@ -0,0 +1,39 @@
+package org.ohmage.benchmark;
+
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that discards what is written to it and only counts the
+ * bytes, so that a benchmark measures how a response is generated rather
+ * than where it is written.
+ */
+public class DiscardingOutputStream extends OutputStream {
+	private long count = 0;
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(final int b) {
+		count++;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(final byte[] b, final int off, final int len) {
+		count += len;
+	}
+
+	/**
+	 * Returns the number of bytes that have been written.
+	 * 
+	 * @return The number of bytes that have been written.
+	 */
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,114 @@
+package org.ohmage.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.ohmage.domain.Image;
+import org.ohmage.exception.DomainException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures scaling an uploaded photo down to the small and icon sizes, as
+ * image/read does the first time either is requested.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ImageBenchmark {
+	@Param({ "1280x960", "3264x2448" })
+	public String dimensions;
+
+	private byte[] jpeg;
+
+	/**
+	 * Generates the photo.
+	 * 
+	 * @throws IOException The photo could not be encoded.
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		String[] parts = dimensions.split("x");
+		jpeg =
+			ImageFixtures.createJpeg(
+				Integer.parseInt(parts[0]),
+				Integer.parseInt(parts[1]),
+				42);
+	}
+
+	/**
+	 * Scales the photo to the small size.
+	 * 
+	 * @return The number of bytes in the small image.
+	 * 
+	 * @throws DomainException The photo could not be scaled.
+	 * 
+	 * @throws IOException The small image could not be read.
+	 */
+	@Benchmark
+	public long small() throws DomainException, IOException {
+		return transform(Image.SMALL);
+	}
+
+	/**
+	 * Scales the photo to the icon size.
+	 * 
+	 * @return The number of bytes in the icon.
+	 * 
+	 * @throws DomainException The photo could not be scaled.
+	 * 
+	 * @throws IOException The icon could not be read.
+	 */
+	@Benchmark
+	public long icon() throws DomainException, IOException {
+		return transform(Image.ICON);
+	}
+
+	/**
+	 * Scales a new copy of the photo, so that no scaled image is reused.
+	 * 
+	 * @param size The size to which the photo is scaled.
+	 * 
+	 * @return The number of bytes in the scaled image.
+	 * 
+	 * @throws DomainException The photo could not be scaled.
+	 * 
+	 * @throws IOException The scaled image could not be read.
+	 */
+	private long transform(
+			final Image.Size size)
+			throws DomainException, IOException {
+
+		Image image =
+			new Image(UUID.randomUUID(), "image/jpeg", "photo.jpg", jpeg);
+
+		long result = 0;
+		InputStream scaled = image.getInputStream(size);
+		try {
+			byte[] buffer = new byte[4096];
+			int read;
+			while((read = scaled.read(buffer)) != -1) {
+				result += read;
+			}
+		}
+		finally {
+			scaled.close();
+			image.closeImageStreams();
+		}
+		return result;
+	}
+}
@@ -0,0 +1,78 @@
+package org.ohmage.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Generates photos for the benchmarks. The photos have the dimensions of a
+ * phone camera's and enough noise that they compress like a real photo.
+ */
+public final class ImageFixtures {
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private ImageFixtures() {}
+
+	/**
+	 * Creates a JPEG photo.
+	 * 
+	 * @param width The photo's width.
+	 * 
+	 * @param height The photo's height.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The JPEG-encoded photo.
+	 * 
+	 * @throws IOException The photo could not be encoded.
+	 */
+	public static byte[] createJpeg(
+			final int width,
+			final int height,
+			final long seed)
+			throws IOException {
+
+		Random random = new Random(seed);
+
+		BufferedImage image =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setPaint(
+				new GradientPaint(
+					0, 0, new Color(random.nextInt(0xFFFFFF)),
+					width, height, new Color(random.nextInt(0xFFFFFF))));
+			graphics.fillRect(0, 0, width, height);
+
+			for(int i = 0; i < 200; i++) {
+				graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+				graphics.fillOval(
+					random.nextInt(width),
+					random.nextInt(height),
+					random.nextInt(width / 4),
+					random.nextInt(height / 4));
+			}
+		}
+		finally {
+			graphics.dispose();
+		}
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				int noise = random.nextInt(16);
+				image.setRGB(x, y, image.getRGB(x, y) ^ (noise * 0x010101));
+			}
+		}
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpg", result);
+		return result.toByteArray();
+	}
+}
@@ -0,0 +1,145 @@
+package org.ohmage.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.domain.MobilityPoint;
+import org.ohmage.exception.DomainException;
+
+/**
+ * Generates Mobility points for the benchmarks. The points are extended
+ * points, with the accelerometer samples and WiFi scan of a phone that
+ * uploads once a minute, and are random but repeatable for a given seed.
+ */
+public final class MobilityFixtures {
+	/**
+	 * The number of accelerometer samples in each point.
+	 */
+	public static final int NUM_ACCEL_SAMPLES = 40;
+
+	/**
+	 * The number of access points in each WiFi scan.
+	 */
+	public static final int NUM_ACCESS_POINTS = 15;
+
+	/**
+	 * The number of distinct access points that are seen, which is small
+	 * because a phone mostly sees the same networks.
+	 */
+	private static final int NUM_SSIDS = 60;
+
+	private static final String[] MODES =
+		{ "still", "walk", "run", "bike", "drive" };
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private MobilityFixtures() {}
+
+	/**
+	 * Creates Mobility points as a client would upload them.
+	 * 
+	 * @param numPoints The number of points.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The points as they would be uploaded.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 */
+	public static JSONArray createUpload(
+			final int numPoints,
+			final long seed)
+			throws JSONException {
+
+		Random random = new Random(seed);
+		long time = 1380000000000L;
+
+		JSONArray result = new JSONArray();
+		for(int i = 0; i < numPoints; i++) {
+			time += 60000;
+			String mode = MODES[random.nextInt(MODES.length)];
+
+			JSONObject point = new JSONObject();
+			point.put("id", new UUID(seed, i).toString());
+			point.put("time", time);
+			point.put("timezone", "America/Los_Angeles");
+			point.put("location_status", "valid");
+			point.put("location", CampaignFixtures.createLocation(random, time));
+			point.put("subtype", "sensor_data");
+
+			JSONObject data = new JSONObject();
+			data.put("mode", mode);
+			data.put("speed", random.nextDouble() * 20);
+
+			JSONArray accelData = new JSONArray();
+			for(int s = 0; s < NUM_ACCEL_SAMPLES; s++) {
+				JSONObject sample = new JSONObject();
+				sample.put("x", random.nextGaussian());
+				sample.put("y", random.nextGaussian());
+				sample.put("z", 9.8 + random.nextGaussian());
+				accelData.put(sample);
+			}
+			data.put("accel_data", accelData);
+
+			JSONObject wifiData = new JSONObject();
+			wifiData.put("time", time);
+			wifiData.put("timezone", "America/Los_Angeles");
+			JSONArray scan = new JSONArray();
+			for(int a = 0; a < NUM_ACCESS_POINTS; a++) {
+				JSONObject accessPoint = new JSONObject();
+				accessPoint.put(
+					"ssid",
+					String.format(
+						"00:1a:2b:3c:%02x:%02x",
+						a,
+						random.nextInt(NUM_SSIDS)));
+				accessPoint.put("strength", -30 - random.nextInt(60));
+				scan.put(accessPoint);
+			}
+			wifiData.put("scan", scan);
+			data.put("wifi_data", wifiData);
+
+			point.put("data", data);
+
+			result.put(point);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Creates Mobility points as they would be after they were uploaded.
+	 * 
+	 * @param numPoints The number of points.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The points.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 * 
+	 * @throws DomainException A generated point was not valid.
+	 */
+	public static List<MobilityPoint> createPoints(
+			final int numPoints,
+			final long seed)
+			throws JSONException, DomainException {
+
+		JSONArray upload = createUpload(numPoints, seed);
+
+		List<MobilityPoint> result = new ArrayList<MobilityPoint>(numPoints);
+		for(int i = 0; i < upload.length(); i++) {
+			result.add(
+				new MobilityPoint(
+					upload.getJSONObject(i),
+					MobilityPoint.PrivacyState.PRIVATE));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,100 @@
+package org.ohmage.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.domain.MobilityPoint;
+import org.ohmage.exception.DomainException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building MobilityPoints from an upload and writing them back out
+ * as JSON, as mobility/upload and mobility/read do.
+ * 
+ * @see MobilityPointFootprint
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class MobilityPointBenchmark {
+	private static final int NUM_POINTS = 1000;
+
+	@Param({ "false", "true" })
+	public boolean abbreviated;
+
+	private JSONArray upload;
+	private List<MobilityPoint> points;
+
+	/**
+	 * Generates the upload and the points.
+	 * 
+	 * @throws JSONException The upload could not be built.
+	 * 
+	 * @throws DomainException A point was not valid.
+	 */
+	@Setup
+	public void setUp() throws JSONException, DomainException {
+		upload = MobilityFixtures.createUpload(NUM_POINTS, 42);
+		points = MobilityFixtures.createPoints(NUM_POINTS, 42);
+	}
+
+	/**
+	 * Builds every point in the upload.
+	 * 
+	 * @param blackhole Consumes the points.
+	 * 
+	 * @throws JSONException A point was not an object.
+	 * 
+	 * @throws DomainException A point was not valid.
+	 */
+	@Benchmark
+	public void fromUpload(
+			final Blackhole blackhole)
+			throws JSONException, DomainException {
+
+		for(int i = 0; i < upload.length(); i++) {
+			blackhole.consume(
+				new MobilityPoint(
+					upload.getJSONObject(i),
+					MobilityPoint.PrivacyState.PRIVATE));
+		}
+	}
+
+	/**
+	 * Writes every point as JSON with all of its columns.
+	 * 
+	 * @param blackhole Consumes the JSON.
+	 * 
+	 * @throws JSONException The JSON could not be built.
+	 * 
+	 * @throws DomainException A point could not be written.
+	 */
+	@Benchmark
+	public void toJson(
+			final Blackhole blackhole)
+			throws JSONException, DomainException {
+
+		for(MobilityPoint point : points) {
+			blackhole.consume(
+				point.toJson(
+					abbreviated,
+					MobilityPoint.MobilityColumnKey.ALL_COLUMNS));
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package org.ohmage.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.domain.MobilityPoint;
+
+/**
+ * Measures how much heap a MobilityPoint retains, which bounds how many
+ * points mobility/read can hold while it builds a response. JMH measures
+ * time, not retained memory, so this is run on its own:
+ * 
+ * <pre>ant benchmark-footprint</pre>
+ * 
+ * The points are built in batches so that the upload they are built from is
+ * not counted.
+ * 
+ * The sensor data used to be kept as lists of boxed values: a list of
+ * accelerometer samples, each with three Doubles, and a list of access
+ * points, each with its own copy of the SSID. The points now keep it in
+ * primitive arrays. As the old MobilityPoint is gone, the baseline is
+ * measured by building the same sensor data both ways on their own. The
+ * point before the change is estimated as the point now, less the arrays,
+ * plus the lists.
+ */
+public final class MobilityPointFootprint {
+	private static final int DEFAULT_NUM_POINTS = 20000;
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * An accelerometer sample as it was kept before the sensor data was
+	 * stored in arrays.
+	 */
+	private static final class BoxedAccelSample {
+		@SuppressWarnings("unused")
+		private final Double x;
+		@SuppressWarnings("unused")
+		private final Double y;
+		@SuppressWarnings("unused")
+		private final Double z;
+
+		private BoxedAccelSample(
+				final Double x,
+				final Double y,
+				final Double z) {
+
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+	}
+
+	/**
+	 * An access point as it was kept before the sensor data was stored in
+	 * arrays.
+	 */
+	private static final class BoxedAccessPoint {
+		@SuppressWarnings("unused")
+		private final String ssid;
+		@SuppressWarnings("unused")
+		private final double strength;
+
+		private BoxedAccessPoint(final String ssid, final double strength) {
+			this.ssid = ssid;
+			this.strength = strength;
+		}
+	}
+
+	/**
+	 * A point's sensor data as it was kept before it was stored in arrays.
+	 */
+	private static final class BoxedSensorData {
+		@SuppressWarnings("unused")
+		private final List<BoxedAccelSample> accelData;
+		@SuppressWarnings("unused")
+		private final List<BoxedAccessPoint> scan;
+
+		private BoxedSensorData(final JSONObject data) throws JSONException {
+			JSONArray accelArray = data.getJSONArray("accel_data");
+			accelData = new ArrayList<BoxedAccelSample>(accelArray.length());
+			for(int i = 0; i < accelArray.length(); i++) {
+				JSONObject sample = accelArray.getJSONObject(i);
+				accelData.add(
+					new BoxedAccelSample(
+						sample.getDouble("x"),
+						sample.getDouble("y"),
+						sample.getDouble("z")));
+			}
+
+			JSONArray scanArray =
+				data.getJSONObject("wifi_data").getJSONArray("scan");
+			scan = new ArrayList<BoxedAccessPoint>(scanArray.length());
+			for(int i = 0; i < scanArray.length(); i++) {
+				JSONObject accessPoint = scanArray.getJSONObject(i);
+				scan.add(
+					new BoxedAccessPoint(
+						new String(accessPoint.getString("ssid")),
+						accessPoint.getDouble("strength")));
+			}
+		}
+	}
+
+	/**
+	 * A point's sensor data as it is kept now.
+	 */
+	private static final class ArraySensorData {
+		@SuppressWarnings("unused")
+		private final double[] accelX;
+		@SuppressWarnings("unused")
+		private final double[] accelY;
+		@SuppressWarnings("unused")
+		private final double[] accelZ;
+		@SuppressWarnings("unused")
+		private final String[] ssids;
+		@SuppressWarnings("unused")
+		private final double[] strengths;
+
+		private ArraySensorData(final JSONObject data) throws JSONException {
+			JSONArray accelArray = data.getJSONArray("accel_data");
+			accelX = new double[accelArray.length()];
+			accelY = new double[accelArray.length()];
+			accelZ = new double[accelArray.length()];
+			for(int i = 0; i < accelArray.length(); i++) {
+				JSONObject sample = accelArray.getJSONObject(i);
+				accelX[i] = sample.getDouble("x");
+				accelY[i] = sample.getDouble("y");
+				accelZ[i] = sample.getDouble("z");
+			}
+
+			JSONArray scanArray =
+				data.getJSONObject("wifi_data").getJSONArray("scan");
+			ssids = new String[scanArray.length()];
+			strengths = new double[scanArray.length()];
+			for(int i = 0; i < scanArray.length(); i++) {
+				JSONObject accessPoint = scanArray.getJSONObject(i);
+				ssids[i] = accessPoint.getString("ssid").intern();
+				strengths[i] = accessPoint.getDouble("strength");
+			}
+		}
+	}
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private MobilityPointFootprint() {}
+
+	/**
+	 * Builds the points and prints the heap they retain, along with the heap
+	 * their sensor data retains now and retained before it was stored in
+	 * arrays.
+	 * 
+	 * @param args The number of points to build, optionally.
+	 * 
+	 * @throws Exception The points could not be built.
+	 */
+	public static void main(final String[] args) throws Exception {
+		int numPoints =
+			(args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_NUM_POINTS;
+
+		// Load and initialize everything a point needs before measuring.
+		MobilityFixtures.createPoints(BATCH_SIZE, 0);
+		buildSensorData(MobilityFixtures.createUpload(1, 0), true);
+		buildSensorData(MobilityFixtures.createUpload(1, 0), false);
+
+		long before = getUsedHeap();
+
+		List<MobilityPoint> points = new ArrayList<MobilityPoint>(numPoints);
+		for(int built = 0; built < numPoints; built += BATCH_SIZE) {
+			points.addAll(
+				MobilityFixtures.createPoints(
+					Math.min(BATCH_SIZE, numPoints - built),
+					built));
+		}
+
+		long afterPoints = getUsedHeap();
+
+		// Each is built from the same uploads as the points.
+		List<Object> boxed = new ArrayList<Object>(numPoints);
+		for(int built = 0; built < numPoints; built += BATCH_SIZE) {
+			boxed.addAll(
+				buildSensorData(
+					MobilityFixtures.createUpload(
+						Math.min(BATCH_SIZE, numPoints - built),
+						built),
+					true));
+		}
+
+		long afterBoxed = getUsedHeap();
+
+		List<Object> arrays = new ArrayList<Object>(numPoints);
+		for(int built = 0; built < numPoints; built += BATCH_SIZE) {
+			arrays.addAll(
+				buildSensorData(
+					MobilityFixtures.createUpload(
+						Math.min(BATCH_SIZE, numPoints - built),
+						built),
+					false));
+		}
+
+		long afterArrays = getUsedHeap();
+
+		long pointBytes = (afterPoints - before) / points.size();
+		long boxedBytes = (afterBoxed - afterPoints) / boxed.size();
+		long arrayBytes = (afterArrays - afterBoxed) / arrays.size();
+
+		System.out.println("Points:              " + points.size());
+		System.out.println(
+			"Accelerometer/point: " + MobilityFixtures.NUM_ACCEL_SAMPLES);
+		System.out.println(
+			"WiFi APs/point:      " + MobilityFixtures.NUM_ACCESS_POINTS);
+		System.out.println(
+			"Retained heap:       " + ((afterPoints - before) / 1024) + " KiB");
+		System.out.println("Bytes per point:     " + pointBytes);
+		System.out.println();
+		System.out.println("Sensor data bytes per point:");
+		System.out.println("  Boxed lists:       " + boxedBytes);
+		System.out.println("  Primitive arrays:  " + arrayBytes);
+		System.out.println(
+			"Bytes per point with boxed lists (estimated): " +
+				(pointBytes - arrayBytes + boxedBytes));
+	}
+
+	/**
+	 * Builds the sensor data of each point in an upload.
+	 * 
+	 * @param upload The points as they would be uploaded.
+	 * 
+	 * @param boxed Whether to build the sensor data as lists of boxed values,
+	 * 				as it was kept before, or as primitive arrays, as it is
+	 * 				kept now.
+	 * 
+	 * @return The sensor data of each point.
+	 * 
+	 * @throws JSONException A point had no sensor data.
+	 */
+	private static List<Object> buildSensorData(
+			final JSONArray upload,
+			final boolean boxed)
+			throws JSONException {
+
+		List<Object> result = new ArrayList<Object>(upload.length());
+		for(int i = 0; i < upload.length(); i++) {
+			JSONObject data = upload.getJSONObject(i).getJSONObject("data");
+			result.add(
+				boxed ?
+					new BoxedSensorData(data) :
+					new ArraySensorData(data));
+		}
+		return result;
+	}
+
+	/**
+	 * Collects garbage until the used heap stops shrinking and returns it.
+	 * 
+	 * @return The number of bytes of heap in use.
+	 * 
+	 * @throws InterruptedException The thread was interrupted while waiting
+	 * 								for the collector.
+	 */
+	private static long getUsedHeap() throws InterruptedException {
+		Runtime runtime = Runtime.getRuntime();
+
+		long result = Long.MAX_VALUE;
+		for(int i = 0; i < 10; i++) {
+			System.gc();
+			Thread.sleep(50);
+
+			long used = runtime.totalMemory() - runtime.freeMemory();
+			if(used >= result) {
+				break;
+			}
+			result = used;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,244 @@
+package org.ohmage.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.domain.DataStream;
+import org.ohmage.domain.Location;
+import org.ohmage.domain.Observer;
+import org.ohmage.exception.DomainException;
+
+/**
+ * Generates an observer stream and its data for the benchmarks. The stream
+ * describes a battery and radio reading with a nested list of nearby
+ * devices, which exercises every part of the schema validator, and the data
+ * is random but repeatable for a given seed.
+ */
+public final class ObserverFixtures {
+	public static final String OBSERVER_ID = "org.ohmage.benchmark";
+	public static final long OBSERVER_VERSION = 1;
+	public static final String STREAM_ID = "readings";
+	public static final long STREAM_VERSION = 1;
+
+	/**
+	 * The stream's schema.
+	 */
+	public static final String SCHEMA =
+		"{" +
+			"\"type\":\"object\"," +
+			"\"fields\":[" +
+				"{\"name\":\"battery\",\"type\":\"number\"}," +
+				"{\"name\":\"charging\",\"type\":\"boolean\"}," +
+				"{\"name\":\"network\",\"type\":\"string\"}," +
+				"{\"name\":\"signal\",\"type\":\"number\",\"optional\":true}," +
+				"{" +
+					"\"name\":\"devices\"," +
+					"\"type\":\"array\"," +
+					"\"constType\":{" +
+						"\"type\":\"object\"," +
+						"\"fields\":[" +
+							"{\"name\":\"address\",\"type\":\"string\"}," +
+							"{\"name\":\"rssi\",\"type\":\"number\"}" +
+						"]" +
+					"}" +
+				"}" +
+			"]" +
+		"}";
+
+	/**
+	 * The number of nearby devices in each data point.
+	 */
+	public static final int NUM_DEVICES = 10;
+
+	private static final String[] NETWORKS = { "wifi", "lte", "3g", "none" };
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private ObserverFixtures() {}
+
+	/**
+	 * Creates the stream.
+	 * 
+	 * @return The stream.
+	 * 
+	 * @throws DomainException The schema was not valid.
+	 */
+	public static Observer.Stream createStream() throws DomainException {
+		return
+			new Observer.Stream(
+				STREAM_ID,
+				STREAM_VERSION,
+				"Readings",
+				"Generated device readings.",
+				true,
+				true,
+				true,
+				SCHEMA);
+	}
+
+	/**
+	 * Creates the XML definition of an observer that has only the stream.
+	 * 
+	 * @return The observer's definition.
+	 */
+	public static String createXml() {
+		return
+			"<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+			"<observer>" +
+				"<id>" + OBSERVER_ID + "</id>" +
+				"<version>" + OBSERVER_VERSION + "</version>" +
+				"<name>Benchmark</name>" +
+				"<description>Generated device readings.</description>" +
+				"<versionString>" + OBSERVER_VERSION + "</versionString>" +
+				"<stream>" +
+					"<id>" + STREAM_ID + "</id>" +
+					"<version>" + STREAM_VERSION + "</version>" +
+					"<name>Readings</name>" +
+					"<description>Generated device readings.</description>" +
+					"<metadata><id /><timestamp /><location /></metadata>" +
+					"<schema>" + SCHEMA + "</schema>" +
+				"</stream>" +
+			"</observer>";
+	}
+
+	/**
+	 * Creates data points as a client would upload them.
+	 * 
+	 * @param numPoints The number of points.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The points as they would be uploaded.
+	 * 
+	 * @throws JSONException There was an error building the JSON.
+	 */
+	public static JSONArray createUpload(
+			final int numPoints,
+			final long seed)
+			throws JSONException {
+
+		Random random = new Random(seed);
+		long time = 1380000000000L;
+
+		JSONArray result = new JSONArray();
+		for(JsonNode data : createData(numPoints, seed)) {
+			time += 60000;
+
+			JSONObject metadata = new JSONObject();
+			metadata.put("id", new UUID(seed, result.length()).toString());
+			metadata.put("time", time);
+			metadata.put("timezone", "America/Los_Angeles");
+			metadata.put(
+				"location",
+				CampaignFixtures.createLocation(random, time));
+
+			JSONObject point = new JSONObject();
+			point.put("stream_id", STREAM_ID);
+			point.put("stream_version", STREAM_VERSION);
+			point.put("metadata", metadata);
+			point.put("data", new JSONObject(data.toString()));
+
+			result.put(point);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates the data of points that conform to the stream's schema.
+	 * 
+	 * @param numPoints The number of points.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The points' data.
+	 */
+	public static List<JsonNode> createData(
+			final int numPoints,
+			final long seed) {
+
+		Random random = new Random(seed);
+		JsonNodeFactory factory = JsonNodeFactory.instance;
+
+		List<JsonNode> result = new ArrayList<JsonNode>(numPoints);
+		for(int i = 0; i < numPoints; i++) {
+			ObjectNode data = factory.objectNode();
+			data.put("battery", random.nextInt(101));
+			data.put("charging", random.nextBoolean());
+			data.put("network", NETWORKS[random.nextInt(NETWORKS.length)]);
+			if(random.nextBoolean()) {
+				data.put("signal", -50 - random.nextInt(60));
+			}
+
+			ArrayNode devices = data.putArray("devices");
+			for(int d = 0; d < NUM_DEVICES; d++) {
+				ObjectNode device = devices.addObject();
+				device.put(
+					"address",
+					String.format("00:1a:2b:3c:4d:%02x", random.nextInt(256)));
+				device.put("rssi", -40 - random.nextInt(60));
+			}
+
+			result.add(data);
+		}
+		return result;
+	}
+
+	/**
+	 * Creates data points as they would be read from the database.
+	 * 
+	 * @param stream The stream to which the points belong.
+	 * 
+	 * @param numPoints The number of points.
+	 * 
+	 * @param seed The seed for the random values.
+	 * 
+	 * @return The data points.
+	 * 
+	 * @throws DomainException A generated point was not valid.
+	 */
+	public static List<DataStream> createDataStreams(
+			final Observer.Stream stream,
+			final int numPoints,
+			final long seed)
+			throws DomainException {
+
+		Random random = new Random(seed);
+		DateTimeZone timezone = DateTimeZone.forID("America/Los_Angeles");
+		long time = 1380000000000L;
+
+		List<DataStream> result = new ArrayList<DataStream>(numPoints);
+		for(JsonNode data : createData(numPoints, seed)) {
+			time += 60000;
+
+			Location location =
+				new Location(
+					new DateTime(time, timezone),
+					34.0 + random.nextDouble(),
+					-118.0 - random.nextDouble(),
+					5 + random.nextInt(50),
+					"gps");
+
+			result.add(
+				new DataStream(
+					stream,
+					new DataStream.MetaData(
+						new UUID(seed, result.size()).toString(),
+						new DateTime(time, timezone),
+						location),
+					data));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,75 @@
+package org.ohmage.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.ohmage.cache.PreferenceCache;
+import org.ohmage.cache.PreferenceCacheFixtures;
+import org.ohmage.cache.UserBin;
+import org.ohmage.domain.User;
+import org.ohmage.exception.DomainException;
+import org.ohmage.request.RequestBuilder;
+
+/**
+ * Sets up the parts of the server that Spring would, so that requests can
+ * build their responses without a servlet container or a database.
+ */
+public final class ServerFixtures {
+	/**
+	 * The context path from which the URLs in the responses are built.
+	 */
+	public static final String CONTEXT_PATH = "/app";
+
+	/**
+	 * The password of the users that are logged in, which is never checked.
+	 */
+	private static final String PASSWORD = "Password1!";
+
+	private static boolean installed = false;
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private ServerFixtures() {}
+
+	/**
+	 * Creates the request builder, the preference cache, and the
+	 * authentication service if they have not already been created.
+	 */
+	public static synchronized void install() {
+		if(installed) {
+			return;
+		}
+
+		new RequestBuilder().setServletContext(
+			StandInHttp.createServletContext(CONTEXT_PATH));
+
+		Map<String, String> preferences = new HashMap<String, String>();
+		preferences.put(PreferenceCache.KEY_SSL_ENABLED, "false");
+		preferences.put(
+			PreferenceCache.KEY_FULLY_QUALIFIED_DOMAIN_NAME,
+			"localhost");
+		PreferenceCacheFixtures.install(preferences);
+
+		StandInQueries.installAuthentication();
+
+		installed = true;
+	}
+
+	/**
+	 * Logs a user in, as auth_token would, so that a request built with the
+	 * returned token is authenticated without a database. The fixtures must
+	 * have been installed.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @return The user's authentication token.
+	 * 
+	 * @throws DomainException The user could not be logged in.
+	 */
+	public static String login(final String username) throws DomainException {
+		User user = new User(username, PASSWORD, false);
+		user.isLoggedIn(true);
+		return UserBin.addUser(user);
+	}
+}
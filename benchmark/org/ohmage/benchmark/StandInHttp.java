@@ -0,0 +1,186 @@
+package org.ohmage.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Stand-in HTTP requests, responses, and servlet contexts, so that a
+ * request's response can be generated without a servlet container. The
+ * request has no headers, so the response is never compressed, and whatever
+ * is written to the response is passed to an OutputStream.
+ */
+public final class StandInHttp {
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private StandInHttp() {}
+
+	/**
+	 * Creates a stand-in HTTP request. Its attributes are kept, so that the
+	 * attributes the filters would have set can be set on it, and every
+	 * other method returns nothing.
+	 * 
+	 * @return The stand-in HTTP request.
+	 */
+	public static HttpServletRequest createRequest() {
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+
+		return
+			(HttpServletRequest) Proxy.newProxyInstance(
+				HttpServletRequest.class.getClassLoader(),
+				new Class<?>[] { HttpServletRequest.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args) {
+
+						String name = method.getName();
+						if("getAttribute".equals(name)) {
+							return attributes.get(args[0]);
+						}
+						else if("setAttribute".equals(name)) {
+							attributes.put((String) args[0], args[1]);
+						}
+						else if("removeAttribute".equals(name)) {
+							attributes.remove(args[0]);
+						}
+
+						return getDefault(method.getReturnType());
+					}
+				});
+	}
+
+	/**
+	 * Creates a stand-in HTTP response. The headers are discarded.
+	 * 
+	 * @param output The stream to which the response's body is written.
+	 * 
+	 * @return The stand-in HTTP response.
+	 */
+	public static HttpServletResponse createResponse(
+			final OutputStream output) {
+
+		final ServletOutputStream outputStream = new ServletOutputStream() {
+			@Override
+			public void write(final int b) throws IOException {
+				output.write(b);
+			}
+
+			@Override
+			public void write(
+					final byte[] b,
+					final int off,
+					final int len)
+					throws IOException {
+
+				output.write(b, off, len);
+			}
+		};
+
+		return
+			(HttpServletResponse) Proxy.newProxyInstance(
+				HttpServletResponse.class.getClassLoader(),
+				new Class<?>[] { HttpServletResponse.class },
+				new InvocationHandler() {
+					private PrintWriter writer = null;
+
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args)
+							throws IOException {
+
+						String name = method.getName();
+						if("getOutputStream".equals(name)) {
+							return outputStream;
+						}
+						else if("getWriter".equals(name)) {
+							if(writer == null) {
+								writer =
+									new PrintWriter(
+										new OutputStreamWriter(
+											outputStream,
+											"UTF-8"));
+							}
+							return writer;
+						}
+						else if("flushBuffer".equals(name)) {
+							if(writer != null) {
+								writer.flush();
+							}
+						}
+						else if("getCharacterEncoding".equals(name)) {
+							return "UTF-8";
+						}
+
+						return getDefault(method.getReturnType());
+					}
+				});
+	}
+
+	/**
+	 * Creates a stand-in servlet context. Only the context path is returned,
+	 * and every other method returns nothing.
+	 * 
+	 * @param contextPath The context path.
+	 * 
+	 * @return The stand-in servlet context.
+	 */
+	public static ServletContext createServletContext(
+			final String contextPath) {
+
+		return
+			(ServletContext) Proxy.newProxyInstance(
+				ServletContext.class.getClassLoader(),
+				new Class<?>[] { ServletContext.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args) {
+
+						if("getContextPath".equals(method.getName())) {
+							return contextPath;
+						}
+						return getDefault(method.getReturnType());
+					}
+				});
+	}
+
+	/**
+	 * Returns the value a stand-in method returns when it has nothing to
+	 * return.
+	 * 
+	 * @param type The method's return type.
+	 * 
+	 * @return Null or, for primitive types, false or zero.
+	 */
+	private static Object getDefault(final Class<?> type) {
+		if(boolean.class.equals(type)) {
+			return false;
+		}
+		else if(int.class.equals(type)) {
+			return 0;
+		}
+		else if(long.class.equals(type)) {
+			return 0L;
+		}
+		return null;
+	}
+}
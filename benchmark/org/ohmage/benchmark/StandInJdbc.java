@@ -0,0 +1,204 @@
+package org.ohmage.benchmark;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+/**
+ * A stand-in JDBC DataSource, so that the caches can be created without a
+ * database. Every query returns the same two-column table, which is all that
+ * a key-value cache reads.
+ */
+public final class StandInJdbc {
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private StandInJdbc() {}
+
+	/**
+	 * Creates a stand-in DataSource whose every query returns the given keys
+	 * and values.
+	 * 
+	 * @param keyColumn The name of the column that has the keys.
+	 * 
+	 * @param valueColumn The name of the column that has the values.
+	 * 
+	 * @param values The keys and their values.
+	 * 
+	 * @return The stand-in DataSource.
+	 */
+	public static DataSource createDataSource(
+			final String keyColumn,
+			final String valueColumn,
+			final Map<String, String> values) {
+
+		final List<String[]> rows = new ArrayList<String[]>(values.size());
+		for(Map.Entry<String, String> entry : values.entrySet()) {
+			rows.add(new String[] { entry.getKey(), entry.getValue() });
+		}
+		final String[] columns = new String[] { keyColumn, valueColumn };
+
+		return
+			(DataSource) Proxy.newProxyInstance(
+				DataSource.class.getClassLoader(),
+				new Class<?>[] { DataSource.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args) {
+
+						if("getConnection".equals(method.getName())) {
+							return createConnection(columns, rows);
+						}
+						return getDefault(method.getReturnType());
+					}
+				});
+	}
+
+	/**
+	 * Creates a stand-in connection whose statements return the table.
+	 * 
+	 * @param columns The table's column names.
+	 * 
+	 * @param rows The table's rows.
+	 * 
+	 * @return The stand-in connection.
+	 */
+	private static Connection createConnection(
+			final String[] columns,
+			final List<String[]> rows) {
+
+		final Statement statement =
+			(Statement) Proxy.newProxyInstance(
+				Statement.class.getClassLoader(),
+				new Class<?>[] { Statement.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args) {
+
+						if("executeQuery".equals(method.getName())) {
+							return createResultSet(columns, rows);
+						}
+						return getDefault(method.getReturnType());
+					}
+				});
+
+		return
+			(Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class },
+				new InvocationHandler() {
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args) {
+
+						if("createStatement".equals(method.getName())) {
+							return statement;
+						}
+						return getDefault(method.getReturnType());
+					}
+				});
+	}
+
+	/**
+	 * Creates a stand-in result set over the table. Only moving to the next
+	 * row and reading strings by column name or index are supported.
+	 * 
+	 * @param columns The table's column names.
+	 * 
+	 * @param rows The table's rows.
+	 * 
+	 * @return The stand-in result set.
+	 */
+	private static ResultSet createResultSet(
+			final String[] columns,
+			final List<String[]> rows) {
+
+		return
+			(ResultSet) Proxy.newProxyInstance(
+				ResultSet.class.getClassLoader(),
+				new Class<?>[] { ResultSet.class },
+				new InvocationHandler() {
+					private int row = -1;
+
+					@Override
+					public Object invoke(
+							final Object proxy,
+							final Method method,
+							final Object[] args)
+							throws SQLException {
+
+						String name = method.getName();
+						if("next".equals(name)) {
+							row++;
+							return row < rows.size();
+						}
+						else if("getString".equals(name)) {
+							return rows.get(row)[getColumn(args[0])];
+						}
+						return getDefault(method.getReturnType());
+					}
+
+					/**
+					 * Returns the index of a column.
+					 * 
+					 * @param column The column's name or 1-based index.
+					 * 
+					 * @return The column's 0-based index.
+					 * 
+					 * @throws SQLException The column is unknown.
+					 */
+					private int getColumn(
+							final Object column)
+							throws SQLException {
+
+						if(column instanceof Integer) {
+							return ((Integer) column) - 1;
+						}
+						for(int i = 0; i < columns.length; i++) {
+							if(columns[i].equals(column)) {
+								return i;
+							}
+						}
+						throw new SQLException("Unknown column: " + column);
+					}
+				});
+	}
+
+	/**
+	 * Returns the value a stand-in method returns when it has nothing to
+	 * return.
+	 * 
+	 * @param type The method's return type.
+	 * 
+	 * @return Null or, for primitive types, false or zero.
+	 */
+	private static Object getDefault(final Class<?> type) {
+		if(boolean.class.equals(type)) {
+			return false;
+		}
+		else if(int.class.equals(type)) {
+			return 0;
+		}
+		else if(long.class.equals(type)) {
+			return 0L;
+		}
+		return null;
+	}
+}
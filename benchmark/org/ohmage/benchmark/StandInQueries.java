@@ -0,0 +1,298 @@
+package org.ohmage.benchmark;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.ohmage.domain.DataStream;
+import org.ohmage.domain.Observer;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.SurveyResponse;
+import org.ohmage.query.IAuthenticationQuery;
+import org.ohmage.query.ICampaignQueries;
+import org.ohmage.query.IImageQueries;
+import org.ohmage.query.IObserverQueries;
+import org.ohmage.query.ISurveyResponseImageQueries;
+import org.ohmage.query.ISurveyResponseQueries;
+import org.ohmage.query.ISurveyUploadQuery;
+import org.ohmage.service.AuthenticationService;
+import org.ohmage.service.CampaignServices;
+import org.ohmage.service.ObserverServices;
+import org.ohmage.service.SurveyResponseServices;
+
+/**
+ * Stand-in query objects, so that the read requests can be serviced by the
+ * real services without a database. The services are created the way Spring
+ * creates them, through their private constructors, with queries that
+ * return whatever was last given to {@link #setStreamData(Observer.Stream,
+ * List)} or {@link #setSurveyResponses(Campaign, Collection)}. Every other
+ * query returns nothing.
+ */
+public final class StandInQueries {
+	private static volatile Observer.Stream stream = null;
+	private static volatile List<DataStream> dataStreams =
+		Collections.emptyList();
+
+	private static volatile Campaign campaign = null;
+	private static volatile List<SurveyResponse> surveyResponses =
+		Collections.emptyList();
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private StandInQueries() {}
+
+	/**
+	 * Creates the authentication service if it has not already been created.
+	 * A user who has been logged in, with {@link ServerFixtures#login(String)},
+	 * is authenticated without a query, and every other user fails to
+	 * authenticate.
+	 */
+	public static synchronized void installAuthentication() {
+		if(AuthenticationService.instance() == null) {
+			create(
+				AuthenticationService.class,
+				new Class<?>[] { IAuthenticationQuery.class },
+				new Object[] {
+						createQueries(IAuthenticationQuery.class, null)
+					});
+		}
+	}
+
+	/**
+	 * Sets the stream and its data points that the observer queries return,
+	 * creating the observer services if they have not already been created.
+	 * 
+	 * @param stream The only stream that exists. It belongs to the observer
+	 * 				 whose ID is given when it is read.
+	 * 
+	 * @param dataStreams Every data point of the stream.
+	 */
+	public static synchronized void setStreamData(
+			final Observer.Stream stream,
+			final List<DataStream> dataStreams) {
+
+		StandInQueries.stream = stream;
+		StandInQueries.dataStreams =
+			new ArrayList<DataStream>(dataStreams);
+
+		if(ObserverServices.instance() == null) {
+			create(
+				ObserverServices.class,
+				new Class<?>[] { IObserverQueries.class },
+				new Object[] {
+						createQueries(
+							IObserverQueries.class,
+							new InvocationHandler() {
+								@Override
+								public Object invoke(
+										final Object proxy,
+										final Method method,
+										final Object[] args) {
+
+									String name = method.getName();
+									if("getStreams".equals(name)) {
+										return
+											Collections.singletonMap(
+												(String) args[1],
+												Collections.singletonList(
+													StandInQueries.stream));
+									}
+									else if("readData".equals(name)) {
+										return
+											new ArrayList<DataStream>(
+												StandInQueries.dataStreams);
+									}
+									return getDefault(method.getReturnType());
+								}
+							})
+					});
+		}
+	}
+
+	/**
+	 * Sets the campaign and its survey responses that the campaign and survey
+	 * response queries return, creating the campaign and survey response
+	 * services if they have not already been created.
+	 * 
+	 * @param campaign The only campaign that exists.
+	 * 
+	 * @param surveyResponses Every survey response for the campaign.
+	 */
+	public static synchronized void setSurveyResponses(
+			final Campaign campaign,
+			final Collection<SurveyResponse> surveyResponses) {
+
+		StandInQueries.campaign = campaign;
+		StandInQueries.surveyResponses =
+			new ArrayList<SurveyResponse>(surveyResponses);
+
+		if(CampaignServices.instance() == null) {
+			create(
+				CampaignServices.class,
+				new Class<?>[] { ICampaignQueries.class },
+				new Object[] {
+						createQueries(
+							ICampaignQueries.class,
+							new InvocationHandler() {
+								@Override
+								public Object invoke(
+										final Object proxy,
+										final Method method,
+										final Object[] args) {
+
+									if("findCampaignConfiguration"
+										.equals(method.getName())) {
+
+										return StandInQueries.campaign;
+									}
+									return getDefault(method.getReturnType());
+								}
+							})
+					});
+		}
+
+		if(SurveyResponseServices.instance() == null) {
+			create(
+				SurveyResponseServices.class,
+				new Class<?>[] {
+						IImageQueries.class,
+						ISurveyUploadQuery.class,
+						ISurveyResponseQueries.class,
+						ISurveyResponseImageQueries.class
+					},
+				new Object[] {
+						createQueries(IImageQueries.class, null),
+						createQueries(ISurveyUploadQuery.class, null),
+						createQueries(
+							ISurveyResponseQueries.class,
+							new InvocationHandler() {
+								@Override
+								@SuppressWarnings("unchecked")
+								public Object invoke(
+										final Object proxy,
+										final Method method,
+										final Object[] args) {
+
+									if("retrieveSurveyResponses"
+										.equals(method.getName())) {
+
+										List<SurveyResponse> result =
+											StandInQueries.surveyResponses;
+										((List<SurveyResponse>) args[15])
+											.addAll(result);
+										return result.size();
+									}
+									return getDefault(method.getReturnType());
+								}
+							}),
+						createQueries(ISurveyResponseImageQueries.class, null)
+					});
+		}
+	}
+
+	/**
+	 * Creates a stand-in query object.
+	 * 
+	 * @param queriesClass The query interface.
+	 * 
+	 * @param handler The handler for its methods or null if every method
+	 * 				  returns nothing.
+	 * 
+	 * @return The stand-in query object.
+	 */
+	private static <T> T createQueries(
+			final Class<T> queriesClass,
+			final InvocationHandler handler) {
+
+		return
+			queriesClass.cast(
+				Proxy.newProxyInstance(
+					queriesClass.getClassLoader(),
+					new Class<?>[] { queriesClass },
+					(handler != null) ?
+						handler :
+						new InvocationHandler() {
+							@Override
+							public Object invoke(
+									final Object proxy,
+									final Method method,
+									final Object[] args) {
+
+								return getDefault(method.getReturnType());
+							}
+						}));
+	}
+
+	/**
+	 * Creates a service through its private constructor, as Spring does. The
+	 * service makes itself the instance.
+	 * 
+	 * @param serviceClass The service.
+	 * 
+	 * @param parameterTypes The constructor's parameter types.
+	 * 
+	 * @param queries The query objects given to the constructor.
+	 * 
+	 * @throws IllegalStateException The service could not be created.
+	 */
+	private static void create(
+			final Class<?> serviceClass,
+			final Class<?>[] parameterTypes,
+			final Object[] queries) {
+
+		try {
+			Constructor<?> constructor =
+				serviceClass.getDeclaredConstructor(parameterTypes);
+			constructor.setAccessible(true);
+			constructor.newInstance(queries);
+		}
+		catch(NoSuchMethodException e) {
+			throw new IllegalStateException(
+				"The service's constructor is missing: " + serviceClass,
+				e);
+		}
+		catch(InstantiationException e) {
+			throw new IllegalStateException(
+				"The service could not be created: " + serviceClass,
+				e);
+		}
+		catch(IllegalAccessException e) {
+			throw new IllegalStateException(
+				"The service could not be created: " + serviceClass,
+				e);
+		}
+		catch(InvocationTargetException e) {
+			throw new IllegalStateException(
+				"The service could not be created: " + serviceClass,
+				e.getCause());
+		}
+	}
+
+	/**
+	 * Returns the value a stand-in method returns when it has nothing to
+	 * return.
+	 * 
+	 * @param type The method's return type.
+	 * 
+	 * @return Null or, for primitive types, false or zero.
+	 */
+	private static Object getDefault(final Class<?> type) {
+		if(boolean.class.equals(type)) {
+			return false;
+		}
+		else if(int.class.equals(type)) {
+			return 0;
+		}
+		else if(long.class.equals(type)) {
+			return 0L;
+		}
+		return null;
+	}
+}
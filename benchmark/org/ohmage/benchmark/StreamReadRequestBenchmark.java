@@ -0,0 +1,126 @@
+package org.ohmage.benchmark;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.ohmage.domain.DataStream;
+import org.ohmage.domain.Observer;
+import org.ohmage.exception.DomainException;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.jee.filter.ClientFilter;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest.TokenLocation;
+import org.ohmage.request.observer.StreamReadRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how stream/read writes its data points as JSON. The request is
+ * serviced once, by the real services over stand-in queries, so no database
+ * is needed and only the response is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class StreamReadRequestBenchmark {
+	@Param({ "100", "2000" })
+	public int numPoints;
+
+	private StreamReadRequest request;
+
+	/**
+	 * Generates the data points and builds and services a request that reads
+	 * them.
+	 * 
+	 * @throws DomainException A data point was not valid.
+	 * 
+	 * @throws InvalidRequestException The request could not be built.
+	 * 
+	 * @throws IOException The request could not be built.
+	 */
+	@Setup
+	public void setUp()
+			throws DomainException, InvalidRequestException, IOException {
+
+		Observer.Stream stream = ObserverFixtures.createStream();
+		List<DataStream> dataStreams =
+			ObserverFixtures.createDataStreams(stream, numPoints, 42);
+
+		ServerFixtures.install();
+		StandInQueries.setStreamData(stream, dataStreams);
+
+		Map<String, String[]> parameters = new HashMap<String, String[]>();
+		parameters.put(
+			InputKeys.AUTH_TOKEN,
+			new String[] { ServerFixtures.login(CampaignFixtures.USERNAME) });
+
+		HttpServletRequest httpRequest = StandInHttp.createRequest();
+		httpRequest.setAttribute(
+			ClientFilter.ATTRIBUTE_KEY_CLIENT,
+			CampaignFixtures.CLIENT);
+
+		request =
+			new StreamReadRequest(
+				httpRequest,
+				parameters,
+				null,
+				TokenLocation.PARAMETER,
+				false,
+				CampaignFixtures.USERNAME,
+				ObserverFixtures.OBSERVER_ID,
+				ObserverFixtures.OBSERVER_VERSION,
+				ObserverFixtures.STREAM_ID,
+				ObserverFixtures.STREAM_VERSION,
+				null,
+				null,
+				null,
+				null,
+				null,
+				(long) numPoints);
+		if(! request.isFailed()) {
+			request.service();
+		}
+		if(request.isFailed()) {
+			throw new IllegalStateException(request.getFailureMessage());
+		}
+		if(request.getNumDataPoints() != numPoints) {
+			throw new IllegalStateException(
+				"The request read " + 
+					request.getNumDataPoints() + 
+					" of the " + 
+					numPoints + 
+					" points.");
+		}
+	}
+
+	/**
+	 * Writes the response.
+	 * 
+	 * @return The number of bytes in the response.
+	 */
+	@Benchmark
+	public long respond() {
+		DiscardingOutputStream output = new DiscardingOutputStream();
+		request.respond(
+			StandInHttp.createRequest(),
+			StandInHttp.createResponse(output));
+		return output.getCount();
+	}
+}
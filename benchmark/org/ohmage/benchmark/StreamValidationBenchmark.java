@@ -0,0 +1,64 @@
+package org.ohmage.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.JsonNode;
+import org.ohmage.domain.Observer;
+import org.ohmage.exception.DomainException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures validating uploaded stream data against its stream's schema, as
+ * stream/upload does for every point it is sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class StreamValidationBenchmark {
+	private static final int NUM_POINTS = 1000;
+
+	private Observer.Stream stream;
+	private List<JsonNode> data;
+
+	/**
+	 * Generates the stream and its data.
+	 * 
+	 * @throws DomainException The stream's schema was not valid.
+	 */
+	@Setup
+	public void setUp() throws DomainException {
+		stream = ObserverFixtures.createStream();
+		data = ObserverFixtures.createData(NUM_POINTS, 42);
+	}
+
+	/**
+	 * Validates every point.
+	 * 
+	 * @param blackhole Consumes the validated points.
+	 * 
+	 * @throws DomainException A point did not conform to the schema.
+	 */
+	@Benchmark
+	public void validateData(
+			final Blackhole blackhole)
+			throws DomainException {
+
+		for(JsonNode point : data) {
+			blackhole.consume(stream.validateData(point));
+		}
+	}
+}
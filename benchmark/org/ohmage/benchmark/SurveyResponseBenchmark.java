@@ -0,0 +1,85 @@
+package org.ohmage.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.SurveyResponse;
+import org.ohmage.exception.DomainException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures building SurveyResponses from an upload, as survey/upload does
+ * for every response it is sent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class SurveyResponseBenchmark {
+	private static final int NUM_SURVEYS = 10;
+	private static final int NUM_PROMPTS = 30;
+
+	@Param({ "100", "2000" })
+	public int numResponses;
+
+	private Campaign campaign;
+	private String upload;
+
+	/**
+	 * Generates the campaign and the upload.
+	 * 
+	 * @throws DomainException The campaign was not valid.
+	 * 
+	 * @throws JSONException The upload could not be built.
+	 */
+	@Setup
+	public void setUp() throws DomainException, JSONException {
+		campaign = CampaignFixtures.createCampaign(NUM_SURVEYS, NUM_PROMPTS);
+		upload =
+			CampaignFixtures
+				.createUpload(NUM_SURVEYS, NUM_PROMPTS, numResponses, 42)
+				.toString();
+	}
+
+	/**
+	 * Parses the upload and builds every survey response in it.
+	 * 
+	 * @param blackhole Consumes the survey responses.
+	 * 
+	 * @throws JSONException The upload was not valid JSON.
+	 * 
+	 * @throws DomainException A survey response was not valid.
+	 */
+	@Benchmark
+	public void fromUpload(
+			final Blackhole blackhole)
+			throws JSONException, DomainException {
+
+		JSONArray responses = new JSONArray(upload);
+		for(int i = 0; i < responses.length(); i++) {
+			blackhole.consume(
+				new SurveyResponse(
+					CampaignFixtures.USERNAME,
+					CampaignFixtures.CAMPAIGN_ID,
+					CampaignFixtures.CLIENT,
+					campaign,
+					responses.getJSONObject(i),
+					false));
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package org.ohmage.benchmark;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.json.JSONException;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.SurveyResponse;
+import org.ohmage.exception.DomainException;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.jee.filter.ClientFilter;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.survey.SurveyResponseReadRequest;
+import org.ohmage.request.survey.SurveyResponseRequest;
+import org.ohmage.validator.SurveyResponseValidators;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how survey_response/read writes survey responses in each of its
+ * output formats with every column. The request is serviced once, by the real
+ * services over stand-in queries, so no database is needed and only the
+ * response is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class SurveyResponseReadRequestBenchmark {
+	private static final int NUM_SURVEYS = 10;
+	private static final int NUM_PROMPTS = 30;
+
+	@Param({ "json-rows", "json-columns", "csv" })
+	public String outputFormat;
+
+	@Param({ "100", "2000" })
+	public int numResponses;
+
+	private SurveyResponseReadRequest request;
+
+	/**
+	 * Generates the campaign and its survey responses and builds and
+	 * services a request that reads them.
+	 * 
+	 * @throws DomainException The campaign or a response was not valid.
+	 * 
+	 * @throws JSONException The responses could not be built.
+	 * 
+	 * @throws ValidationException The column list was not valid.
+	 * 
+	 * @throws InvalidRequestException The request could not be built.
+	 * 
+	 * @throws IOException The request could not be built.
+	 */
+	@Setup
+	public void setUp()
+			throws DomainException, JSONException, ValidationException,
+				InvalidRequestException, IOException {
+
+		Campaign campaign =
+			CampaignFixtures.createCampaign(NUM_SURVEYS, NUM_PROMPTS);
+		Collection<SurveyResponse> surveyResponses =
+			CampaignFixtures.createSurveyResponses(
+				campaign,
+				NUM_SURVEYS,
+				NUM_PROMPTS,
+				numResponses,
+				42);
+
+		ServerFixtures.install();
+		StandInQueries.setSurveyResponses(campaign, surveyResponses);
+
+		Map<String, String[]> parameters = new HashMap<String, String[]>();
+		parameters.put(
+			InputKeys.AUTH_TOKEN,
+			new String[] { ServerFixtures.login(CampaignFixtures.USERNAME) });
+
+		HttpServletRequest httpRequest = StandInHttp.createRequest();
+		httpRequest.setAttribute(
+			ClientFilter.ATTRIBUTE_KEY_CLIENT,
+			CampaignFixtures.CLIENT);
+
+		request =
+			new SurveyResponseReadRequest(
+				httpRequest,
+				parameters,
+				false,
+				CampaignFixtures.CAMPAIGN_ID,
+				SurveyResponseRequest.URN_SPECIAL_ALL_LIST,
+				SurveyResponseRequest.URN_SPECIAL_ALL_LIST,
+				null,
+				null,
+				null,
+				null,
+				null,
+				null,
+				SurveyResponseValidators.validateColumnList(
+					SurveyResponseRequest.URN_SPECIAL_ALL),
+				SurveyResponse.OutputFormat.getValue(outputFormat),
+				null,
+				false,
+				false,
+				true,
+				false,
+				null,
+				(long) numResponses);
+		if(! request.isFailed()) {
+			request.service();
+		}
+		if(request.isFailed()) {
+			throw new IllegalStateException(request.getFailureMessage());
+		}
+		if(request.getSurveyResponses().size() != numResponses) {
+			throw new IllegalStateException(
+				"The request read " + 
+					request.getSurveyResponses().size() + 
+					" of the " + 
+					numResponses + 
+					" survey responses.");
+		}
+	}
+
+	/**
+	 * Writes the response.
+	 * 
+	 * @return The number of bytes in the response.
+	 */
+	@Benchmark
+	public long respond() {
+		DiscardingOutputStream output = new DiscardingOutputStream();
+		request.respond(
+			StandInHttp.createRequest(),
+			StandInHttp.createResponse(output));
+		return output.getCount();
+	}
+}
@@ -0,0 +1,61 @@
+package org.ohmage.cache;
+
+import java.util.Map;
+
+import org.ohmage.benchmark.StandInJdbc;
+
+/**
+ * Creates the preference cache, and the scheduler that refreshes it, for the
+ * benchmarks. It lives in the cache's package because they can only be
+ * created there.
+ */
+public final class PreferenceCacheFixtures {
+	/**
+	 * The preference table's columns.
+	 */
+	private static final String KEY_COLUMN = "p_key";
+	private static final String VALUE_COLUMN = "p_value";
+
+	/**
+	 * How often the cache reads the preferences again, which is less often
+	 * than any benchmark runs.
+	 */
+	private static final long UPDATE_FREQUENCY = 24 * 60 * 60 * 1000;
+
+	/**
+	 * The number of threads the scheduler runs the refresh on.
+	 */
+	private static final int SCHEDULER_THREADS = 1;
+
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private PreferenceCacheFixtures() {}
+
+	/**
+	 * Creates the preference cache with the given preferences and makes it
+	 * the one returned by {@link PreferenceCache#instance()}. If there is no
+	 * scheduler yet, one that never defers is created first. The webapp root
+	 * must have the system properties, as the one the benchmark targets
+	 * generate does.
+	 * 
+	 * @param preferences The preferences, as they would be in the database.
+	 * 
+	 * @return The preference cache.
+	 */
+	public static PreferenceCache install(
+			final Map<String, String> preferences) {
+
+		if(BackgroundTaskScheduler.instance() == null) {
+			new BackgroundTaskScheduler(SCHEDULER_THREADS, -1, 0);
+		}
+
+		return
+			new PreferenceCache(
+				StandInJdbc.createDataSource(
+					KEY_COLUMN,
+					VALUE_COLUMN,
+					preferences),
+				UPDATE_FREQUENCY);
+	}
+}
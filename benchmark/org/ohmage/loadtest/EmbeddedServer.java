@@ -0,0 +1,452 @@
+package org.ohmage.loadtest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import jbcrypt.BCrypt;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Boots the ohmage WAR in an embedded Tomcat against a new MySQL database,
+ * so that the load test can be run without a deployment.
+ * 
+ * Every start drops and recreates the database, runs each db/migration
+ * script against it in order, as Flyway would, and sets the admin's
+ * password. The embedded Tomcat listens on the configuration's port and
+ * serves the WAR at its context path. The Tomcat that is embedded is the
+ * installation named by the "tomcat.home" Ant property, as ohmage only
+ * ships the classes that it compiles against.
+ */
+public final class EmbeddedServer {
+	private static final String DB_DRIVER = "com.mysql.jdbc.Driver";
+
+	/**
+	 * The migrations, whose versions are their leading numbers.
+	 */
+	private static final Pattern MIGRATION_PATTERN =
+		Pattern.compile("V(\\d+)__.*\\.sql");
+
+	/**
+	 * The statement that changes the delimiter of the statements that follow
+	 * it, as the MySQL client and Flyway allow.
+	 */
+	private static final Pattern DELIMITER_PATTERN =
+		Pattern.compile("(?i)^\\s*DELIMITER\\s+(\\S+)\\s*$");
+
+	/**
+	 * The directories the Dockerfile creates under the base directory for
+	 * the media, documents, audits, and exports.
+	 */
+	private static final String[] DATA_DIRECTORIES = {
+			"audio",
+			"audits",
+			"documents",
+			"exports",
+			"files",
+			"images",
+			"videos"
+		};
+
+	private final LoadTestConfig config;
+	private final File war;
+	private final File migrations;
+	private final File baseDir;
+
+	private Tomcat tomcat;
+
+	/**
+	 * Creates an embedded server that has not been started.
+	 * 
+	 * @param config The load test's configuration, which names the database
+	 * 				 and the port and context path to serve.
+	 * 
+	 * @param war The ohmage WAR.
+	 * 
+	 * @param migrations The directory of migrations, db/migration.
+	 * 
+	 * @throws IllegalArgumentException The configuration asks for a secure
+	 * 									server, which can't be embedded.
+	 */
+	public EmbeddedServer(
+			final LoadTestConfig config,
+			final File war,
+			final File migrations) {
+
+		if(config.isServerSecure()) {
+			throw new IllegalArgumentException(
+				"The embedded server does not use SSL: server.secure");
+		}
+
+		this.config = config;
+		this.war = war;
+		this.migrations = migrations;
+		baseDir = new File(config.getEmbeddedBaseDir()).getAbsoluteFile();
+	}
+
+	/**
+	 * Creates the database and starts Tomcat. This returns once the webapp
+	 * has started.
+	 * 
+	 * @throws IOException The migrations, WAR, or base directory could not be
+	 * 					   read or written.
+	 * 
+	 * @throws SQLException The database could not be created.
+	 * 
+	 * @throws LifecycleException Tomcat or the webapp failed to start.
+	 */
+	public void start() throws IOException, SQLException, LifecycleException {
+		if(! war.isFile()) {
+			throw new IOException("The WAR is missing: " + war);
+		}
+
+		File dataDir = new File(baseDir, "data");
+		for(String directory : DATA_DIRECTORIES) {
+			File file = new File(dataDir, directory);
+			if((! file.isDirectory()) && (! file.mkdirs())) {
+				throw new IOException(
+					"The directory could not be created: " + file);
+			}
+		}
+
+		createDatabase(dataDir);
+
+		// The webapp reads its database settings from the configuration
+		// file, the same as a deployment's /etc/ohmage.conf.
+		File configFile = new File(baseDir, "ohmage.conf");
+		Properties properties = new Properties();
+		properties.setProperty("db.driver", DB_DRIVER);
+		properties.setProperty(
+			"db.jdbcurl",
+			config.getEmbeddedDbUrl() +
+				config.getEmbeddedDbName() +
+				"?characterEncoding=utf8");
+		properties.setProperty("db.username", config.getEmbeddedDbUsername());
+		properties.setProperty("db.password", config.getEmbeddedDbPassword());
+		Writer writer = new FileWriter(configFile);
+		try {
+			properties.store(writer, "Generated by the load test.");
+		}
+		finally {
+			writer.close();
+		}
+		System.setProperty("ohmage.config", configFile.getPath());
+
+		File appBase = new File(baseDir, "webapps");
+		if((! appBase.isDirectory()) && (! appBase.mkdirs())) {
+			throw new IOException(
+				"The directory could not be created: " + appBase);
+		}
+
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(baseDir.getPath());
+		tomcat.setPort(config.getServerPort());
+		tomcat.getHost().setAppBase(appBase.getPath());
+
+		Context context;
+		try {
+			context =
+				tomcat.addWebapp(config.getContextPath(), war.getPath());
+		}
+		catch(javax.servlet.ServletException e) {
+			throw new LifecycleException("The WAR could not be added.", e);
+		}
+
+		tomcat.start();
+
+		// A webapp that fails to start, such as when Spring can't create a
+		// bean, doesn't fail Tomcat's start.
+		if(! LifecycleState.STARTED.equals(context.getState())) {
+			stop();
+			throw new LifecycleException(
+				"The webapp failed to start. See Tomcat's log for why.");
+		}
+	}
+
+	/**
+	 * Stops Tomcat. The database is left for inspection and is dropped by
+	 * the next start.
+	 * 
+	 * @throws LifecycleException Tomcat failed to stop.
+	 */
+	public void stop() throws LifecycleException {
+		if(tomcat == null) {
+			return;
+		}
+
+		try {
+			tomcat.stop();
+			tomcat.destroy();
+		}
+		finally {
+			tomcat = null;
+		}
+	}
+
+	/**
+	 * Drops and recreates the database, runs the migrations against it, and
+	 * sets the admin's password, so that the admin can log in without first
+	 * changing it.
+	 * 
+	 * @param dataDir The base directory of the files, which replaces the
+	 * 				  migrations' "base_dir" placeholder.
+	 * 
+	 * @throws IOException A migration could not be read.
+	 * 
+	 * @throws SQLException A statement failed.
+	 */
+	private void createDatabase(
+			final File dataDir)
+			throws IOException, SQLException {
+
+		try {
+			Class.forName(DB_DRIVER);
+		}
+		catch(ClassNotFoundException e) {
+			throw new SQLException("The MySQL driver is missing.", e);
+		}
+
+		String name = config.getEmbeddedDbName();
+		Connection connection =
+			DriverManager.getConnection(
+				config.getEmbeddedDbUrl(),
+				config.getEmbeddedDbUsername(),
+				config.getEmbeddedDbPassword());
+		try {
+			Statement statement = connection.createStatement();
+			try {
+				statement.execute("DROP DATABASE IF EXISTS `" + name + "`");
+				statement.execute(
+					"CREATE DATABASE `" + name + "` CHARACTER SET utf8");
+				statement.execute("USE `" + name + "`");
+
+				for(File migration : getMigrations()) {
+					String sql = read(migration);
+					sql = sql.replace("${base_dir}", dataDir.getPath());
+					sql = sql.replace("${fqdn}", config.getServerAddress());
+
+					for(String part : split(sql)) {
+						try {
+							statement.execute(part);
+						}
+						catch(SQLException e) {
+							throw new SQLException(
+								"The migration failed: " +
+									migration.getName() +
+									": " +
+									part,
+								e);
+						}
+					}
+					log("Migrated: " + migration.getName());
+				}
+			}
+			finally {
+				statement.close();
+			}
+
+			PreparedStatement update =
+				connection.prepareStatement(
+					"UPDATE user " +
+					"SET password = ?, new_account = false " +
+					"WHERE username = ?");
+			try {
+				update.setString(
+					1,
+					BCrypt.hashpw(
+						config.getAdminPassword(),
+						BCrypt.gensalt(13)));
+				update.setString(2, config.getAdminUsername());
+				update.executeUpdate();
+			}
+			finally {
+				update.close();
+			}
+		}
+		finally {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Returns the migrations in the order of their versions.
+	 * 
+	 * @return The migrations.
+	 * 
+	 * @throws IOException The directory has no migrations.
+	 */
+	private List<File> getMigrations() throws IOException {
+		File[] files = migrations.listFiles();
+		if(files == null) {
+			throw new IOException(
+				"The migrations directory is missing: " + migrations);
+		}
+
+		List<File> result = new ArrayList<File>();
+		for(File file : files) {
+			if(MIGRATION_PATTERN.matcher(file.getName()).matches()) {
+				result.add(file);
+			}
+		}
+		if(result.isEmpty()) {
+			throw new IOException("There are no migrations in: " + migrations);
+		}
+
+		Collections.sort(
+			result,
+			new Comparator<File>() {
+				@Override
+				public int compare(final File first, final File second) {
+					return
+						Integer.valueOf(getVersion(first))
+							.compareTo(getVersion(second));
+				}
+			});
+		return result;
+	}
+
+	/**
+	 * Splits a migration into its statements. Delimiters within quotes and
+	 * comments are ignored, and a "DELIMITER" line changes the delimiter, as
+	 * it does for stored procedures.
+	 * 
+	 * @param sql The migration.
+	 * 
+	 * @return The migration's statements, without their delimiters.
+	 */
+	static List<String> split(final String sql) {
+		List<String> result = new ArrayList<String>();
+		String delimiter = ";";
+		StringBuilder statement = new StringBuilder();
+		char quote = 0;
+		boolean blockComment = false;
+
+		for(String line : sql.split("\r?\n", -1)) {
+			if((quote == 0) &&
+				(! blockComment) &&
+				(statement.toString().trim().length() == 0)) {
+
+				Matcher matcher = DELIMITER_PATTERN.matcher(line);
+				if(matcher.matches()) {
+					delimiter = matcher.group(1);
+					statement.setLength(0);
+					continue;
+				}
+			}
+
+			int i = 0;
+			while(i < line.length()) {
+				char c = line.charAt(i);
+
+				if(blockComment) {
+					if(line.startsWith("*/", i)) {
+						blockComment = false;
+						i += 2;
+					}
+					else {
+						i++;
+					}
+				}
+				else if(quote != 0) {
+					statement.append(c);
+					if(c == '\\') {
+						if(i + 1 < line.length()) {
+							statement.append(line.charAt(i + 1));
+						}
+						i += 2;
+						continue;
+					}
+					if(c == quote) {
+						quote = 0;
+					}
+					i++;
+				}
+				else if(line.startsWith("--", i) || (c == '#')) {
+					break;
+				}
+				else if(line.startsWith("/*", i)) {
+					blockComment = true;
+					i += 2;
+				}
+				else if(line.startsWith(delimiter, i)) {
+					add(result, statement);
+					i += delimiter.length();
+				}
+				else {
+					if((c == '\'') || (c == '"') || (c == '`')) {
+						quote = c;
+					}
+					statement.append(c);
+					i++;
+				}
+			}
+			statement.append('\n');
+		}
+		add(result, statement);
+
+		return result;
+	}
+
+	/**
+	 * Adds a statement, unless it is empty, and clears it.
+	 */
+	private static void add(
+			final List<String> statements,
+			final StringBuilder statement) {
+
+		String value = statement.toString().trim();
+		if(value.length() > 0) {
+			statements.add(value);
+		}
+		statement.setLength(0);
+	}
+
+	/**
+	 * Returns a migration's version.
+	 */
+	private static int getVersion(final File migration) {
+		Matcher matcher = MIGRATION_PATTERN.matcher(migration.getName());
+		matcher.matches();
+		return Integer.parseInt(matcher.group(1));
+	}
+
+	/**
+	 * Reads a migration.
+	 */
+	private static String read(final File file) throws IOException {
+		InputStream input = new FileInputStream(file);
+		try {
+			return IOUtils.toString(input, "UTF-8");
+		}
+		finally {
+			input.close();
+		}
+	}
+
+	/**
+	 * Logs the setup's progress.
+	 */
+	private static void log(final String message) {
+		System.err.println(message);
+	}
+}
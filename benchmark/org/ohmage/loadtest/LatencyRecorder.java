@@ -0,0 +1,112 @@
+package org.ohmage.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the latency of every call to one endpoint and the reasons the
+ * failed calls failed. Every latency is kept, so the percentiles are exact,
+ * which is affordable for the length of a load test.
+ */
+public final class LatencyRecorder {
+	/**
+	 * The most distinct failure reasons that are kept.
+	 */
+	private static final int MAX_ERRORS = 10;
+
+	private long[] latencies = new long[1024];
+	private int count = 0;
+	private long numErrors = 0;
+	private final Map<String, Long> errors = new LinkedHashMap<String, Long>();
+
+	/**
+	 * Records a successful call.
+	 * 
+	 * @param nanos How long the call took, in nanoseconds.
+	 */
+	public synchronized void recordSuccess(final long nanos) {
+		if(count == latencies.length) {
+			latencies = Arrays.copyOf(latencies, count * 2);
+		}
+		latencies[count++] = nanos;
+	}
+
+	/**
+	 * Records a failed call. Failed calls are not part of the latencies.
+	 * 
+	 * @param reason Why the call failed.
+	 */
+	public synchronized void recordError(final String reason) {
+		numErrors++;
+
+		Long reasonCount = errors.get(reason);
+		if(reasonCount != null) {
+			errors.put(reason, reasonCount + 1);
+		}
+		else if(errors.size() < MAX_ERRORS) {
+			errors.put(reason, 1L);
+		}
+	}
+
+	/**
+	 * Returns the number of successful calls.
+	 * 
+	 * @return The number of successful calls.
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of failed calls.
+	 * 
+	 * @return The number of failed calls.
+	 */
+	public synchronized long getNumErrors() {
+		return numErrors;
+	}
+
+	/**
+	 * Returns the first distinct reasons calls failed and how often each
+	 * occurred.
+	 * 
+	 * @return The failure reasons and their counts.
+	 */
+	public synchronized Map<String, Long> getErrors() {
+		return new LinkedHashMap<String, Long>(errors);
+	}
+
+	/**
+	 * Returns the sorted latencies of the successful calls.
+	 * 
+	 * @return The latencies, in nanoseconds.
+	 */
+	public synchronized long[] getSortedLatencies() {
+		long[] result = Arrays.copyOf(latencies, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns a percentile of sorted latencies.
+	 * 
+	 * @param sorted The sorted latencies.
+	 * 
+	 * @param percentile The percentile, between 0 and 1.
+	 * 
+	 * @return The percentile's latency, in milliseconds, or 0 if there are no
+	 * 		   latencies.
+	 */
+	public static double getPercentile(
+			final long[] sorted,
+			final double percentile) {
+
+		if(sorted.length == 0) {
+			return 0;
+		}
+
+		int rank = (int) Math.ceil(sorted.length * percentile);
+		return sorted[Math.max(0, rank - 1)] / 1000000.0;
+	}
+}
@@ -0,0 +1,664 @@
+package org.ohmage.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTime;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.benchmark.CampaignFixtures;
+import org.ohmage.benchmark.ImageFixtures;
+import org.ohmage.benchmark.MobilityFixtures;
+import org.ohmage.benchmark.ObserverFixtures;
+import org.ohmage.benchmark.StandInHttp;
+import org.ohmage.domain.Clazz;
+import org.ohmage.domain.MobilityPoint;
+import org.ohmage.domain.campaign.Campaign;
+import org.ohmage.domain.campaign.SurveyResponse;
+import org.ohmage.exception.DomainException;
+import org.ohmage.lib.OhmageApi;
+import org.ohmage.lib.exception.ApiException;
+import org.ohmage.lib.exception.RequestErrorException;
+import org.ohmage.request.RequestBuilder;
+
+/**
+ * Generates load against a running ohmage server through the
+ * {@link OhmageApi} and reports the throughput and latency of each endpoint.
+ * 
+ * The server is either a deployment that is not in use, such as one started
+ * from the Dockerfile, whose database has been created by db/migration, or
+ * the WAR booted in an {@link EmbeddedServer} against a new local MySQL
+ * database that it creates from db/migration. The load test creates a class, a campaign with a photo prompt in every survey,
+ * an observer, and its users, all of which it reuses on later runs, and then
+ * each of its threads repeatedly makes a call, chosen by the scenarios'
+ * weights, on behalf of a random user:
+ * 
+ * <pre>ant load-test -Dloadtest.config=benchmark/loadtest.properties</pre>
+ * <pre>ant load-test-embedded -Dtomcat.home=/usr/local/tomcat</pre>
+ */
+public final class LoadTest {
+	private static final String DEFAULT_CONFIG = "benchmark/loadtest.properties";
+
+	private static final String CLASS_ID = "urn:class:loadtest";
+
+	/**
+	 * The number of distinct photos that are uploaded. Every upload reuses
+	 * them, as generating a photo takes longer than uploading it.
+	 */
+	private static final int NUM_IMAGES = 4;
+
+	/**
+	 * The range of the survey responses that are read, which includes every
+	 * generated response.
+	 */
+	private static final DateTime READ_START_DATE = new DateTime(2000, 1, 1, 0, 0);
+
+	private final LoadTestConfig config;
+	private final List<byte[]> images;
+	private final Map<Scenario, LatencyRecorder> recorders;
+	private final Scenario[] weightedScenarios;
+
+	/**
+	 * The seed of the next generated upload. Every upload's IDs are derived
+	 * from its seed, so this starts from the time to keep them unique across
+	 * runs.
+	 */
+	private final AtomicLong nextSeed =
+		new AtomicLong(System.currentTimeMillis() << 20);
+
+	private Campaign campaign;
+	private DateTime campaignCreationTimestamp;
+	private List<LoadTestUser> users;
+
+	/**
+	 * Creates a load test.
+	 * 
+	 * @param config The load test's configuration.
+	 * 
+	 * @throws IOException The photos could not be generated.
+	 */
+	public LoadTest(final LoadTestConfig config) throws IOException {
+		this.config = config;
+
+		images = new ArrayList<byte[]>(NUM_IMAGES);
+		for(int i = 0; i < NUM_IMAGES; i++) {
+			images.add(
+				ImageFixtures.createJpeg(
+					config.getImageWidth(),
+					config.getImageHeight(),
+					i));
+		}
+
+		recorders = new EnumMap<Scenario, LatencyRecorder>(Scenario.class);
+		List<Scenario> scenarios = new ArrayList<Scenario>();
+		for(Scenario scenario : Scenario.values()) {
+			recorders.put(scenario, new LatencyRecorder());
+			for(int i = 0; i < config.getWeight(scenario); i++) {
+				scenarios.add(scenario);
+			}
+		}
+		weightedScenarios = scenarios.toArray(new Scenario[scenarios.size()]);
+	}
+
+	/**
+	 * Runs the load test.
+	 * 
+	 * @param args The configuration's filename, optionally, followed by the
+	 * 			   WAR and the migrations' directory if the server should be
+	 * 			   embedded.
+	 * 
+	 * @throws Exception The load test could not be set up.
+	 */
+	public static void main(final String[] args) throws Exception {
+		LoadTestConfig config =
+			LoadTestConfig.load((args.length > 0) ? args[0] : DEFAULT_CONFIG);
+
+		// The client builds its URLs from the request builder, which is
+		// normally created by the server.
+		new RequestBuilder().setServletContext(
+			StandInHttp.createServletContext(config.getContextPath()));
+
+		EmbeddedServer server = null;
+		if(args.length > 2) {
+			server =
+				new EmbeddedServer(config, new File(args[1]), new File(args[2]));
+			server.start();
+		}
+
+		try {
+			LoadTest loadTest = new LoadTest(config);
+			loadTest.setUp();
+			loadTest.run();
+			loadTest.report(System.out);
+		}
+		finally {
+			if(server != null) {
+				server.stop();
+			}
+		}
+	}
+
+	/**
+	 * Creates the class, campaign, observer, and users if they do not already
+	 * exist and gives every user a survey upload, with photos, to read.
+	 * 
+	 * @throws ApiException The server could not be set up.
+	 * 
+	 * @throws JSONException The survey responses could not be generated.
+	 * 
+	 * @throws DomainException The campaign could not be generated.
+	 */
+	public void setUp() throws ApiException, JSONException, DomainException {
+		OhmageApi api = createApi();
+		try {
+			String client = config.getClient();
+
+			if(config.getAdminInitialPassword() != null) {
+				try {
+					api.changePassword(
+						config.getAdminUsername(),
+						config.getAdminInitialPassword(),
+						client,
+						config.getAdminPassword());
+					log("Changed the admin's password.");
+				}
+				catch(RequestErrorException e) {
+					log("Did not change the admin's password: " + e);
+				}
+			}
+			String adminToken =
+				api.getAuthenticationToken(
+					config.getAdminUsername(),
+					config.getAdminPassword(),
+					client);
+
+			try {
+				api.createClass(
+					adminToken,
+					client,
+					CLASS_ID,
+					"Load Test",
+					"Generated by the load test.");
+				log("Created the class.");
+			}
+			catch(RequestErrorException e) {
+				log("Using the existing class: " + e);
+			}
+
+			users = new ArrayList<LoadTestUser>(config.getNumUsers());
+			Map<String, Clazz.Role> members = new HashMap<String, Clazz.Role>();
+			for(int i = 0; i < config.getNumUsers(); i++) {
+				String username = config.getUserPrefix() + i;
+				String hashedPassword;
+				try {
+					hashedPassword =
+						api.getHashedPassword(
+							username,
+							config.getUserPassword(),
+							client);
+				}
+				catch(RequestErrorException e) {
+					api.createUser(
+						adminToken,
+						client,
+						username,
+						config.getUserPassword(),
+						false,
+						true,
+						false,
+						false);
+					hashedPassword =
+						api.getHashedPassword(
+							username,
+							config.getUserPassword(),
+							client);
+				}
+
+				users.add(
+					new LoadTestUser(
+						username,
+						hashedPassword,
+						api.getAuthenticationToken(
+							username,
+							config.getUserPassword(),
+							client)));
+				members.put(username, Clazz.Role.RESTRICTED);
+			}
+			api.updateClass(adminToken, client, CLASS_ID, null, null, members, null);
+			log("Set up " + users.size() + " users.");
+
+			campaign =
+				CampaignFixtures.createCampaign(
+					config.getNumSurveys(),
+					config.getNumPrompts(),
+					true);
+			try {
+				api.createCampaign(
+					adminToken,
+					client,
+					Campaign.RunningState.RUNNING,
+					Campaign.PrivacyState.SHARED,
+					Arrays.asList(CLASS_ID),
+					CampaignFixtures.createXml(
+						config.getNumSurveys(),
+						config.getNumPrompts(),
+						true),
+					"Generated by the load test.");
+				log("Created the campaign.");
+			}
+			catch(RequestErrorException e) {
+				log(
+					"Using the existing campaign, which must have the " +
+						"configured number of surveys and prompts: " +
+						e);
+			}
+			campaignCreationTimestamp =
+				api.getCampaigns(
+						adminToken,
+						client,
+						Campaign.OutputFormat.SHORT,
+						Arrays.asList(CampaignFixtures.CAMPAIGN_ID),
+						null,
+						null,
+						null,
+						null,
+						null,
+						null)
+					.get(CampaignFixtures.CAMPAIGN_ID)
+					.getCreationTimestamp();
+
+			try {
+				api.createObserver(
+					adminToken,
+					client,
+					ObserverFixtures.createXml());
+				log("Created the observer.");
+			}
+			catch(RequestErrorException e) {
+				log("Using the existing observer: " + e);
+			}
+
+			for(LoadTestUser user : users) {
+				uploadSurveyResponses(api, user);
+			}
+			log("Uploaded survey responses for every user.");
+		}
+		finally {
+			api.shutdown();
+		}
+	}
+
+	/**
+	 * Runs every thread for the warmup and then the duration and waits for
+	 * them to finish.
+	 * 
+	 * @throws InterruptedException The load test was interrupted.
+	 */
+	public void run() throws InterruptedException {
+		long now = System.currentTimeMillis();
+		final long warmupEnd = now + config.getWarmupMillis();
+		final long end = warmupEnd + config.getDurationMillis();
+
+		log(
+			"Running " + config.getNumThreads() + " threads for " +
+				(config.getWarmupMillis() / 1000) + "s of warmup and " +
+				(config.getDurationMillis() / 1000) + "s of measurement.");
+
+		List<Thread> threads = new ArrayList<Thread>(config.getNumThreads());
+		for(int i = 0; i < config.getNumThreads(); i++) {
+			final long seed = i;
+			Thread thread =
+				new Thread(
+					new Runnable() {
+						@Override
+						public void run() {
+							runThread(new Random(seed), warmupEnd, end);
+						}
+					},
+					"loadtest-" + i);
+			threads.add(thread);
+			thread.start();
+		}
+		for(Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Prints the throughput, latencies, and errors of each endpoint.
+	 * 
+	 * @param out The stream to which the report is printed.
+	 */
+	public void report(final PrintStream out) {
+		double seconds = config.getDurationMillis() / 1000.0;
+
+		out.println();
+		out.printf(
+			"%-22s %8s %7s %9s %8s %8s %8s %8s %8s %8s%n",
+			"Endpoint (ms)", "Calls", "Errors", "Calls/s",
+			"Mean", "p50", "p90", "p95", "p99", "Max");
+
+		long totalCalls = 0;
+		long totalErrors = 0;
+		for(Scenario scenario : Scenario.values()) {
+			LatencyRecorder recorder = recorders.get(scenario);
+			long[] latencies = recorder.getSortedLatencies();
+
+			long sum = 0;
+			for(long latency : latencies) {
+				sum += latency;
+			}
+			double mean =
+				(latencies.length == 0) ?
+					0 :
+					sum / (latencies.length * 1000000.0);
+
+			out.printf(
+				"%-22s %8d %7d %9.1f %8.1f %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+				scenario.getKey(),
+				latencies.length,
+				recorder.getNumErrors(),
+				latencies.length / seconds,
+				mean,
+				LatencyRecorder.getPercentile(latencies, 0.50),
+				LatencyRecorder.getPercentile(latencies, 0.90),
+				LatencyRecorder.getPercentile(latencies, 0.95),
+				LatencyRecorder.getPercentile(latencies, 0.99),
+				LatencyRecorder.getPercentile(latencies, 1.0));
+
+			totalCalls += latencies.length;
+			totalErrors += recorder.getNumErrors();
+		}
+		out.printf(
+			"%-22s %8d %7d %9.1f%n",
+			"total",
+			totalCalls,
+			totalErrors,
+			totalCalls / seconds);
+
+		for(Scenario scenario : Scenario.values()) {
+			Map<String, Long> errors = recorders.get(scenario).getErrors();
+			if(errors.isEmpty()) {
+				continue;
+			}
+
+			out.println();
+			out.println("Errors for " + scenario.getKey() + ":");
+			for(Map.Entry<String, Long> error : errors.entrySet()) {
+				out.println("  " + error.getValue() + "x " + error.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Makes calls until the load test ends. Only the calls that start after
+	 * the warmup are recorded. Each thread has its own client, so that the
+	 * threads do not share a connection pool.
+	 * 
+	 * @param random The source of the thread's choices.
+	 * 
+	 * @param warmupEnd When the warmup ends.
+	 * 
+	 * @param end When the load test ends.
+	 */
+	private void runThread(
+			final Random random,
+			final long warmupEnd,
+			final long end) {
+
+		OhmageApi api = createApi();
+		try {
+			long now;
+			while((now = System.currentTimeMillis()) < end) {
+				Scenario scenario =
+					weightedScenarios[random.nextInt(weightedScenarios.length)];
+				LoadTestUser user = users.get(random.nextInt(users.size()));
+
+				LatencyRecorder recorder =
+					(now >= warmupEnd) ? recorders.get(scenario) : null;
+				try {
+					long nanos = execute(api, random, scenario, user);
+					if(recorder != null) {
+						recorder.recordSuccess(nanos);
+					}
+				}
+				catch(RequestErrorException e) {
+					if(recorder != null) {
+						recorder.recordError(e.toString());
+					}
+				}
+				catch(ApiException e) {
+					if(recorder != null) {
+						Throwable cause = (e.getCause() == null) ? e : e.getCause();
+						recorder.recordError(e.getMessage() + " " + cause);
+					}
+				}
+
+				if(config.getThinkTimeMillis() > 0) {
+					Thread.sleep(config.getThinkTimeMillis());
+				}
+			}
+		}
+		catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			api.shutdown();
+		}
+	}
+
+	/**
+	 * Makes one call. The call's data is generated before the call is timed.
+	 * 
+	 * @param api The client.
+	 * 
+	 * @param random The source of any choices.
+	 * 
+	 * @param scenario The call to make.
+	 * 
+	 * @param user The user on whose behalf the call is made.
+	 * 
+	 * @return How long the call took, in nanoseconds.
+	 * 
+	 * @throws ApiException The call failed.
+	 */
+	private long execute(
+			final OhmageApi api,
+			final Random random,
+			final Scenario scenario,
+			final LoadTestUser user)
+			throws ApiException {
+
+		String client = config.getClient();
+		try {
+			long start;
+			switch(scenario) {
+			case AUTH:
+				start = System.nanoTime();
+				user.setAuthenticationToken(
+					api.getAuthenticationToken(
+						user.getUsername(),
+						config.getUserPassword(),
+						client));
+				return System.nanoTime() - start;
+
+			case SURVEY_UPLOAD:
+				return uploadSurveyResponses(api, user);
+
+			case MOBILITY_UPLOAD:
+				List<MobilityPoint> points =
+					MobilityFixtures.createPoints(
+						config.getNumMobilityPoints(),
+						nextSeed.getAndIncrement());
+				start = System.nanoTime();
+				api.uploadMobilityPoints(
+					user.getUsername(),
+					user.getHashedPassword(),
+					client,
+					points);
+				return System.nanoTime() - start;
+
+			case STREAM_UPLOAD:
+				JSONArray data =
+					ObserverFixtures.createUpload(
+						config.getNumStreamPoints(),
+						nextSeed.getAndIncrement());
+				start = System.nanoTime();
+				api.uploadStreamData(
+					user.getUsername(),
+					user.getHashedPassword(),
+					client,
+					ObserverFixtures.OBSERVER_ID,
+					ObserverFixtures.OBSERVER_VERSION,
+					data);
+				return System.nanoTime() - start;
+
+			case SURVEY_RESPONSE_READ:
+				start = System.nanoTime();
+				api.getSurveyResponsesJsonRows(
+					user.getAuthenticationToken(),
+					null,
+					null,
+					client,
+					CampaignFixtures.CAMPAIGN_ID,
+					Arrays.asList(user.getUsername()),
+					new ArrayList<SurveyResponse.ColumnKey>(),
+					new ArrayList<String>(),
+					null,
+					READ_START_DATE,
+					new DateTime(),
+					null,
+					null,
+					null,
+					null);
+				return System.nanoTime() - start;
+
+			case IMAGE_READ:
+				UUID imageId = user.getRandomImageId(random);
+				if(imageId == null) {
+					throw new ApiException("The user has not uploaded any images.");
+				}
+				start = System.nanoTime();
+				api.getImage(
+					user.getAuthenticationToken(),
+					client,
+					imageId,
+					config.getImageReadSize());
+				return System.nanoTime() - start;
+
+			case CAMPAIGN_READ:
+				start = System.nanoTime();
+				api.getCampaigns(
+					user.getAuthenticationToken(),
+					client,
+					Campaign.OutputFormat.LONG,
+					Arrays.asList(CampaignFixtures.CAMPAIGN_ID),
+					null,
+					null,
+					null,
+					null,
+					null,
+					null);
+				return System.nanoTime() - start;
+
+			default:
+				throw new IllegalStateException(
+					"The scenario is unknown: " + scenario);
+			}
+		}
+		catch(JSONException e) {
+			throw new IllegalStateException("The data could not be generated.", e);
+		}
+		catch(DomainException e) {
+			throw new IllegalStateException("The data could not be generated.", e);
+		}
+	}
+
+	/**
+	 * Uploads a burst of survey responses, each with a photo, and remembers
+	 * the photos so that they can be read.
+	 * 
+	 * @param api The client.
+	 * 
+	 * @param user The user on whose behalf the responses are uploaded.
+	 * 
+	 * @return How long the upload took, in nanoseconds.
+	 * 
+	 * @throws ApiException The upload failed.
+	 * 
+	 * @throws JSONException The responses could not be generated.
+	 * 
+	 * @throws DomainException The responses could not be generated.
+	 */
+	private long uploadSurveyResponses(
+			final OhmageApi api,
+			final LoadTestUser user)
+			throws ApiException, JSONException, DomainException {
+
+		int numResponses = config.getNumSurveyResponses();
+		long seed = nextSeed.getAndIncrement();
+
+		List<SurveyResponse> surveyResponses =
+			CampaignFixtures.createSurveyResponses(
+				campaign,
+				CampaignFixtures.createUpload(
+					config.getNumSurveys(),
+					config.getNumPrompts(),
+					numResponses,
+					seed,
+					true));
+
+		Map<UUID, byte[]> responseImages = new HashMap<UUID, byte[]>();
+		for(int r = 0; r < numResponses; r++) {
+			responseImages.put(
+				CampaignFixtures.getImageId(seed, r),
+				images.get(r % images.size()));
+		}
+
+		long start = System.nanoTime();
+		api.uploadSurveyResponses(
+			user.getUsername(),
+			user.getHashedPassword(),
+			config.getClient(),
+			CampaignFixtures.CAMPAIGN_ID,
+			campaignCreationTimestamp,
+			surveyResponses,
+			responseImages);
+		long nanos = System.nanoTime() - start;
+
+		user.addImageIds(responseImages.keySet());
+		return nanos;
+	}
+
+	/**
+	 * Creates a client for the configured server.
+	 * 
+	 * @return The client.
+	 */
+	private OhmageApi createApi() {
+		return
+			new OhmageApi(
+				config.getServerAddress(),
+				config.getServerPort(),
+				config.isServerSecure());
+	}
+
+	/**
+	 * Prints a progress message.
+	 * 
+	 * @param message The message.
+	 */
+	private static void log(final String message) {
+		System.out.println(message);
+	}
+}
@@ -0,0 +1,520 @@
+package org.ohmage.loadtest;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.ohmage.domain.Image;
+
+/**
+ * The load test's configuration, which is read from a properties file. See
+ * benchmark/loadtest.properties for every key and its meaning.
+ */
+public final class LoadTestConfig {
+	private static final String KEY_WEIGHT_PREFIX = "weight.";
+
+	private final String serverAddress;
+	private final int serverPort;
+	private final boolean serverSecure;
+	private final String contextPath;
+	private final String client;
+
+	private final String adminUsername;
+	private final String adminPassword;
+	private final String adminInitialPassword;
+
+	private final int numUsers;
+	private final String userPrefix;
+	private final String userPassword;
+
+	private final int numThreads;
+	private final long warmupMillis;
+	private final long durationMillis;
+	private final long thinkTimeMillis;
+
+	private final int numSurveys;
+	private final int numPrompts;
+	private final int numSurveyResponses;
+	private final int numMobilityPoints;
+	private final int numStreamPoints;
+	private final int imageWidth;
+	private final int imageHeight;
+	private final Image.Size imageReadSize;
+
+	private final Map<Scenario, Integer> weights;
+
+	private final String embeddedDbUrl;
+	private final String embeddedDbName;
+	private final String embeddedDbUsername;
+	private final String embeddedDbPassword;
+	private final String embeddedBaseDir;
+
+	/**
+	 * Reads the configuration.
+	 * 
+	 * @param properties The configuration's properties.
+	 * 
+	 * @throws IllegalArgumentException A value was missing or invalid.
+	 */
+	public LoadTestConfig(final Properties properties) {
+		serverAddress = getString(properties, "server.address", "localhost");
+		serverPort = getInt(properties, "server.port", 8080);
+		serverSecure = getBoolean(properties, "server.secure", false);
+		contextPath = getString(properties, "server.context_path", "/app");
+		client = getString(properties, "client", "loadtest");
+
+		adminUsername = getString(properties, "admin.username", "ohmage.admin");
+		adminPassword = getString(properties, "admin.password", null);
+		adminInitialPassword =
+			getString(properties, "admin.initial_password", null);
+
+		numUsers = getInt(properties, "users", 20);
+		userPrefix = getString(properties, "user.prefix", "loadtest.user");
+		userPassword =
+			getString(properties, "user.password", "Loadtest.passw0rd");
+
+		numThreads = getInt(properties, "threads", 16);
+		warmupMillis = getInt(properties, "warmup", 30) * 1000L;
+		durationMillis = getInt(properties, "duration", 120) * 1000L;
+		thinkTimeMillis = getInt(properties, "think_time", 0);
+
+		numSurveys = getInt(properties, "campaign.surveys", 5);
+		numPrompts = getInt(properties, "campaign.prompts", 20);
+		numSurveyResponses = getInt(properties, "survey_upload.responses", 10);
+		numMobilityPoints = getInt(properties, "mobility_upload.points", 60);
+		numStreamPoints = getInt(properties, "stream_upload.points", 100);
+		imageWidth = getInt(properties, "image.width", 1024);
+		imageHeight = getInt(properties, "image.height", 768);
+
+		String size = getString(properties, "image_read.size", "original");
+		imageReadSize = Image.getSize(size);
+		if(imageReadSize == null) {
+			throw new IllegalArgumentException(
+				"The image size is unknown: " + size);
+		}
+
+		weights = new EnumMap<Scenario, Integer>(Scenario.class);
+		int totalWeight = 0;
+		for(Scenario scenario : Scenario.values()) {
+			int weight =
+				getInt(properties, KEY_WEIGHT_PREFIX + scenario.getKey(), 1);
+			weights.put(scenario, weight);
+			totalWeight += weight;
+		}
+		if(totalWeight == 0) {
+			throw new IllegalArgumentException(
+				"At least one scenario must have a weight.");
+		}
+
+		embeddedDbUrl =
+			getString(
+				properties,
+				"embedded.db.url",
+				"jdbc:mysql://localhost:3306/");
+		embeddedDbName =
+			getString(properties, "embedded.db.name", "ohmage_loadtest");
+		embeddedDbUsername =
+			getString(properties, "embedded.db.username", "root");
+		embeddedDbPassword =
+			getString(properties, "embedded.db.password", "");
+		embeddedBaseDir =
+			getString(properties, "embedded.base_dir", "build/loadtest");
+
+		if(adminPassword == null) {
+			throw new IllegalArgumentException(
+				"The admin's password is missing: admin.password");
+		}
+		if((numUsers < 1) || (numThreads < 1)) {
+			throw new IllegalArgumentException(
+				"There must be at least one user and one thread.");
+		}
+	}
+
+	/**
+	 * Reads the configuration from a properties file.
+	 * 
+	 * @param filename The properties file.
+	 * 
+	 * @return The configuration.
+	 * 
+	 * @throws IOException The file could not be read.
+	 * 
+	 * @throws IllegalArgumentException A value was missing or invalid.
+	 */
+	public static LoadTestConfig load(
+			final String filename)
+			throws IOException {
+
+		Properties properties = new Properties();
+		InputStream input = new FileInputStream(filename);
+		try {
+			properties.load(input);
+		}
+		finally {
+			input.close();
+		}
+		return new LoadTestConfig(properties);
+	}
+
+	/**
+	 * Returns the server's address.
+	 * 
+	 * @return The server's address.
+	 */
+	public String getServerAddress() {
+		return serverAddress;
+	}
+
+	/**
+	 * Returns the server's port.
+	 * 
+	 * @return The server's port.
+	 */
+	public int getServerPort() {
+		return serverPort;
+	}
+
+	/**
+	 * Returns whether the server is called over HTTPS.
+	 * 
+	 * @return Whether the server is called over HTTPS.
+	 */
+	public boolean isServerSecure() {
+		return serverSecure;
+	}
+
+	/**
+	 * Returns the context path at which ohmage is deployed.
+	 * 
+	 * @return The context path at which ohmage is deployed.
+	 */
+	public String getContextPath() {
+		return contextPath;
+	}
+
+	/**
+	 * Returns the client value with which every call is made.
+	 * 
+	 * @return The client value with which every call is made.
+	 */
+	public String getClient() {
+		return client;
+	}
+
+	/**
+	 * Returns the admin's username.
+	 * 
+	 * @return The admin's username.
+	 */
+	public String getAdminUsername() {
+		return adminUsername;
+	}
+
+	/**
+	 * Returns the admin's password.
+	 * 
+	 * @return The admin's password.
+	 */
+	public String getAdminPassword() {
+		return adminPassword;
+	}
+
+	/**
+	 * Returns the admin's password from before the load test changes it,
+	 * which is needed the first time the test is run against a new database.
+	 * 
+	 * @return The admin's initial password or null if it should not be
+	 * 		   changed.
+	 */
+	public String getAdminInitialPassword() {
+		return adminInitialPassword;
+	}
+
+	/**
+	 * Returns the number of users on whose behalf calls are made.
+	 * 
+	 * @return The number of users on whose behalf calls are made.
+	 */
+	public int getNumUsers() {
+		return numUsers;
+	}
+
+	/**
+	 * Returns the prefix of the users' usernames.
+	 * 
+	 * @return The prefix of the users' usernames.
+	 */
+	public String getUserPrefix() {
+		return userPrefix;
+	}
+
+	/**
+	 * Returns the users' password.
+	 * 
+	 * @return The users' password.
+	 */
+	public String getUserPassword() {
+		return userPassword;
+	}
+
+	/**
+	 * Returns the number of threads that make calls.
+	 * 
+	 * @return The number of threads that make calls.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Returns how long calls are made before they are recorded, in
+	 * milliseconds.
+	 * 
+	 * @return How long calls are made before they are recorded, in
+	 * 		   milliseconds.
+	 */
+	public long getWarmupMillis() {
+		return warmupMillis;
+	}
+
+	/**
+	 * Returns how long calls are recorded, in milliseconds.
+	 * 
+	 * @return How long calls are recorded, in milliseconds.
+	 */
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * Returns how long each thread waits between calls, in milliseconds.
+	 * 
+	 * @return How long each thread waits between calls, in milliseconds.
+	 */
+	public long getThinkTimeMillis() {
+		return thinkTimeMillis;
+	}
+
+	/**
+	 * Returns the number of surveys in the campaign.
+	 * 
+	 * @return The number of surveys in the campaign.
+	 */
+	public int getNumSurveys() {
+		return numSurveys;
+	}
+
+	/**
+	 * Returns the number of prompts in each survey, not counting the photo
+	 * prompt.
+	 * 
+	 * @return The number of prompts in each survey, not counting the photo
+	 * 		   prompt.
+	 */
+	public int getNumPrompts() {
+		return numPrompts;
+	}
+
+	/**
+	 * Returns the number of survey responses in each upload.
+	 * 
+	 * @return The number of survey responses in each upload.
+	 */
+	public int getNumSurveyResponses() {
+		return numSurveyResponses;
+	}
+
+	/**
+	 * Returns the number of Mobility points in each upload.
+	 * 
+	 * @return The number of Mobility points in each upload.
+	 */
+	public int getNumMobilityPoints() {
+		return numMobilityPoints;
+	}
+
+	/**
+	 * Returns the number of stream data points in each upload.
+	 * 
+	 * @return The number of stream data points in each upload.
+	 */
+	public int getNumStreamPoints() {
+		return numStreamPoints;
+	}
+
+	/**
+	 * Returns the width of the uploaded images.
+	 * 
+	 * @return The width of the uploaded images.
+	 */
+	public int getImageWidth() {
+		return imageWidth;
+	}
+
+	/**
+	 * Returns the height of the uploaded images.
+	 * 
+	 * @return The height of the uploaded images.
+	 */
+	public int getImageHeight() {
+		return imageHeight;
+	}
+
+	/**
+	 * Returns the size in which images are read.
+	 * 
+	 * @return The size in which images are read.
+	 */
+	public Image.Size getImageReadSize() {
+		return imageReadSize;
+	}
+
+	/**
+	 * Returns how often a scenario is chosen relative to the others.
+	 * 
+	 * @param scenario The scenario.
+	 * 
+	 * @return The scenario's weight.
+	 */
+	public int getWeight(final Scenario scenario) {
+		return weights.get(scenario);
+	}
+
+	/**
+	 * Returns the JDBC URL of the MySQL server on which the embedded server's
+	 * database is created, without a database.
+	 * 
+	 * @return The MySQL server's JDBC URL.
+	 */
+	public String getEmbeddedDbUrl() {
+		return embeddedDbUrl;
+	}
+
+	/**
+	 * Returns the name of the embedded server's database, which is dropped
+	 * and recreated each time the server is started.
+	 * 
+	 * @return The database's name.
+	 */
+	public String getEmbeddedDbName() {
+		return embeddedDbName;
+	}
+
+	/**
+	 * Returns the MySQL user that creates and uses the embedded server's
+	 * database.
+	 * 
+	 * @return The MySQL user's name.
+	 */
+	public String getEmbeddedDbUsername() {
+		return embeddedDbUsername;
+	}
+
+	/**
+	 * Returns the MySQL user's password.
+	 * 
+	 * @return The MySQL user's password, which may be empty.
+	 */
+	public String getEmbeddedDbPassword() {
+		return embeddedDbPassword;
+	}
+
+	/**
+	 * Returns the directory in which the embedded server keeps Tomcat's
+	 * files and ohmage's media.
+	 * 
+	 * @return The embedded server's base directory.
+	 */
+	public String getEmbeddedBaseDir() {
+		return embeddedBaseDir;
+	}
+
+	/**
+	 * Returns a string value.
+	 * 
+	 * @param properties The properties.
+	 * 
+	 * @param key The value's key.
+	 * 
+	 * @param defaultValue The value if it is missing or empty.
+	 * 
+	 * @return The value.
+	 */
+	private static String getString(
+			final Properties properties,
+			final String key,
+			final String defaultValue) {
+
+		String value = properties.getProperty(key);
+		if((value == null) || (value.trim().length() == 0)) {
+			return defaultValue;
+		}
+		return value.trim();
+	}
+
+	/**
+	 * Returns a non-negative integer value.
+	 * 
+	 * @param properties The properties.
+	 * 
+	 * @param key The value's key.
+	 * 
+	 * @param defaultValue The value if it is missing or empty.
+	 * 
+	 * @return The value.
+	 * 
+	 * @throws IllegalArgumentException The value is not a non-negative
+	 * 									integer.
+	 */
+	private static int getInt(
+			final Properties properties,
+			final String key,
+			final int defaultValue) {
+
+		String value = getString(properties, key, null);
+		if(value == null) {
+			return defaultValue;
+		}
+
+		int result;
+		try {
+			result = Integer.parseInt(value);
+		}
+		catch(NumberFormatException e) {
+			throw new IllegalArgumentException(
+				"The value is not a number: " + key,
+				e);
+		}
+		if(result < 0) {
+			throw new IllegalArgumentException(
+				"The value cannot be negative: " + key);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a boolean value.
+	 * 
+	 * @param properties The properties.
+	 * 
+	 * @param key The value's key.
+	 * 
+	 * @param defaultValue The value if it is missing or empty.
+	 * 
+	 * @return The value.
+	 */
+	private static boolean getBoolean(
+			final Properties properties,
+			final String key,
+			final boolean defaultValue) {
+
+		String value = getString(properties, key, null);
+		if(value == null) {
+			return defaultValue;
+		}
+		return Boolean.parseBoolean(value);
+	}
+}
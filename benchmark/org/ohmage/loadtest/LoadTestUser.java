@@ -0,0 +1,101 @@
+package org.ohmage.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * A user on whose behalf the load test makes calls, along with what the
+ * calls need to know about what the user has already done.
+ */
+public final class LoadTestUser {
+	private final String username;
+	private final String hashedPassword;
+	private volatile String authenticationToken;
+
+	/**
+	 * The images this user has uploaded, from which the images to read are
+	 * chosen.
+	 */
+	private final List<UUID> imageIds = new ArrayList<UUID>();
+
+	/**
+	 * Creates a user.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param hashedPassword The user's hashed password.
+	 * 
+	 * @param authenticationToken The user's authentication token.
+	 */
+	public LoadTestUser(
+			final String username,
+			final String hashedPassword,
+			final String authenticationToken) {
+
+		this.username = username;
+		this.hashedPassword = hashedPassword;
+		this.authenticationToken = authenticationToken;
+	}
+
+	/**
+	 * Returns the user's username.
+	 * 
+	 * @return The user's username.
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns the user's hashed password, which the upload calls use.
+	 * 
+	 * @return The user's hashed password.
+	 */
+	public String getHashedPassword() {
+		return hashedPassword;
+	}
+
+	/**
+	 * Returns the user's most recent authentication token.
+	 * 
+	 * @return The user's authentication token.
+	 */
+	public String getAuthenticationToken() {
+		return authenticationToken;
+	}
+
+	/**
+	 * Replaces the user's authentication token.
+	 * 
+	 * @param authenticationToken The user's new authentication token.
+	 */
+	public void setAuthenticationToken(final String authenticationToken) {
+		this.authenticationToken = authenticationToken;
+	}
+
+	/**
+	 * Remembers images that the user has uploaded.
+	 * 
+	 * @param imageIds The images' IDs.
+	 */
+	public synchronized void addImageIds(final Collection<UUID> imageIds) {
+		this.imageIds.addAll(imageIds);
+	}
+
+	/**
+	 * Returns one of the images that the user has uploaded.
+	 * 
+	 * @param random The source of the choice.
+	 * 
+	 * @return The image's ID or null if the user has not uploaded any.
+	 */
+	public synchronized UUID getRandomImageId(final Random random) {
+		if(imageIds.isEmpty()) {
+			return null;
+		}
+		return imageIds.get(random.nextInt(imageIds.size()));
+	}
+}
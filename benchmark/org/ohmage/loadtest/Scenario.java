@@ -0,0 +1,35 @@
+package org.ohmage.loadtest;
+
+/**
+ * The calls that the load test makes. Each scenario is one call to the
+ * server and is reported on its own.
+ */
+public enum Scenario {
+	AUTH ("auth"),
+	SURVEY_UPLOAD ("survey_upload"),
+	MOBILITY_UPLOAD ("mobility_upload"),
+	STREAM_UPLOAD ("stream_upload"),
+	SURVEY_RESPONSE_READ ("survey_response_read"),
+	IMAGE_READ ("image_read"),
+	CAMPAIGN_READ ("campaign_read");
+
+	private final String key;
+
+	/**
+	 * Creates a scenario.
+	 * 
+	 * @param key The scenario's key in the configuration and report.
+	 */
+	private Scenario(final String key) {
+		this.key = key;
+	}
+
+	/**
+	 * Returns the scenario's key in the configuration and report.
+	 * 
+	 * @return The scenario's key.
+	 */
+	public String getKey() {
+		return key;
+	}
+}
@@ -0,0 +1,24 @@
+-- ----------------------------------------------------------------------
+-- An inverted index from the lower-cased words in each prompt response to
+-- that prompt response. New responses are indexed as they are uploaded.
+-- The responses that already exist are indexed in the background by the
+-- server, which records its progress in the preferences below. Until it
+-- has caught up to the end ID, searches do not use the index.
+-------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS prompt_response_token (
+  token varchar(64) NOT NULL,
+  prompt_response_id int unsigned NOT NULL,
+  PRIMARY KEY (token, prompt_response_id),
+  INDEX (prompt_response_id),
+  CONSTRAINT FOREIGN KEY (prompt_response_id) REFERENCES prompt_response (id) ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO preference (p_key, p_value) VALUES
+  ('prompt_response_token_backfill_id', '0')
+    ON DUPLICATE KEY UPDATE p_value=p_value;
+
+INSERT INTO preference (p_key, p_value)
+  SELECT 'prompt_response_token_backfill_end', IFNULL(MAX(id), 0)
+  FROM prompt_response
+    ON DUPLICATE KEY UPDATE p_value=p_value;
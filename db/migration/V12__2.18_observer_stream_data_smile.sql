@@ -0,0 +1,15 @@
+-- ----------------------------------------------------------------------
+-- Stream data may now be stored in the binary Smile encoding of JSON,
+-- which is smaller and much cheaper to parse. Exactly one of 'data' and
+-- 'data_smile' is set for each point. The existing points remain as JSON
+-- text and are read as before. The preference controls the encoding of
+-- newly uploaded points.
+-------------------------------------------------------------------------
+
+ALTER TABLE observer_stream_data
+  MODIFY data longtext DEFAULT NULL,
+  ADD COLUMN data_smile longblob DEFAULT NULL AFTER data;
+
+INSERT INTO preference (p_key, p_value) VALUES
+  ('observer_stream_data_binary', 'true')
+    ON DUPLICATE KEY UPDATE p_value=p_value;
@@ -0,0 +1,11 @@
+-- ----------------------------------------------------------------------
+-- Stream data may be paged with a cursor, the time and ID of the last
+-- point on the previous page, instead of a number of points to skip. This
+-- index lets each page seek directly to the point after the cursor in the
+-- order in which the points are returned, so reading deep into a stream
+-- costs the same as reading its first page.
+-------------------------------------------------------------------------
+
+ALTER TABLE observer_stream_data
+  ADD INDEX observer_stream_data_cursor
+    (user_id, observer_stream_link_id, time, id);
@@ -0,0 +1,104 @@
+-- ----------------------------------------------------------------------
+-- Hourly and daily summaries of each user's numeric stream data. Uploads
+-- mark the hours they touched as pending, and a background task then
+-- recomputes those hours from the raw points and the days that contain
+-- them from the hours. The summary of each numeric column is stored as a
+-- Smile-encoded object in 'data'. Aggregate reads that line up with the
+-- hours use these instead of scanning the raw points.
+-------------------------------------------------------------------------
+
+CREATE TABLE observer_stream_data_rollup (
+  id int unsigned NOT NULL AUTO_INCREMENT,
+  user_id int unsigned NOT NULL,
+  observer_stream_link_id int unsigned NOT NULL,
+  bucket_size bigint NOT NULL,
+  bucket_start bigint NOT NULL,
+  count bigint NOT NULL,
+  data blob NOT NULL,
+  last_modified_timestamp timestamp DEFAULT now() ON UPDATE now(),
+  PRIMARY KEY (id),
+  UNIQUE KEY observer_stream_data_rollup_unique_key_bucket
+    (user_id, observer_stream_link_id, bucket_size, bucket_start),
+  CONSTRAINT observer_stream_data_rollup_foreign_key_user_id
+    FOREIGN KEY (user_id)
+    REFERENCES user (id)
+    ON DELETE CASCADE ON UPDATE CASCADE,
+  CONSTRAINT observer_stream_data_rollup_foreign_key_link_id
+    FOREIGN KEY (observer_stream_link_id)
+    REFERENCES observer_stream_link (id)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE observer_stream_data_rollup_pending (
+  user_id int unsigned NOT NULL,
+  observer_stream_link_id int unsigned NOT NULL,
+  hour_start bigint NOT NULL,
+  PRIMARY KEY (user_id, observer_stream_link_id, hour_start),
+  CONSTRAINT observer_stream_data_rollup_pending_foreign_key_user_id
+    FOREIGN KEY (user_id)
+    REFERENCES user (id)
+    ON DELETE CASCADE ON UPDATE CASCADE,
+  CONSTRAINT observer_stream_data_rollup_pending_foreign_key_link_id
+    FOREIGN KEY (observer_stream_link_id)
+    REFERENCES observer_stream_link (id)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+-- Every existing hour is pending, so the summaries are filled in by the
+-- same task.
+INSERT IGNORE INTO observer_stream_data_rollup_pending
+  (user_id, observer_stream_link_id, hour_start)
+SELECT DISTINCT
+  user_id,
+  observer_stream_link_id,
+  time_adjusted - MOD(time_adjusted, 3600000)
+FROM observer_stream_data
+WHERE time_adjusted IS NOT NULL;
+
+-- ----------------------------------------------------------------------
+-- Retention policies. Raw points of a stream that are older than its
+-- policy's number of days are moved from 'observer_stream_data' into the
+-- compressed archive table, which is only read to compute the summaries.
+-- The policies apply to every version of a stream and are maintained by
+-- an administrator. Streams without a policy are kept indefinitely.
+--
+-- The compressed row format requires innodb_file_per_table and, before
+-- MySQL 5.7, innodb_file_format=Barracuda.
+-------------------------------------------------------------------------
+
+CREATE TABLE observer_stream_retention (
+  observer_id varchar(255) NOT NULL,
+  stream_id varchar(255) NOT NULL,
+  raw_retention_days int unsigned NOT NULL,
+  PRIMARY KEY (observer_id, stream_id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+CREATE TABLE observer_stream_data_archive (
+  id int unsigned NOT NULL,
+  user_id int unsigned NOT NULL,
+  observer_stream_link_id int unsigned NOT NULL,
+  uid varchar(255) DEFAULT NULL,
+  time bigint(20) DEFAULT NULL,
+  time_offset bigint(20) DEFAULT NULL,
+  time_adjusted bigint(20) DEFAULT NULL,
+  time_zone varchar(32) DEFAULT NULL,
+  location_timestamp varchar(64) DEFAULT NULL,
+  location_latitude double DEFAULT NULL,
+  location_longitude double DEFAULT NULL,
+  location_accuracy double DEFAULT NULL,
+  location_provider varchar(255) DEFAULT NULL,
+  data longtext DEFAULT NULL,
+  data_smile longblob DEFAULT NULL,
+  PRIMARY KEY (id),
+  INDEX observer_stream_data_archive_query
+    (user_id, observer_stream_link_id, time_adjusted),
+  CONSTRAINT observer_stream_data_archive_foreign_key_user_id
+    FOREIGN KEY (user_id)
+    REFERENCES user (id)
+    ON DELETE CASCADE ON UPDATE CASCADE,
+  CONSTRAINT observer_stream_data_archive_foreign_key_link_id
+    FOREIGN KEY (observer_stream_link_id)
+    REFERENCES observer_stream_link (id)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8
+  ROW_FORMAT=COMPRESSED KEY_BLOCK_SIZE=8;
@@ -0,0 +1,34 @@
+-- ----------------------------------------------------------------------
+-- The local days on which each user has stream data, which is all that
+-- the Mobility dates read needs. 'day' is the number of days since the
+-- epoch in the points' local time, i.e. their adjusted time divided by the
+-- number of milliseconds in a day. New points are indexed as they are
+-- uploaded. The points that already exist are indexed in the background
+-- by the server, which records its progress in the preferences below.
+-- Until it has caught up to the end ID, the dates are read from the
+-- stream data itself.
+-------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS observer_stream_data_day (
+  user_id int unsigned NOT NULL,
+  observer_stream_link_id int unsigned NOT NULL,
+  day int NOT NULL,
+  PRIMARY KEY (user_id, observer_stream_link_id, day),
+  CONSTRAINT observer_stream_data_day_foreign_key_user_id
+    FOREIGN KEY (user_id)
+    REFERENCES user (id)
+    ON DELETE CASCADE ON UPDATE CASCADE,
+  CONSTRAINT observer_stream_data_day_foreign_key_link_id
+    FOREIGN KEY (observer_stream_link_id)
+    REFERENCES observer_stream_link (id)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO preference (p_key, p_value) VALUES
+  ('observer_stream_data_day_backfill_id', '0')
+    ON DUPLICATE KEY UPDATE p_value=p_value;
+
+INSERT INTO preference (p_key, p_value)
+  SELECT 'observer_stream_data_day_backfill_end', IFNULL(MAX(id), 0)
+  FROM observer_stream_data
+    ON DUPLICATE KEY UPDATE p_value=p_value;
@@ -0,0 +1,36 @@
+-- ----------------------------------------------------------------------
+-- Export jobs. A job executes a survey response, Mobility, or stream read
+-- in the background and writes its response, GZIP-compressed, to a file
+-- named after the job's UUID in the export directory. The file may then
+-- be downloaded, in ranges, until the job expires, after which the file
+-- and the job are deleted. 'status' is one of pending, running, complete,
+-- or failed. Jobs are executed on the server that created them, so a job
+-- that is pending or running when the server starts is marked failed.
+-------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS export_job (
+  id int unsigned NOT NULL AUTO_INCREMENT,
+  uuid char(36) NOT NULL,
+  user_id int unsigned NOT NULL,
+  type varchar(32) NOT NULL,
+  status varchar(16) NOT NULL,
+  content_type varchar(255) DEFAULT NULL,
+  size bigint DEFAULT NULL,
+  error text DEFAULT NULL,
+  creation_timestamp datetime NOT NULL,
+  completion_timestamp datetime DEFAULT NULL,
+  expiration_timestamp datetime DEFAULT NULL,
+  last_modified_timestamp timestamp DEFAULT now() ON UPDATE now(),
+  PRIMARY KEY (id),
+  UNIQUE KEY export_job_unique_key_uuid (uuid),
+  INDEX export_job_index_expiration (expiration_timestamp),
+  CONSTRAINT export_job_foreign_key_user_id
+    FOREIGN KEY (user_id)
+    REFERENCES user (id)
+    ON DELETE CASCADE ON UPDATE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO preference (p_key, p_value) VALUES
+  ('export_directory', '${base_dir}/exports'),
+  ('export_job_lifetime', '24')
+    ON DUPLICATE KEY UPDATE p_value=p_value;
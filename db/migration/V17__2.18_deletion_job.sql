@@ -0,0 +1,29 @@
+-- ----------------------------------------------------------------------
+-- Campaign and user deletions. Deleting a campaign or a user only renames
+-- it to a tombstone, '#deleted#' followed by its ID, which no request can
+-- name, revokes everyone's access to it, and creates a job here. The
+-- server then deletes the entity's survey responses, media, and other data
+-- in small batches in the background and, once they are gone, the entity
+-- itself. 'entity_id' is the campaign's or user's ID and 'name' is the URN
+-- or username it had when it was deleted. 'status' is one of pending,
+-- running, or complete. A batch that fails is retried later and its error
+-- is kept in 'error'. A job that is running when the server stops
+-- continues where it left off when the server starts.
+-------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS deletion_job (
+  id int unsigned NOT NULL AUTO_INCREMENT,
+  type varchar(16) NOT NULL,
+  entity_id int unsigned NOT NULL,
+  name varchar(255) NOT NULL,
+  status varchar(16) NOT NULL,
+  rows_deleted bigint NOT NULL DEFAULT 0,
+  files_deleted bigint NOT NULL DEFAULT 0,
+  bytes_deleted bigint NOT NULL DEFAULT 0,
+  error text DEFAULT NULL,
+  creation_timestamp datetime NOT NULL,
+  completion_timestamp datetime DEFAULT NULL,
+  last_modified_timestamp timestamp DEFAULT now() ON UPDATE now(),
+  PRIMARY KEY (id),
+  INDEX deletion_job_index_status (status)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
@@ -0,0 +1,34 @@
+-- ----------------------------------------------------------------------
+-- The progress of the orphaned media collector, one row per media
+-- directory. The server walks each directory's leaf directories in order,
+-- a few thousand files at a time, and moves every file that is older than
+-- a day and whose UUID is in neither url_based_resource nor document into
+-- a 'quarantine' directory under the root. Quarantined files are deleted
+-- a week later unless they have been referenced in the meantime, in which
+-- case they are moved back. 'last_directory' is the path, relative to the
+-- root, of the last leaf directory that was checked, or empty when a pass
+-- starts; a walk that is interrupted continues from there. The counts are
+-- totals since the collector first ran.
+-------------------------------------------------------------------------
+
+CREATE TABLE IF NOT EXISTS media_collection (
+  directory varchar(16) NOT NULL,
+  last_directory varchar(255) NOT NULL DEFAULT '',
+  passes int unsigned NOT NULL DEFAULT 0,
+  files_scanned bigint NOT NULL DEFAULT 0,
+  files_quarantined bigint NOT NULL DEFAULT 0,
+  files_restored bigint NOT NULL DEFAULT 0,
+  files_deleted bigint NOT NULL DEFAULT 0,
+  bytes_deleted bigint NOT NULL DEFAULT 0,
+  last_pass_timestamp datetime DEFAULT NULL,
+  last_modified_timestamp timestamp DEFAULT now() ON UPDATE now(),
+  PRIMARY KEY (directory)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8;
+
+INSERT INTO media_collection (directory) VALUES
+  ('image'),
+  ('audio'),
+  ('video'),
+  ('file'),
+  ('document')
+    ON DUPLICATE KEY UPDATE directory=directory;
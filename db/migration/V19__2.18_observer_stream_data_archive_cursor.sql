@@ -0,0 +1,9 @@
+-- ----------------------------------------------------------------------
+-- stream/read returns archived points along with the live ones, so the
+-- archive needs the same cursor index as observer_stream_data for a page
+-- to seek directly past the cursor in both tables.
+-------------------------------------------------------------------------
+
+ALTER TABLE observer_stream_data_archive
+  ADD INDEX observer_stream_data_archive_cursor
+    (user_id, observer_stream_link_id, time, id);
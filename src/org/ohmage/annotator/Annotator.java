@@ -216,6 +216,8 @@ public class Annotator {
 		OBSERVER_INVALID_COLUMN_LIST ("1514"),
 		OBSERVER_INVALID_CHRONOLOGICAL_VALUE ("1515"),
 		OBSERVER_INVALID_PRESERVE_INVALID_POINTS ("1516"),
+		OBSERVER_INVALID_CURSOR ("1517"),
+		OBSERVER_INVALID_BUCKET_SIZE ("1518"),
 		
 		VIDEO_INVALID_ID("1600"),
 
@@ -240,7 +242,17 @@ public class Annotator {
 		
 		MEDIA_INVALID_ID ("1900"),
 		MEDIA_NOT_FOUND ("1901"), 
-		MEDIA_INVALID_DATA ("1902");
+		MEDIA_INVALID_DATA ("1902"),
+		
+		EXPORT_INVALID_ID ("2000"),
+		EXPORT_INVALID_TYPE ("2001"),
+		EXPORT_INSUFFICIENT_PERMISSIONS ("2002"),
+		EXPORT_NOT_COMPLETE ("2003"),
+		EXPORT_INVALID_RANGE ("2004"),
+		EXPORT_QUEUE_FULL ("2005"),
+		
+		ADMIN_INVALID_RESET ("2100"),
+		ADMIN_INVALID_INVALIDATE ("2101");
 		
 		private final String value;
 		
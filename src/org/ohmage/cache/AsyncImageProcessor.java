@@ -1,8 +1,6 @@
 package org.ohmage.cache;
 
 import java.util.Collection;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
 import org.apache.log4j.Logger;
@@ -18,166 +16,16 @@ import org.springframework.beans.factory.DisposableBean;
  * A background process for retrieving images that have not been processed and
  * processing them.
  * </p> 
+ * 
+ * <p>
+ * Each run queues the unprocessed images and then processes the queue until
+ * it is empty. If the requests become slow, the run stops early and leaves
+ * the rest of the queue for the next run.
+ * </p>
  *
  * @author John Jenkins
  */
-public class AsyncImageProcessor
-	extends TimerTask
-	implements DisposableBean {
-	
-	/**
-	 * <p>
-	 * A task for processing the images that always runs as long as this thread
-	 * is running.
-	 * </p>
-	 *
-	 * @author John Jenkins
-	 */
-	public static class ImageProcessor extends Thread {
-		/**
-		 * Whether or not this process should continue running.
-		 */
-		private boolean running = true;
-		
-		/**
-		 * The number of milliseconds between each sweep of the images.
-		 */
-		private static final long MILLISECONDS_TO_SLEEP = 1000 * 60 * 5;
-		
-		/**
-		 * The queue of images to be processed.
-		 */
-		private final ConcurrentLinkedDeque<Image> imageQueue =
-			new ConcurrentLinkedDeque<Image>();
-		
-		/**
-		 * Adds an individual Image to be processed and moves it to the front
-		 * of the list.
-		 * 
-		 * @param image The Image to add to the list.
-		 */
-		public void queueImage(final Image image) {
-			imageQueue.addFirst(image);
-		}
-		
-		/**
-		 * Adds a set of image Images whose data should be processed and
-		 * updated.
-		 * 
-		 * @param images The Images to add to the list.
-		 */
-		protected synchronized void queueImages(
-			final Collection<Image> images) {
-			
-			// If the images are null, then we ignore it the same as if the
-			// list was empty.
-			if(images == null) {
-				return;
-			}
-			
-			// Remove duplicates.
-			images.removeAll(imageQueue);
-			
-			// Add the ones that were not already part of the list.
-			imageQueue.addAll(images);
-		}
-
-		/**
-		 * Shuts the process down by setting
-		 */
-		public void shutdown() {
-			running = false;
-			interrupt();
-		}
-		
-		/*
-		 * (non-Javadoc)
-		 * @see java.lang.Thread#run()
-		 */
-		@Override
-		public void run() {
-			while(running) {
-				// Attempt to retrieve the next image in the queue.
-				Image nextUrl = imageQueue.poll();
-				
-				// If we don't have any images to process, put ourselves to
-				// sleep for a while. This can be set relatively high because
-				// if new images are found we will be interrupted. It shouldn't
-				// be set too high in case the controller is shutdown, in which
-				// case we will sleep for too long never being interrupted.
-				if(nextUrl == null) {
-					try {
-						sleep(MILLISECONDS_TO_SLEEP);
-					}
-					catch(InterruptedException e) {
-						// Someone has woken us up, so we need to check the
-						// list.
-					}
-				}
-				// If an image Image was returned, process it.
-				else {
-					processImage(nextUrl);
-				}
-			}
-		}
-		
-		/**
-		 * Reads the original data, creates the sub-images and saves them.
-		 * 
-		 * @param image
-		 *        The image that should be validated and have its variants
-		 *        saved and processed.
-		 */
-		private void processImage(final Image image) {
-			boolean markAsProcessed = true;
-			
-			try {
-				// validate that the image data is valid
-				if (image.validate()) {
-					// Create the sub-images.
-					try {
-						for(Size size : Image.getSizes()) {
-							// If the size of the image does not exist, create it.
-							if(! image.sizeExists(size)) {
-								image.saveImage(size);
-							}
-						}
-					}
-					catch(DomainException e) {
-						LOGGER.error(
-							"One of the sizes of the image could not be created: " + 
-								image.getId().toString(),
-							e);
-						// Will retry later
-						markAsProcessed = false; 
-					}
-				} 
-			} finally { 
-				// close the stream
-				image.closeImageStreams();				
-			}
-			
-			if (markAsProcessed) {
-				// Mark the image as processed.
-				try {
-					ImageServices.instance().markImageAsProcessed(image.getId());
-				}
-				catch(ServiceException e) {
-					LOGGER.error(
-						"The image could not be marked as processed: " + 
-							image.getId().toString(),
-						e);
-					return;
-				}
-			}
-		}
-	}
-	
-	/**
-	 * The instance of the image processor.
-	 */
-	private final ImageProcessor processor = new ImageProcessor();
-	
+public class AsyncImageProcessor implements Runnable, DisposableBean {
 	/**
 	 * The logger for this class.
 	 */
@@ -185,15 +33,20 @@ public class AsyncImageProcessor
 		Logger.getLogger(AsyncImageProcessor.class);
 	
 	/**
-	 * The cleanup task that is periodically run to clean up expired 
-	 * registration requests.
+	 * The number of milliseconds between each sweep of the images.
 	 */
-	private static final Timer PROCESSOR = new Timer("Image Processor", true);
+	private static final long MILLISECONDS_BETWEEN_CHECKING = 1000 * 30;
 	
 	/**
-	 * The number of milliseconds between each sweep of the images.
+	 * The queue of images to be processed.
 	 */
-	private static final long MILLISECONDS_BETWEEN_CHECKING = 1000 * 30;
+	private final ConcurrentLinkedDeque<Image> imageQueue =
+		new ConcurrentLinkedDeque<Image>();
+	
+	/**
+	 * The task that is periodically run to process the images.
+	 */
+	private final BackgroundTaskScheduler.Task task;
 	
 	/**
 	 * Default constructor that will be called by Spring via reflection.
@@ -202,39 +55,129 @@ public class AsyncImageProcessor
 		LOGGER.info("Creating the image processing task.");
 		
 		// Create the task that will be run periodically.
-		PROCESSOR.schedule(
-			this, 
-			MILLISECONDS_BETWEEN_CHECKING, 
-			MILLISECONDS_BETWEEN_CHECKING);
-		
-		// Start the image processing sub-process.
-		processor.start();
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"AsyncImageProcessor - Processing images",
+					this,
+					MILLISECONDS_BETWEEN_CHECKING,
+					MILLISECONDS_BETWEEN_CHECKING,
+					1,
+					true);
 	}
 	
 	/**
-	 * Retrieves the images that need to be processed, and adds them to its
-	 * queue.
+	 * Retrieves the images that need to be processed, adds them to its
+	 * queue, and then processes the queue.
 	 */
 	@Override
 	public void run() {
 		LOGGER.info("Queueing unprocessed images.");
 		try {
-			processor
-				.queueImages(
-					ImageServices.instance().getUnprocessedImages());
-			processor.interrupt();
+			queueImages(ImageServices.instance().getUnprocessedImages());
 		}
 		catch(ServiceException e) {
 			LOGGER.error("Failed to retrieve the unprocessed images.", e);
 		}
+		
+		BackgroundTaskScheduler scheduler = BackgroundTaskScheduler.instance();
+		while(! Thread.currentThread().isInterrupted()) {
+			// If the requests have become slow, leave the rest of the images
+			// for the next run.
+			if((scheduler != null) && scheduler.isBusy()) {
+				LOGGER.info(
+					"Stopping the image processing while the requests are " +
+						"slow.");
+				break;
+			}
+			
+			// Attempt to retrieve the next image in the queue.
+			Image nextUrl = imageQueue.poll();
+			if(nextUrl == null) {
+				break;
+			}
+			
+			processImage(nextUrl);
+		}
 	}
 	
 	/**
-	 * Stops the cleanup task.
+	 * Stops the processing task.
 	 */
 	@Override
 	public void destroy() throws Exception {
-		processor.shutdown();
-		PROCESSOR.cancel();
+		task.cancel();
+	}
+	
+	/**
+	 * Adds a set of image Images whose data should be processed and
+	 * updated.
+	 * 
+	 * @param images The Images to add to the list.
+	 */
+	private void queueImages(final Collection<Image> images) {
+		// If the images are null, then we ignore it the same as if the
+		// list was empty.
+		if(images == null) {
+			return;
+		}
+		
+		// Remove duplicates.
+		images.removeAll(imageQueue);
+		
+		// Add the ones that were not already part of the list.
+		imageQueue.addAll(images);
+	}
+	
+	/**
+	 * Reads the original data, creates the sub-images and saves them.
+	 * 
+	 * @param image
+	 *        The image that should be validated and have its variants
+	 *        saved and processed.
+	 */
+	private void processImage(final Image image) {
+		boolean markAsProcessed = true;
+		
+		try {
+			// validate that the image data is valid
+			if (image.validate()) {
+				// Create the sub-images.
+				try {
+					for(Size size : Image.getSizes()) {
+						// If the size of the image does not exist, create it.
+						if(! image.sizeExists(size)) {
+							image.saveImage(size);
+						}
+					}
+				}
+				catch(DomainException e) {
+					LOGGER.error(
+						"One of the sizes of the image could not be created: " + 
+							image.getId().toString(),
+						e);
+					// Will retry later
+					markAsProcessed = false; 
+				}
+			} 
+		} finally { 
+			// close the stream
+			image.closeImageStreams();				
+		}
+		
+		if (markAsProcessed) {
+			// Mark the image as processed.
+			try {
+				ImageServices.instance().markImageAsProcessed(image.getId());
+			}
+			catch(ServiceException e) {
+				LOGGER.error(
+					"The image could not be marked as processed: " + 
+						image.getId().toString(),
+					e);
+				return;
+			}
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,522 @@
+package org.ohmage.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.TaskStatistics;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * <p>
+ * Runs the server's background tasks on one bounded pool of threads. A task
+ * is registered with a name, a schedule, and the number of its runs that may
+ * execute at once. A run that is requested while the task is already
+ * running as many times as it may waits in the task's backlog. A periodic
+ * run that is due while the task is running or waiting to run is skipped,
+ * so a slow task doesn't pile up runs.
+ * </p>
+ * 
+ * <p>
+ * The average latency of the requests is reported to the scheduler. While it
+ * is above the threshold, runs of the tasks that were registered as
+ * deferrable are put back in their backlog and retried later, but never for
+ * longer than the maximum deferral, so that expensive maintenance doesn't
+ * compete with requests when the server is busy.
+ * </p>
+ */
+public final class BackgroundTaskScheduler implements DisposableBean {
+	private static final Logger LOGGER =
+		Logger.getLogger(BackgroundTaskScheduler.class);
+
+	/**
+	 * The number of milliseconds after which a deferred run is retried.
+	 */
+	private static final long DEFERRAL_RETRY_MILLIS = 1000 * 10;
+
+	/**
+	 * How much each request's latency contributes to the average. The
+	 * average is exponentially weighted, so it follows the recent requests.
+	 */
+	private static final double LATENCY_WEIGHT = 0.05;
+
+	/**
+	 * A task that was registered with the scheduler.
+	 */
+	public final class Task {
+		private final String name;
+		private final Runnable runnable;
+		private final long period;
+		private final int maxConcurrency;
+		private final boolean deferrable;
+
+		private volatile ScheduledFuture<?> schedule = null;
+
+		// The state of the runs, which is guarded by this object.
+		private boolean cancelled = false;
+		private int backlog = 0;
+		private int dispatched = 0;
+		private int executing = 0;
+		private long deferredSince = -1;
+
+		// The statistics, which are guarded by this object.
+		private long runs = 0;
+		private long failures = 0;
+		private long deferrals = 0;
+		private long lastStarted = -1;
+		private long lastNanos = 0;
+		private long totalNanos = 0;
+		private long maxNanos = 0;
+		private String lastError = null;
+
+		/**
+		 * Executes one run of the task on a pool thread.
+		 */
+		private final Runnable runner = new Runnable() {
+			@Override
+			public void run() {
+				if(defer()) {
+					return;
+				}
+
+				long start = System.nanoTime();
+				String error = null;
+				try {
+					runnable.run();
+				}
+				catch(RuntimeException e) {
+					LOGGER.error("The background task failed: " + name, e);
+					error = e.toString();
+				}
+				finally {
+					finish(System.nanoTime() - start, error);
+				}
+			}
+		};
+
+		/**
+		 * Creates a task.
+		 * 
+		 * @param name The task's unique name.
+		 * 
+		 * @param runnable The work that is done in each run.
+		 * 
+		 * @param period The number of milliseconds between the periodic runs
+		 * 				 or zero if the task only runs when it is executed.
+		 * 
+		 * @param maxConcurrency The number of runs that may execute at once.
+		 * 
+		 * @param deferrable Whether or not the runs may be deferred while the
+		 * 					 requests are slow.
+		 */
+		private Task(
+				final String name,
+				final Runnable runnable,
+				final long period,
+				final int maxConcurrency,
+				final boolean deferrable) {
+
+			this.name = name;
+			this.runnable = runnable;
+			this.period = period;
+			this.maxConcurrency = maxConcurrency;
+			this.deferrable = deferrable;
+		}
+
+		/**
+		 * Returns the task's name.
+		 * 
+		 * @return The task's name.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Adds a run of the task to its backlog, which begins as soon as one
+		 * of its running runs completes or, if it isn't running as many times
+		 * as it may, as soon as a pool thread is free. If the task was
+		 * cancelled, this is a no-op.
+		 */
+		public void execute() {
+			synchronized(this) {
+				if(cancelled) {
+					return;
+				}
+				backlog++;
+			}
+			dispatch();
+		}
+
+		/**
+		 * Stops the periodic runs, discards the backlog, and unregisters the
+		 * task. A run that is executing is allowed to complete.
+		 */
+		public void cancel() {
+			synchronized(this) {
+				cancelled = true;
+				backlog = 0;
+			}
+			if(schedule != null) {
+				schedule.cancel(false);
+			}
+			tasks.remove(name, this);
+		}
+
+		/**
+		 * Returns a snapshot of the task's statistics.
+		 * 
+		 * @return The task's statistics.
+		 */
+		public synchronized TaskStatistics getStatistics() {
+			return
+				new TaskStatistics(
+					name,
+					period,
+					maxConcurrency,
+					deferrable,
+					executing,
+					backlog + (dispatched - executing),
+					runs,
+					failures,
+					deferrals,
+					lastStarted,
+					lastNanos / 1000000.0,
+					totalNanos / 1000000.0,
+					maxNanos / 1000000.0,
+					lastError);
+		}
+
+		/**
+		 * Adds a periodic run to the backlog unless the task is already
+		 * running or waiting to run.
+		 */
+		private void tick() {
+			synchronized(this) {
+				if(cancelled || (backlog > 0) || (dispatched > 0)) {
+					return;
+				}
+				backlog++;
+			}
+			dispatch();
+		}
+
+		/**
+		 * Hands the runs in the backlog to the pool while the task may run
+		 * more at once.
+		 */
+		private synchronized void dispatch() {
+			while((! cancelled) &&
+					(backlog > 0) &&
+					(dispatched < maxConcurrency)) {
+
+				backlog--;
+				dispatched++;
+				try {
+					executor.execute(runner);
+				}
+				catch(RejectedExecutionException e) {
+					// The scheduler has been shut down.
+					backlog++;
+					dispatched--;
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Decides whether a run that is about to start should be deferred
+		 * and, if so, puts it back in the backlog and schedules a retry.
+		 * 
+		 * @return Whether or not the run was deferred.
+		 */
+		private boolean defer() {
+			long now = System.currentTimeMillis();
+
+			synchronized(this) {
+				if(deferrable && isBusy()) {
+					if(deferredSince < 0) {
+						deferredSince = now;
+					}
+
+					if((now - deferredSince) < maxDeferral) {
+						deferrals++;
+						dispatched--;
+						backlog++;
+					}
+					else {
+						LOGGER.warn(
+							"Running the background task despite the " +
+								"request latency because it was deferred " +
+								"for too long: " +
+								name);
+						deferredSince = -1;
+					}
+				}
+				else {
+					deferredSince = -1;
+				}
+
+				if(deferredSince < 0) {
+					executing++;
+					lastStarted = now;
+					return false;
+				}
+			}
+
+			try {
+				executor.schedule(
+					new Runnable() {
+						@Override
+						public void run() {
+							dispatch();
+						}
+					},
+					DEFERRAL_RETRY_MILLIS,
+					TimeUnit.MILLISECONDS);
+			}
+			catch(RejectedExecutionException e) {
+				// The scheduler has been shut down.
+			}
+			return true;
+		}
+
+		/**
+		 * Records a completed run and starts the next one in the backlog.
+		 * 
+		 * @param nanos The number of nanoseconds the run took.
+		 * 
+		 * @param error The error with which the run failed or null if it
+		 * 				succeeded.
+		 */
+		private void finish(final long nanos, final String error) {
+			synchronized(this) {
+				executing--;
+				dispatched--;
+
+				runs++;
+				lastNanos = nanos;
+				totalNanos += nanos;
+				if(nanos > maxNanos) {
+					maxNanos = nanos;
+				}
+				if(error != null) {
+					failures++;
+					lastError = error;
+				}
+			}
+			dispatch();
+		}
+	}
+
+	private static volatile BackgroundTaskScheduler instance = null;
+
+	private final ScheduledThreadPoolExecutor executor;
+	private final long deferLatencyThreshold;
+	private final long maxDeferral;
+
+	private final ConcurrentMap<String, Task> tasks =
+		new ConcurrentSkipListMap<String, Task>();
+
+	// The exponentially weighted average request latency in milliseconds,
+	// which is guarded by this object.
+	private double averageLatency = 0;
+
+	/**
+	 * Creates the scheduler. This is called by Spring.
+	 * 
+	 * @param numThreads The number of threads on which the tasks run.
+	 * 
+	 * @param deferLatencyThreshold The average request latency, in
+	 * 								milliseconds, above which the deferrable
+	 * 								tasks are deferred. A negative value
+	 * 								disables deferral.
+	 * 
+	 * @param maxDeferral The longest, in milliseconds, a run may be
+	 * 					  deferred.
+	 * 
+	 * @throws IllegalArgumentException The number of threads is not
+	 * 									positive.
+	 */
+	BackgroundTaskScheduler(
+			final int numThreads,
+			final long deferLatencyThreshold,
+			final long maxDeferral) {
+
+		if(numThreads <= 0) {
+			throw new IllegalArgumentException(
+				"The number of threads must be positive.");
+		}
+
+		this.deferLatencyThreshold = deferLatencyThreshold;
+		this.maxDeferral = maxDeferral;
+
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		executor =
+			new ScheduledThreadPoolExecutor(
+				numThreads,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						Thread result =
+							new Thread(
+								runnable,
+								"BackgroundTaskScheduler - Background task " +
+									threadNumber.getAndIncrement());
+						result.setDaemon(true);
+						result.setPriority(Thread.MIN_PRIORITY);
+						return result;
+					}
+				});
+		executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+		LOGGER.info(
+			"Background tasks will run on " + numThreads + " threads.");
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the scheduler.
+	 * 
+	 * @return The scheduler or null if it has not been created.
+	 */
+	public static BackgroundTaskScheduler instance() {
+		return instance;
+	}
+
+	/**
+	 * Registers a task.
+	 * 
+	 * @param name The task's unique name.
+	 * 
+	 * @param runnable The work that is done in each run.
+	 * 
+	 * @param initialDelay The number of milliseconds before the first
+	 * 					   periodic run.
+	 * 
+	 * @param period The number of milliseconds between the periodic runs or
+	 * 				 zero if the task only runs when it is executed.
+	 * 
+	 * @param maxConcurrency The number of runs that may execute at once.
+	 * 
+	 * @param deferrable Whether or not the runs may be deferred while the
+	 * 					 requests are slow.
+	 * 
+	 * @return The task, through which it can be executed and cancelled.
+	 * 
+	 * @throws IllegalArgumentException A task with the same name is already
+	 * 									registered, or the delay, period, or
+	 * 									concurrency is not valid.
+	 */
+	public Task register(
+			final String name,
+			final Runnable runnable,
+			final long initialDelay,
+			final long period,
+			final int maxConcurrency,
+			final boolean deferrable) {
+
+		if((initialDelay < 0) || (period < 0)) {
+			throw new IllegalArgumentException(
+				"The delay and period must not be negative.");
+		}
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException(
+				"The concurrency must be positive.");
+		}
+
+		final Task result =
+			new Task(name, runnable, period, maxConcurrency, deferrable);
+		if(tasks.putIfAbsent(name, result) != null) {
+			throw new IllegalArgumentException(
+				"A task with the same name is already registered: " + name);
+		}
+
+		if(period > 0) {
+			result.schedule =
+				executor.scheduleAtFixedRate(
+					new Runnable() {
+						@Override
+						public void run() {
+							result.tick();
+						}
+					},
+					initialDelay,
+					period,
+					TimeUnit.MILLISECONDS);
+		}
+
+		LOGGER.info("Registered the background task: " + name);
+		return result;
+	}
+
+	/**
+	 * Reports the latency of a request that has been responded to. If the
+	 * scheduler has not been created, this is a no-op.
+	 * 
+	 * @param millis The number of milliseconds the request took.
+	 */
+	public static void recordRequestLatency(final long millis) {
+		BackgroundTaskScheduler scheduler = instance;
+		if(scheduler != null) {
+			synchronized(scheduler) {
+				scheduler.averageLatency +=
+					LATENCY_WEIGHT * (millis - scheduler.averageLatency);
+			}
+		}
+	}
+
+	/**
+	 * Returns the average latency of the recent requests.
+	 * 
+	 * @return The average latency in milliseconds.
+	 */
+	public synchronized double getAverageRequestLatency() {
+		return averageLatency;
+	}
+
+	/**
+	 * Returns whether or not the requests are slow enough that the
+	 * deferrable tasks should be deferred.
+	 * 
+	 * @return Whether or not the deferrable tasks should be deferred.
+	 */
+	public boolean isBusy() {
+		return
+			(deferLatencyThreshold >= 0) &&
+			(getAverageRequestLatency() > deferLatencyThreshold);
+	}
+
+	/**
+	 * Returns the statistics of every registered task.
+	 * 
+	 * @return The statistics, ordered by the tasks' names.
+	 */
+	public List<TaskStatistics> getStatistics() {
+		List<TaskStatistics> result =
+			new ArrayList<TaskStatistics>(tasks.size());
+		for(Task task : tasks.values()) {
+			result.add(task.getStatistics());
+		}
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		executor.shutdownNow();
+		instance = null;
+	}
+}
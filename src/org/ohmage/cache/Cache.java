@@ -37,10 +37,11 @@ public abstract class Cache {
 	 */
 	private DataSource dataSource;
 
-	// The last time we refreshed our cache in milliseconds since epoch.
+	// The last time we refreshed our cache in milliseconds since epoch. It is
+	// read by the request threads while a background thread updates it.
 	/**
 	 */
-	private long lastUpdateTimestamp;
+	private volatile long lastUpdateTimestamp;
 	// The number of milliseconds between refreshes of the local cache.
 	/**
 	 */
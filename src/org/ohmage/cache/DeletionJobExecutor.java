@@ -0,0 +1,102 @@
+package org.ohmage.cache;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.DeletionJobServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Deletes the data of deleted campaigns and users in batches in the
+ * background. A run starts as soon as a campaign or user is deleted and
+ * then periodically until every deletion job is complete. Runs are deferred
+ * while the requests are slow, and each batch is its own transaction, so a
+ * deletion never holds its locks for long.
+ */
+public final class DeletionJobExecutor implements Runnable, DisposableBean {
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(DeletionJobExecutor.class);
+
+	/**
+	 * The number of milliseconds between each run.
+	 */
+	private static final long MILLISECONDS_BETWEEN_RUNS = 1000 * 60;
+
+	/**
+	 * The number of rows to delete in each transaction.
+	 */
+	private static final int BATCH_SIZE = 500;
+
+	/**
+	 * The maximum number of batches to delete in a single run so that one run
+	 * doesn't hold a database connection for too long.
+	 */
+	private static final int MAX_BATCHES_PER_RUN = 50;
+
+	private static DeletionJobExecutor instance;
+
+	/**
+	 * The task that deletes the batches.
+	 */
+	private final BackgroundTaskScheduler.Task task;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private DeletionJobExecutor() {
+		LOGGER.info("Creating the deletion job task.");
+
+		// The first run resumes any job that was running when the server
+		// stopped.
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"DeletionJobExecutor - Deleting the data of deleted campaigns and users",
+					this,
+					1000 * 10,
+					MILLISECONDS_BETWEEN_RUNS,
+					1,
+					true);
+
+		instance = this;
+	}
+
+	/**
+	 * Starts a run soon rather than at the next periodic run. If the
+	 * executor is not configured, this is a no-op.
+	 */
+	public static void requestPurge() {
+		if(instance != null) {
+			instance.task.execute();
+		}
+	}
+
+	/**
+	 * Deletes batches until every job is complete or the maximum number of
+	 * batches for this run have been deleted.
+	 */
+	@Override
+	public void run() {
+		try {
+			for(int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+				if(! DeletionJobServices.instance().purge(BATCH_SIZE)) {
+					return;
+				}
+			}
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to delete a batch of a deletion job.", e);
+		}
+	}
+
+	/**
+	 * Stops the deletion task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		task.cancel();
+	}
+}
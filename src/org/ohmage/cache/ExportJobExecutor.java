@@ -0,0 +1,149 @@
+package org.ohmage.cache;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.ExportJobServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Executes export jobs on a bounded pool of background threads and
+ * periodically deletes the jobs that have expired. The first run also marks
+ * the jobs that were left unfinished by a previous run of the server as
+ * failed.
+ */
+public final class ExportJobExecutor implements Runnable, DisposableBean {
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(ExportJobExecutor.class);
+
+	/**
+	 * The number of jobs that may execute at once.
+	 */
+	private static final int NUM_THREADS = 2;
+
+	/**
+	 * The number of jobs that may wait for a thread.
+	 */
+	private static final int QUEUE_SIZE = 50;
+
+	/**
+	 * The number of milliseconds between each cleanup.
+	 */
+	private static final long MILLISECONDS_BETWEEN_RUNS = 1000 * 60 * 10;
+
+	/**
+	 * The number that is given to the next thread that is created.
+	 */
+	private static final AtomicInteger THREAD_NUMBER = new AtomicInteger(1);
+
+	/**
+	 * The pool on which the jobs are executed.
+	 */
+	private static final ThreadPoolExecutor EXECUTOR =
+		new ThreadPoolExecutor(
+			NUM_THREADS,
+			NUM_THREADS,
+			0,
+			TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<Runnable>(QUEUE_SIZE),
+			new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					Thread result =
+						new Thread(
+							runnable,
+							"ExportJobExecutor - Executing export job " +
+								THREAD_NUMBER.getAndIncrement());
+					result.setDaemon(true);
+					return result;
+				}
+			});
+
+	/**
+	 * The cleanup task that is periodically run.
+	 */
+	private final BackgroundTaskScheduler.Task task;
+
+	/**
+	 * Whether or not the jobs left unfinished by a previous run of the server
+	 * have been marked as failed.
+	 */
+	private boolean recovered = false;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private ExportJobExecutor() {
+		LOGGER.info("Creating the export job executor.");
+
+		// The services aren't created until after this, so the first run
+		// waits a short while.
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"ExportJobExecutor - Deleting expired export jobs",
+					this,
+					1000 * 10,
+					MILLISECONDS_BETWEEN_RUNS,
+					1,
+					false);
+	}
+
+	/**
+	 * Queues a job to be executed.
+	 * 
+	 * @param job The task that executes the job.
+	 * 
+	 * @throws RejectedExecutionException Too many jobs are already waiting.
+	 */
+	public static void execute(final Runnable job) {
+		EXECUTOR.execute(job);
+	}
+
+	/**
+	 * Marks the unfinished jobs from a previous run as failed, once, and then
+	 * deletes the jobs that have expired.
+	 */
+	@Override
+	public void run() {
+		try {
+			if(! recovered) {
+				int numFailed =
+					ExportJobServices.instance().failUnfinishedExportJobs();
+				if(numFailed > 0) {
+					LOGGER.info(
+						"Marked " + numFailed + " unfinished export jobs as failed.");
+				}
+				recovered = true;
+			}
+
+			int numDeleted =
+				ExportJobServices.instance().deleteExpiredExportJobs();
+			if(numDeleted > 0) {
+				LOGGER.info("Deleted " + numDeleted + " expired export jobs.");
+			}
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to clean up the export jobs.", e);
+		}
+	}
+
+	/**
+	 * Stops the cleanup task and the jobs.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		task.cancel();
+		EXECUTOR.shutdownNow();
+	}
+}
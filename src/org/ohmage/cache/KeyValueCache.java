@@ -17,6 +17,7 @@ package org.ohmage.cache;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,16 +26,24 @@ import java.util.Set;
 import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
+import org.ohmage.domain.CacheStatistics;
 import org.ohmage.exception.CacheMissException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 
 /**
  * The abstract cache class for key-Value pairs.
  * 
+ * The values are read in the background at the update frequency, so the
+ * values are replaced before they become stale and lookups never wait on the
+ * database. Each read builds a new, immutable map which replaces the old one
+ * in a single write. If a read fails, the old map is kept until the next one
+ * succeeds.
+ * 
  * @author John Jenkins
  */
-public abstract class KeyValueCache extends Cache {
+public abstract class KeyValueCache extends Cache implements DisposableBean {
 	private static final Logger LOGGER = Logger.getLogger(KeyValueCache.class);
 
 	/**
@@ -65,8 +74,9 @@ public abstract class KeyValueCache extends Cache {
 		}
 	}
 
-	// The map of all the keys to their values.
-	private Map<String, String> keyValueMap;
+	// The map of all the keys to their values. It is never modified once it
+	// has been published; a refresh replaces it.
+	private volatile Map<String, String> keyValueMap;
 
 	// The SQL to use to get the values which must return two String values as
 	// dictated by the private class KeyAndValue.
@@ -76,9 +86,26 @@ public abstract class KeyValueCache extends Cache {
 	private final String keyColumn;
 	private final String valueColumn;
 
+	// The task that refreshes the map in the background.
+	private final BackgroundTaskScheduler.Task refresher;
+
+	// The refresh statistics, which are only modified while refreshing and
+	// are published as a new snapshot after each refresh.
+	private long numRefreshes = 0;
+	private long numFailures = 0;
+	private long totalRefreshNanos = 0;
+	private long lastRefreshNanos = 0;
+	private long maxRefreshNanos = 0;
+	private volatile CacheStatistics statistics;
+
 	/**
 	 * Default constructor that calls its parent and is protected to maintain
-	 * the Singleton-ness.
+	 * the Singleton-ness. The values are read before it returns, and then
+	 * again every update frequency in the background.
+	 * 
+	 * @throws IllegalArgumentException
+	 *         The update frequency is less than
+	 *         {@link Cache#MIN_CACHE_REFRESH_MILLIS}.
 	 */
 	protected KeyValueCache(
 		DataSource dataSource,
@@ -88,29 +115,61 @@ public abstract class KeyValueCache extends Cache {
 		String valueKey) {
 		super(dataSource, updateFrequency);
 
-		keyValueMap = new HashMap<String, String>();
+		if(updateFrequency < MIN_CACHE_REFRESH_MILLIS) {
+			throw new IllegalArgumentException(
+				"The update frequency must be at least " +
+					MIN_CACHE_REFRESH_MILLIS +
+					" milliseconds.");
+		}
+
+		keyValueMap = Collections.emptyMap();
 		this.sqlForRetrievingValues = sqlForRetrievingValues;
 
 		keyColumn = keyKey;
 		valueColumn = valueKey;
+
+		statistics = buildStatistics();
+		refreshMap();
+
+		refresher =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					getClass().getSimpleName() + " - Refresh process",
+					new Runnable() {
+						@Override
+						public void run() {
+							refreshMap();
+						}
+					},
+					updateFrequency,
+					updateFrequency,
+					1,
+					false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		refresher.cancel();
 	}
 
 	/**
-	 * Compares the current timestamp with the last time we did an update plus
-	 * the amount of time between updates. If our cache has become stale, we
-	 * attempt to update it.
-	 * 
-	 * Then, we check to see if such a key exists in our cache. If not, we
-	 * throw an exception because, if someone is querying for a key that
-	 * doesn't exist, we need to bring it to their immediate attention rather
-	 * than returning an "error" value. Otherwise, the corresponding integer
-	 * value is returned.
+	 * Checks to see if such a key exists in our cache. If not, we throw an
+	 * exception because, if someone is querying for a key that doesn't exist,
+	 * we need to bring it to their immediate attention rather than returning
+	 * an "error" value. Otherwise, the corresponding value is returned.
 	 * 
 	 * It is recommended, but not required, to use the constants declared in
 	 * the concrete cache class as the parameter.
 	 * 
-	 * The complexity is O(n) if a refresh is required; otherwise, the
-	 * complexity of a Java Map object to lookup a key and return its value.
+	 * The database is only read if it could never be read before, such as
+	 * when it was unavailable when the server started. Otherwise, the
+	 * complexity is that of a Java Map object to lookup a key and return its
+	 * value.
 	 * 
 	 * @param key
 	 *        The key whose corresponding value is being requested.
@@ -121,15 +180,12 @@ public abstract class KeyValueCache extends Cache {
 	 *         Thrown if no such key exists.
 	 */
 	public String lookup(String key) throws CacheMissException {
-		// If the lookup table is out-of-date, refresh it.
-		if((getLastUpdateTimestamp() + getUpdateFrequency()) <= System
-			.currentTimeMillis()) {
-			refreshMap();
-		}
+		Map<String, String> keyValueMap = getMap();
 
 		// If the key exists in the lookup table, return its value.
-		if(keyValueMap.containsKey(key)) {
-			return keyValueMap.get(key);
+		String value = keyValueMap.get(key);
+		if((value != null) || keyValueMap.containsKey(key)) {
+			return value;
 		}
 		// Otherwise, throw an exception that it is an unknown state.
 		else {
@@ -144,13 +200,7 @@ public abstract class KeyValueCache extends Cache {
 	 */
 	@Override
 	public Set<String> getKeys() {
-		// If the lookup table is out-of-date, refresh it.
-		if((getLastUpdateTimestamp() + getUpdateFrequency()) <= System
-			.currentTimeMillis()) {
-			refreshMap();
-		}
-
-		return keyValueMap.keySet();
+		return getMap().keySet();
 	}
 
 	/**
@@ -161,6 +211,40 @@ public abstract class KeyValueCache extends Cache {
 	@Override
 	public abstract String getName();
 
+	/**
+	 * Reads the values from the database on the caller's thread, so that the
+	 * caller, and every lookup after it returns, sees the current values.
+	 * This should be called after the values have been changed in the
+	 * database. If the database cannot be read, the current values are kept.
+	 */
+	public void invalidate() {
+		LOGGER.info("Invalidating the cache: " + getName());
+		refreshMap();
+	}
+
+	/**
+	 * Returns the statistics about this cache's refreshes.
+	 * 
+	 * @return The statistics as of the most recent refresh.
+	 */
+	public CacheStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Returns the current map. If it has never been read, because the
+	 * database was not available, it attempts to read it now.
+	 * 
+	 * @return The current map.
+	 */
+	private Map<String, String> getMap() {
+		if(getLastUpdateTimestamp() < 0) {
+			refreshMap();
+		}
+
+		return keyValueMap;
+	}
+
 	/**
 	 * Reads the database for the information in the lookup table and populates
 	 * its map with the gathered information. If there is an issue reading the
@@ -169,19 +253,12 @@ public abstract class KeyValueCache extends Cache {
 	 * @complexity O(n) where n is the number of keys in the database.
 	 */
 	protected synchronized void refreshMap() {
-		// Only one thread should be updating this information at a time. Once
-		// other threads enter, they should check to see if an update was just
-		// done and, if so, should abort a second update.
-		if((getLastUpdateTimestamp() + getUpdateFrequency()) > System
-			.currentTimeMillis()) {
-			return;
-		}
-
 		// This is the JdbcTemplate we will use for our query. If there is an
 		// issue report it and abort the update.
 		JdbcTemplate jdbcTemplate = new JdbcTemplate(getDataSource());
 
 		// Get all the keys and their corresponding values.
+		long start = System.nanoTime();
 		List<KeyAndValue> keyAndValue;
 		try {
 			keyAndValue =
@@ -203,6 +280,9 @@ public abstract class KeyValueCache extends Cache {
 						sqlForRetrievingValues +
 						"'. Aborting cache refresh.",
 					e);
+
+			numFailures++;
+			statistics = buildStatistics();
 			return;
 		}
 
@@ -212,8 +292,44 @@ public abstract class KeyValueCache extends Cache {
 		for(KeyAndValue currStateAndId : keyAndValue) {
 			keyValueMap.put(currStateAndId.key, currStateAndId.value);
 		}
-		this.keyValueMap = keyValueMap;
+		this.keyValueMap = Collections.unmodifiableMap(keyValueMap);
 
 		setLastUpdateTimestamp(System.currentTimeMillis());
+
+		lastRefreshNanos = System.nanoTime() - start;
+		numRefreshes++;
+		totalRefreshNanos += lastRefreshNanos;
+		if(lastRefreshNanos > maxRefreshNanos) {
+			maxRefreshNanos = lastRefreshNanos;
+		}
+		statistics = buildStatistics();
+
+		if(LOGGER.isDebugEnabled()) {
+			LOGGER.debug(
+				"Refreshed the cache " +
+					getName() +
+					" in " +
+					(lastRefreshNanos / 1000000.0) +
+					" ms.");
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the current refresh statistics. This must only be
+	 * called while refreshing or from the constructor.
+	 * 
+	 * @return The snapshot.
+	 */
+	private CacheStatistics buildStatistics() {
+		return
+			new CacheStatistics(
+				getName(),
+				keyValueMap.size(),
+				numRefreshes,
+				numFailures,
+				getLastUpdateTimestamp(),
+				lastRefreshNanos / 1000000.0,
+				totalRefreshNanos / 1000000.0,
+				maxRefreshNanos / 1000000.0);
 	}
 }
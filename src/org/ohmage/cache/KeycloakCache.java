@@ -1,5 +1,7 @@
 package org.ohmage.cache;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -18,6 +20,8 @@ import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
 import org.jose4j.base64url.Base64;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.ohmage.domain.KeycloakUser;
 import org.ohmage.domain.ServerConfig;
 import org.ohmage.exception.CacheMissException;
 import org.ohmage.util.StringUtils;
@@ -57,6 +61,86 @@ public class KeycloakCache {
 	private static final String KEY_KEYCLOAK_BEARER_ONLY = "bearer-only";
 	private static final String KEY_KEYCLOAK_PUBLIC_KEY_FROM_SERVER = "public_key";
 
+	/**
+	 * The number of verified bearer tokens that are remembered. When another
+	 * token is verified, the least recently used one is forgotten.
+	 */
+	private static final int MAX_VERIFIED_TOKENS = 10000;
+
+	/**
+	 * The number of provisioned users that are remembered. When another user
+	 * is provisioned, the least recently used one is forgotten.
+	 */
+	private static final int MAX_PROVISIONED_USERS = 10000;
+
+	/**
+	 * A map that forgets its least recently used entry once it is full.
+	 * 
+	 * @param <K> The type of the keys.
+	 * 
+	 * @param <V> The type of the values.
+	 */
+	private static final class LruMap<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = 1L;
+
+		private final int maxSize;
+
+		/**
+		 * Creates an empty map.
+		 * 
+		 * @param maxSize The number of entries the map may hold.
+		 */
+		private LruMap(final int maxSize) {
+			super(16, 0.75f, true);
+
+			this.maxSize = maxSize;
+		}
+
+		/**
+		 * Removes the least recently used entry once the map is full.
+		 */
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+			return size() > maxSize;
+		}
+	}
+
+	/**
+	 * A bearer token whose signature has been verified and when it expires.
+	 */
+	private static final class VerifiedToken {
+		private final JwtContext context;
+		private final long expiration;
+
+		/**
+		 * Creates a verified token.
+		 * 
+		 * @param context The token's processed claims.
+		 * 
+		 * @param expiration The milliseconds since the epoch after which the
+		 * 					 token is no longer accepted.
+		 */
+		private VerifiedToken(final JwtContext context, final long expiration) {
+			this.context = context;
+			this.expiration = expiration;
+		}
+	}
+
+	/**
+	 * The verified bearer tokens keyed by a hash of the token.
+	 */
+	private static final Map<String, VerifiedToken> VERIFIED_TOKENS =
+		Collections.synchronizedMap(
+			new LruMap<String, VerifiedToken>(MAX_VERIFIED_TOKENS));
+
+	/**
+	 * The keycloak users that have been created or updated in the database
+	 * keyed by their username.
+	 */
+	private static final Map<String, KeycloakUser> PROVISIONED_USERS =
+		Collections.synchronizedMap(
+			new LruMap<String, KeycloakUser>(MAX_PROVISIONED_USERS));
+
 	/**
 	 * The logger for this class.
 	 */
@@ -78,6 +162,10 @@ public class KeycloakCache {
 		sslRequired = map.get(KEY_KEYCLOAK_SSL_REQUIRED);
 		resource = map.get(KEY_KEYCLOAK_RESOURCE);
 		bearerOnly = Boolean.valueOf(map.get(KEY_KEYCLOAK_BEARER_ONLY));
+
+		// Anything learned with the previous key or realm no longer holds.
+		VERIFIED_TOKENS.clear();
+		PROVISIONED_USERS.clear();
 		
 		/* send an http request to the keycloak server configured above.
 		 * this ensures we have an accurate and usable realm/public key
@@ -94,6 +182,80 @@ public class KeycloakCache {
 	public static PublicKey getPublicKey() {
 		return realmPublicKey;
 	}
+
+	/**
+	 * Returns the claims of a bearer token that has already been verified if
+	 * it has not yet expired.
+	 * 
+	 * @param tokenHash The hash of the bearer token.
+	 * 
+	 * @return The token's processed claims or null if the token hasn't been
+	 * 		   verified or has expired.
+	 */
+	public static JwtContext getVerifiedToken(final String tokenHash) {
+		VerifiedToken token = VERIFIED_TOKENS.get(tokenHash);
+		if(token == null) {
+			return null;
+		}
+		else if(token.expiration < System.currentTimeMillis()) {
+			VERIFIED_TOKENS.remove(tokenHash);
+			return null;
+		}
+
+		return token.context;
+	}
+
+	/**
+	 * Remembers a bearer token whose signature has been verified, so that it
+	 * need not be verified again until it expires.
+	 * 
+	 * @param tokenHash The hash of the bearer token.
+	 * 
+	 * @param context The token's processed claims.
+	 * 
+	 * @param expiration The milliseconds since the epoch after which the
+	 * 					 token is no longer accepted.
+	 */
+	public static void setVerifiedToken(
+			final String tokenHash,
+			final JwtContext context,
+			final long expiration) {
+
+		VERIFIED_TOKENS.put(tokenHash, new VerifiedToken(context, expiration));
+	}
+
+	/**
+	 * Returns the keycloak user as it was when it was last created or updated
+	 * in the database.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @return The user or null if it hasn't been provisioned or has been
+	 * 		   forgotten.
+	 */
+	public static KeycloakUser getProvisionedUser(final String username) {
+		return PROVISIONED_USERS.get(username);
+	}
+
+	/**
+	 * Remembers a keycloak user that was created or updated in the database.
+	 * 
+	 * @param user The user as it is now in the database.
+	 */
+	public static void setProvisionedUser(final KeycloakUser user) {
+		PROVISIONED_USERS.put(user.getUsername(), user);
+	}
+
+	/**
+	 * Forgets a keycloak user whose account was changed or deleted other than
+	 * by provisioning, so that the next request compares the account with
+	 * the user's claims again.
+	 * 
+	 * @param username The user's username.
+	 */
+	public static void removeProvisionedUser(final String username) {
+		PROVISIONED_USERS.remove(username);
+	}
 	
 	/*
 	 * A check to quickly ensure that keycloak is both enabled and properly
@@ -0,0 +1,427 @@
+/*******************************************************************************
+ * Copyright 2012 The Regents of the University of California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * <p>
+ * An in-memory, case-insensitive substring index over a set of entities. Each
+ * entity is identified by a unique key, e.g. a username or a URN, and has
+ * any number of named text fields. Every field value is broken into its
+ * overlapping {@link #GRAM_LENGTH}-character n-grams, and each n-gram points
+ * to the set of keys whose field contains it.
+ * </p>
+ * 
+ * <p>
+ * A search for some partial value intersects the posting sets of that
+ * value's n-grams and then verifies each remaining candidate against the
+ * stored value. This gives the same results as a "LIKE '%value%'" query
+ * under a case-insensitive collation without scanning every value.
+ * </p>
+ * 
+ * <p>
+ * This class is thread-safe. Any number of searches may run concurrently,
+ * while updates are exclusive.
+ * </p>
+ */
+public final class NGramIndex {
+	/**
+	 * The length of the n-grams that are indexed. Searches for values that
+	 * are shorter than this will fall back to checking every stored value.
+	 */
+	public static final int GRAM_LENGTH = 3;
+
+	/**
+	 * The separator between the field name and the n-gram in the posting
+	 * map's keys. This cannot appear in a field name.
+	 */
+	private static final char FIELD_SEPARATOR = '\u0000';
+
+	// Rough per-object costs, in bytes, used when estimating memory usage.
+	// These are based on a 64-bit JVM with compressed references.
+	private static final long BYTES_PER_STRING = 40;
+	private static final long BYTES_PER_CHAR = 2;
+	private static final long BYTES_PER_MAP_ENTRY = 48;
+	private static final long BYTES_PER_SET = 64;
+
+	private final String name;
+
+	// The key of each entity to its fields to the lower-cased field value.
+	private final Map<String, Map<String, String>> documents =
+		new HashMap<String, Map<String, String>>();
+	// The field and n-gram to the keys whose value contains that n-gram.
+	private final Map<String, Set<String>> postings =
+		new HashMap<String, Set<String>>();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a new, empty index.
+	 * 
+	 * @param name A human-readable name for this index, used when reporting.
+	 */
+	public NGramIndex(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the human-readable name of this index.
+	 * 
+	 * @return The name of this index.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Adds or replaces an entity in the index. Any fields that were
+	 * previously indexed for this key but are not in the new map are removed.
+	 * 
+	 * @param key The entity's unique key.
+	 * 
+	 * @param fields The entity's field names to their values. Null values are
+	 * 				 ignored.
+	 * 
+	 * @throws IllegalArgumentException The key or fields are null.
+	 */
+	public void put(final String key, final Map<String, String> fields) {
+		if(key == null) {
+			throw new IllegalArgumentException("The key is null.");
+		}
+		else if(fields == null) {
+			throw new IllegalArgumentException("The fields are null.");
+		}
+
+		Map<String, String> normalized = new HashMap<String, String>();
+		for(String field : fields.keySet()) {
+			String value = fields.get(field);
+			if(value != null) {
+				normalized.put(field, normalize(value));
+			}
+		}
+
+		lock.writeLock().lock();
+		try {
+			removeInternal(key);
+
+			documents.put(key, normalized);
+			for(String field : normalized.keySet()) {
+				for(String gram : getGrams(normalized.get(field))) {
+					String postingKey = getPostingKey(field, gram);
+					Set<String> keys = postings.get(postingKey);
+					if(keys == null) {
+						keys = new HashSet<String>(2);
+						postings.put(postingKey, keys);
+					}
+					keys.add(key);
+				}
+			}
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes an entity from the index. If the key is unknown, this is a
+	 * no-op.
+	 * 
+	 * @param key The entity's unique key.
+	 */
+	public void remove(final String key) {
+		if(key == null) {
+			return;
+		}
+
+		lock.writeLock().lock();
+		try {
+			removeInternal(key);
+		}
+		finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns whether or not an entity is in the index.
+	 * 
+	 * @param key The entity's unique key.
+	 * 
+	 * @return Whether or not the entity is in the index.
+	 */
+	public boolean contains(final String key) {
+		lock.readLock().lock();
+		try {
+			return documents.containsKey(key);
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the keys of all of the entities in the index in their natural
+	 * order.
+	 * 
+	 * @return A, possibly empty, sorted set of every key in the index.
+	 */
+	public SortedSet<String> getKeys() {
+		lock.readLock().lock();
+		try {
+			return new TreeSet<String>(documents.keySet());
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the keys of all of the entities whose field contains the given
+	 * partial value, ignoring case.
+	 * 
+	 * @param field The name of the field to search.
+	 * 
+	 * @param partialValue The value that must be contained within the field.
+	 * 
+	 * @return A, possibly empty, set of keys in their natural order.
+	 */
+	public SortedSet<String> search(
+			final String field,
+			final String partialValue) {
+
+		SortedSet<String> result = new TreeSet<String>();
+		if((field == null) || (partialValue == null)) {
+			return result;
+		}
+
+		String value = normalize(partialValue);
+
+		lock.readLock().lock();
+		try {
+			// Short values cannot be answered by the postings, so every
+			// stored value is checked.
+			if(value.length() < GRAM_LENGTH) {
+				for(String key : documents.keySet()) {
+					String fieldValue = documents.get(key).get(field);
+					if((fieldValue != null) && fieldValue.contains(value)) {
+						result.add(key);
+					}
+				}
+
+				return result;
+			}
+
+			// Gather the posting sets for each of the n-grams, starting with
+			// the smallest to keep the intersection cheap.
+			Set<String> grams = getGrams(value);
+			Set<String> smallest = null;
+			for(String gram : grams) {
+				Set<String> keys = postings.get(getPostingKey(field, gram));
+				if(keys == null) {
+					return result;
+				}
+				else if((smallest == null) || (keys.size() < smallest.size())) {
+					smallest = keys;
+				}
+			}
+
+			for(String key : smallest) {
+				boolean candidate = true;
+				for(String gram : grams) {
+					Set<String> keys = postings.get(getPostingKey(field, gram));
+					if(! keys.contains(key)) {
+						candidate = false;
+						break;
+					}
+				}
+
+				// The n-grams may all be present without being contiguous,
+				// so the candidate must be verified.
+				if(candidate &&
+					documents.get(key).get(field).contains(value)) {
+
+					result.add(key);
+				}
+			}
+
+			return result;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of entities in the index.
+	 * 
+	 * @return The number of entities in the index.
+	 */
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return documents.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of distinct field and n-gram pairs in the index.
+	 * 
+	 * @return The number of posting sets in the index.
+	 */
+	public int getNumPostings() {
+		lock.readLock().lock();
+		try {
+			return postings.size();
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Returns an estimate, in bytes, of the heap used by this index. This
+	 * walks every posting set, so it should only be used for reporting.
+	 * 
+	 * @return The estimated number of bytes used by this index.
+	 */
+	public long estimateMemoryUsage() {
+		lock.readLock().lock();
+		try {
+			long result = 0;
+
+			for(String key : documents.keySet()) {
+				result += BYTES_PER_MAP_ENTRY + BYTES_PER_SET;
+				Map<String, String> fields = documents.get(key);
+				for(String field : fields.keySet()) {
+					result +=
+						BYTES_PER_MAP_ENTRY +
+						BYTES_PER_STRING +
+						(BYTES_PER_CHAR * fields.get(field).length());
+				}
+			}
+
+			for(String postingKey : postings.keySet()) {
+				result +=
+					BYTES_PER_MAP_ENTRY +
+					BYTES_PER_SET +
+					BYTES_PER_STRING +
+					(BYTES_PER_CHAR * postingKey.length()) +
+					(BYTES_PER_MAP_ENTRY * postings.get(postingKey).size());
+			}
+
+			return result;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return
+			name +
+			": " + size() + " entities, " +
+			getNumPostings() + " postings, ~" +
+			(estimateMemoryUsage() / 1024) + " KB";
+	}
+
+	/**
+	 * Removes an entity and its postings. The caller must hold the write
+	 * lock.
+	 * 
+	 * @param key The entity's unique key.
+	 */
+	private void removeInternal(final String key) {
+		Map<String, String> fields = documents.remove(key);
+		if(fields == null) {
+			return;
+		}
+
+		for(String field : fields.keySet()) {
+			for(String gram : getGrams(fields.get(field))) {
+				String postingKey = getPostingKey(field, gram);
+				Set<String> keys = postings.get(postingKey);
+				if(keys != null) {
+					keys.remove(key);
+					if(keys.isEmpty()) {
+						postings.remove(postingKey);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Lower-cases a value in a locale-independent manner.
+	 * 
+	 * @param value The value to normalize.
+	 * 
+	 * @return The normalized value.
+	 */
+	private static String normalize(final String value) {
+		return value.toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Builds the key into the postings map for a field and n-gram.
+	 * 
+	 * @param field The field's name.
+	 * 
+	 * @param gram The n-gram.
+	 * 
+	 * @return The posting map's key.
+	 */
+	private static String getPostingKey(final String field, final String gram) {
+		return field + FIELD_SEPARATOR + gram;
+	}
+
+	/**
+	 * Returns the distinct n-grams in a normalized value.
+	 * 
+	 * @param value The normalized value.
+	 * 
+	 * @return The distinct n-grams, which will be empty if the value is
+	 * 		   shorter than {@link #GRAM_LENGTH}.
+	 */
+	private static Set<String> getGrams(final String value) {
+		if(value.length() < GRAM_LENGTH) {
+			return Collections.emptySet();
+		}
+
+		Set<String> result = new HashSet<String>();
+		for(int i = 0; i <= value.length() - GRAM_LENGTH; i++) {
+			result.add(value.substring(i, i + GRAM_LENGTH));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,453 @@
+package org.ohmage.cache;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.Observer;
+
+/**
+ * <p>
+ * Keeps the observer and stream definitions that have been read from the
+ * database, along with the database IDs of the links between them. The
+ * definitions only change when an observer is created or updated, but they
+ * are needed, and their schemas compiled, on every stream upload and read.
+ * The cached {@link Observer.Stream} objects keep their compiled schema
+ * validators, so those are only compiled once.
+ * </p>
+ * 
+ * <p>
+ * The cache is filled as the definitions are read. The queries that create
+ * or update an observer invalidate its entries once their transaction has
+ * committed. Because other servers may share the database, the whole cache
+ * is also cleared at a fixed period.
+ * </p>
+ * 
+ * <p>
+ * A reader that misses the cache should call {@link #getGeneration()} before
+ * reading from the database and pass the result when adding the definition.
+ * If the cache was invalidated in the meantime, the definition it read may
+ * already be out of date, so it is not added.
+ * </p>
+ */
+public final class ObserverCache extends Cache {
+	private static final Logger LOGGER = Logger.getLogger(ObserverCache.class);
+
+	/**
+	 * The key used to reference this cache.
+	 */
+	public static final String CACHE_KEY = "observerCache";
+
+	// The names of the parts of this cache.
+	private static final String KEY_OBSERVERS = "observers";
+	private static final String KEY_LATEST_VERSIONS = "latest_versions";
+	private static final String KEY_STREAMS = "streams";
+	private static final String KEY_STREAM_LINKS = "stream_links";
+
+	/**
+	 * The separator between the parts of a key, which cannot appear in an
+	 * observer or stream ID.
+	 */
+	private static final char SEPARATOR = ':';
+
+	private static ObserverCache instance;
+
+	// Observer ID and version to the observer.
+	private final Map<String, Observer> observers =
+		new ConcurrentHashMap<String, Observer>();
+	// Observer ID to its greatest version.
+	private final Map<String, Long> latestVersions =
+		new ConcurrentHashMap<String, Long>();
+	// Observer ID, stream ID, and stream version to the stream.
+	private final Map<String, Observer.Stream> streams =
+		new ConcurrentHashMap<String, Observer.Stream>();
+	// Observer ID, observer version, stream ID, and stream version to the
+	// database ID of the link between them.
+	private final Map<String, Long> streamLinks =
+		new ConcurrentHashMap<String, Long>();
+
+	// Incremented every time any part of the cache is invalidated.
+	private final AtomicLong generation = new AtomicLong(0);
+
+	/**
+	 * Creates the cache.
+	 * 
+	 * @param dataSource The DataSource, which is unused as the definitions
+	 * 					 are read by the observer queries.
+	 * 
+	 * @param updateFrequency The number of milliseconds after which the
+	 * 						  entire cache is cleared.
+	 * 
+	 * @throws IllegalArgumentException The update frequency is less than
+	 * 									{@link Cache#MIN_CACHE_REFRESH_MILLIS}.
+	 */
+	private ObserverCache(
+			final DataSource dataSource,
+			final long updateFrequency) {
+
+		super(dataSource, updateFrequency);
+
+		if(updateFrequency < MIN_CACHE_REFRESH_MILLIS) {
+			throw new IllegalArgumentException(
+				"The update frequency must be at least " +
+					MIN_CACHE_REFRESH_MILLIS +
+					" milliseconds.");
+		}
+
+		setLastUpdateTimestamp(System.currentTimeMillis());
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the singular instance of this cache or null if the cache has
+	 * not been configured.
+	 * 
+	 * @return The instance of this cache or null.
+	 */
+	public static ObserverCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the current generation of the cache, which must be passed to
+	 * the "put" methods.
+	 * 
+	 * @return The current generation of the cache.
+	 */
+	public static long getGeneration() {
+		if(instance == null) {
+			return 0;
+		}
+
+		instance.expireIfStale();
+		return instance.generation.get();
+	}
+
+	/**
+	 * Returns an observer.
+	 * 
+	 * @param observerId The observer's ID.
+	 * 
+	 * @param observerVersion The observer's version.
+	 * 
+	 * @return The observer or null if it is not cached.
+	 */
+	public static Observer getObserver(
+			final String observerId,
+			final long observerVersion) {
+
+		if(instance == null) {
+			return null;
+		}
+
+		instance.expireIfStale();
+		return
+			instance.observers.get(
+				buildKey(observerId, observerVersion));
+	}
+
+	/**
+	 * Adds an observer.
+	 * 
+	 * @param observer The observer.
+	 * 
+	 * @param generation The generation of the cache from before the observer
+	 * 					 was read.
+	 */
+	public static void putObserver(
+			final Observer observer,
+			final long generation) {
+
+		if(instance != null) {
+			synchronized(instance) {
+				if(instance.generation.get() == generation) {
+					instance.observers.put(
+						buildKey(observer.getId(), observer.getVersion()),
+						observer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the greatest version of an observer.
+	 * 
+	 * @param observerId The observer's ID.
+	 * 
+	 * @return The observer's greatest version or null if it is not cached.
+	 */
+	public static Long getLatestVersion(final String observerId) {
+		if(instance == null) {
+			return null;
+		}
+
+		instance.expireIfStale();
+		return instance.latestVersions.get(observerId);
+	}
+
+	/**
+	 * Adds the greatest version of an observer.
+	 * 
+	 * @param observerId The observer's ID.
+	 * 
+	 * @param observerVersion The observer's greatest version.
+	 * 
+	 * @param generation The generation of the cache from before the version
+	 * 					 was read.
+	 */
+	public static void putLatestVersion(
+			final String observerId,
+			final long observerVersion,
+			final long generation) {
+
+		if(instance != null) {
+			synchronized(instance) {
+				if(instance.generation.get() == generation) {
+					instance.latestVersions.put(observerId, observerVersion);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a stream.
+	 * 
+	 * @param observerId The ID of the observer to which the stream belongs.
+	 * 
+	 * @param streamId The stream's ID.
+	 * 
+	 * @param streamVersion The stream's version.
+	 * 
+	 * @return The stream or null if it is not cached.
+	 */
+	public static Observer.Stream getStream(
+			final String observerId,
+			final String streamId,
+			final long streamVersion) {
+
+		if(instance == null) {
+			return null;
+		}
+
+		instance.expireIfStale();
+		return
+			instance.streams.get(
+				buildKey(observerId, streamId, streamVersion));
+	}
+
+	/**
+	 * Adds a stream.
+	 * 
+	 * @param observerId The ID of the observer to which the stream belongs.
+	 * 
+	 * @param stream The stream.
+	 * 
+	 * @param generation The generation of the cache from before the stream
+	 * 					 was read.
+	 */
+	public static void putStream(
+			final String observerId,
+			final Observer.Stream stream,
+			final long generation) {
+
+		if(instance != null) {
+			synchronized(instance) {
+				if(instance.generation.get() == generation) {
+					instance.streams.put(
+						buildKey(
+							observerId,
+							stream.getId(),
+							stream.getVersion()),
+						stream);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the database ID of the link between an observer and a stream.
+	 * 
+	 * @param observerId The observer's ID.
+	 * 
+	 * @param observerVersion The observer's version or null for the
+	 * 						  observer's greatest version.
+	 * 
+	 * @param streamId The stream's ID.
+	 * 
+	 * @param streamVersion The stream's version.
+	 * 
+	 * @return The link's database ID or null if it is not cached.
+	 */
+	public static Long getStreamLinkId(
+			final String observerId,
+			final Long observerVersion,
+			final String streamId,
+			final long streamVersion) {
+
+		if(instance == null) {
+			return null;
+		}
+
+		instance.expireIfStale();
+		return
+			instance.streamLinks.get(
+				buildKey(observerId, observerVersion, streamId, streamVersion));
+	}
+
+	/**
+	 * Adds the database ID of the link between an observer and a stream.
+	 * 
+	 * @param observerId The observer's ID.
+	 * 
+	 * @param observerVersion The observer's version or null for the
+	 * 						  observer's greatest version.
+	 * 
+	 * @param streamId The stream's ID.
+	 * 
+	 * @param streamVersion The stream's version.
+	 * 
+	 * @param linkId The link's database ID.
+	 * 
+	 * @param generation The generation of the cache from before the link was
+	 * 					 read.
+	 */
+	public static void putStreamLinkId(
+			final String observerId,
+			final Long observerVersion,
+			final String streamId,
+			final long streamVersion,
+			final long linkId,
+			final long generation) {
+
+		if(instance != null) {
+			synchronized(instance) {
+				if(instance.generation.get() == generation) {
+					instance.streamLinks.put(
+						buildKey(
+							observerId,
+							observerVersion,
+							streamId,
+							streamVersion),
+						linkId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Removes everything that is cached about an observer. If the cache is
+	 * not configured, this does nothing.
+	 * 
+	 * @param observerId The observer's ID.
+	 */
+	public static void invalidate(final String observerId) {
+		if(instance == null) {
+			return;
+		}
+
+		LOGGER.debug("Invalidating the cached observer: " + observerId);
+
+		String prefix = observerId + SEPARATOR;
+		synchronized(instance) {
+			instance.generation.incrementAndGet();
+
+			instance.latestVersions.remove(observerId);
+			removeWithPrefix(instance.observers, prefix);
+			removeWithPrefix(instance.streams, prefix);
+			removeWithPrefix(instance.streamLinks, prefix);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.cache.Cache#getKeys()
+	 */
+	@Override
+	public Set<String> getKeys() {
+		Set<String> result = new HashSet<String>();
+		result.add(KEY_OBSERVERS);
+		result.add(KEY_LATEST_VERSIONS);
+		result.add(KEY_STREAMS);
+		result.add(KEY_STREAM_LINKS);
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.cache.Cache#getName()
+	 */
+	@Override
+	public String getName() {
+		return CACHE_KEY;
+	}
+
+	/**
+	 * Clears the entire cache if it hasn't been cleared within the update
+	 * frequency.
+	 */
+	private void expireIfStale() {
+		long now = System.currentTimeMillis();
+		if((now - getLastUpdateTimestamp()) <= getUpdateFrequency()) {
+			return;
+		}
+
+		synchronized(this) {
+			if((now - getLastUpdateTimestamp()) <= getUpdateFrequency()) {
+				return;
+			}
+
+			LOGGER.debug("Clearing the observer cache.");
+
+			generation.incrementAndGet();
+
+			observers.clear();
+			latestVersions.clear();
+			streams.clear();
+			streamLinks.clear();
+
+			setLastUpdateTimestamp(now);
+		}
+	}
+
+	/**
+	 * Removes all of the entries whose key begins with the prefix.
+	 * 
+	 * @param map The map.
+	 * 
+	 * @param prefix The prefix.
+	 */
+	private static void removeWithPrefix(
+			final Map<String, ?> map,
+			final String prefix) {
+
+		Iterator<String> keys = map.keySet().iterator();
+		while(keys.hasNext()) {
+			if(keys.next().startsWith(prefix)) {
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * Builds a key from its parts. The observer's ID is always first so that
+	 * all of the keys for an observer can be found.
+	 * 
+	 * @param parts The parts of the key.
+	 * 
+	 * @return The key.
+	 */
+	private static String buildKey(final Object... parts) {
+		StringBuilder result = new StringBuilder();
+		for(Object part : parts) {
+			result.append(part).append(SEPARATOR);
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,104 @@
+package org.ohmage.cache;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.ObserverServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Periodically adds the days of the stream data that was uploaded before the
+ * stream data day index existed to that index. New points are indexed when
+ * they are uploaded, so once the backfill has caught up, this task cancels
+ * itself.
+ */
+public final class ObserverStreamDayBackfill implements Runnable, DisposableBean {
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(ObserverStreamDayBackfill.class);
+
+	/**
+	 * The backfill task that is periodically run.
+	 */
+	private final BackgroundTaskScheduler.Task task;
+
+	/**
+	 * The number of milliseconds between each run.
+	 */
+	private static final long MILLISECONDS_BETWEEN_RUNS = 1000 * 60;
+
+	/**
+	 * The number of points to read in each transaction.
+	 */
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * The maximum number of batches to index in a single run so that one run
+	 * doesn't hold a database connection for too long.
+	 */
+	private static final int MAX_BATCHES_PER_RUN = 50;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private ObserverStreamDayBackfill() {
+		LOGGER.info("Creating the stream data day backfill task.");
+
+		// Create the task that will be run periodically. The first run
+		// happens quickly so that mobility date reads can use the index as soon as
+		// possible when it is already complete.
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"ObserverStreamDayBackfill - Indexing the days of existing stream data",
+					this,
+					1000 * 10,
+					MILLISECONDS_BETWEEN_RUNS,
+					1,
+					true);
+	}
+
+	/**
+	 * Indexes the days of batches of points until the backfill is complete or
+	 * the maximum number of batches for this run have been indexed.
+	 */
+	@Override
+	public void run() {
+		try {
+			long total = 0;
+			for(int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+				int numIndexed =
+					ObserverServices
+						.instance()
+						.backfillStreamDays(BATCH_SIZE);
+
+				if(numIndexed == 0) {
+					LOGGER.info(
+						"The stream data day backfill is complete.");
+					task.cancel();
+					return;
+				}
+
+				total += numIndexed;
+			}
+
+			LOGGER.info(
+				"Added " +
+					total +
+					" points to the day index.");
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to backfill the stream data day index.", e);
+		}
+	}
+
+	/**
+	 * Stops the backfill task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		task.cancel();
+	}
+}
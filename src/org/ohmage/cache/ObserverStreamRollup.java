@@ -0,0 +1,121 @@
+package org.ohmage.cache;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.ObserverServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Periodically recomputes the hourly and daily summaries of the stream data
+ * for the hours that have received new points and then moves the raw points
+ * that have outlived their stream's retention policy into the archive.
+ * Aggregate reads also bring the summaries they need up to date, so this
+ * only keeps the backlog of pending hours small.
+ */
+public final class ObserverStreamRollup implements Runnable, DisposableBean {
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(ObserverStreamRollup.class);
+
+	/**
+	 * The task that is periodically run.
+	 */
+	private final BackgroundTaskScheduler.Task task;
+
+	/**
+	 * The number of milliseconds between each run.
+	 */
+	private static final long MILLISECONDS_BETWEEN_RUNS = 1000 * 60;
+
+	/**
+	 * The number of hours to summarize in each batch.
+	 */
+	private static final int ROLLUP_BATCH_SIZE = 100;
+
+	/**
+	 * The number of points to archive in each batch.
+	 */
+	private static final int ARCHIVE_BATCH_SIZE = 1000;
+
+	/**
+	 * The maximum number of batches of each kind in a single run so that one
+	 * run doesn't hold a database connection for too long.
+	 */
+	private static final int MAX_BATCHES_PER_RUN = 50;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private ObserverStreamRollup() {
+		LOGGER.info("Creating the observer stream rollup task.");
+
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"ObserverStreamRollup - Summarizing and archiving stream data",
+					this,
+					MILLISECONDS_BETWEEN_RUNS,
+					MILLISECONDS_BETWEEN_RUNS,
+					1,
+					true);
+	}
+
+	/**
+	 * Summarizes the pending hours and then archives the old points, each
+	 * until there is no more work or the maximum number of batches for this
+	 * run have been processed.
+	 */
+	@Override
+	public void run() {
+		try {
+			long totalHours = 0;
+			for(int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+				int numHours =
+					ObserverServices
+						.instance()
+						.processStreamRollups(ROLLUP_BATCH_SIZE);
+
+				totalHours += numHours;
+				if(numHours < ROLLUP_BATCH_SIZE) {
+					break;
+				}
+			}
+
+			long totalPoints = 0;
+			for(int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+				int numPoints =
+					ObserverServices
+						.instance()
+						.archiveStreamData(ARCHIVE_BATCH_SIZE);
+
+				totalPoints += numPoints;
+				if(numPoints < ARCHIVE_BATCH_SIZE) {
+					break;
+				}
+			}
+
+			if((totalHours > 0) || (totalPoints > 0)) {
+				LOGGER.info(
+					"Summarized " +
+						totalHours +
+						" hours and archived " +
+						totalPoints +
+						" points of stream data.");
+			}
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to summarize or archive the stream data.", e);
+		}
+	}
+
+	/**
+	 * Stops the rollup task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		task.cancel();
+	}
+}
@@ -0,0 +1,108 @@
+package org.ohmage.cache;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.MediaCollection;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.MediaCollectionServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Periodically removes the media and document files that no longer belong
+ * to any media or document, such as those left behind when a survey upload
+ * failed after its files were written. Each run checks a bounded number of
+ * files, continuing from where the last run stopped, so the disk is never
+ * scanned all at once. Runs are deferred while the requests are slow.
+ */
+public final class OrphanedMediaCollector implements Runnable, DisposableBean {
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(OrphanedMediaCollector.class);
+
+	/**
+	 * The number of milliseconds between each run.
+	 */
+	private static final long MILLISECONDS_BETWEEN_RUNS = 1000 * 60 * 5;
+
+	/**
+	 * The maximum number of files to check in a single run, which bounds the
+	 * rate at which the disk is read.
+	 */
+	private static final long MAX_FILES_PER_RUN = 5000;
+
+	/**
+	 * The collection task that is periodically run.
+	 */
+	private final BackgroundTaskScheduler.Task task;
+
+	/**
+	 * The index of the directory that is checked first in the next run.
+	 */
+	private int firstDirectory = 0;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private OrphanedMediaCollector() {
+		LOGGER.info("Creating the orphaned media collection task.");
+
+		// Nothing is urgent, so the first run waits for the server to settle.
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"OrphanedMediaCollector - Removing unreferenced media files",
+					this,
+					MILLISECONDS_BETWEEN_RUNS,
+					MILLISECONDS_BETWEEN_RUNS,
+					1,
+					true);
+	}
+
+	/**
+	 * Checks each media directory in turn until the run's files have been
+	 * checked. Each run starts with the next directory, so that one large
+	 * directory can't keep the others from ever being checked. A directory
+	 * that fails is skipped until the next run.
+	 */
+	@Override
+	public void run() {
+		MediaCollection.Directory[] directories =
+			MediaCollection.Directory.values();
+		int first = firstDirectory;
+		firstDirectory = (first + 1) % directories.length;
+
+		long remaining = MAX_FILES_PER_RUN;
+		for(int i = 0; i < directories.length; i++) {
+			if(remaining <= 0) {
+				return;
+			}
+
+			MediaCollection.Directory directory =
+				directories[(first + i) % directories.length];
+
+			try {
+				remaining -=
+					MediaCollectionServices
+						.instance()
+						.collect(directory, remaining);
+			}
+			catch(ServiceException e) {
+				LOGGER.error(
+					"Failed to collect the orphaned files in the " +
+						directory +
+						" directory.",
+					e);
+			}
+		}
+	}
+
+	/**
+	 * Stops the collection task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		task.cancel();
+	}
+}
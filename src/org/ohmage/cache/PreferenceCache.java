@@ -158,6 +158,16 @@ public final class PreferenceCache extends KeyValueCache {
 	// Local auth enabling.
 	public static final String KEY_LOCAL_AUTH_ENABLED = "local_auth_enabled";
 	
+	// Whether or not new stream data is stored in the binary Smile encoding.
+	public static final String KEY_OBSERVER_STREAM_DATA_BINARY = 
+		"observer_stream_data_binary";
+	
+	// The directory to which export jobs write their results.
+	public static final String KEY_EXPORT_DIRECTORY = "export_directory";
+	
+	// The number of hours for which an export job's result is kept.
+	public static final String KEY_EXPORT_JOB_LIFETIME = "export_job_lifetime";
+	
 	// The reference to one's self to return to requesters.
 	private static PreferenceCache instance;
 	
@@ -209,21 +219,17 @@ public final class PreferenceCache extends KeyValueCache {
 	}
 	
 	/**
-	 * Compares the current timestamp with the last time we did an update plus
-	 * the amount of time between updates. If our cache has become stale, we
-	 * attempt to update it.
-	 * 
-	 * Then, we check to see if such a key exists in our cache. If not, we
-	 * throw an exception because, if someone is querying for a key that
-	 * doesn't exist, we need to bring it to their immediate attention rather
-	 * than returning an "error" value. Otherwise, the corresponding integer
-	 * value is returned.
+	 * Checks to see if such a key exists in our cache or, for the build
+	 * information, in the system properties. If not, we throw an exception
+	 * because, if someone is querying for a key that doesn't exist, we need
+	 * to bring it to their immediate attention rather than returning an
+	 * "error" value. Otherwise, the corresponding value is returned.
 	 * 
 	 * It is recommended, but not required, to use the constants declared in
 	 * the concrete cache class as the parameter.
 	 * 
-	 * The complexity is O(n) if a refresh is required; otherwise, the 
-	 * complexity of a Java Map object to lookup a key and return its value.
+	 * The cache is refreshed in the background, so the complexity is that of
+	 * a Java Map object to lookup a key and return its value.
 	 * 
 	 * @param key The key whose corresponding value is being requested.
 	 * 
@@ -232,11 +238,6 @@ public final class PreferenceCache extends KeyValueCache {
 	 * @throws CacheMissException Thrown if no such key exists.
 	 */
 	public String lookup(String key) throws CacheMissException {		
-		// If the lookup table is out-of-date, refresh it.
-		if((getLastUpdateTimestamp() + getUpdateFrequency()) <= System.currentTimeMillis()) {
-			refreshMap();
-		}
-
 		if(KEY_APPLICATION_NAME.equals(key)) {
 		  try {
 		  	return super.lookup(SQL_KEY_APPLICATION_NAME); 
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2012 The Regents of the University of California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.service.PromptResponseServices;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Periodically adds the prompt responses that were uploaded before the
+ * prompt response token index existed to that index. New prompt responses
+ * are indexed when they are uploaded, so once the backfill has caught up,
+ * this task cancels itself.
+ */
+public final class PromptResponseTokenBackfill implements Runnable, DisposableBean {
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(PromptResponseTokenBackfill.class);
+
+	/**
+	 * The backfill task that is periodically run.
+	 */
+	private final BackgroundTaskScheduler.Task task;
+
+	/**
+	 * The number of milliseconds between each run.
+	 */
+	private static final long MILLISECONDS_BETWEEN_RUNS = 1000 * 60;
+
+	/**
+	 * The number of prompt responses to index in each transaction.
+	 */
+	private static final int BATCH_SIZE = 1000;
+
+	/**
+	 * The maximum number of batches to index in a single run so that one run
+	 * doesn't hold a database connection for too long.
+	 */
+	private static final int MAX_BATCHES_PER_RUN = 50;
+
+	/**
+	 * Default constructor that will be called by Spring via reflection.
+	 */
+	private PromptResponseTokenBackfill() {
+		LOGGER.info("Creating the prompt response token backfill task.");
+
+		// Create the task that will be run periodically. The first run
+		// happens quickly so that searches can use the index as soon as
+		// possible when it is already complete.
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"PromptResponseTokenBackfill - Indexing existing prompt responses",
+					this,
+					1000 * 10,
+					MILLISECONDS_BETWEEN_RUNS,
+					1,
+					true);
+	}
+
+	/**
+	 * Indexes batches of prompt responses until the backfill is complete or
+	 * the maximum number of batches for this run have been indexed.
+	 */
+	@Override
+	public void run() {
+		try {
+			long total = 0;
+			for(int i = 0; i < MAX_BATCHES_PER_RUN; i++) {
+				int numIndexed =
+					PromptResponseServices
+						.instance()
+						.backfillPromptResponseTokens(BATCH_SIZE);
+
+				if(numIndexed == 0) {
+					LOGGER.info(
+						"The prompt response token backfill is complete.");
+					task.cancel();
+					return;
+				}
+
+				total += numIndexed;
+			}
+
+			LOGGER.info(
+				"Added " +
+					total +
+					" prompt responses to the token index.");
+		}
+		catch(ServiceException e) {
+			LOGGER.error("Failed to backfill the prompt response tokens.", e);
+		}
+	}
+
+	/**
+	 * Stops the backfill task.
+	 */
+	@Override
+	public void destroy() throws Exception {
+		task.cancel();
+	}
+}
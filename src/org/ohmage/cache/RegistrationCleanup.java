@@ -1,14 +1,11 @@
 package org.ohmage.cache;
 
-import java.util.Timer;
-import java.util.TimerTask;
-
 import org.apache.log4j.Logger;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.service.UserServices;
 import org.springframework.beans.factory.DisposableBean;
 
-public final class RegistrationCleanup extends TimerTask implements DisposableBean {
+public final class RegistrationCleanup implements Runnable, DisposableBean {
 	/**
 	 * The logger.
 	 */
@@ -19,10 +16,7 @@ public final class RegistrationCleanup extends TimerTask implements DisposableBe
 	 * The cleanup task that is periodically run to clean up expired 
 	 * registration requests.
 	 */
-	private static final Timer CLEANUP = 
-		new Timer(
-			"RegistrationCleanup - Removing expired registration requests.",
-			true);
+	private final BackgroundTaskScheduler.Task task;
 	
 	/**
 	 * The number of milliseconds between each cleanup.
@@ -36,10 +30,16 @@ public final class RegistrationCleanup extends TimerTask implements DisposableBe
 		LOGGER.info("Creating the registration cleanup, periodic task.");
 		
 		// Create the task that will be run periodically.
-		CLEANUP.schedule(
-			this, 
-			MILLISECONDS_BETWEEN_CLEANUPS, 
-			MILLISECONDS_BETWEEN_CLEANUPS);
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"RegistrationCleanup - Removing expired registration requests",
+					this,
+					MILLISECONDS_BETWEEN_CLEANUPS,
+					MILLISECONDS_BETWEEN_CLEANUPS,
+					1,
+					false);
 	}
 
 	/**
@@ -64,6 +64,6 @@ public final class RegistrationCleanup extends TimerTask implements DisposableBe
 	 */
 	@Override
 	public void destroy() throws Exception {
-		CLEANUP.cancel();
+		task.cancel();
 	}
 }
@@ -0,0 +1,735 @@
+/*******************************************************************************
+ * Copyright 2012 The Regents of the University of California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.cache;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.DeletionJob;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+/**
+ * <p>
+ * Keeps {@link NGramIndex n-gram indices} over the searchable text fields of
+ * users, classes, and campaigns so that the partial-value searches don't
+ * require "LIKE '%value%'" table scans.
+ * </p>
+ * 
+ * <p>
+ * The indices are built in the background when the server starts and are
+ * rebuilt from the database at a fixed period as a safety net. Between
+ * rebuilds, the queries that create, update, or delete these entities call
+ * the appropriate "reindex" or "remove" method once their transaction has
+ * committed. Until the first build has completed, {@link #isReady()} returns
+ * false and callers should fall back to the database.
+ * </p>
+ */
+public final class SearchIndexCache extends Cache implements DisposableBean {
+	private static final Logger LOGGER =
+		Logger.getLogger(SearchIndexCache.class);
+
+	/**
+	 * The key used to reference this cache.
+	 */
+	public static final String CACHE_KEY = "searchIndexCache";
+
+	/**
+	 * The name of the user index.
+	 */
+	public static final String INDEX_USER = "user";
+	/**
+	 * The name of the class index.
+	 */
+	public static final String INDEX_CLASS = "class";
+	/**
+	 * The name of the campaign index.
+	 */
+	public static final String INDEX_CAMPAIGN = "campaign";
+
+	// User fields.
+	public static final String FIELD_USER_USERNAME = "username";
+	public static final String FIELD_USER_EMAIL_ADDRESS = "email_address";
+	public static final String FIELD_USER_FIRST_NAME = "first_name";
+	public static final String FIELD_USER_LAST_NAME = "last_name";
+	public static final String FIELD_USER_ORGANIZATION = "organization";
+	public static final String FIELD_USER_PERSONAL_ID = "personal_id";
+
+	// Class fields.
+	public static final String FIELD_CLASS_ID = "urn";
+	public static final String FIELD_CLASS_NAME = "name";
+	public static final String FIELD_CLASS_DESCRIPTION = "description";
+
+	// Campaign fields.
+	public static final String FIELD_CAMPAIGN_ID = "urn";
+	public static final String FIELD_CAMPAIGN_NAME = "name";
+	public static final String FIELD_CAMPAIGN_DESCRIPTION = "description";
+	public static final String FIELD_CAMPAIGN_XML = "xml";
+	public static final String FIELD_CAMPAIGN_AUTHORED_BY = "authored_by";
+
+	/**
+	 * The number of times a rebuild reads the database again because the
+	 * entities changed while it was reading. After this, the rebuild keeps
+	 * what it read and re-reads only the keys that changed.
+	 */
+	private static final int MAX_REBUILD_ATTEMPTS = 3;
+
+	// The users and campaigns that have been deleted but not yet purged
+	// are never indexed.
+	private static final String SQL_GET_USERS =
+		"SELECT u.username, u.email_address, " +
+			"up.first_name, up.last_name, up.organization, up.personal_id " +
+		"FROM user u LEFT JOIN user_personal up ON u.id = up.user_id " +
+		"WHERE u.username NOT LIKE '" + DeletionJob.TOMBSTONE_PREFIX + "%'";
+
+	private static final String SQL_GET_USER =
+		SQL_GET_USERS + " " +
+		"AND u.username = ?";
+
+	private static final String SQL_GET_CLASSES =
+		"SELECT urn, name, description " +
+		"FROM class";
+
+	private static final String SQL_GET_CLASS =
+		SQL_GET_CLASSES + " " +
+		"WHERE urn = ?";
+
+	private static final String SQL_GET_CAMPAIGNS =
+		"SELECT urn, name, description, xml, authored_by " +
+		"FROM campaign " +
+		"WHERE urn NOT LIKE '" + DeletionJob.TOMBSTONE_PREFIX + "%'";
+
+	private static final String SQL_GET_CAMPAIGN =
+		SQL_GET_CAMPAIGNS + " " +
+		"AND urn = ?";
+
+	/**
+	 * Reads a row from one of the queries above into the fields map for the
+	 * index.
+	 */
+	private static interface FieldMapper {
+		/**
+		 * Returns the key for the current row.
+		 */
+		String getKey(ResultSet rs) throws SQLException;
+
+		/**
+		 * Returns the fields for the current row.
+		 */
+		Map<String, String> getFields(ResultSet rs) throws SQLException;
+	}
+
+	private static final FieldMapper USER_MAPPER = new FieldMapper() {
+		@Override
+		public String getKey(final ResultSet rs) throws SQLException {
+			return rs.getString("username");
+		}
+
+		@Override
+		public Map<String, String> getFields(
+				final ResultSet rs)
+				throws SQLException {
+
+			Map<String, String> result = new HashMap<String, String>();
+			result.put(FIELD_USER_USERNAME, rs.getString("username"));
+			result.put(FIELD_USER_EMAIL_ADDRESS, rs.getString("email_address"));
+			result.put(FIELD_USER_FIRST_NAME, rs.getString("first_name"));
+			result.put(FIELD_USER_LAST_NAME, rs.getString("last_name"));
+			result.put(FIELD_USER_ORGANIZATION, rs.getString("organization"));
+			result.put(FIELD_USER_PERSONAL_ID, rs.getString("personal_id"));
+			return result;
+		}
+	};
+
+	private static final FieldMapper CLASS_MAPPER = new FieldMapper() {
+		@Override
+		public String getKey(final ResultSet rs) throws SQLException {
+			return rs.getString("urn");
+		}
+
+		@Override
+		public Map<String, String> getFields(
+				final ResultSet rs)
+				throws SQLException {
+
+			Map<String, String> result = new HashMap<String, String>();
+			result.put(FIELD_CLASS_ID, rs.getString("urn"));
+			result.put(FIELD_CLASS_NAME, rs.getString("name"));
+			result.put(FIELD_CLASS_DESCRIPTION, rs.getString("description"));
+			return result;
+		}
+	};
+
+	private static final FieldMapper CAMPAIGN_MAPPER = new FieldMapper() {
+		@Override
+		public String getKey(final ResultSet rs) throws SQLException {
+			return rs.getString("urn");
+		}
+
+		@Override
+		public Map<String, String> getFields(
+				final ResultSet rs)
+				throws SQLException {
+
+			Map<String, String> result = new HashMap<String, String>();
+			result.put(FIELD_CAMPAIGN_ID, rs.getString("urn"));
+			result.put(FIELD_CAMPAIGN_NAME, rs.getString("name"));
+			result.put(
+				FIELD_CAMPAIGN_DESCRIPTION,
+				rs.getString("description"));
+			result.put(FIELD_CAMPAIGN_XML, rs.getString("xml"));
+			result.put(
+				FIELD_CAMPAIGN_AUTHORED_BY,
+				rs.getString("authored_by"));
+			return result;
+		}
+	};
+
+
+	private static SearchIndexCache instance;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	// The task that periodically rebuilds the indices.
+	private final BackgroundTaskScheduler.Task rebuilder;
+
+	private volatile NGramIndex userIndex;
+	private volatile NGramIndex classIndex;
+	private volatile NGramIndex campaignIndex;
+
+	// The keys that were modified while a rebuild was running. These are
+	// re-read once the new indices have been swapped in, because the rebuild
+	// may have read the old values.
+	private final Set<String> dirtyUsers = new HashSet<String>();
+	private final Set<String> dirtyClasses = new HashSet<String>();
+	private final Set<String> dirtyCampaigns = new HashSet<String>();
+	private boolean rebuilding = false;
+
+	// The number of times any key has been modified. A rebuild records this
+	// before it reads the database and reads it again if it changed.
+	private long generation = 0;
+
+	private volatile boolean ready = false;
+
+	/**
+	 * Creates the cache and schedules its first build immediately in the
+	 * background.
+	 * 
+	 * @param dataSource The DataSource to use to read the entities.
+	 * 
+	 * @param updateFrequency The number of milliseconds between full
+	 * 						  rebuilds of the indices.
+	 * 
+	 * @throws IllegalArgumentException The update frequency is less than
+	 * 									{@link Cache#MIN_CACHE_REFRESH_MILLIS}.
+	 */
+	private SearchIndexCache(
+			final DataSource dataSource,
+			final long updateFrequency) {
+
+		super(dataSource, updateFrequency);
+
+		if(updateFrequency < MIN_CACHE_REFRESH_MILLIS) {
+			throw new IllegalArgumentException(
+				"The update frequency must be at least " +
+					MIN_CACHE_REFRESH_MILLIS +
+					" milliseconds.");
+		}
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+
+		userIndex = new NGramIndex(INDEX_USER);
+		classIndex = new NGramIndex(INDEX_CLASS);
+		campaignIndex = new NGramIndex(INDEX_CAMPAIGN);
+
+		rebuilder =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"SearchIndexCache - Index rebuild process",
+					new Runnable() {
+						@Override
+						public void run() {
+							rebuild();
+						}
+					},
+					0,
+					updateFrequency,
+					1,
+					true);
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the singular instance of this cache or null if the cache has
+	 * not been configured.
+	 * 
+	 * @return The instance of this cache or null.
+	 */
+	public static SearchIndexCache instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns whether or not the indices are available for searching. This
+	 * is false if the cache was never configured or its first build has not
+	 * yet completed.
+	 * 
+	 * @return Whether or not the indices may be searched.
+	 */
+	public static boolean isReady() {
+		return (instance != null) && instance.ready;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.beans.factory.DisposableBean#destroy()
+	 */
+	@Override
+	public void destroy() {
+		rebuilder.cancel();
+	}
+
+	/**
+	 * Returns the users whose field contains the partial value.
+	 * 
+	 * @param field One of the FIELD_USER_* constants.
+	 * 
+	 * @param partialValue The value to search for.
+	 * 
+	 * @return The usernames of the matching users in their natural order.
+	 */
+	public SortedSet<String> searchUsers(
+			final String field,
+			final String partialValue) {
+
+		return userIndex.search(field, partialValue);
+	}
+
+	/**
+	 * Returns the classes whose field contains the partial value.
+	 * 
+	 * @param field One of the FIELD_CLASS_* constants.
+	 * 
+	 * @param partialValue The value to search for.
+	 * 
+	 * @return The IDs of the matching classes in their natural order.
+	 */
+	public SortedSet<String> searchClasses(
+			final String field,
+			final String partialValue) {
+
+		return classIndex.search(field, partialValue);
+	}
+
+	/**
+	 * Returns the campaigns whose field contains the partial value.
+	 * 
+	 * @param field One of the FIELD_CAMPAIGN_* constants.
+	 * 
+	 * @param partialValue The value to search for.
+	 * 
+	 * @return The IDs of the matching campaigns in their natural order.
+	 */
+	public SortedSet<String> searchCampaigns(
+			final String field,
+			final String partialValue) {
+
+		return campaignIndex.search(field, partialValue);
+	}
+
+	/**
+	 * Schedules a full rebuild of the indices in the background. This should
+	 * be used when many entities were modified at once and their keys aren't
+	 * known. If the cache is not configured, this is a no-op.
+	 */
+	public static void requestRebuild() {
+		if(instance != null) {
+			instance.rebuilder.execute();
+		}
+	}
+
+	/**
+	 * Re-reads a user from the database and updates the index. If the cache
+	 * is not configured, this is a no-op.
+	 * 
+	 * @param username The user's username.
+	 */
+	public static void reindexUser(final String username) {
+		if(instance != null) {
+			instance.reindex(
+				INDEX_USER,
+				SQL_GET_USER,
+				USER_MAPPER,
+				username);
+		}
+	}
+
+	/**
+	 * Removes users from the index. If the cache is not configured, this is
+	 * a no-op.
+	 * 
+	 * @param usernames The users' usernames.
+	 */
+	public static void removeUsers(final Collection<String> usernames) {
+		if(instance != null) {
+			for(String username : usernames) {
+				instance.remove(INDEX_USER, username);
+			}
+		}
+	}
+
+	/**
+	 * Re-reads a class from the database and updates the index. If the cache
+	 * is not configured, this is a no-op.
+	 * 
+	 * @param classId The class' unique identifier.
+	 */
+	public static void reindexClass(final String classId) {
+		if(instance != null) {
+			instance.reindex(
+				INDEX_CLASS,
+				SQL_GET_CLASS,
+				CLASS_MAPPER,
+				classId);
+		}
+	}
+
+	/**
+	 * Removes a class from the index. If the cache is not configured, this is
+	 * a no-op.
+	 * 
+	 * @param classId The class' unique identifier.
+	 */
+	public static void removeClass(final String classId) {
+		if(instance != null) {
+			instance.remove(INDEX_CLASS, classId);
+		}
+	}
+
+	/**
+	 * Re-reads a campaign from the database and updates the index. If the
+	 * cache is not configured, this is a no-op.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 */
+	public static void reindexCampaign(final String campaignId) {
+		if(instance != null) {
+			instance.reindex(
+				INDEX_CAMPAIGN,
+				SQL_GET_CAMPAIGN,
+				CAMPAIGN_MAPPER,
+				campaignId);
+		}
+	}
+
+	/**
+	 * Removes a campaign from the index. If the cache is not configured, this
+	 * is a no-op.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 */
+	public static void removeCampaign(final String campaignId) {
+		if(instance != null) {
+			instance.remove(INDEX_CAMPAIGN, campaignId);
+		}
+	}
+
+	/**
+	 * Returns the estimated number of bytes used by all of the indices.
+	 * 
+	 * @return The estimated memory usage in bytes.
+	 */
+	public long getMemoryUsage() {
+		return
+			userIndex.estimateMemoryUsage() +
+			classIndex.estimateMemoryUsage() +
+			campaignIndex.estimateMemoryUsage();
+	}
+
+	/**
+	 * Returns a description of each index's size and memory usage.
+	 * 
+	 * @return A map of each index's name to its description.
+	 */
+	public Map<String, String> getStatistics() {
+		Map<String, String> result = new HashMap<String, String>();
+		result.put(INDEX_USER, userIndex.toString());
+		result.put(INDEX_CLASS, classIndex.toString());
+		result.put(INDEX_CAMPAIGN, campaignIndex.toString());
+		return result;
+	}
+
+	/**
+	 * Returns the names of the indices.
+	 */
+	@Override
+	public Set<String> getKeys() {
+		Set<String> result = new HashSet<String>();
+		result.add(INDEX_USER);
+		result.add(INDEX_CLASS);
+		result.add(INDEX_CAMPAIGN);
+		return result;
+	}
+
+	/**
+	 * Returns a human-readable name for this cache.
+	 */
+	@Override
+	public String getName() {
+		return CACHE_KEY;
+	}
+
+	/**
+	 * Rebuilds all of the indices from the database and swaps them in. If
+	 * any entity is modified while the database is being read, it is read
+	 * again, up to {@link #MAX_REBUILD_ATTEMPTS} times. If there is an error
+	 * reading the database, the current indices are kept.
+	 */
+	private void rebuild() {
+		long start = System.currentTimeMillis();
+		try {
+			NGramIndex newUserIndex;
+			NGramIndex newClassIndex;
+			NGramIndex newCampaignIndex;
+
+			Set<String> users;
+			Set<String> classes;
+			Set<String> campaigns;
+			int attempts = 0;
+			while(true) {
+				long capturedGeneration;
+				synchronized(this) {
+					rebuilding = true;
+					capturedGeneration = generation;
+				}
+				attempts++;
+
+				newUserIndex = build(INDEX_USER, SQL_GET_USERS, USER_MAPPER);
+				newClassIndex = build(INDEX_CLASS, SQL_GET_CLASSES, CLASS_MAPPER);
+				newCampaignIndex = build(INDEX_CAMPAIGN, SQL_GET_CAMPAIGNS, CAMPAIGN_MAPPER);
+
+				synchronized(this) {
+					if((generation == capturedGeneration) ||
+						(attempts >= MAX_REBUILD_ATTEMPTS)) {
+
+						break;
+					}
+
+					// The next read starts after these changes committed, so
+					// it will see them.
+					dirtyUsers.clear();
+					dirtyClasses.clear();
+					dirtyCampaigns.clear();
+				}
+			}
+
+			synchronized(this) {
+				userIndex = newUserIndex;
+				classIndex = newClassIndex;
+				campaignIndex = newCampaignIndex;
+
+				users = new HashSet<String>(dirtyUsers);
+				classes = new HashSet<String>(dirtyClasses);
+				campaigns = new HashSet<String>(dirtyCampaigns);
+				dirtyUsers.clear();
+				dirtyClasses.clear();
+				dirtyCampaigns.clear();
+				rebuilding = false;
+			}
+
+			// Anything that changed while we were reading may be stale in
+			// the new indices.
+			for(String username : users) {
+				reindexUser(username);
+			}
+			for(String classId : classes) {
+				reindexClass(classId);
+			}
+			for(String campaignId : campaigns) {
+				reindexCampaign(campaignId);
+			}
+
+			ready = true;
+			setLastUpdateTimestamp(System.currentTimeMillis());
+
+			LOGGER.info(
+				"Rebuilt the search indices in " +
+					(System.currentTimeMillis() - start) +
+					"ms after " +
+					attempts +
+					" attempt(s): " +
+					getStatistics().values());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			synchronized(this) {
+				rebuilding = false;
+			}
+
+			LOGGER.error(
+				"Error rebuilding the search indices. The current indices " +
+					"will be kept.",
+				e);
+		}
+	}
+
+	/**
+	 * Builds a new index from every row returned by the query.
+	 * 
+	 * @param name The index's name.
+	 * 
+	 * @param sql The SQL that returns every entity.
+	 * 
+	 * @param mapper The mapper from the rows to the entities' fields.
+	 * 
+	 * @return The new index.
+	 */
+	private NGramIndex build(
+			final String name,
+			final String sql,
+			final FieldMapper mapper) {
+
+		final NGramIndex result = new NGramIndex(name);
+		jdbcTemplate.query(
+			sql,
+			new RowCallbackHandler() {
+				@Override
+				public void processRow(ResultSet rs) throws SQLException {
+					result.put(mapper.getKey(rs), mapper.getFields(rs));
+				}
+			});
+		return result;
+	}
+
+	/**
+	 * Re-reads an entity and replaces it in the index or removes it if it no
+	 * longer exists. Errors are logged and not thrown, as the next rebuild
+	 * will correct the index.
+	 * 
+	 * @param indexName The name of the index to update.
+	 * 
+	 * @param sql The SQL that returns the entity.
+	 * 
+	 * @param mapper The mapper from the row to the entity's fields.
+	 * 
+	 * @param key The entity's unique key.
+	 */
+	private void reindex(
+			final String indexName,
+			final String sql,
+			final FieldMapper mapper,
+			final String key) {
+
+		if(key == null) {
+			return;
+		}
+
+		NGramIndex index = markDirty(indexName, key);
+
+		final Map<String, Map<String, String>> rows =
+			new HashMap<String, Map<String, String>>();
+		try {
+			jdbcTemplate.query(
+				sql,
+				new Object[] { key },
+				new RowCallbackHandler() {
+					@Override
+					public void processRow(ResultSet rs) throws SQLException {
+						rows.put(mapper.getKey(rs), mapper.getFields(rs));
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			LOGGER.error(
+				"Error reading '" + key + "' for the " +
+					index.getName() + " search index.",
+				e);
+			return;
+		}
+
+		if(rows.isEmpty()) {
+			index.remove(key);
+		}
+		else {
+			for(String rowKey : rows.keySet()) {
+				index.put(rowKey, rows.get(rowKey));
+			}
+		}
+	}
+
+	/**
+	 * Removes an entity from the index.
+	 * 
+	 * @param indexName The name of the index to update.
+	 * 
+	 * @param key The entity's unique key.
+	 */
+	private void remove(final String indexName, final String key) {
+		markDirty(indexName, key).remove(key);
+	}
+
+	/**
+	 * Records that a key was modified and, if a rebuild is running, that it
+	 * must be re-read once the rebuild's indices are swapped in. The index
+	 * is returned under the same lock as the swap, so that a modification is
+	 * either written to the new index or re-read after the swap and is never
+	 * written only to an index that was swapped out.
+	 * 
+	 * @param indexName The name of the index whose key was modified.
+	 * 
+	 * @param key The modified key.
+	 * 
+	 * @return The index to update.
+	 */
+	private synchronized NGramIndex markDirty(
+			final String indexName,
+			final String key) {
+
+		generation++;
+
+		if(INDEX_USER.equals(indexName)) {
+			if(rebuilding) {
+				dirtyUsers.add(key);
+			}
+			return userIndex;
+		}
+		else if(INDEX_CLASS.equals(indexName)) {
+			if(rebuilding) {
+				dirtyClasses.add(key);
+			}
+			return classIndex;
+		}
+		else if(INDEX_CAMPAIGN.equals(indexName)) {
+			if(rebuilding) {
+				dirtyCampaigns.add(key);
+			}
+			return campaignIndex;
+		}
+
+		throw new IllegalArgumentException("Unknown index: " + indexName);
+	}
+}
@@ -18,8 +18,6 @@ package org.ohmage.cache;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -35,7 +33,7 @@ import org.springframework.beans.factory.DisposableBean;
  * 
  * @author Joshua Selsky
  */
-public final class UserBin extends TimerTask implements DisposableBean {
+public final class UserBin implements Runnable, DisposableBean {
 	private static final Logger LOGGER = Logger.getLogger(UserBin.class);
 
 	/**
@@ -71,10 +69,8 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	// A map of tokens to USERS and the time that their token expires.
 	private static final Map<String, UserTime> USERS =
 		new ConcurrentHashMap<String, UserTime>();
-	// An EXECUTIONER thread to purge those whose tokens have expired.
-	private static final Timer EXECUTIONER = new Timer(
-		"UserBin - User expiration process.",
-		true);
+	// The task that purges those whose tokens have expired.
+	private final BackgroundTaskScheduler.Task executioner;
 
 	// Whether or not the constructor has run which will bootstrap this
 	// Singleton class.
@@ -97,14 +93,23 @@ public final class UserBin extends TimerTask implements DisposableBean {
 			EXECUTION_PERIOD +
 			" milliseconds");
 
-		EXECUTIONER.schedule(this, EXECUTION_PERIOD * 2, EXECUTION_PERIOD);
+		executioner =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"UserBin - User expiration process",
+					this,
+					EXECUTION_PERIOD * 2,
+					EXECUTION_PERIOD,
+					1,
+					false);
 
 		initialized = true;
 	}
 
 	@Override
 	public void destroy() {
-		EXECUTIONER.cancel();
+		executioner.cancel();
 	}
 
 	/**
@@ -230,7 +235,7 @@ public final class UserBin extends TimerTask implements DisposableBean {
 	}
 
 	/**
-	 * Background thread for purging expired Users.
+	 * Background task for purging expired Users.
 	 */
 	@Override
 	public void run() {
@@ -0,0 +1,140 @@
+package org.ohmage.domain;
+
+import org.joda.time.DateTime;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.util.DateTimeUtils;
+
+/**
+ * A snapshot of how often a cache has been refreshed from the database and
+ * how long the refreshes took. This class is immutable.
+ */
+public class CacheStatistics {
+	private static final String JSON_KEY_NAME = "name";
+	private static final String JSON_KEY_SIZE = "size";
+	private static final String JSON_KEY_REFRESHES = "refreshes";
+	private static final String JSON_KEY_FAILURES = "failures";
+	private static final String JSON_KEY_LAST_REFRESHED = "last_refreshed";
+	private static final String JSON_KEY_LAST_MILLIS = "last_millis";
+	private static final String JSON_KEY_TOTAL_MILLIS = "total_millis";
+	private static final String JSON_KEY_MEAN_MILLIS = "mean_millis";
+	private static final String JSON_KEY_MAX_MILLIS = "max_millis";
+
+	private final String name;
+	private final int size;
+	private final long refreshes;
+	private final long failures;
+	private final long lastRefreshed;
+	private final double lastMillis;
+	private final double totalMillis;
+	private final double maxMillis;
+
+	/**
+	 * Creates a snapshot of a cache's statistics.
+	 * 
+	 * @param name The cache's name.
+	 * 
+	 * @param size The number of entries in the cache.
+	 * 
+	 * @param refreshes The number of successful refreshes.
+	 * 
+	 * @param failures The number of refreshes that failed to read the
+	 * 				   database.
+	 * 
+	 * @param lastRefreshed The milliseconds since the epoch of the last
+	 * 						successful refresh or a negative value if there
+	 * 						has not been one.
+	 * 
+	 * @param lastMillis The time the last successful refresh took.
+	 * 
+	 * @param totalMillis The total time the successful refreshes took.
+	 * 
+	 * @param maxMillis The longest time a successful refresh took.
+	 */
+	public CacheStatistics(
+			final String name,
+			final int size,
+			final long refreshes,
+			final long failures,
+			final long lastRefreshed,
+			final double lastMillis,
+			final double totalMillis,
+			final double maxMillis) {
+
+		this.name = name;
+		this.size = size;
+		this.refreshes = refreshes;
+		this.failures = failures;
+		this.lastRefreshed = lastRefreshed;
+		this.lastMillis = lastMillis;
+		this.totalMillis = totalMillis;
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * Returns the cache's name.
+	 * 
+	 * @return The cache's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of successful refreshes.
+	 * 
+	 * @return The number of successful refreshes.
+	 */
+	public long getRefreshes() {
+		return refreshes;
+	}
+
+	/**
+	 * Returns the number of refreshes that failed to read the database.
+	 * 
+	 * @return The number of failed refreshes.
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Returns the time the last successful refresh took.
+	 * 
+	 * @return The time in milliseconds.
+	 */
+	public double getLastMillis() {
+		return lastMillis;
+	}
+
+	/**
+	 * Creates a JSON object describing the cache's statistics.
+	 * 
+	 * @return A JSON object describing the cache's statistics.
+	 * 
+	 * @throws JSONException There was an error building the object.
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject result = new JSONObject();
+
+		result.put(JSON_KEY_NAME, name);
+		result.put(JSON_KEY_SIZE, size);
+		result.put(JSON_KEY_REFRESHES, refreshes);
+		result.put(JSON_KEY_FAILURES, failures);
+		result.put(
+			JSON_KEY_LAST_REFRESHED,
+			(lastRefreshed < 0) ?
+				JSONObject.NULL :
+				DateTimeUtils.getIso8601DateString(
+					new DateTime(lastRefreshed),
+					true));
+		result.put(JSON_KEY_LAST_MILLIS, lastMillis);
+		result.put(JSON_KEY_TOTAL_MILLIS, totalMillis);
+		result.put(
+			JSON_KEY_MEAN_MILLIS,
+			(refreshes == 0) ? 0 : totalMillis / refreshes);
+		result.put(JSON_KEY_MAX_MILLIS, maxMillis);
+
+		return result;
+	}
+}
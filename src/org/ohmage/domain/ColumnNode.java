@@ -0,0 +1,184 @@
+package org.ohmage.domain;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The columns to read from a stream's data, as an n-ary tree whose paths
+ * are the paths to the fields that are read.
+ * 
+ * @author John Jenkins
+ */
+public class ColumnNode<T> {
+	private Map<T, ColumnNode<T>> children;
+	
+	/**
+	 * Creates a node with a value.
+	 */
+	public ColumnNode() {
+		this.children = new HashMap<T, ColumnNode<T>>();
+	}
+	
+	/**
+	 * Adds a child to this node. Adding null has no effect.
+	 * 
+	 * @param value The value of the child.
+	 */
+	public void addChild(final T value) {
+		if(value == null) {
+			return;
+		}
+		
+		children.put(value, new ColumnNode<T>());
+	}
+	
+	/**
+	 * Checks if this node has a child with the given value.
+	 * 
+	 * @param value The value to check for.
+	 * 
+	 * @return True if this node has a sub-node with the given value; 
+	 * 		   false, otherwise.
+	 */
+	public boolean hasChild(final T value) {
+		return children.containsKey(value);
+	}
+	
+	/**
+	 * Returns the child with the given value.
+	 * 
+	 * @param value The value.
+	 * 
+	 * @return The child or null if no such child exists.
+	 */
+	public ColumnNode<T> getChild(final T value) {
+		return children.get(value);
+	}
+	
+	/**
+	 * The values for this node's children.
+	 * 
+	 * @return An unmodifiable collection of this node's children. 
+	 */
+	public Collection<T> getChildrenValues() {
+		return Collections.unmodifiableSet(children.keySet());
+	}
+	
+	/**
+	 * Returns whether or not this node is a leaf node.
+	 * 
+	 * @return Whether or not this node is a leaf node.
+	 */
+	public boolean isLeaf() {
+		return children.size() == 0;
+	}
+	
+	/**
+	 * Creates a string that is a list of all of the descendants of this
+	 * node. For example, if this node had one leaf child, "leaf", and
+	 * another child, "other", and "other" had one leaf child, "otherLeaf",
+	 * the result of this function would be a string with two nodes:
+	 * "leaf,other:otherLeaf".
+	 * 
+	 * @return The comma-separated string representation of the list of the
+	 * 		   descendants of this node, each prepended with their parent's
+	 * 		   name separated by a colon.
+	 * 
+	 * @throws IllegalStateException This is a leaf node which has no 
+	 * 								 descendants.
+	 */
+	public String toListString() {
+		StringBuilder result = new StringBuilder();
+		
+		boolean firstPass = true;
+		for(String node : toList()) {
+			if(firstPass) {
+				firstPass = false;
+			}
+			else {
+				result.append(',');
+			}
+			
+			result.append(node);
+		}
+		
+		return result.toString();
+	}
+	
+	/**
+	 * Creates a list of the paths from this node to each of its leaf
+	 * descendants. For example, if this node had one leaf child, "leaf",
+	 * and another child, "other", and "other" had one leaf child, 
+	 * "otherLeaf", the result of this function would be a list with two
+	 * paths: ["leaf"] and ["other", "otherLeaf"].
+	 * 
+	 * @return The list of paths to each of the leaf descendants.
+	 * 
+	 * @throws IllegalStateException This is a leaf node which has no 
+	 * 								 descendants.
+	 */
+	public List<List<T>> toPaths() {
+		if(isLeaf()) {
+			throw new IllegalStateException(
+				"This is a leaf node, which doesn't have any paths.");
+		}
+		
+		List<List<T>> result = new LinkedList<List<T>>();
+		for(T child : children.keySet()) {
+			ColumnNode<T> childNode = children.get(child);
+			
+			if(childNode.isLeaf()) {
+				List<T> path = new LinkedList<T>();
+				path.add(child);
+				result.add(path);
+			}
+			else {
+				for(List<T> subPath : childNode.toPaths()) {
+					subPath.add(0, child);
+					result.add(subPath);
+				}
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Creates a list of column nodes for each of this node's descendants.
+	 * For example, if this node had one leaf child, "leaf", and another 
+	 * child, "other", and "other" had one leaf child, "otherLeaf", the 
+	 * result of this function would be a list with two nodes: "leaf" and 
+	 * "other:otherLeaf".
+	 * 
+	 * @return The list of children and their children where the grand
+	 * 		   children and beyond are prepended with the child's name.  
+	 * 
+	 * @throws IllegalStateException This is a leaf node which has no 
+	 * 								 children.
+	 */
+	private List<String> toList() {
+		if(isLeaf()) {
+			throw new IllegalStateException(
+				"This is a leaf node, which doesn't have a column list.");
+		}
+		
+		List<String> result = new LinkedList<String>();
+		for(T child : children.keySet()) {
+			ColumnNode<T> childNode = children.get(child);
+			
+			if(childNode.isLeaf()) {
+				result.add(child.toString());
+			}
+			else {
+				List<String> subChildren = childNode.toList();
+				for(String subChild : subChildren) {
+					result.add(child.toString() + ":" + subChild);
+				}
+			}
+		}
+		return result;
+	}
+}
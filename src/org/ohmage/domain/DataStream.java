@@ -37,6 +37,146 @@ public class DataStream {
 		}
 	}
 	
+	/**
+	 * A position in the stored data of a stream, i.e. the time and database
+	 * ID of a point, which is used to page through the data without counting
+	 * the points that come before the page. A cursor refers either to the
+	 * points after this position or to the points before it, in the order in
+	 * which the points are being read. This class is immutable and, therefore,
+	 * thread-safe.
+	 */
+	public static class Cursor {
+		private static final char DIRECTION_AFTER = 'a';
+		private static final char DIRECTION_BEFORE = 'b';
+		private static final char SEPARATOR = '.';
+		private static final int RADIX = Character.MAX_RADIX;
+		
+		private final long time;
+		private final long id;
+		private final boolean before;
+		
+		/**
+		 * Creates a new cursor.
+		 * 
+		 * @param time The time of the point.
+		 * 
+		 * @param id The database ID of the point.
+		 * 
+		 * @param before Whether this cursor refers to the points before this
+		 * 				 position or the points after it.
+		 */
+		public Cursor(final long time, final long id, final boolean before) {
+			this.time = time;
+			this.id = id;
+			this.before = before;
+		}
+		
+		/**
+		 * Decodes a cursor that was encoded with {@link #encode()}.
+		 * 
+		 * @param value The encoded cursor.
+		 * 
+		 * @return The cursor.
+		 * 
+		 * @throws DomainException The value is not a valid cursor.
+		 */
+		public static Cursor decode(final String value) throws DomainException {
+			if((value == null) || (value.length() < 4)) {
+				throw new DomainException("The cursor is invalid: " + value);
+			}
+			
+			boolean before;
+			char direction = value.charAt(0);
+			if(direction == DIRECTION_AFTER) {
+				before = false;
+			}
+			else if(direction == DIRECTION_BEFORE) {
+				before = true;
+			}
+			else {
+				throw new DomainException("The cursor is invalid: " + value);
+			}
+			
+			int separator = value.indexOf(SEPARATOR, 1);
+			if(separator == -1) {
+				throw new DomainException("The cursor is invalid: " + value);
+			}
+			
+			try {
+				return
+					new Cursor(
+						Long.parseLong(value.substring(1, separator), RADIX),
+						Long.parseLong(value.substring(separator + 1), RADIX),
+						before);
+			}
+			catch(NumberFormatException e) {
+				throw new DomainException("The cursor is invalid: " + value, e);
+			}
+		}
+		
+		/**
+		 * Returns the time of the point.
+		 * 
+		 * @return The time of the point in milliseconds since the epoch.
+		 */
+		public long getTime() {
+			return time;
+		}
+		
+		/**
+		 * Returns the database ID of the point.
+		 * 
+		 * @return The database ID of the point.
+		 */
+		public long getId() {
+			return id;
+		}
+		
+		/**
+		 * Returns whether this cursor refers to the points before this
+		 * position or the points after it.
+		 * 
+		 * @return True if this cursor refers to the points before this
+		 * 		   position; false, otherwise.
+		 */
+		public boolean isBefore() {
+			return before;
+		}
+		
+		/**
+		 * Returns a cursor at the same position that refers to the points
+		 * before it.
+		 * 
+		 * @return A cursor at the same position that refers to the points
+		 * 		   before it.
+		 */
+		public Cursor toBefore() {
+			return new Cursor(time, id, true);
+		}
+		
+		/**
+		 * Encodes this cursor as an opaque, URL-safe string.
+		 * 
+		 * @return The encoded cursor.
+		 */
+		public String encode() {
+			return
+				((before) ? DIRECTION_BEFORE : DIRECTION_AFTER) +
+				Long.toString(time, RADIX) +
+				SEPARATOR +
+				Long.toString(id, RADIX);
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.lang.Object#toString()
+		 */
+		@Override
+		public String toString() {
+			return encode();
+		}
+	}
+	
 	/**
 	 * This class represents the meta-data for a data stream. All fields are 
 	 * optional. This class is immutable and, therefore, thread-safe.
@@ -356,6 +496,12 @@ public class DataStream {
 	 * The data in its Jackson object representation.
 	 */
 	private final JsonNode data;
+	
+	/**
+	 * The position of this point in the stored data, if it was read from the
+	 * database.
+	 */
+	private final Cursor cursor;
 
 	/**
 	 * Creates a new DataStream from JSON data encoded as a JsonNode.
@@ -374,6 +520,32 @@ public class DataStream {
 			final MetaData metaData,
 			final JsonNode data) 
 			throws DomainException {
+		
+		this(stream, metaData, data, null);
+	}
+
+	/**
+	 * Creates a new DataStream from JSON data encoded as a JsonNode that was
+	 * read from the database.
+	 * 
+	 * @param stream The stream that contains the definition on how to decode
+	 *				 the data.
+	 *
+	 * @param metaData The meta-data.
+	 * 
+	 * @param data The data.
+	 * 
+	 * @param cursor A cursor referring to the points after this one in the
+	 * 				 stored data. Optional.
+	 * 
+	 * @throws DomainException One of the parameters is invalid or null.
+	 */
+	public DataStream(
+			final Stream stream,
+			final MetaData metaData,
+			final JsonNode data,
+			final Cursor cursor) 
+			throws DomainException {
 
 		if(stream == null) {
 			throw new DomainException("The stream is null.");
@@ -390,6 +562,8 @@ public class DataStream {
 		
 		// Decode the data from the stream.
 		this.data = data;
+		
+		this.cursor = cursor;
 	}
 
 	/**
@@ -418,4 +592,15 @@ public class DataStream {
 	public JsonNode getData() {
 		return data;
 	}
+	
+	/**
+	 * Returns a cursor referring to the points after this one in the stored
+	 * data.
+	 * 
+	 * @return The cursor or null if this point was not read from the 
+	 * 		   database.
+	 */
+	public Cursor getCursor() {
+		return cursor;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,364 @@
+package org.ohmage.domain;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.JsonGenerationException;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+/**
+ * The summary of a stream's data over a single time bucket. Each bucket
+ * counts the points whose adjusted time falls within it and, for each of the
+ * requested numeric columns, keeps the count, minimum, maximum, mean, first,
+ * and last of that column's values. Points are added in chronological order
+ * by {@link #add(List)}. This class is mutable and, therefore, not
+ * thread-safe.
+ */
+public class DataStreamBucket {
+	private static final String JSON_KEY_START = "start";
+	private static final String JSON_KEY_COUNT = "count";
+	private static final String JSON_KEY_DATA = "data";
+	private static final String JSON_KEY_MIN = "min";
+	private static final String JSON_KEY_MAX = "max";
+	private static final String JSON_KEY_MEAN = "mean";
+	private static final String JSON_KEY_FIRST = "first";
+	private static final String JSON_KEY_LAST = "last";
+	private static final String JSON_KEY_SUM = "sum";
+
+	/**
+	 * The adjusted times are the points' local times, so they are printed
+	 * without a time zone.
+	 */
+	private static final DateTimeFormatter START_FORMATTER =
+		ISODateTimeFormat.dateHourMinuteSecondMillis();
+
+	/**
+	 * The summary of a single column's values within a bucket.
+	 */
+	public static class Statistics {
+		private long count = 0;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private double sum = 0;
+		private double first = Double.NaN;
+		private double last = Double.NaN;
+
+		/**
+		 * Adds a value. Values must be added in chronological order.
+		 * 
+		 * @param value The value.
+		 */
+		private void add(final double value) {
+			if(count == 0) {
+				first = value;
+			}
+			last = value;
+
+			count++;
+			sum += value;
+			if(value < min) {
+				min = value;
+			}
+			if(value > max) {
+				max = value;
+			}
+		}
+
+		/**
+		 * Combines another summary of the same column into this one. All of
+		 * the values in the other summary must be chronologically after the
+		 * values in this one.
+		 * 
+		 * @param later The summary of the later values.
+		 */
+		private void merge(final Statistics later) {
+			if(later.count == 0) {
+				return;
+			}
+			if(count == 0) {
+				first = later.first;
+			}
+			last = later.last;
+
+			count += later.count;
+			sum += later.sum;
+			if(later.min < min) {
+				min = later.min;
+			}
+			if(later.max > max) {
+				max = later.max;
+			}
+		}
+
+		/**
+		 * Returns the number of values.
+		 * 
+		 * @return The number of values.
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the smallest value.
+		 * 
+		 * @return The smallest value.
+		 */
+		public double getMin() {
+			return min;
+		}
+
+		/**
+		 * Returns the largest value.
+		 * 
+		 * @return The largest value.
+		 */
+		public double getMax() {
+			return max;
+		}
+
+		/**
+		 * Returns the mean of the values.
+		 * 
+		 * @return The mean of the values.
+		 */
+		public double getMean() {
+			return sum / count;
+		}
+
+		/**
+		 * Returns the chronologically first value.
+		 * 
+		 * @return The first value.
+		 */
+		public double getFirst() {
+			return first;
+		}
+
+		/**
+		 * Returns the chronologically last value.
+		 * 
+		 * @return The last value.
+		 */
+		public double getLast() {
+			return last;
+		}
+	}
+
+	private final long start;
+	private long count = 0;
+	private final Map<String, Statistics> columns;
+
+	/**
+	 * Creates a new, empty bucket.
+	 * 
+	 * @param start The adjusted time, in milliseconds, at which this bucket
+	 * 				begins.
+	 * 
+	 * @param columns The names of the columns that are summarized, in the
+	 * 				  order in which their values are given to
+	 * 				  {@link #add(List)}.
+	 */
+	public DataStreamBucket(final long start, final List<String> columns) {
+		this.start = start;
+
+		this.columns = new LinkedHashMap<String, Statistics>();
+		for(String column : columns) {
+			this.columns.put(column, new Statistics());
+		}
+	}
+
+	/**
+	 * Recreates a bucket from a summary that was written by
+	 * {@link #writeSummary(JsonGenerator)}.
+	 * 
+	 * @param start The adjusted time, in milliseconds, at which this bucket
+	 * 				begins.
+	 * 
+	 * @param count The number of points in the bucket.
+	 * 
+	 * @param columns The names of the columns to read from the summary.
+	 * 				  Columns that are not in the summary have no values.
+	 * 
+	 * @param summary The summary.
+	 */
+	public DataStreamBucket(
+			final long start,
+			final long count,
+			final List<String> columns,
+			final JsonNode summary) {
+
+		this(start, columns);
+		this.count = count;
+
+		for(String column : columns) {
+			JsonNode node = summary.get(column);
+			if((node == null) || (node.path(JSON_KEY_COUNT).getLongValue() == 0)) {
+				continue;
+			}
+
+			Statistics statistics = this.columns.get(column);
+			statistics.count = node.path(JSON_KEY_COUNT).getLongValue();
+			statistics.min = node.path(JSON_KEY_MIN).getDoubleValue();
+			statistics.max = node.path(JSON_KEY_MAX).getDoubleValue();
+			statistics.sum = node.path(JSON_KEY_SUM).getDoubleValue();
+			statistics.first = node.path(JSON_KEY_FIRST).getDoubleValue();
+			statistics.last = node.path(JSON_KEY_LAST).getDoubleValue();
+		}
+	}
+
+	/**
+	 * Adds a point to this bucket.
+	 * 
+	 * @param values The point's values for each column, in the order in
+	 * 				 which the columns were given when this bucket was
+	 * 				 created. A null value means that the point didn't have a
+	 * 				 numeric value for that column.
+	 */
+	public void add(final List<Double> values) {
+		count++;
+
+		int i = 0;
+		for(Statistics statistics : columns.values()) {
+			Double value = values.get(i++);
+			if(value != null) {
+				statistics.add(value);
+			}
+		}
+	}
+
+	/**
+	 * Adds all of the points of another bucket to this one. The buckets must
+	 * summarize the same columns, and all of the other bucket's points must
+	 * be chronologically after this bucket's points.
+	 * 
+	 * @param later The bucket with the later points.
+	 */
+	public void merge(final DataStreamBucket later) {
+		count += later.count;
+
+		for(String column : columns.keySet()) {
+			Statistics statistics = later.columns.get(column);
+			if(statistics != null) {
+				columns.get(column).merge(statistics);
+			}
+		}
+	}
+
+	/**
+	 * Returns the adjusted time at which this bucket begins.
+	 * 
+	 * @return The adjusted time, in milliseconds, at which this bucket
+	 * 		   begins.
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the number of points in this bucket.
+	 * 
+	 * @return The number of points in this bucket.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the summary of each column.
+	 * 
+	 * @return An unmodifiable map of the column names to their summaries.
+	 */
+	public Map<String, Statistics> getColumns() {
+		return Collections.unmodifiableMap(columns);
+	}
+
+	/**
+	 * Writes this bucket as a JSON object. Columns for which the bucket had
+	 * no values only include their count.
+	 * 
+	 * @param generator The generator to write to.
+	 * 
+	 * @throws JsonGenerationException There was an error generating the
+	 * 								   JSON.
+	 * 
+	 * @throws IOException There was an error writing to the generator.
+	 */
+	public void toJson(
+			final JsonGenerator generator)
+			throws JsonGenerationException, IOException {
+
+		generator.writeStartObject();
+
+		generator.writeStringField(
+			JSON_KEY_START,
+			START_FORMATTER.print(new DateTime(start, DateTimeZone.UTC)));
+		generator.writeNumberField(JSON_KEY_COUNT, count);
+
+		generator.writeObjectFieldStart(JSON_KEY_DATA);
+		for(String column : columns.keySet()) {
+			Statistics statistics = columns.get(column);
+
+			generator.writeObjectFieldStart(column);
+			generator.writeNumberField(JSON_KEY_COUNT, statistics.getCount());
+			if(statistics.getCount() > 0) {
+				generator.writeNumberField(JSON_KEY_MIN, statistics.getMin());
+				generator.writeNumberField(JSON_KEY_MAX, statistics.getMax());
+				generator.writeNumberField(JSON_KEY_MEAN, statistics.getMean());
+				generator.writeNumberField(
+					JSON_KEY_FIRST,
+					statistics.getFirst());
+				generator.writeNumberField(JSON_KEY_LAST, statistics.getLast());
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndObject();
+
+		generator.writeEndObject();
+	}
+
+	/**
+	 * Writes the summary of each column as a JSON object in a form from
+	 * which the bucket can be recreated and merged with other buckets. Unlike
+	 * {@link #toJson(JsonGenerator)}, this keeps the sum of the values rather
+	 * than their mean.
+	 * 
+	 * @param generator The generator to write to.
+	 * 
+	 * @throws JsonGenerationException There was an error generating the
+	 * 								   JSON.
+	 * 
+	 * @throws IOException There was an error writing to the generator.
+	 */
+	public void writeSummary(
+			final JsonGenerator generator)
+			throws JsonGenerationException, IOException {
+
+		generator.writeStartObject();
+		for(String column : columns.keySet()) {
+			Statistics statistics = columns.get(column);
+
+			generator.writeObjectFieldStart(column);
+			generator.writeNumberField(JSON_KEY_COUNT, statistics.getCount());
+			if(statistics.getCount() > 0) {
+				generator.writeNumberField(JSON_KEY_MIN, statistics.getMin());
+				generator.writeNumberField(JSON_KEY_MAX, statistics.getMax());
+				generator.writeNumberField(JSON_KEY_SUM, statistics.sum);
+				generator.writeNumberField(
+					JSON_KEY_FIRST,
+					statistics.getFirst());
+				generator.writeNumberField(JSON_KEY_LAST, statistics.getLast());
+			}
+			generator.writeEndObject();
+		}
+		generator.writeEndObject();
+	}
+}
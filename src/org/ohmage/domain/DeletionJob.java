@@ -0,0 +1,233 @@
+package org.ohmage.domain;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * The background deletion of a campaign or user that has been replaced by a
+ * tombstone and how far along it is. This class is immutable.
+ */
+public class DeletionJob {
+	/**
+	 * The prefix of the URN or username to which a campaign or user is
+	 * renamed when it is deleted. It is followed by the entity's database ID.
+	 * Neither URNs nor usernames may contain a '#', so no request can refer
+	 * to the tombstone.
+	 */
+	public static final String TOMBSTONE_PREFIX = "#deleted#";
+
+	private static final String JSON_KEY_ID = "id";
+	private static final String JSON_KEY_TYPE = "type";
+	private static final String JSON_KEY_NAME = "name";
+	private static final String JSON_KEY_STATUS = "status";
+	private static final String JSON_KEY_ROWS_DELETED = "rows_deleted";
+	private static final String JSON_KEY_FILES_DELETED = "files_deleted";
+	private static final String JSON_KEY_BYTES_DELETED = "bytes_deleted";
+	private static final String JSON_KEY_ERROR = "error";
+	private static final String JSON_KEY_CREATION_TIMESTAMP = "creation_timestamp";
+	private static final String JSON_KEY_COMPLETION_TIMESTAMP = "completion_timestamp";
+
+	/**
+	 * The kinds of entity that may be deleted in the background.
+	 */
+	public static enum Type {
+		CAMPAIGN,
+		USER;
+
+		/**
+		 * Converts a string into a Type.
+		 * 
+		 * @param type The string.
+		 * 
+		 * @return The Type.
+		 * 
+		 * @throws IllegalArgumentException The string is not a known type.
+		 */
+		public static Type getValue(final String type) {
+			return valueOf(type.toUpperCase());
+		}
+
+		/**
+		 * Returns the type as it is stored and returned to the user.
+		 */
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * The states through which a job moves. A job is pending until its first
+	 * batch is deleted, running until the entity itself has been deleted, and
+	 * then complete. A batch that fails is retried later, so a job never
+	 * fails; the last error is kept with it instead.
+	 */
+	public static enum Status {
+		PENDING,
+		RUNNING,
+		COMPLETE;
+
+		/**
+		 * Converts a string into a Status.
+		 * 
+		 * @param status The string.
+		 * 
+		 * @return The Status.
+		 * 
+		 * @throws IllegalArgumentException The string is not a known status.
+		 */
+		public static Status getValue(final String status) {
+			return valueOf(status.toUpperCase());
+		}
+
+		/**
+		 * Returns the status as it is stored and returned to the user.
+		 */
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	private final long id;
+	private final Type type;
+	private final long entityId;
+	private final String name;
+	private final Status status;
+	private final long rowsDeleted;
+	private final long filesDeleted;
+	private final long bytesDeleted;
+	private final String error;
+	private final DateTime creationTimestamp;
+	private final DateTime completionTimestamp;
+
+	/**
+	 * Creates a new deletion job object.
+	 * 
+	 * @param id The job's database ID.
+	 * 
+	 * @param type The kind of entity being deleted.
+	 * 
+	 * @param entityId The database ID of the campaign or user.
+	 * 
+	 * @param name The URN or username the entity had when it was deleted.
+	 * 
+	 * @param status The job's status.
+	 * 
+	 * @param rowsDeleted The number of the entity's survey responses and
+	 * 					  other data points that have been deleted.
+	 * 
+	 * @param filesDeleted The number of media files that have been deleted.
+	 * 
+	 * @param bytesDeleted The size, in bytes, of those files.
+	 * 
+	 * @param error The message of the last batch that failed or null if none
+	 * 				has.
+	 * 
+	 * @param creationTimestamp When the entity was deleted.
+	 * 
+	 * @param completionTimestamp When the job completed or null if it hasn't.
+	 */
+	public DeletionJob(
+			final long id,
+			final Type type,
+			final long entityId,
+			final String name,
+			final Status status,
+			final long rowsDeleted,
+			final long filesDeleted,
+			final long bytesDeleted,
+			final String error,
+			final DateTime creationTimestamp,
+			final DateTime completionTimestamp) {
+
+		this.id = id;
+		this.type = type;
+		this.entityId = entityId;
+		this.name = name;
+		this.status = status;
+		this.rowsDeleted = rowsDeleted;
+		this.filesDeleted = filesDeleted;
+		this.bytesDeleted = bytesDeleted;
+		this.error = error;
+		this.creationTimestamp = creationTimestamp;
+		this.completionTimestamp = completionTimestamp;
+	}
+
+	/**
+	 * Returns the job's database ID.
+	 * 
+	 * @return The job's database ID.
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the kind of entity being deleted.
+	 * 
+	 * @return The kind of entity being deleted.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the database ID of the campaign or user being deleted.
+	 * 
+	 * @return The entity's database ID.
+	 */
+	public long getEntityId() {
+		return entityId;
+	}
+
+	/**
+	 * Returns the URN or username the entity had when it was deleted.
+	 * 
+	 * @return The entity's original URN or username.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the job's status.
+	 * 
+	 * @return The job's status.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Creates a JSON object describing the job.
+	 * 
+	 * @return A JSON object describing the job.
+	 * 
+	 * @throws JSONException There was an error building the object.
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject result = new JSONObject();
+
+		result.put(JSON_KEY_ID, id);
+		result.put(JSON_KEY_TYPE, type.toString());
+		result.put(JSON_KEY_NAME, name);
+		result.put(JSON_KEY_STATUS, status.toString());
+		result.put(JSON_KEY_ROWS_DELETED, rowsDeleted);
+		result.put(JSON_KEY_FILES_DELETED, filesDeleted);
+		result.put(JSON_KEY_BYTES_DELETED, bytesDeleted);
+		result.put(JSON_KEY_ERROR, error);
+		result.put(
+			JSON_KEY_CREATION_TIMESTAMP,
+			ISODateTimeFormat.dateTime().print(creationTimestamp));
+		if(completionTimestamp != null) {
+			result.put(
+				JSON_KEY_COMPLETION_TIMESTAMP,
+				ISODateTimeFormat.dateTime().print(completionTimestamp));
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,271 @@
+package org.ohmage.domain;
+
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A request whose response is generated in the background and written to a
+ * file from which it may later be downloaded. This class is immutable.
+ */
+public class ExportJob {
+	private static final String JSON_KEY_ID = "id";
+	private static final String JSON_KEY_TYPE = "type";
+	private static final String JSON_KEY_STATUS = "status";
+	private static final String JSON_KEY_CONTENT_TYPE = "content_type";
+	private static final String JSON_KEY_SIZE = "size";
+	private static final String JSON_KEY_ERROR = "error";
+	private static final String JSON_KEY_CREATION_TIMESTAMP = "creation_timestamp";
+	private static final String JSON_KEY_COMPLETION_TIMESTAMP = "completion_timestamp";
+	private static final String JSON_KEY_EXPIRATION_TIMESTAMP = "expiration_timestamp";
+
+	/**
+	 * The kinds of read that may be exported.
+	 */
+	public static enum Type {
+		SURVEY_RESPONSE,
+		MOBILITY,
+		STREAM;
+
+		/**
+		 * Converts a string into a Type.
+		 * 
+		 * @param type The string.
+		 * 
+		 * @return The Type.
+		 * 
+		 * @throws IllegalArgumentException The string is not a known type.
+		 */
+		public static Type getValue(final String type) {
+			return valueOf(type.toUpperCase());
+		}
+
+		/**
+		 * Returns the type as it is stored and returned to the user.
+		 */
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	/**
+	 * The states through which a job moves. A job is pending until a thread
+	 * begins executing it and then either complete or failed.
+	 */
+	public static enum Status {
+		PENDING,
+		RUNNING,
+		COMPLETE,
+		FAILED;
+
+		/**
+		 * Converts a string into a Status.
+		 * 
+		 * @param status The string.
+		 * 
+		 * @return The Status.
+		 * 
+		 * @throws IllegalArgumentException The string is not a known status.
+		 */
+		public static Status getValue(final String status) {
+			return valueOf(status.toUpperCase());
+		}
+
+		/**
+		 * Returns the status as it is stored and returned to the user.
+		 */
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	private final UUID id;
+	private final String username;
+	private final Type type;
+	private final Status status;
+	private final String contentType;
+	private final Long size;
+	private final String error;
+	private final DateTime creationTimestamp;
+	private final DateTime completionTimestamp;
+	private final DateTime expirationTimestamp;
+
+	/**
+	 * Creates a new export job object.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param username The username of the user that created the job.
+	 * 
+	 * @param type The kind of read the job executes.
+	 * 
+	 * @param status The job's status.
+	 * 
+	 * @param contentType The content type of the job's result, before it was
+	 * 					  compressed, or null if the job is not complete.
+	 * 
+	 * @param size The size, in bytes, of the compressed result or null if the
+	 * 			   job is not complete.
+	 * 
+	 * @param error The failure message if the job failed; otherwise, null.
+	 * 
+	 * @param creationTimestamp When the job was created.
+	 * 
+	 * @param completionTimestamp When the job completed or failed or null if
+	 * 							  it has done neither.
+	 * 
+	 * @param expirationTimestamp When the job and its result will be deleted
+	 * 							  or null if it has not finished.
+	 */
+	public ExportJob(
+			final UUID id,
+			final String username,
+			final Type type,
+			final Status status,
+			final String contentType,
+			final Long size,
+			final String error,
+			final DateTime creationTimestamp,
+			final DateTime completionTimestamp,
+			final DateTime expirationTimestamp) {
+
+		this.id = id;
+		this.username = username;
+		this.type = type;
+		this.status = status;
+		this.contentType = contentType;
+		this.size = size;
+		this.error = error;
+		this.creationTimestamp = creationTimestamp;
+		this.completionTimestamp = completionTimestamp;
+		this.expirationTimestamp = expirationTimestamp;
+	}
+
+	/**
+	 * Returns the job's unique identifier.
+	 * 
+	 * @return The job's unique identifier.
+	 */
+	public UUID getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the username of the user that created the job.
+	 * 
+	 * @return The username of the user that created the job.
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * Returns the kind of read the job executes.
+	 * 
+	 * @return The kind of read the job executes.
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Returns the job's status.
+	 * 
+	 * @return The job's status.
+	 */
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * Returns the content type of the job's uncompressed result.
+	 * 
+	 * @return The content type or null if the job is not complete.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * Returns the size of the job's compressed result.
+	 * 
+	 * @return The size, in bytes, or null if the job is not complete.
+	 */
+	public Long getSize() {
+		return size;
+	}
+
+	/**
+	 * Returns the job's failure message.
+	 * 
+	 * @return The failure message or null if the job has not failed.
+	 */
+	public String getError() {
+		return error;
+	}
+
+	/**
+	 * Returns when the job was created.
+	 * 
+	 * @return When the job was created.
+	 */
+	public DateTime getCreationTimestamp() {
+		return creationTimestamp;
+	}
+
+	/**
+	 * Returns when the job completed or failed.
+	 * 
+	 * @return When the job finished or null if it hasn't.
+	 */
+	public DateTime getCompletionTimestamp() {
+		return completionTimestamp;
+	}
+
+	/**
+	 * Returns when the job and its result will be deleted.
+	 * 
+	 * @return When the job will be deleted or null if it hasn't finished.
+	 */
+	public DateTime getExpirationTimestamp() {
+		return expirationTimestamp;
+	}
+
+	/**
+	 * Creates a JSON object describing the job.
+	 * 
+	 * @return A JSON object describing the job.
+	 * 
+	 * @throws JSONException There was an error building the object.
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject result = new JSONObject();
+
+		result.put(JSON_KEY_ID, id.toString());
+		result.put(JSON_KEY_TYPE, type.toString());
+		result.put(JSON_KEY_STATUS, status.toString());
+		result.put(JSON_KEY_CONTENT_TYPE, contentType);
+		result.put(JSON_KEY_SIZE, size);
+		result.put(JSON_KEY_ERROR, error);
+		result.put(
+			JSON_KEY_CREATION_TIMESTAMP,
+			ISODateTimeFormat.dateTime().print(creationTimestamp));
+		if(completionTimestamp != null) {
+			result.put(
+				JSON_KEY_COMPLETION_TIMESTAMP,
+				ISODateTimeFormat.dateTime().print(completionTimestamp));
+		}
+		if(expirationTimestamp != null) {
+			result.put(
+				JSON_KEY_EXPIRATION_TIMESTAMP,
+				ISODateTimeFormat.dateTime().print(expirationTimestamp));
+		}
+
+		return result;
+	}
+}
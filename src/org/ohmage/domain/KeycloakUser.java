@@ -108,6 +108,32 @@ public class KeycloakUser extends User {
     return personalInfo;
   }
 
+  /**
+   * Returns whether or not another keycloak user has the same username and
+   * the same claims that are copied into the user's account.
+   * 
+   * @param other The other user.
+   * 
+   * @return true if the other user's account would be the same as this one's.
+   */
+  public boolean hasSameProfile(final KeycloakUser other) {
+    if (other == null) {
+      return false;
+    }
+    if (!getUsername().equals(other.getUsername())) {
+      return false;
+    }
+    if ((email == null) ? (other.email != null) : !email.equals(other.email)) {
+      return false;
+    }
+    if ((personalInfo == null) ?
+        (other.personalInfo != null) :
+        !personalInfo.equals(other.personalInfo)) {
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Returns a String dump of this user.
    */
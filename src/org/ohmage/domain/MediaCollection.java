@@ -0,0 +1,162 @@
+package org.ohmage.domain;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.ISODateTimeFormat;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * How far the orphaned media collector has gotten through one of the media
+ * directories and how much it has reclaimed from it. This class is
+ * immutable.
+ */
+public class MediaCollection {
+	private static final String JSON_KEY_DIRECTORY = "directory";
+	private static final String JSON_KEY_LAST_DIRECTORY = "last_directory";
+	private static final String JSON_KEY_PASSES = "passes";
+	private static final String JSON_KEY_FILES_SCANNED = "files_scanned";
+	private static final String JSON_KEY_FILES_QUARANTINED = "files_quarantined";
+	private static final String JSON_KEY_FILES_RESTORED = "files_restored";
+	private static final String JSON_KEY_FILES_DELETED = "files_deleted";
+	private static final String JSON_KEY_BYTES_DELETED = "bytes_deleted";
+	private static final String JSON_KEY_LAST_PASS_TIMESTAMP = "last_pass_timestamp";
+
+	/**
+	 * The media directories that are collected.
+	 */
+	public static enum Directory {
+		IMAGE,
+		AUDIO,
+		VIDEO,
+		FILE,
+		DOCUMENT;
+
+		/**
+		 * Converts a string into a Directory.
+		 * 
+		 * @param directory The string.
+		 * 
+		 * @return The Directory.
+		 * 
+		 * @throws IllegalArgumentException The string is not a known
+		 * 									directory.
+		 */
+		public static Directory getValue(final String directory) {
+			return valueOf(directory.toUpperCase());
+		}
+
+		/**
+		 * Returns the directory as it is stored and returned to the user.
+		 */
+		@Override
+		public String toString() {
+			return name().toLowerCase();
+		}
+	}
+
+	private final Directory directory;
+	private final String lastDirectory;
+	private final long passes;
+	private final long filesScanned;
+	private final long filesQuarantined;
+	private final long filesRestored;
+	private final long filesDeleted;
+	private final long bytesDeleted;
+	private final DateTime lastPassTimestamp;
+
+	/**
+	 * Creates a new media collection object.
+	 * 
+	 * @param directory The media directory.
+	 * 
+	 * @param lastDirectory The path, relative to the media directory, of the
+	 * 						last leaf directory that was checked or an empty
+	 * 						string if the current pass hasn't checked any.
+	 * 
+	 * @param passes The number of complete passes over the directory.
+	 * 
+	 * @param filesScanned The number of files that have been checked.
+	 * 
+	 * @param filesQuarantined The number of files that were found to be
+	 * 						   orphaned and were quarantined.
+	 * 
+	 * @param filesRestored The number of quarantined files that were
+	 * 						referenced again and were moved back.
+	 * 
+	 * @param filesDeleted The number of quarantined files that have been
+	 * 					   deleted.
+	 * 
+	 * @param bytesDeleted The size, in bytes, of those files.
+	 * 
+	 * @param lastPassTimestamp When the last complete pass finished or null
+	 * 							if none has.
+	 */
+	public MediaCollection(
+			final Directory directory,
+			final String lastDirectory,
+			final long passes,
+			final long filesScanned,
+			final long filesQuarantined,
+			final long filesRestored,
+			final long filesDeleted,
+			final long bytesDeleted,
+			final DateTime lastPassTimestamp) {
+
+		this.directory = directory;
+		this.lastDirectory = lastDirectory;
+		this.passes = passes;
+		this.filesScanned = filesScanned;
+		this.filesQuarantined = filesQuarantined;
+		this.filesRestored = filesRestored;
+		this.filesDeleted = filesDeleted;
+		this.bytesDeleted = bytesDeleted;
+		this.lastPassTimestamp = lastPassTimestamp;
+	}
+
+	/**
+	 * Returns the media directory.
+	 * 
+	 * @return The media directory.
+	 */
+	public Directory getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Returns the path, relative to the media directory, of the last leaf
+	 * directory that was checked.
+	 * 
+	 * @return The relative path or an empty string if the current pass hasn't
+	 * 		   checked any leaf directory.
+	 */
+	public String getLastDirectory() {
+		return lastDirectory;
+	}
+
+	/**
+	 * Creates a JSON object describing the collector's progress.
+	 * 
+	 * @return A JSON object describing the collector's progress.
+	 * 
+	 * @throws JSONException There was an error building the object.
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject result = new JSONObject();
+
+		result.put(JSON_KEY_DIRECTORY, directory.toString());
+		result.put(JSON_KEY_LAST_DIRECTORY, lastDirectory);
+		result.put(JSON_KEY_PASSES, passes);
+		result.put(JSON_KEY_FILES_SCANNED, filesScanned);
+		result.put(JSON_KEY_FILES_QUARANTINED, filesQuarantined);
+		result.put(JSON_KEY_FILES_RESTORED, filesRestored);
+		result.put(JSON_KEY_FILES_DELETED, filesDeleted);
+		result.put(JSON_KEY_BYTES_DELETED, bytesDeleted);
+		if(lastPassTimestamp != null) {
+			result.put(
+				JSON_KEY_LAST_PASS_TIMESTAMP,
+				ISODateTimeFormat.dateTime().print(lastPassTimestamp));
+		}
+
+		return result;
+	}
+}
@@ -15,7 +15,9 @@
  ******************************************************************************/
 package org.ohmage.domain;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -615,141 +617,6 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			private final Double y;
 			private final Double z;
 			
-			/**
-			 * Creates an AccelData object from a generic record.
-			 * 
-			 * @param accelDataRecord The generic record.
-			 * 
-			 * @throws DomainException The record is missing data.
-			 */
-			private AccelData(
-					final JsonNode accelDataRecord)
-					throws DomainException {
-
-				JsonNode xObject = 
-					accelDataRecord.get(AccelDataColumnKey.X.toString(false));
-				if(xObject == null) {
-					throw new DomainException(
-						ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
-						"The 'x' component is missing.");
-				}
-				else if(! xObject.isNumber()) {
-					throw new DomainException(
-						ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
-						"The 'x' component is not a number.");
-				}
-				else {
-					x = xObject.getNumberValue().doubleValue();
-				}
-				
-				JsonNode yObject = 
-					accelDataRecord.get(AccelDataColumnKey.Y.toString(false));
-				if(yObject == null) {
-					throw new DomainException(
-						ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
-						"The 'y' component is missing.");
-				}
-				else if(! yObject.isNumber()) {
-					throw new DomainException(
-						ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
-						"The 'y' component is not a number.");
-				}
-				else {
-					y = yObject.getNumberValue().doubleValue();
-				}
-				
-				JsonNode zObject = 
-					accelDataRecord.get(AccelDataColumnKey.Z.toString(false));
-				if(zObject == null) {
-					throw new DomainException(
-						ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
-						"The 'z' component is missing.");
-				}
-				else if(! zObject.isNumber()) {
-					throw new DomainException(
-						ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
-						"The 'z' component is not a number.");
-				}
-				else {
-					z = zObject.getNumberValue().doubleValue();
-				}
-			}
-			
-			/**
-			 * Processes an acceleration data point into an AccelData object.
-			 * 
-			 * @param accelData The JSON data point to process.
-			 * 
-			 * @param mode The pre-processed mode. This is needed, because if 
-			 * 			   it is {@link Mode#ERROR} then any of the values may 
-			 * 			   be missing or invalid.
-			 * 
-			 * @throws DomainException Thrown if the JSON is invalid and the
-			 * 						   mode is not {@link Mode#ERROR}.
-			 */
-			private AccelData(
-					final JSONObject accelData, 
-					final Mode mode) 
-					throws DomainException {
-				
-				// Get the x-acceleration.
-				Double tX = null;
-				try {
-					tX = accelData.getDouble(
-							AccelDataColumnKey.X.toString(false));
-				}
-				catch(JSONException e) {
-					if(Mode.ERROR.equals(mode)) {
-						tX = null;
-					}
-					else {
-						throw new DomainException(
-								ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA, 
-								"The 'x' point was missing or invalid.", 
-								e);
-					}
-				}
-				x = tX;
-				
-				// Get the y-acceleration.
-				Double tY = null;
-				try {
-					tY = accelData.getDouble(
-							AccelDataColumnKey.Y.toString(false));
-				}
-				catch(JSONException e) {
-					if(Mode.ERROR.equals(mode)) {
-						tY = null;
-					}
-					else {
-						throw new DomainException(
-								ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA, 
-								"The 'y' point was missing or invalid.", 
-								e);
-					}
-				}
-				y = tY;
-				
-				// Get the z-acceleration.
-				Double tZ = null;
-				try {
-					tZ = accelData.getDouble(
-							AccelDataColumnKey.Z.toString(false));
-				}
-				catch(JSONException e) {
-					if(Mode.ERROR.equals(mode)) {
-						tZ = null;
-					}
-					else {
-						throw new DomainException(
-								ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA, 
-								"The 'z' point was missing or invalid.", 
-								e);
-					}
-				}
-				z = tZ;
-			}
-			
 			/**
 			 * Creates a tri-axle acceleration data point.
 			 * 
@@ -918,7 +785,12 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				}
 			}
 		}
-		private final List<AccelData> accelData;
+		// The accelerometer samples as one array per component. A component
+		// that was missing from an 'ERROR' mode sample is NaN. These are null
+		// if there was no accelerometer data.
+		private final double[] accelX;
+		private final double[] accelY;
+		private final double[] accelZ;
 		
 		/**
 		 * This class is responsible for the WifiData in a sensor data upload.
@@ -1101,38 +973,12 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				}
 			}
 			
-			/**
-			 * Private, inner class for representing access points in the scan. 
-			 *
-			 * @author John Jenkins
-			 */
-			private final class AccessPoint {
-				private String ssid;
-				private double strength;
-				
-				/**
-				 * Creates a new AccessPoint object.
-				 * 
-				 * @param ssid The access point's SSID.
-				 * 
-				 * @param strength The strength of the signal of the SSID.
-				 * 
-				 * @throws DomainException The SSID was null.
-				 */
-				public AccessPoint(
-						final String ssid, 
-						final double strength)
-						throws DomainException {
-					
-					if(ssid == null) {
-						throw new DomainException("The SSID is null.");
-					}
-					
-					this.ssid = ssid;
-					this.strength = strength;
-				}
-			}
-			private final List<AccessPoint> scan;
+			// The access points in the scan as parallel arrays. The SSIDs are
+			// interned, as the same few appear in most scans. A strength that
+			// was missing from an 'ERROR' mode scan is NaN. These are null if
+			// there was no scan.
+			private final String[] ssids;
+			private final double[] strengths;
 			
 			private final Long time;
 			private final DateTimeZone timezone;
@@ -1204,8 +1050,10 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				}
 				else {
 					ArrayNode scanArray = (ArrayNode) scanObject;
-					scan = new ArrayList<AccessPoint>(scanArray.size());
+					ssids = new String[scanArray.size()];
+					strengths = new double[scanArray.size()];
 					
+					int i = 0;
 					for(JsonNode scanRecord : scanArray) {
 						String ssid;
 						JsonNode ssidObject = scanRecord.get("ssid");
@@ -1220,7 +1068,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 								"The 'ssid' value is not a string.");
 						}
 						else {
-							ssid = ssidObject.getTextValue();
+							ssid = ssidObject.getTextValue().intern();
 						}
 						
 						double strength;
@@ -1240,7 +1088,9 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 								strengthObject.getNumberValue().doubleValue();
 						}
 						
-						scan.add(new AccessPoint(ssid, strength));
+						ssids[i] = ssid;
+						strengths[i] = strength;
+						i++;
 					}
 				}
 			}
@@ -1394,16 +1244,18 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				
 				// Validate the scan value.
 				if(scan == null) {
-					this.scan = null;
+					this.ssids = null;
+					this.strengths = null;
 				}
 				else {
 					// For each of the entries in the array, parse out the
 					// necessary information.
 					int numScans = scan.length();
 					
-					// Create the local scan map.
-					this.scan = new ArrayList<AccessPoint>(numScans);
-					//List<AccessPoint> accessPoints = new ArrayList<AccessPoint>();
+					// Create the local scan arrays.
+					String[] tSsids = new String[numScans];
+					double[] tStrengths = new double[numScans];
+					int numAccessPoints = 0;
 					
 					for(int i = 0; i < numScans; i++) {
 						try {
@@ -1436,7 +1288,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 							}
 							
 							// Get the strength.
-							Double strength;
+							double strength;
 							try {
 								strength = 
 										jsonObject.getDouble(
@@ -1452,7 +1304,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 								}
 								catch(JSONException notShort) {
 									if(Mode.ERROR.equals(mode)) {
-										strength = null;
+										strength = Double.NaN;
 									}
 									else {
 										throw new DomainException(
@@ -1463,9 +1315,10 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 								}
 							}
 							
-							// Add them to the map.
-							//accessPoints.add(new AccessPoint(ssid, strength));
-							this.scan.add(new AccessPoint(ssid, strength));
+							// Add them to the arrays.
+							tSsids[numAccessPoints] = ssid.intern();
+							tStrengths[numAccessPoints] = strength;
+							numAccessPoints++;
 						}
 						catch(JSONException e) {
 							throw new DomainException(
@@ -1473,7 +1326,11 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 									e);
 						}
 					}
-					//this.wifiScan = new WifiScan(tTime, accessPoints);
+					
+					// Access points without an SSID were skipped.
+					this.ssids = Arrays.copyOf(tSsids, numAccessPoints);
+					this.strengths = 
+						Arrays.copyOf(tStrengths, numAccessPoints);
 				}
 			}
 			
@@ -1547,19 +1404,19 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 						(columns.contains(WifiDataColumnKey.SSID) &&
 						 columns.contains(WifiDataColumnKey.STRENGTH))) {
 					
-					if(scan != null) {
+					if(ssids != null) {
 						JSONArray scans = new JSONArray();
-						for(AccessPoint accessPoint : scan) {
+						for(int i = 0; i < ssids.length; i++) {
 							JSONObject currScan = new JSONObject();
 							
 							currScan.put(
 									WifiDataColumnKey.SSID.toString(
 											abbreviated),
-									accessPoint.ssid);
+									ssids[i]);
 							currScan.put(
 									WifiDataColumnKey.STRENGTH.toString(
 											abbreviated),
-									accessPoint.strength);
+									toValue(strengths[i]));
 							
 							scans.put(currScan);
 						}
@@ -1574,15 +1431,15 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 					columns.contains(SensorDataColumnKey.WIFI_DATA) ||
 					columns.contains(WifiDataColumnKey.SSID)) {
 					
-					if(scan != null) {
+					if(ssids != null) {
 						JSONArray scans = new JSONArray();
-						for(AccessPoint accessPoint : scan) {
+						for(int i = 0; i < ssids.length; i++) {
 							JSONObject currScan = new JSONObject();
 							
 							currScan.put(
 									WifiDataColumnKey.SSID.toString(
 											abbreviated),
-									accessPoint.ssid);
+									ssids[i]);
 							
 							scans.put(currScan);
 						}
@@ -1597,15 +1454,15 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 					columns.contains(SensorDataColumnKey.WIFI_DATA) ||
 					columns.contains(WifiDataColumnKey.STRENGTH)) {
 					
-					if(scan != null) {
+					if(strengths != null) {
 						JSONArray scans = new JSONArray();
-						for(AccessPoint accessPoint : scan) {
+						for(int i = 0; i < strengths.length; i++) {
 							JSONObject currScan = new JSONObject();
 							
 							currScan.put(
 									WifiDataColumnKey.STRENGTH.toString(
 											abbreviated),
-									accessPoint.strength);
+									toValue(strengths[i]));
 							
 							scans.put(currScan);
 						}
@@ -1676,32 +1533,18 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				// If SCAN is present, we ignore it as it should have been, for
 				// CSV output at least, broken down into SSID and STRENGTH.
 
-				if(scan != null) {
+				if(ssids != null) {
 					int ssidIndex = columns.indexOf(WifiDataColumnKey.SSID);
-					Collection<String> ssids = 
-							new ArrayList<String>(scan.size());
-					
-					int strengthIndex = 
-							columns.indexOf(WifiDataColumnKey.STRENGTH);
-					Collection<Double> strengths =
-							new ArrayList<Double>(scan.size());
-					
-					for(AccessPoint accessPoint : scan) {
-						if(ssidIndex != -1) {
-							ssids.add(accessPoint.ssid);
-						}
-						
-						if(strengthIndex != -1) {
-							strengths.add(accessPoint.strength);
-						}
-					}
-					
 					if(ssidIndex != -1) {
-						result.set(ssidIndex, ssids);
+						result.set(
+							ssidIndex, 
+							Collections.unmodifiableList(Arrays.asList(ssids)));
 					}
 					
+					int strengthIndex = 
+							columns.indexOf(WifiDataColumnKey.STRENGTH);
 					if(strengthIndex != -1) {
-						result.set(strengthIndex, strengths);
+						result.set(strengthIndex, asList(strengths));
 					}
 				}
 			}
@@ -1754,8 +1597,27 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			
 			this.mode = mode;
 			this.speed = speed;
-			this.accelData = accelData;
 			this.wifiData = wifiData;
+			
+			if(accelData == null) {
+				accelX = null;
+				accelY = null;
+				accelZ = null;
+			}
+			else {
+				int numAccelDataPoints = accelData.size();
+				accelX = new double[numAccelDataPoints];
+				accelY = new double[numAccelDataPoints];
+				accelZ = new double[numAccelDataPoints];
+				
+				int i = 0;
+				for(AccelData currAccelData : accelData) {
+					accelX[i] = toPrimitive(currAccelData.getX());
+					accelY[i] = toPrimitive(currAccelData.getY());
+					accelZ[i] = toPrimitive(currAccelData.getZ());
+					i++;
+				}
+			}
 		}
 		
 		/**
@@ -1833,7 +1695,6 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			speed = tSpeed;
 
 			// Get the accelerometer data.
-			List<AccelData> tAccelData = null;
 			JSONArray accelDataJson = null;
 			try {
 				accelDataJson = 
@@ -1849,10 +1710,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 											true));
 				}
 				catch(JSONException notShort) {
-					if(Mode.ERROR.equals(mode)) {
-						tAccelData = null;
-					}
-					else {
+					if(! Mode.ERROR.equals(mode)) {
 						throw new DomainException(
 								ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA, 
 								"The accelerometer data is missing or invalid: " +
@@ -1863,18 +1721,23 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				}
 			}
 			
-			if(accelDataJson != null) {
+			if(accelDataJson == null) {
+				accelX = null;
+				accelY = null;
+				accelZ = null;
+			}
+			else {
 				int numAccelDataPoints = accelDataJson.length();
 				
-				// Create the resulting list and cycle through the 
+				// Create the resulting arrays and cycle through the 
 				// JSONArray adding each of the entries.
-				tAccelData = new ArrayList<AccelData>(numAccelDataPoints);
+				accelX = new double[numAccelDataPoints];
+				accelY = new double[numAccelDataPoints];
+				accelZ = new double[numAccelDataPoints];
 				for(int i = 0; i < numAccelDataPoints; i++) {
+					JSONObject accelRecord;
 					try {
-						tAccelData.add(
-								new AccelData(
-										accelDataJson.getJSONObject(i), 
-										mode));
+						accelRecord = accelDataJson.getJSONObject(i);
 					}
 					catch(JSONException e) {
 						throw new DomainException(
@@ -1882,9 +1745,24 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 								"An accelerometer data point is not a JSONObject.", 
 								e);
 					}
+					
+					accelX[i] = 
+						getAccelComponent(
+							accelRecord, 
+							AccelDataColumnKey.X, 
+							mode);
+					accelY[i] = 
+						getAccelComponent(
+							accelRecord, 
+							AccelDataColumnKey.Y, 
+							mode);
+					accelZ[i] = 
+						getAccelComponent(
+							accelRecord, 
+							AccelDataColumnKey.Z, 
+							mode);
 				}
 			}
-			accelData = tAccelData;
 			
 			// Get the WiFi data.
 			WifiData tWifiData = null;
@@ -1980,10 +1858,19 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			else {
 				ArrayNode accelDataArray = (ArrayNode) accelDataObject;
 				
-				accelData = new ArrayList<AccelData>(accelDataArray.size());
+				accelX = new double[accelDataArray.size()];
+				accelY = new double[accelDataArray.size()];
+				accelZ = new double[accelDataArray.size()];
 				
+				int i = 0;
 				for(JsonNode accelRecord : accelDataArray) {
-					accelData.add(new AccelData(accelRecord));
+					accelX[i] = 
+						getAccelComponent(accelRecord, AccelDataColumnKey.X);
+					accelY[i] = 
+						getAccelComponent(accelRecord, AccelDataColumnKey.Y);
+					accelZ[i] = 
+						getAccelComponent(accelRecord, AccelDataColumnKey.Z);
+					i++;
 				}
 			}
 			
@@ -2020,12 +1907,107 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 		}
 
 		/**
-		 * Returns all of the AccelData points for this record.
+		 * Returns all of the AccelData points for this record. The points are
+		 * stored as arrays of their components, so this is a read-only view 
+		 * whose AccelData objects are created as they are retrieved.
 		 * 
-		 * @return All of the record's AccelData points.
+		 * @return All of the record's AccelData points or null if the record
+		 * 		   has no accelerometer data.
 		 */
 		public final List<AccelData> getAccelData() {
-			return accelData;
+			if(accelX == null) {
+				return null;
+			}
+			
+			return new AbstractList<AccelData>() {
+				@Override
+				public AccelData get(final int index) {
+					return new AccelData(
+						toValue(accelX[index]), 
+						toValue(accelY[index]), 
+						toValue(accelZ[index]));
+				}
+
+				@Override
+				public int size() {
+					return accelX.length;
+				}
+			};
+		}
+		
+		/**
+		 * Reads a component of an accelerometer data point from a generic 
+		 * record.
+		 * 
+		 * @param accelDataRecord The generic record.
+		 * 
+		 * @param key The component.
+		 * 
+		 * @return The component's value.
+		 * 
+		 * @throws DomainException The component is missing or not a number.
+		 */
+		private static double getAccelComponent(
+				final JsonNode accelDataRecord,
+				final AccelDataColumnKey key)
+				throws DomainException {
+			
+			JsonNode object = accelDataRecord.get(key.toString(false));
+			if(object == null) {
+				throw new DomainException(
+					ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
+					"The '" + key.toString(false) + "' component is missing.");
+			}
+			else if(! object.isNumber()) {
+				throw new DomainException(
+					ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA,
+					"The '" + 
+						key.toString(false) + 
+						"' component is not a number.");
+			}
+			
+			return object.getNumberValue().doubleValue();
+		}
+		
+		/**
+		 * Reads a component of an accelerometer data point from its JSON.
+		 * 
+		 * @param accelData The JSON data point.
+		 * 
+		 * @param key The component.
+		 * 
+		 * @param mode The pre-processed mode. This is needed, because if it 
+		 * 			   is {@link Mode#ERROR} then any of the values may be 
+		 * 			   missing or invalid.
+		 * 
+		 * @return The component's value or NaN if it is missing and the mode
+		 * 		   is {@link Mode#ERROR}.
+		 * 
+		 * @throws DomainException The component is missing or invalid and the
+		 * 						   mode is not {@link Mode#ERROR}.
+		 */
+		private static double getAccelComponent(
+				final JSONObject accelData,
+				final AccelDataColumnKey key,
+				final Mode mode)
+				throws DomainException {
+			
+			try {
+				return accelData.getDouble(key.toString(false));
+			}
+			catch(JSONException e) {
+				if(Mode.ERROR.equals(mode)) {
+					return Double.NaN;
+				}
+				else {
+					throw new DomainException(
+							ErrorCode.MOBILITY_INVALID_ACCELEROMETER_DATA, 
+							"The '" + 
+								key.toString(false) + 
+								"' point was missing or invalid.", 
+							e);
+				}
+			}
 		}
 
 		/**
@@ -2112,12 +2094,12 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				columns.contains(SensorDataColumnKey.ACCELEROMETER_DATA) ||
 				AccelDataColumnKey.containsAccelDataColumnKey(columns)) {
 
-				if(accelData == null) {
+				if(accelX == null) {
 					// Don't put it in the JSON.
 				}
 				else {
 					JSONArray accelArray = new JSONArray();
-					for(AccelData accelRecord : accelData) {
+					for(AccelData accelRecord : getAccelData()) {
 						accelArray.put(accelRecord.toJson(columns));
 					}
 					result.put(
@@ -2190,9 +2172,17 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				result.set(index, speed);
 			}
 			
-			if(accelData != null) {
-				for(AccelData currAccelData : accelData) {
-					currAccelData.toCsvRow(columns, result);
+			if((accelX != null) && (accelX.length > 0)) {
+				if((index = columns.indexOf(AccelDataColumnKey.X)) != -1) {
+					result.set(index, asList(accelX));
+				}
+				
+				if((index = columns.indexOf(AccelDataColumnKey.Y)) != -1) {
+					result.set(index, asList(accelY));
+				}
+				
+				if((index = columns.indexOf(AccelDataColumnKey.Z)) != -1) {
+					result.set(index, asList(accelZ));
 				}
 			}
 			
@@ -2371,7 +2361,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			}
 		}
 		
-		private final List<Double> fft;
+		private final double[] fft;
 		private final Double variance;
 		
 		// This is no longer being collected, but it is being left here as a
@@ -2453,7 +2443,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			this.mode = tMode;
 			
 			JSONArray fftArray = null;
-			List<Double> tFft = null;
+			double[] tFft = null;
 			try {
 				fftArray = 
 						classifierData.getJSONArray(
@@ -2472,10 +2462,10 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			}
 			if(fftArray != null) {
 				int numEntries = fftArray.length();
-				tFft = new ArrayList<Double>(numEntries);
+				tFft = new double[numEntries];
 				for(int i = 0; i < numEntries; i++) {
 					try {
-						tFft.add(fftArray.getDouble(i));
+						tFft[i] = fftArray.getDouble(i);
 					}
 					catch(JSONException e) {
 						if(Mode.ERROR.equals(mode)) {
@@ -2560,19 +2550,19 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				throw new DomainException("The mode cannot be null.");
 			}
 			
-			this.fft = fft;
+			this.fft = (fft == null) ? null : toArray(fft);
 			this.variance = variance;
 			this.average = average;
 			this.mode = mode;
 		}
 
 		/**
-		 * Returns the FFT array.
+		 * Returns the FFT array as a read-only view of the stored values.
 		 * 
 		 * @return The FFT array. May be null.
 		 */
 		public final List<Double> getFft() {
-			return fft;
+			return (fft == null) ? null : asList(fft);
 		}
 
 		/**
@@ -2642,7 +2632,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 				
 				result.put(
 					ClassifierDataColumnKey.FFT.toString(abbreviated), 
-					fft);
+					getFft());
 			}
 			
 			if(columns.contains(MobilityColumnKey.CLASSIFIER_DATA) ||
@@ -2706,7 +2696,7 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 			}
 			
 			if((index = columns.indexOf(ClassifierDataColumnKey.FFT)) != -1) {
-				result.set(index, fft);
+				result.set(index, getFft());
 			}
 			
 			if((index = columns.indexOf(ClassifierDataColumnKey.VARIANCE)) != -1) {
@@ -3454,13 +3444,14 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 					Mode.ERROR.toString());
 		}
 		
-		List<Sample> result = new ArrayList<Sample>(sensorData.accelData.size());
-		for(AccelData dataPoint : sensorData.accelData) {
+		int numSamples = sensorData.accelX.length;
+		List<Sample> result = new ArrayList<Sample>(numSamples);
+		for(int i = 0; i < numSamples; i++) {
 			result.add(
 					new Sample(
-						dataPoint.getX(), 
-						dataPoint.getY(), 
-						dataPoint.getZ()));
+						sensorData.accelX[i], 
+						sensorData.accelY[i], 
+						sensorData.accelZ[i]));
 		}
 		return result;
 	}
@@ -3490,13 +3481,13 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 					"There was no WiFi data generated for this point.");
 		}
 
-		List<SensorData.WifiData.AccessPoint> scan = sensorData.wifiData.scan;
+		String[] ssids = sensorData.wifiData.ssids;
+		double[] strengths = sensorData.wifiData.strengths;
 		List<AccessPoint> accessPoints = 
-				new ArrayList<AccessPoint>(scan.size());
+				new ArrayList<AccessPoint>(ssids.length);
 		
-		for(SensorData.WifiData.AccessPoint accessPoint : scan) {
-			accessPoints
-				.add(new AccessPoint(accessPoint.ssid, accessPoint.strength));
+		for(int i = 0; i < ssids.length; i++) {
+			accessPoints.add(new AccessPoint(ssids[i], strengths[i]));
 		}
 		
 		return new WifiScan(sensorData.wifiData.time, accessPoints);
@@ -3551,6 +3542,68 @@ public class MobilityPoint implements Comparable<MobilityPoint> {
 		return classifierData;
 	}
 
+	/**
+	 * Returns a read-only view of an array of values as a list. Missing 
+	 * values, which are NaN in the array, are null in the list.
+	 * 
+	 * @param values The values.
+	 * 
+	 * @return The list view of the values.
+	 */
+	private static List<Double> asList(final double[] values) {
+		return new AbstractList<Double>() {
+			@Override
+			public Double get(final int index) {
+				return toValue(values[index]);
+			}
+
+			@Override
+			public int size() {
+				return values.length;
+			}
+		};
+	}
+	
+	/**
+	 * Copies a list of values into an array. Null values are stored as NaN.
+	 * 
+	 * @param values The values.
+	 * 
+	 * @return The array of the values.
+	 */
+	private static double[] toArray(final List<Double> values) {
+		double[] result = new double[values.size()];
+		
+		int i = 0;
+		for(Double value : values) {
+			result[i++] = toPrimitive(value);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Converts a stored value to its object form.
+	 * 
+	 * @param value The stored value, which is NaN if it is missing.
+	 * 
+	 * @return The value or null if it is missing.
+	 */
+	private static Double toValue(final double value) {
+		return (Double.isNaN(value)) ? null : value;
+	}
+	
+	/**
+	 * Converts a value to its stored form.
+	 * 
+	 * @param value The value or null if it is missing.
+	 * 
+	 * @return The value or NaN if it is missing.
+	 */
+	private static double toPrimitive(final Double value) {
+		return (value == null) ? Double.NaN : value;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see java.lang.Comparable#compareTo(java.lang.Object)
@@ -8,7 +8,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.regex.Pattern;
 
 import javax.xml.bind.annotation.XmlElement;
@@ -35,6 +38,7 @@ import org.mozilla.javascript.Function;
 import org.mozilla.javascript.JavaScriptException;
 import org.mozilla.javascript.RhinoException;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.DataStream.MetaData;
 import org.ohmage.exception.DomainException;
@@ -144,6 +148,10 @@ public class Observer {
 		private static final Pattern PATTERN_ID_VALIDATOR = 
 			Pattern.compile("[a-zA-Z]{1}[\\w_]{0,254}");
 		
+		// The most compiled validators each stream keeps idle.
+		private static final int MAX_IDLE_VALIDATORS = 
+			Runtime.getRuntime().availableProcessors();
+		
 		@XmlElement(name=KEY_JSON_ID)
 		private final String id;
 		@XmlElement(name=KEY_JSON_VERSION)
@@ -166,7 +174,14 @@ public class Observer {
 
 		@XmlElement(name=KEY_JSON_SCHEMA)
 		private final String schemaString;
-		private final JsonParser schema;
+		
+		// The Concordia objects that were compiled from the schema. Rhino
+		// objects are not thread-safe, so each validation borrows one, 
+		// compiling a new one if none is idle, and returns it afterwards. 
+		// Only a few are kept idle, so a burst of uploads doesn't leave a 
+		// compiled schema behind for every thread.
+		private final BlockingQueue<Scriptable> validators =
+			new ArrayBlockingQueue<Scriptable>(MAX_IDLE_VALIDATORS);
 		
 		/**
 		 * Private, default constructor. This should never be used and would
@@ -182,7 +197,6 @@ public class Observer {
 			withTimestamp = null;
 			withLocation = null;
 			schemaString = null;
-			schema = null;
 		}
 
 		/**
@@ -245,7 +259,7 @@ public class Observer {
 			this.withTimestamp = withTimestamp;
 			this.withLocation = withLocation;
 
-			this.schema = validateSchema(schema);
+			validators.offer(compileValidator(schema));
 			this.schemaString = schema;
 		}
 		
@@ -407,7 +421,7 @@ public class Observer {
 			
 			schemaString = 
 				getXmlValue(stream, "schema", "stream, " + id + ", schema");
-			schema = validateSchema(schemaString);
+			validators.offer(compileValidator(schemaString));
 			
 		}
 
@@ -475,12 +489,96 @@ public class Observer {
 		}
 
 		/**
-		 * Returns schema.
+		 * Returns a new parser over the schema. Each call returns a parser 
+		 * that is positioned at the beginning of the schema, so a stream may
+		 * be shared.
 		 * 
 		 * @return The schema.
 		 */
 		public JsonParser getSchema() {
-			return schema;
+			try {
+				return JSON_FACTORY.createJsonParser(schemaString);
+			}
+			catch(IOException e) {
+				throw new IllegalStateException(
+					"Could not read the string value.",
+					e);
+			}
+		}
+		
+		/**
+		 * Returns the paths to each of the numeric fields in this stream's
+		 * schema.
+		 * 
+		 * @return The paths to the numeric fields.
+		 * 
+		 * @throws DomainException The schema could not be read.
+		 * 
+		 * @see #getNumericColumns(String)
+		 */
+		public List<List<String>> getNumericColumns() throws DomainException {
+			return getNumericColumns(schemaString);
+		}
+		
+		/**
+		 * Returns the paths to each of the numeric fields in a schema. Only 
+		 * the fields that are reached through nested objects are included;
+		 * fields within arrays are not.
+		 * 
+		 * @param schema The stream's schema.
+		 * 
+		 * @return The paths to the numeric fields, where each path is the 
+		 * 		   list of field names from the root of the data.
+		 * 
+		 * @throws DomainException The schema could not be read.
+		 */
+		public static List<List<String>> getNumericColumns(
+				final String schema)
+				throws DomainException {
+			
+			JsonNode root;
+			try {
+				root = JSON_FACTORY.createJsonParser(schema).readValueAsTree();
+			}
+			catch(IOException e) {
+				throw new DomainException("The schema could not be read.", e);
+			}
+			
+			List<List<String>> result = new LinkedList<List<String>>();
+			addNumericColumns(root, new LinkedList<String>(), result);
+			return result;
+		}
+		
+		/**
+		 * Adds the paths to the numeric fields within a field of a schema.
+		 * 
+		 * @param field The field.
+		 * 
+		 * @param path The path to the field.
+		 * 
+		 * @param result The list to add the paths to.
+		 */
+		private static void addNumericColumns(
+				final JsonNode field,
+				final List<String> path,
+				final List<List<String>> result) {
+			
+			String type = field.path("type").getTextValue();
+			if("number".equals(type)) {
+				if(! path.isEmpty()) {
+					result.add(new LinkedList<String>(path));
+				}
+			}
+			else if("object".equals(type)) {
+				for(JsonNode child : field.path("schema")) {
+					String name = child.path("name").getTextValue();
+					if(name != null) {
+						path.add(name);
+						addNumericColumns(child, path, result);
+						path.remove(path.size() - 1);
+					}
+				}
+			}
 		}
 		
 		/**
@@ -537,7 +635,7 @@ public class Observer {
 				// Add the schema.
 				generator.writeObjectField(
 					KEY_JSON_SCHEMA, 
-					schema.readValueAsTree());
+					getSchema().readValueAsTree());
 			}
 			finally {
 				// Close this observer's object.
@@ -555,33 +653,27 @@ public class Observer {
 		 * 
 		 * @throws DomainException The data does not conform to the schema.
 		 */
-		public JsonNode validateData(JsonNode data) throws DomainException {
+		public JsonNode validateData(
+				final JsonNode data) 
+				throws DomainException {
+			
+			// A stream that was created by JAXB has not compiled its schema,
+			// and other threads may be using the compiled ones.
+			Scriptable validator = validators.poll();
+			if(validator == null) {
+				validator = compileValidator(schemaString);
+			}
+			
 			Context context = Context.enter();
 			try {
-				Scriptable scope = context.initStandardObjects();
-				Function concordiaConstructor =
-					context.compileFunction(
-						scope, 
-						JS_SCHEMA, 
-						"Concordia.js", 
-						1, 
-						null);
-				
-				Scriptable concordia =
-					concordiaConstructor.construct(
-						context, 
-						scope, 
-						new Object[] { schemaString }
-					);
-				
 				Object validateData = 
-					concordia.get("validateData", concordia);
+					validator.get("validateData", validator);
 				if(validateData instanceof Function) {
 					Function validateDataFunction = (Function) validateData;
 					
 					validateDataFunction.call(
 						context, 
-						scope, 
+						ScriptableObject.getTopLevelScope(validator), 
 						validateDataFunction, 
 						new Object[] { data.toString() }
 					);
@@ -600,6 +692,7 @@ public class Observer {
 			}
 			finally {
 				Context.exit();
+				validators.offer(validator);
 			}
 			
 			return data;
@@ -648,6 +741,37 @@ public class Observer {
 				final String schema)
 				throws DomainException {
 			
+			compileValidator(schema);
+			
+			try {
+				return JSON_FACTORY.createJsonParser(schema);
+			}
+			catch(JsonParseException e) {
+				throw new DomainException(
+					"Validation succeeded, but the schema could not be parsed as JSON.",
+					e);
+			}
+			catch(IOException e) {
+				throw new DomainException(
+					"Could not read the string value.",
+					e);
+			}
+		}
+		
+		/**
+		 * Compiles the Concordia validator for a schema, which also validates
+		 * the schema.
+		 * 
+		 * @param schema The stream's schema.
+		 * 
+		 * @return The Concordia object for the schema.
+		 * 
+		 * @throws DomainException The schema was not valid.
+		 */
+		private static Scriptable compileValidator(
+				final String schema)
+				throws DomainException {
+			
 			Context context = Context.enter();
 			try {
 				Scriptable scope = context.initStandardObjects();
@@ -659,10 +783,11 @@ public class Observer {
 						1, 
 						null);
 				
-				concordiaConstructor.construct(
-					context, 
-					scope, 
-					new Object[] { schema });
+				return
+					concordiaConstructor.construct(
+						context, 
+						scope, 
+						new Object[] { schema });
 			}
 			catch(JavaScriptException e) {
 				throw new DomainException(
@@ -678,20 +803,6 @@ public class Observer {
 			finally {
 				Context.exit();
 			}
-			
-			try {
-				return JSON_FACTORY.createJsonParser(schema);
-			}
-			catch(JsonParseException e) {
-				throw new DomainException(
-					"Validation succeeded, but the schema could not be parsed as JSON.",
-					e);
-			}
-			catch(IOException e) {
-				throw new DomainException(
-					"Could not read the string value.",
-					e);
-			}
 		}
 	}
 	private final Map<String, Stream> streams;
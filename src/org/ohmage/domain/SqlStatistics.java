@@ -0,0 +1,150 @@
+package org.ohmage.domain;
+
+import java.util.Collection;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A snapshot of how often a SQL statement has been executed and how long it
+ * took. Statements that differ only in their literal values are counted as
+ * one. This class is immutable.
+ */
+public class SqlStatistics {
+	private static final String JSON_KEY_SQL = "sql";
+	private static final String JSON_KEY_CALLERS = "callers";
+	private static final String JSON_KEY_COUNT = "count";
+	private static final String JSON_KEY_ROWS = "rows";
+	private static final String JSON_KEY_TOTAL_MILLIS = "total_millis";
+	private static final String JSON_KEY_MEAN_MILLIS = "mean_millis";
+	private static final String JSON_KEY_P50_MILLIS = "p50_millis";
+	private static final String JSON_KEY_P95_MILLIS = "p95_millis";
+	private static final String JSON_KEY_P99_MILLIS = "p99_millis";
+	private static final String JSON_KEY_MAX_MILLIS = "max_millis";
+
+	private final String sql;
+	private final Collection<String> callers;
+	private final long count;
+	private final long rows;
+	private final double totalMillis;
+	private final double p50Millis;
+	private final double p95Millis;
+	private final double p99Millis;
+	private final double maxMillis;
+
+	/**
+	 * Creates a snapshot of a statement's statistics.
+	 * 
+	 * @param sql The normalized statement.
+	 * 
+	 * @param callers The Query methods that have been seen executing the
+	 * 				  statement, as "Class.method".
+	 * 
+	 * @param count The number of times the statement was executed.
+	 * 
+	 * @param rows The number of rows the statement returned or modified.
+	 * 
+	 * @param totalMillis The total time spent executing the statement.
+	 * 
+	 * @param p50Millis The median execution time.
+	 * 
+	 * @param p95Millis The 95th percentile execution time.
+	 * 
+	 * @param p99Millis The 99th percentile execution time.
+	 * 
+	 * @param maxMillis The longest execution time.
+	 */
+	public SqlStatistics(
+			final String sql,
+			final Collection<String> callers,
+			final long count,
+			final long rows,
+			final double totalMillis,
+			final double p50Millis,
+			final double p95Millis,
+			final double p99Millis,
+			final double maxMillis) {
+
+		this.sql = sql;
+		this.callers = callers;
+		this.count = count;
+		this.rows = rows;
+		this.totalMillis = totalMillis;
+		this.p50Millis = p50Millis;
+		this.p95Millis = p95Millis;
+		this.p99Millis = p99Millis;
+		this.maxMillis = maxMillis;
+	}
+
+	/**
+	 * Returns the normalized statement.
+	 * 
+	 * @return The normalized statement.
+	 */
+	public String getSql() {
+		return sql;
+	}
+
+	/**
+	 * Returns the Query methods that have been seen executing the statement.
+	 * 
+	 * @return The Query methods, as "Class.method".
+	 */
+	public Collection<String> getCallers() {
+		return callers;
+	}
+
+	/**
+	 * Returns the number of times the statement was executed.
+	 * 
+	 * @return The number of times the statement was executed.
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the number of rows the statement returned or modified.
+	 * 
+	 * @return The number of rows.
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * Returns the total time spent executing the statement.
+	 * 
+	 * @return The total time in milliseconds.
+	 */
+	public double getTotalMillis() {
+		return totalMillis;
+	}
+
+	/**
+	 * Creates a JSON object describing the statement's statistics.
+	 * 
+	 * @return A JSON object describing the statement's statistics.
+	 * 
+	 * @throws JSONException There was an error building the object.
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject result = new JSONObject();
+
+		result.put(JSON_KEY_SQL, sql);
+		result.put(JSON_KEY_CALLERS, new JSONArray(callers));
+		result.put(JSON_KEY_COUNT, count);
+		result.put(JSON_KEY_ROWS, rows);
+		result.put(JSON_KEY_TOTAL_MILLIS, totalMillis);
+		result.put(
+			JSON_KEY_MEAN_MILLIS,
+			(count == 0) ? 0 : totalMillis / count);
+		result.put(JSON_KEY_P50_MILLIS, p50Millis);
+		result.put(JSON_KEY_P95_MILLIS, p95Millis);
+		result.put(JSON_KEY_P99_MILLIS, p99Millis);
+		result.put(JSON_KEY_MAX_MILLIS, maxMillis);
+
+		return result;
+	}
+}
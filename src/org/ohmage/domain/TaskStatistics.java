@@ -0,0 +1,183 @@
+package org.ohmage.domain;
+
+import org.joda.time.DateTime;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.util.DateTimeUtils;
+
+/**
+ * A snapshot of a background task's state and how long its runs took. This
+ * class is immutable.
+ */
+public class TaskStatistics {
+	private static final String JSON_KEY_NAME = "name";
+	private static final String JSON_KEY_PERIOD_MILLIS = "period_millis";
+	private static final String JSON_KEY_MAX_CONCURRENCY = "max_concurrency";
+	private static final String JSON_KEY_DEFERRABLE = "deferrable";
+	private static final String JSON_KEY_RUNNING = "running";
+	private static final String JSON_KEY_BACKLOG = "backlog";
+	private static final String JSON_KEY_RUNS = "runs";
+	private static final String JSON_KEY_FAILURES = "failures";
+	private static final String JSON_KEY_DEFERRALS = "deferrals";
+	private static final String JSON_KEY_LAST_RUN = "last_run";
+	private static final String JSON_KEY_LAST_MILLIS = "last_millis";
+	private static final String JSON_KEY_MEAN_MILLIS = "mean_millis";
+	private static final String JSON_KEY_MAX_MILLIS = "max_millis";
+	private static final String JSON_KEY_LAST_ERROR = "last_error";
+
+	private final String name;
+	private final long periodMillis;
+	private final int maxConcurrency;
+	private final boolean deferrable;
+	private final int running;
+	private final int backlog;
+	private final long runs;
+	private final long failures;
+	private final long deferrals;
+	private final long lastRun;
+	private final double lastMillis;
+	private final double totalMillis;
+	private final double maxMillis;
+	private final String lastError;
+
+	/**
+	 * Creates a snapshot of a task's statistics.
+	 * 
+	 * @param name The task's name.
+	 * 
+	 * @param periodMillis The number of milliseconds between its periodic
+	 * 					   runs or zero if it only runs on demand.
+	 * 
+	 * @param maxConcurrency The number of its runs that may execute at once.
+	 * 
+	 * @param deferrable Whether or not its runs may be deferred while the
+	 * 					 requests are slow.
+	 * 
+	 * @param running The number of its runs that are executing.
+	 * 
+	 * @param backlog The number of its runs that are waiting to execute.
+	 * 
+	 * @param runs The number of its runs that have completed.
+	 * 
+	 * @param failures The number of its runs that failed.
+	 * 
+	 * @param deferrals The number of times one of its runs was deferred.
+	 * 
+	 * @param lastRun The milliseconds since the epoch at which its last run
+	 * 				  started or a negative value if it hasn't run.
+	 * 
+	 * @param lastMillis The time its last completed run took.
+	 * 
+	 * @param totalMillis The total time its completed runs took.
+	 * 
+	 * @param maxMillis The longest time one of its runs took.
+	 * 
+	 * @param lastError The error with which its last failed run failed or
+	 * 					null if none has failed.
+	 */
+	public TaskStatistics(
+			final String name,
+			final long periodMillis,
+			final int maxConcurrency,
+			final boolean deferrable,
+			final int running,
+			final int backlog,
+			final long runs,
+			final long failures,
+			final long deferrals,
+			final long lastRun,
+			final double lastMillis,
+			final double totalMillis,
+			final double maxMillis,
+			final String lastError) {
+
+		this.name = name;
+		this.periodMillis = periodMillis;
+		this.maxConcurrency = maxConcurrency;
+		this.deferrable = deferrable;
+		this.running = running;
+		this.backlog = backlog;
+		this.runs = runs;
+		this.failures = failures;
+		this.deferrals = deferrals;
+		this.lastRun = lastRun;
+		this.lastMillis = lastMillis;
+		this.totalMillis = totalMillis;
+		this.maxMillis = maxMillis;
+		this.lastError = lastError;
+	}
+
+	/**
+	 * Returns the task's name.
+	 * 
+	 * @return The task's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of the task's runs that are waiting to execute.
+	 * 
+	 * @return The task's backlog.
+	 */
+	public int getBacklog() {
+		return backlog;
+	}
+
+	/**
+	 * Returns the number of the task's runs that have completed.
+	 * 
+	 * @return The number of completed runs.
+	 */
+	public long getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Returns the number of the task's runs that failed.
+	 * 
+	 * @return The number of failed runs.
+	 */
+	public long getFailures() {
+		return failures;
+	}
+
+	/**
+	 * Creates a JSON object describing the task's statistics.
+	 * 
+	 * @return A JSON object describing the task's statistics.
+	 * 
+	 * @throws JSONException There was an error building the object.
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject result = new JSONObject();
+
+		result.put(JSON_KEY_NAME, name);
+		result.put(JSON_KEY_PERIOD_MILLIS, periodMillis);
+		result.put(JSON_KEY_MAX_CONCURRENCY, maxConcurrency);
+		result.put(JSON_KEY_DEFERRABLE, deferrable);
+		result.put(JSON_KEY_RUNNING, running);
+		result.put(JSON_KEY_BACKLOG, backlog);
+		result.put(JSON_KEY_RUNS, runs);
+		result.put(JSON_KEY_FAILURES, failures);
+		result.put(JSON_KEY_DEFERRALS, deferrals);
+		result.put(
+			JSON_KEY_LAST_RUN,
+			(lastRun < 0) ?
+				JSONObject.NULL :
+				DateTimeUtils.getIso8601DateString(
+					new DateTime(lastRun),
+					true));
+		result.put(JSON_KEY_LAST_MILLIS, lastMillis);
+		result.put(
+			JSON_KEY_MEAN_MILLIS,
+			(runs == 0) ? 0 : totalMillis / runs);
+		result.put(JSON_KEY_MAX_MILLIS, maxMillis);
+		result.put(
+			JSON_KEY_LAST_ERROR,
+			(lastError == null) ? JSONObject.NULL : lastError);
+
+		return result;
+	}
+}
@@ -305,6 +305,78 @@ public class UserInformation {
 			
 			return result;
 		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#hashCode()
+		 */
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result =
+				prime * result +
+				((firstName == null) ? 0 : firstName.hashCode());
+			result =
+				prime * result +
+				((lastName == null) ? 0 : lastName.hashCode());
+			result =
+				prime * result +
+				((organization == null) ? 0 : organization.hashCode());
+			result =
+				prime * result +
+				((personalId == null) ? 0 : personalId.hashCode());
+			return result;
+		}
+
+		/* (non-Javadoc)
+		 * @see java.lang.Object#equals(java.lang.Object)
+		 */
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(obj == null) {
+				return false;
+			}
+			if(!(obj instanceof UserPersonal)) {
+				return false;
+			}
+			UserPersonal other = (UserPersonal) obj;
+			if(firstName == null) {
+				if(other.firstName != null) {
+					return false;
+				}
+			}
+			else if(!firstName.equals(other.firstName)) {
+				return false;
+			}
+			if(lastName == null) {
+				if(other.lastName != null) {
+					return false;
+				}
+			}
+			else if(!lastName.equals(other.lastName)) {
+				return false;
+			}
+			if(organization == null) {
+				if(other.organization != null) {
+					return false;
+				}
+			}
+			else if(!organization.equals(other.organization)) {
+				return false;
+			}
+			if(personalId == null) {
+				if(other.personalId != null) {
+					return false;
+				}
+			}
+			else if(!personalId.equals(other.personalId)) {
+				return false;
+			}
+			return true;
+		}
 	}
 	private final UserPersonal personalInfo;
 	
@@ -86,6 +86,11 @@ import org.ohmage.util.StringUtils;
  * @author John Jenkins
  */
 public class Campaign {
+	/**
+	 * The maximum number of campaigns to return in campaign search.
+	 */
+	public static final int MAX_NUM_TO_RETURN = Integer.MAX_VALUE;
+	
 	private static final Logger LOGGER = Logger.getLogger(Request.class);
 	
 	private static final String XML_ID = "/campaign/campaignUrn";
@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * Copyright 2012 The Regents of the University of California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.jee.filter;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses an "application/x-www-form-urlencoded" body as it is being read.
+ * Each key and value is URL-decoded byte-by-byte and only converted to a
+ * string once it is complete, so multibyte characters are never split. The
+ * limits are enforced while reading so that an oversized body is rejected
+ * without first being read into memory.
+ * 
+ * <p>
+ * Values of the streamable parameters that grow beyond the streaming
+ * threshold are written to temporary files instead of being kept in memory.
+ * These are returned as {@link StreamedParameter}s.
+ * </p>
+ * 
+ * <p>
+ * This class is not thread-safe and may only parse a single body.
+ * </p>
+ */
+final class FormUrlEncodedParser {
+	/**
+	 * Thrown when the body is not valid "application/x-www-form-urlencoded"
+	 * content.
+	 */
+	static class MalformedBodyException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		MalformedBodyException(final String message) {
+			super(message);
+		}
+	}
+
+	/**
+	 * Thrown when the body exceeds one of the parser's limits.
+	 */
+	static class LimitExceededException extends Exception {
+		private static final long serialVersionUID = 1L;
+
+		LimitExceededException(final String message) {
+			super(message);
+		}
+	}
+
+	private static final String CHARSET = "UTF-8";
+
+	private static final int CHUNK_SIZE = 4096;
+
+	private static final byte PARAMETER_SEPARATOR = '&';
+	private static final byte PARAMETER_VALUE_SEPARATOR = '=';
+	private static final byte ENCODED_SPACE = '+';
+	private static final byte ESCAPE = '%';
+
+	private final long maxBodySize;
+	private final long maxInMemorySize;
+	private final int maxParameters;
+	private final Collection<String> streamableParameters;
+	private final long streamThreshold;
+	private final File tempDirectory;
+
+	private final Map<String, List<String>> parameters =
+		new HashMap<String, List<String>>();
+	private final Map<String, StreamedParameter> streamedParameters =
+		new HashMap<String, StreamedParameter>();
+
+	// The state of the pair that is currently being parsed.
+	private final ByteArrayOutputStream key = new ByteArrayOutputStream();
+	private final ByteArrayOutputStream value = new ByteArrayOutputStream();
+	private boolean inValue = false;
+	private boolean pairIsBlank = true;
+	private int escapeDigits = 0;
+	private int escapedByte = 0;
+
+	// The file to which the current value is being streamed, if any.
+	private String streamingKey = null;
+	private File streamingFile = null;
+	private OutputStream streamingOutput = null;
+	private long streamingLength = 0;
+
+	private long bodySize = 0;
+	private long inMemorySize = 0;
+	private int numParameters = 0;
+
+	/**
+	 * Creates a new parser.
+	 * 
+	 * @param maxBodySize The maximum number of bytes in the decompressed
+	 * 					  body.
+	 * 
+	 * @param maxInMemorySize The maximum number of decoded bytes across all of
+	 * 						  the parameters that are kept in memory.
+	 * 
+	 * @param maxParameters The maximum number of parameters.
+	 * 
+	 * @param streamableParameters The names of the parameters whose values
+	 * 							   may be streamed to a temporary file.
+	 * 
+	 * @param streamThreshold The size, in bytes, beyond which a streamable
+	 * 						  parameter's value is written to a temporary
+	 * 						  file.
+	 * 
+	 * @param tempDirectory The directory for the temporary files or null to
+	 * 						use the system's default.
+	 */
+	FormUrlEncodedParser(
+			final long maxBodySize,
+			final long maxInMemorySize,
+			final int maxParameters,
+			final Collection<String> streamableParameters,
+			final long streamThreshold,
+			final File tempDirectory) {
+
+		this.maxBodySize = maxBodySize;
+		this.maxInMemorySize = maxInMemorySize;
+		this.maxParameters = maxParameters;
+		this.streamableParameters = streamableParameters;
+		this.streamThreshold = streamThreshold;
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Reads and parses the entire body. If this fails for any reason, any
+	 * temporary files that were created are deleted.
+	 * 
+	 * @param body The body to parse. This is not closed.
+	 * 
+	 * @throws IOException There was an error reading the body or writing a
+	 * 					   temporary file.
+	 * 
+	 * @throws MalformedBodyException The body is not valid.
+	 * 
+	 * @throws LimitExceededException The body exceeded one of the limits.
+	 */
+	void parse(final InputStream body)
+			throws IOException, MalformedBodyException, LimitExceededException {
+
+		boolean success = false;
+		try {
+			byte[] chunk = new byte[CHUNK_SIZE];
+			int readLen;
+			while((readLen = body.read(chunk)) != -1) {
+				bodySize += readLen;
+				if(bodySize > maxBodySize) {
+					throw new LimitExceededException(
+						"The body is larger than " + maxBodySize + " bytes.");
+				}
+
+				for(int i = 0; i < readLen; i++) {
+					process(chunk[i]);
+				}
+			}
+			endPair();
+
+			success = true;
+		}
+		finally {
+			if(! success) {
+				closeStreamingOutput();
+				if(streamingFile != null) {
+					streamingFile.delete();
+				}
+				for(StreamedParameter parameter : streamedParameters.values()) {
+					parameter.delete();
+				}
+				streamedParameters.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the parameters that were kept in memory.
+	 * 
+	 * @return The parameter names to their values.
+	 */
+	Map<String, String[]> getParameters() {
+		Map<String, String[]> result = new HashMap<String, String[]>();
+		for(String name : parameters.keySet()) {
+			result.put(name, parameters.get(name).toArray(new String[0]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the parameters whose values were streamed to temporary files.
+	 * 
+	 * @return The parameter names to their streamed values.
+	 */
+	Map<String, StreamedParameter> getStreamedParameters() {
+		return streamedParameters;
+	}
+
+	/**
+	 * Processes a single byte of the body.
+	 * 
+	 * @param b The byte.
+	 */
+	private void process(final byte b)
+			throws IOException, MalformedBodyException, LimitExceededException {
+
+		if(escapeDigits > 0) {
+			int digit = Character.digit((char) (b & 0xFF), 16);
+			if(digit == -1) {
+				throw new MalformedBodyException(
+					"An escape sequence contained an invalid hex digit.");
+			}
+
+			escapedByte = (escapedByte << 4) | digit;
+			escapeDigits--;
+			if(escapeDigits == 0) {
+				write(escapedByte);
+			}
+			return;
+		}
+
+		if(b == PARAMETER_SEPARATOR) {
+			endPair();
+		}
+		else if(b == PARAMETER_VALUE_SEPARATOR) {
+			if(inValue) {
+				throw new MalformedBodyException(
+					"A parameter contained multiple '=' characters.");
+			}
+			inValue = true;
+			pairIsBlank = false;
+			startValue();
+		}
+		else if(b == ESCAPE) {
+			escapeDigits = 2;
+			escapedByte = 0;
+			pairIsBlank = false;
+		}
+		else if(b == ENCODED_SPACE) {
+			write(' ');
+			pairIsBlank = false;
+		}
+		else {
+			if(! Character.isWhitespace((char) (b & 0xFF))) {
+				pairIsBlank = false;
+			}
+			write(b);
+		}
+	}
+
+	/**
+	 * Writes a decoded byte to the current key or value.
+	 * 
+	 * @param b The decoded byte.
+	 */
+	private void write(final int b) throws IOException, LimitExceededException {
+		if(! inValue) {
+			key.write(b);
+			countInMemory();
+		}
+		else if(streamingOutput != null) {
+			streamingOutput.write(b);
+			streamingLength++;
+		}
+		else {
+			value.write(b);
+			countInMemory();
+
+			// Once a streamable value grows too large, it is moved to a
+			// temporary file.
+			if((streamingKey != null) && (value.size() > streamThreshold)) {
+				streamingFile =
+					File.createTempFile("ohmage-parameter-", ".tmp", tempDirectory);
+				streamingOutput =
+					new BufferedOutputStream(new FileOutputStream(streamingFile));
+				value.writeTo(streamingOutput);
+				streamingLength = value.size();
+				inMemorySize -= value.size();
+				value.reset();
+			}
+		}
+	}
+
+	/**
+	 * Counts a byte towards the in-memory limit.
+	 */
+	private void countInMemory() throws LimitExceededException {
+		inMemorySize++;
+		if(inMemorySize > maxInMemorySize) {
+			throw new LimitExceededException(
+				"The parameters are larger than " + maxInMemorySize + " bytes.");
+		}
+	}
+
+	/**
+	 * Called when the key is complete and the value is about to begin.
+	 */
+	private void startValue() {
+		String name = decode(key);
+		if(streamableParameters.contains(name)) {
+			streamingKey = name;
+		}
+	}
+
+	/**
+	 * Called at the end of every pair, including the last one.
+	 */
+	private void endPair()
+			throws IOException, MalformedBodyException, LimitExceededException {
+
+		if(escapeDigits > 0) {
+			throw new MalformedBodyException(
+				"An escape sequence was incomplete.");
+		}
+
+		try {
+			// Empty pairs, e.g. a trailing '&', are ignored.
+			if(pairIsBlank) {
+				return;
+			}
+			else if(! inValue) {
+				throw new MalformedBodyException(
+					"One of the parameter's 'pairs' did not contain a '='.");
+			}
+
+			numParameters++;
+			if(numParameters > maxParameters) {
+				throw new LimitExceededException(
+					"There are more than " + maxParameters + " parameters.");
+			}
+
+			// A streamed value cannot be combined with other values for the
+			// same parameter.
+			String name = decode(key);
+			if(streamedParameters.containsKey(name) ||
+				((streamingOutput != null) && parameters.containsKey(name))) {
+
+				throw new MalformedBodyException(
+					"Multiple values were given for the parameter: " + name);
+			}
+
+			if(streamingOutput != null) {
+				closeStreamingOutput();
+				streamedParameters.put(
+					name,
+					new StreamedParameter(name, streamingFile, streamingLength));
+				streamingFile = null;
+			}
+			else {
+				List<String> values = parameters.get(name);
+				if(values == null) {
+					values = new LinkedList<String>();
+					parameters.put(name, values);
+				}
+				values.add(decode(value));
+			}
+		}
+		finally {
+			key.reset();
+			value.reset();
+			inValue = false;
+			pairIsBlank = true;
+			streamingKey = null;
+		}
+	}
+
+	/**
+	 * Closes the output for the value that is being streamed, if any.
+	 */
+	private void closeStreamingOutput() throws IOException {
+		if(streamingOutput != null) {
+			try {
+				streamingOutput.close();
+			}
+			finally {
+				streamingOutput = null;
+			}
+		}
+	}
+
+	/**
+	 * Decodes the URL-decoded bytes as a string.
+	 * 
+	 * @param bytes The URL-decoded bytes.
+	 * 
+	 * @return The string.
+	 */
+	private static String decode(final ByteArrayOutputStream bytes) {
+		try {
+			return bytes.toString(CHARSET);
+		}
+		catch(UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported.", e);
+		}
+	}
+}
@@ -1,17 +1,20 @@
 package org.ohmage.jee.filter;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Enumeration;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.zip.GZIPInputStream;
 
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
@@ -19,6 +22,8 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.ohmage.jee.servlet.RequestServlet;
+import org.ohmage.request.InputKeys;
 import org.ohmage.util.StringUtils;
 
 /**
@@ -55,33 +60,150 @@ public class GzipFilter implements Filter {
 	private static final String VALUE_GZIP = "gzip";
 	
 	/**
-	 * The string used to separate parameters based on the "Content-Type"
-	 * "x-www-form-urlencoded" specification.
+	 * A chunk size we use when reading the input stream.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+	
+	/**
+	 * The initialization parameter for the maximum size, in bytes, of an
+	 * inflated request.
+	 */
+	private static final String INIT_PARAM_MAX_BODY_SIZE = "maxBodySize";
+	/**
+	 * The initialization parameter for the maximum size, in bytes, of the
+	 * parameters that are kept in memory.
+	 */
+	private static final String INIT_PARAM_MAX_IN_MEMORY_SIZE = 
+		"maxInMemorySize";
+	/**
+	 * The initialization parameter for the maximum number of parameters.
+	 */
+	private static final String INIT_PARAM_MAX_PARAMETERS = "maxParameters";
+	/**
+	 * The initialization parameter for the comma-separated names of the
+	 * parameters that may be streamed to a temporary file.
 	 */
-	private static final String PARAMETER_SEPARATOR = "&";
+	private static final String INIT_PARAM_STREAMABLE_PARAMETERS = 
+		"streamableParameters";
 	/**
-	 * The string used to separate keys from their values for each parameter
-	 * based on the "Content-Type" "x-www-form-urlencoded" specification.
+	 * The initialization parameter for the size, in bytes, beyond which a
+	 * streamable parameter is written to a temporary file.
 	 */
-	private static final String PARAMETER_VALUE_SEPARATOR = "=";
+	private static final String INIT_PARAM_STREAM_THRESHOLD = 
+		"streamThreshold";
 	
 	/**
-	 * A chunk size we use when reading the input stream.
+	 * The default maximum size of an inflated request, which matches the
+	 * servlet's maximum multipart request size.
 	 */
-	private static final int CHUNK_SIZE = 4096;
+	private static final long DEFAULT_MAX_BODY_SIZE = 
+		RequestServlet.MAX_REQUEST_SIZE;
+	/**
+	 * The default maximum size of the parameters that are kept in memory.
+	 */
+	private static final long DEFAULT_MAX_IN_MEMORY_SIZE = 
+		RequestServlet.MAX_SURVEY_RESPONSE_SIZE;
+	/**
+	 * The default maximum number of parameters.
+	 */
+	private static final int DEFAULT_MAX_PARAMETERS = 10000;
+	/**
+	 * The default parameters that may be streamed to a temporary file. These
+	 * are the bulk data uploads.
+	 */
+	private static final String DEFAULT_STREAMABLE_PARAMETERS = 
+		InputKeys.DATA;
+	/**
+	 * The default size beyond which a streamable parameter is written to a
+	 * temporary file.
+	 */
+	private static final long DEFAULT_STREAM_THRESHOLD = 1024 * 1024;
 	
 	/**
 	 * The attribute key used to store the parameters with the request.
 	 */
 	public static final String ATTRIBUTE_KEY_PARAMETERS = "_parameters_";
+	/**
+	 * The attribute key used to store the map of parameter names to their
+	 * {@link StreamedParameter}s with the request. This is only set when at
+	 * least one parameter was streamed.
+	 */
+	public static final String ATTRIBUTE_KEY_STREAMED_PARAMETERS = 
+		"_streamed_parameters_";
 	
-	/*
-	 * (non-Javadoc)
-	 * @see javax.servlet.Filter#init(javax.servlet.FilterConfig)
+	private long maxBodySize = DEFAULT_MAX_BODY_SIZE;
+	private long maxInMemorySize = DEFAULT_MAX_IN_MEMORY_SIZE;
+	private int maxParameters = DEFAULT_MAX_PARAMETERS;
+	private Set<String> streamableParameters = 
+		parseParameterNames(DEFAULT_STREAMABLE_PARAMETERS);
+	private long streamThreshold = DEFAULT_STREAM_THRESHOLD;
+	private File tempDirectory = null;
+	
+	/**
+	 * Reads the limits from the filter's initialization parameters, falling
+	 * back to the defaults for any that are missing.
 	 */
 	@Override
-	public void init(FilterConfig arg0) throws ServletException {
-		// Do nothing.
+	public void init(FilterConfig filterConfig) throws ServletException {
+		try {
+			String value = 
+				filterConfig.getInitParameter(INIT_PARAM_MAX_BODY_SIZE);
+			if(value != null) {
+				maxBodySize = Long.decode(value.trim());
+			}
+			
+			value = filterConfig.getInitParameter(INIT_PARAM_MAX_IN_MEMORY_SIZE);
+			if(value != null) {
+				maxInMemorySize = Long.decode(value.trim());
+			}
+			
+			value = filterConfig.getInitParameter(INIT_PARAM_MAX_PARAMETERS);
+			if(value != null) {
+				maxParameters = Integer.decode(value.trim());
+			}
+			
+			value = filterConfig.getInitParameter(INIT_PARAM_STREAM_THRESHOLD);
+			if(value != null) {
+				streamThreshold = Long.decode(value.trim());
+			}
+		}
+		catch(NumberFormatException e) {
+			throw new ServletException(
+				"One of the GZIP filter's limits is not a number.", 
+				e);
+		}
+		
+		String value = 
+			filterConfig.getInitParameter(INIT_PARAM_STREAMABLE_PARAMETERS);
+		if(value != null) {
+			streamableParameters = parseParameterNames(value);
+		}
+		
+		// Use the container's temporary directory when it has one.
+		Object tempDir = 
+			filterConfig
+				.getServletContext()
+				.getAttribute(ServletContext.TEMPDIR);
+		if(tempDir instanceof File) {
+			tempDirectory = (File) tempDir;
+		}
+	}
+
+	/**
+	 * Splits a comma-separated list of parameter names.
+	 * 
+	 * @param names The comma-separated list of parameter names.
+	 * 
+	 * @return The set of names.
+	 */
+	private static Set<String> parseParameterNames(final String names) {
+		Set<String> result = new HashSet<String>();
+		for(String name : names.split(",")) {
+			if(! StringUtils.isEmptyOrWhitespaceOnly(name)) {
+				result.add(name.trim());
+			}
+		}
+		return result;
 	}
 
 	/*
@@ -109,11 +231,43 @@ public class GzipFilter implements Filter {
 			(response instanceof HttpServletResponse)) {
 			
 			// If we successfully retrieved the parameters, continue the chain.
-			if(	doFilter(
-					(HttpServletRequest) request, 
-					(HttpServletResponse) response)) {
-				
-				chain.doFilter(request, response);
+			try {
+				if(	doFilter(
+						(HttpServletRequest) request, 
+						(HttpServletResponse) response)) {
+					
+					chain.doFilter(request, response);
+				}
+			}
+			finally {
+				// An asynchronous request is still using its parameters, so
+				// they are deleted once it completes.
+				if(request.isAsyncStarted()) {
+					request.getAsyncContext().addListener(new AsyncListener() {
+						@Override
+						public void onComplete(final AsyncEvent event) {
+							deleteStreamedParameters(request);
+						}
+						
+						@Override
+						public void onTimeout(final AsyncEvent event) {
+							// Do nothing.
+						}
+						
+						@Override
+						public void onError(final AsyncEvent event) {
+							// Do nothing.
+						}
+						
+						@Override
+						public void onStartAsync(final AsyncEvent event) {
+							// Do nothing.
+						}
+					});
+				}
+				else {
+					deleteStreamedParameters(request);
+				}
 			}
 		}
 		// Otherwise, continue the chain.
@@ -122,6 +276,28 @@ public class GzipFilter implements Filter {
 		}
 	}
 
+	/**
+	 * Deletes the temporary files of any parameters that were streamed for
+	 * this request.
+	 * 
+	 * @param request The request, which has finished being processed.
+	 */
+	@SuppressWarnings("unchecked")
+	private void deleteStreamedParameters(final ServletRequest request) {
+		Object streamedParameters = 
+			request.getAttribute(ATTRIBUTE_KEY_STREAMED_PARAMETERS);
+		
+		if(streamedParameters instanceof Map) {
+			for(StreamedParameter parameter : 
+				((Map<String, StreamedParameter>) streamedParameters).values()) {
+				
+				parameter.delete();
+			}
+			
+			request.removeAttribute(ATTRIBUTE_KEY_STREAMED_PARAMETERS);
+		}
+	}
+
 	/**
 	 * Retrieves the parameters from the request and saves them as a property
 	 * with the request. The property's key is
@@ -210,8 +386,10 @@ public class GzipFilter implements Filter {
 	/**
 	 * Unzips the parameters using the GZIP encoding. Breaks up the parameters
 	 * based on the "Content-Type" "application/x-www-form-urlencoded" 
-	 * specification. Creates a map of parameter keys to their URL-decoded
-	 * values.
+	 * specification as the body is being inflated. Creates a map of 
+	 * parameter keys to their URL-decoded values. Large values of the
+	 * streamable parameters are saved to temporary files and stored as their
+	 * own attribute of the request.
 	 * 
 	 * @param httpRequest The HTTP request.
 	 * 
@@ -235,7 +413,8 @@ public class GzipFilter implements Filter {
 		// Pass it through the GZIP input stream.
 		GZIPInputStream gzipInputStream;
 		try {
-			gzipInputStream = new GZIPInputStream(requestInputStream);
+			gzipInputStream = 
+				new GZIPInputStream(requestInputStream, CHUNK_SIZE);
 		}
 		catch(IOException e) {
 			LOGGER.info("The content was not valid GZIP content.", e);
@@ -254,21 +433,28 @@ public class GzipFilter implements Filter {
 			return null;
 		}
 		
-		// Retrieve the parameter list as a string.
-		String parameterString;
+		// Parse the parameters as they are being inflated.
+		FormUrlEncodedParser parser =
+			new FormUrlEncodedParser(
+				maxBodySize,
+				maxInMemorySize,
+				maxParameters,
+				streamableParameters,
+				streamThreshold,
+				tempDirectory);
 		try {
-			// This will build the parameter string.
-			StringBuilder builder = new StringBuilder();
-			
-			// These will store the information for the current chunk.
-			byte[] chunk = new byte[CHUNK_SIZE];
-			int readLen = 0;
-			
-			while((readLen = gzipInputStream.read(chunk)) != -1) {
-				builder.append(new String(chunk, 0, readLen));
-			}
-			
-			parameterString = builder.toString();
+			parser.parse(gzipInputStream);
+		}
+		catch(FormUrlEncodedParser.MalformedBodyException e) {
+			LOGGER.info("The parameters were malformed: " + e.getMessage());
+			httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); 
+			return null;
+		}
+		catch(FormUrlEncodedParser.LimitExceededException e) {
+			LOGGER.info("The request was too large: " + e.getMessage());
+			httpResponse
+				.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE); 
+			return null;
 		}
 		catch(IOException e) {
 			LOGGER
@@ -295,73 +481,15 @@ public class GzipFilter implements Filter {
 			}
 		}
 		
-		// Create the resulting object so that we will never return null.
-		Map<String, String[]> parameterMap = new HashMap<String, String[]>();
-		
-		// If the parameters string is not empty, parse it for the parameters.
-		if(! StringUtils.isEmptyOrWhitespaceOnly(parameterString)) {
-			Map<String, List<String>> parameters = 
-				new HashMap<String, List<String>>();
-			
-			// First, split all of the parameters apart.
-			String[] keyValuePairs = 
-				parameterString.split(PARAMETER_SEPARATOR);
-			
-			// For each of the pairs, split their key and value and store them.
-			for(String keyValuePair : keyValuePairs) {
-				// If the pair is empty or null, ignore it.
-				if(StringUtils.isEmptyOrWhitespaceOnly(keyValuePair.trim())) {
-					continue;
-				}
-				
-				// Split the key from the value.
-				String[] splitPair = 
-					keyValuePair.split(PARAMETER_VALUE_SEPARATOR);
-				
-				// If there isn't exactly one key to one value, then there is a
-				// problem, and we need to abort.
-				if(splitPair.length <= 1) {
-					LOGGER
-						.info(
-							"One of the parameter's 'pairs' did not contain a '" + 
-								PARAMETER_VALUE_SEPARATOR + 
-								"': " + 
-								keyValuePair);
-					httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); 
-					return null;
-				}
-				else if(splitPair.length > 2) {
-					LOGGER
-						.info(
-							"One of the parameter's 'pairs' contained multiple '" + 
-								PARAMETER_VALUE_SEPARATOR + 
-								"'s: " + 
-								keyValuePair);
-					httpResponse.setStatus(HttpServletResponse.SC_BAD_REQUEST); 
-					return null;
-				}
-				
-				// The key is the first part of the pair.
-				String key = StringUtils.urlDecode(splitPair[0]);
-				
-				// The first or next value for the key is the second part of 
-				// the pair.
-				List<String> values = parameters.get(key);
-				if(values == null) {
-					values = new LinkedList<String>();
-					parameters.put(key, values);
-				}
-				values.add(StringUtils.urlDecode(splitPair[1]));
-			}
-			
-			// Finally, convert the values from Lists to arrays. If we are 
-			// going to put a parameter parsing filter in here, we might as
-			// well leave them as lists.
-			for(String key : parameters.keySet()) {
-				parameterMap.put(key, parameters.get(key).toArray(new String[0]));
-			}
+		Map<String, StreamedParameter> streamedParameters =
+			parser.getStreamedParameters();
+		if(! streamedParameters.isEmpty()) {
+			httpRequest
+				.setAttribute(
+					ATTRIBUTE_KEY_STREAMED_PARAMETERS, 
+					streamedParameters);
 		}
 		
-		return parameterMap;
+		return parser.getParameters();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2012 The Regents of the University of California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.jee.filter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * A parameter whose value was too large to be kept in memory, so it was
+ * URL-decoded into a temporary file as the request was being read. Requests
+ * that can process the value incrementally should read it with
+ * {@link #openReader()}; others may still retrieve it as a string with
+ * {@link #getValue()}.
+ * 
+ * <p>
+ * The temporary file, and any streams that were opened on it, are released by
+ * the {@link GzipFilter} once the request has been processed.
+ * </p>
+ */
+public class StreamedParameter {
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger LOGGER =
+		Logger.getLogger(StreamedParameter.class);
+
+	/**
+	 * The encoding of the decoded value.
+	 */
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+
+	private final String name;
+	private final File file;
+	private final long length;
+
+	private final List<Closeable> openStreams = new LinkedList<Closeable>();
+
+	/**
+	 * Creates a new streamed parameter.
+	 * 
+	 * @param name The parameter's name.
+	 * 
+	 * @param file The file containing the parameter's URL-decoded, UTF-8
+	 * 			   value.
+	 * 
+	 * @param length The number of bytes in the file.
+	 */
+	StreamedParameter(final String name, final File file, final long length) {
+		this.name = name;
+		this.file = file;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the parameter's name.
+	 * 
+	 * @return The parameter's name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the size of the decoded value in bytes.
+	 * 
+	 * @return The size of the decoded value in bytes.
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Opens a new stream over the decoded, UTF-8 value. The stream should be
+	 * closed by the caller, but it will be closed when the request has
+	 * finished regardless.
+	 * 
+	 * @return A new stream over the value.
+	 * 
+	 * @throws IOException The value could not be opened.
+	 */
+	public synchronized InputStream openStream() throws IOException {
+		InputStream result =
+			new BufferedInputStream(new FileInputStream(file));
+		openStreams.add(result);
+		return result;
+	}
+
+	/**
+	 * Opens a new reader over the decoded value. The reader should be closed
+	 * by the caller, but it will be closed when the request has finished
+	 * regardless.
+	 * 
+	 * @return A new reader over the value.
+	 * 
+	 * @throws IOException The value could not be opened.
+	 */
+	public Reader openReader() throws IOException {
+		return new InputStreamReader(openStream(), CHARSET);
+	}
+
+	/**
+	 * Reads the entire value into memory. This defeats the purpose of
+	 * streaming the parameter and should only be used by requests that cannot
+	 * process the value incrementally.
+	 * 
+	 * @return The parameter's value.
+	 * 
+	 * @throws IOException The value could not be read.
+	 */
+	public String getValue() throws IOException {
+		return FileUtils.readFileToString(file, CHARSET.name());
+	}
+
+	/**
+	 * Closes any streams that are still open on the value and deletes the
+	 * temporary file.
+	 */
+	synchronized void delete() {
+		for(Closeable stream : openStreams) {
+			try {
+				stream.close();
+			}
+			catch(IOException e) {
+				LOGGER.info("Could not close a parameter stream.", e);
+			}
+		}
+		openStreams.clear();
+
+		if(file.exists() && (! file.delete())) {
+			LOGGER.warn(
+				"Could not delete the temporary parameter file: " +
+					file.getAbsolutePath());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package org.ohmage.jee.servlet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of threads on which one kind of heavy request is executed
+ * asynchronously. Requests that arrive while every thread is busy wait in a
+ * bounded queue, and requests that arrive while the queue is full are
+ * rejected rather than tying up one of the container's threads.
+ */
+final class RequestExecutor {
+	private final String name;
+	private final ThreadPoolExecutor executor;
+	private final long timeout;
+
+	/**
+	 * Creates a new pool.
+	 * 
+	 * @param name The name of the pool, which is used to name its threads.
+	 * 
+	 * @param numThreads The number of requests that may execute at once.
+	 * 
+	 * @param queueSize The number of requests that may wait for a thread.
+	 * 
+	 * @param timeout The number of milliseconds a request may wait in the
+	 * 				  queue before it is cancelled.
+	 */
+	RequestExecutor(
+			final String name,
+			final int numThreads,
+			final int queueSize,
+			final long timeout) {
+
+		this.name = name;
+		this.timeout = timeout;
+
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		executor =
+			new ThreadPoolExecutor(
+				numThreads,
+				numThreads,
+				0,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(queueSize),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						Thread result =
+							new Thread(
+								runnable,
+								"RequestExecutor " +
+									RequestExecutor.this.name +
+									" " +
+									threadNumber.getAndIncrement());
+						result.setDaemon(true);
+						return result;
+					}
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Queues a request to be executed.
+	 * 
+	 * @param task The task that executes the request.
+	 * 
+	 * @return The task's future, which may be used to cancel it.
+	 * 
+	 * @throws RejectedExecutionException The queue is full or the pool has
+	 * 									  been shut down.
+	 */
+	Future<?> submit(final Runnable task) {
+		return executor.submit(task);
+	}
+
+	/**
+	 * Returns the name of this pool.
+	 * 
+	 * @return The name of this pool.
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the number of milliseconds a request may wait in the queue.
+	 * 
+	 * @return The number of milliseconds a request may wait in the queue.
+	 */
+	long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Stops accepting requests and interrupts the requests that are running.
+	 */
+	void shutdown() {
+		executor.shutdownNow();
+	}
+}
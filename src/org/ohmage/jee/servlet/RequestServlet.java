@@ -17,13 +17,25 @@ package org.ohmage.jee.servlet;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.EnumMap;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.MultipartConfig;
 import javax.servlet.http.HttpServlet;
@@ -31,21 +43,47 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.apache.log4j.NDC;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.BackgroundTaskScheduler;
+import org.ohmage.domain.User;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
+import org.ohmage.jee.filter.ClientFilter;
 import org.ohmage.jee.filter.Log4jNdcFilter;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.Request;
 import org.ohmage.request.RequestBuilder;
+import org.ohmage.request.RequestBuilder.ExecutionPool;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.AuditServices;
+import org.ohmage.spring.ReadWriteRoutingDataSource;
 
 /**
+ * <p>
  * Handler for all incoming HTTP requests.
+ * </p>
+ * 
+ * <p>
+ * Heavy requests, as defined by
+ * {@link RequestBuilder#getExecutionPool(String)}, are executed
+ * asynchronously on bounded pools so that they do not tie up the servlet
+ * container's threads. The size, queue size, and the time in milliseconds
+ * that a request may wait in the queue of each pool may be set with the
+ * "&lt;pool&gt;_threads", "&lt;pool&gt;_queue_size", and
+ * "&lt;pool&gt;_timeout" init parameters, where the pool is "upload" or
+ * "export". A pool with no threads disables
+ * asynchronous execution for its requests.
+ * </p>
+ * 
+ * <p>
+ * The deployment descriptors are metadata-complete, so the multipart limits
+ * below are repeated in their &lt;multipart-config&gt; and must be kept in
+ * sync with it.
+ * </p>
  * 
  * @author John Jenkins
  */
@@ -101,6 +139,19 @@ public class RequestServlet extends HttpServlet {
 	private static final String KEY_DEVICE_ID = "device_id";
 	
 	private static final String KEY_ATTRIBUTE = "_ohmage_request_";
+	private static final String KEY_RECEIVED_TIMESTAMP = "_ohmage_received_";
+	
+	private static final String INIT_PARAM_THREADS = "_threads";
+	private static final String INIT_PARAM_QUEUE_SIZE = "_queue_size";
+	private static final String INIT_PARAM_TIMEOUT = "_timeout";
+	
+	private static final int DEFAULT_UPLOAD_THREADS = 8;
+	private static final int DEFAULT_UPLOAD_QUEUE_SIZE = 32;
+	private static final long DEFAULT_UPLOAD_TIMEOUT = 1000 * 60 * 30;
+	
+	private static final int DEFAULT_EXPORT_THREADS = 8;
+	private static final int DEFAULT_EXPORT_QUEUE_SIZE = 32;
+	private static final long DEFAULT_EXPORT_TIMEOUT = 1000 * 60 * 30;
 	
 	private static final long serialVersionUID = 1L;
 	
@@ -111,6 +162,20 @@ public class RequestServlet extends HttpServlet {
 	 */
 	public static enum RequestType { POST, GET, OPTIONS, HEAD, PUT, DELETE, TRACE, UNKNOWN };
 	
+	/**
+	 * The pools on which heavy requests are executed. Requests whose pool is
+	 * not in this map are executed inline.
+	 */
+	private final transient Map<ExecutionPool, RequestExecutor> executors =
+		new EnumMap<ExecutionPool, RequestExecutor>(ExecutionPool.class);
+	
+	/**
+	 * Times out the heavy requests that are still waiting in their pool's
+	 * queue. The container's own timeout is not used, as it would complete
+	 * a request while it is still running.
+	 */
+	private transient ScheduledThreadPoolExecutor timeouts = null;
+	
 	/**
 	 * This will simply insert the audit information as gathered by the 
 	 * constructor into the database. This is being done in a thread to not
@@ -298,6 +363,55 @@ public class RequestServlet extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * Creates the pools for the heavy requests.
+	 */
+	@Override
+	public void init() throws ServletException {
+		timeouts = 
+			new ScheduledThreadPoolExecutor(
+				1,
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						Thread result = 
+							new Thread(
+								runnable, 
+								"RequestServlet - Request timeouts");
+						result.setDaemon(true);
+						return result;
+					}
+				});
+		timeouts.setRemoveOnCancelPolicy(true);
+		
+		createExecutor(
+			ExecutionPool.UPLOAD,
+			DEFAULT_UPLOAD_THREADS,
+			DEFAULT_UPLOAD_QUEUE_SIZE,
+			DEFAULT_UPLOAD_TIMEOUT);
+		createExecutor(
+			ExecutionPool.EXPORT,
+			DEFAULT_EXPORT_THREADS,
+			DEFAULT_EXPORT_QUEUE_SIZE,
+			DEFAULT_EXPORT_TIMEOUT);
+	}
+	
+	/**
+	 * Stops the pools for the heavy requests.
+	 */
+	@Override
+	public void destroy() {
+		for(RequestExecutor executor : executors.values()) {
+			executor.shutdown();
+		}
+		executors.clear();
+		
+		if(timeouts != null) {
+			timeouts.shutdownNow();
+			timeouts = null;
+		}
+	}
+	
 	/**
 	 * This injects itself between Tomcat and our request servicing components,
 	 * so that we can audit all incoming requests.
@@ -306,16 +420,40 @@ public class RequestServlet extends HttpServlet {
 	protected final void service(HttpServletRequest httpRequest, HttpServletResponse httpResponse) throws ServletException, IOException {
 		// Get the moment we received the request.
 		long receivedTimestamp = System.currentTimeMillis();
+		httpRequest.setAttribute(KEY_RECEIVED_TIMESTAMP, receivedTimestamp);
 		
 		// Service the request by calling the appropriate getXXX() method.
 		super.service(httpRequest, httpResponse);
 		
+		// Asynchronous requests are audited once they complete.
+		if(httpRequest.isAsyncStarted()) {
+			return;
+		}
+		
+		audit(httpRequest, receivedTimestamp);
+	}
+	
+	/**
+	 * Audits a request that has been responded to.
+	 * 
+	 * @param httpRequest The HTTP request.
+	 * 
+	 * @param receivedTimestamp The time at which the request was received.
+	 */
+	private void audit(
+			final HttpServletRequest httpRequest,
+			final long receivedTimestamp) {
+		
 		// Get the moment we have completed 
 		long respondedTimestamp = System.currentTimeMillis();
 		
 		// Report how long the request took.
 		LOGGER.info("Time to process '" + httpRequest.getRequestURI() + "':"+ (respondedTimestamp - receivedTimestamp));
 		
+		// Let the background tasks know how busy the server is.
+		BackgroundTaskScheduler.recordRequestLatency(
+			respondedTimestamp - receivedTimestamp);
+		
 		// Retrieve the type of request, GET, POST, etc.
 		RequestType requestType;
 		try {
@@ -387,6 +525,7 @@ public class RequestServlet extends HttpServlet {
 				RequestBuilder.getInstance().getApiImageRead().equals(httpRequest.getRequestURI()) ||
 				RequestBuilder.getInstance().getApiImageBatchZipRead().equals(httpRequest.getRequestURI()) ||
 				RequestBuilder.getInstance().getApiDocumentReadContents().equals(httpRequest.getRequestURI()) ||
+				RequestBuilder.getInstance().getApiExportDownload().equals(httpRequest.getRequestURI()) ||
 				RequestBuilder.getInstance().getApiVisualization().equals(httpRequest.getRequestURI()) |
 				RequestBuilder.getInstance().getApiUserActivate().equals(httpRequest.getRequestURI()) ||
 				RequestBuilder.getInstance().getApiRegistrationRead().equals(httpRequest.getRequestURI()) ||
@@ -398,7 +537,7 @@ public class RequestServlet extends HttpServlet {
 				RequestBuilder.getInstance().getApiMediaRead().equals(httpRequest.getRequestURI())
 			) {
 			
-			processRequest(httpRequest, httpResponse);
+			dispatchRequest(httpRequest, httpResponse);
 		}
 		else {
 			LOGGER.info("GET attempted and denied.");
@@ -417,7 +556,7 @@ public class RequestServlet extends HttpServlet {
 	 */
 	@Override
 	protected final void doPost(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
-		processRequest(httpRequest, httpResponse);
+		dispatchRequest(httpRequest, httpResponse);
 	}
 	
 	/**
@@ -433,6 +572,183 @@ public class RequestServlet extends HttpServlet {
 		}
 	}
 	
+	/**
+	 * Processes a request inline or, if it is a heavy request, hands it off
+	 * to its pool and returns. If the pool's queue is full, the request is
+	 * rejected. If the request is still waiting in the queue after the pool's
+	 * timeout, it is cancelled and responded to with a failure. A request
+	 * that has started is never timed out, as the HTTP request and response
+	 * are only valid until the request is completed; it completes the
+	 * request itself once it has responded.
+	 * 
+	 * @param httpRequest The HTTP request.
+	 * 
+	 * @param httpResponse The HTTP response.
+	 */
+	protected void dispatchRequest(
+			final HttpServletRequest httpRequest, 
+			final HttpServletResponse httpResponse) {
+		
+		final RequestExecutor executor = 
+			executors.get(
+				RequestBuilder
+					.getInstance()
+					.getExecutionPool(httpRequest.getRequestURI()));
+		if((executor == null) || (! httpRequest.isAsyncSupported())) {
+			processRequest(httpRequest, httpResponse);
+			return;
+		}
+		
+		final long receivedTimestamp = 
+			(Long) httpRequest.getAttribute(KEY_RECEIVED_TIMESTAMP);
+		final Object requestId = 
+			httpRequest.getAttribute(Log4jNdcFilter.ATTRIBUTE_REQUEST_ID);
+		final Object client = 
+			httpRequest.getAttribute(ClientFilter.ATTRIBUTE_KEY_CLIENT);
+		
+		final AsyncContext asyncContext = httpRequest.startAsync();
+		// The container must never complete the request while the task is
+		// running, so it has no timeout of its own.
+		asyncContext.setTimeout(0);
+		
+		// Whichever of the task, the timeout, or the rejection finishes first
+		// completes the request.
+		final AtomicBoolean completed = new AtomicBoolean(false);
+		final AtomicReference<Future<?>> task = 
+			new AtomicReference<Future<?>>();
+		final AtomicReference<ScheduledFuture<?>> timeout =
+			new AtomicReference<ScheduledFuture<?>>();
+		
+		asyncContext.addListener(new AsyncListener() {
+			@Override
+			public void onComplete(final AsyncEvent event) {
+				audit(httpRequest, receivedTimestamp);
+			}
+			
+			@Override
+			public void onTimeout(final AsyncEvent event) {
+				// The container's timeout is disabled.
+			}
+			
+			@Override
+			public void onError(final AsyncEvent event) {
+				LOGGER.error(
+					"There was an error executing the request.", 
+					event.getThrowable());
+				
+				// A task that is running completes the request itself once
+				// it returns.
+				Future<?> future = task.get();
+				if(((future == null) || future.cancel(false)) &&
+					completed.compareAndSet(false, true)) {
+					
+					asyncContext.complete();
+				}
+			}
+			
+			@Override
+			public void onStartAsync(final AsyncEvent event) {
+				// Do nothing.
+			}
+		});
+		
+		final Future<?> future;
+		try {
+			future = 
+				executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						if(requestId != null) {
+							NDC.push(requestId.toString());
+						}
+						if(client != null) {
+							NDC.push("client=" + client);
+						}
+						
+						try {
+							processRequest(httpRequest, httpResponse);
+						}
+						finally {
+							ScheduledFuture<?> scheduledTimeout = 
+								timeout.get();
+							if(scheduledTimeout != null) {
+								scheduledTimeout.cancel(false);
+							}
+							
+							if(completed.compareAndSet(false, true)) {
+								asyncContext.complete();
+							}
+							NDC.remove();
+						}
+					}
+				});
+			task.set(future);
+		}
+		catch(RejectedExecutionException e) {
+			LOGGER.warn(
+				"The " + 
+					executor.getName() + 
+					" pool is full. Rejecting the request.");
+			
+			if(completed.compareAndSet(false, true)) {
+				respondFailure(
+					httpResponse, 
+					HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+					ErrorCode.SYSTEM_GENERAL_ERROR, 
+					"The server is too busy to handle the request.");
+				asyncContext.complete();
+			}
+			return;
+		}
+		
+		try {
+			timeout.set(
+				timeouts.schedule(
+					new Runnable() {
+						@Override
+						public void run() {
+							// Only a task that hasn't started can be
+							// cancelled. One that is running isn't
+							// interrupted, as an interrupt can abandon its
+							// transaction without it being rolled back, and
+							// it still owns the response.
+							if(! future.cancel(false)) {
+								if(! future.isDone()) {
+									LOGGER.warn(
+										"The request is still running " +
+											"after the " +
+											executor.getName() +
+											" pool's timeout: " +
+											httpRequest.getRequestURI());
+								}
+								return;
+							}
+							
+							LOGGER.warn(
+								"The request timed out waiting in the " +
+									executor.getName() +
+									" pool: " +
+									httpRequest.getRequestURI());
+							
+							if(completed.compareAndSet(false, true)) {
+								respondFailure(
+									httpResponse, 
+									HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+									ErrorCode.SYSTEM_GENERAL_ERROR, 
+									"The request took too long to execute.");
+								asyncContext.complete();
+							}
+						}
+					},
+					executor.getTimeout(),
+					TimeUnit.MILLISECONDS));
+		}
+		catch(RejectedExecutionException e) {
+			// The servlet is being destroyed, which stops the pools too.
+			LOGGER.info("The request's timeout could not be scheduled.", e);
+		}
+	}
+	
 	/**
 	 * Builds a Request object. If building the object didn't fail, it will
 	 * service the request. Finally, the request will respond.
@@ -447,8 +763,20 @@ public class RequestServlet extends HttpServlet {
 			final HttpServletRequest httpRequest, 
 			final HttpServletResponse httpResponse) {
 		
+		// Start the database routing's request before the request is built,
+		// as building it may already read or write.
+		ReadWriteRoutingDataSource.beginRequest(null);
 		try {
 			Request request = RequestBuilder.getInstance().buildRequest(httpRequest);
+			
+			// Let the database routing know whose request this is, so that
+			// reads that follow the user's own writes see them.
+			User user = null;
+			if(request instanceof UserRequest) {
+				user = ((UserRequest) request).getUser();
+			}
+			ReadWriteRoutingDataSource.setUser(
+				(user == null) ? null : user.getUsername());
 	
 			if(! request.isFailed()) {
 				request.service();
@@ -475,6 +803,81 @@ public class RequestServlet extends HttpServlet {
 					"General server errors occured while executing the request");
 		
 		}
+		finally {
+			ReadWriteRoutingDataSource.endRequest();
+		}
+	}
+
+	/**
+	 * Creates the pool for some kind of heavy request from this servlet's
+	 * init parameters.
+	 * 
+	 * @param pool The kind of request.
+	 * 
+	 * @param defaultThreads The number of threads if none is configured.
+	 * 
+	 * @param defaultQueueSize The queue size if none is configured.
+	 * 
+	 * @param defaultTimeout The timeout if none is configured.
+	 * 
+	 * @throws ServletException One of the init parameters is not a number.
+	 */
+	private void createExecutor(
+			final ExecutionPool pool,
+			final int defaultThreads,
+			final int defaultQueueSize,
+			final long defaultTimeout)
+			throws ServletException {
+		
+		String name = pool.toString().toLowerCase();
+		
+		int threads = 
+			(int) getLongParameter(name + INIT_PARAM_THREADS, defaultThreads);
+		if(threads <= 0) {
+			LOGGER.info("Executing the " + name + " requests inline.");
+			return;
+		}
+		
+		executors.put(
+			pool, 
+			new RequestExecutor(
+				name, 
+				threads, 
+				(int) getLongParameter(
+					name + INIT_PARAM_QUEUE_SIZE, 
+					defaultQueueSize), 
+				getLongParameter(name + INIT_PARAM_TIMEOUT, defaultTimeout)));
+	}
+	
+	/**
+	 * Returns the value of a numeric init parameter.
+	 * 
+	 * @param name The name of the parameter.
+	 * 
+	 * @param defaultValue The value if the parameter is not set.
+	 * 
+	 * @return The value of the parameter.
+	 * 
+	 * @throws ServletException The parameter is not a number.
+	 */
+	private long getLongParameter(
+			final String name,
+			final long defaultValue)
+			throws ServletException {
+		
+		String value = getInitParameter(name);
+		if(value == null) {
+			return defaultValue;
+		}
+		
+		try {
+			return Long.decode(value.trim());
+		}
+		catch(NumberFormatException e) {
+			throw new ServletException(
+				"The '" + name + "' parameter is not a number: " + value, 
+				e);
+		}
 	}
 
 	/**
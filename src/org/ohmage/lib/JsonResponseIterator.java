@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Copyright 2012 The Regents of the University of California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package org.ohmage.lib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.annotator.Annotator;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.lib.exception.ApiException;
+import org.ohmage.lib.exception.RequestErrorException;
+import org.ohmage.request.Request;
+
+/**
+ * <p>
+ * Iterates over the elements of the data array in an ohmage JSON response
+ * while the response is still being read from the server. Only the current
+ * element is held in memory, so arbitrarily large responses can be processed
+ * without first buffering the whole response.
+ * </p>
+ * 
+ * <p>
+ * The response is checked for failure when the iterator is created. Errors
+ * that occur later, e.g. the connection being dropped partway through the
+ * response, are thrown from {@link #hasNext()} and {@link #next()} as
+ * {@link IllegalStateException}s whose cause is an {@link ApiException}.
+ * </p>
+ * 
+ * <p>
+ * The iterator must be closed when the caller is done with it, which returns
+ * the underlying connection to the pool. This happens automatically once the
+ * last element has been read.
+ * </p>
+ * 
+ * @param <T> The type of the elements that are returned.
+ */
+public abstract class JsonResponseIterator<T> implements Iterator<T>, Closeable {
+	private static final JsonFactory JSON_FACTORY = new ObjectMapper().getJsonFactory();
+
+	private final InputStream content;
+	private final JsonParser parser;
+
+	private T next = null;
+	private boolean done = false;
+
+	/**
+	 * Begins parsing the response and advances it to the first element of the
+	 * data array.
+	 * 
+	 * @param content The response from the server. This will be closed when
+	 * 				  the iterator is closed.
+	 * 
+	 * @param dataKey The key in the response whose value is the array of
+	 * 				  elements.
+	 * 
+	 * @throws ApiException The response is not valid JSON or doesn't contain
+	 * 						the data array.
+	 * 
+	 * @throws RequestErrorException The server returned an error.
+	 */
+	protected JsonResponseIterator(
+			final InputStream content,
+			final String dataKey)
+			throws ApiException, RequestErrorException {
+
+		this.content = content;
+
+		try {
+			parser = JSON_FACTORY.createJsonParser(content);
+
+			if(parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new ApiException("The response is not a JSON object.");
+			}
+
+			// The fields in the response are unordered, so the result and any
+			// errors may appear before or after the data.
+			String result = null;
+			JsonNode errors = null;
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				String fieldName = parser.getCurrentName();
+				JsonToken value = parser.nextToken();
+
+				if(dataKey.equals(fieldName) &&
+					(value == JsonToken.START_ARRAY)) {
+
+					return;
+				}
+				else if(Request.JSON_KEY_RESULT.equals(fieldName)) {
+					result = parser.getText();
+				}
+				else if(Request.JSON_KEY_ERRORS.equals(fieldName)) {
+					errors = parser.readValueAsTree();
+				}
+				else {
+					parser.skipChildren();
+				}
+			}
+
+			if(Request.RESULT_FAILURE.equals(result)) {
+				throw buildRequestError(errors);
+			}
+
+			throw new ApiException(
+				"The key '" + dataKey + "' does not exist in the response.");
+		}
+		catch(JsonParseException e) {
+			closeQuietly();
+			throw new ApiException("The response is not valid JSON.", e);
+		}
+		catch(IOException e) {
+			closeQuietly();
+			throw new ApiException("There was an error reading from the server.", e);
+		}
+		catch(ApiException e) {
+			closeQuietly();
+			throw e;
+		}
+	}
+
+	/**
+	 * Converts a single element of the data array into the object that is
+	 * returned to the caller.
+	 * 
+	 * @param element The element from the data array.
+	 * 
+	 * @return The converted element.
+	 * 
+	 * @throws ApiException The element could not be converted.
+	 */
+	protected abstract T convert(final JSONObject element) throws ApiException;
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Iterator#hasNext()
+	 */
+	@Override
+	public boolean hasNext() {
+		if((next == null) && (! done)) {
+			advance();
+		}
+
+		return next != null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.util.Iterator#next()
+	 */
+	@Override
+	public T next() {
+		if(! hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		T result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Elements cannot be removed from a server response.
+	 * 
+	 * @throws UnsupportedOperationException Always.
+	 */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException(
+			"Elements cannot be removed from a server response.");
+	}
+
+	/**
+	 * Stops reading the response and releases the connection.
+	 */
+	@Override
+	public void close() throws IOException {
+		done = true;
+		next = null;
+
+		try {
+			parser.close();
+		}
+		finally {
+			content.close();
+		}
+	}
+
+	/**
+	 * Reads the next element from the data array. If the end of the array has
+	 * been reached, the iterator is closed.
+	 * 
+	 * @throws IllegalStateException There was an error reading or converting
+	 * 								 the next element.
+	 */
+	private void advance() {
+		try {
+			JsonToken token = parser.nextToken();
+			if((token == null) || (token == JsonToken.END_ARRAY)) {
+				close();
+				return;
+			}
+
+			JsonNode node = parser.readValueAsTree();
+			if(! node.isObject()) {
+				throw new ApiException(
+					"An element of the response is not a JSON object.");
+			}
+
+			next = convert(new JSONObject(node.toString()));
+		}
+		catch(IOException e) {
+			closeQuietly();
+			throw new IllegalStateException(
+				new ApiException("There was an error reading from the server.", e));
+		}
+		catch(JSONException e) {
+			closeQuietly();
+			throw new IllegalStateException(
+				new ApiException("An element of the response is not valid JSON.", e));
+		}
+		catch(ApiException e) {
+			closeQuietly();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Closes this iterator, ignoring any errors. This is used when the
+	 * iterator is already failing.
+	 */
+	private void closeQuietly() {
+		done = true;
+		next = null;
+
+		try {
+			if(parser != null) {
+				parser.close();
+			}
+		}
+		catch(IOException e) {
+			// The original error is more important.
+		}
+
+		try {
+			content.close();
+		}
+		catch(IOException e) {
+			// The original error is more important.
+		}
+	}
+
+	/**
+	 * Builds the exception for a failed response from its errors array.
+	 * 
+	 * @param errors The errors array from the response.
+	 * 
+	 * @return The exception to throw.
+	 * 
+	 * @throws ApiException The errors array is missing or malformed, or the
+	 * 						error code is unknown.
+	 */
+	private static RequestErrorException buildRequestError(
+			final JsonNode errors)
+			throws ApiException {
+
+		if((errors == null) || (! errors.isArray()) || (errors.size() == 0)) {
+			throw new ApiException(
+				"The failed JSON response doesn't contain a proper error object.");
+		}
+
+		JsonNode error = errors.get(0);
+		JsonNode code = error.get(Annotator.JSON_KEY_CODE);
+		JsonNode text = error.get(Annotator.JSON_KEY_TEXT);
+		if((code == null) || (text == null)) {
+			throw new ApiException(
+				"The failed JSON response doesn't contain a proper error object.");
+		}
+
+		ErrorCode errorCode;
+		try {
+			errorCode = ErrorCode.getValue(code.getTextValue());
+		}
+		catch(IllegalArgumentException e) {
+			throw new ApiException("The error code was unknown.", e);
+		}
+
+		return new RequestErrorException(errorCode, text.getTextValue());
+	}
+}
@@ -19,6 +19,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
@@ -30,21 +31,37 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.bind.DatatypeConverter;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.HttpClient;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.entity.mime.MultipartEntity;
 import org.apache.http.entity.mime.content.FileBody;
 import org.apache.http.entity.mime.content.StringBody;
+import org.apache.http.impl.client.ContentEncodingHttpClient;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
 import org.joda.time.DateTime;
 import org.json.JSONArray;
 import org.json.JSONException;
@@ -53,6 +70,7 @@ import org.ohmage.annotator.Annotator;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.Clazz;
 import org.ohmage.domain.Document;
+import org.ohmage.domain.Image;
 import org.ohmage.domain.MobilityPoint;
 import org.ohmage.domain.MobilityPoint.MobilityColumnKey;
 import org.ohmage.domain.ServerConfig;
@@ -88,9 +106,52 @@ public class OhmageApi {
 	
 	private static final String CONTENT_TYPE_HEADER = "Content-Type";
 	private static final String CONTENT_TYPE_HTML = "text/html";
+	
+	private static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
+	private static final String CONTENT_ENCODING_GZIP = "gzip";
+	
+	/**
+	 * The maximum number of pooled connections across all servers.
+	 */
+	private static final int MAX_TOTAL_CONNECTIONS = 20;
+	/**
+	 * The maximum number of pooled connections to the server. This is also
+	 * the number of uploads that may be running in parallel.
+	 */
+	private static final int MAX_CONNECTIONS_PER_ROUTE = 8;
+	
+	/**
+	 * URL-encoded request bodies smaller than this, in bytes, are never
+	 * compressed as it isn't worth the overhead.
+	 */
+	private static final int MIN_COMPRESSED_REQUEST_SIZE = 4096;
+	
+	/**
+	 * The number of the next upload thread, used to name the threads.
+	 */
+	private static final AtomicInteger UPLOAD_THREAD_NUMBER = 
+			new AtomicInteger(1);
 		
 	private final URL url;
 	
+	/**
+	 * The client that is shared by all of the calls to this server. Its
+	 * connections are pooled and kept alive between calls, and it requests
+	 * and transparently decompresses gzipped responses.
+	 */
+	private final DefaultHttpClient httpClient;
+	
+	/**
+	 * The threads that run the asynchronous uploads. This is created the first
+	 * time it is needed.
+	 */
+	private ExecutorService uploadExecutor = null;
+	
+	/**
+	 * Whether or not large URL-encoded requests should be gzipped.
+	 */
+	private volatile boolean compressRequests = false;
+	
 	/**
 	 * Creates a new OhmageAPI object that points to a single server.
 	 * 
@@ -141,6 +202,37 @@ public class OhmageApi {
 		catch(MalformedURLException e) {
 			throw new IllegalArgumentException("The server's address is invalid.");
 		}
+		
+		ThreadSafeClientConnManager connectionManager = 
+				new ThreadSafeClientConnManager(
+						SchemeRegistryFactory.createDefault());
+		connectionManager.setMaxTotal(MAX_TOTAL_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(MAX_CONNECTIONS_PER_ROUTE);
+		httpClient = new ContentEncodingHttpClient(connectionManager, null);
+	}
+	
+	/**
+	 * Sets whether or not large "application/x-www-form-urlencoded" requests,
+	 * such as Mobility uploads, should be gzipped before they are sent. The
+	 * server's GZIP filter decodes these requests. This is off by default.
+	 * 
+	 * @param compressRequests Whether or not to compress large requests.
+	 */
+	public void setCompressRequests(final boolean compressRequests) {
+		this.compressRequests = compressRequests;
+	}
+	
+	/**
+	 * Stops any pending asynchronous uploads and closes all of the pooled
+	 * connections. This object should not be used after it is shutdown.
+	 */
+	public synchronized void shutdown() {
+		if(uploadExecutor != null) {
+			uploadExecutor.shutdownNow();
+			uploadExecutor = null;
+		}
+		
+		httpClient.getConnectionManager().shutdown();
 	}
 	
 	/**************************************************************************
@@ -433,8 +525,12 @@ public class OhmageApi {
 		parameters.put(InputKeys.CLIENT, client);
 		parameters.put(InputKeys.OUTPUT_FORMAT, outputFormat);
 		parameters.put(InputKeys.USER_ROLE, userRole);
-		parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
-		parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		if(startDate != null) {
+			parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
+		}
+		if(endDate != null) {
+			parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		}
 		parameters.put(InputKeys.PRIVACY_STATE, privacyState);
 		parameters.put(InputKeys.RUNNING_STATE, runningState);
 		if(campaignIds != null) {
@@ -1385,6 +1481,78 @@ public class OhmageApi {
 		}
 	}
 	
+	/**
+	 * Uploads a collection of Mobility points on a background thread. The
+	 * upload uses a pooled connection, so multiple uploads may run in
+	 * parallel.
+	 * 
+	 * @param username The username of the user who is attempting the upload.
+	 * 
+	 * @param hashedPassword The user's hashed password.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param points The collection of points to be uploaded. This should not
+	 * 				 be modified until the upload has completed.
+	 * 
+	 * @return A future whose {@link Future#get()} throws an 
+	 * 		   {@link ExecutionException} whose cause is an 
+	 * 		   {@link ApiException} or {@link RequestErrorException} if the
+	 * 		   upload failed.
+	 * 
+	 * @see #uploadMobilityPoints(String, String, String, Collection)
+	 */
+	public Future<Void> uploadMobilityPointsAsync(final String username,
+			final String hashedPassword, final String client,
+			final Collection<MobilityPoint> points) {
+		
+		return getUploadExecutor().submit(
+				new Callable<Void>() {
+					@Override
+					public Void call() throws ApiException {
+						uploadMobilityPoints(
+								username, hashedPassword, client, points);
+						return null;
+					}
+				});
+	}
+	
+	/**
+	 * Uploads a collection of Mobility points by breaking it into batches and
+	 * uploading the batches in parallel. This returns once every batch has
+	 * been uploaded.
+	 * 
+	 * @param username The username of the user who is attempting the upload.
+	 * 
+	 * @param hashedPassword The user's hashed password.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param points The collection of points to be uploaded.
+	 * 
+	 * @param batchSize The maximum number of points in each upload.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error for
+	 * 								 any of the batches. Other batches may have
+	 * 								 been uploaded.
+	 */
+	public void uploadMobilityPointsInBatches(final String username,
+			final String hashedPassword, final String client,
+			final Collection<MobilityPoint> points, final int batchSize)
+			throws ApiException, RequestErrorException {
+		
+		List<Future<Void>> uploads = new ArrayList<Future<Void>>();
+		for(List<MobilityPoint> batch : getBatches(points, batchSize)) {
+			uploads.add(
+					uploadMobilityPointsAsync(
+							username, hashedPassword, client, batch));
+		}
+		
+		waitForUploads(uploads);
+	}
+	
 	/**
 	 * Reads Mobility points.
 	 * 
@@ -1415,19 +1583,9 @@ public class OhmageApi {
 			final String username, final String password, final String client,
 			final DateTime date) throws ApiException, RequestErrorException {
 
-		Map<String, Object> parameters = new HashMap<String, Object>();
-		parameters.put(InputKeys.USER, username);
-		parameters.put(InputKeys.PASSWORD, password);
-		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
-		parameters.put(InputKeys.CLIENT, client);
-		
-		if(date != null) {
-			parameters.put(InputKeys.DATE, DateTimeUtils.getIso8601DateString(date, false));
-		}
-		
-		parameters.put(
-			InputKeys.COLUMN_LIST, 
-			"mobility:id,mobility:time,mobility:timestamp,mobility:timezone,mobility:location,mobility:subtype,mobility:sensor_data,mobility:mode");
+		Map<String, Object> parameters = 
+				buildMobilityReadParameters(
+						authenticationToken, username, password, client, date);
 		
 		JSONArray response;
 		try {
@@ -1480,6 +1638,76 @@ public class OhmageApi {
 		return results;
 	}
 	
+	/**
+	 * Reads Mobility points exactly like 
+	 * {@link #readMobilityPoints(String, String, String, String, DateTime)},
+	 * but returns them as they are read from the server instead of first
+	 * reading the entire response into memory. The iterator must be closed 
+	 * when the caller is done with it.
+	 * 
+	 * @param authenticationToken The authentication token for the user making
+	 * 							  the request. This may be null if a username
+	 * 							  and password are provided.
+	 * 
+	 * @param username The username of the user that is making the request. 
+	 * 				   This may be null if the authentication token is 
+	 * 				   provided.
+	 * 
+	 * @param password The hashed password of the user that is making the 
+	 * 				   request. This may be null if the authentication token is
+	 * 				   provided.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param date The date for which the Mobility points will be gathered.
+	 * 
+	 * @return An iterator over the Mobility points.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 * 
+	 * @see JsonResponseIterator
+	 */
+	public JsonResponseIterator<MobilityPoint> iterateMobilityPoints(
+			final String authenticationToken, final String username, 
+			final String password, final String client, final DateTime date) 
+			throws ApiException, RequestErrorException {
+		
+		Map<String, Object> parameters = 
+				buildMobilityReadParameters(
+						authenticationToken, username, password, client, date);
+		
+		InputStream content;
+		try {
+			content = 
+					makeStreamingRequest(
+							new URL(url.toString() + RequestBuilder.getInstance().getApiMobilityRead()), 
+							parameters, 
+							false);
+		}
+		catch(MalformedURLException e) {
+			throw new ApiException("The URL was incorrectly created.", e);
+		}
+		
+		return new JsonResponseIterator<MobilityPoint>(
+				content, 
+				MobilityReadRequest.JSON_KEY_DATA) {
+			
+			@Override
+			protected MobilityPoint convert(final JSONObject element) 
+					throws ApiException {
+				
+				try {
+					return new MobilityPoint(element, MobilityPoint.PrivacyState.PRIVATE);
+				}
+				catch(DomainException e) {
+					throw new ApiException("The server returned an malformed MobilityInformation object.", e);
+				}
+			}
+		};
+	}
+	
 	/**************************************************************************
 	 * Survey Response Requests
 	 *************************************************************************/
@@ -1515,6 +1743,52 @@ public class OhmageApi {
 			final Collection<SurveyResponse> surveyResponses)
 			throws ApiException, RequestErrorException {
 		
+		uploadSurveyResponses(
+				username, 
+				hashedPassword, 
+				client, 
+				campaignId, 
+				campaignCreationTimestamp, 
+				surveyResponses, 
+				null);
+	}
+	
+	/**
+	 * Uploads a collection of survey responses and the images to which their
+	 * photo prompt responses refer.
+	 * 
+	 * @param username The username of the user for whom this survey response
+	 * 				   belongs.
+	 * 
+	 * @param hashedPassword The hashsed password of the user that is creating
+	 * 						 this point.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param campaignId The unique identifier for the campaign for whom these
+	 * 					 survey responses belong.
+	 * 
+	 * @param campaignCreationTimestamp The campaign's creation timestamp to
+	 * 									ensure we are not uploading out-dated
+	 * 									data.
+	 * 
+	 * @param surveyResponses The collection of survey responses to be 
+	 * 						  uploaded.
+	 * 
+	 * @param images A map of image IDs to the images' contents. This may be
+	 * 				 null if none of the responses have images.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 */
+	public void uploadSurveyResponses(final String username, 
+			final String hashedPassword, final String client,
+			final String campaignId, final DateTime campaignCreationTimestamp,
+			final Collection<SurveyResponse> surveyResponses,
+			final Map<UUID, byte[]> images)
+			throws ApiException, RequestErrorException {
+		
 		Map<String, Object> parameters = new HashMap<String, Object>();
 		parameters.put(InputKeys.USER, username);
 		parameters.put(InputKeys.PASSWORD, hashedPassword);
@@ -1550,6 +1824,21 @@ public class OhmageApi {
 		}
 		parameters.put(InputKeys.SURVEYS, dataArray);
 		
+		if((images != null) && (images.size() > 0)) {
+			JSONObject imagesJson = new JSONObject();
+			try {
+				for(Map.Entry<UUID, byte[]> image : images.entrySet()) {
+					imagesJson.put(
+							image.getKey().toString(), 
+							DatatypeConverter.printBase64Binary(image.getValue()));
+				}
+			}
+			catch(JSONException e) {
+				throw new ApiException("There was a problem building the JSON.", e);
+			}
+			parameters.put(InputKeys.IMAGES, imagesJson);
+		}
+		
 		try {
 			processJsonResponse(
 					makeRequest(
@@ -1566,6 +1855,111 @@ public class OhmageApi {
 		}
 	}	
 	
+	/**
+	 * Uploads a collection of survey responses on a background thread. The
+	 * upload uses a pooled connection, so multiple uploads may run in
+	 * parallel.
+	 * 
+	 * @param username The username of the user for whom this survey response
+	 * 				   belongs.
+	 * 
+	 * @param hashedPassword The hashsed password of the user that is creating
+	 * 						 this point.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param campaignId The unique identifier for the campaign for whom these
+	 * 					 survey responses belong.
+	 * 
+	 * @param campaignCreationTimestamp The campaign's creation timestamp to
+	 * 									ensure we are not uploading out-dated
+	 * 									data.
+	 * 
+	 * @param surveyResponses The collection of survey responses to be 
+	 * 						  uploaded. This should not be modified until the
+	 * 						  upload has completed.
+	 * 
+	 * @return A future whose {@link Future#get()} throws an 
+	 * 		   {@link ExecutionException} whose cause is an 
+	 * 		   {@link ApiException} or {@link RequestErrorException} if the
+	 * 		   upload failed.
+	 * 
+	 * @see #uploadSurveyResponses(String, String, String, String, DateTime, Collection)
+	 */
+	public Future<Void> uploadSurveyResponsesAsync(final String username, 
+			final String hashedPassword, final String client,
+			final String campaignId, final DateTime campaignCreationTimestamp,
+			final Collection<SurveyResponse> surveyResponses) {
+		
+		return getUploadExecutor().submit(
+				new Callable<Void>() {
+					@Override
+					public Void call() throws ApiException {
+						uploadSurveyResponses(
+								username, 
+								hashedPassword, 
+								client, 
+								campaignId, 
+								campaignCreationTimestamp, 
+								surveyResponses);
+						return null;
+					}
+				});
+	}
+	
+	/**
+	 * Uploads a collection of survey responses by breaking it into batches 
+	 * and uploading the batches in parallel. This returns once every batch 
+	 * has been uploaded.
+	 * 
+	 * @param username The username of the user for whom this survey response
+	 * 				   belongs.
+	 * 
+	 * @param hashedPassword The hashsed password of the user that is creating
+	 * 						 this point.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param campaignId The unique identifier for the campaign for whom these
+	 * 					 survey responses belong.
+	 * 
+	 * @param campaignCreationTimestamp The campaign's creation timestamp to
+	 * 									ensure we are not uploading out-dated
+	 * 									data.
+	 * 
+	 * @param surveyResponses The collection of survey responses to be 
+	 * 						  uploaded.
+	 * 
+	 * @param batchSize The maximum number of survey responses in each upload.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error for
+	 * 								 any of the batches. Other batches may have
+	 * 								 been uploaded.
+	 */
+	public void uploadSurveyResponsesInBatches(final String username, 
+			final String hashedPassword, final String client,
+			final String campaignId, final DateTime campaignCreationTimestamp,
+			final Collection<SurveyResponse> surveyResponses,
+			final int batchSize)
+			throws ApiException, RequestErrorException {
+		
+		List<Future<Void>> uploads = new ArrayList<Future<Void>>();
+		for(List<SurveyResponse> batch : getBatches(surveyResponses, batchSize)) {
+			uploads.add(
+					uploadSurveyResponsesAsync(
+							username, 
+							hashedPassword, 
+							client, 
+							campaignId, 
+							campaignCreationTimestamp, 
+							batch));
+		}
+		
+		waitForUploads(uploads);
+	}
+	
 	/**
 	 * Makes a request to the server for the survey responses based on the 
 	 * given parameters and returns the CSV file as a byte array.
@@ -1682,8 +2076,12 @@ public class OhmageApi {
 		
 		parameters.put(InputKeys.COLLAPSE, collapse);
 		parameters.put(InputKeys.SUPPRESS_METADATA, suppressMetadata);
-		parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
-		parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		if(startDate != null) {
+			parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
+		}
+		if(endDate != null) {
+			parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		}
 		parameters.put(InputKeys.RETURN_ID, returnId);
 		
 		if(privacyState != null) {
@@ -1819,8 +2217,12 @@ public class OhmageApi {
 			}
 		}
 
-		parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
-		parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		if(startDate != null) {
+			parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
+		}
+		if(endDate != null) {
+			parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		}
 		parameters.put(InputKeys.PRIVACY_STATE, privacyState);
 		parameters.put(InputKeys.COLLAPSE, collapse);
 		parameters.put(InputKeys.SUPPRESS_METADATA, suppressMetadata);
@@ -1922,55 +2324,12 @@ public class OhmageApi {
 			final Boolean returnId)
 			throws ApiException, RequestErrorException {
 		
-		Map<String, Object> parameters = new HashMap<String, Object>();
-		parameters.put(InputKeys.USER, username);
-		parameters.put(InputKeys.PASSWORD, hashedPassword);
-		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
-		parameters.put(InputKeys.CLIENT, client);
-		parameters.put(InputKeys.CAMPAIGN_URN, campaignId);
-		parameters.put(InputKeys.OUTPUT_FORMAT, SurveyResponse.OutputFormat.JSON_ROWS);
-		
-		if(usernames != null) {
-			if(usernames.size() == 0) {
-				parameters.put(InputKeys.USER_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
-			}
-			else {
-				parameters.put(InputKeys.USER_LIST, StringUtils.collectionToStringList(usernames, InputKeys.LIST_ITEM_SEPARATOR));
-			}
-		}
-		
-		if(columnList != null) {
-			if(columnList.size() == 0) {
-				parameters.put(InputKeys.COLUMN_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
-			}
-			else {
-				parameters.put(InputKeys.COLUMN_LIST, StringUtils.collectionToStringList(columnList, InputKeys.LIST_ITEM_SEPARATOR));
-			}
-		}
-		
-		if(surveyIdList != null) {
-			if(surveyIdList.size() == 0) {
-				parameters.put(InputKeys.SURVEY_ID_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
-			}
-			else {
-				parameters.put(InputKeys.SURVEY_ID_LIST, StringUtils.collectionToStringList(surveyIdList, InputKeys.LIST_ITEM_SEPARATOR));
-			}
-		}
-		if(promptIdList != null) {
-			if(promptIdList.size() == 0) {
-				parameters.put(InputKeys.PROMPT_ID_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
-			}
-			else {
-				parameters.put(InputKeys.PROMPT_ID_LIST, StringUtils.collectionToStringList(promptIdList, InputKeys.LIST_ITEM_SEPARATOR));
-			}
-		}
-
-		parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
-		parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
-		parameters.put(InputKeys.PRIVACY_STATE, privacyState);
-		parameters.put(InputKeys.COLLAPSE, collapse);
-		parameters.put(InputKeys.SUPPRESS_METADATA, suppressMetadata);
-		parameters.put(InputKeys.RETURN_ID, returnId);
+		Map<String, Object> parameters = 
+				buildSurveyResponseJsonRowsParameters(
+						authenticationToken, username, hashedPassword, client,
+						campaignId, usernames, columnList, surveyIdList, 
+						promptIdList, startDate, endDate, privacyState, 
+						collapse, suppressMetadata, returnId);
 		
 		JSONArray response;
 		try {
@@ -2000,6 +2359,105 @@ public class OhmageApi {
 		// object.
 	}
 	
+	/**
+	 * Reads survey responses exactly like 
+	 * {@link #getSurveyResponsesJsonRows(String, String, String, String, String, Collection, Collection, Collection, Collection, DateTime, DateTime, SurveyResponse.PrivacyState, Boolean, Boolean, Boolean)},
+	 * but returns each row as it is read from the server instead of first 
+	 * reading the entire response into memory. This should be preferred when
+	 * reading a large number of survey responses. The iterator must be closed
+	 * when the caller is done with it.
+	 * 
+	 * @param authenticationToken The user's current authentication token. This
+	 * 							  may be null if a username and password are 
+	 * 							  given.
+	 * 
+	 * @param username The user's username. This may be null if an 
+	 * 				   authentication token is given.
+	 * 
+	 * @param hashedPassword The user's hashed password. This may be null if an 
+	 * 						 authentication token was given.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 * 
+	 * @param usernames The collection of usernames for which to gather 
+	 * 					survey responses.
+	 * 
+	 * @param columnList The collection of columns to return.
+	 * 
+	 * @param surveyIdList The collection of survey IDs for which to gather 
+	 * 					   survey responses.
+	 * 
+	 * @param promptIdList The collection of prompt IDs for which to gather
+	 * 					   survey responses.
+	 * 
+	 * @param startDate A date indicating that only survey responses on or 
+	 * 					after this date should be returned. Optional.
+	 * 
+	 * @param endDate A date indicating that only survey responses on or before
+	 * 				  this date should be returned. Optional.
+	 * 
+	 * @param privacyState A survey response privacy state indicating that only
+	 * 					   survey responses with this privacy state should be
+	 * 					   returned. Optional.
+	 * 
+	 * @param collapse Whether or not to combine identical results. Optional.
+	 * 
+	 * @param suppressMetadata Whether or not to include the metadata. 
+	 * 						   Optional.
+	 * 
+	 * @param returnId Whether or not to return the unique identifiers for all
+	 * 				   of the survey responses.
+	 * 
+	 * @return An iterator over the rows of the response.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 * 
+	 * @see JsonResponseIterator
+	 */
+	public JsonResponseIterator<JSONObject> iterateSurveyResponsesJsonRows(
+			final String authenticationToken, final String username, 
+			final String hashedPassword, final String client,
+			final String campaignId, final Collection<String> usernames,
+			final Collection<SurveyResponse.ColumnKey> columnList,
+			final Collection<String> surveyIdList, 
+			final Collection<String> promptIdList,
+			final DateTime startDate, final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState,
+			final Boolean collapse, final Boolean suppressMetadata,
+			final Boolean returnId)
+			throws ApiException, RequestErrorException {
+		
+		Map<String, Object> parameters = 
+				buildSurveyResponseJsonRowsParameters(
+						authenticationToken, username, hashedPassword, client,
+						campaignId, usernames, columnList, surveyIdList, 
+						promptIdList, startDate, endDate, privacyState, 
+						collapse, suppressMetadata, returnId);
+		
+		InputStream content;
+		try {
+			content = 
+					makeStreamingRequest(
+							new URL(url.toString() + RequestBuilder.getInstance().getApiSurveyResponseRead()), 
+							parameters, 
+							false);
+		}
+		catch(MalformedURLException e) {
+			throw new ApiException("The URL was incorrectly created.", e);
+		}
+		
+		return new JsonResponseIterator<JSONObject>(content, InputKeys.DATA) {
+			@Override
+			protected JSONObject convert(final JSONObject element) {
+				return element;
+			}
+		};
+	}
+	
 	/**
 	 * Retrieves the privacy states for all of the survey responses and the
 	 * count of each of those privacy states.
@@ -2182,6 +2640,51 @@ public class OhmageApi {
 		}
 	}
 	
+	/**************************************************************************
+	 * Image Requests
+	 *************************************************************************/
+	
+	/**
+	 * Retrieves an image.
+	 * 
+	 * @param authenticationToken The user's authentication token.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param imageId The image's unique identifier.
+	 * 
+	 * @param size The size of the image to retrieve. If null, the original
+	 * 			   image is retrieved.
+	 * 
+	 * @return The image's contents.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 */
+	public byte[] getImage(final String authenticationToken,
+			final String client, final UUID imageId, final Image.Size size)
+			throws ApiException, RequestErrorException {
+		
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
+		parameters.put(InputKeys.CLIENT, client);
+		parameters.put(InputKeys.IMAGE_ID, imageId);
+		if(size != null) {
+			parameters.put(InputKeys.IMAGE_SIZE, size.getName());
+		}
+		
+		try {
+			return makeRequest(
+					new URL(url.toString() + RequestBuilder.getInstance().getApiImageRead()), 
+					parameters, 
+					false);
+		}
+		catch(MalformedURLException e) {
+			throw new ApiException("The URL was incorrectly created.", e);
+		}
+	}
+	
 	/**************************************************************************
 	 * User Requests
 	 *************************************************************************/
@@ -2565,6 +3068,190 @@ public class OhmageApi {
 		}
 	}
 	
+	/**************************************************************************
+	 * Observer Requests
+	 *************************************************************************/
+	
+	/**
+	 * Creates an observer.
+	 * 
+	 * @param authenticationToken The user's authentication token.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param definition The observer's XML definition.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 */
+	public void createObserver(final String authenticationToken,
+			final String client, final String definition)
+			throws ApiException, RequestErrorException {
+		
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
+		parameters.put(InputKeys.CLIENT, client);
+		parameters.put(InputKeys.OBSERVER_DEFINITION, definition);
+		
+		try {
+			processJsonResponse(
+					makeRequest(
+							new URL(url.toString() + RequestBuilder.getInstance().getApiObserverCreate()), 
+							parameters, 
+							true), 
+					null);
+		}
+		catch(MalformedURLException e) {
+			throw new ApiException("The URL was incorrectly created.", e);
+		}
+		catch(IllegalArgumentException e) {
+			throw new ApiException("The response was not proper JSON.", e);
+		}
+	}
+	
+	/**
+	 * Uploads data points to an observer's streams. Each point is a JSON 
+	 * object with its stream's ID and version, its optional "metadata", and
+	 * its "data".
+	 * 
+	 * @param username The username of the user who is attempting the upload.
+	 * 
+	 * @param hashedPassword The user's hashed password.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param observerId The observer's unique identifier.
+	 * 
+	 * @param observerVersion The observer's version.
+	 * 
+	 * @param data The data points to be uploaded.
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 */
+	public void uploadStreamData(final String username, 
+			final String hashedPassword, final String client, 
+			final String observerId, final long observerVersion,
+			final JSONArray data) 
+			throws ApiException, RequestErrorException {
+		
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(InputKeys.USER, username);
+		parameters.put(InputKeys.PASSWORD, hashedPassword);
+		parameters.put(InputKeys.CLIENT, client);
+		parameters.put(InputKeys.OBSERVER_ID, observerId);
+		parameters.put(InputKeys.OBSERVER_VERSION, observerVersion);
+		parameters.put(InputKeys.DATA, data);
+		
+		try {
+			processJsonResponse(
+					makeRequest(
+							new URL(url.toString() + RequestBuilder.getInstance().getApiStreamUpload()), 
+							parameters, 
+							false), 
+					null);
+		}
+		catch(MalformedURLException e) {
+			throw new ApiException("The URL was incorrectly created.", e);
+		}
+		catch(IllegalArgumentException e) {
+			throw new ApiException("The response was not proper JSON.", e);
+		}
+	}
+	
+	/**
+	 * Reads the data points for a stream, returning each point as it is read
+	 * from the server. The iterator must be closed when the caller is done 
+	 * with it.
+	 * 
+	 * @param authenticationToken The user's authentication token. This may be
+	 * 							  null if a username and password are given.
+	 * 
+	 * @param username The user's username. This may be null if an 
+	 * 				   authentication token is given.
+	 * 
+	 * @param hashedPassword The user's hashed password. This may be null if an
+	 * 						 authentication token is given.
+	 * 
+	 * @param client The client value.
+	 * 
+	 * @param observerId The observer's unique identifier.
+	 * 
+	 * @param observerVersion The observer's version. Optional.
+	 * 
+	 * @param streamId The stream's observer-unique identifier.
+	 * 
+	 * @param streamVersion The stream's version.
+	 * 
+	 * @param startDate Limits the points to those on or after this date.
+	 * 					Optional.
+	 * 
+	 * @param endDate Limits the points to those on or before this date.
+	 * 				  Optional.
+	 * 
+	 * @param numToSkip The number of points to skip. Optional.
+	 * 
+	 * @param numToReturn The number of points to return. Optional.
+	 * 
+	 * @return An iterator over the points, each of which is a JSON object
+	 * 		   with its "metadata" and "data".
+	 * 
+	 * @throws ApiException Thrown if there is a library error.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returns an error.
+	 * 
+	 * @see JsonResponseIterator
+	 */
+	public JsonResponseIterator<JSONObject> iterateStreamData(
+			final String authenticationToken, final String username,
+			final String hashedPassword, final String client,
+			final String observerId, final Long observerVersion,
+			final String streamId, final long streamVersion,
+			final DateTime startDate, final DateTime endDate,
+			final Long numToSkip, final Long numToReturn)
+			throws ApiException, RequestErrorException {
+		
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(InputKeys.USER, username);
+		parameters.put(InputKeys.PASSWORD, hashedPassword);
+		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
+		parameters.put(InputKeys.CLIENT, client);
+		parameters.put(InputKeys.OBSERVER_ID, observerId);
+		parameters.put(InputKeys.OBSERVER_VERSION, observerVersion);
+		parameters.put(InputKeys.STREAM_ID, streamId);
+		parameters.put(InputKeys.STREAM_VERSION, streamVersion);
+		parameters.put(InputKeys.NUM_TO_SKIP, numToSkip);
+		parameters.put(InputKeys.NUM_TO_RETURN, numToReturn);
+		
+		if(startDate != null) {
+			parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
+		}
+		if(endDate != null) {
+			parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		}
+		
+		InputStream content;
+		try {
+			content = 
+					makeStreamingRequest(
+							new URL(url.toString() + RequestBuilder.getInstance().getApiStreamRead()), 
+							parameters, 
+							false);
+		}
+		catch(MalformedURLException e) {
+			throw new ApiException("The URL was incorrectly created.", e);
+		}
+		
+		return new JsonResponseIterator<JSONObject>(content, InputKeys.DATA) {
+			@Override
+			protected JSONObject convert(final JSONObject element) {
+				return element;
+			}
+		};
+	}
+	
 	/**************************************************************************
 	 * Private Methods
 	 *************************************************************************/
@@ -2605,8 +3292,114 @@ public class OhmageApi {
 			final Map<String, Object> postParameters, final boolean isForm) 
 		throws ApiException, RequestErrorException {
 		
-		// Create a default client to use to connect with.
-		HttpClient httpClient = new DefaultHttpClient();
+		HttpResponse httpResponse = executeRequest(url, postParameters, isForm);
+		HttpEntity responseEntity = httpResponse.getEntity();
+		
+		try {
+			// Retrieve the server's response as an InputStream.
+			InputStream content;
+			try {
+				content = responseEntity.getContent();
+			}
+			catch(IOException e) {
+				throw new ApiException("There was an error connecting to the response from the server.", e);
+			}
+			
+			// Read the results as a byte array. This is used instead of a 
+			// string to allow the function to me more open to different types
+			// of return values such as text, images, etc.
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] chunk = new byte[CHUNK_SIZE];
+			int amountRead;
+			try {
+				while((amountRead = content.read(chunk)) != -1) {
+					baos.write(chunk, 0, amountRead);
+				}
+			}
+			catch(IOException e) {
+				throw new ApiException("There was an error reading from the server.", e);
+			}
+			byte[] result = baos.toByteArray();
+			
+			// Finally, check the Content-Type to see if it suggests that this
+			// is an ohmage JSON result. If so, check if it failed and, if so,
+			// throw an exception.
+			Header[] headers = httpResponse.getHeaders(CONTENT_TYPE_HEADER);
+			if((headers.length > 0) && 
+					CONTENT_TYPE_HTML.equals(headers[0].getValue())) {
+				
+				checkFailure(result);
+			}
+			
+			// Return the byte array.
+			return result;
+		}
+		finally {
+			// Make sure the connection is returned to the pool.
+			consumeQuietly(responseEntity);
+		}
+	}
+	
+	/**
+	 * Makes a call to the URL exactly like 
+	 * {@link #makeRequest(URL, Map, boolean)}, but returns the response as a
+	 * stream instead of reading it into memory. The caller must close the
+	 * stream, which returns the connection to the pool.
+	 * 
+	 * @param url The URL to which the request should be made.
+	 * 
+	 * @param postParameters The parameters for a POST call or null for a GET
+	 * 						 call.
+	 * 
+	 * @param isForm Whether or not a POST should be a "multipart/form-data"
+	 * 				 request.
+	 * 
+	 * @return The response's content, which is decompressed if the server
+	 * 		   gzipped it.
+	 * 
+	 * @throws ApiException Thrown if the URL is not an HTTP URL or if there
+	 * 						was an error communicating with the server.
+	 * 
+	 * @see #makeRequest(URL, Map, boolean)
+	 */
+	private InputStream makeStreamingRequest(final URL url, 
+			final Map<String, Object> postParameters, final boolean isForm) 
+			throws ApiException {
+		
+		HttpResponse httpResponse = executeRequest(url, postParameters, isForm);
+		HttpEntity responseEntity = httpResponse.getEntity();
+		
+		try {
+			return responseEntity.getContent();
+		}
+		catch(IOException e) {
+			consumeQuietly(responseEntity);
+			throw new ApiException("There was an error connecting to the response from the server.", e);
+		}
+	}
+	
+	/**
+	 * Builds and executes the request with the shared client and follows any
+	 * redirects. The caller is responsible for consuming the entity of the
+	 * returned response so that its connection is returned to the pool.
+	 * 
+	 * @param url The URL to which the request should be made.
+	 * 
+	 * @param postParameters The parameters for a POST call or null for a GET
+	 * 						 call.
+	 * 
+	 * @param isForm Whether or not a POST should be a "multipart/form-data"
+	 * 				 request.
+	 * 
+	 * @return The server's successful response.
+	 * 
+	 * @throws ApiException Thrown if the URL is not an HTTP URL, if there
+	 * 						was an error communicating with the server, or if
+	 * 						the server returned a non-success status code.
+	 */
+	private HttpResponse executeRequest(final URL url, 
+			final Map<String, Object> postParameters, final boolean isForm) 
+			throws ApiException {
 		
 		// Build the request based on the parameters.
 		HttpRequestBase request;
@@ -2671,6 +3464,14 @@ public class OhmageApi {
 					catch(UnsupportedEncodingException e) {
 						throw new ApiException("The parameter list could not be properly encoded.", e);
 					}
+					
+					// Large bodies, e.g. Mobility uploads, are compressed if
+					// requested.
+					if(compressRequests && 
+							(entity.getContentLength() >= MIN_COMPRESSED_REQUEST_SIZE)) {
+						
+						entity = new GzipCompressingEntity(entity);
+					}
 				}
 				postRequest.setEntity(entity);
 			}
@@ -2696,9 +3497,10 @@ public class OhmageApi {
 		// If it is a redirect, get the new location and remake the request.
 		if((statusCode == 301) || (statusCode == 302)) {
 			String newLocation = httpResponse.getFirstHeader("Location").getValue();
+			consumeQuietly(httpResponse.getEntity());
 			
 			try {
-				return makeRequest(new URL(newLocation), postParameters, isForm);
+				return executeRequest(new URL(newLocation), postParameters, isForm);
 			}
 			catch(MalformedURLException e) {
 				throw new ApiException("The server returned a bad redirect address: " + newLocation, e);
@@ -2706,47 +3508,242 @@ public class OhmageApi {
 		}
 		// Otherwise, if it is is a non-success code, fail the request.
 		else if(statusCode != 200) {
+			consumeQuietly(httpResponse.getEntity());
 			throw new ApiException("There was an error connecting to the server: " + statusCode);
 		}
 		
-		// Retrieve the server's response as an InputStream.
-		InputStream content;
-		try {
-			content = httpResponse.getEntity().getContent();
+		return httpResponse;
+	}
+	
+	/**
+	 * Returns the executor for asynchronous uploads, creating it if 
+	 * necessary. Its threads are daemons so that they never keep the JVM 
+	 * alive.
+	 * 
+	 * @return The upload executor.
+	 */
+	private synchronized ExecutorService getUploadExecutor() {
+		if(uploadExecutor == null) {
+			uploadExecutor = 
+					Executors.newFixedThreadPool(
+							MAX_CONNECTIONS_PER_ROUTE,
+							new ThreadFactory() {
+								@Override
+								public Thread newThread(final Runnable runnable) {
+									Thread result = 
+											new Thread(
+													runnable, 
+													"OhmageApi upload " + 
+														UPLOAD_THREAD_NUMBER.getAndIncrement());
+									result.setDaemon(true);
+									return result;
+								}
+							});
+		}
+		
+		return uploadExecutor;
+	}
+	
+	/**
+	 * Splits a collection into lists of, at most, the given size. Null 
+	 * elements are skipped.
+	 * 
+	 * @param items The items to split.
+	 * 
+	 * @param batchSize The maximum size of each list.
+	 * 
+	 * @return The batches in the collection's iteration order.
+	 * 
+	 * @throws IllegalArgumentException The batch size is not positive.
+	 */
+	private static <T> List<List<T>> getBatches(
+			final Collection<T> items, 
+			final int batchSize) {
+		
+		if(batchSize <= 0) {
+			throw new IllegalArgumentException(
+					"The batch size must be positive.");
 		}
-		catch(IOException e) {
-			throw new ApiException("There was an error connecting to the response from the server.", e);
+		
+		List<List<T>> result = new ArrayList<List<T>>();
+		List<T> batch = new ArrayList<T>(batchSize);
+		for(T item : items) {
+			if(item == null) {
+				continue;
+			}
+			
+			batch.add(item);
+			if(batch.size() == batchSize) {
+				result.add(batch);
+				batch = new ArrayList<T>(batchSize);
+			}
+		}
+		if(batch.size() > 0) {
+			result.add(batch);
 		}
 		
-		// Read the results as a byte array. This is used instead of a string 
-		// to allow the function to me more open to different types of return 
-		// values such as text, images, etc.
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		byte[] chunk = new byte[CHUNK_SIZE];
-		int amountRead;
-		try {
-			while((amountRead = content.read(chunk)) != -1) {
-				baos.write(chunk, 0, amountRead);
+		return result;
+	}
+	
+	/**
+	 * Waits for every upload to complete and then throws the first failure,
+	 * if any.
+	 * 
+	 * @param uploads The pending uploads.
+	 * 
+	 * @throws ApiException Thrown if there is a library error or if the 
+	 * 						thread is interrupted while waiting.
+	 * 
+	 * @throws RequestErrorException Thrown if the server returned an error 
+	 * 								 for one of the uploads.
+	 */
+	private static void waitForUploads(final List<Future<Void>> uploads)
+			throws ApiException, RequestErrorException {
+		
+		ApiException failure = null;
+		for(Future<Void> upload : uploads) {
+			try {
+				upload.get();
+			}
+			catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				for(Future<Void> pending : uploads) {
+					pending.cancel(true);
+				}
+				throw new ApiException("Interrupted while uploading.", e);
 			}
+			catch(ExecutionException e) {
+				if(failure == null) {
+					if(e.getCause() instanceof ApiException) {
+						failure = (ApiException) e.getCause();
+					}
+					else {
+						failure = new ApiException("An upload failed.", e.getCause());
+					}
+				}
+			}
+		}
+		
+		if(failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Consumes whatever remains of a response so that its connection can be
+	 * reused. Errors are ignored as the connection will simply be closed.
+	 * 
+	 * @param entity The response's entity, which may be null.
+	 */
+	private static void consumeQuietly(final HttpEntity entity) {
+		try {
+			EntityUtils.consume(entity);
 		}
 		catch(IOException e) {
-			throw new ApiException("There was an error reading from the server.", e);
+			// The connection will not be reused.
 		}
-		byte[] result = baos.toByteArray();
+	}
+
+	/**
+	 * Builds the parameters for reading Mobility points.
+	 * 
+	 * @see #readMobilityPoints(String, String, String, String, DateTime)
+	 */
+	private Map<String, Object> buildMobilityReadParameters(
+			final String authenticationToken, final String username, 
+			final String password, final String client, final DateTime date) {
 		
-		// Finally, check the Content-Type to see if it suggests that this is
-		// an ohmage JSON result. If so, check if it failed and, if so, throw
-		// an exception.
-		Header[] headers = httpResponse.getHeaders(CONTENT_TYPE_HEADER);
-		String contentType = headers[0].getValue();
-		if(CONTENT_TYPE_HTML.equals(contentType)) {
-			checkFailure(result);
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(InputKeys.USER, username);
+		parameters.put(InputKeys.PASSWORD, password);
+		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
+		parameters.put(InputKeys.CLIENT, client);
+		
+		if(date != null) {
+			parameters.put(InputKeys.DATE, DateTimeUtils.getIso8601DateString(date, false));
 		}
 		
-		// Return the byte array.
-		return result;
+		parameters.put(
+			InputKeys.COLUMN_LIST, 
+			"mobility:id,mobility:time,mobility:timestamp,mobility:timezone,mobility:location,mobility:subtype,mobility:sensor_data,mobility:mode");
+		
+		return parameters;
 	}
+	
+	/**
+	 * Builds the parameters for reading survey responses as JSON rows.
+	 * 
+	 * @see #getSurveyResponsesJsonRows(String, String, String, String, String, Collection, Collection, Collection, Collection, DateTime, DateTime, SurveyResponse.PrivacyState, Boolean, Boolean, Boolean)
+	 */
+	private Map<String, Object> buildSurveyResponseJsonRowsParameters(
+			final String authenticationToken, final String username, 
+			final String hashedPassword, final String client,
+			final String campaignId, final Collection<String> usernames,
+			final Collection<SurveyResponse.ColumnKey> columnList,
+			final Collection<String> surveyIdList, 
+			final Collection<String> promptIdList,
+			final DateTime startDate, final DateTime endDate, 
+			final SurveyResponse.PrivacyState privacyState,
+			final Boolean collapse, final Boolean suppressMetadata,
+			final Boolean returnId) {
+		
+		Map<String, Object> parameters = new HashMap<String, Object>();
+		parameters.put(InputKeys.USER, username);
+		parameters.put(InputKeys.PASSWORD, hashedPassword);
+		parameters.put(InputKeys.AUTH_TOKEN, authenticationToken);
+		parameters.put(InputKeys.CLIENT, client);
+		parameters.put(InputKeys.CAMPAIGN_URN, campaignId);
+		parameters.put(InputKeys.OUTPUT_FORMAT, SurveyResponse.OutputFormat.JSON_ROWS);
+		
+		if(usernames != null) {
+			if(usernames.size() == 0) {
+				parameters.put(InputKeys.USER_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
+			}
+			else {
+				parameters.put(InputKeys.USER_LIST, StringUtils.collectionToStringList(usernames, InputKeys.LIST_ITEM_SEPARATOR));
+			}
+		}
+		
+		if(columnList != null) {
+			if(columnList.size() == 0) {
+				parameters.put(InputKeys.COLUMN_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
+			}
+			else {
+				parameters.put(InputKeys.COLUMN_LIST, StringUtils.collectionToStringList(columnList, InputKeys.LIST_ITEM_SEPARATOR));
+			}
+		}
+		
+		if(surveyIdList != null) {
+			if(surveyIdList.size() == 0) {
+				parameters.put(InputKeys.SURVEY_ID_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
+			}
+			else {
+				parameters.put(InputKeys.SURVEY_ID_LIST, StringUtils.collectionToStringList(surveyIdList, InputKeys.LIST_ITEM_SEPARATOR));
+			}
+		}
+		if(promptIdList != null) {
+			if(promptIdList.size() == 0) {
+				parameters.put(InputKeys.PROMPT_ID_LIST, SurveyResponseRequest.URN_SPECIAL_ALL);
+			}
+			else {
+				parameters.put(InputKeys.PROMPT_ID_LIST, StringUtils.collectionToStringList(promptIdList, InputKeys.LIST_ITEM_SEPARATOR));
+			}
+		}
 
+		if(startDate != null) {
+			parameters.put(InputKeys.START_DATE, DateTimeUtils.getIso8601DateString(startDate, true));
+		}
+		if(endDate != null) {
+			parameters.put(InputKeys.END_DATE, DateTimeUtils.getIso8601DateString(endDate, true));
+		}
+		parameters.put(InputKeys.PRIVACY_STATE, privacyState);
+		parameters.put(InputKeys.COLLAPSE, collapse);
+		parameters.put(InputKeys.SUPPRESS_METADATA, suppressMetadata);
+		parameters.put(InputKeys.RETURN_ID, returnId);
+		
+		return parameters;
+	}
+	
 	/**
 	 * Throws an exception if the response is valid ohmage JSON and indicates
 	 * failure.
@@ -2904,4 +3901,55 @@ public class OhmageApi {
 			}
 		}
 	}
+	
+	/**
+	 * Wraps a request entity and gzips it as it is being sent. The length of
+	 * the compressed entity isn't known ahead of time, so it is always sent
+	 * chunked.
+	 */
+	private static final class GzipCompressingEntity extends HttpEntityWrapper {
+		/**
+		 * Creates a wrapper that compresses the given entity.
+		 * 
+		 * @param entity The entity to compress.
+		 */
+		public GzipCompressingEntity(final HttpEntity entity) {
+			super(entity);
+		}
+		
+		/**
+		 * Returns the "gzip" content encoding.
+		 */
+		@Override
+		public Header getContentEncoding() {
+			return new BasicHeader(CONTENT_ENCODING_HEADER, CONTENT_ENCODING_GZIP);
+		}
+		
+		/**
+		 * Returns -1 as the compressed length is unknown.
+		 */
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+		
+		/**
+		 * Always returns true as the compressed length is unknown.
+		 */
+		@Override
+		public boolean isChunked() {
+			return true;
+		}
+		
+		/**
+		 * Compresses the wrapped entity to the stream.
+		 */
+		@Override
+		public void writeTo(final OutputStream outStream) throws IOException {
+			GZIPOutputStream gzipOutputStream = 
+					new GZIPOutputStream(outStream);
+			wrappedEntity.writeTo(gzipOutputStream);
+			gzipOutputStream.finish();
+		}
+	}
 }
@@ -386,6 +386,10 @@ public interface ICampaignQueries {
 	 * 
 	 * @param username The requesting user's username.
 	 * 
+	 * @param campaignIds Limits the results to only campaigns whose ID is 
+	 * 			exactly one of these values. This is used when the partial 
+	 * 			values have already been resolved, e.g. from the search index.
+	 * 
 	 * @param partialCampaignId Limits the results to only campaigns whose ID contains
 	 * 			the partialcampaignId string. 
 	 * 
@@ -423,6 +427,7 @@ public interface ICampaignQueries {
 	public String getVisibleCampaignSearchSql(
 			final Collection<Object> parameters,
 			final String username,
+			final Collection<String> campaignIds,
 			final String partialCampaignId,
 			final String partialCampaignName,
 			final String partialDescription,
@@ -534,12 +539,4 @@ public interface ICampaignQueries {
 			Map<String, Set<Campaign.Role>> usersAndRolesToRemove)
 			throws DataAccessException;
 
-	/**
-	 * Deletes a campaign.
-	 * 
-	 * @param campaignId
-	 *            The unique identifier of the campaign to be deleted.
-	 */
-	void deleteCampaign(String campaignId) throws DataAccessException;
-
 }
@@ -0,0 +1,156 @@
+package org.ohmage.query;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.List;
+
+import org.ohmage.domain.DeletionJob;
+import org.ohmage.exception.DataAccessException;
+
+public interface IDeletionJobQueries {
+	/**
+	 * Replaces a campaign with a tombstone, revokes every user's, class's,
+	 * and document's association with it, and creates a pending job to
+	 * delete it and its data in the background.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void createCampaignDeletionJob(
+			final String campaignId)
+			throws DataAccessException;
+
+	/**
+	 * Replaces each user with a disabled tombstone, revokes their campaign,
+	 * class, and document roles, and creates a pending job for each to
+	 * delete the user and their data in the background.
+	 * 
+	 * @param usernames The usernames of the users.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void createUserDeletionJobs(
+			final Collection<String> usernames)
+			throws DataAccessException;
+
+	/**
+	 * Returns every deletion job, the most recent first.
+	 * 
+	 * @return The deletion jobs.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	List<DeletionJob> getDeletionJobs() throws DataAccessException;
+
+	/**
+	 * Returns the oldest deletion job that is not complete.
+	 * 
+	 * @return The job or null if every job is complete.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	DeletionJob getNextDeletionJob() throws DataAccessException;
+
+	/**
+	 * Deletes a batch of the survey responses of the campaign or user being
+	 * deleted along with the media to which they refer.
+	 * 
+	 * @param job The deletion job.
+	 * 
+	 * @param batchSize The maximum number of survey responses to delete.
+	 * 
+	 * @param mediaUrls The URLs of the media that were deleted are added to
+	 * 					this collection. Their files have not been deleted.
+	 * 
+	 * @return The number of survey responses that were deleted.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	int deleteSurveyResponses(
+			final DeletionJob job,
+			final int batchSize,
+			final Collection<URL> mediaUrls)
+			throws DataAccessException;
+
+	/**
+	 * Deletes a batch of the media uploaded by the user being deleted.
+	 * 
+	 * @param job The deletion job, which must be for a user.
+	 * 
+	 * @param batchSize The maximum number of media to delete.
+	 * 
+	 * @param mediaUrls The URLs of the media that were deleted are added to
+	 * 					this collection. Their files have not been deleted.
+	 * 
+	 * @return The number of media that were deleted.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	int deleteUserMedia(
+			final DeletionJob job,
+			final int batchSize,
+			final Collection<URL> mediaUrls)
+			throws DataAccessException;
+
+	/**
+	 * Deletes a batch of the Mobility points, stream data, and stream data
+	 * summaries of the user being deleted.
+	 * 
+	 * @param job The deletion job, which must be for a user.
+	 * 
+	 * @param batchSize The maximum number of rows to delete.
+	 * 
+	 * @return The number of rows that were deleted.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	int deleteUserData(
+			final DeletionJob job,
+			final int batchSize)
+			throws DataAccessException;
+
+	/**
+	 * Deletes the campaign or user itself, whose remaining associations are
+	 * removed with it, and marks the job as complete.
+	 * 
+	 * @param job The deletion job.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void completeDeletionJob(final DeletionJob job) throws DataAccessException;
+
+	/**
+	 * Marks a job as running and adds a batch to its progress.
+	 * 
+	 * @param id The job's database ID.
+	 * 
+	 * @param rowsDeleted The number of rows the batch deleted.
+	 * 
+	 * @param filesDeleted The number of files the batch deleted.
+	 * 
+	 * @param bytesDeleted The size, in bytes, of those files.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void updateDeletionJobProgress(
+			final long id,
+			final long rowsDeleted,
+			final long filesDeleted,
+			final long bytesDeleted)
+			throws DataAccessException;
+
+	/**
+	 * Records the error with which a job's last batch failed.
+	 * 
+	 * @param id The job's database ID.
+	 * 
+	 * @param error The failure message.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void setDeletionJobError(
+			final long id,
+			final String error)
+			throws DataAccessException;
+}
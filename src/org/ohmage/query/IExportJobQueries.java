@@ -0,0 +1,124 @@
+package org.ohmage.query;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.joda.time.DateTime;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.DataAccessException;
+
+public interface IExportJobQueries {
+	/**
+	 * Creates a new, pending export job.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param username The username of the user creating the job.
+	 * 
+	 * @param type The kind of read the job executes.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void createExportJob(
+			final UUID id,
+			final String username,
+			final ExportJob.Type type)
+			throws DataAccessException;
+
+	/**
+	 * Returns an export job.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @return The job or null if no such job exists.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	ExportJob getExportJob(final UUID id) throws DataAccessException;
+
+	/**
+	 * Marks a pending export job as running.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @return Whether or not the job was pending and is now running.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	boolean startExportJob(final UUID id) throws DataAccessException;
+
+	/**
+	 * Marks an export job as complete.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param contentType The content type of the job's uncompressed result.
+	 * 
+	 * @param size The size, in bytes, of the job's compressed result.
+	 * 
+	 * @param expirationTimestamp When the job should be deleted.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void completeExportJob(
+			final UUID id,
+			final String contentType,
+			final long size,
+			final DateTime expirationTimestamp)
+			throws DataAccessException;
+
+	/**
+	 * Marks an export job as failed.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param error The failure message.
+	 * 
+	 * @param expirationTimestamp When the job should be deleted.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void failExportJob(
+			final UUID id,
+			final String error,
+			final DateTime expirationTimestamp)
+			throws DataAccessException;
+
+	/**
+	 * Marks every export job that is pending or running as failed.
+	 * 
+	 * @param error The failure message.
+	 * 
+	 * @param expirationTimestamp When the jobs should be deleted.
+	 * 
+	 * @return The number of jobs that were marked as failed.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	int failUnfinishedExportJobs(
+			final String error,
+			final DateTime expirationTimestamp)
+			throws DataAccessException;
+
+	/**
+	 * Returns the unique identifiers of the export jobs that have expired.
+	 * 
+	 * @param now The current time.
+	 * 
+	 * @return The expired jobs' unique identifiers.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	List<UUID> getExpiredExportJobIds(
+			final DateTime now)
+			throws DataAccessException;
+
+	/**
+	 * Deletes an export job.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void deleteExportJob(final UUID id) throws DataAccessException;
+}
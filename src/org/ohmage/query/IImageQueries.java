@@ -16,7 +16,9 @@
 package org.ohmage.query;
 
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.ohmage.domain.Image;
@@ -49,6 +51,19 @@ public interface IImageQueries {
 	 */
 	URL getImageUrl(UUID imageId) throws DataAccessException;
 	
+	/**
+	 * Retrieves the URLs for many images at once. Images that do not exist
+	 * are not included in the result.
+	 * 
+	 * @param imageIds The unique identifiers for the images.
+	 * 
+	 * @return A map of each existing image's ID to its URL.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error.
+	 */
+	Map<UUID, URL> getImageUrls(Collection<UUID> imageIds) 
+			throws DataAccessException;
+	
 	/**
 	 * Retrieves the Images that have not yet been processed.
 	 * 
@@ -0,0 +1,92 @@
+package org.ohmage.query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.ohmage.domain.MediaCollection;
+import org.ohmage.exception.DataAccessException;
+
+public interface IMediaCollectionQueries {
+	/**
+	 * Returns the orphaned media collector's progress through every media
+	 * directory.
+	 * 
+	 * @return The progress of each media directory.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	List<MediaCollection> getMediaCollections() throws DataAccessException;
+
+	/**
+	 * Returns the orphaned media collector's progress through one media
+	 * directory.
+	 * 
+	 * @param directory The media directory.
+	 * 
+	 * @return The directory's progress.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	MediaCollection getMediaCollection(
+			final MediaCollection.Directory directory)
+			throws DataAccessException;
+
+	/**
+	 * Returns which of some unique identifiers belong to a media or a
+	 * document, in a single query for each.
+	 * 
+	 * @param uuids The unique identifiers taken from the files' names.
+	 * 
+	 * @return The unique identifiers that are referenced.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	Set<String> getReferencedUuids(
+			final Collection<String> uuids)
+			throws DataAccessException;
+
+	/**
+	 * Records that a leaf directory has been checked and adds what was done
+	 * to the directory's totals.
+	 * 
+	 * @param directory The media directory.
+	 * 
+	 * @param lastDirectory The path, relative to the media directory, of the
+	 * 						leaf directory that was checked.
+	 * 
+	 * @param filesScanned The number of files that were checked.
+	 * 
+	 * @param filesQuarantined The number of files that were quarantined.
+	 * 
+	 * @param filesRestored The number of files that were moved back out of
+	 * 						quarantine.
+	 * 
+	 * @param filesDeleted The number of quarantined files that were deleted.
+	 * 
+	 * @param bytesDeleted The size, in bytes, of those files.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void updateMediaCollectionProgress(
+			final MediaCollection.Directory directory,
+			final String lastDirectory,
+			final long filesScanned,
+			final long filesQuarantined,
+			final long filesRestored,
+			final long filesDeleted,
+			final long bytesDeleted)
+			throws DataAccessException;
+
+	/**
+	 * Records that a pass over a media directory has finished, so that the
+	 * next pass starts from its first leaf directory.
+	 * 
+	 * @param directory The media directory.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	void completeMediaCollectionPass(
+			final MediaCollection.Directory directory)
+			throws DataAccessException;
+}
@@ -5,7 +5,9 @@ import java.util.List;
 import java.util.Map;
 
 import org.joda.time.DateTime;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.domain.DataStream;
+import org.ohmage.domain.DataStreamBucket;
 import org.ohmage.domain.Observer;
 import org.ohmage.domain.Observer.Stream;
 import org.ohmage.exception.DataAccessException;
@@ -202,7 +204,8 @@ public interface IObserverQueries {
 			throws DataAccessException;
 
 	/**
-	 * Retrieves the data for a stream.
+	 * Retrieves the data for a stream, including the points that have been
+	 * archived.
 	 * 
 	 * @param stream The Stream object for the stream whose data is in 
 	 * 				 question. Required.
@@ -222,10 +225,17 @@ public interface IObserverQueries {
 	 * 						If false, the values will be sorted reverse
 	 * 						chronologically. Required.
 	 * 
+	 * @param cursor The position from which to continue reading. If given,
+	 * 				 the number to skip is ignored. Optional.
+	 * 
 	 * @param numToSkip The number of data points to skip. Required.
 	 * 
 	 * @param numToReturn The number of data points to return. Required.
 	 * 
+	 * @param columns The columns of the data to read. Any other fields are
+	 * 				  skipped while the data is being decoded. If this is null
+	 * 				  or a leaf, all of the data is read. Optional.
+	 * 
 	 * @return A collection of data points that match the query.
 	 * 
 	 * @throws ServiceException There was an error.
@@ -238,10 +248,97 @@ public interface IObserverQueries {
 		final DateTime startDate,
 		final DateTime endDate,
 		final boolean chronological,
+		final DataStream.Cursor cursor,
 		final long numToSkip,
-		final long numToReturn) 
+		final long numToReturn,
+		final ColumnNode<String> columns) 
 		throws DataAccessException;
 
+	/**
+	 * Summarizes the data for a stream over consecutive time buckets in a 
+	 * single pass over the data, ordered by the points' adjusted time. 
+	 * Buckets without any points are omitted. If the buckets are made up of
+	 * whole hours or days, those are read from the hourly or daily summaries
+	 * instead. Both the summaries and the raw points include the points that
+	 * have been archived. The summaries are aligned to UTC, so only a start
+	 * date on a UTC hour, or a UTC midnight for the daily summaries, uses
+	 * them; a bucket that starts at a local midnight elsewhere is summarized
+	 * from the hourly summaries or the raw points.
+	 * 
+	 * @param stream The Stream object for the stream whose data is in 
+	 * 				 question. Required.
+	 * 
+	 * @param username The username of the user to which the data must belong.
+	 * 				   Required.
+	 * 
+	 * @param observerId The observer's unique identifier. Required.
+	 * 
+	 * @param observerVersion The observer's version. Optional.
+	 * 
+	 * @param startDate The earliest data point to summarize. The buckets are
+	 * 					aligned to this date. Required.
+	 * 
+	 * @param endDate The latest data point to summarize. Required.
+	 * 
+	 * @param bucketSize The length of each bucket in milliseconds. Required.
+	 * 
+	 * @param columns The numeric columns to summarize. Required.
+	 * 
+	 * @return The non-empty buckets in chronological order.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	public List<DataStreamBucket> aggregateData(
+		final Stream stream,
+		final String username,
+		final String observerId,
+		final Long observerVersion,
+		final DateTime startDate,
+		final DateTime endDate,
+		final long bucketSize,
+		final ColumnNode<String> columns)
+		throws DataAccessException;
+	
+	/**
+	 * Recomputes the hourly and daily summaries of the hours that have 
+	 * received new points.
+	 * 
+	 * @param maxHours The maximum number of hours to recompute.
+	 * 
+	 * @return The number of hours that were recomputed. If this is less than
+	 * 		   the maximum, no hours are pending.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	public int processRollups(final int maxHours) throws DataAccessException;
+	
+	/**
+	 * Moves the raw points of the streams that have a retention policy and
+	 * that are older than that policy allows into the archive.
+	 * 
+	 * @param maxPoints The maximum number of points to move.
+	 * 
+	 * @return The number of points that were moved. If this is less than the
+	 * 		   maximum, no more points need to be archived.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	public int archiveData(final int maxPoints) throws DataAccessException;
+	
+	/**
+	 * Adds the days of a batch of the points that were uploaded before the
+	 * day index existed to that index, continuing from where the previous
+	 * batch stopped.
+	 * 
+	 * @param batchSize The maximum number of points to read.
+	 * 
+	 * @return The number of points that were read. Zero means that the
+	 * 		   backfill is complete.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	public int backfillStreamDays(final int batchSize) throws DataAccessException;
+
 	/**
 	 * Retrieves the data for a stream.
 	 * 
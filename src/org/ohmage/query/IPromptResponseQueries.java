@@ -41,4 +41,27 @@ public interface IPromptResponseQueries {
 		String promptId, String repeatableSetId, Integer repeatableSetIteration)
 			throws DataAccessException;
 	
+	/**
+	 * Replaces the tokens in the search index for a prompt response with the
+	 * words in its response. This should be called as part of the same
+	 * transaction that creates or updates the prompt response.
+	 * 
+	 * @param promptResponseId the database ID of the prompt response
+	 * @param response the prompt response's value as it is stored
+	 * @throws DataAccessException if an error occurs
+	 */
+	void indexPromptResponse(long promptResponseId, String response)
+			throws DataAccessException;
+	
+	/**
+	 * Adds the next batch of prompt responses that were uploaded before the
+	 * token index existed to the index and records the progress.
+	 * 
+	 * @param batchSize the maximum number of prompt responses to index
+	 * @return the number of prompt responses that were indexed, which will be
+	 * zero once the index is complete
+	 * @throws DataAccessException if an error occurs
+	 */
+	int backfillPromptResponseTokens(int batchSize)
+			throws DataAccessException;
 }
@@ -17,6 +17,7 @@ package org.ohmage.query;
 
 import java.util.Date;
 import java.util.List;
+import java.io.IOException;
 import java.util.Set;
 import java.util.UUID;
 
@@ -26,9 +27,30 @@ import org.ohmage.domain.MobilityPoint;
 import org.ohmage.domain.MobilityPoint.LocationStatus;
 import org.ohmage.domain.MobilityPoint.Mode;
 import org.ohmage.exception.DataAccessException;
+import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ServiceException;
 
 public interface IUserMobilityQueries {
+	/**
+	 * Receives the Mobility points of a query one at a time, in the order in
+	 * which they are read from the database.
+	 */
+	public static interface MobilityPointHandler {
+		/**
+		 * Handles the next point. The point is not retained by the query, so
+		 * it may be discarded as soon as this returns.
+		 * 
+		 * @param mobilityPoint The point.
+		 * 
+		 * @throws DomainException The point could not be handled.
+		 * 
+		 * @throws IOException There was an error writing the point.
+		 */
+		public void handle(
+				final MobilityPoint mobilityPoint)
+				throws DomainException, IOException;
+	}
+	
 
 	/**
 	 * Creates a new Mobility point.
@@ -104,6 +126,49 @@ public interface IUserMobilityQueries {
 			final Mode mode) 
 			throws DataAccessException;
 	
+	/**
+	 * Streams the Mobility information for all of the points that match the
+	 * given criteria to a handler, in chronological order. The rows are read
+	 * from the database as the handler consumes them, so at most one point is
+	 * held in memory at a time; however, the database connection is held
+	 * until every point has been handled. The criteria are the same as for
+	 * {@link #getMobilityInformation(String, DateTime, DateTime, 
+	 * MobilityPoint.PrivacyState, LocationStatus, Mode)}.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param startDate Limits the results to only those on or after this date.
+	 * 
+	 * @param endDate Limits the results to only those on or before this date.
+	 * 
+	 * @param privacyState Limits the results to only those with the given
+	 * 					   privacy state.
+	 * 
+	 * @param locationStatus Limits the results to only those with the given
+	 * 						 location status.
+	 * 
+	 * @param mode Limits the results to only those with the given mode.
+	 * 
+	 * @param withSensorData Whether or not to read each point's sensor data
+	 * 						 and features. If false, every point is a 
+	 * 						 mode-only point.
+	 * 
+	 * @param handler The handler that receives each point.
+	 * 
+	 * @throws DataAccessException Thrown if there is an error, including if 
+	 * 							   the handler threw an exception.
+	 */
+	void processMobilityInformation(
+			final String username,
+			final DateTime startDate,
+			final DateTime endDate,
+			final MobilityPoint.PrivacyState privacyState,
+			final LocationStatus locationStatus,
+			final Mode mode,
+			final boolean withSensorData,
+			final MobilityPointHandler handler)
+			throws DataAccessException;
+	
 	/**
 	 * Retrieves the Mobility aggregate information for a user within a range.
 	 * 
@@ -468,6 +468,11 @@ public interface IUserQueries {
 	 *        Limits the results to only those whose username is equal to or
 	 *        like these.
 	 * 
+	 * @param exactUsernames
+	 *        Limits the results to only those accounts whose username is
+	 *        exactly one of these values. This is used when the usernames
+	 *        have already been resolved, e.g. from the search index.
+	 * 
 	 * @param emailAddresses
 	 *        Limits the results to only those accounts that have an email
 	 *        address and where that email address matches or is like this
@@ -541,6 +546,7 @@ public interface IUserQueries {
 			final Collection<Object> parameters,
 			final String requesterUsername,
 			final Collection<String> usernames,
+			final Collection<String> exactUsernames,
 			final Collection<String> emailAddresses,
 			final Boolean admin,
 			final Boolean enabled,
@@ -703,11 +709,4 @@ public interface IUserQueries {
 	public void deleteExpiredRegistration(
 		final long duration)
 		throws DataAccessException;
-
-	/**
-	 * Deletes all of the users in a Collection.
-	 * 
-	 * @param usernames A Collection of usernames for the users to delete.
-	 */
-	void deleteUsers(Collection<String> usernames) throws DataAccessException;
 }
\ No newline at end of file
@@ -324,7 +324,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAudits() throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS + "'", e);
@@ -337,7 +337,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAuditsWithRequestType(RequestServlet.RequestType requestType) throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_TYPE, new Object[] { requestType.name().toLowerCase() }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_TYPE, new Object[] { requestType.name().toLowerCase() }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_TYPE + "' with parameter: " + requestType.name().toLowerCase(), e);
@@ -349,7 +349,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	 */
 	public List<Long> getAllAuditsWithUri(URI uri) throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_URI, new Object[] { uri.toString() }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_URI, new Object[] { uri.toString() }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_URI + "' with parameter: " + uri, e);
@@ -362,7 +362,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAuditsWithClient(String client) throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_CLIENT, new Object[] { client }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_CLIENT, new Object[] { client }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_CLIENT + "' with parameter: " + client, e);
@@ -375,7 +375,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAuditsWithDeviceId(String deviceId) throws DataAccessException{
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_DEVICE_ID, new Object[] { deviceId }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_DEVICE_ID, new Object[] { deviceId }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_DEVICE_ID + "' with parameter: " + deviceId, e);
@@ -388,7 +388,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	public List<Long> getAllAuditsWithResponse(ResponseType responseType, final ErrorCode errorCode) throws DataAccessException {
 		if(ResponseType.SUCCESS.equals(responseType)) {
 			try {
-				return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_SUCCESS_RESPONSE, new SingleColumnRowMapper<Long>());
+				return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_SUCCESS_RESPONSE, new SingleColumnRowMapper<Long>());
 			}
 			catch(org.springframework.dao.DataAccessException e) {
 				throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_DEVICE_ID + "'.", e);
@@ -397,7 +397,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 		else if(ResponseType.FAILURE.equals(responseType)) {
 			if(errorCode == null) {
 				try {
-					return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_FAILURE_RESPONSE, new SingleColumnRowMapper<Long>());
+					return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_FAILURE_RESPONSE, new SingleColumnRowMapper<Long>());
 				}
 				catch(org.springframework.dao.DataAccessException e) {
 					throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_DEVICE_ID + "'.", e);
@@ -405,7 +405,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 			}
 			else {
 				try {
-					return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_FAILURE_RESPONSE_WITH_CODE, new Object[] { errorCode }, new SingleColumnRowMapper<Long>());
+					return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_WITH_FAILURE_RESPONSE_WITH_CODE, new Object[] { errorCode }, new SingleColumnRowMapper<Long>());
 				}
 				catch(org.springframework.dao.DataAccessException e) {
 					throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_WITH_FAILURE_RESPONSE_WITH_CODE + "'.", e);
@@ -423,7 +423,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAuditsOnOrAfterDate(DateTime date) throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_ON_OR_AFTER_DATE, new Object[] { date.getMillis() }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_ON_OR_AFTER_DATE, new Object[] { date.getMillis() }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_ON_OR_AFTER_DATE + "' with parameter: " + date, e);
@@ -436,7 +436,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAuditsOnOrBeforeDate(DateTime date) throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_ON_OR_BEFORE_DATE, new Object[] { date.getMillis() }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_ON_OR_BEFORE_DATE, new Object[] { date.getMillis() }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_ON_OR_BEFORE_DATE + "' with parameter: " + date, e);
@@ -449,7 +449,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 	@Override
 	public List<Long> getAllAuditsOnOrBetweenDates(DateTime startDate, DateTime endDate) throws DataAccessException {
 		try {
-			return getJdbcTemplate().query(SQL_GET_AUDIT_IDS_ON_OR_BETWEEN_DATES, new Object[] { startDate.getMillis(), endDate.getMillis() }, new SingleColumnRowMapper<Long>());
+			return getReadOnlyJdbcTemplate().query(SQL_GET_AUDIT_IDS_ON_OR_BETWEEN_DATES, new Object[] { startDate.getMillis(), endDate.getMillis() }, new SingleColumnRowMapper<Long>());
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException("Error executing SQL '" + SQL_GET_AUDIT_IDS_ON_OR_BETWEEN_DATES + "' with parameters: " + 
@@ -473,7 +473,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 		
 		for(Long auditId : auditIds) {
 			try {
-				final Audit auditInformation = getJdbcTemplate().queryForObject(
+				final Audit auditInformation = getReadOnlyJdbcTemplate().queryForObject(
 						SQL_GET_AUDIT_INFORMATION_FROM_ID, 
 						new Object[] { auditId.longValue() },
 						new RowMapper<Audit>() {
@@ -532,7 +532,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 				
 				// Add all of the parameters.
 				try {
-					final List<KeyValuePair> parameters = getJdbcTemplate().query(
+					final List<KeyValuePair> parameters = getReadOnlyJdbcTemplate().query(
 							SQL_GET_AUDIT_PARAMETERS, 
 							new Object[] { auditId }, 
 							new RowMapper<KeyValuePair>() {
@@ -573,7 +573,7 @@ public class AuditQueries extends Query implements IAuditQueries {
 				
 				// Add all of the extras.
 				try {
-					final List<KeyValuePair> extras = getJdbcTemplate().query(
+					final List<KeyValuePair> extras = getReadOnlyJdbcTemplate().query(
 							SQL_GET_AUDIT_EXTRAS, 
 							new Object[] { auditId }, 
 							new RowMapper<KeyValuePair>() {
@@ -34,7 +34,9 @@ import java.util.Set;
 import javax.sql.DataSource;
 
 import org.joda.time.DateTime;
+import org.ohmage.cache.SearchIndexCache;
 import org.ohmage.domain.Clazz;
+import org.ohmage.domain.DeletionJob;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.Prompt;
 import org.ohmage.domain.campaign.RepeatableSet;
@@ -139,59 +141,71 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 		"AND c.running_state_id = crs.id " +
 		"AND c.privacy_state_id = cps.id";
 
+	// Excludes the campaigns that have been deleted but not yet purged.
+	private static final String SQL_NOT_DELETED =
+		"urn NOT LIKE '" + DeletionJob.TOMBSTONE_PREFIX + "%'";
+
 	// Returns the unique identifier for all of the campaigns in the system.
 	private static final String SQL_GET_ALL_IDS =
 		"SELECT urn " +
-		"FROM campaign";
+		"FROM campaign " +
+		"WHERE " + SQL_NOT_DELETED;
 	
 	// Returns all campaign IDs that contain the parameterized value. Be sure
 	// to add the "%"s around the parameter before calling this.
 	private static final String SQL_GET_LIKE_ID =
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE urn LIKE ?";
+		"WHERE urn LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all campaign IDs that contain the parameterized value. Be sure
 	// to add the "%"s around the parameter before calling this.
 	private static final String SQL_GET_LIKE_NAME =
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE name LIKE ?";
+		"WHERE name LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all campaign IDs that contain the parameterized value. Be sure
 	// to add the "%"s around the parameter before calling this.
 	private static final String SQL_GET_LIKE_DESCRIPTION =
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE description LIKE ?";
+		"WHERE description LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all campaign IDs that contain the parameterized value. Be sure
 	// to add the "%"s around the parameter before calling this.
 	private static final String SQL_GET_LIKE_XML =
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE xml LIKE ?";
+		"WHERE xml LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all campaign IDs that contain the parameterized value. Be sure
 	// to add the "%"s around the parameter before calling this.
 	private static final String SQL_GET_LIKE_AUTHORED_BY =
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE authored_by LIKE ?";
+		"WHERE authored_by LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all of the IDs for all of the campaigns whose creation timestamp
 	// was on or after some date.
 	private static final String SQL_GET_CAMPAIGNS_ON_OR_AFTER_DATE = 
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE creation_timestamp >= ?";
+		"WHERE creation_timestamp >= ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all of the IDs for all of the campaigns whose creation timestamp
 	// was on or before some date.
 	private static final String SQL_GET_CAMPAIGNS_ON_OR_BEFORE_DATE =
 		"SELECT urn " +
 		"FROM campaign " +
-		"WHERE creation_timestamp <= ?";
+		"WHERE creation_timestamp <= ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all of the IDs for all of the campaigns whose privacy state is
 	// some value.
@@ -202,7 +216,8 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			"SELECT id " +
 			"FROM campaign_privacy_state " +
 			"WHERE privacy_state = ?" +
-		")";
+		") " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Returns all of the IDs for all of the campaigns whose running state is
 	// some value.
@@ -213,7 +228,8 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			"SELECT id " +
 			"FROM campaign_running_state " +
 			"WHERE running_state = ?" +
-		")";
+		") " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Retrieves the campaign roles for a user based on the default roles for
 	// a campaign-class association.
@@ -334,11 +350,6 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	    "SET editable = ? " +
 		"WHERE urn = ?";
 		
-	// Deletes a campaign.
-	private static final String SQL_DELETE_CAMPAIGN = 
-		"DELETE FROM campaign " +
-		"WHERE urn = ?";
-	
 	// Deletes a campaign, class association.
 	private static final String SQL_DELETE_CAMPAIGN_CLASS =
 		"DELETE FROM campaign_class " +
@@ -602,6 +613,9 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 					"Error while committing the transaction.",
 					e);
 			}
+			
+			// Update the search index.
+			SearchIndexCache.reindexCampaign(campaign.getId());
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException(
@@ -654,6 +668,13 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	public List<String> getCampaignsFromPartialId(String partialCampaignId)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchCampaigns(
+					SearchIndexCache.FIELD_CAMPAIGN_ID,
+					partialCampaignId));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_ID, 
@@ -678,6 +699,13 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	public List<String> getCampaignsFromPartialName(String partialCampaignName)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchCampaigns(
+					SearchIndexCache.FIELD_CAMPAIGN_NAME,
+					partialCampaignName));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_NAME, 
@@ -702,6 +730,13 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	public List<String> getCampaignsFromPartialDescription(
 			String partialDescription) throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchCampaigns(
+					SearchIndexCache.FIELD_CAMPAIGN_DESCRIPTION,
+					partialDescription));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_DESCRIPTION, 
@@ -726,6 +761,13 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	public List<String> getCampaignsFromPartialXml(String partialXml)
 			throws DataAccessException {
 		
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchCampaigns(
+					SearchIndexCache.FIELD_CAMPAIGN_XML,
+					partialXml));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_XML, 
@@ -750,6 +792,13 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	public List<String> getCampaignsFromPartialAuthoredBy(
 			String partialAuthoredBy) throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchCampaigns(
+					SearchIndexCache.FIELD_CAMPAIGN_AUTHORED_BY,
+					partialAuthoredBy));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_AUTHORED_BY, 
@@ -1095,12 +1144,13 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 	
 	/*
 	 * (non-Javadoc)
-	 * @see org.ohmage.query.ICampaignQueries#getvisiableCampaignSearchSql(java.lang.String, java.util.Collection, java.lang.String, java.util.Collection, java.util.Collection, java.util.Date, java.util.Date, org.ohmage.domain.campaign.Campaign.PrivacyState, org.ohmage.domain.campaign.Campaign.RunningState, org.ohmage.domain.campaign.Campaign.Role)
+	 * @see org.ohmage.query.ICampaignQueries#getvisiableCampaignSearchSql(java.lang.String, java.util.Collection, java.util.Collection, java.lang.String, java.util.Collection, java.util.Collection, java.util.Date, java.util.Date, org.ohmage.domain.campaign.Campaign.PrivacyState, org.ohmage.domain.campaign.Campaign.RunningState, org.ohmage.domain.campaign.Campaign.Role)
 	 */
 	@Override
 	public String getVisibleCampaignSearchSql(
 			final Collection<Object> parameters,
 			final String username,
+			final Collection<String> campaignIds,
 			final String partialCampaignId,
 			final String partialCampaignName,
 			final String partialDescription,
@@ -1140,6 +1190,18 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			
 			parameters.add(username);
 			
+			if(campaignIds != null) {
+				if(campaignIds.size() == 0) {
+					builder.append(" AND false");
+				}
+				else {
+					builder.append(" AND ca.urn IN ");
+					builder.append(
+						StringUtils.generateStatementPList(campaignIds.size()));
+					parameters.addAll(campaignIds);
+				}
+			}
+			
 			if(partialCampaignId != null) {			
 				builder.append(" AND ca.urn LIKE ?");
 				parameters.add("%" + partialCampaignId + "%");
@@ -1380,7 +1442,7 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 			builder.append("(" + subSelectStmt + " )");
 			Collection<Object> parameters = subSelectParameters;
 
-			return getJdbcTemplate().query(
+			return getReadOnlyJdbcTemplate().query(
 					builder.toString(),
 					parameters.toArray(),
 					new ResultSetExtractor<Collection<Campaign>>() {
@@ -1542,7 +1604,7 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 		
 		try {
 			return 
-				getJdbcTemplate().query(
+				getReadOnlyJdbcTemplate().query(
 					sqlBuilder.toString(),
 					parameters.toArray(),
 					new RowMapper<Campaign>() {
@@ -1790,41 +1852,9 @@ public final class CampaignQueries extends Query implements ICampaignQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
-		}
-		catch(TransactionException e) {
-			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
-		}
-	}
-	
-	/* (non-Javadoc)
-	 * @see org.ohmage.query.impl.ICampaignQueries#deleteCampaign(java.lang.String)
-	 */
-	public void deleteCampaign(String campaignId) throws DataAccessException {
-		// Create the transaction.
-		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
-		def.setName("Deleting a campaign.");
-		
-		try {
-			// Begin the transaction.
-			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
-			TransactionStatus status = transactionManager.getTransaction(def);
-			
-			try {
-				getJdbcTemplate().update(SQL_DELETE_CAMPAIGN, campaignId);
-			}
-			catch(org.springframework.dao.DataAccessException e) {
-				transactionManager.rollback(status);
-				throw new DataAccessException("Error executing SQL '" + SQL_DELETE_CAMPAIGN + "' with parameter: " + campaignId, e);
-			}
 			
-			// Commit the transaction.
-			try {
-				transactionManager.commit(status);
-			}
-			catch(TransactionException e) {
-				transactionManager.rollback(status);
-				throw new DataAccessException("Error while committing the transaction.", e);
-			}
+			// Update the search index.
+			SearchIndexCache.reindexCampaign(campaignId);
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
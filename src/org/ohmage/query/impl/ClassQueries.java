@@ -29,6 +29,7 @@ import java.util.Map;
 import javax.sql.DataSource;
 
 import org.apache.log4j.Logger;
+import org.ohmage.cache.SearchIndexCache;
 import org.ohmage.domain.Clazz;
 import org.ohmage.domain.Clazz.Role;
 import org.ohmage.domain.campaign.Campaign;
@@ -280,6 +281,9 @@ public class ClassQueries extends Query implements IClassQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
+			
+			// Update the search index.
+			SearchIndexCache.reindexClass(classId);
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
@@ -327,6 +331,13 @@ public class ClassQueries extends Query implements IClassQueries {
 	public List<String> getClassIdsFromPartialId(String partialId)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchClasses(
+					SearchIndexCache.FIELD_CLASS_ID,
+					partialId));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_CLASS_ID, 
@@ -351,6 +362,13 @@ public class ClassQueries extends Query implements IClassQueries {
 	public List<String> getClassIdsFromPartialName(String partialName)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchClasses(
+					SearchIndexCache.FIELD_CLASS_NAME,
+					partialName));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_CLASS_NAME, 
@@ -376,6 +394,13 @@ public class ClassQueries extends Query implements IClassQueries {
 			String partialDescription) 
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchClasses(
+					SearchIndexCache.FIELD_CLASS_DESCRIPTION,
+					partialDescription));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_LIKE_CLASS_DESCRIPTION, 
@@ -1008,6 +1033,9 @@ public class ClassQueries extends Query implements IClassQueries {
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
 			
+			// Update the search index.
+			SearchIndexCache.reindexClass(classId);
+			
 			return warningMessages;
 		}
 		catch(TransactionException e) {
@@ -1200,6 +1228,9 @@ public class ClassQueries extends Query implements IClassQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
+			
+			// Update the search index.
+			SearchIndexCache.removeClass(classId);
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
@@ -0,0 +1,888 @@
+package org.ohmage.query.impl;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+import org.ohmage.cache.SearchIndexCache;
+import org.ohmage.domain.DeletionJob;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.query.IDeletionJobQueries;
+import org.ohmage.util.StringUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+/**
+ * This class contains all of the functionality for replacing campaigns and
+ * users with tombstones and then deleting them and their data in small
+ * batches, so that no single transaction holds its locks for long.
+ */
+public class DeletionJobQueries extends Query implements IDeletionJobQueries {
+	private static final Logger LOGGER =
+		Logger.getLogger(DeletionJobQueries.class);
+
+	private static final String SQL_GET_CAMPAIGN_ID =
+		"SELECT id " +
+		"FROM campaign " +
+		"WHERE urn = ?";
+
+	private static final String SQL_UPDATE_CAMPAIGN_TOMBSTONE =
+		"UPDATE campaign " +
+		"SET urn = CONCAT(?, id) " +
+		"WHERE id = ?";
+
+	// Revokes every association through which a campaign can be reached.
+	private static final String[] SQL_DELETE_CAMPAIGN_ACCESS = {
+		"DELETE FROM user_role_campaign WHERE campaign_id = ?",
+		"DELETE FROM campaign_class WHERE campaign_id = ?",
+		"DELETE FROM document_campaign_role WHERE campaign_id = ?"
+	};
+
+	private static final String SQL_GET_USER_ID =
+		"SELECT id " +
+		"FROM user " +
+		"WHERE username = ?";
+
+	private static final String SQL_UPDATE_USER_TOMBSTONE =
+		"UPDATE user " +
+		"SET username = CONCAT(?, id), enabled = false, admin = false " +
+		"WHERE id = ?";
+
+	// Revokes every association through which a user can be reached.
+	private static final String[] SQL_DELETE_USER_ACCESS = {
+		"DELETE FROM user_role_campaign WHERE user_id = ?",
+		"DELETE FROM user_class WHERE user_id = ?",
+		"DELETE FROM document_user_role WHERE user_id = ?"
+	};
+
+	private static final String SQL_INSERT_JOB =
+		"INSERT INTO deletion_job(" +
+			"type, entity_id, name, status, creation_timestamp) " +
+		"VALUES (?, ?, ?, ?, NOW())";
+
+	private static final String SQL_GET_JOBS =
+		"SELECT id, type, entity_id, name, status, " +
+			"rows_deleted, files_deleted, bytes_deleted, error, " +
+			"creation_timestamp, completion_timestamp " +
+		"FROM deletion_job ";
+
+	private static final String SQL_GET_ALL_JOBS =
+		SQL_GET_JOBS +
+		"ORDER BY id DESC";
+
+	private static final String SQL_GET_NEXT_JOB =
+		SQL_GET_JOBS +
+		"WHERE status IN (?, ?) " +
+		"ORDER BY id " +
+		"LIMIT 1";
+
+	private static final String SQL_GET_CAMPAIGN_SURVEY_RESPONSE_IDS =
+		"SELECT id " +
+		"FROM survey_response " +
+		"WHERE campaign_id = ? " +
+		"LIMIT ?";
+
+	private static final String SQL_GET_USER_SURVEY_RESPONSE_IDS =
+		"SELECT id " +
+		"FROM survey_response " +
+		"WHERE user_id = ? " +
+		"LIMIT ?";
+
+	// Returns the media to which a set of survey responses refer. This SQL
+	// is incomplete and ends with "IN ". The caller must append a
+	// parenthetical of "?"s.
+	private static final String SQL_GET_SURVEY_RESPONSE_MEDIA =
+		"SELECT DISTINCT ubr.uuid, ubr.url " +
+		"FROM prompt_response pr, url_based_resource ubr " +
+		"WHERE pr.response = ubr.uuid " +
+		"AND pr.survey_response_id IN ";
+
+	private static final String SQL_GET_USER_MEDIA =
+		"SELECT uuid, url " +
+		"FROM url_based_resource " +
+		"WHERE user_id = ? " +
+		"LIMIT ?";
+
+	// This SQL is incomplete and ends with "IN ". The caller must append a
+	// parenthetical of "?"s.
+	private static final String SQL_DELETE_MEDIA =
+		"DELETE FROM url_based_resource " +
+		"WHERE uuid IN ";
+
+	// This SQL is incomplete and ends with "IN ". The caller must append a
+	// parenthetical of "?"s. The prompt responses are deleted with them.
+	private static final String SQL_DELETE_SURVEY_RESPONSES =
+		"DELETE FROM survey_response " +
+		"WHERE id IN ";
+
+	// Deletes a batch from each of the tables that hold a user's data
+	// points, in the order in which they are emptied.
+	private static final String[] SQL_DELETE_USER_DATA = {
+		"DELETE FROM mobility WHERE user_id = ? LIMIT ?",
+		"DELETE FROM observer_stream_data WHERE user_id = ? LIMIT ?",
+		"DELETE FROM observer_stream_data_archive WHERE user_id = ? LIMIT ?",
+		"DELETE FROM observer_stream_data_rollup WHERE user_id = ? LIMIT ?",
+		"DELETE FROM observer_stream_data_day WHERE user_id = ? LIMIT ?"
+	};
+
+	private static final String SQL_DELETE_CAMPAIGN =
+		"DELETE FROM campaign " +
+		"WHERE id = ?";
+
+	private static final String SQL_DELETE_USER =
+		"DELETE FROM user " +
+		"WHERE id = ?";
+
+	private static final String SQL_UPDATE_COMPLETE_JOB =
+		"UPDATE deletion_job " +
+		"SET status = ?, completion_timestamp = NOW() " +
+		"WHERE id = ?";
+
+	private static final String SQL_UPDATE_JOB_PROGRESS =
+		"UPDATE deletion_job " +
+		"SET status = ?, " +
+			"rows_deleted = rows_deleted + ?, " +
+			"files_deleted = files_deleted + ?, " +
+			"bytes_deleted = bytes_deleted + ? " +
+		"WHERE id = ?";
+
+	private static final String SQL_UPDATE_JOB_ERROR =
+		"UPDATE deletion_job " +
+		"SET error = ? " +
+		"WHERE id = ?";
+
+	/**
+	 * Builds a job from a row returned by {@link #SQL_GET_JOBS}.
+	 */
+	private static final RowMapper<DeletionJob> JOB_MAPPER =
+		new RowMapper<DeletionJob>() {
+			@Override
+			public DeletionJob mapRow(
+					final ResultSet rs,
+					final int rowNum)
+					throws SQLException {
+
+				return new DeletionJob(
+					rs.getLong("id"),
+					DeletionJob.Type.getValue(rs.getString("type")),
+					rs.getLong("entity_id"),
+					rs.getString("name"),
+					DeletionJob.Status.getValue(rs.getString("status")),
+					rs.getLong("rows_deleted"),
+					rs.getLong("files_deleted"),
+					rs.getLong("bytes_deleted"),
+					rs.getString("error"),
+					toDateTime(rs.getTimestamp("creation_timestamp")),
+					toDateTime(rs.getTimestamp("completion_timestamp")));
+			}
+		};
+
+	/**
+	 * Creates this object via dependency injection (reflection).
+	 * 
+	 * @param dataSource The DataSource to use when querying the database.
+	 */
+	private DeletionJobQueries(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#createCampaignDeletionJob(java.lang.String)
+	 */
+	@Override
+	public void createCampaignDeletionJob(
+			final String campaignId)
+			throws DataAccessException {
+
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Replacing a campaign with a tombstone.");
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager =
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			try {
+				createDeletionJob(
+					DeletionJob.Type.CAMPAIGN,
+					campaignId,
+					SQL_GET_CAMPAIGN_ID,
+					SQL_UPDATE_CAMPAIGN_TOMBSTONE,
+					SQL_DELETE_CAMPAIGN_ACCESS);
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.",
+					e);
+			}
+
+			// Update the search index.
+			SearchIndexCache.removeCampaign(campaignId);
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#createUserDeletionJobs(java.util.Collection)
+	 */
+	@Override
+	public void createUserDeletionJobs(
+			final Collection<String> usernames)
+			throws DataAccessException {
+
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Replacing users with tombstones.");
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager =
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			try {
+				for(String username : usernames) {
+					createDeletionJob(
+						DeletionJob.Type.USER,
+						username,
+						SQL_GET_USER_ID,
+						SQL_UPDATE_USER_TOMBSTONE,
+						SQL_DELETE_USER_ACCESS);
+				}
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.",
+					e);
+			}
+
+			// Update the search index.
+			SearchIndexCache.removeUsers(usernames);
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#getDeletionJobs()
+	 */
+	@Override
+	public List<DeletionJob> getDeletionJobs() throws DataAccessException {
+		try {
+			return getJdbcTemplate().query(SQL_GET_ALL_JOBS, JOB_MAPPER);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + SQL_GET_ALL_JOBS + "'.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#getNextDeletionJob()
+	 */
+	@Override
+	public DeletionJob getNextDeletionJob() throws DataAccessException {
+		try {
+			List<DeletionJob> result =
+				getJdbcTemplate().query(
+					SQL_GET_NEXT_JOB,
+					new Object[] {
+						DeletionJob.Status.PENDING.toString(),
+						DeletionJob.Status.RUNNING.toString() },
+					JOB_MAPPER);
+
+			if(result.isEmpty()) {
+				return null;
+			}
+			return result.get(0);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_GET_NEXT_JOB +
+					"' with parameters: " +
+					DeletionJob.Status.PENDING + ", " +
+					DeletionJob.Status.RUNNING,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#deleteSurveyResponses(org.ohmage.domain.DeletionJob, int, java.util.Collection)
+	 */
+	@Override
+	public int deleteSurveyResponses(
+			final DeletionJob job,
+			final int batchSize,
+			final Collection<URL> mediaUrls)
+			throws DataAccessException {
+
+		String sqlGetIds =
+			(DeletionJob.Type.CAMPAIGN.equals(job.getType())) ?
+				SQL_GET_CAMPAIGN_SURVEY_RESPONSE_IDS :
+				SQL_GET_USER_SURVEY_RESPONSE_IDS;
+
+		List<Long> ids = getIds(sqlGetIds, job.getEntityId(), batchSize);
+		if(ids.isEmpty()) {
+			return 0;
+		}
+
+		String sqlGetMedia =
+			SQL_GET_SURVEY_RESPONSE_MEDIA +
+				StringUtils.generateStatementPList(ids.size());
+		List<String[]> media = getMedia(sqlGetMedia, ids.toArray());
+
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Deleting a batch of survey responses.");
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager =
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			int result;
+			try {
+				deleteMedia(media);
+
+				String sql =
+					SQL_DELETE_SURVEY_RESPONSES +
+						StringUtils.generateStatementPList(ids.size());
+				try {
+					result = getJdbcTemplate().update(sql, ids.toArray());
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					throw new DataAccessException(
+						"Error executing SQL '" +
+							sql +
+							"' with parameters: " +
+							ids,
+						e);
+				}
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.",
+					e);
+			}
+
+			addUrls(media, mediaUrls);
+			return result;
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#deleteUserMedia(org.ohmage.domain.DeletionJob, int, java.util.Collection)
+	 */
+	@Override
+	public int deleteUserMedia(
+			final DeletionJob job,
+			final int batchSize,
+			final Collection<URL> mediaUrls)
+			throws DataAccessException {
+
+		List<String[]> media =
+			getMedia(
+				SQL_GET_USER_MEDIA,
+				new Object[] { job.getEntityId(), batchSize });
+		if(media.isEmpty()) {
+			return 0;
+		}
+
+		deleteMedia(media);
+		addUrls(media, mediaUrls);
+		return media.size();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#deleteUserData(org.ohmage.domain.DeletionJob, int)
+	 */
+	@Override
+	public int deleteUserData(
+			final DeletionJob job,
+			final int batchSize)
+			throws DataAccessException {
+
+		for(String sql : SQL_DELETE_USER_DATA) {
+			int result;
+			try {
+				result =
+					getJdbcTemplate().update(
+						sql,
+						job.getEntityId(),
+						batchSize);
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" +
+						sql +
+						"' with parameters: " +
+						job.getEntityId() + ", " +
+						batchSize,
+					e);
+			}
+
+			if(result > 0) {
+				return result;
+			}
+		}
+
+		return 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#completeDeletionJob(org.ohmage.domain.DeletionJob)
+	 */
+	@Override
+	public void completeDeletionJob(
+			final DeletionJob job)
+			throws DataAccessException {
+
+		String sqlDelete =
+			(DeletionJob.Type.CAMPAIGN.equals(job.getType())) ?
+				SQL_DELETE_CAMPAIGN :
+				SQL_DELETE_USER;
+
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Completing a deletion job.");
+
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager =
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+
+			try {
+				getJdbcTemplate().update(sqlDelete, job.getEntityId());
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" +
+						sqlDelete +
+						"' with parameter: " +
+						job.getEntityId(),
+					e);
+			}
+
+			try {
+				getJdbcTemplate().update(
+					SQL_UPDATE_COMPLETE_JOB,
+					DeletionJob.Status.COMPLETE.toString(),
+					job.getId());
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" +
+						SQL_UPDATE_COMPLETE_JOB +
+						"' with parameters: " +
+						DeletionJob.Status.COMPLETE + ", " +
+						job.getId(),
+					e);
+			}
+
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.",
+					e);
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#updateDeletionJobProgress(long, long, long, long)
+	 */
+	@Override
+	public void updateDeletionJobProgress(
+			final long id,
+			final long rowsDeleted,
+			final long filesDeleted,
+			final long bytesDeleted)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(
+				SQL_UPDATE_JOB_PROGRESS,
+				DeletionJob.Status.RUNNING.toString(),
+				rowsDeleted,
+				filesDeleted,
+				bytesDeleted,
+				id);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_JOB_PROGRESS +
+					"' with parameters: " +
+					DeletionJob.Status.RUNNING + ", " +
+					rowsDeleted + ", " +
+					filesDeleted + ", " +
+					bytesDeleted + ", " +
+					id,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IDeletionJobQueries#setDeletionJobError(long, java.lang.String)
+	 */
+	@Override
+	public void setDeletionJobError(
+			final long id,
+			final String error)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(SQL_UPDATE_JOB_ERROR, error, id);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_JOB_ERROR +
+					"' with parameters: " +
+					error + ", " +
+					id,
+				e);
+		}
+	}
+
+	/**
+	 * Replaces an entity with a tombstone, revokes the associations through
+	 * which it can be reached, and creates its deletion job. This must be
+	 * called from within a transaction.
+	 * 
+	 * @param type The kind of entity.
+	 * 
+	 * @param name The entity's URN or username.
+	 * 
+	 * @param sqlGetId The SQL that returns the entity's ID from its name.
+	 * 
+	 * @param sqlTombstone The SQL that renames the entity given the
+	 * 					   tombstone prefix and its ID.
+	 * 
+	 * @param sqlRevokeAccess The SQL that deletes each of its associations
+	 * 						  given its ID.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void createDeletionJob(
+			final DeletionJob.Type type,
+			final String name,
+			final String sqlGetId,
+			final String sqlTombstone,
+			final String[] sqlRevokeAccess)
+			throws DataAccessException {
+
+		long id;
+		try {
+			id = getJdbcTemplate().queryForLong(sqlGetId, name);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sqlGetId +
+					"' with parameter: " +
+					name,
+				e);
+		}
+
+		try {
+			getJdbcTemplate().update(
+				sqlTombstone,
+				DeletionJob.TOMBSTONE_PREFIX,
+				id);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sqlTombstone +
+					"' with parameters: " +
+					DeletionJob.TOMBSTONE_PREFIX + ", " +
+					id,
+				e);
+		}
+
+		for(String sql : sqlRevokeAccess) {
+			try {
+				getJdbcTemplate().update(sql, id);
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" +
+						sql +
+						"' with parameter: " +
+						id,
+					e);
+			}
+		}
+
+		try {
+			getJdbcTemplate().update(
+				SQL_INSERT_JOB,
+				type.toString(),
+				id,
+				name,
+				DeletionJob.Status.PENDING.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_INSERT_JOB +
+					"' with parameters: " +
+					type + ", " +
+					id + ", " +
+					name + ", " +
+					DeletionJob.Status.PENDING,
+				e);
+		}
+	}
+
+	/**
+	 * Returns a batch of IDs.
+	 * 
+	 * @param sql The SQL that returns the IDs given the entity's ID and the
+	 * 			  batch size.
+	 * 
+	 * @param entityId The entity's ID.
+	 * 
+	 * @param batchSize The maximum number of IDs to return.
+	 * 
+	 * @return The IDs.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private List<Long> getIds(
+			final String sql,
+			final long entityId,
+			final int batchSize)
+			throws DataAccessException {
+
+		try {
+			return
+				getJdbcTemplate().query(
+					sql,
+					new Object[] { entityId, batchSize },
+					new RowMapper<Long>() {
+						@Override
+						public Long mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							return rs.getLong("id");
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					entityId + ", " +
+					batchSize,
+				e);
+		}
+	}
+
+	/**
+	 * Returns the unique identifiers and URLs of some media.
+	 * 
+	 * @param sql The SQL that returns the media's "uuid" and "url".
+	 * 
+	 * @param parameters The SQL's parameters.
+	 * 
+	 * @return Each media's unique identifier and URL.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private List<String[]> getMedia(
+			final String sql,
+			final Object[] parameters)
+			throws DataAccessException {
+
+		try {
+			return
+				getJdbcTemplate().query(
+					sql,
+					parameters,
+					new RowMapper<String[]>() {
+						@Override
+						public String[] mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							return new String[] {
+								rs.getString("uuid"),
+								rs.getString("url") };
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + sql + "'.",
+				e);
+		}
+	}
+
+	/**
+	 * Deletes media from the database.
+	 * 
+	 * @param media Each media's unique identifier and URL.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void deleteMedia(
+			final List<String[]> media)
+			throws DataAccessException {
+
+		if(media.isEmpty()) {
+			return;
+		}
+
+		List<String> uuids = new ArrayList<String>(media.size());
+		for(String[] medium : media) {
+			uuids.add(medium[0]);
+		}
+
+		String sql =
+			SQL_DELETE_MEDIA +
+				StringUtils.generateStatementPList(uuids.size());
+		try {
+			getJdbcTemplate().update(sql, uuids.toArray());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					uuids,
+				e);
+		}
+	}
+
+	/**
+	 * Adds the URLs of deleted media to a collection.
+	 * 
+	 * @param media Each media's unique identifier and URL.
+	 * 
+	 * @param mediaUrls The collection to which the URLs are added.
+	 */
+	private static void addUrls(
+			final List<String[]> media,
+			final Collection<URL> mediaUrls) {
+
+		for(String[] medium : media) {
+			if(medium[1] == null) {
+				continue;
+			}
+
+			try {
+				mediaUrls.add(new URL(medium[1]));
+			}
+			catch(MalformedURLException e) {
+				LOGGER.warn(
+					"The URL of media " +
+						medium[0] +
+						" is malformed, so its file cannot be deleted: " +
+						medium[1],
+					e);
+			}
+		}
+	}
+
+	/**
+	 * Converts a timestamp from the database into a DateTime.
+	 * 
+	 * @param timestamp The timestamp, which may be null.
+	 * 
+	 * @return The DateTime or null if the timestamp was null.
+	 */
+	private static DateTime toDateTime(final Timestamp timestamp) {
+		if(timestamp == null) {
+			return null;
+		}
+		return new DateTime(timestamp.getTime());
+	}
+}
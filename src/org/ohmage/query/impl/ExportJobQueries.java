@@ -0,0 +1,359 @@
+package org.ohmage.query.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.joda.time.DateTime;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.query.IExportJobQueries;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * This class contains all of the functionality for creating, reading,
+ * updating, and deleting export jobs.
+ */
+public class ExportJobQueries extends Query implements IExportJobQueries {
+	private static final String SQL_INSERT_JOB =
+		"INSERT INTO export_job(" +
+			"uuid, user_id, type, status, creation_timestamp) " +
+		"VALUES (?, (SELECT id FROM user WHERE username = ?), ?, ?, NOW())";
+
+	private static final String SQL_GET_JOB =
+		"SELECT ej.uuid, u.username, ej.type, ej.status, ej.content_type, " +
+			"ej.size, ej.error, ej.creation_timestamp, " +
+			"ej.completion_timestamp, ej.expiration_timestamp " +
+		"FROM export_job ej, user u " +
+		"WHERE ej.uuid = ? " +
+		"AND ej.user_id = u.id";
+
+	private static final String SQL_UPDATE_START_JOB =
+		"UPDATE export_job " +
+		"SET status = ? " +
+		"WHERE uuid = ? " +
+		"AND status = ?";
+
+	private static final String SQL_UPDATE_COMPLETE_JOB =
+		"UPDATE export_job " +
+		"SET status = ?, content_type = ?, size = ?, " +
+			"completion_timestamp = NOW(), expiration_timestamp = ? " +
+		"WHERE uuid = ?";
+
+	private static final String SQL_UPDATE_FAIL_JOB =
+		"UPDATE export_job " +
+		"SET status = ?, error = ?, " +
+			"completion_timestamp = NOW(), expiration_timestamp = ? " +
+		"WHERE uuid = ?";
+
+	private static final String SQL_UPDATE_FAIL_UNFINISHED_JOBS =
+		"UPDATE export_job " +
+		"SET status = ?, error = ?, " +
+			"completion_timestamp = NOW(), expiration_timestamp = ? " +
+		"WHERE status IN (?, ?)";
+
+	private static final String SQL_GET_EXPIRED_JOB_IDS =
+		"SELECT uuid " +
+		"FROM export_job " +
+		"WHERE expiration_timestamp <= ?";
+
+	private static final String SQL_DELETE_JOB =
+		"DELETE FROM export_job " +
+		"WHERE uuid = ?";
+
+	/**
+	 * Creates this object via dependency injection (reflection).
+	 * 
+	 * @param dataSource The DataSource to use when querying the database.
+	 */
+	private ExportJobQueries(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#createExportJob(java.util.UUID, java.lang.String, org.ohmage.domain.ExportJob.Type)
+	 */
+	@Override
+	public void createExportJob(
+			final UUID id,
+			final String username,
+			final ExportJob.Type type)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(
+				SQL_INSERT_JOB,
+				id.toString(),
+				username,
+				type.toString(),
+				ExportJob.Status.PENDING.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_INSERT_JOB +
+					"' with parameters: " +
+					id + ", " +
+					username + ", " +
+					type + ", " +
+					ExportJob.Status.PENDING,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#getExportJob(java.util.UUID)
+	 */
+	@Override
+	public ExportJob getExportJob(final UUID id) throws DataAccessException {
+		try {
+			List<ExportJob> result =
+				getJdbcTemplate().query(
+					SQL_GET_JOB,
+					new Object[] { id.toString() },
+					new RowMapper<ExportJob>() {
+						@Override
+						public ExportJob mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							Long size = rs.getLong("size");
+							if(rs.wasNull()) {
+								size = null;
+							}
+							
+							return new ExportJob(
+								UUID.fromString(rs.getString("uuid")),
+								rs.getString("username"),
+								ExportJob.Type.getValue(rs.getString("type")),
+								ExportJob.Status.getValue(
+									rs.getString("status")),
+								rs.getString("content_type"),
+								size,
+								rs.getString("error"),
+								toDateTime(
+									rs.getTimestamp("creation_timestamp")),
+								toDateTime(
+									rs.getTimestamp("completion_timestamp")),
+								toDateTime(
+									rs.getTimestamp("expiration_timestamp")));
+						}
+					});
+
+			if(result.isEmpty()) {
+				return null;
+			}
+			return result.get(0);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_GET_JOB +
+					"' with parameter: " +
+					id,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#startExportJob(java.util.UUID)
+	 */
+	@Override
+	public boolean startExportJob(final UUID id) throws DataAccessException {
+		try {
+			return
+				getJdbcTemplate().update(
+					SQL_UPDATE_START_JOB,
+					ExportJob.Status.RUNNING.toString(),
+					id.toString(),
+					ExportJob.Status.PENDING.toString()) > 0;
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_START_JOB +
+					"' with parameters: " +
+					ExportJob.Status.RUNNING + ", " +
+					id + ", " +
+					ExportJob.Status.PENDING,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#completeExportJob(java.util.UUID, java.lang.String, long, org.joda.time.DateTime)
+	 */
+	@Override
+	public void completeExportJob(
+			final UUID id,
+			final String contentType,
+			final long size,
+			final DateTime expirationTimestamp)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(
+				SQL_UPDATE_COMPLETE_JOB,
+				ExportJob.Status.COMPLETE.toString(),
+				contentType,
+				size,
+				new Timestamp(expirationTimestamp.getMillis()),
+				id.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_COMPLETE_JOB +
+					"' with parameters: " +
+					ExportJob.Status.COMPLETE + ", " +
+					contentType + ", " +
+					size + ", " +
+					expirationTimestamp + ", " +
+					id,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#failExportJob(java.util.UUID, java.lang.String, org.joda.time.DateTime)
+	 */
+	@Override
+	public void failExportJob(
+			final UUID id,
+			final String error,
+			final DateTime expirationTimestamp)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(
+				SQL_UPDATE_FAIL_JOB,
+				ExportJob.Status.FAILED.toString(),
+				error,
+				new Timestamp(expirationTimestamp.getMillis()),
+				id.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_FAIL_JOB +
+					"' with parameters: " +
+					ExportJob.Status.FAILED + ", " +
+					error + ", " +
+					expirationTimestamp + ", " +
+					id,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#failUnfinishedExportJobs(java.lang.String, org.joda.time.DateTime)
+	 */
+	@Override
+	public int failUnfinishedExportJobs(
+			final String error,
+			final DateTime expirationTimestamp)
+			throws DataAccessException {
+
+		try {
+			return
+				getJdbcTemplate().update(
+					SQL_UPDATE_FAIL_UNFINISHED_JOBS,
+					ExportJob.Status.FAILED.toString(),
+					error,
+					new Timestamp(expirationTimestamp.getMillis()),
+					ExportJob.Status.PENDING.toString(),
+					ExportJob.Status.RUNNING.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_FAIL_UNFINISHED_JOBS +
+					"' with parameters: " +
+					ExportJob.Status.FAILED + ", " +
+					error + ", " +
+					expirationTimestamp + ", " +
+					ExportJob.Status.PENDING + ", " +
+					ExportJob.Status.RUNNING,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#getExpiredExportJobIds(org.joda.time.DateTime)
+	 */
+	@Override
+	public List<UUID> getExpiredExportJobIds(
+			final DateTime now)
+			throws DataAccessException {
+
+		try {
+			return
+				getJdbcTemplate().query(
+					SQL_GET_EXPIRED_JOB_IDS,
+					new Object[] { new Timestamp(now.getMillis()) },
+					new RowMapper<UUID>() {
+						@Override
+						public UUID mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							return UUID.fromString(rs.getString("uuid"));
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_GET_EXPIRED_JOB_IDS +
+					"' with parameter: " +
+					now,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IExportJobQueries#deleteExportJob(java.util.UUID)
+	 */
+	@Override
+	public void deleteExportJob(final UUID id) throws DataAccessException {
+		try {
+			getJdbcTemplate().update(SQL_DELETE_JOB, id.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_DELETE_JOB +
+					"' with parameter: " +
+					id,
+				e);
+		}
+	}
+
+	/**
+	 * Converts a timestamp from the database into a DateTime.
+	 * 
+	 * @param timestamp The timestamp, which may be null.
+	 * 
+	 * @return The DateTime or null if the timestamp was null.
+	 */
+	private static DateTime toDateTime(final Timestamp timestamp) {
+		if(timestamp == null) {
+			return null;
+		}
+		return new DateTime(timestamp.getTime());
+	}
+}
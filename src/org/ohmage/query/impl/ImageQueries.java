@@ -20,9 +20,12 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -33,6 +36,8 @@ import org.ohmage.domain.Image;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.IImageQueries;
+import org.ohmage.util.StringUtils;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -69,6 +74,18 @@ public final class ImageQueries extends Query implements IImageQueries {
 		"AND pr.response = ubr.uuid " +
 		"AND pr.prompt_type = 'photo'";
 	
+	// Retrieves the UUID and URL for a set of images. This SQL is incomplete
+	// and ends with "IN ". The caller must append a parenthetical of "?"s.
+	private static final String SQL_GET_IMAGE_URLS =
+		"SELECT DISTINCT ubr.uuid, ubr.url " +
+		"FROM url_based_resource ubr, prompt_response pr " +
+		"WHERE pr.response = ubr.uuid " +
+		"AND pr.prompt_type = 'photo' " +
+		"AND ubr.uuid IN ";
+	
+	// The maximum number of images whose URLs are retrieved in one query.
+	private static final int MAX_IMAGE_URLS_PER_QUERY = 1000;
+	
 	// Deletes an image form the url_based_resource table.
 	private static final String SQL_DELETE_IMAGE =
 		"DELETE FROM url_based_resource " +
@@ -125,6 +142,71 @@ public final class ImageQueries extends Query implements IImageQueries {
 		}
 	}
 	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IImageQueries#getImageUrls(java.util.Collection)
+	 */
+	@Override
+	public Map<UUID, URL> getImageUrls(
+			final Collection<UUID> imageIds)
+			throws DataAccessException {
+		
+		final Map<UUID, URL> result = new HashMap<UUID, URL>();
+		
+		// Break the IDs into chunks to keep the statements a reasonable size.
+		List<String> ids = new ArrayList<String>(imageIds.size());
+		for(UUID imageId : imageIds) {
+			ids.add(imageId.toString());
+		}
+		
+		for(int i = 0; i < ids.size(); i += MAX_IMAGE_URLS_PER_QUERY) {
+			List<String> chunk = 
+				ids.subList(
+					i, 
+					Math.min(i + MAX_IMAGE_URLS_PER_QUERY, ids.size()));
+			
+			String sql = 
+				SQL_GET_IMAGE_URLS + 
+				StringUtils.generateStatementPList(chunk.size());
+			
+			try {
+				getJdbcTemplate().query(
+					sql, 
+					chunk.toArray(), 
+					new RowCallbackHandler() {
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							UUID imageId = UUID.fromString(rs.getString("uuid"));
+							try {
+								URL url = new URL(rs.getString("url"));
+								if(result.put(imageId, url) != null) {
+									throw new SQLException(
+										"Multiple images have the same unique identifier: " +
+											imageId);
+								}
+							}
+							catch(MalformedURLException e) {
+								throw new SQLException(
+									"The URL was not a valid URL: " + imageId,
+									e);
+							}
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				throw new DataAccessException(
+					"Error executing SQL '" + sql + "' with parameters: " + 
+						chunk, 
+					e);
+			}
+		}
+		
+		return result;
+	}
+	
 	/*
 	 * (non-Javadoc)
 	 * @see org.ohmage.query.IImageQueries#getUnprocessedImages()
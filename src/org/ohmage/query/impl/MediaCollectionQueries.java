@@ -0,0 +1,306 @@
+package org.ohmage.query.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.joda.time.DateTime;
+import org.ohmage.domain.MediaCollection;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.query.IMediaCollectionQueries;
+import org.ohmage.util.StringUtils;
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * This class contains all of the functionality for recording the orphaned
+ * media collector's progress and for checking, in bulk, whether the files
+ * it finds are still referenced.
+ */
+public class MediaCollectionQueries extends Query implements IMediaCollectionQueries {
+	private static final String SQL_GET_COLLECTIONS =
+		"SELECT directory, last_directory, passes, " +
+			"files_scanned, files_quarantined, files_restored, " +
+			"files_deleted, bytes_deleted, last_pass_timestamp " +
+		"FROM media_collection ";
+
+	private static final String SQL_GET_ALL_COLLECTIONS =
+		SQL_GET_COLLECTIONS +
+		"ORDER BY directory";
+
+	private static final String SQL_GET_COLLECTION =
+		SQL_GET_COLLECTIONS +
+		"WHERE directory = ?";
+
+	// Returns the media that have one of a set of unique identifiers. This
+	// SQL is incomplete and ends with "IN ". The caller must append a
+	// parenthetical of "?"s.
+	private static final String SQL_GET_MEDIA_UUIDS =
+		"SELECT uuid " +
+		"FROM url_based_resource " +
+		"WHERE uuid IN ";
+
+	// Returns the documents that have one of a set of unique identifiers.
+	// This SQL is incomplete and ends with "IN ". The caller must append a
+	// parenthetical of "?"s.
+	private static final String SQL_GET_DOCUMENT_UUIDS =
+		"SELECT uuid " +
+		"FROM document " +
+		"WHERE uuid IN ";
+
+	// Creates the directory's row if the migration didn't, so that the
+	// progress is never silently lost.
+	private static final String SQL_UPDATE_PROGRESS =
+		"INSERT INTO media_collection(" +
+			"directory, last_directory, files_scanned, files_quarantined, " +
+			"files_restored, files_deleted, bytes_deleted) " +
+		"VALUES (?, ?, ?, ?, ?, ?, ?) " +
+		"ON DUPLICATE KEY UPDATE " +
+			"last_directory = VALUES(last_directory), " +
+			"files_scanned = files_scanned + VALUES(files_scanned), " +
+			"files_quarantined = files_quarantined + VALUES(files_quarantined), " +
+			"files_restored = files_restored + VALUES(files_restored), " +
+			"files_deleted = files_deleted + VALUES(files_deleted), " +
+			"bytes_deleted = bytes_deleted + VALUES(bytes_deleted)";
+
+	private static final String SQL_UPDATE_COMPLETE_PASS =
+		"UPDATE media_collection " +
+		"SET last_directory = '', " +
+			"passes = passes + 1, " +
+			"last_pass_timestamp = NOW() " +
+		"WHERE directory = ?";
+
+	/**
+	 * Builds a collection from a row returned by {@link #SQL_GET_COLLECTIONS}.
+	 */
+	private static final RowMapper<MediaCollection> COLLECTION_MAPPER =
+		new RowMapper<MediaCollection>() {
+			@Override
+			public MediaCollection mapRow(
+					final ResultSet rs,
+					final int rowNum)
+					throws SQLException {
+
+				Timestamp lastPass = rs.getTimestamp("last_pass_timestamp");
+
+				return new MediaCollection(
+					MediaCollection.Directory.getValue(
+						rs.getString("directory")),
+					rs.getString("last_directory"),
+					rs.getLong("passes"),
+					rs.getLong("files_scanned"),
+					rs.getLong("files_quarantined"),
+					rs.getLong("files_restored"),
+					rs.getLong("files_deleted"),
+					rs.getLong("bytes_deleted"),
+					(lastPass == null) ?
+						null :
+						new DateTime(lastPass.getTime()));
+			}
+		};
+
+	/**
+	 * Creates this object via dependency injection (reflection).
+	 * 
+	 * @param dataSource The DataSource to use when querying the database.
+	 */
+	private MediaCollectionQueries(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IMediaCollectionQueries#getMediaCollections()
+	 */
+	@Override
+	public List<MediaCollection> getMediaCollections()
+			throws DataAccessException {
+
+		try {
+			return
+				getJdbcTemplate().query(
+					SQL_GET_ALL_COLLECTIONS,
+					COLLECTION_MAPPER);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + SQL_GET_ALL_COLLECTIONS + "'.",
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IMediaCollectionQueries#getMediaCollection(org.ohmage.domain.MediaCollection.Directory)
+	 */
+	@Override
+	public MediaCollection getMediaCollection(
+			final MediaCollection.Directory directory)
+			throws DataAccessException {
+
+		try {
+			List<MediaCollection> result =
+				getJdbcTemplate().query(
+					SQL_GET_COLLECTION,
+					new Object[] { directory.toString() },
+					COLLECTION_MAPPER);
+
+			if(result.isEmpty()) {
+				return
+					new MediaCollection(
+						directory,
+						"",
+						0,
+						0,
+						0,
+						0,
+						0,
+						0,
+						null);
+			}
+			return result.get(0);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_GET_COLLECTION +
+					"' with parameter: " +
+					directory,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IMediaCollectionQueries#getReferencedUuids(java.util.Collection)
+	 */
+	@Override
+	public Set<String> getReferencedUuids(
+			final Collection<String> uuids)
+			throws DataAccessException {
+
+		Set<String> result = new HashSet<String>();
+		if(uuids.isEmpty()) {
+			return result;
+		}
+
+		String plist = StringUtils.generateStatementPList(uuids.size());
+		result.addAll(getUuids(SQL_GET_MEDIA_UUIDS + plist, uuids));
+		result.addAll(getUuids(SQL_GET_DOCUMENT_UUIDS + plist, uuids));
+
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IMediaCollectionQueries#updateMediaCollectionProgress(org.ohmage.domain.MediaCollection.Directory, java.lang.String, long, long, long, long, long)
+	 */
+	@Override
+	public void updateMediaCollectionProgress(
+			final MediaCollection.Directory directory,
+			final String lastDirectory,
+			final long filesScanned,
+			final long filesQuarantined,
+			final long filesRestored,
+			final long filesDeleted,
+			final long bytesDeleted)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(
+				SQL_UPDATE_PROGRESS,
+				directory.toString(),
+				lastDirectory,
+				filesScanned,
+				filesQuarantined,
+				filesRestored,
+				filesDeleted,
+				bytesDeleted);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_PROGRESS +
+					"' with parameters: " +
+					directory + ", " +
+					lastDirectory + ", " +
+					filesScanned + ", " +
+					filesQuarantined + ", " +
+					filesRestored + ", " +
+					filesDeleted + ", " +
+					bytesDeleted,
+				e);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IMediaCollectionQueries#completeMediaCollectionPass(org.ohmage.domain.MediaCollection.Directory)
+	 */
+	@Override
+	public void completeMediaCollectionPass(
+			final MediaCollection.Directory directory)
+			throws DataAccessException {
+
+		try {
+			getJdbcTemplate().update(
+				SQL_UPDATE_COMPLETE_PASS,
+				directory.toString());
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					SQL_UPDATE_COMPLETE_PASS +
+					"' with parameter: " +
+					directory,
+				e);
+		}
+	}
+
+	/**
+	 * Returns the unique identifiers a query finds.
+	 * 
+	 * @param sql The SQL that returns a "uuid" column.
+	 * 
+	 * @param uuids The SQL's parameters.
+	 * 
+	 * @return The unique identifiers.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private List<String> getUuids(
+			final String sql,
+			final Collection<String> uuids)
+			throws DataAccessException {
+
+		try {
+			return
+				getJdbcTemplate().query(
+					sql,
+					uuids.toArray(),
+					new RowMapper<String>() {
+						@Override
+						public String mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+
+							return rs.getString("uuid");
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql +
+					"' with parameters: " +
+					uuids,
+				e);
+		}
+	}
+}
@@ -1,40 +1,58 @@
 package org.ohmage.query.impl;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.sql.DataSource;
 
+import org.apache.log4j.Logger;
 import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonParseException;
 import org.codehaus.jackson.JsonParser;
 import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.MappingJsonFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.node.ArrayNode;
+import org.codehaus.jackson.node.JsonNodeFactory;
+import org.codehaus.jackson.node.ObjectNode;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.ISODateTimeFormat;
+import org.ohmage.cache.ObserverCache;
+import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.domain.DataStream;
 import org.ohmage.domain.DataStream.MetaData;
+import org.ohmage.domain.DataStreamBucket;
 import org.ohmage.domain.Location;
 import org.ohmage.domain.Observer;
 import org.ohmage.domain.Observer.Stream;
+import org.ohmage.exception.CacheMissException;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.query.IObserverQueries;
 import org.ohmage.service.ObserverServices.InvalidPoint;
 import org.ohmage.util.StringUtils;
 import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -52,6 +70,96 @@ import org.springframework.transaction.support.DefaultTransactionDefinition;
  * @author John Jenkins
  */
 public class ObserverQueries extends Query implements IObserverQueries {
+	private static final Logger LOGGER = Logger.getLogger(ObserverQueries.class);
+	
+	/**
+	 * The factory for the stream data that is stored as JSON text.
+	 */
+	private static final JsonFactory JSON_FACTORY = new MappingJsonFactory();
+	/**
+	 * The mapper for the stream data that is stored in the binary Smile
+	 * encoding.
+	 */
+	private static final ObjectMapper SMILE_MAPPER = 
+		new ObjectMapper(new SmileFactory());
+	
+	/**
+	 * The size, in milliseconds, of the hourly summaries of the stream data.
+	 */
+	static final long ROLLUP_HOUR = 1000L * 60 * 60;
+	/**
+	 * The size, in milliseconds, of the daily summaries of the stream data.
+	 */
+	static final long ROLLUP_DAY = ROLLUP_HOUR * 24;
+	
+	// The preference key for the ID of the last point that was added to the
+	// day index by the backfill.
+	private static final String KEY_DAY_BACKFILL_ID =
+		"observer_stream_data_day_backfill_id";
+	
+	// The preference key for the ID of the last point that was uploaded
+	// before the day index existed.
+	private static final String KEY_DAY_BACKFILL_END =
+		"observer_stream_data_day_backfill_end";
+	
+	private static final String SQL_INSERT_DAY =
+		"INSERT IGNORE INTO observer_stream_data_day (" +
+			"user_id, " +
+			"observer_stream_link_id, " +
+			"day) " +
+		"VALUES (" +
+			"(SELECT id FROM user WHERE username = ?), " +
+			"?, " +
+			"?)";
+	
+	private static final String SQL_GET_PREFERENCE =
+		"SELECT p_value " +
+		"FROM preference " +
+		"WHERE p_key = ?";
+	
+	private static final String SQL_UPDATE_PREFERENCE =
+		"UPDATE preference " +
+		"SET p_value = ? " +
+		"WHERE p_key = ?";
+	
+	// The points may have been archived since the backfill began, so both
+	// tables are read.
+	private static final String SQL_GET_POINTS_FOR_DAY_BACKFILL =
+		"SELECT osd.id, osd.user_id, osd.observer_stream_link_id, " +
+			"osd.time_adjusted " +
+		"FROM (" +
+			"(" +
+				"SELECT id, user_id, observer_stream_link_id, time_adjusted " +
+				"FROM observer_stream_data " +
+				"WHERE id > ? " +
+				"AND id <= ? " +
+				"ORDER BY id " +
+				"LIMIT ?" +
+			") " +
+			"UNION ALL " +
+			"(" +
+				"SELECT id, user_id, observer_stream_link_id, time_adjusted " +
+				"FROM observer_stream_data_archive " +
+				"WHERE id > ? " +
+				"AND id <= ? " +
+				"ORDER BY id " +
+				"LIMIT ?" +
+			")" +
+		") AS osd " +
+		"ORDER BY osd.id " +
+		"LIMIT ?";
+	
+	private static final String SQL_INSERT_DAY_FOR_BACKFILL =
+		"INSERT IGNORE INTO observer_stream_data_day (" +
+			"user_id, " +
+			"observer_stream_link_id, " +
+			"day) " +
+		"VALUES (?, ?, ?)";
+	
+	// Whether or not the backfill has finished, meaning that every day that
+	// has data is in the day index. Once set, this never changes.
+	private static volatile boolean dayIndexComplete = false;
+	
 	/**
 	 * Creates this object via dependency injection (reflection).
 	 * 
@@ -273,6 +381,9 @@ public class ObserverQueries extends Query implements IObserverQueries {
 					"Error while committing the transaction.",
 					e);
 			}
+
+			// Any cached definitions of this observer are now stale.
+			ObserverCache.invalidate(observer.getId());
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException(
@@ -883,22 +994,12 @@ public class ObserverQueries extends Query implements IObserverQueries {
 				"location_longitude, " +
 				"location_accuracy, " +
 				"location_provider, " +
-				"data) " +
+				"data, " +
+				"data_smile) " +
 			"VALUES (" +
 				"(SELECT id FROM user WHERE username = ?), " +
-				"(" +
-					"SELECT osl.id " +
-					"FROM " +
-						"observer o, " +
-						"observer_stream os, " +
-						"observer_stream_link osl " +
-					"WHERE o.observer_id = ? " +
-					"AND o.version = ? " +
-					"AND os.stream_id = ? " +
-					"AND os.version = ? " +
-					"AND o.id = osl.observer_id " +
-					"AND os.id = osl.observer_stream_id" +
-				"), " +
+				"?, " +
+				"?, " +
 				"?, " +
 				"?, " +
 				"?, " +
@@ -911,8 +1012,51 @@ public class ObserverQueries extends Query implements IObserverQueries {
 				"?, " +
 				"?)";
 		
+		// New data is stored in the binary encoding unless it has been 
+		// disabled.
+		boolean binary = false;
+		try {
+			binary = 
+				Boolean.TRUE.equals(
+					StringUtils.decodeBoolean(
+						PreferenceCache.instance().lookup(
+							PreferenceCache.KEY_OBSERVER_STREAM_DATA_BINARY)));
+		}
+		catch(CacheMissException e) {
+			// The preference is missing, so the data is stored as text.
+		}
+		
+		// Resolve the link for each of the streams once, rather than for
+		// every point.
+		Map<Stream, Long> linkIds = new HashMap<Stream, Long>();
+		
+		// The hours whose summaries must be recomputed and the local days
+		// that have data for each link.
+		Map<Long, Set<Long>> pendingHours = new HashMap<Long, Set<Long>>();
+		Map<Long, Set<Long>> days = new HashMap<Long, Set<Long>>();
+		
 		List<Object[]> args = new ArrayList<Object[]>(data.size());
 		for(DataStream currData : data) {
+			Stream stream = currData.getStream();
+			Long linkId = linkIds.get(stream);
+			if(linkId == null) {
+				linkId =
+					getStreamLinkId(
+						observer.getId(),
+						observer.getVersion(),
+						stream.getId(),
+						stream.getVersion());
+				if(linkId == null) {
+					throw new DataAccessException(
+						"The stream is not part of the observer: " +
+							"Observer ID: " + observer.getId() + " " +
+							"Observer Version: " + observer.getVersion() + " " +
+							"Stream ID: " + stream.getId() + " " +
+							"Stream Version: " + stream.getVersion());
+				}
+				linkIds.put(stream, linkId);
+			}
+			
 			MetaData metaData = currData.getMetaData();
 			String id = null;
 			DateTime timestamp = null;
@@ -933,13 +1077,39 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			String timeZoneId = 
 				(timestamp == null) ? null : timestamp.getZone().getID();
 			
+			if(timeAdjusted != null) {
+				Set<Long> hours = pendingHours.get(linkId);
+				if(hours == null) {
+					hours = new HashSet<Long>();
+					pendingHours.put(linkId, hours);
+				}
+				hours.add(truncate(timeAdjusted, ROLLUP_HOUR));
+				
+				Set<Long> linkDays = days.get(linkId);
+				if(linkDays == null) {
+					linkDays = new HashSet<Long>();
+					days.put(linkId, linkDays);
+				}
+				linkDays.add(truncate(timeAdjusted, ROLLUP_DAY) / ROLLUP_DAY);
+			}
+			
+			byte[] dataSmile = null;
+			if(binary) {
+				try {
+					dataSmile = 
+						SMILE_MAPPER.writeValueAsBytes(currData.getData());
+				}
+				catch(IOException e) {
+					throw new DataAccessException(
+						"The data could not be encoded.", 
+						e);
+				}
+			}
+			
 			args.add(
 				new Object[] {
 					username,
-					observer.getId(),
-					observer.getVersion(),
-					currData.getStream().getId(),
-					currData.getStream().getVersion(),
+					linkId,
 					id,
 					time,
 					timeOffset,
@@ -950,11 +1120,36 @@ public class ObserverQueries extends Query implements IObserverQueries {
 					(location == null) ? null : location.getLongitude(),
 					(location == null) ? null : location.getAccuracy(),
 					(location == null) ? null : location.getProvider(),
-					currData.getData().toString()
+					(binary) ? null : currData.getData().toString(),
+					dataSmile
 				}
 			);
 		}
 		
+		String sqlPending =
+			"INSERT IGNORE INTO observer_stream_data_rollup_pending (" +
+				"user_id, " +
+				"observer_stream_link_id, " +
+				"hour_start) " +
+			"VALUES (" +
+				"(SELECT id FROM user WHERE username = ?), " +
+				"?, " +
+				"?)";
+		
+		List<Object[]> pendingArgs = new ArrayList<Object[]>();
+		for(Long linkId : pendingHours.keySet()) {
+			for(Long hour : pendingHours.get(linkId)) {
+				pendingArgs.add(new Object[] { username, linkId, hour });
+			}
+		}
+		
+		List<Object[]> dayArgs = new ArrayList<Object[]>();
+		for(Long linkId : days.keySet()) {
+			for(Long day : days.get(linkId)) {
+				dayArgs.add(new Object[] { username, linkId, day });
+			}
+		}
+		
 		// Create the transaction.
 		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
 		def.setName("Inserting stream data.");
@@ -975,6 +1170,33 @@ public class ObserverQueries extends Query implements IObserverQueries {
 					e);
 			}
 			
+			// Mark the hours that received points so that their summaries
+			// are recomputed.
+			if(! pendingArgs.isEmpty()) {
+				try {
+					getJdbcTemplate().batchUpdate(sqlPending, pendingArgs);
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException(
+						"Error executing SQL '" + sqlPending +"'.", 
+						e);
+				}
+			}
+			
+			// Add the days to the index of the days that have data.
+			if(! dayArgs.isEmpty()) {
+				try {
+					getJdbcTemplate().batchUpdate(SQL_INSERT_DAY, dayArgs);
+				}
+				catch(org.springframework.dao.DataAccessException e) {
+					transactionManager.rollback(status);
+					throw new DataAccessException(
+						"Error executing SQL '" + SQL_INSERT_DAY +"'.", 
+						e);
+				}
+			}
+			
 			// Commit the transaction.
 			try {
 				transactionManager.commit(status);
@@ -1080,7 +1302,7 @@ public class ObserverQueries extends Query implements IObserverQueries {
 
 	/*
 	 * (non-Javadoc)
-	 * @see org.ohmage.query.IObserverQueries#readData(org.ohmage.domain.Observer.Stream, java.lang.String, java.lang.String, java.lang.Long, org.joda.time.DateTime, org.joda.time.DateTime, boolean, long, long)
+	 * @see org.ohmage.query.IObserverQueries#readData(org.ohmage.domain.Observer.Stream, java.lang.String, java.lang.String, java.lang.Long, org.joda.time.DateTime, org.joda.time.DateTime, boolean, org.ohmage.domain.DataStream.Cursor, long, long, org.ohmage.domain.ColumnNode)
 	 */
 	@Override
 	public List<DataStream> readData(
@@ -1091,97 +1313,40 @@ public class ObserverQueries extends Query implements IObserverQueries {
 			final DateTime startDate,
 			final DateTime endDate,
 			final boolean chronological,
+			final DataStream.Cursor cursor,
 			final long numToSkip,
-			final long numToReturn) 
+			final long numToReturn,
+			final ColumnNode<String> columns) 
 			throws DataAccessException {
 		
-		// Create the initial query and required set of parameters.
-		StringBuilder builder = 
-			new StringBuilder(
-				"SELECT " +
-					"osd.uid, " +
-					"osd.time, " +
-					"osd.time_zone, " +
-					"osd.location_timestamp, " +
-					"osd.location_latitude, " +
-					"osd.location_longitude, " +
-					"osd.location_accuracy, " +
-					"osd.location_provider, " +
-					"osd.data " +
-				"FROM " +
-					"observer_stream_data AS osd FORCE INDEX (observer_stream_data_query)" +
-				"WHERE " +
-					"osd.user_id = (" +
-						"SELECT id " +
-						"FROM user " +
-						"WHERE username = ?" +
-					") " +
-                "AND osd.observer_stream_link_id = " +
-					"( SELECT id FROM observer_stream_link WHERE observer_id = " +
-						"( SELECT id FROM observer WHERE observer_id = ? ");
-				
-		List<Object> parameters = new LinkedList<Object>();
-		parameters.add(username);
-		parameters.add(observerId);
-		
-		// If the observer's version is specified, add it to the sub-query.
-		if(observerVersion != null) {
-			builder.append(" AND version = ?)");
-			parameters.add(observerVersion);
-		}
-		// Otherwise, end the subquery.
-		else {
-			builder.append(" ORDER BY version DESC LIMIT 1)");
-		}
-		
-		// Add the remainder of the required parameters and their query
-		// components.
-		builder
-			.append(
-				" AND observer_stream_id IN " +
-				"(" +
-					"SELECT id " +
-					"FROM observer_stream " +
-					"WHERE stream_id = ? " +
-					"AND version = ?" +
-				")");
-        
-		builder.append(")");
-		
-		parameters.add(stream.getId());
-		parameters.add(stream.getVersion());
-		
-		// If a start date is given, add it to the overall query.
-		if(startDate != null) {
-			builder.append(" AND osd.time_adjusted >= ?");
-			parameters.add(startDate.getMillis());
-		}
-
-		// If an end date is given, add it to the overall query.
-		if(endDate != null) {
-			builder.append(" AND osd.time_adjusted <= ?");
-			parameters.add(endDate.getMillis());
+		// If the observer doesn't have this stream, there is no data.
+		Long linkId = 
+			getStreamLinkId(
+				observerId, 
+				observerVersion, 
+				stream.getId(), 
+				stream.getVersion());
+		if(linkId == null) {
+			return Collections.emptyList();
 		}
 		
-		// Add the ordering based on whether or not these should be 
-		// chronological or reverse chronological.
-		builder
-			.append(
-				" ORDER BY osd.time " + ((chronological) ? "ASC" : "DESC"));
-		
-		// Limit the number of results based on the paging.
-		builder.append(" LIMIT ?, ?");
-		parameters.add(numToSkip);
-		parameters.add(numToReturn);
-		
-		// Create a JSON factory, which will be used by each data point to
-		// deserialize its data into a JsonNode.
-		final JsonFactory jsonFactory = new MappingJsonFactory();
+		List<Object> parameters = new LinkedList<Object>();
+		String sql =
+			buildReadDataSql(
+				username,
+				linkId,
+				startDate,
+				endDate,
+				chronological,
+				cursor,
+				numToSkip,
+				numToReturn,
+				parameters);
 		
 		try {
-			return
-				getJdbcTemplate().query(
-					builder.toString(),
+			List<DataStream> result =
+				getReadOnlyJdbcTemplate().query(
+					sql,
 					parameters.toArray(),
 					new RowMapper<DataStream>() {
 						/**
@@ -1246,32 +1411,18 @@ public class ObserverQueries extends Query implements IObserverQueries {
 								metaDataBuilder.setLocation(location);
 							}
 							
-							JsonNode data;
-							try {
-								JsonParser parser =
-									jsonFactory
-										.createJsonParser(
-											rs.getString("osd.data"));
-								data = parser.readValueAsTree();
-							}
-							catch(JsonParseException e) {
-								throw new SQLException(
-									"The data in the database is invalid: " +
-										id,
-									e);
-							}
-							catch(IOException e) {
-								throw new SQLException(
-									"There was a problem reading the data: " +
-										id,
-									e);
-							}
+							// Only the requested columns are decoded.
+							JsonNode data = decodeData(rs, columns);
 							
 							try {
 								return new DataStream(
 									stream, 
 									metaDataBuilder.build(), 
-									data);
+									data,
+									new DataStream.Cursor(
+										rs.getLong("osd.time"),
+										rs.getLong("osd.id"),
+										false));
 							}
 							catch(DomainException e) {
 								throw new SQLException(
@@ -1280,101 +1431,1682 @@ public class ObserverQueries extends Query implements IObserverQueries {
 							}
 						}
 					});
+			
+			if((cursor != null) && cursor.isBefore()) {
+				Collections.reverse(result);
+			}
+			
+			return result;
 		}
 		catch(org.springframework.dao.DataAccessException e) {
 			throw new DataAccessException(
 				"Error executing SQL '" + 
-					builder.toString() + 
+					sql + 
 					"' with parameters: " +
 					parameters,
 				e);
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * @see org.ohmage.query.IObserverQueries#readInvalidData(org.ohmage.domain.Observer, org.joda.time.DateTime, org.joda.time.DateTime, long, long)
+	/**
+	 * Builds the query that reads a page of a user's stream data from both
+	 * the live and the archive tables.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param linkId The database ID of the observer's link to the stream.
+	 * 
+	 * @param startDate The earliest time of a point or null.
+	 * 
+	 * @param endDate The latest time of a point or null.
+	 * 
+	 * @param chronological Whether the points are ordered oldest first.
+	 * 
+	 * @param cursor The cursor to read from or null to use the number to
+	 * 				 skip.
+	 * 
+	 * @param numToSkip The number of points to skip, if there is no cursor.
+	 * 
+	 * @param numToReturn The number of points to return.
+	 * 
+	 * @param parameters The collection to which the query's parameters are
+	 * 					 added, in order.
+	 * 
+	 * @return The query. A cursor that refers to the preceding points reads
+	 * 		   them in the opposite order, so the caller must reverse them.
 	 */
-	@Override
-	public Collection<InvalidPoint> readInvalidData(
-		final Observer observer,
-		final DateTime startDate,
-		final DateTime endDate,
-		final long numToSkip,
-		final long numToReturn) 
-		throws DataAccessException {
+	static String buildReadDataSql(
+			final String username,
+			final long linkId,
+			final DateTime startDate,
+			final DateTime endDate,
+			final boolean chronological,
+			final DataStream.Cursor cursor,
+			final long numToSkip,
+			final long numToReturn,
+			final Collection<Object> parameters) {
 		
-		// Build the SQL.
-		StringBuilder sqlBuilder =
+		// The points are read from both the live and the archive tables, and
+		// each table is filtered, ordered, and limited on its own so that
+		// the union never holds more than a page from each.
+		StringBuilder where = 
 			new StringBuilder(
-				"SELECT osdi.point_index, osdi.reason, osdi.data " +
-					"FROM " +
-						"observer o, " +
-						"observer_stream_data_invalid osdi " +
-					"WHERE o.id = osdi.observer_id " +
-					"AND o.observer_id = ? " +
-					"AND o.version = ? ");
-		
-		// Create the list of parameters.
-		List<Object> parameters = new LinkedList<Object>();
-		parameters.add(observer.getId());
-		parameters.add(observer.getVersion());
+				"WHERE " +
+					"user_id = (" +
+						"SELECT id " +
+						"FROM user " +
+						"WHERE username = ?" +
+					") " +
+				"AND observer_stream_link_id = ?");
+				
+		List<Object> whereParameters = new LinkedList<Object>();
+		whereParameters.add(username);
+		whereParameters.add(linkId);
 		
-		// If the start date was given, add it.
+		// If a start date is given, add it to the overall query.
 		if(startDate != null) {
-			sqlBuilder.append("AND time_recorded >= ? ");
-			parameters.add(startDate.getMillis());
+			where.append(" AND time_adjusted >= ?");
+			whereParameters.add(startDate.getMillis());
 		}
-		
-		// If the end date was given, add it.
+
+		// If an end date is given, add it to the overall query.
 		if(endDate != null) {
-			sqlBuilder.append("AND time_recorded <= ? ");
-			parameters.add(endDate.getMillis());
+			where.append(" AND time_adjusted <= ?");
+			whereParameters.add(endDate.getMillis());
 		}
 		
-		// Add the ordering.
-		sqlBuilder.append("ORDER BY time_recorded ");
-		
-		// Add the paging parameters.
-		sqlBuilder.append("LIMIT ?, ?");
-		parameters.add(numToSkip);
-		parameters.add(numToReturn);
-		
-		try {
-			return
-				getJdbcTemplate()
-					.query(
-						sqlBuilder.toString(),
-						parameters.toArray(),
-						new RowMapper<InvalidPoint>() {
-							/*
-							 * (non-Javadoc)
-							 * @see org.springframework.jdbc.core.RowMapper#mapRow(java.sql.ResultSet, int)
-							 */
-							@Override
-							public InvalidPoint mapRow(
-								final ResultSet resultSet,
-								final int rowNum)
-								throws SQLException {
-
-								// Create the point and return it.
-								return
-									new InvalidPoint(
-										resultSet.getLong("point_index"),
-										resultSet.getString("data"),
-										resultSet.getString("reason"),
-										null);
-							}
-						}
-					);
+		// With a cursor, seek directly to the points on the other side of it,
+		// using the ID to order points with the same time. A cursor that 
+		// refers to the preceding points is read in the opposite order and 
+		// then reversed. Without one, each table must return every point up
+		// to the end of the requested page.
+		String order;
+		long innerLimit;
+		if(cursor != null) {
+			boolean ascending = (chronological != cursor.isBefore());
+			String comparison = (ascending) ? ">" : "<";
+			String direction = (ascending) ? "ASC" : "DESC";
+			
+			where
+				.append(" AND (time ")
+				.append(comparison)
+				.append(" ? OR (time = ? AND id ")
+				.append(comparison)
+				.append(" ?))");
+			whereParameters.add(cursor.getTime());
+			whereParameters.add(cursor.getTime());
+			whereParameters.add(cursor.getId());
+			
+			order = "time " + direction + ", id " + direction;
+			innerLimit = numToReturn;
 		}
-		catch(org.springframework.dao.DataAccessException e) {
-			throw new DataAccessException(
-				"Error executing SQL '" + 
-					sqlBuilder.toString() + 
-					"' with parameters: " +
-					parameters,
-				e);
+		else {
+			// Add the ordering based on whether or not these should be 
+			// chronological or reverse chronological. Points with the same
+			// time are ordered by their ID, as with a cursor, so that the
+			// cursors built from this page continue from where it ended.
+			String direction = (chronological) ? "ASC" : "DESC";
+			order = "time " + direction + ", id " + direction;
+			innerLimit = numToSkip + numToReturn;
+		}
+		
+		String columnList =
+			"id, " +
+			"uid, " +
+			"time, " +
+			"time_zone, " +
+			"location_timestamp, " +
+			"location_latitude, " +
+			"location_longitude, " +
+			"location_accuracy, " +
+			"location_provider, " +
+			"data, " +
+			"data_smile ";
+		
+		StringBuilder builder = 
+			new StringBuilder(
+				"SELECT " +
+					"osd.id, " +
+					"osd.uid, " +
+					"osd.time, " +
+					"osd.time_zone, " +
+					"osd.location_timestamp, " +
+					"osd.location_latitude, " +
+					"osd.location_longitude, " +
+					"osd.location_accuracy, " +
+					"osd.location_provider, " +
+					"osd.data, " +
+					"osd.data_smile " +
+				"FROM (" +
+					"(" +
+						"SELECT " + columnList +
+						"FROM observer_stream_data FORCE INDEX (" +
+							((cursor == null) ?
+								"observer_stream_data_query" :
+								"observer_stream_data_cursor") +
+						") " +
+						where + " " +
+						"ORDER BY " + order + " " +
+						"LIMIT ?" +
+					") " +
+					"UNION ALL " +
+					"(" +
+						"SELECT " + columnList +
+						"FROM observer_stream_data_archive FORCE INDEX (" +
+							((cursor == null) ?
+								"observer_stream_data_archive_query" :
+								"observer_stream_data_archive_cursor") +
+						") " +
+						where + " " +
+						"ORDER BY " + order + " " +
+						"LIMIT ?" +
+					")" +
+				") AS osd " +
+				"ORDER BY osd." + order.replace(", id", ", osd.id"));
+		
+		parameters.addAll(whereParameters);
+		parameters.add(innerLimit);
+		parameters.addAll(whereParameters);
+		parameters.add(innerLimit);
+		
+		if(cursor != null) {
+			builder.append(" LIMIT ?");
+			parameters.add(numToReturn);
+		}
+		else {
+			// Limit the number of results based on the paging.
+			builder.append(" LIMIT ?, ?");
+			parameters.add(numToSkip);
+			parameters.add(numToReturn);
+		}
+		
+		return builder.toString();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#aggregateData(org.ohmage.domain.Observer.Stream, java.lang.String, java.lang.String, java.lang.Long, org.joda.time.DateTime, org.joda.time.DateTime, long, org.ohmage.domain.ColumnNode)
+	 */
+	@Override
+	public List<DataStreamBucket> aggregateData(
+			final Stream stream,
+			final String username,
+			final String observerId,
+			final Long observerVersion,
+			final DateTime startDate,
+			final DateTime endDate,
+			final long bucketSize,
+			final ColumnNode<String> columns)
+			throws DataAccessException {
+		
+		List<DataStreamBucket> result = new ArrayList<DataStreamBucket>();
+		
+		// If the observer doesn't have this stream, there is no data.
+		Long linkId = 
+			getStreamLinkId(
+				observerId, 
+				observerVersion, 
+				stream.getId(), 
+				stream.getVersion());
+		if(linkId == null) {
+			return result;
+		}
+		
+		// The columns are summarized in the order of their paths.
+		List<List<String>> paths = columns.toPaths();
+		List<String> names = getColumnNames(paths);
+		
+		// The buckets are aligned to the start date.
+		long origin = startDate.getMillis();
+		long end = endDate.getMillis();
+		
+		// When the buckets are made up of whole hours, the whole hours are 
+		// read from the summaries, and only the remainder is read from the
+		// raw points. Whole days are read from the daily summaries if the
+		// buckets are also made up of whole days. The summaries are aligned
+		// to UTC, so days that start at a local midnight away from UTC are
+		// read from the hourly summaries instead, and an origin that isn't on
+		// a UTC hour is read entirely from the raw points, which include the
+		// archived points.
+		long[] rollupEnds = getRollupEnds(origin, end, bucketSize);
+		long dayEnd = rollupEnds[0];
+		long rawStart = rollupEnds[1];
+		if(rawStart > origin) {
+			// Bring the summaries up to date before reading them.
+			rollUpPending(username, linkId, origin, rawStart);
+			
+			readRollups(
+				username, 
+				linkId, 
+				ROLLUP_DAY, 
+				origin, 
+				dayEnd, 
+				origin, 
+				bucketSize, 
+				names, 
+				result);
+			readRollups(
+				username, 
+				linkId, 
+				ROLLUP_HOUR, 
+				dayEnd, 
+				rawStart, 
+				origin, 
+				bucketSize, 
+				names, 
+				result);
+		}
+		
+		if(rawStart <= end) {
+			readRaw(
+				username, 
+				linkId, 
+				rawStart, 
+				end, 
+				origin, 
+				bucketSize, 
+				columns, 
+				paths, 
+				names, 
+				result);
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#processRollups(int)
+	 */
+	@Override
+	public int processRollups(final int maxHours) throws DataAccessException {
+		String sql =
+			"SELECT user_id, observer_stream_link_id, hour_start " +
+			"FROM observer_stream_data_rollup_pending " +
+			"LIMIT ?";
+		
+		List<long[]> pending;
+		try {
+			pending =
+				getJdbcTemplate().query(
+					sql,
+					new Object[] { maxHours },
+					new RowMapper<long[]>() {
+						/**
+						 * Returns the user's ID, the link's ID, and the
+						 * beginning of the hour.
+						 */
+						@Override
+						public long[] mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+							
+							return new long[] {
+								rs.getLong("user_id"),
+								rs.getLong("observer_stream_link_id"),
+								rs.getLong("hour_start")
+							};
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameter: " + 
+					maxHours,
+				e);
+		}
+		
+		// Many of the pending hours will usually belong to the same stream.
+		Map<Long, List<List<String>>> columnsByLink = 
+			new HashMap<Long, List<List<String>>>();
+		for(long[] hour : pending) {
+			List<List<String>> paths = columnsByLink.get(hour[1]);
+			if(paths == null) {
+				paths = getRollupColumns(hour[1]);
+				columnsByLink.put(hour[1], paths);
+			}
+			
+			rollUpHour(hour[0], hour[1], hour[2], paths);
+		}
+		
+		return pending.size();
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#archiveData(int)
+	 */
+	@Override
+	public int archiveData(final int maxPoints) throws DataAccessException {
+		String sql =
+			"SELECT osl.id, osr.raw_retention_days " +
+			"FROM " +
+				"observer_stream_retention osr, " +
+				"observer o, " +
+				"observer_stream os, " +
+				"observer_stream_link osl " +
+			"WHERE o.observer_id = osr.observer_id " +
+			"AND os.stream_id = osr.stream_id " +
+			"AND osl.observer_id = o.id " +
+			"AND osl.observer_stream_id = os.id";
+		
+		final Map<Long, Long> retentionDays = new HashMap<Long, Long>();
+		try {
+			getJdbcTemplate().query(
+				sql,
+				new RowCallbackHandler() {
+					@Override
+					public void processRow(
+							final ResultSet rs)
+							throws SQLException {
+						
+						retentionDays.put(
+							rs.getLong("osl.id"), 
+							rs.getLong("osr.raw_retention_days"));
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + sql + "'.",
+				e);
+		}
+		
+		long now = System.currentTimeMillis();
+		int result = 0;
+		for(Long linkId : retentionDays.keySet()) {
+			if(result >= maxPoints) {
+				break;
+			}
+			
+			result += 
+				archiveData(
+					linkId, 
+					now - (retentionDays.get(linkId) * ROLLUP_DAY), 
+					maxPoints - result);
+		}
+		
+		return result;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#backfillStreamDays(int)
+	 */
+	@Override
+	public int backfillStreamDays(
+			final int batchSize)
+			throws DataAccessException {
+		
+		if(dayIndexComplete) {
+			return 0;
+		}
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Backfilling the stream data day index.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			long lastId;
+			long endId;
+			try {
+				lastId = 
+					Long.parseLong(
+						getJdbcTemplate().queryForObject(
+							SQL_GET_PREFERENCE + " FOR UPDATE", 
+							new Object[] { KEY_DAY_BACKFILL_ID }, 
+							String.class));
+				endId = 
+					Long.parseLong(
+						getJdbcTemplate().queryForObject(
+							SQL_GET_PREFERENCE, 
+							new Object[] { KEY_DAY_BACKFILL_END }, 
+							String.class));
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_GET_PREFERENCE + 
+						"' with parameters: " + 
+						KEY_DAY_BACKFILL_ID + ", " + 
+						KEY_DAY_BACKFILL_END,
+					e);
+			}
+			catch(NumberFormatException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"The day index backfill preferences are not numbers.",
+					e);
+			}
+			
+			final List<Long> ids = new ArrayList<Long>(batchSize);
+			final Set<List<Long>> days = new HashSet<List<Long>>();
+			try {
+				getJdbcTemplate().query(
+					SQL_GET_POINTS_FOR_DAY_BACKFILL, 
+					new Object[] { 
+						lastId, endId, batchSize, 
+						lastId, endId, batchSize, 
+						batchSize }, 
+					new RowCallbackHandler() {
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							ids.add(rs.getLong("id"));
+							
+							long timeAdjusted = rs.getLong("time_adjusted");
+							if(! rs.wasNull()) {
+								days.add(
+									Arrays.asList(
+										rs.getLong("user_id"),
+										rs.getLong("observer_stream_link_id"),
+										truncate(timeAdjusted, ROLLUP_DAY) / 
+											ROLLUP_DAY));
+							}
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_GET_POINTS_FOR_DAY_BACKFILL + 
+						"' with parameters: " + 
+						lastId + ", " + 
+						endId + ", " + 
+						batchSize,
+					e);
+			}
+			
+			if(ids.isEmpty()) {
+				transactionManager.rollback(status);
+				
+				LOGGER.info("The stream data day index is complete.");
+				dayIndexComplete = true;
+				return 0;
+			}
+			
+			List<Object[]> dayArgs = new ArrayList<Object[]>(days.size());
+			for(List<Long> day : days) {
+				dayArgs.add(day.toArray());
+			}
+			try {
+				getJdbcTemplate().batchUpdate(
+					SQL_INSERT_DAY_FOR_BACKFILL, 
+					dayArgs);
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_INSERT_DAY_FOR_BACKFILL + 
+						"'.",
+					e);
+			}
+			
+			lastId = ids.get(ids.size() - 1);
+			try {
+				getJdbcTemplate().update(
+					SQL_UPDATE_PREFERENCE, 
+					Long.toString(lastId), 
+					KEY_DAY_BACKFILL_ID);
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_UPDATE_PREFERENCE + 
+						"' with parameters: " + 
+						lastId + ", " + 
+						KEY_DAY_BACKFILL_ID,
+					e);
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.", 
+					e);
+			}
+			
+			return ids.size();
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.", 
+				e);
+		}
+	}
+	
+	/**
+	 * Returns whether or not every day that has stream data is in the day 
+	 * index. Until this is true, reads cannot rely on the index.
+	 * 
+	 * @return Whether or not the day index is complete.
+	 */
+	static boolean isDayIndexComplete() {
+		return dayIndexComplete;
+	}
+	
+	/**
+	 * Returns the names of the columns, which are the parts of their paths
+	 * separated by colons, as in a column list.
+	 * 
+	 * @param paths The paths to the columns.
+	 * 
+	 * @return The names of the columns in the same order.
+	 */
+	static List<String> getColumnNames(
+			final List<List<String>> paths) {
+		
+		List<String> result = new ArrayList<String>(paths.size());
+		for(List<String> path : paths) {
+			StringBuilder name = new StringBuilder();
+			for(String part : path) {
+				if(name.length() > 0) {
+					name.append(':');
+				}
+				name.append(part);
+			}
+			result.add(name.toString());
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the numeric values of the columns in a point.
+	 * 
+	 * @param data The point's data.
+	 * 
+	 * @param paths The paths to the columns.
+	 * 
+	 * @return The values in the same order as the paths, where the value is
+	 * 		   null if the point doesn't have a number at that path.
+	 */
+	static List<Double> getValues(
+			final JsonNode data,
+			final List<List<String>> paths) {
+		
+		List<Double> result = new ArrayList<Double>(paths.size());
+		for(List<String> path : paths) {
+			JsonNode value = data;
+			for(String part : path) {
+				if(value == null) {
+					break;
+				}
+				value = value.get(part);
+			}
+			
+			if((value != null) && value.isNumber()) {
+				result.add(value.getDoubleValue());
+			}
+			else {
+				result.add(null);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Splits the range of an aggregate into the whole days that are read from
+	 * the daily summaries, followed by the whole hours that are read from the
+	 * hourly summaries, followed by the remainder that is read from the raw
+	 * points.
+	 * 
+	 * @param origin The start of the range, inclusive, to which the buckets
+	 * 				 are aligned.
+	 * 
+	 * @param end The end of the range, inclusive.
+	 * 
+	 * @param bucketSize The length of each bucket in milliseconds.
+	 * 
+	 * @return The end, exclusive, of the daily summaries and the end, 
+	 * 		   exclusive, of the hourly summaries. The daily summaries begin
+	 * 		   at the origin, and the hourly summaries begin where the daily
+	 * 		   summaries end. Either is empty if it ends where it begins.
+	 */
+	static long[] getRollupEnds(
+			final long origin,
+			final long end,
+			final long bucketSize) {
+		
+		long dayEnd = origin;
+		long hourEnd = origin;
+		if(((origin % ROLLUP_HOUR) == 0) && ((bucketSize % ROLLUP_HOUR) == 0)) {
+			hourEnd = 
+				origin + (((end - origin + 1) / ROLLUP_HOUR) * ROLLUP_HOUR);
+			
+			if(((origin % ROLLUP_DAY) == 0) && 
+				((bucketSize % ROLLUP_DAY) == 0)) {
+				
+				dayEnd = 
+					origin + (((end - origin + 1) / ROLLUP_DAY) * ROLLUP_DAY);
+			}
+		}
+		
+		return new long[] { dayEnd, hourEnd };
+	}
+	
+	/**
+	 * Returns the bucket to which a point or summary belongs, creating it if
+	 * necessary. The points and summaries must be given in chronological
+	 * order.
+	 * 
+	 * @param buckets The buckets thus far, in chronological order.
+	 * 
+	 * @param time The adjusted time of the point or the start of the 
+	 * 			   summary.
+	 * 
+	 * @param origin The time to which the buckets are aligned.
+	 * 
+	 * @param bucketSize The length of each bucket in milliseconds.
+	 * 
+	 * @param columns The names of the columns being summarized.
+	 * 
+	 * @return The bucket.
+	 */
+	static DataStreamBucket getBucket(
+			final List<DataStreamBucket> buckets,
+			final long time,
+			final long origin,
+			final long bucketSize,
+			final List<String> columns) {
+		
+		long start = origin + (((time - origin) / bucketSize) * bucketSize);
+		
+		DataStreamBucket result = 
+			(buckets.isEmpty()) ? null : buckets.get(buckets.size() - 1);
+		if((result == null) || (result.getStart() != start)) {
+			result = new DataStreamBucket(start, columns);
+			buckets.add(result);
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the start of the period of the given size that contains the
+	 * time.
+	 * 
+	 * @param time The time in milliseconds.
+	 * 
+	 * @param size The size of the period in milliseconds.
+	 * 
+	 * @return The start of the period.
+	 */
+	static long truncate(final long time, final long size) {
+		return time - (((time % size) + size) % size);
+	}
+	
+	/**
+	 * Summarizes the raw points in a range into the buckets in a single 
+	 * pass. The points are streamed from the database in chronological
+	 * order.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @param start The earliest adjusted time to read, inclusive.
+	 * 
+	 * @param end The latest adjusted time to read, inclusive.
+	 * 
+	 * @param origin The time to which the buckets are aligned.
+	 * 
+	 * @param bucketSize The length of each bucket in milliseconds.
+	 * 
+	 * @param columns The columns to decode.
+	 * 
+	 * @param paths The paths to the columns.
+	 * 
+	 * @param names The names of the columns.
+	 * 
+	 * @param result The buckets, to which the points are added.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void readRaw(
+			final String username,
+			final long linkId,
+			final long start,
+			final long end,
+			final long origin,
+			final long bucketSize,
+			final ColumnNode<String> columns,
+			final List<List<String>> paths,
+			final List<String> names,
+			final List<DataStreamBucket> result)
+			throws DataAccessException {
+		
+		// The range may reach back into points that have been archived, so
+		// both tables are read.
+		final String sql =
+			"SELECT osd.id, osd.time_adjusted, osd.data, osd.data_smile " +
+			"FROM (" +
+				"(" +
+					"SELECT id, time_adjusted, data, data_smile " +
+					"FROM observer_stream_data " +
+						"FORCE INDEX (observer_stream_data_query) " +
+					"WHERE user_id = (" +
+						"SELECT id " +
+						"FROM user " +
+						"WHERE username = ?" +
+					") " +
+					"AND observer_stream_link_id = ? " +
+					"AND time_adjusted >= ? " +
+					"AND time_adjusted <= ?" +
+				") " +
+				"UNION ALL " +
+				"(" +
+					"SELECT id, time_adjusted, data, data_smile " +
+					"FROM observer_stream_data_archive " +
+						"FORCE INDEX (observer_stream_data_archive_query) " +
+					"WHERE user_id = (" +
+						"SELECT id " +
+						"FROM user " +
+						"WHERE username = ?" +
+					") " +
+					"AND observer_stream_link_id = ? " +
+					"AND time_adjusted >= ? " +
+					"AND time_adjusted <= ?" +
+				")" +
+			") AS osd " +
+			"ORDER BY osd.time_adjusted ASC";
+		final Object[] parameters = 
+			new Object[] { 
+				username, linkId, start, end, 
+				username, linkId, start, end };
+		
+		try {
+			getJdbcTemplate().query(
+				new PreparedStatementCreator() {
+					/**
+					 * Creates a statement whose rows are streamed from the 
+					 * database rather than all being read into memory.
+					 */
+					@Override
+					public PreparedStatement createPreparedStatement(
+							final Connection connection)
+							throws SQLException {
+						
+						PreparedStatement ps = 
+							connection.prepareStatement(
+								sql, 
+								ResultSet.TYPE_FORWARD_ONLY, 
+								ResultSet.CONCUR_READ_ONLY);
+						ps.setFetchSize(Integer.MIN_VALUE);
+						
+						for(int i = 0; i < parameters.length; i++) {
+							ps.setObject(i + 1, parameters[i]);
+						}
+						
+						return ps;
+					}
+				},
+				new RowCallbackHandler() {
+					/**
+					 * Adds the point to its bucket. The points are ordered
+					 * by time, so each bucket is complete once a point for
+					 * a later bucket is read.
+					 */
+					@Override
+					public void processRow(
+							final ResultSet rs)
+							throws SQLException {
+						
+						getBucket(
+								result, 
+								rs.getLong("osd.time_adjusted"), 
+								origin, 
+								bucketSize, 
+								names)
+							.add(getValues(decodeData(rs, columns), paths));
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameters: " +
+					Arrays.toString(parameters),
+				e);
+		}
+	}
+	
+	/**
+	 * Merges the hourly or daily summaries in a range into the buckets.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @param size The size of the summaries to read, either 
+	 * 			   {@link #ROLLUP_HOUR} or {@link #ROLLUP_DAY}.
+	 * 
+	 * @param start The start of the earliest summary to read, inclusive.
+	 * 
+	 * @param end The start of the latest summary to read, exclusive.
+	 * 
+	 * @param origin The time to which the buckets are aligned.
+	 * 
+	 * @param bucketSize The length of each bucket in milliseconds, which 
+	 * 					 must be a multiple of the summaries' size.
+	 * 
+	 * @param names The names of the columns.
+	 * 
+	 * @param result The buckets, to which the summaries are added.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void readRollups(
+			final String username,
+			final long linkId,
+			final long size,
+			final long start,
+			final long end,
+			final long origin,
+			final long bucketSize,
+			final List<String> names,
+			final List<DataStreamBucket> result)
+			throws DataAccessException {
+		
+		if(start >= end) {
+			return;
+		}
+		
+		String sql =
+			"SELECT bucket_start, count, data " +
+			"FROM observer_stream_data_rollup " +
+			"WHERE user_id = (" +
+				"SELECT id " +
+				"FROM user " +
+				"WHERE username = ?" +
+			") " +
+			"AND observer_stream_link_id = ? " +
+			"AND bucket_size = ? " +
+			"AND bucket_start >= ? " +
+			"AND bucket_start < ? " +
+			"ORDER BY bucket_start ASC";
+		Object[] parameters = 
+			new Object[] { username, linkId, size, start, end };
+		
+		try {
+			getJdbcTemplate().query(
+				sql,
+				parameters,
+				new RowCallbackHandler() {
+					@Override
+					public void processRow(
+							final ResultSet rs)
+							throws SQLException {
+						
+						long summaryStart = rs.getLong("bucket_start");
+						getBucket(
+								result, 
+								summaryStart, 
+								origin, 
+								bucketSize, 
+								names)
+							.merge(
+								new DataStreamBucket(
+									summaryStart, 
+									rs.getLong("count"), 
+									names, 
+									decodeSummary(rs.getBytes("data"))));
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameters: " +
+					Arrays.toString(parameters),
+				e);
+		}
+	}
+	
+	/**
+	 * Recomputes the summaries of a user's pending hours in a range.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @param start The start of the earliest hour, inclusive.
+	 * 
+	 * @param end The start of the latest hour, exclusive.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void rollUpPending(
+			final String username,
+			final long linkId,
+			final long start,
+			final long end)
+			throws DataAccessException {
+		
+		String sql =
+			"SELECT user_id, hour_start " +
+			"FROM observer_stream_data_rollup_pending " +
+			"WHERE user_id = (" +
+				"SELECT id " +
+				"FROM user " +
+				"WHERE username = ?" +
+			") " +
+			"AND observer_stream_link_id = ? " +
+			"AND hour_start >= ? " +
+			"AND hour_start < ?";
+		Object[] parameters = new Object[] { username, linkId, start, end };
+		
+		List<long[]> pending;
+		try {
+			pending =
+				getJdbcTemplate().query(
+					sql,
+					parameters,
+					new RowMapper<long[]>() {
+						/**
+						 * Returns the user's ID and the beginning of the 
+						 * hour.
+						 */
+						@Override
+						public long[] mapRow(
+								final ResultSet rs,
+								final int rowNum)
+								throws SQLException {
+							
+							return new long[] {
+								rs.getLong("user_id"),
+								rs.getLong("hour_start")
+							};
+						}
+					});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameters: " +
+					Arrays.toString(parameters),
+				e);
+		}
+		
+		if(pending.isEmpty()) {
+			return;
+		}
+		
+		List<List<String>> paths = getRollupColumns(linkId);
+		for(long[] hour : pending) {
+			rollUpHour(hour[0], linkId, hour[1], paths);
+		}
+	}
+	
+	/**
+	 * Returns the paths to the numeric columns of the stream of a link, 
+	 * which are the columns that are summarized.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @return The paths to the numeric columns.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private List<List<String>> getRollupColumns(
+			final long linkId)
+			throws DataAccessException {
+		
+		String sql =
+			"SELECT os.stream_schema " +
+			"FROM observer_stream os, observer_stream_link osl " +
+			"WHERE osl.id = ? " +
+			"AND os.id = osl.observer_stream_id";
+		
+		String schema;
+		try {
+			schema =
+				getJdbcTemplate().queryForObject(
+					sql, 
+					new Object[] { linkId }, 
+					String.class);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sql + 
+					"' with parameter: " + 
+					linkId,
+				e);
+		}
+		
+		try {
+			return Observer.Stream.getNumericColumns(schema);
+		}
+		catch(DomainException e) {
+			throw new DataAccessException(
+				"The stream's schema is invalid: " + linkId,
+				e);
+		}
+	}
+	
+	/**
+	 * Recomputes the summary of one hour of a user's data from the raw 
+	 * points, including those that have been archived, and then the summary
+	 * of the day that contains it from its hours. The hour is no longer
+	 * pending once this has completed.
+	 * 
+	 * @param userId The user's database ID.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @param hourStart The beginning of the hour.
+	 * 
+	 * @param paths The paths to the numeric columns of the stream.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private void rollUpHour(
+			final long userId,
+			final long linkId,
+			final long hourStart,
+			final List<List<String>> paths)
+			throws DataAccessException {
+		
+		final List<String> names = getColumnNames(paths);
+		
+		// Only the numeric columns are decoded.
+		final ColumnNode<String> columns = new ColumnNode<String>();
+		for(List<String> path : paths) {
+			ColumnNode<String> node = columns;
+			for(String part : path) {
+				if(! node.hasChild(part)) {
+					node.addChild(part);
+				}
+				node = node.getChild(part);
+			}
+		}
+		
+		String sqlDeletePending =
+			"DELETE FROM observer_stream_data_rollup_pending " +
+			"WHERE user_id = ? " +
+			"AND observer_stream_link_id = ? " +
+			"AND hour_start = ?";
+		
+		String sqlGetPoints =
+			"SELECT osd.id, osd.time_adjusted, osd.data, osd.data_smile " +
+			"FROM (" +
+				"(" +
+					"SELECT id, time_adjusted, data, data_smile " +
+					"FROM observer_stream_data " +
+					"WHERE user_id = ? " +
+					"AND observer_stream_link_id = ? " +
+					"AND time_adjusted >= ? " +
+					"AND time_adjusted < ?" +
+				") " +
+				"UNION ALL " +
+				"(" +
+					"SELECT id, time_adjusted, data, data_smile " +
+					"FROM observer_stream_data_archive " +
+					"WHERE user_id = ? " +
+					"AND observer_stream_link_id = ? " +
+					"AND time_adjusted >= ? " +
+					"AND time_adjusted < ?" +
+				")" +
+			") AS osd " +
+			"ORDER BY osd.time_adjusted ASC, osd.id ASC";
+		
+		String sqlGetHours =
+			"SELECT bucket_start, count, data " +
+			"FROM observer_stream_data_rollup " +
+			"WHERE user_id = ? " +
+			"AND observer_stream_link_id = ? " +
+			"AND bucket_size = ? " +
+			"AND bucket_start >= ? " +
+			"AND bucket_start < ? " +
+			"ORDER BY bucket_start ASC";
+		
+		long hourEnd = hourStart + ROLLUP_HOUR;
+		long dayStart = truncate(hourStart, ROLLUP_DAY);
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Summarizing stream data.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			try {
+				// This is done first so that, if more points are uploaded 
+				// for this hour while it is being summarized, the hour will
+				// be pending again once they have been stored.
+				getJdbcTemplate().update(
+					sqlDeletePending, 
+					new Object[] { userId, linkId, hourStart });
+				
+				final DataStreamBucket hour = 
+					new DataStreamBucket(hourStart, names);
+				getJdbcTemplate().query(
+					sqlGetPoints,
+					new Object[] { 
+						userId, linkId, hourStart, hourEnd,
+						userId, linkId, hourStart, hourEnd
+					},
+					new RowCallbackHandler() {
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							hour.add(
+								getValues(decodeData(rs, columns), paths));
+						}
+					});
+				storeRollup(userId, linkId, ROLLUP_HOUR, hour);
+				
+				final DataStreamBucket day = 
+					new DataStreamBucket(dayStart, names);
+				getJdbcTemplate().query(
+					sqlGetHours,
+					new Object[] { 
+						userId, 
+						linkId, 
+						ROLLUP_HOUR, 
+						dayStart, 
+						dayStart + ROLLUP_DAY 
+					},
+					new RowCallbackHandler() {
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							day.merge(
+								new DataStreamBucket(
+									rs.getLong("bucket_start"), 
+									rs.getLong("count"), 
+									names, 
+									decodeSummary(rs.getBytes("data"))));
+						}
+					});
+				storeRollup(userId, linkId, ROLLUP_DAY, day);
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error summarizing the hour " +
+						hourStart +
+						" of the stream link " +
+						linkId +
+						" for the user " +
+						userId +
+						".",
+					e);
+			}
+			catch(DataAccessException e) {
+				transactionManager.rollback(status);
+				throw e;
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.", 
+					e);
+			}
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.", 
+				e);
+		}
+	}
+	
+	/**
+	 * Stores a summary, replacing the existing one, or deletes the existing
+	 * one if the summary is empty. This must be called within a 
+	 * transaction.
+	 * 
+	 * @param userId The user's database ID.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @param size The size of the summary.
+	 * 
+	 * @param summary The summary.
+	 * 
+	 * @throws DataAccessException The summary could not be encoded.
+	 */
+	private void storeRollup(
+			final long userId,
+			final long linkId,
+			final long size,
+			final DataStreamBucket summary)
+			throws DataAccessException {
+		
+		if(summary.getCount() == 0) {
+			getJdbcTemplate().update(
+				"DELETE FROM observer_stream_data_rollup " +
+				"WHERE user_id = ? " +
+				"AND observer_stream_link_id = ? " +
+				"AND bucket_size = ? " +
+				"AND bucket_start = ?",
+				new Object[] { userId, linkId, size, summary.getStart() });
+			return;
+		}
+		
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		try {
+			JsonGenerator generator = 
+				SMILE_MAPPER.getJsonFactory().createJsonGenerator(data);
+			summary.writeSummary(generator);
+			generator.close();
+		}
+		catch(IOException e) {
+			throw new DataAccessException(
+				"The summary could not be encoded.", 
+				e);
+		}
+		
+		getJdbcTemplate().update(
+			"INSERT INTO observer_stream_data_rollup (" +
+				"user_id, " +
+				"observer_stream_link_id, " +
+				"bucket_size, " +
+				"bucket_start, " +
+				"count, " +
+				"data) " +
+			"VALUES (?, ?, ?, ?, ?, ?) " +
+			"ON DUPLICATE KEY UPDATE " +
+				"count = VALUES(count), " +
+				"data = VALUES(data)",
+			new Object[] { 
+				userId, 
+				linkId, 
+				size, 
+				summary.getStart(), 
+				summary.getCount(), 
+				data.toByteArray() 
+			});
+	}
+	
+	/**
+	 * Decodes a stored summary.
+	 * 
+	 * @param data The Smile-encoded summary.
+	 * 
+	 * @return The summary.
+	 * 
+	 * @throws SQLException The summary could not be decoded.
+	 */
+	static JsonNode decodeSummary(
+			final byte[] data)
+			throws SQLException {
+		
+		try {
+			return SMILE_MAPPER.readTree(data);
+		}
+		catch(IOException e) {
+			throw new SQLException("A stored summary is invalid.", e);
+		}
+	}
+	
+	/**
+	 * Moves a batch of a stream's raw points that were recorded before the
+	 * cutoff into the archive.
+	 * 
+	 * @param linkId The ID of the link between the observer and stream.
+	 * 
+	 * @param cutoff The time before which points are archived.
+	 * 
+	 * @param maxPoints The maximum number of points to move.
+	 * 
+	 * @return The number of points that were moved.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private int archiveData(
+			final long linkId,
+			final long cutoff,
+			final int maxPoints)
+			throws DataAccessException {
+		
+		String sqlGetIds =
+			"SELECT id " +
+			"FROM observer_stream_data " +
+			"WHERE observer_stream_link_id = ? " +
+			"AND time < ? " +
+			"ORDER BY id " +
+			"LIMIT ? " +
+			"FOR UPDATE";
+		
+		String columns =
+			"id, " +
+			"user_id, " +
+			"observer_stream_link_id, " +
+			"uid, " +
+			"time, " +
+			"time_offset, " +
+			"time_adjusted, " +
+			"time_zone, " +
+			"location_timestamp, " +
+			"location_latitude, " +
+			"location_longitude, " +
+			"location_accuracy, " +
+			"location_provider, " +
+			"data, " +
+			"data_smile";
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Archiving stream data.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			List<Long> ids;
+			try {
+				ids = 
+					getJdbcTemplate().query(
+						sqlGetIds, 
+						new Object[] { linkId, cutoff, maxPoints }, 
+						new SingleColumnRowMapper<Long>(Long.class));
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sqlGetIds + 
+						"' with parameters: " +
+						linkId + ", " +
+						cutoff + ", " +
+						maxPoints,
+					e);
+			}
+			
+			if(ids.isEmpty()) {
+				transactionManager.rollback(status);
+				return 0;
+			}
+			
+			String idList = StringUtils.generateStatementPList(ids.size());
+			String sqlInsert =
+				"INSERT INTO observer_stream_data_archive (" + 
+					columns + 
+				") " +
+				"SELECT " + columns + " " +
+				"FROM observer_stream_data " +
+				"WHERE id IN " + idList;
+			String sqlDelete =
+				"DELETE FROM observer_stream_data " +
+				"WHERE id IN " + idList;
+			
+			try {
+				getJdbcTemplate().update(sqlInsert, ids.toArray());
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sqlInsert + 
+						"' with parameters: " +
+						ids,
+					e);
+			}
+			
+			try {
+				getJdbcTemplate().update(sqlDelete, ids.toArray());
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						sqlDelete + 
+						"' with parameters: " +
+						ids,
+					e);
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.", 
+					e);
+			}
+			
+			return ids.size();
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.", 
+				e);
+		}
+	}
+	
+	/**
+	 * Decodes the data of the current row. Points are stored either in the
+	 * binary encoding or, for older points, as JSON text. Only the given
+	 * columns are decoded.
+	 * 
+	 * @param rs The result set, which must include the "osd.id", 
+	 * 			 "osd.data", and "osd.data_smile" columns.
+	 * 
+	 * @param columns The columns of the data to read. If this is null or a
+	 * 				  leaf, all of the data is read.
+	 * 
+	 * @return The data.
+	 * 
+	 * @throws SQLException The data could not be read or decoded.
+	 */
+	private static JsonNode decodeData(
+			final ResultSet rs,
+			final ColumnNode<String> columns)
+			throws SQLException {
+		
+		try {
+			byte[] dataSmile = rs.getBytes("osd.data_smile");
+			JsonParser parser;
+			if(dataSmile == null) {
+				parser =
+					JSON_FACTORY
+						.createJsonParser(
+							rs.getString("osd.data"));
+			}
+			else {
+				parser =
+					SMILE_MAPPER
+						.getJsonFactory()
+						.createJsonParser(dataSmile);
+			}
+			
+			try {
+				parser.nextToken();
+				return readColumns(parser, columns);
+			}
+			finally {
+				parser.close();
+			}
+		}
+		catch(JsonParseException e) {
+			throw new SQLException(
+				"The data in the database is invalid: " +
+					rs.getLong("osd.id"),
+				e);
+		}
+		catch(IOException e) {
+			throw new SQLException(
+				"There was a problem reading the data: " +
+					rs.getLong("osd.id"),
+				e);
+		}
+	}
+
+	/**
+	 * Reads the value at the parser's current token, keeping only the given
+	 * columns. The fields of an object that were not requested are skipped 
+	 * without being decoded. The columns of an array apply to each of its
+	 * elements.
+	 * 
+	 * @param parser The parser, which must be at the first token of the 
+	 * 				 value.
+	 * 
+	 * @param columns The columns to keep. If this is null or a leaf, the
+	 * 				  entire value is kept.
+	 * 
+	 * @return The value with only the requested columns.
+	 * 
+	 * @throws IOException The value could not be read.
+	 */
+	static JsonNode readColumns(
+			final JsonParser parser,
+			final ColumnNode<String> columns)
+			throws IOException {
+		
+		if((columns == null) || columns.isLeaf()) {
+			return parser.readValueAsTree();
+		}
+		
+		JsonToken token = parser.getCurrentToken();
+		if(token == JsonToken.START_OBJECT) {
+			ObjectNode result = JsonNodeFactory.instance.objectNode();
+			while(parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				
+				ColumnNode<String> child = columns.getChild(field);
+				if(child == null) {
+					parser.skipChildren();
+				}
+				else {
+					result.put(field, readColumns(parser, child));
+				}
+			}
+			return result;
+		}
+		else if(token == JsonToken.START_ARRAY) {
+			ArrayNode result = JsonNodeFactory.instance.arrayNode();
+			while(parser.nextToken() != JsonToken.END_ARRAY) {
+				result.add(readColumns(parser, columns));
+			}
+			return result;
+		}
+		else {
+			return parser.readValueAsTree();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IObserverQueries#readInvalidData(org.ohmage.domain.Observer, org.joda.time.DateTime, org.joda.time.DateTime, long, long)
+	 */
+	@Override
+	public Collection<InvalidPoint> readInvalidData(
+		final Observer observer,
+		final DateTime startDate,
+		final DateTime endDate,
+		final long numToSkip,
+		final long numToReturn) 
+		throws DataAccessException {
+		
+		// Build the SQL.
+		StringBuilder sqlBuilder =
+			new StringBuilder(
+				"SELECT osdi.point_index, osdi.reason, osdi.data " +
+					"FROM " +
+						"observer o, " +
+						"observer_stream_data_invalid osdi " +
+					"WHERE o.id = osdi.observer_id " +
+					"AND o.observer_id = ? " +
+					"AND o.version = ? ");
+		
+		// Create the list of parameters.
+		List<Object> parameters = new LinkedList<Object>();
+		parameters.add(observer.getId());
+		parameters.add(observer.getVersion());
+		
+		// If the start date was given, add it.
+		if(startDate != null) {
+			sqlBuilder.append("AND time_recorded >= ? ");
+			parameters.add(startDate.getMillis());
+		}
+		
+		// If the end date was given, add it.
+		if(endDate != null) {
+			sqlBuilder.append("AND time_recorded <= ? ");
+			parameters.add(endDate.getMillis());
+		}
+		
+		// Add the ordering.
+		sqlBuilder.append("ORDER BY time_recorded ");
+		
+		// Add the paging parameters.
+		sqlBuilder.append("LIMIT ?, ?");
+		parameters.add(numToSkip);
+		parameters.add(numToReturn);
+		
+		try {
+			return
+				getReadOnlyJdbcTemplate()
+					.query(
+						sqlBuilder.toString(),
+						parameters.toArray(),
+						new RowMapper<InvalidPoint>() {
+							/*
+							 * (non-Javadoc)
+							 * @see org.springframework.jdbc.core.RowMapper#mapRow(java.sql.ResultSet, int)
+							 */
+							@Override
+							public InvalidPoint mapRow(
+								final ResultSet resultSet,
+								final int rowNum)
+								throws SQLException {
+
+								// Create the point and return it.
+								return
+									new InvalidPoint(
+										resultSet.getLong("point_index"),
+										resultSet.getString("data"),
+										resultSet.getString("reason"),
+										null);
+							}
+						}
+					);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					sqlBuilder.toString() + 
+					"' with parameters: " +
+					parameters,
+				e);
 		}
 	}
 	
@@ -1664,6 +3396,9 @@ public class ObserverQueries extends Query implements IObserverQueries {
 					"Error while committing the transaction.",
 					e);
 			}
+			
+			// Any cached definitions of this observer are now stale.
+			ObserverCache.invalidate(observer.getId());
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException(
@@ -1671,4 +3406,112 @@ public class ObserverQueries extends Query implements IObserverQueries {
 				e);
 		}
 	}
+	
+	/**
+	 * Returns the database ID of the link between an observer and one of its
+	 * streams. The links are cached, so this only reads from the database the
+	 * first time a link is requested.
+	 * 
+	 * @param observerId The observer's unique identifier.
+	 * 
+	 * @param observerVersion The observer's version or null for its greatest
+	 * 						  version.
+	 * 
+	 * @param streamId The stream's unique identifier.
+	 * 
+	 * @param streamVersion The stream's version.
+	 * 
+	 * @return The link's database ID or null if that version of the observer
+	 * 		   doesn't have that version of the stream.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private Long getStreamLinkId(
+			final String observerId,
+			final Long observerVersion,
+			final String streamId,
+			final long streamVersion)
+			throws DataAccessException {
+		
+		Long result = 
+			ObserverCache.getStreamLinkId(
+				observerId, 
+				observerVersion, 
+				streamId, 
+				streamVersion);
+		if(result != null) {
+			return result;
+		}
+		
+		long generation = ObserverCache.getGeneration();
+		
+		StringBuilder sql =
+			new StringBuilder(
+				"SELECT osl.id " +
+				"FROM " +
+					"observer o, " +
+					"observer_stream os, " +
+					"observer_stream_link osl " +
+				"WHERE o.observer_id = ? " +
+				"AND os.stream_id = ? " +
+				"AND os.version = ? " +
+				"AND o.id = osl.observer_id " +
+				"AND os.id = osl.observer_stream_id");
+		
+		List<Object> parameters = new LinkedList<Object>();
+		parameters.add(observerId);
+		parameters.add(streamId);
+		parameters.add(streamVersion);
+		
+		if(observerVersion == null) {
+			sql.append(
+				" AND o.version = (" +
+					"SELECT MAX(version) " +
+					"FROM observer " +
+					"WHERE observer_id = ?" +
+				")");
+			parameters.add(observerId);
+		}
+		else {
+			sql.append(" AND o.version = ?");
+			parameters.add(observerVersion);
+		}
+		
+		try {
+			List<Long> linkIds = 
+				getJdbcTemplate().query(
+					sql.toString(),
+					parameters.toArray(),
+					new SingleColumnRowMapper<Long>(Long.class));
+			
+			if(linkIds.size() == 0) {
+				return null;
+			}
+			else if(linkIds.size() > 1) {
+				throw new DataAccessException(
+					"Multiple links exist between the observer and stream: " +
+						parameters);
+			}
+			
+			result = linkIds.get(0);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" +
+					sql.toString() +
+					"' with parameters: " +
+					parameters,
+				e);
+		}
+		
+		ObserverCache.putStreamLinkId(
+			observerId, 
+			observerVersion, 
+			streamId, 
+			streamVersion, 
+			result, 
+			generation);
+		
+		return result;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,301 @@
+package org.ohmage.query.impl;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+
+import javax.sql.DataSource;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.SqlProvider;
+import org.springframework.jdbc.core.StatementCallback;
+
+/**
+ * A JdbcTemplate that reports every statement it executes to the
+ * {@link SqlProfiler}. Every other method of JdbcTemplate is built on one of
+ * the execute() methods overridden here.
+ * 
+ * Rows are counted from the result: the size of a returned list, the number
+ * of rows an update modified, or the number of rows passed to a
+ * RowCallbackHandler. The bound parameters are only known for statements
+ * whose parameters were given to the template as an array.
+ */
+class ProfilingJdbcTemplate extends JdbcTemplate {
+	/**
+	 * The parameters of the statement the current thread is about to
+	 * execute, which JdbcTemplate binds before it executes the statement.
+	 */
+	private static final ThreadLocal<Object[]> PARAMETERS =
+		new ThreadLocal<Object[]>();
+
+	/**
+	 * Counts the rows passed to a RowCallbackHandler.
+	 */
+	private static final class CountingRowCallbackHandler
+			implements RowCallbackHandler {
+
+		private final RowCallbackHandler delegate;
+		private long count = 0;
+
+		/**
+		 * Wraps a RowCallbackHandler.
+		 * 
+		 * @param delegate The RowCallbackHandler that processes the rows.
+		 */
+		private CountingRowCallbackHandler(final RowCallbackHandler delegate) {
+			this.delegate = delegate;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.springframework.jdbc.core.RowCallbackHandler#processRow(java.sql.ResultSet)
+		 */
+		@Override
+		public void processRow(
+				final ResultSet rs)
+				throws SQLException {
+
+			count++;
+			delegate.processRow(rs);
+		}
+	}
+
+	/**
+	 * Creates the template.
+	 * 
+	 * @param dataSource The DataSource to query.
+	 */
+	ProfilingJdbcTemplate(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.StatementCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final StatementCallback<T> action)
+			throws DataAccessException {
+
+		SqlProfiler profiler = SqlProfiler.instance();
+		if(profiler == null) {
+			return super.execute(action);
+		}
+
+		long start = System.nanoTime();
+		T result = null;
+		try {
+			result = super.execute(action);
+			return result;
+		}
+		finally {
+			record(profiler, action, start, result);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.PreparedStatementCreator, org.springframework.jdbc.core.PreparedStatementCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final PreparedStatementCreator psc,
+			final PreparedStatementCallback<T> action)
+			throws DataAccessException {
+
+		SqlProfiler profiler = SqlProfiler.instance();
+		if(profiler == null) {
+			return super.execute(psc, action);
+		}
+
+		long start = System.nanoTime();
+		T result = null;
+		try {
+			result = super.execute(psc, action);
+			return result;
+		}
+		finally {
+			record(profiler, psc, start, result);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.CallableStatementCreator, org.springframework.jdbc.core.CallableStatementCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final CallableStatementCreator csc,
+			final CallableStatementCallback<T> action)
+			throws DataAccessException {
+
+		SqlProfiler profiler = SqlProfiler.instance();
+		if(profiler == null) {
+			return super.execute(csc, action);
+		}
+
+		long start = System.nanoTime();
+		T result = null;
+		try {
+			result = super.execute(csc, action);
+			return result;
+		}
+		finally {
+			record(profiler, csc, start, result);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#query(java.lang.String, org.springframework.jdbc.core.RowCallbackHandler)
+	 */
+	@Override
+	public void query(
+			final String sql,
+			final RowCallbackHandler rch)
+			throws DataAccessException {
+
+		CountingRowCallbackHandler counter =
+			new CountingRowCallbackHandler(rch);
+		super.query(sql, counter);
+		addRows(sql, counter.count);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#query(org.springframework.jdbc.core.PreparedStatementCreator, org.springframework.jdbc.core.RowCallbackHandler)
+	 */
+	@Override
+	public void query(
+			final PreparedStatementCreator psc,
+			final RowCallbackHandler rch)
+			throws DataAccessException {
+
+		CountingRowCallbackHandler counter =
+			new CountingRowCallbackHandler(rch);
+		super.query(psc, counter);
+		addRows(getSql(psc), counter.count);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#query(java.lang.String, org.springframework.jdbc.core.PreparedStatementSetter, org.springframework.jdbc.core.RowCallbackHandler)
+	 */
+	@Override
+	public void query(
+			final String sql,
+			final PreparedStatementSetter pss,
+			final RowCallbackHandler rch)
+			throws DataAccessException {
+
+		CountingRowCallbackHandler counter =
+			new CountingRowCallbackHandler(rch);
+		super.query(sql, pss, counter);
+		addRows(sql, counter.count);
+	}
+
+	/**
+	 * Remembers the parameters so that a slow statement can be logged with
+	 * them.
+	 */
+	@Override
+	protected PreparedStatementSetter newArgPreparedStatementSetter(
+			final Object[] args) {
+
+		PARAMETERS.set(args);
+		return super.newArgPreparedStatementSetter(args);
+	}
+
+	/**
+	 * Remembers the parameters so that a slow statement can be logged with
+	 * them.
+	 */
+	@Override
+	protected PreparedStatementSetter newArgTypePreparedStatementSetter(
+			final Object[] args,
+			final int[] argTypes) {
+
+		PARAMETERS.set(args);
+		return super.newArgTypePreparedStatementSetter(args, argTypes);
+	}
+
+	/**
+	 * Reports an executed statement to the profiler. Statements that failed
+	 * are reported as well, as the time was still spent.
+	 * 
+	 * @param profiler The profiler.
+	 * 
+	 * @param statement The object that created the statement.
+	 * 
+	 * @param start When the statement began, from {@link System#nanoTime()}.
+	 * 
+	 * @param result What the statement returned.
+	 */
+	private static void record(
+			final SqlProfiler profiler,
+			final Object statement,
+			final long start,
+			final Object result) {
+
+		long nanos = System.nanoTime() - start;
+
+		Object[] parameters = PARAMETERS.get();
+		PARAMETERS.remove();
+
+		long rows = 0;
+		if(result instanceof Collection) {
+			rows = ((Collection<?>) result).size();
+		}
+		else if(result instanceof Integer) {
+			rows = (Integer) result;
+		}
+		else if(result instanceof int[]) {
+			for(int count : (int[]) result) {
+				rows += count;
+			}
+		}
+
+		profiler.record(getSql(statement), nanos, rows, parameters);
+	}
+
+	/**
+	 * Adds rows that were counted after a statement executed.
+	 * 
+	 * @param sql The statement.
+	 * 
+	 * @param rows The number of rows.
+	 */
+	private static void addRows(final String sql, final long rows) {
+		SqlProfiler profiler = SqlProfiler.instance();
+		if(profiler != null) {
+			profiler.addRows(sql, rows);
+		}
+	}
+
+	/**
+	 * Returns the SQL of a statement. Statements built by the Query classes
+	 * themselves don't expose their SQL, so they are identified by the class
+	 * that built them.
+	 * 
+	 * @param statement The object that created the statement.
+	 * 
+	 * @return The statement's SQL.
+	 */
+	private static String getSql(final Object statement) {
+		if(statement instanceof SqlProvider) {
+			String result = ((SqlProvider) statement).getSql();
+			if(result != null) {
+				return result;
+			}
+		}
+		return "<statement built by " + statement.getClass().getName() + ">";
+	}
+}
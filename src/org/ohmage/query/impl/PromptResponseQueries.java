@@ -15,6 +15,14 @@
  ******************************************************************************/
 package org.ohmage.query.impl;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.sql.DataSource;
@@ -22,7 +30,15 @@ import javax.sql.DataSource;
 import org.apache.log4j.Logger;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.query.IPromptResponseQueries;
+import org.ohmage.util.StringUtils;
 import org.springframework.dao.IncorrectResultSizeDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
 
 /**
  * Queries against prompt responses.
@@ -43,6 +59,46 @@ public class PromptResponseQueries extends Query implements IPromptResponseQueri
 		" AND pr.repeatable_set_id = ? " +
 		"AND pr.repeatable_set_iteration = ?";
 	
+	// The preference key for the ID of the last prompt response that was
+	// added to the token index by the backfill.
+	private static final String KEY_TOKEN_BACKFILL_ID =
+		"prompt_response_token_backfill_id";
+	
+	// The preference key for the ID of the last prompt response that was
+	// uploaded before the token index existed.
+	private static final String KEY_TOKEN_BACKFILL_END =
+		"prompt_response_token_backfill_end";
+	
+	private static final String SQL_DELETE_PROMPT_RESPONSE_TOKENS =
+		"DELETE FROM prompt_response_token " +
+		"WHERE prompt_response_id = ?";
+	
+	private static final String SQL_INSERT_PROMPT_RESPONSE_TOKEN =
+		"INSERT IGNORE INTO prompt_response_token (token, prompt_response_id) " +
+		"VALUES (?, ?)";
+	
+	private static final String SQL_GET_PREFERENCE =
+		"SELECT p_value " +
+		"FROM preference " +
+		"WHERE p_key = ?";
+	
+	private static final String SQL_UPDATE_PREFERENCE =
+		"UPDATE preference " +
+		"SET p_value = ? " +
+		"WHERE p_key = ?";
+	
+	private static final String SQL_GET_PROMPT_RESPONSES_FOR_BACKFILL =
+		"SELECT id, response " +
+		"FROM prompt_response " +
+		"WHERE id > ? " +
+		"AND id <= ? " +
+		"ORDER BY id " +
+		"LIMIT ?";
+	
+	// Whether or not the backfill has finished, meaning that every prompt
+	// response is in the token index. Once set, this never changes.
+	private static volatile boolean tokenIndexComplete = false;
+	
 	/**
 	 * Creates this object.
 	 * 
@@ -107,4 +163,217 @@ public class PromptResponseQueries extends Query implements IPromptResponseQueri
 			throw new DataAccessException("Error executing SQL '" +sql.toString() + "'.", e);
 		}
 	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IPromptResponseQueries#indexPromptResponse(long, java.lang.String)
+	 */
+	@Override
+	public void indexPromptResponse(
+			final long promptResponseId,
+			final String response)
+			throws DataAccessException {
+		
+		try {
+			getJdbcTemplate().update(
+				SQL_DELETE_PROMPT_RESPONSE_TOKENS, 
+				promptResponseId);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_DELETE_PROMPT_RESPONSE_TOKENS + 
+					"' with parameter: " + 
+					promptResponseId,
+				e);
+		}
+		
+		final List<String> tokens = 
+			new ArrayList<String>(StringUtils.tokenizeWords(response));
+		if(tokens.isEmpty()) {
+			return;
+		}
+		
+		try {
+			getJdbcTemplate().batchUpdate(
+				SQL_INSERT_PROMPT_RESPONSE_TOKEN,
+				new BatchPreparedStatementSetter() {
+					@Override
+					public void setValues(
+							final PreparedStatement ps,
+							final int i)
+							throws SQLException {
+						
+						ps.setString(1, tokens.get(i));
+						ps.setLong(2, promptResponseId);
+					}
+					
+					@Override
+					public int getBatchSize() {
+						return tokens.size();
+					}
+				});
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+				"Error executing SQL '" + 
+					SQL_INSERT_PROMPT_RESPONSE_TOKEN + 
+					"' for prompt response: " + 
+					promptResponseId,
+				e);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IPromptResponseQueries#backfillPromptResponseTokens(int)
+	 */
+	@Override
+	public int backfillPromptResponseTokens(
+			final int batchSize)
+			throws DataAccessException {
+		
+		if(tokenIndexComplete) {
+			return 0;
+		}
+		
+		// Create the transaction.
+		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
+		def.setName("Backfilling the prompt response token index.");
+		
+		try {
+			// Begin the transaction.
+			PlatformTransactionManager transactionManager = 
+				new DataSourceTransactionManager(getDataSource());
+			TransactionStatus status = transactionManager.getTransaction(def);
+			
+			long lastId;
+			long endId;
+			try {
+				lastId = 
+					Long.parseLong(
+						getJdbcTemplate().queryForObject(
+							SQL_GET_PREFERENCE + " FOR UPDATE", 
+							new Object[] { KEY_TOKEN_BACKFILL_ID }, 
+							String.class));
+				endId = 
+					Long.parseLong(
+						getJdbcTemplate().queryForObject(
+							SQL_GET_PREFERENCE, 
+							new Object[] { KEY_TOKEN_BACKFILL_END }, 
+							String.class));
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_GET_PREFERENCE + 
+						"' with parameters: " + 
+						KEY_TOKEN_BACKFILL_ID + ", " + 
+						KEY_TOKEN_BACKFILL_END,
+					e);
+			}
+			catch(NumberFormatException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"The token index backfill preferences are not numbers.",
+					e);
+			}
+			
+			final Map<Long, String> responses = 
+				new LinkedHashMap<Long, String>();
+			try {
+				getJdbcTemplate().query(
+					SQL_GET_PROMPT_RESPONSES_FOR_BACKFILL, 
+					new Object[] { lastId, endId, batchSize }, 
+					new RowCallbackHandler() {
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							responses.put(
+								rs.getLong("id"), 
+								rs.getString("response"));
+						}
+					});
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_GET_PROMPT_RESPONSES_FOR_BACKFILL + 
+						"' with parameters: " + 
+						lastId + ", " + 
+						endId + ", " + 
+						batchSize,
+					e);
+			}
+			
+			if(responses.isEmpty()) {
+				transactionManager.rollback(status);
+				
+				LOGGER.info("The prompt response token index is complete.");
+				tokenIndexComplete = true;
+				return 0;
+			}
+			
+			Set<Long> ids = responses.keySet();
+			for(Long id : ids) {
+				try {
+					indexPromptResponse(id, responses.get(id));
+				}
+				catch(DataAccessException e) {
+					transactionManager.rollback(status);
+					throw e;
+				}
+				lastId = id;
+			}
+			
+			try {
+				getJdbcTemplate().update(
+					SQL_UPDATE_PREFERENCE, 
+					Long.toString(lastId), 
+					KEY_TOKEN_BACKFILL_ID);
+			}
+			catch(org.springframework.dao.DataAccessException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error executing SQL '" + 
+						SQL_UPDATE_PREFERENCE + 
+						"' with parameters: " + 
+						lastId + ", " + 
+						KEY_TOKEN_BACKFILL_ID,
+					e);
+			}
+			
+			// Commit the transaction.
+			try {
+				transactionManager.commit(status);
+			}
+			catch(TransactionException e) {
+				transactionManager.rollback(status);
+				throw new DataAccessException(
+					"Error while committing the transaction.", 
+					e);
+			}
+			
+			return responses.size();
+		}
+		catch(TransactionException e) {
+			throw new DataAccessException(
+				"Error while attempting to rollback the transaction.", 
+				e);
+		}
+	}
+	
+	/**
+	 * Returns whether or not every prompt response is in the token index. 
+	 * Until this is true, searches cannot rely on the index.
+	 * 
+	 * @return Whether or not the token index is complete.
+	 */
+	static boolean isTokenIndexComplete() {
+		return tokenIndexComplete;
+	}
 }
@@ -35,6 +35,7 @@ public abstract class Query {
 	
 	private final DataSource dataSource;
 	private final JdbcTemplate jdbcTemplate;
+	private final JdbcTemplate readOnlyJdbcTemplate;
 	
 	/**
 	 * Builds this query object by keeping track of the DataSource that was 
@@ -61,7 +62,8 @@ public abstract class Query {
 		}
 		
 		this.dataSource = dataSource;
-		jdbcTemplate = new JdbcTemplate(dataSource);
+		jdbcTemplate = new WriteTrackingJdbcTemplate(dataSource);
+		readOnlyJdbcTemplate = new ReadOnlyJdbcTemplate(dataSource);
 		
 		initialized = true;
 	}
@@ -110,4 +112,18 @@ public abstract class Query {
 	protected JdbcTemplate getJdbcTemplate() {
 		return jdbcTemplate;
 	}
+	
+	/**
+	 * Returns a JdbcTemplate whose queries may be sent to the read replica.
+	 * Query methods register themselves as read-only by using this instead 
+	 * of {@link #getJdbcTemplate()}. It must never be used to modify the 
+	 * database. Within a transaction, it uses the transaction's connection.
+	 * 
+	 * @return The JdbcTemplate for read-only queries.
+	 * 
+	 * @see org.ohmage.spring.ReadWriteRoutingDataSource
+	 */
+	protected JdbcTemplate getReadOnlyJdbcTemplate() {
+		return readOnlyJdbcTemplate;
+	}
 }
@@ -0,0 +1,105 @@
+package org.ohmage.query.impl;
+
+import javax.sql.DataSource;
+
+import org.ohmage.spring.ReadWriteRoutingDataSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.CallableStatementCallback;
+import org.springframework.jdbc.core.CallableStatementCreator;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.StatementCallback;
+
+/**
+ * A JdbcTemplate whose statements may be executed against the read replica.
+ * Every other method of JdbcTemplate is built on one of the execute() 
+ * methods overridden here, which mark the statement as read-only for the 
+ * {@link ReadWriteRoutingDataSource} while it borrows a connection.
+ * 
+ * This must only be used for statements that don't modify the database.
+ */
+class ReadOnlyJdbcTemplate extends ProfilingJdbcTemplate {
+	/**
+	 * Creates the template.
+	 * 
+	 * @param dataSource The DataSource to query.
+	 */
+	ReadOnlyJdbcTemplate(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.ConnectionCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final ConnectionCallback<T> action)
+			throws DataAccessException {
+
+		boolean previous = ReadWriteRoutingDataSource.setReadOnly(true);
+		try {
+			return super.execute(action);
+		}
+		finally {
+			ReadWriteRoutingDataSource.setReadOnly(previous);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.StatementCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final StatementCallback<T> action)
+			throws DataAccessException {
+
+		boolean previous = ReadWriteRoutingDataSource.setReadOnly(true);
+		try {
+			return super.execute(action);
+		}
+		finally {
+			ReadWriteRoutingDataSource.setReadOnly(previous);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.PreparedStatementCreator, org.springframework.jdbc.core.PreparedStatementCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final PreparedStatementCreator psc,
+			final PreparedStatementCallback<T> action)
+			throws DataAccessException {
+
+		boolean previous = ReadWriteRoutingDataSource.setReadOnly(true);
+		try {
+			return super.execute(psc, action);
+		}
+		finally {
+			ReadWriteRoutingDataSource.setReadOnly(previous);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#execute(org.springframework.jdbc.core.CallableStatementCreator, org.springframework.jdbc.core.CallableStatementCallback)
+	 */
+	@Override
+	public <T> T execute(
+			final CallableStatementCreator csc,
+			final CallableStatementCallback<T> action)
+			throws DataAccessException {
+
+		boolean previous = ReadWriteRoutingDataSource.setReadOnly(true);
+		try {
+			return super.execute(csc, action);
+		}
+		finally {
+			ReadWriteRoutingDataSource.setReadOnly(previous);
+		}
+	}
+}
@@ -0,0 +1,448 @@
+package org.ohmage.query.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.ohmage.domain.SqlStatistics;
+
+/**
+ * Records, for each normalized SQL statement, how often it was executed, how
+ * many rows it returned or modified, how long it took, and which Query
+ * methods executed it. Statements that take longer than the slow query
+ * threshold are logged with their bound parameters.
+ * 
+ * The statistics are kept in memory and are lost on restart. Recording a
+ * statement costs two clock reads, two hash lookups, and a few atomic
+ * increments; the stack is only walked on a sample of each statement's
+ * executions, until its callers are all known, and when a statement is
+ * slow.
+ * 
+ * @see ProfilingJdbcTemplate
+ */
+public final class SqlProfiler {
+	private static final Logger LOGGER = Logger.getLogger(SqlProfiler.class);
+
+	/**
+	 * The maximum number of distinct statements that are tracked. Any others
+	 * are counted together.
+	 */
+	private static final int MAX_STATEMENTS = 2000;
+
+	/**
+	 * The key under which statements beyond {@link #MAX_STATEMENTS} are
+	 * counted.
+	 */
+	private static final String OTHER_STATEMENTS = "<other statements>";
+
+	/**
+	 * The maximum number of raw statements whose normalized form is cached.
+	 */
+	private static final int MAX_NORMALIZED = 10000;
+
+	/**
+	 * The maximum number of callers remembered for each statement.
+	 */
+	private static final int MAX_CALLERS = 10;
+
+	/**
+	 * How often the caller of a statement is sampled. The first execution and
+	 * every one this many after it are sampled, so a Query method that runs
+	 * a statement that another method ran first is still found.
+	 */
+	private static final long CALLER_SAMPLE_PERIOD = 64;
+
+	/**
+	 * The number of histogram buckets for each power of two, which bounds the
+	 * percentiles' error to about 20%.
+	 */
+	private static final int SUB_BUCKETS = 4;
+
+	/**
+	 * The number of histogram buckets, enough for any duration in
+	 * microseconds.
+	 */
+	private static final int NUM_BUCKETS = 64 * SUB_BUCKETS;
+
+	private static final Pattern PATTERN_STRING_LITERAL =
+		Pattern.compile("'(?:[^'\\\\]|\\\\.)*'");
+	private static final Pattern PATTERN_NUMBER_LITERAL =
+		Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern PATTERN_PARAMETER_LIST =
+		Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+	private static final Pattern PATTERN_WHITESPACE =
+		Pattern.compile("\\s+");
+
+	/**
+	 * The statistics for a single normalized statement.
+	 */
+	private static final class Statement {
+		private final String sql;
+		private final Set<String> callers =
+			Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final AtomicLongArray histogram =
+			new AtomicLongArray(NUM_BUCKETS);
+
+		/**
+		 * Creates the statistics for a statement.
+		 * 
+		 * @param sql The normalized statement.
+		 */
+		private Statement(final String sql) {
+			this.sql = sql;
+		}
+
+		/**
+		 * Records one execution of the statement.
+		 * 
+		 * @param nanos How long it took.
+		 * 
+		 * @param numRows The number of rows it returned or modified.
+		 * 
+		 * @return The number of executions, including this one.
+		 */
+		private long record(final long nanos, final long numRows) {
+			long result = count.incrementAndGet();
+			rows.addAndGet(numRows);
+			totalNanos.addAndGet(nanos);
+			histogram.incrementAndGet(getBucket(nanos / 1000));
+
+			long max = maxNanos.get();
+			while((nanos > max) && (! maxNanos.compareAndSet(max, nanos))) {
+				max = maxNanos.get();
+			}
+
+			return result;
+		}
+
+		/**
+		 * Returns whether or not an execution's caller should be recorded.
+		 * 
+		 * @param execution The number of the execution.
+		 * 
+		 * @return Whether or not it is sampled and there is room for more
+		 * 		   callers.
+		 */
+		private boolean isCallerSampled(final long execution) {
+			return
+				((execution % CALLER_SAMPLE_PERIOD) == 1) &&
+				(callers.size() < MAX_CALLERS);
+		}
+
+		/**
+		 * Adds a caller if there is still room for more.
+		 * 
+		 * @param caller The caller.
+		 */
+		private void addCaller(final String caller) {
+			if(callers.size() < MAX_CALLERS) {
+				callers.add(caller);
+			}
+		}
+
+		/**
+		 * Creates a snapshot of the statistics.
+		 * 
+		 * @return The snapshot.
+		 */
+		private SqlStatistics snapshot() {
+			long[] counts = new long[NUM_BUCKETS];
+			long total = 0;
+			for(int i = 0; i < NUM_BUCKETS; i++) {
+				counts[i] = histogram.get(i);
+				total += counts[i];
+			}
+
+			List<String> callerList = new ArrayList<String>(callers);
+			Collections.sort(callerList);
+
+			return new SqlStatistics(
+				sql,
+				callerList,
+				count.get(),
+				rows.get(),
+				totalNanos.get() / 1000000.0,
+				getPercentile(counts, total, 0.50),
+				getPercentile(counts, total, 0.95),
+				getPercentile(counts, total, 0.99),
+				maxNanos.get() / 1000000.0);
+		}
+	}
+
+	private static volatile SqlProfiler instance = null;
+
+	private final ConcurrentMap<String, String> normalized =
+		new ConcurrentHashMap<String, String>();
+	private final ConcurrentMap<String, Statement> statements =
+		new ConcurrentHashMap<String, Statement>();
+
+	private final long slowQueryThreshold;
+
+	/**
+	 * Creates the profiler. This is called by Spring.
+	 * 
+	 * @param enabled Whether or not statements should be profiled at all.
+	 * 
+	 * @param slowQueryThreshold The number of milliseconds after which a
+	 * 							 statement is logged as slow. A negative value
+	 * 							 disables the slow query log.
+	 */
+	private SqlProfiler(final boolean enabled, final long slowQueryThreshold) {
+		this.slowQueryThreshold =
+			(slowQueryThreshold < 0) ? -1 : slowQueryThreshold * 1000000;
+
+		if(enabled) {
+			instance = this;
+			LOGGER.info("SQL statements will be profiled.");
+		}
+	}
+
+	/**
+	 * Returns the profiler.
+	 * 
+	 * @return The profiler or null if profiling is disabled.
+	 */
+	public static SqlProfiler instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the statistics for every statement that has been executed,
+	 * ordered by the total time spent executing them.
+	 * 
+	 * @return The statistics.
+	 */
+	public List<SqlStatistics> getStatistics() {
+		List<SqlStatistics> result =
+			new ArrayList<SqlStatistics>(statements.size());
+		for(Statement statement : statements.values()) {
+			result.add(statement.snapshot());
+		}
+
+		Collections.sort(
+			result,
+			new Comparator<SqlStatistics>() {
+				@Override
+				public int compare(
+						final SqlStatistics first,
+						final SqlStatistics second) {
+
+					return Double.compare(
+						second.getTotalMillis(),
+						first.getTotalMillis());
+				}
+			});
+
+		return result;
+	}
+
+	/**
+	 * Discards all of the statistics.
+	 */
+	public void reset() {
+		statements.clear();
+	}
+
+	/**
+	 * Records one execution of a statement.
+	 * 
+	 * @param sql The statement as it was executed.
+	 * 
+	 * @param nanos How long it took.
+	 * 
+	 * @param rows The number of rows it returned or modified.
+	 * 
+	 * @param parameters The bound parameters, if they are known.
+	 */
+	void record(
+			final String sql,
+			final long nanos,
+			final long rows,
+			final Object[] parameters) {
+
+		boolean slow = (slowQueryThreshold >= 0) && (nanos >= slowQueryThreshold);
+
+		Statement statement = getStatement(sql);
+		long execution = statement.record(nanos, rows);
+
+		if(statement.isCallerSampled(execution) || slow) {
+			String caller = getCaller();
+			statement.addCaller(caller);
+
+			if(slow) {
+				LOGGER.warn(
+					"Slow SQL (" + (nanos / 1000000) + " ms, " + rows +
+						" rows) from " + caller + ": '" + sql +
+						"' with parameter(s): " +
+						((parameters == null) ?
+							"unknown" :
+							Arrays.deepToString(parameters)));
+			}
+		}
+	}
+
+	/**
+	 * Adds rows to a statement that was already recorded, for statements
+	 * whose rows are only counted after they execute.
+	 * 
+	 * @param sql The statement as it was executed.
+	 * 
+	 * @param rows The number of rows.
+	 */
+	void addRows(final String sql, final long rows) {
+		getStatement(sql).rows.addAndGet(rows);
+	}
+
+	/**
+	 * Returns the statistics for a statement, creating them if necessary.
+	 * 
+	 * @param sql The statement as it was executed.
+	 * 
+	 * @return The statement's statistics.
+	 */
+	private Statement getStatement(final String sql) {
+		String key = normalized.get(sql);
+		if(key == null) {
+			key = normalize(sql);
+			if(normalized.size() < MAX_NORMALIZED) {
+				normalized.put(sql, key);
+			}
+		}
+
+		Statement result = statements.get(key);
+		if(result == null) {
+			if(statements.size() >= MAX_STATEMENTS) {
+				key = OTHER_STATEMENTS;
+			}
+
+			Statement newStatement = new Statement(key);
+			result = statements.putIfAbsent(key, newStatement);
+			if(result == null) {
+				result = newStatement;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Replaces the literal values in a statement, and the number of
+	 * parameters in a list, so that statements built with different values
+	 * are counted together.
+	 * 
+	 * @param sql The statement.
+	 * 
+	 * @return The normalized statement.
+	 */
+	static String normalize(final String sql) {
+		String result = PATTERN_STRING_LITERAL.matcher(sql).replaceAll("?");
+		result = PATTERN_NUMBER_LITERAL.matcher(result).replaceAll("?");
+		result = PATTERN_PARAMETER_LIST.matcher(result).replaceAll("?, ...");
+		result = PATTERN_WHITESPACE.matcher(result).replaceAll(" ");
+		return result.trim();
+	}
+
+	/**
+	 * Walks the stack to find the Query method that is executing the current
+	 * statement.
+	 * 
+	 * @return The method as "Class.method" or "unknown" if it couldn't be
+	 * 		   found.
+	 */
+	private static String getCaller() {
+		for(StackTraceElement element : new Throwable().getStackTrace()) {
+			String className = element.getClassName();
+			if(className.startsWith("org.ohmage.query.impl.") &&
+				(className.indexOf('$') == -1) &&
+				(! className.equals(SqlProfiler.class.getName())) &&
+				(! className.endsWith("JdbcTemplate")) &&
+				(! className.equals(Query.class.getName()))) {
+
+				return
+					className.substring(className.lastIndexOf('.') + 1) +
+						"." +
+						element.getMethodName();
+			}
+		}
+		return "unknown";
+	}
+
+	/**
+	 * Returns the histogram bucket for a duration. Each power of two is split
+	 * into {@link #SUB_BUCKETS} buckets.
+	 * 
+	 * @param micros The duration in microseconds.
+	 * 
+	 * @return The bucket.
+	 */
+	private static int getBucket(final long micros) {
+		if(micros < SUB_BUCKETS) {
+			return (int) Math.max(0, micros);
+		}
+
+		int power = 63 - Long.numberOfLeadingZeros(micros);
+		int sub = (int) ((micros >> (power - 2)) & (SUB_BUCKETS - 1));
+		return Math.min(NUM_BUCKETS - 1, ((power - 1) * SUB_BUCKETS) + sub);
+	}
+
+	/**
+	 * Returns the smallest duration in a histogram bucket.
+	 * 
+	 * @param bucket The bucket.
+	 * 
+	 * @return The duration in microseconds.
+	 */
+	private static long getBucketStart(final int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int power = (bucket / SUB_BUCKETS) + 1;
+		int sub = bucket % SUB_BUCKETS;
+		return ((long) (SUB_BUCKETS + sub)) << (power - 2);
+	}
+
+	/**
+	 * Estimates a percentile from a histogram.
+	 * 
+	 * @param counts The number of durations in each bucket.
+	 * 
+	 * @param total The total number of durations.
+	 * 
+	 * @param percentile The percentile, between 0 and 1.
+	 * 
+	 * @return The estimated duration in milliseconds.
+	 */
+	private static double getPercentile(
+			final long[] counts,
+			final long total,
+			final double percentile) {
+
+		if(total == 0) {
+			return 0;
+		}
+
+		long rank = (long) Math.ceil(total * percentile);
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) {
+				return getBucketStart(i) / 1000.0;
+			}
+		}
+		return getBucketStart(counts.length - 1) / 1000.0;
+	}
+}
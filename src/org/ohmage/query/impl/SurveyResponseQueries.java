@@ -20,10 +20,12 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -33,6 +35,7 @@ import javax.sql.DataSource;
 import org.joda.time.DateTime;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.ohmage.domain.DeletionJob;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.Prompt;
 import org.ohmage.domain.campaign.SurveyResponse;
@@ -206,10 +209,12 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 			SQL_FROM_WITH_PROMPT_RESPONSE;
 
 	/**
-	 * The base WHERE clause for all queries.
+	 * The base WHERE clause for all queries. The responses of deleted users
+	 * are hidden until they are purged.
 	 */
 	private static final String SQL_BASE_WHERE =
-		"WHERE c.urn = ? ";
+		"WHERE c.urn = ? " +
+		"AND u.username NOT LIKE '" + DeletionJob.TOMBSTONE_PREFIX + "%' ";
 	
 	/**
 	 * Limit the responses to only these survey response IDs. This SQL is
@@ -298,6 +303,14 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 	private static final String SQL_WHERE_PROMPT_RESPONSE_SEARCH_TOKEN =
 		" AND pr.response LIKE ?";
 	
+	/**
+	 * Limit the responses to only those whose prompt response is in a set of
+	 * IDs. This SQL is incomplete and ends with "IN ". The user will need to
+	 * fill in a parenthetical sub-query that returns the prompt response IDs.
+	 */
+	private static final String SQL_WHERE_PROMPT_RESPONSE_IDS =
+		" AND pr.id IN ";
+	
 	/**
 	 * Order the results first by the number of milliseconds since the epoch at
 	 * which time the survey was taken and then, if there is a collision, by
@@ -445,7 +458,7 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 		final Collection<Integer> totalCount = new ArrayList<Integer>(1);
 		
 		try {
-			result.addAll(getJdbcTemplate().query(
+			result.addAll(getReadOnlyJdbcTemplate().query(
 				sql,
 				parameters.toArray(),
 				new ResultSetExtractor<List<SurveyResponse>>() {
@@ -969,6 +982,31 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 			parameters.add(promptType);
 		}
 		if(promptResponseSearchTokens != null) {
+			// If every prompt response is in the token index, first limit
+			// the campaign's prompt responses to those with a word that
+			// begins with each of the words that must begin a word in the
+			// response. This intersects the posting lists before the
+			// responses are joined, so the LIKE below, which still decides
+			// what matches, only has to check the few remaining candidates.
+			// If no word must begin a word, such as when searching for a
+			// single word, only the LIKE is used.
+			if(PromptResponseQueries.isTokenIndexComplete()) {
+				Set<String> prefixes = new HashSet<String>();
+				for(String promptResponseSearchToken : promptResponseSearchTokens) {
+					prefixes.addAll(
+						getTokenPrefixes(promptResponseSearchToken));
+				}
+				
+				if(prefixes.size() > 0) {
+					sqlBuilder.append(SQL_WHERE_PROMPT_RESPONSE_IDS);
+					sqlBuilder.append(
+						buildTokenIntersectionSql(
+							campaign.getId(),
+							prefixes,
+							parameters));
+				}
+			}
+			
 			for(String promptResponseSearchToken : promptResponseSearchTokens) {
 				sqlBuilder.append(SQL_WHERE_PROMPT_RESPONSE_SEARCH_TOKEN);
 				parameters.add('%' + promptResponseSearchToken + '%');
@@ -1121,4 +1159,131 @@ public class SurveyResponseQueries extends Query implements ISurveyResponseQueri
 		return sqlBuilder.toString();
 	}
 	
+	
+	/**
+	 * Returns the words of a search token that must each begin a word in any
+	 * prompt response that contains the search token. As the search token
+	 * matches anywhere in the response, a word at the start of the search
+	 * token may be the end of a longer word and is not returned. Every other
+	 * word follows a character that is not a letter or digit, so it begins a
+	 * word in the response, although it may be the start of a longer word if
+	 * it ends the search token. The words are split, lower-cased, and
+	 * truncated the same way as {@link StringUtils#tokenizeWords(String)}, so
+	 * that a word longer than {@link StringUtils#MAX_WORD_TOKEN_LENGTH} is
+	 * still the prefix of the response's truncated word.
+	 * 
+	 * @param searchToken The search token.
+	 * 
+	 * @return The words that must begin a word in a matching response, which
+	 * 		   may be empty if the search token has no more than one word.
+	 */
+	static Set<String> getTokenPrefixes(final String searchToken) {
+		Set<String> result = new HashSet<String>();
+		int length = searchToken.length();
+		int start = -1;
+		for(int i = 0; i <= length; i++) {
+			boolean wordChar = 
+				(i < length) && 
+				Character.isLetterOrDigit(searchToken.charAt(i));
+			
+			if(wordChar && (start < 0)) {
+				start = i;
+			}
+			else if((! wordChar) && (start >= 0)) {
+				if(start > 0) {
+					int end = 
+						Math.min(i, start + StringUtils.MAX_WORD_TOKEN_LENGTH);
+					result.add(
+						searchToken
+							.substring(start, end)
+							.toLowerCase(Locale.ENGLISH));
+				}
+				start = -1;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Orders the prefixes from the longest to the shortest, and then
+	 * alphabetically, so that the query is the same for the same prefixes and
+	 * the most selective prefix drives the intersection.
+	 * 
+	 * @param prefixes The prefixes, as returned by 
+	 * 				   {@link #getTokenPrefixes(String)}.
+	 * 
+	 * @return The ordered prefixes.
+	 */
+	static List<String> orderTokenPrefixes(final Collection<String> prefixes) {
+		List<String> result = new ArrayList<String>(prefixes);
+		Collections.sort(
+			result,
+			new Comparator<String>() {
+				@Override
+				public int compare(final String first, final String second) {
+					if(first.length() != second.length()) {
+						return second.length() - first.length();
+					}
+					return first.compareTo(second);
+				}
+			});
+		return result;
+	}
+	
+	/**
+	 * Builds a parenthetical sub-query that returns the IDs of the campaign's
+	 * prompt responses that have a token beginning with each of the given
+	 * prefixes. The prefixes only have letters and digits, so each is 
+	 * matched against the token index's primary key as a range, and the
+	 * longest prefix is read first.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 * 
+	 * @param prefixes The prefixes, as returned by 
+	 * 				   {@link #getTokenPrefixes(String)}.
+	 * 
+	 * @param parameters The list of parameters to which the prefixes' 
+	 * 					 patterns and the campaign's ID will be added.
+	 * 
+	 * @return The sub-query.
+	 */
+	static String buildTokenIntersectionSql(
+			final String campaignId,
+			final Collection<String> prefixes,
+			final Collection<Object> parameters) {
+		
+		List<String> prefixList = orderTokenPrefixes(prefixes);
+		StringBuilder fromBuilder = 
+			new StringBuilder("prompt_response_token prt0");
+		
+		// The JOIN parameters come before the WHERE parameters.
+		for(int index = 1; index < prefixList.size(); index++) {
+			String alias = "prt" + index;
+			
+			fromBuilder
+				.append(" JOIN prompt_response_token ")
+				.append(alias)
+				.append(" ON ")
+				.append(alias)
+				.append(".prompt_response_id = prt0.prompt_response_id")
+				.append(" AND ")
+				.append(alias)
+				.append(".token LIKE ?");
+			parameters.add(prefixList.get(index) + '%');
+		}
+		parameters.add(prefixList.get(0) + '%');
+		parameters.add(campaignId);
+		
+		return
+			"(SELECT prt0.prompt_response_id " +
+				"FROM " + fromBuilder.toString() + " " +
+					"JOIN prompt_response prt_pr " +
+						"ON prt_pr.id = prt0.prompt_response_id " +
+					"JOIN survey_response prt_sr " +
+						"ON prt_sr.id = prt_pr.survey_response_id " +
+				"WHERE prt0.token LIKE ? " +
+				"AND prt_sr.campaign_id = " +
+					"(SELECT id FROM campaign WHERE urn = ?)" +
+			")";
+	}
 }
@@ -64,6 +64,7 @@ import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.query.IMediaQueries;
+import org.ohmage.query.IPromptResponseQueries;
 import org.ohmage.query.ISurveyUploadQuery;
 import org.ohmage.service.MediaServices;
 import org.ohmage.util.DateTimeUtils;
@@ -85,6 +86,7 @@ import org.springframework.transaction.support.DefaultTransactionDefinition;
  */
 public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUploadQuery {
 	private IMediaQueries mediaQueries;
+	private IPromptResponseQueries promptResponseQueries;
 
 	public static final String IMAGE_STORE_FORMAT = "jpg";
 	public static final String IMAGE_SCALED_EXTENSION = "-s";
@@ -114,6 +116,12 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
         "prompt_type, prompt_id, response) " +
         "VALUES (?,?,?,?,?,?)";
 		
+	private static final String SQL_GET_PROMPT_RESPONSE_IDS =
+		"SELECT id " +
+		"FROM prompt_response " +
+		"WHERE survey_response_id = ? " +
+		"AND prompt_id = ?";
+		
 	// Inserts an images/media information into the url_based_resource table.
 	private static final String SQL_INSERT_MEDIA = 
 		"INSERT INTO url_based_resource(user_id, client, uuid, url, metadata) " +
@@ -135,13 +143,47 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	 * @param dataSource The DataSource to use when querying the database.
 	 */
 	private SurveyUploadQuery(DataSource dataSource, 
-				IMediaQueries iMediaQueries) {
+				IMediaQueries iMediaQueries,
+				IPromptResponseQueries iPromptResponseQueries) {
 	    
 		super(dataSource);
 		if(iMediaQueries == null) {
 			throw new IllegalArgumentException("An instance of IImageQueries is a required argument.");
 		}
+		if(iPromptResponseQueries == null) {
+			throw new IllegalArgumentException("An instance of IPromptResponseQueries is a required argument.");
+		}
 		this.mediaQueries = iMediaQueries;
+		this.promptResponseQueries = iPromptResponseQueries;
+	}
+	
+	/**
+	 * Returns the value of a prompt response as it is stored in the 
+	 * prompt_response table.
+	 * 
+	 * @param promptResponse
+	 *        The prompt response.
+	 * 
+	 * @return The stored representation of the response.
+	 */
+	private static String getResponseString(
+		final PromptResponse promptResponse) {
+	    
+	    Object response = promptResponse.getResponse();
+	    if(response instanceof DateTime) {
+		return DateTimeUtils.getW3cIso8601DateString(
+			(DateTime) response, true);
+	    }
+	    else if((promptResponse instanceof MultiChoiceCustomPromptResponse) && (response instanceof Collection)) {
+		JSONArray json = new JSONArray();
+		for(Object currResponse : (Collection<?>) response) {
+		    json.put(currResponse);
+		}
+		return json.toString();
+	    }
+	    else {
+		return response.toString();
+	    }
 	}
 	
 	/*
@@ -444,11 +486,14 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	    }
 	    
 	    final PromptResponse promptResponse = (PromptResponse) uploadPromptResponse;
+	    final String responseString = getResponseString(promptResponse);
+	    
+	    KeyHolder idKeyHolder = new GeneratedKeyHolder();
 			
 	    getJdbcTemplate().update(
 		    new PreparedStatementCreator() {
 			public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
-			    PreparedStatement ps = connection.prepareStatement(SQL_INSERT_PROMPT_RESPONSE);
+			    PreparedStatement ps = connection.prepareStatement(SQL_INSERT_PROMPT_RESPONSE, Statement.RETURN_GENERATED_KEYS);
 			    ps.setLong(1, surveyResponseId.longValue());
 						
 			    RepeatableSet parent = promptResponse.getPrompt().getParent();
@@ -462,33 +507,18 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 			    }
 			    ps.setString(4, promptResponse.getPrompt().getType().toString());
 			    ps.setString(5, promptResponse.getPrompt().getId());
-			    
-			    Object response = promptResponse.getResponse();
-			    if(response instanceof DateTime) {
-				ps.setString(
-					6,
-					DateTimeUtils
-					.getW3cIso8601DateString(
-						(DateTime) response,
-						true));
-			    }
-			    else if((promptResponse instanceof MultiChoiceCustomPromptResponse) && (response instanceof Collection)) {
-				JSONArray json = new JSONArray();
-				
-				for(Object currResponse : (Collection<?>) response) {
-				    json.put(currResponse);
-				}
-				
-				ps.setString(6, json.toString());
-			    }
-			    else {
-				ps.setString(6, response.toString());
-			    }
+			    ps.setString(6, responseString);
 			    
 			    return ps;
 			}
-		    }
+		    },
+		    idKeyHolder
 		    );
+	    
+	    // Add the response's words to the search index.
+	    promptResponseQueries.indexPromptResponse(
+		    idKeyHolder.getKey().longValue(),
+		    responseString);
 			
 	    // Save other media files.
 	    if( (promptResponse instanceof MediaPromptResponse)	) {
@@ -991,30 +1021,13 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 	    
 	    final PromptResponse promptResponse = (PromptResponse) uploadPromptResponse;
 	    final String sqlUpdateResponse = "UPDATE prompt_response SET response = ? WHERE survey_response_id = ? AND prompt_id = ?";
+	    final String responseString = getResponseString(promptResponse);
 			
 	    // In case of media prompts, extract the existing UUID to access the url_based_resource	
 	    getJdbcTemplate().update(
 		    new PreparedStatementCreator() {
 			public PreparedStatement createPreparedStatement(Connection connection) throws SQLException {
 			    PreparedStatement ps = connection.prepareStatement(sqlUpdateResponse);
-
-			    Object response = promptResponse.getResponse();
-			    String responseString = null;
-				
-			    if(response instanceof DateTime) {
-				responseString = DateTimeUtils.getW3cIso8601DateString(
-					(DateTime) response, true);
-			    }
-			    else if((promptResponse instanceof MultiChoiceCustomPromptResponse) && (response instanceof Collection)) {
-				JSONArray json = new JSONArray();
-				for(Object currResponse : (Collection<?>) response) {
-				    json.put(currResponse);
-				}
-				responseString = json.toString();
-			    }
-			    else {
-				responseString = response.toString();
-			    }
 				
 			    ps.setString(1, responseString);	
 			    ps.setLong(2, surveyResponseDbId.longValue());
@@ -1024,6 +1037,30 @@ public class SurveyUploadQuery extends AbstractUploadQuery implements ISurveyUpl
 			}
 		    }
 		    );
+	    
+	    // Replace the response's words in the search index.
+	    List<Long> promptResponseIds;
+	    try {
+		promptResponseIds = getJdbcTemplate().queryForList(
+			SQL_GET_PROMPT_RESPONSE_IDS,
+			new Object[] { 
+				surveyResponseDbId.longValue(), 
+				promptResponse.getPrompt().getId() },
+			Long.class);
+	    }
+	    catch(org.springframework.dao.DataAccessException e) {
+		throw new DataAccessException(
+			"Error executing SQL '" + SQL_GET_PROMPT_RESPONSE_IDS + 
+				"' with parameters: " + 
+				surveyResponseDbId + ", " + 
+				promptResponse.getPrompt().getId(),
+			e);
+	    }
+	    for(Long promptResponseId : promptResponseIds) {
+		promptResponseQueries.indexPromptResponse(
+			promptResponseId, 
+			responseString);
+	    }
 			
 	    // deal with media prompt response.
 	    if( (promptResponse instanceof MediaPromptResponse)) {		
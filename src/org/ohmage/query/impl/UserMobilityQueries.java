@@ -15,6 +15,7 @@
  ******************************************************************************/
 package org.ohmage.query.impl;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -51,6 +52,7 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.query.IUserMobilityQueries;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.datasource.DataSourceTransactionManager;
@@ -96,6 +98,20 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 		"AND u.id = m.user_id " +
 		"AND mps.id = m.privacy_state_id";
 	
+	// Retrieves the same columns as SQL_GET_MOBILITY_DATA without reading the 
+	// extended table, so the points are all mode-only points.
+	private static final String SQL_GET_MOBILITY_DATA_WITHOUT_SENSOR_DATA =
+		"SELECT m.uuid, u.username, m.client, " +
+			"m.epoch_millis, m.upload_timestamp, " +
+			"m.phone_timezone, m.location_status, m.location, " +
+			"m.mode, mps.privacy_state, " +
+			"NULL AS sensor_data, NULL AS features, " +
+			"NULL AS classifier_version " +
+		"FROM user u, mobility_privacy_state mps, mobility m " +
+		"WHERE u.username = ? " +
+		"AND u.id = m.user_id " +
+		"AND mps.id = m.privacy_state_id";
+	
 	// Adds a WHERE clause limiting the results to only those on or after a 
 	// date represented by the number of milliseconds since the epoch.
 	private static final String SQL_WHERE_ON_OR_AFTER_DATE =
@@ -142,6 +158,20 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 		"AND time_adjusted <= ? " +
 		"GROUP BY (time_adjusted DIV " + MILLIS_PER_DAY + ")";
 	
+	// Retrieves the local days, as the number of days since the epoch, on 
+	// which a user has Mobility points from the day index.
+	private static final String SQL_GET_DAYS_FOR_USER_WITHIN_RANGE =
+		"SELECT DISTINCT osdd.day " +
+		"FROM user u, observer o, observer_stream_link osl, " +
+			"observer_stream_data_day osdd " +
+		"WHERE u.username = ? " +
+		"AND osdd.user_id = u.id " +
+		"AND o.observer_id = 'edu.ucla.cens.Mobility' " +
+		"AND osl.observer_id = o.id " +
+		"AND osdd.observer_stream_link_id = osl.id " +
+		"AND osdd.day >= ? " +
+		"AND osdd.day <= ?";
+	
 	// Inserts a mode-only entry into the database.
 	private static final String SQL_INSERT =
 		"INSERT INTO mobility(uuid, user_id, client, epoch_millis, phone_timezone, location_status, location, mode, upload_timestamp, privacy_state_id) " +
@@ -462,6 +492,163 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 		StringBuilder sqlBuilder = new StringBuilder(SQL_GET_MOBILITY_DATA);
 		List<Object> parameters = new LinkedList<Object>();
 		parameters.add(username);
+		addMobilityCriteria(
+			sqlBuilder, 
+			parameters, 
+			startDate, 
+			endDate, 
+			privacyState, 
+			locationStatus, 
+			mode);
+		
+		try {
+			return getJdbcTemplate().query(
+					sqlBuilder.toString(),
+					parameters.toArray(),
+					new RowMapper<MobilityPoint>() {
+						@Override
+						public MobilityPoint mapRow(ResultSet rs, int rowNum) throws SQLException {
+							return mapMobilityPoint(rs);
+						}
+					}
+				);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+					"Error executing SQL '" +
+							sqlBuilder.toString() + 
+						"' with parameters: " + 
+							parameters,
+					e);
+		}
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.query.IUserMobilityQueries#processMobilityInformation(java.lang.String, org.joda.time.DateTime, org.joda.time.DateTime, org.ohmage.domain.MobilityPoint.PrivacyState, org.ohmage.domain.MobilityPoint.LocationStatus, org.ohmage.domain.MobilityPoint.Mode, boolean, org.ohmage.query.IUserMobilityQueries.MobilityPointHandler)
+	 */
+	@Override
+	public void processMobilityInformation(
+			final String username,
+			final DateTime startDate, 
+			final DateTime endDate, 
+			final PrivacyState privacyState,
+			final LocationStatus locationStatus, 
+			final Mode mode,
+			final boolean withSensorData,
+			final MobilityPointHandler handler)
+			throws DataAccessException {
+		
+		StringBuilder sqlBuilder = 
+			new StringBuilder(
+				(withSensorData) ? 
+					SQL_GET_MOBILITY_DATA : 
+					SQL_GET_MOBILITY_DATA_WITHOUT_SENSOR_DATA);
+		final List<Object> parameters = new LinkedList<Object>();
+		parameters.add(username);
+		addMobilityCriteria(
+			sqlBuilder, 
+			parameters, 
+			startDate, 
+			endDate, 
+			privacyState, 
+			locationStatus, 
+			mode);
+		final String sql = sqlBuilder.toString();
+		
+		try {
+			getJdbcTemplate().query(
+					new PreparedStatementCreator() {
+						/**
+						 * Creates a statement whose rows are streamed from 
+						 * the database rather than all being read into 
+						 * memory.
+						 */
+						@Override
+						public PreparedStatement createPreparedStatement(
+								final Connection connection)
+								throws SQLException {
+							
+							PreparedStatement ps = 
+								connection.prepareStatement(
+									sql, 
+									ResultSet.TYPE_FORWARD_ONLY, 
+									ResultSet.CONCUR_READ_ONLY);
+							ps.setFetchSize(Integer.MIN_VALUE);
+							
+							int i = 1;
+							for(Object parameter : parameters) {
+								ps.setObject(i++, parameter);
+							}
+							
+							return ps;
+						}
+					},
+					new RowCallbackHandler() {
+						/**
+						 * Builds the point and passes it to the handler.
+						 */
+						@Override
+						public void processRow(
+								final ResultSet rs)
+								throws SQLException {
+							
+							try {
+								handler.handle(mapMobilityPoint(rs));
+							}
+							catch(DomainException e) {
+								throw new SQLException(
+									"The handler could not handle a Mobility point.", 
+									e);
+							}
+							catch(IOException e) {
+								throw new SQLException(
+									"The handler could not write a Mobility point.", 
+									e);
+							}
+						}
+					}
+				);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+					"Error executing SQL '" +
+							sql + 
+						"' with parameters: " + 
+							parameters,
+					e);
+		}
+	}
+	
+	/**
+	 * Adds the optional criteria of a Mobility point query, which are 
+	 * ignored if they are null, and its ordering to the query.
+	 * 
+	 * @param sqlBuilder The query, to which the criteria are appended.
+	 * 
+	 * @param parameters The query's parameters, to which the criteria's 
+	 * 					 parameters are appended.
+	 * 
+	 * @param startDate Limits the results to only those on or after this date.
+	 * 
+	 * @param endDate Limits the results to only those on or before this date.
+	 * 
+	 * @param privacyState Limits the results to only those with the given
+	 * 					   privacy state.
+	 * 
+	 * @param locationStatus Limits the results to only those with the given
+	 * 						 location status.
+	 * 
+	 * @param mode Limits the results to only those with the given mode.
+	 */
+	private static void addMobilityCriteria(
+			final StringBuilder sqlBuilder,
+			final List<Object> parameters,
+			final DateTime startDate, 
+			final DateTime endDate, 
+			final PrivacyState privacyState,
+			final LocationStatus locationStatus, 
+			final Mode mode) {
 		
 		if(startDate != null) {
 			sqlBuilder.append(SQL_WHERE_ON_OR_AFTER_DATE);
@@ -485,65 +672,61 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 		}
 		
 		sqlBuilder.append(SQL_ORDER_BY_DATE);
+	}
+	
+	/**
+	 * Builds a Mobility point from the current row of a query based on
+	 * {@link #SQL_GET_MOBILITY_DATA}.
+	 * 
+	 * @param rs The result set, positioned at the row.
+	 * 
+	 * @return The Mobility point.
+	 * 
+	 * @throws SQLException The row could not be read or was malformed.
+	 */
+	private static MobilityPoint mapMobilityPoint(
+			final ResultSet rs)
+			throws SQLException {
 		
 		try {
-			return getJdbcTemplate().query(
-					sqlBuilder.toString(),
-					parameters.toArray(),
-					new RowMapper<MobilityPoint>() {
-						@Override
-						public MobilityPoint mapRow(ResultSet rs, int rowNum) throws SQLException {
-							try {
-								JSONObject location = null;
-								String locationString = rs.getString("location");
-								if(locationString != null) {
-									location = new JSONObject(locationString);
-								}
-								
-								JSONObject sensorData = null;
-								String sensorDataString = rs.getString("sensor_data");
-								if(sensorDataString != null) {
-									sensorData = new JSONObject(sensorDataString);
-								}
-								
-								JSONObject features = null;
-								String featuresString = rs.getString("features");
-								if(featuresString != null) {
-									features = new JSONObject(featuresString);
-								}
-								
-								return new MobilityPoint(
-										UUID.fromString(rs.getString("uuid")),
-										rs.getLong("epoch_millis"),
-										DateTimeZone.forID(rs.getString("phone_timezone")),
-										LocationStatus.valueOf(rs.getString("location_status").toUpperCase()),
-										location,
-										Mode.valueOf(rs.getString("mode").toUpperCase()),
-										MobilityPoint.PrivacyState.getValue(rs.getString("privacy_state")),
-										sensorData,
-										features,
-										rs.getString("classifier_version"));
-							}
-							catch(JSONException e) {
-								throw new SQLException("Error building a JSONObject.", e);
-							}
-							catch(DomainException e) {
-								throw new SQLException("Error building the MobilityInformation object. This suggests malformed data in the database.", e);
-							}
-							catch(IllegalArgumentException e) {
-								throw new SQLException("Error building the MobilityInformation object. This suggests malformed data in the database.", e);
-							}
-						}
-					}
-				);
+			JSONObject location = null;
+			String locationString = rs.getString("location");
+			if(locationString != null) {
+				location = new JSONObject(locationString);
+			}
+			
+			JSONObject sensorData = null;
+			String sensorDataString = rs.getString("sensor_data");
+			if(sensorDataString != null) {
+				sensorData = new JSONObject(sensorDataString);
+			}
+			
+			JSONObject features = null;
+			String featuresString = rs.getString("features");
+			if(featuresString != null) {
+				features = new JSONObject(featuresString);
+			}
+			
+			return new MobilityPoint(
+					UUID.fromString(rs.getString("uuid")),
+					rs.getLong("epoch_millis"),
+					DateTimeZone.forID(rs.getString("phone_timezone")),
+					LocationStatus.valueOf(rs.getString("location_status").toUpperCase()),
+					location,
+					Mode.valueOf(rs.getString("mode").toUpperCase()),
+					MobilityPoint.PrivacyState.getValue(rs.getString("privacy_state")),
+					sensorData,
+					features,
+					rs.getString("classifier_version"));
 		}
-		catch(org.springframework.dao.DataAccessException e) {
-			throw new DataAccessException(
-					"Error executing SQL '" +
-							sqlBuilder.toString() + 
-						"' with parameters: " + 
-							parameters,
-					e);
+		catch(JSONException e) {
+			throw new SQLException("Error building a JSONObject.", e);
+		}
+		catch(DomainException e) {
+			throw new SQLException("Error building the MobilityInformation object. This suggests malformed data in the database.", e);
+		}
+		catch(IllegalArgumentException e) {
+			throw new SQLException("Error building the MobilityInformation object. This suggests malformed data in the database.", e);
 		}
 	}
 	
@@ -627,6 +810,12 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 			final String username)
 			throws DataAccessException {
 		
+		// Once every day is in the index, the dates are read from it. The
+		// index only records whole days, so any day that the range touches
+		// is included, even if its points are outside of the range.
+		if(ObserverQueries.isDayIndexComplete()) {
+			return getDatesFromIndex(startDate, endDate, username);
+		}
 
 		List<Object> parameters = new ArrayList<Object>(3);
 		parameters.add(username);
@@ -676,6 +865,86 @@ public final class UserMobilityQueries extends AbstractUploadQuery implements IU
 		}
 	}
 	
+	/**
+	 * Retrieves the dates on which a user has Mobility points from the day
+	 * index. Each date is returned as midnight UTC, which is the same local
+	 * date as the points' adjusted times.
+	 * 
+	 * @param startDate The earliest date.
+	 * 
+	 * @param endDate The latest date.
+	 * 
+	 * @param username The user's username.
+	 * 
+	 * @return The dates.
+	 * 
+	 * @throws DataAccessException There was an error.
+	 */
+	private Set<DateTime> getDatesFromIndex(
+			final DateTime startDate,
+			final DateTime endDate,
+			final String username)
+			throws DataAccessException {
+		
+		List<Object> parameters = new ArrayList<Object>(3);
+		parameters.add(username);
+		parameters.add(toDay(startDate.getMillis()));
+		parameters.add(toDay(endDate.getMillis()));
+		
+		try {
+			return getJdbcTemplate().query(
+					SQL_GET_DAYS_FOR_USER_WITHIN_RANGE, 
+					parameters.toArray(),
+					new ResultSetExtractor<Set<DateTime>>() {
+						/**
+						 * Converts each day to midnight of that day.
+						 */
+						@Override
+						public Set<DateTime> extractData(ResultSet rs)
+								throws SQLException,
+								org.springframework.dao.DataAccessException {
+							
+							Set<DateTime> result = new HashSet<DateTime>();
+							
+							while(rs.next()) {
+								result
+									.add(
+										new DateTime(
+											rs.getLong("day") * MILLIS_PER_DAY,
+											DateTimeZone.UTC));
+							}
+							
+							return result;
+						}
+					}
+				);
+		}
+		catch(org.springframework.dao.DataAccessException e) {
+			throw new DataAccessException(
+					"Error executing SQL '" +
+							SQL_GET_DAYS_FOR_USER_WITHIN_RANGE + 
+						"' with parameters: " + 
+							parameters,
+					e);
+		}
+	}
+	
+	/**
+	 * Returns the number of whole days between the epoch and a time, rounding
+	 * down for times before the epoch.
+	 * 
+	 * @param millis The time in milliseconds.
+	 * 
+	 * @return The number of days.
+	 */
+	private static long toDay(final long millis) {
+		long day = millis / MILLIS_PER_DAY;
+		if((millis % MILLIS_PER_DAY) < 0) {
+			day--;
+		}
+		return day;
+	}
+	
 	/**
 	 * Retrieves the timestamp of last Mobility upload from a user.
 	 * 
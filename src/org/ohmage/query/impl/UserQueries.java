@@ -27,7 +27,9 @@ import javax.sql.DataSource;
 
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.cache.PreferenceCache;
+import org.ohmage.cache.SearchIndexCache;
 import org.ohmage.domain.Clazz;
+import org.ohmage.domain.DeletionJob;
 import org.ohmage.domain.UserInformation;
 import org.ohmage.domain.UserInformation.UserPersonal;
 import org.ohmage.domain.campaign.Campaign;
@@ -141,63 +143,78 @@ public class UserQueries extends Query implements IUserQueries {
 			"WHERE registration_id = ?" +
 		")";
 	
+	// Excludes the users that have been deleted but not yet purged.
+	private static final String SQL_NOT_DELETED =
+		"username NOT LIKE '" + DeletionJob.TOMBSTONE_PREFIX + "%'";
+
 	private static final String SQL_GET_ALL_USERNAMES =
 		"SELECT username " +
-		"FROM user";
+		"FROM user " +
+		"WHERE " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_LIKE_USERNAME =
 		"SELECT username " +
 		"FROM user " +
-		"WHERE username LIKE ?";
+		"WHERE username LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_WITH_ADMIN_VALUE =
 		"SELECT username " +
 		"FROM user " +
-		"WHERE admin = ?";
+		"WHERE admin = ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_WITH_ENABLED_VALUE =
 		"SELECT username " +
 		"FROM user " +
-		"WHERE enabled = ?";
+		"WHERE enabled = ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_WITH_NEW_ACCOUNT_VALUE =
 		"SELECT username " +
 		"FROM user " +
-		"WHERE new_account = ?";
+		"WHERE new_account = ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_WITH_CAMPAIGN_CREATION_PRIVILEGE =
 		"SELECT username " +
 		"FROM user " +
-		"WHERE campaign_creation_privilege = ?";
+		"WHERE campaign_creation_privilege = ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_LIKE_FIRST_NAME =
 		"SELECT username " +
 		"FROM user, user_personal " +
 		"WHERE user.id = user_id " +
-		"AND first_name LIKE ?";
+		"AND first_name LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_LIKE_LAST_NAME =
 		"SELECT username " +
 		"FROM user, user_personal " +
 		"WHERE user.id = user_id " +
-		"AND last_name LIKE ?";
+		"AND last_name LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_LIKE_ORGANIZATION =
 		"SELECT username " +
 		"FROM user, user_personal " +
 		"WHERE user.id = user_id " +
-		"AND organization LIKE ?";
+		"AND organization LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_LIKE_PERSONAL_ID =
 		"SELECT username " +
 		"FROM user, user_personal " +
 		"WHERE user.id = user_id " +
-		"AND personal_id LIKE ?";
+		"AND personal_id LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	private static final String SQL_GET_USERNAMES_LIKE_EMAIL_ADDRESS =
 		"SELECT username " +
 		"FROM user " +
-		"WHERE email_address LIKE ?";
+		"WHERE email_address LIKE ? " +
+		"AND " + SQL_NOT_DELETED;
 	
 	// Retrieves the personal information about a user.
 	private static final String SQL_GET_USER_PERSONAL =
@@ -363,11 +380,6 @@ public class UserQueries extends Query implements IUserQueries {
 		"SET accepted_timestamp = ? " +
 		"WHERE registration_id = ?";
 	
-	// Deletes the user.
-	private static final String SQL_DELETE_USER = 
-		"DELETE FROM user " +
-		"WHERE username = ?";
-	
 	// Deletes a user's personal information.
 	private static final String SQL_DELETE_USER_PERSONAL = 
 		"DELETE user_personal " +
@@ -466,6 +478,9 @@ public class UserQueries extends Query implements IUserQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
+			
+			// Update the search index.
+			SearchIndexCache.reindexUser(username);
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
@@ -685,6 +700,9 @@ public class UserQueries extends Query implements IUserQueries {
 					transactionManager.rollback(status);
 					throw new DataAccessException("Error while committing the transaction.", e);
 				}
+				
+				// Update the search index.
+				SearchIndexCache.reindexUser(username);
 			}
 		}
 		catch(TransactionException e) {
@@ -900,6 +918,9 @@ public class UserQueries extends Query implements IUserQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
+			
+			// Update the search index.
+			SearchIndexCache.reindexUser(username);
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
@@ -1214,6 +1235,13 @@ public class UserQueries extends Query implements IUserQueries {
 	public List<String> getUsernamesFromPartialUsername(String username)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchUsers(
+					SearchIndexCache.FIELD_USER_USERNAME,
+					username));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_USERNAMES_LIKE_USERNAME, 
@@ -1339,6 +1367,13 @@ public class UserQueries extends Query implements IUserQueries {
 	public List<String> getUsernamesFromPartialFirstName(String partialFirstName)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchUsers(
+					SearchIndexCache.FIELD_USER_FIRST_NAME,
+					partialFirstName));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_USERNAMES_LIKE_FIRST_NAME, 
@@ -1364,6 +1399,13 @@ public class UserQueries extends Query implements IUserQueries {
 	public List<String> getUsernamesFromPartialLastName(String partialLastName)
 			throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchUsers(
+					SearchIndexCache.FIELD_USER_LAST_NAME,
+					partialLastName));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_USERNAMES_LIKE_LAST_NAME, 
@@ -1389,6 +1431,13 @@ public class UserQueries extends Query implements IUserQueries {
 	public List<String> getUsernamesFromPartialOrganization(
 			String partialOrganization) throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchUsers(
+					SearchIndexCache.FIELD_USER_ORGANIZATION,
+					partialOrganization));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_USERNAMES_LIKE_ORGANIZATION, 
@@ -1414,6 +1463,13 @@ public class UserQueries extends Query implements IUserQueries {
 	public List<String> getUsernamesFromPartialPersonalId(
 			String partialPersonalId) throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchUsers(
+					SearchIndexCache.FIELD_USER_PERSONAL_ID,
+					partialPersonalId));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_USERNAMES_LIKE_PERSONAL_ID, 
@@ -1439,6 +1495,13 @@ public class UserQueries extends Query implements IUserQueries {
 	public List<String> getUsernamesFromPartialEmailAddress(
 			String partialEmailAddress) throws DataAccessException {
 
+		if(SearchIndexCache.isReady()) {
+			return new ArrayList<String>(
+				SearchIndexCache.instance().searchUsers(
+					SearchIndexCache.FIELD_USER_EMAIL_ADDRESS,
+					partialEmailAddress));
+		}
+
 		try {
 			return getJdbcTemplate().query(
 					SQL_GET_USERNAMES_LIKE_EMAIL_ADDRESS, 
@@ -1584,13 +1647,14 @@ public class UserQueries extends Query implements IUserQueries {
 	
 	/*
 	 * (non-Javadoc)
-	 * @see org.ohmage.query.IUserQueries#getVisibleUsersSql(java.util.Collection, java.lang.String, java.util.Collection, java.util.Collection, java.util.Collection, java.lang.Boolean, java.lang.Boolean, java.lang.Boolean, java.lang.Boolean, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, long, long)
+	 * @see org.ohmage.query.IUserQueries#getVisibleUsersSql(java.util.Collection, java.lang.String, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, java.lang.Boolean, java.lang.Boolean, java.lang.Boolean, java.lang.Boolean, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, java.util.Collection, long, long)
 	 */
 	@Override
 	public String getVisibleUsersSql(
 		final Collection<Object> parameters,
 		final String requesterUsername,
 		final Collection<String> usernames,
+		final Collection<String> exactUsernames,
 		final Collection<String> emailAddresses,
 		final Boolean admin,
 		final Boolean enabled,
@@ -1671,7 +1735,9 @@ public class UserQueries extends Query implements IUserQueries {
 								// which the requesting user is privileged.
 								"AND uc.class_id = ruc.class_id" +
 							")" +
-						")"
+						") " +
+						// Deleted users are hidden until they are purged.
+						"AND u." + SQL_NOT_DELETED
 				);
 		
 		// The initial parameter list doesn't have any items.
@@ -1700,6 +1766,21 @@ public class UserQueries extends Query implements IUserQueries {
 			sql.append(")");
 		}
 		
+		// If the list of exact usernames is present, add a WHERE clause
+		// component that limits the results to only those users.
+		if(exactUsernames != null) {
+			if(exactUsernames.size() == 0) {
+				sql.append(" AND false");
+			}
+			else {
+				sql.append(" AND u.username IN ");
+				sql.append(
+					StringUtils.generateStatementPList(exactUsernames.size()));
+				
+				parameters.addAll(exactUsernames);
+			}
+		}
+		
 		// If the list of email addresses is present, add a WHERE clause that
 		// that contains all of the tokens in their own OR.
 		if(emailAddresses != null && emailAddresses.size() > 0) {
@@ -2334,6 +2415,9 @@ public class UserQueries extends Query implements IUserQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
+			
+			// Update the search index.
+			SearchIndexCache.reindexUser(username);
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
@@ -2507,47 +2591,9 @@ public class UserQueries extends Query implements IUserQueries {
 				transactionManager.rollback(status);
 				throw new DataAccessException("Error while committing the transaction.", e);
 			}
-		}
-		catch(TransactionException e) {
-			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
-		}
-	}
-	
-	/**
-	 * Deletes all of the users in a Collection.
-	 * 
-	 * @param usernames A Collection of usernames for the users to delete.
-	 */
-	public void deleteUsers(Collection<String> usernames) throws DataAccessException {
-		// Create the transaction.
-		DefaultTransactionDefinition def = new DefaultTransactionDefinition();
-		def.setName("Deleting a user.");
-		
-		try {
-			// Begin the transaction.
-			PlatformTransactionManager transactionManager = new DataSourceTransactionManager(getDataSource());
-			TransactionStatus status = transactionManager.getTransaction(def);
-			
-			// Delete the users.
-			for(String username : usernames) {
-				try {
-					getJdbcTemplate().update(SQL_DELETE_USER, username);
-				}
-				catch(org.springframework.dao.DataAccessException e) {
-					transactionManager.rollback(status);
-					throw new DataAccessException("Error executing the following SQL '" + SQL_DELETE_USER + "' with parameters: " + 
-							username, e);
-				}
-			}
 			
-			// Commit the transaction.
-			try {
-				transactionManager.commit(status);
-			}
-			catch(TransactionException e) {
-				transactionManager.rollback(status);
-				throw new DataAccessException("Error while committing the transaction.", e);
-			}
+			// The deleted users aren't known, so rebuild the search index.
+			SearchIndexCache.requestRebuild();
 		}
 		catch(TransactionException e) {
 			throw new DataAccessException("Error while attempting to rollback the transaction.", e);
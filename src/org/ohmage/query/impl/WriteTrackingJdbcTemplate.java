@@ -0,0 +1,107 @@
+package org.ohmage.query.impl;
+
+import java.util.Collection;
+
+import javax.sql.DataSource;
+
+import org.ohmage.spring.ReadWriteRoutingDataSource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.support.KeyHolder;
+
+/**
+ * A JdbcTemplate that tells the {@link ReadWriteRoutingDataSource} whenever
+ * it writes, so that the reads that follow are sent to the primary until the
+ * replica has had time to catch up. Every update() and batchUpdate() method
+ * of JdbcTemplate is built on one of the methods overridden here.
+ */
+class WriteTrackingJdbcTemplate extends ProfilingJdbcTemplate {
+	/**
+	 * Creates the template.
+	 * 
+	 * @param dataSource The DataSource to query.
+	 */
+	WriteTrackingJdbcTemplate(final DataSource dataSource) {
+		super(dataSource);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#update(java.lang.String)
+	 */
+	@Override
+	public int update(final String sql) throws DataAccessException {
+		ReadWriteRoutingDataSource.markWrite();
+		return super.update(sql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#update(org.springframework.jdbc.core.PreparedStatementCreator, org.springframework.jdbc.core.PreparedStatementSetter)
+	 */
+	@Override
+	protected int update(
+			final PreparedStatementCreator psc,
+			final PreparedStatementSetter pss)
+			throws DataAccessException {
+
+		ReadWriteRoutingDataSource.markWrite();
+		return super.update(psc, pss);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#update(org.springframework.jdbc.core.PreparedStatementCreator, org.springframework.jdbc.support.KeyHolder)
+	 */
+	@Override
+	public int update(
+			final PreparedStatementCreator psc,
+			final KeyHolder generatedKeyHolder)
+			throws DataAccessException {
+
+		ReadWriteRoutingDataSource.markWrite();
+		return super.update(psc, generatedKeyHolder);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#batchUpdate(java.lang.String[])
+	 */
+	@Override
+	public int[] batchUpdate(final String[] sql) throws DataAccessException {
+		ReadWriteRoutingDataSource.markWrite();
+		return super.batchUpdate(sql);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#batchUpdate(java.lang.String, org.springframework.jdbc.core.BatchPreparedStatementSetter)
+	 */
+	@Override
+	public int[] batchUpdate(
+			final String sql,
+			final BatchPreparedStatementSetter pss)
+			throws DataAccessException {
+
+		ReadWriteRoutingDataSource.markWrite();
+		return super.batchUpdate(sql, pss);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.springframework.jdbc.core.JdbcTemplate#batchUpdate(java.lang.String, java.util.Collection, int, org.springframework.jdbc.core.ParameterizedPreparedStatementSetter)
+	 */
+	@Override
+	public <T> int[][] batchUpdate(
+			final String sql,
+			final Collection<T> batchArgs,
+			final int batchSize,
+			final ParameterizedPreparedStatementSetter<T> pss) {
+
+		ReadWriteRoutingDataSource.markWrite();
+		return super.batchUpdate(sql, batchArgs, batchSize, pss);
+	}
+}
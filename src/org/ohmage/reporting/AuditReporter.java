@@ -24,13 +24,12 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.ohmage.cache.BackgroundTaskScheduler;
 import org.ohmage.cache.PreferenceCache;
 import org.ohmage.domain.Audit;
 import org.ohmage.exception.CacheMissException;
@@ -39,6 +38,7 @@ import org.ohmage.request.InputKeys;
 import org.ohmage.request.RequestBuilder;
 import org.ohmage.service.AuditServices;
 import org.ohmage.util.DateTimeUtils;
+import org.springframework.beans.factory.DisposableBean;
 
 /**
  * Begins on server startup and creates a daily snapshot of some information
@@ -46,16 +46,18 @@ import org.ohmage.util.DateTimeUtils;
  * 
  * @author John Jenkins
  */
-public final class AuditReporter {
+public final class AuditReporter implements DisposableBean {
 	private static final Logger LOGGER = Logger.getLogger(AuditReporter.class);
 	
-	// Used by the timer.
+	// Used by the scheduler.
 	private static final int MILLIS_IN_A_DAY = 1000 * 60 * 60 * 24;
 	
-	// The number of idle threads ready to generate the report. Two reports 
-	// should never be generated at the same time, so we only need one thread
-	// to handle this.
-	private static final int THREAD_POOL_SIZE = 1;
+	// The number of reports that may be generated at once. Two reports 
+	// should never be generated at the same time.
+	private static final int MAX_CONCURRENT_REPORTS = 1;
+	
+	// The task that generates the report.
+	private final BackgroundTaskScheduler.Task task;
 	
 	// Where we will save the audit reports.
 	private static String saveLocation;
@@ -264,7 +266,7 @@ public final class AuditReporter {
 	}
 	
 	/**
-	 * Starts a timer task to generate a report at the beginning of every day.
+	 * Registers a task to generate a report at the beginning of every day.
 	 */
 	private AuditReporter() {
 		try {
@@ -315,10 +317,23 @@ public final class AuditReporter {
 			Calendar.getInstance().getTimeInMillis();
 		
 		// Begin the task.
-		Executors.newScheduledThreadPool(THREAD_POOL_SIZE).scheduleAtFixedRate(
-			new GenerateReport(), 
-			initialDelay, 
-			MILLIS_IN_A_DAY, 
-			TimeUnit.MILLISECONDS);
+		task =
+			BackgroundTaskScheduler
+				.instance()
+				.register(
+					"AuditReporter - Generating the daily audit report",
+					new GenerateReport(),
+					initialDelay,
+					MILLIS_IN_A_DAY,
+					MAX_CONCURRENT_REPORTS,
+					true);
+	}
+	
+	/**
+	 * Stops the report task.
+	 */
+	@Override
+	public void destroy() {
+		task.cancel();
 	}
 }
@@ -192,6 +192,7 @@ public final class InputKeys {
 	public static final String DESCRIPTION = "description";
 	public static final String NUM_TO_SKIP = "num_to_skip";
 	public static final String NUM_TO_RETURN = "num_to_return";
+	public static final String CURSOR = "cursor";
 	public static final String CAPTCHA_CHALLENGE = "recaptcha_challenge_field";
 	public static final String CAPTCHA_RESPONSE = "recaptcha_response_field";
 	public static final String REDIRECT = "redirect";
@@ -235,9 +236,18 @@ public final class InputKeys {
 	public static final String STREAM_ID = "stream_id";
 	public static final String STREAM_VERSION = "stream_version";
 	public static final String STREAM_IDS_WITH_VERSION = "stream_ids_with_version";
+	public static final String BUCKET_SIZE = "bucket_size";
 	public static final String CHRONOLOGICAL = "chronological";
 	public static final String PRESERVE_INVALID_POINTS = "preserve_invalid_points";
 	
+	// Export Constants
+	public static final String EXPORT_ID = "export_id";
+	public static final String EXPORT_TYPE = "export_type";
+	
+	// Admin Constants
+	public static final String RESET = "reset";
+	public static final String INVALIDATE = "invalidate";
+	
 	// OMH Constants
 	public static final String OMH_REQUESTER = "requester";
 	public static final String OMH_PAYLOAD_ID = "payload_id";
@@ -44,6 +44,7 @@ import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.jee.filter.GzipFilter;
+import org.ohmage.jee.filter.StreamedParameter;
 import org.ohmage.jee.servlet.RequestServlet;
 import org.springframework.util.CollectionUtils;
 
@@ -126,6 +127,9 @@ public abstract class Request {
 	private boolean failed;
 	
 	private final Map<String, String[]> parameters;
+	private final Map<String, StreamedParameter> streamedParameters;
+	private final Map<String, String[]> materializedParameters =
+		new HashMap<String, String[]>();
 	private final String requesterInetAddr; 
 	
 	/**
@@ -155,6 +159,8 @@ public abstract class Request {
 		failed = false;
 
 		Map<String, String[]> tParameters = new HashMap<String, String[]>();
+		Map<String, StreamedParameter> tStreamedParameters = 
+			Collections.emptyMap();
 		String tRequesterInetAddr = null;
 		try {
 			if(httpRequest != null) {
@@ -173,6 +179,19 @@ public abstract class Request {
 						// setting this value, so it must be a map.
 						tParameters = (Map<String, String[]>) parametersObject;
 						
+						// Any large values that the GZIP filter streamed to
+						// temporary files are kept separately.
+						Object streamedParametersObject =
+							httpRequest
+								.getAttribute(
+									GzipFilter
+										.ATTRIBUTE_KEY_STREAMED_PARAMETERS);
+						if(streamedParametersObject instanceof Map) {
+							tStreamedParameters = 
+								(Map<String, StreamedParameter>) 
+									streamedParametersObject;
+						}
+						
 						// LOGGER.debug("HT: parametersObject is an instance of a map");
 						if (CollectionUtils.isEmpty(tParameters.entrySet())) {
 							try { // check whether the request/file is too large
@@ -204,10 +223,12 @@ public abstract class Request {
 				}
 				// HT iterates through the param map
 				//LOGGER.debug("HT: About to iterate through the param map");	
-				for (Map.Entry<String,String[]> entry : tParameters.entrySet()) {
-				    String key = entry.getKey();
-				    String[] value = entry.getValue();
-				    LOGGER.debug("HT:" + key + " : " + Arrays.toString(value));
+				if(LOGGER.isDebugEnabled()) {
+					for (Map.Entry<String,String[]> entry : tParameters.entrySet()) {
+					    String key = entry.getKey();
+					    String[] value = entry.getValue();
+					    LOGGER.debug("HT:" + key + " : " + Arrays.toString(value));
+					}
 				}
 			}
 		}
@@ -218,6 +239,7 @@ public abstract class Request {
 		}
 		
 		this.parameters = tParameters;
+		this.streamedParameters = tStreamedParameters;
 		this.requesterInetAddr = tRequesterInetAddr;
 	}
 	
@@ -327,12 +349,71 @@ public abstract class Request {
 		}
 		
 		String[] result = parameters.get(parameterKey);
+		if(result == null) {
+			result = getMaterializedParameter(parameterKey);
+		}
 		if(result == null) {
 			result = new String[0];
 		}
 		return result;
 	}
 	
+	/**
+	 * Returns the value of a parameter that was too large to be kept in
+	 * memory and was streamed to a temporary file, if any. Requests that can
+	 * process such a value incrementally should prefer this to
+	 * {@link #getParameterValues(String)}, which reads the entire value into
+	 * memory.
+	 * 
+	 * @param parameterKey The parameter's key.
+	 * 
+	 * @return The streamed parameter or null if the parameter was not
+	 * 		   streamed.
+	 */
+	protected StreamedParameter getStreamedParameter(String parameterKey) {
+		if(parameterKey == null) {
+			return null;
+		}
+		
+		return streamedParameters.get(parameterKey);
+	}
+	
+	/**
+	 * Reads a streamed parameter's value into memory for requests that need
+	 * it as a string. The value is only read once.
+	 * 
+	 * @param parameterKey The parameter's key.
+	 * 
+	 * @return The parameter's value or null if the parameter was not streamed
+	 * 		   or could not be read.
+	 */
+	private String[] getMaterializedParameter(String parameterKey) {
+		StreamedParameter streamedParameter = 
+			streamedParameters.get(parameterKey);
+		if(streamedParameter == null) {
+			return null;
+		}
+		
+		String[] result = materializedParameters.get(parameterKey);
+		if(result == null) {
+			try {
+				result = new String[] { streamedParameter.getValue() };
+			}
+			catch(IOException e) {
+				LOGGER
+					.error(
+						"Could not read the streamed parameter: " + 
+							parameterKey, 
+						e);
+				return null;
+			}
+			
+			materializedParameters.put(parameterKey, result);
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * Returns the first value for some key from the parameter list. If there
 	 * are no values for a key, null is returned.
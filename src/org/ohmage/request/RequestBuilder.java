@@ -28,6 +28,11 @@ import org.ohmage.request.accessrequest.AccessRequestCreationRequest;
 import org.ohmage.request.accessrequest.AccessRequestDeletionRequest;
 import org.ohmage.request.accessrequest.AccessRequestReadRequest;
 import org.ohmage.request.accessrequest.AccessRequestUpdateRequest;
+import org.ohmage.request.admin.CacheStatisticsReadRequest;
+import org.ohmage.request.admin.DeletionJobReadRequest;
+import org.ohmage.request.admin.MediaCollectionReadRequest;
+import org.ohmage.request.admin.SqlStatisticsReadRequest;
+import org.ohmage.request.admin.TaskStatisticsReadRequest;
 import org.ohmage.request.audio.AudioReadRequest;
 import org.ohmage.request.audit.AuditReadRequest;
 import org.ohmage.request.auth.AuthRequest;
@@ -52,6 +57,9 @@ import org.ohmage.request.document.DocumentDeletionRequest;
 import org.ohmage.request.document.DocumentReadContentsRequest;
 import org.ohmage.request.document.DocumentReadRequest;
 import org.ohmage.request.document.DocumentUpdateRequest;
+import org.ohmage.request.export.ExportJobCreationRequest;
+import org.ohmage.request.export.ExportJobDownloadRequest;
+import org.ohmage.request.export.ExportJobReadRequest;
 import org.ohmage.request.image.ImageBatchZipReadRequest;
 import org.ohmage.request.image.ImageReadRequest;
 import org.ohmage.request.media.MediaReadRequest;
@@ -65,6 +73,7 @@ import org.ohmage.request.mobility.MobilityUploadRequest;
 import org.ohmage.request.observer.ObserverCreationRequest;
 import org.ohmage.request.observer.ObserverReadRequest;
 import org.ohmage.request.observer.ObserverUpdateRequest;
+import org.ohmage.request.observer.StreamAggregateRequest;
 import org.ohmage.request.observer.StreamReadInvalidRequest;
 import org.ohmage.request.observer.StreamReadRequest;
 import org.ohmage.request.observer.StreamUploadRequest;
@@ -140,6 +149,13 @@ public final class RequestBuilder implements ServletContextAware {
 	// Audit
 	private String apiAuditRead;
 	
+	// Admin
+	private String apiAdminSqlRead;
+	private String apiAdminCacheRead;
+	private String apiAdminTaskRead;
+	private String apiAdminDeletionRead;
+	private String apiAdminMediaCollectionRead;
+	
 	// Authentication
 	private String apiUserAuth;
 	private String apiUserAuthToken;
@@ -173,6 +189,11 @@ public final class RequestBuilder implements ServletContextAware {
 	private String apiDocumentUpdate;
 	private String apiDocumentDelete;
 
+	// Export
+	private String apiExportCreate;
+	private String apiExportRead;
+	private String apiExportDownload;
+
 	// Image
 	private String apiImageRead;
 	private String apiImageBatchZipRead;
@@ -196,6 +217,7 @@ public final class RequestBuilder implements ServletContextAware {
 	private String apiObserverUpdate;
 	private String apiStreamUpload;
 	private String apiStreamRead;
+	private String apiStreamAggregate;
 	private String apiStreamInvalidRead;
 	
 	// OMH
@@ -254,6 +276,28 @@ public final class RequestBuilder implements ServletContextAware {
 	private String apiVisualizationSurveyResponsePrivacy;
 	private String apiVisualizationSurveyResponsePrivacyTimeseries;
 	
+	/**
+	 * The pools in which requests are executed. Most requests are quick and
+	 * are executed inline on the servlet container's thread. Requests that
+	 * may hold a thread for a long time, large uploads and exports, are
+	 * executed on their own bounded pools so that they cannot starve the
+	 * others.
+	 */
+	public static enum ExecutionPool {
+		/**
+		 * The request is executed on the container's thread.
+		 */
+		INLINE,
+		/**
+		 * The request uploads a potentially large amount of data.
+		 */
+		UPLOAD,
+		/**
+		 * The request reads a potentially large amount of data.
+		 */
+		EXPORT;
+	}
+	
 	private static RequestBuilder singleton;
 
 	/**
@@ -302,6 +346,13 @@ public final class RequestBuilder implements ServletContextAware {
 		// Audit
 		apiAuditRead = apiRoot + "/audit/read";
 		
+		// Admin
+		apiAdminSqlRead = apiRoot + "/admin/sql/read";
+		apiAdminCacheRead = apiRoot + "/admin/cache/read";
+		apiAdminTaskRead = apiRoot + "/admin/task/read";
+		apiAdminDeletionRead = apiRoot + "/admin/deletion/read";
+		apiAdminMediaCollectionRead = apiRoot + "/admin/media_collection/read";
+		
 		// Authentication
 		apiUserAuth = apiRoot + "/user/auth";
 		apiUserAuthToken = apiRoot + "/user/auth_token";
@@ -335,6 +386,11 @@ public final class RequestBuilder implements ServletContextAware {
 		apiDocumentUpdate = apiRoot + "/document/update";
 		apiDocumentDelete = apiRoot + "/document/delete";
 
+		// Export
+		apiExportCreate = apiRoot + "/export/create";
+		apiExportRead = apiRoot + "/export/read";
+		apiExportDownload = apiRoot + "/export/download";
+
 		// Image
 		apiImageRead = apiRoot + "/image/read";
 		apiImageBatchZipRead = apiRoot + "/image/batch/zip/read";
@@ -358,6 +414,7 @@ public final class RequestBuilder implements ServletContextAware {
 		apiObserverUpdate = apiRoot + "/observer/update";
 		apiStreamUpload = apiRoot + "/stream/upload";
 		apiStreamRead = apiRoot + "/stream/read";
+		apiStreamAggregate = apiRoot + "/stream/aggregate";
 		apiStreamInvalidRead = apiRoot + "/stream/invalid/read";
 		
 		// OMH
@@ -501,6 +558,22 @@ public final class RequestBuilder implements ServletContextAware {
 		else if(apiAuditRead.equals(requestUri)) {
 			return new AuditReadRequest(httpRequest);
 		}
+		// Admin
+		else if(apiAdminSqlRead.equals(requestUri)) {
+			return new SqlStatisticsReadRequest(httpRequest);
+		}
+		else if(apiAdminCacheRead.equals(requestUri)) {
+			return new CacheStatisticsReadRequest(httpRequest);
+		}
+		else if(apiAdminTaskRead.equals(requestUri)) {
+			return new TaskStatisticsReadRequest(httpRequest);
+		}
+		else if(apiAdminDeletionRead.equals(requestUri)) {
+			return new DeletionJobReadRequest(httpRequest);
+		}
+		else if(apiAdminMediaCollectionRead.equals(requestUri)) {
+			return new MediaCollectionReadRequest(httpRequest);
+		}
 		// Campaign
 		else if(apiCampaignAssignment.equals(requestUri)) {
 			return new CampaignAssignmentRequest(httpRequest);
@@ -558,6 +631,16 @@ public final class RequestBuilder implements ServletContextAware {
 		else if(apiDocumentDelete.equals(requestUri)) {
 			return new DocumentDeletionRequest(httpRequest);
 		}
+		// Export
+		else if(apiExportCreate.equals(requestUri)) {
+			return new ExportJobCreationRequest(httpRequest);
+		}
+		else if(apiExportRead.equals(requestUri)) {
+			return new ExportJobReadRequest(httpRequest);
+		}
+		else if(apiExportDownload.equals(requestUri)) {
+			return new ExportJobDownloadRequest(httpRequest);
+		}
 		// Image
 		else if(apiImageRead.equals(requestUri)) {
 			return new ImageReadRequest(httpRequest);
@@ -610,6 +693,9 @@ public final class RequestBuilder implements ServletContextAware {
 		else if(apiStreamRead.equals(requestUri)) {
 			return new StreamReadRequest(httpRequest);
 		}
+		else if(apiStreamAggregate.equals(requestUri)) {
+			return new StreamAggregateRequest(httpRequest);
+		}
 		else if(apiStreamInvalidRead.equals(requestUri)) {
 			return new StreamReadInvalidRequest(httpRequest);
 		}
@@ -788,6 +874,12 @@ public final class RequestBuilder implements ServletContextAware {
 				apiAudioRead.equals(uri) ||
 				// Audit
 				apiAuditRead.equals(uri) ||
+				// Admin
+				apiAdminSqlRead.equals(uri) ||
+				apiAdminCacheRead.equals(uri) ||
+				apiAdminTaskRead.equals(uri) ||
+				apiAdminDeletionRead.equals(uri) ||
+				apiAdminMediaCollectionRead.equals(uri) ||
 				// Campaign
 				apiCampaignAssignment.equals(uri) ||
 				apiCampaignCreate.equals(uri) ||
@@ -809,6 +901,10 @@ public final class RequestBuilder implements ServletContextAware {
 				apiDocumentReadContents.equals(uri) ||
 				apiDocumentUpdate.equals(uri) ||
 				apiDocumentDelete.equals(uri) ||
+				// Export
+				apiExportCreate.equals(uri) ||
+				apiExportRead.equals(uri) ||
+				apiExportDownload.equals(uri) ||
 				// Image
 				apiImageRead.equals(uri) ||
 				apiImageBatchZipRead.equals(uri) ||
@@ -829,6 +925,7 @@ public final class RequestBuilder implements ServletContextAware {
 				apiObserverUpdate.equals(uri) ||
 				apiStreamUpload.equals(uri) ||
 				apiStreamRead.equals(uri) ||
+				apiStreamAggregate.equals(uri) ||
 				apiStreamInvalidRead.equals(uri) ||
 				// OMH
 				apiOmhAuth.equals(uri) ||
@@ -882,6 +979,57 @@ public final class RequestBuilder implements ServletContextAware {
 		return false;
 	}
 
+	/**
+	 * Returns the pool in which the request for some URI should be executed.
+	 * 
+	 * @param uri The URI of the request.
+	 * 
+	 * @return The pool in which to execute the request. Unknown URIs are
+	 * 		   executed inline.
+	 */
+	public ExecutionPool getExecutionPool(final String uri) {
+		if(
+				// Mobility
+				apiMobilityUpload.equals(uri) ||
+				// Observer
+				apiStreamUpload.equals(uri) ||
+				// OMH
+				apiOmhWrite.equals(uri) ||
+				// Survey
+				apiSurveyUpload.equals(uri)) {
+			
+			return ExecutionPool.UPLOAD;
+		}
+		else if(
+				// Audio
+				apiAudioRead.equals(uri) ||
+				// Document
+				apiDocumentReadContents.equals(uri) ||
+				// Export
+				apiExportDownload.equals(uri) ||
+				// Image
+				apiImageBatchZipRead.equals(uri) ||
+				// Media
+				apiMediaRead.equals(uri) ||
+				// Mobility
+				apiMobilityReadChunked.equals(uri) ||
+				apiMobilityReadCsv.equals(uri) ||
+				// Observer
+				apiStreamRead.equals(uri) ||
+				apiStreamAggregate.equals(uri) ||
+				// OMH
+				apiOmhRead.equals(uri) ||
+				// Survey
+				apiSurveyResponseRead.equals(uri) ||
+				// Video
+				apiVideoRead.equals(uri)) {
+			
+			return ExecutionPool.EXPORT;
+		}
+		
+		return ExecutionPool.INLINE;
+	}
+
 	/**
 	 * Returns the root of this web application.
 	 * 
@@ -963,6 +1111,51 @@ public final class RequestBuilder implements ServletContextAware {
 		return apiAuditRead;
 	}
 
+	/**
+	 * Returns apiAdminSqlRead.
+	 *
+	 * @return The apiAdminSqlRead.
+	 */
+	public String getApiAdminSqlRead() {
+		return apiAdminSqlRead;
+	}
+
+	/**
+	 * Returns apiAdminCacheRead.
+	 *
+	 * @return The apiAdminCacheRead.
+	 */
+	public String getApiAdminCacheRead() {
+		return apiAdminCacheRead;
+	}
+
+	/**
+	 * Returns apiAdminTaskRead.
+	 *
+	 * @return The apiAdminTaskRead.
+	 */
+	public String getApiAdminTaskRead() {
+		return apiAdminTaskRead;
+	}
+
+	/**
+	 * Returns apiAdminDeletionRead.
+	 *
+	 * @return The apiAdminDeletionRead.
+	 */
+	public String getApiAdminDeletionRead() {
+		return apiAdminDeletionRead;
+	}
+
+	/**
+	 * Returns apiAdminMediaCollectionRead.
+	 *
+	 * @return The apiAdminMediaCollectionRead.
+	 */
+	public String getApiAdminMediaCollectionRead() {
+		return apiAdminMediaCollectionRead;
+	}
+
 	/**
 	 * Returns apiUserAuth.
 	 *
@@ -1179,6 +1372,33 @@ public final class RequestBuilder implements ServletContextAware {
 		return apiDocumentDelete;
 	}
 
+	/**
+	 * Returns apiExportCreate.
+	 *
+	 * @return The apiExportCreate.
+	 */
+	public String getApiExportCreate() {
+		return apiExportCreate;
+	}
+
+	/**
+	 * Returns apiExportRead.
+	 *
+	 * @return The apiExportRead.
+	 */
+	public String getApiExportRead() {
+		return apiExportRead;
+	}
+
+	/**
+	 * Returns apiExportDownload.
+	 *
+	 * @return The apiExportDownload.
+	 */
+	public String getApiExportDownload() {
+		return apiExportDownload;
+	}
+
 	/**
 	 * Returns apiImageRead.
 	 *
@@ -1305,6 +1525,15 @@ public final class RequestBuilder implements ServletContextAware {
 		return apiStreamRead;
 	}
 
+	/**
+	 * Returns apiStreamAggregate.
+	 *
+	 * @return The apiStreamAggregate.
+	 */
+	public String getApiStreamAggregate() {
+		return apiStreamAggregate;
+	}
+
 	/**
 	 * Returns apiStreamInvalidRead.
 	 *
@@ -0,0 +1,149 @@
+package org.ohmage.request.admin;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.CacheStatistics;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.DiagnosticServices;
+import org.ohmage.service.UserServices;
+import org.ohmage.validator.AdminValidators;
+
+/**
+ * <p>Returns how often the caches that are refreshed in the background have
+ * been refreshed and how long the refreshes took. The caches may first be
+ * re-read from the database, which should be done after their values were
+ * changed there. The requesting user must be an admin.</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#INVALIDATE}</td>
+ *     <td>Whether or not to re-read the caches from the database before
+ *       their statistics are read. The default is false.</td>
+ *     <td>false</td>
+ *   </tr>
+ * </table>
+ */
+public class CacheStatisticsReadRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(CacheStatisticsReadRequest.class);
+
+	private final boolean invalidate;
+
+	private List<CacheStatistics> statistics =
+		Collections.<CacheStatistics>emptyList();
+
+	/**
+	 * Creates a cache statistics read request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public CacheStatisticsReadRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		boolean tInvalidate = false;
+
+		if(! isFailed()) {
+			LOGGER.info("Creating a cache statistics read request.");
+
+			try {
+				String[] t = getParameterValues(InputKeys.INVALIDATE);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.ADMIN_INVALID_INVALIDATE,
+						"Multiple invalidate values were given: " +
+							InputKeys.INVALIDATE);
+				}
+				else if(t.length == 1) {
+					tInvalidate = AdminValidators.validateInvalidate(t[0]);
+				}
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+
+		invalidate = tInvalidate;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing a cache statistics read request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Verifying the user is an admin.");
+			UserServices.instance().verifyUserIsAdmin(getUser().getUsername());
+
+			LOGGER.info("Gathering the cache statistics.");
+			statistics = DiagnosticServices.getCacheStatistics(invalidate);
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to a cache statistics read request.");
+
+		JSONArray result = new JSONArray();
+		try {
+			for(CacheStatistics cache : statistics) {
+				result.put(cache.toJson());
+			}
+		}
+		catch(JSONException e) {
+			LOGGER.error("Error building the response.", e);
+			setFailed();
+		}
+
+		respond(httpRequest, httpResponse, JSON_KEY_DATA, result);
+	}
+}
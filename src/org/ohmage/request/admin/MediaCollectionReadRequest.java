@@ -0,0 +1,116 @@
+package org.ohmage.request.admin;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.domain.MediaCollection;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.MediaCollectionServices;
+import org.ohmage.service.UserServices;
+
+/**
+ * <p>Returns the orphaned media collector's progress through each media
+ * directory: where its current pass is, how many files it has checked and
+ * quarantined, and how many bytes it has reclaimed. The requesting user must
+ * be an admin.</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ * </table>
+ */
+public class MediaCollectionReadRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(MediaCollectionReadRequest.class);
+
+	private List<MediaCollection> collections =
+		Collections.<MediaCollection>emptyList();
+
+	/**
+	 * Creates a media collection read request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public MediaCollectionReadRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		if(! isFailed()) {
+			LOGGER.info("Creating a media collection read request.");
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing a media collection read request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Verifying the user is an admin.");
+			UserServices.instance().verifyUserIsAdmin(getUser().getUsername());
+
+			LOGGER.info("Gathering the media collection progress.");
+			collections = MediaCollectionServices.instance().getMediaCollections();
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to a media collection read request.");
+
+		JSONArray result = new JSONArray();
+		try {
+			for(MediaCollection collection : collections) {
+				result.put(collection.toJson());
+			}
+		}
+		catch(JSONException e) {
+			LOGGER.error("Error building the response.", e);
+			setFailed();
+		}
+
+		respond(httpRequest, httpResponse, JSON_KEY_DATA, result);
+	}
+}
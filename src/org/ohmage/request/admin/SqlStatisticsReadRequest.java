@@ -0,0 +1,148 @@
+package org.ohmage.request.admin;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.SqlStatistics;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.DiagnosticServices;
+import org.ohmage.service.UserServices;
+import org.ohmage.validator.AdminValidators;
+
+/**
+ * <p>Returns the statistics the SQL profiler has gathered for every statement
+ * the server has executed, ordered by the total time spent executing each
+ * one. The requesting user must be an admin.</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#RESET}</td>
+ *     <td>Whether or not to discard the statistics once they have been read.
+ *       The default is false.</td>
+ *     <td>false</td>
+ *   </tr>
+ * </table>
+ */
+public class SqlStatisticsReadRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(SqlStatisticsReadRequest.class);
+
+	private final boolean reset;
+
+	private List<SqlStatistics> statistics =
+		Collections.<SqlStatistics>emptyList();
+
+	/**
+	 * Creates a SQL statistics read request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public SqlStatisticsReadRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		boolean tReset = false;
+
+		if(! isFailed()) {
+			LOGGER.info("Creating a SQL statistics read request.");
+
+			try {
+				String[] t = getParameterValues(InputKeys.RESET);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.ADMIN_INVALID_RESET,
+						"Multiple reset values were given: " +
+							InputKeys.RESET);
+				}
+				else if(t.length == 1) {
+					tReset = AdminValidators.validateReset(t[0]);
+				}
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+
+		reset = tReset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing a SQL statistics read request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Verifying the user is an admin.");
+			UserServices.instance().verifyUserIsAdmin(getUser().getUsername());
+
+			LOGGER.info("Gathering the SQL statistics.");
+			statistics = DiagnosticServices.getSqlStatistics(reset);
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to a SQL statistics read request.");
+
+		JSONArray result = new JSONArray();
+		try {
+			for(SqlStatistics statement : statistics) {
+				result.put(statement.toJson());
+			}
+		}
+		catch(JSONException e) {
+			LOGGER.error("Error building the response.", e);
+			setFailed();
+		}
+
+		respond(httpRequest, httpResponse, JSON_KEY_DATA, result);
+	}
+}
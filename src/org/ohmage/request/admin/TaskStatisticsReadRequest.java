@@ -0,0 +1,115 @@
+package org.ohmage.request.admin;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.ohmage.domain.TaskStatistics;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.DiagnosticServices;
+import org.ohmage.service.UserServices;
+
+/**
+ * <p>Returns the state of every background task: when it last ran, how long
+ * its runs took, how many failed or were deferred, and how many are waiting
+ * to run. The requesting user must be an admin.</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ * </table>
+ */
+public class TaskStatisticsReadRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(TaskStatisticsReadRequest.class);
+
+	private List<TaskStatistics> statistics =
+		Collections.<TaskStatistics>emptyList();
+
+	/**
+	 * Creates a task statistics read request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public TaskStatisticsReadRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		if(! isFailed()) {
+			LOGGER.info("Creating a task statistics read request.");
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing a task statistics read request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Verifying the user is an admin.");
+			UserServices.instance().verifyUserIsAdmin(getUser().getUsername());
+
+			LOGGER.info("Gathering the task statistics.");
+			statistics = DiagnosticServices.getTaskStatistics();
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to a task statistics read request.");
+
+		JSONArray result = new JSONArray();
+		try {
+			for(TaskStatistics task : statistics) {
+				result.put(task.toJson());
+			}
+		}
+		catch(JSONException e) {
+			LOGGER.error("Error building the response.", e);
+			setFailed();
+		}
+
+		respond(httpRequest, httpResponse, JSON_KEY_DATA, result);
+	}
+}
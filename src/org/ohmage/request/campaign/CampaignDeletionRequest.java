@@ -29,12 +29,14 @@ import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.CampaignServices;
+import org.ohmage.service.DeletionJobServices;
 import org.ohmage.service.UserCampaignServices;
 import org.ohmage.service.UserServices;
 import org.ohmage.validator.CampaignValidators;
 
 /**
- * <p>Deletes a campaign.</p>
+ * <p>Deletes a campaign. The campaign is hidden immediately, and its survey
+ * responses and media are deleted in the background.</p>
  * <table border="1">
  *   <tr>
  *     <td>Parameter Name</td>
@@ -131,7 +133,7 @@ public class CampaignDeletionRequest extends UserRequest {
 			}
 			
 			LOGGER.info("Deleting the campaign.");
-			CampaignServices.instance().deleteCampaign(campaignId);
+			DeletionJobServices.instance().deleteCampaign(campaignId);
 		}
 		catch(ServiceException e) {
 			e.failRequest(this);
@@ -16,8 +16,12 @@
 package org.ohmage.request.campaign;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
@@ -34,6 +38,7 @@ import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
+import org.ohmage.request.Request;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.CampaignServices;
 import org.ohmage.service.UserCampaignServices;
@@ -115,6 +120,18 @@ import org.ohmage.validator.CampaignValidators;
  *     <td>Limits the results to only those that have this running state.</td>
  *     <td>false</td>
  *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#NUM_TO_SKIP}</td>
+ *     <td>The number of campaigns to skip before processing to facilitate 
+ *       paging.</td>
+ *     <td>false</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#NUM_TO_RETURN}</td>
+ *     <td>The number of campaigns to return after skipping to facilitate 
+ *       paging.</td>
+ *     <td>false</td>
+ *   </tr>
  * </table>
  * 
  * @author John Jenkins
@@ -132,7 +149,11 @@ public class CampaignSearchRequest extends UserRequest {
 	private final Campaign.PrivacyState privacyState;
 	private final Campaign.RunningState runningState;
 	
+	private final int numToSkip;
+	private final int numToReturn;
+	
 	private Collection<Campaign> campaigns;
+	private int totalNumResults;
 	
 	/**
 	 * Builds this request based on the information in the HTTP request.
@@ -158,6 +179,9 @@ public class CampaignSearchRequest extends UserRequest {
 		Campaign.PrivacyState tPrivacyState = null;
 		Campaign.RunningState tRunningState = null;
 		
+		int tNumToSkip = 0;
+		int tNumToReturn = Campaign.MAX_NUM_TO_RETURN;
+		
 		if(! isFailed()) {
 			LOGGER.info("Creating a campaign search request.");
 			
@@ -261,6 +285,28 @@ public class CampaignSearchRequest extends UserRequest {
 				else if(t.length == 1) {
 					tRunningState = CampaignValidators.validateRunningState(t[0]);
 				}
+				
+				t = getParameterValues(InputKeys.NUM_TO_SKIP);
+				if(t.length > 1) {
+					throw new ValidationException(
+							ErrorCode.SERVER_INVALID_NUM_TO_SKIP,
+							"Multiple number to skip parameters were given: " + 
+								InputKeys.NUM_TO_SKIP);
+				}
+				else if(t.length == 1) {
+					tNumToSkip = CampaignValidators.validateNumToSkip(t[0]);
+				}
+				
+				t = getParameterValues(InputKeys.NUM_TO_RETURN);
+				if(t.length > 1) {
+					throw new ValidationException(
+							ErrorCode.SERVER_INVALID_NUM_TO_RETURN,
+							"Multiple number to return parameters were given: " +
+								InputKeys.NUM_TO_RETURN);
+				}
+				else if(t.length == 1) {
+					tNumToReturn = CampaignValidators.validateNumToReturn(t[0]);
+				}
 			}
 			catch(ValidationException e) {
 				e.failRequest(this);
@@ -278,7 +324,11 @@ public class CampaignSearchRequest extends UserRequest {
 		privacyState = tPrivacyState;
 		runningState = tRunningState;
 		
+		numToSkip = tNumToSkip;
+		numToReturn = tNumToReturn;
+		
 		campaigns = new LinkedList<Campaign>();
+		totalNumResults = 0;
 	}
 	
 	/*
@@ -308,7 +358,30 @@ public class CampaignSearchRequest extends UserRequest {
 					endDate,
 					privacyState,
 					runningState);
+			totalNumResults = campaigns.size();
 			
+			if(numToSkip >= campaigns.size()) {
+				campaigns.clear();
+			}
+			else if(numToReturn >= 0) {
+				List<Campaign> sortedCampaigns = 
+					new ArrayList<Campaign>(campaigns);
+				Collections.sort(
+					sortedCampaigns,
+					new Comparator<Campaign>() {
+						@Override
+						public int compare(Campaign c1, Campaign c2) {
+							return c1.getId().compareTo(c2.getId());
+						}
+					});
+				
+				int lastIndex = numToSkip + numToReturn;
+				if((lastIndex > totalNumResults) || (lastIndex < 0)) {
+					lastIndex = totalNumResults;
+				}
+				
+				campaigns = sortedCampaigns.subList(numToSkip, lastIndex);
+			}
 		}
 		catch(ServiceException e) {
 			e.failRequest(this);
@@ -324,11 +397,17 @@ public class CampaignSearchRequest extends UserRequest {
 	public void respond(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
 		LOGGER.info("Responding to a campaign search request.");
 		JSONObject result = null;
+		JSONObject metadata = null;
 		
 		if(! isFailed()) {
+			metadata = new JSONObject();
 			result = new JSONObject();
 			
 			try {
+				metadata.put(
+						Request.JSON_KEY_TOTAL_NUM_RESULTS, 
+						totalNumResults);
+				
 				for(Campaign campaign : campaigns) {
 					result.put(
 							campaign.getId(), 
@@ -360,6 +439,6 @@ public class CampaignSearchRequest extends UserRequest {
 			}
 		}
 		
-		super.respond(httpRequest, httpResponse, result);
+		super.respond(httpRequest, httpResponse, metadata, result);
 	}
 }
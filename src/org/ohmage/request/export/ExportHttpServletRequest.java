@@ -0,0 +1,376 @@
+package org.ohmage.request.export;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.DispatcherType;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.Part;
+
+/**
+ * The HTTP request to which an export job's read request responds. The read
+ * request was built from the parameters of the request that created the job,
+ * so this has no parameters, headers, cookies, or body of its own. Without
+ * an Accept-Encoding header, the read never compresses its own response.
+ * Only the attributes are kept.
+ */
+final class ExportHttpServletRequest implements HttpServletRequest {
+	private final Map<String, Object> attributes =
+		new HashMap<String, Object>();
+
+	@Override
+	public Object getAttribute(final String name) {
+		return attributes.get(name);
+	}
+
+	@Override
+	public Enumeration<String> getAttributeNames() {
+		return Collections.enumeration(attributes.keySet());
+	}
+
+	@Override
+	public void setAttribute(final String name, final Object value) {
+		attributes.put(name, value);
+	}
+
+	@Override
+	public void removeAttribute(final String name) {
+		attributes.remove(name);
+	}
+
+	@Override
+	public String getCharacterEncoding() {
+		return "UTF-8";
+	}
+
+	@Override
+	public void setCharacterEncoding(final String env) {
+		// There is no body to decode.
+	}
+
+	@Override
+	public int getContentLength() {
+		return 0;
+	}
+
+	@Override
+	public String getContentType() {
+		return null;
+	}
+
+	@Override
+	public ServletInputStream getInputStream() throws IOException {
+		throw new IOException("An export has no request body.");
+	}
+
+	@Override
+	public BufferedReader getReader() throws IOException {
+		throw new IOException("An export has no request body.");
+	}
+
+	@Override
+	public String getParameter(final String name) {
+		return null;
+	}
+
+	@Override
+	public Enumeration<String> getParameterNames() {
+		return Collections.enumeration(Collections.<String>emptySet());
+	}
+
+	@Override
+	public String[] getParameterValues(final String name) {
+		return null;
+	}
+
+	@Override
+	public Map<String, String[]> getParameterMap() {
+		return Collections.emptyMap();
+	}
+
+	@Override
+	public String getProtocol() {
+		return "HTTP/1.1";
+	}
+
+	@Override
+	public String getScheme() {
+		return "http";
+	}
+
+	@Override
+	public String getServerName() {
+		return "localhost";
+	}
+
+	@Override
+	public int getServerPort() {
+		return 0;
+	}
+
+	@Override
+	public String getRemoteAddr() {
+		return null;
+	}
+
+	@Override
+	public String getRemoteHost() {
+		return null;
+	}
+
+	@Override
+	public int getRemotePort() {
+		return 0;
+	}
+
+	@Override
+	public String getLocalName() {
+		return null;
+	}
+
+	@Override
+	public String getLocalAddr() {
+		return null;
+	}
+
+	@Override
+	public int getLocalPort() {
+		return 0;
+	}
+
+	@Override
+	public Locale getLocale() {
+		return Locale.getDefault();
+	}
+
+	@Override
+	public Enumeration<Locale> getLocales() {
+		return Collections.enumeration(Collections.singleton(getLocale()));
+	}
+
+	@Override
+	public boolean isSecure() {
+		return false;
+	}
+
+	@Override
+	public RequestDispatcher getRequestDispatcher(final String path) {
+		return null;
+	}
+
+	@Override
+	@Deprecated
+	public String getRealPath(final String path) {
+		return null;
+	}
+
+	@Override
+	public ServletContext getServletContext() {
+		return null;
+	}
+
+	@Override
+	public AsyncContext startAsync() {
+		throw new IllegalStateException("An export is never asynchronous.");
+	}
+
+	@Override
+	public AsyncContext startAsync(
+			final ServletRequest servletRequest,
+			final ServletResponse servletResponse) {
+
+		throw new IllegalStateException("An export is never asynchronous.");
+	}
+
+	@Override
+	public boolean isAsyncStarted() {
+		return false;
+	}
+
+	@Override
+	public boolean isAsyncSupported() {
+		return false;
+	}
+
+	@Override
+	public AsyncContext getAsyncContext() {
+		throw new IllegalStateException("An export is never asynchronous.");
+	}
+
+	@Override
+	public DispatcherType getDispatcherType() {
+		return DispatcherType.REQUEST;
+	}
+
+	@Override
+	public String getAuthType() {
+		return null;
+	}
+
+	@Override
+	public Cookie[] getCookies() {
+		return null;
+	}
+
+	@Override
+	public long getDateHeader(final String name) {
+		return -1;
+	}
+
+	@Override
+	public String getHeader(final String name) {
+		return null;
+	}
+
+	@Override
+	public Enumeration<String> getHeaders(final String name) {
+		return Collections.enumeration(Collections.<String>emptySet());
+	}
+
+	@Override
+	public Enumeration<String> getHeaderNames() {
+		return Collections.enumeration(Collections.<String>emptySet());
+	}
+
+	@Override
+	public int getIntHeader(final String name) {
+		return -1;
+	}
+
+	@Override
+	public String getMethod() {
+		return "GET";
+	}
+
+	@Override
+	public String getPathInfo() {
+		return null;
+	}
+
+	@Override
+	public String getPathTranslated() {
+		return null;
+	}
+
+	@Override
+	public String getContextPath() {
+		return "";
+	}
+
+	@Override
+	public String getQueryString() {
+		return null;
+	}
+
+	@Override
+	public String getRemoteUser() {
+		return null;
+	}
+
+	@Override
+	public boolean isUserInRole(final String role) {
+		return false;
+	}
+
+	@Override
+	public Principal getUserPrincipal() {
+		return null;
+	}
+
+	@Override
+	public String getRequestedSessionId() {
+		return null;
+	}
+
+	@Override
+	public String getRequestURI() {
+		return "";
+	}
+
+	@Override
+	public StringBuffer getRequestURL() {
+		return new StringBuffer();
+	}
+
+	@Override
+	public String getServletPath() {
+		return "";
+	}
+
+	@Override
+	public HttpSession getSession(final boolean create) {
+		return null;
+	}
+
+	@Override
+	public HttpSession getSession() {
+		return null;
+	}
+
+	@Override
+	public boolean isRequestedSessionIdValid() {
+		return false;
+	}
+
+	@Override
+	public boolean isRequestedSessionIdFromCookie() {
+		return false;
+	}
+
+	@Override
+	public boolean isRequestedSessionIdFromURL() {
+		return false;
+	}
+
+	@Override
+	@Deprecated
+	public boolean isRequestedSessionIdFromUrl() {
+		return false;
+	}
+
+	@Override
+	public boolean authenticate(final HttpServletResponse response) {
+		return false;
+	}
+
+	@Override
+	public void login(
+			final String username,
+			final String password)
+			throws ServletException {
+
+		throw new ServletException("An export's user is already known.");
+	}
+
+	@Override
+	public void logout() {
+		// There is no container login to end.
+	}
+
+	@Override
+	public Collection<Part> getParts() {
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Part getPart(final String name) {
+		return null;
+	}
+}
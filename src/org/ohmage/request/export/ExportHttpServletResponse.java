@@ -0,0 +1,307 @@
+package org.ohmage.request.export;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * The HTTP response to which an export job's read request responds. Whatever
+ * is written to it is compressed and written to the job's file. The status
+ * and content type are kept for the job, and the headers are kept but never
+ * sent anywhere. Cookies, such as the authentication token's, are dropped.
+ */
+final class ExportHttpServletResponse implements HttpServletResponse {
+	private final OutputStream fileOutputStream;
+	private final ServletOutputStream outputStream;
+	private PrintWriter writer = null;
+
+	private final Map<String, List<String>> headers =
+		new LinkedHashMap<String, List<String>>();
+	private String contentType = null;
+	private String characterEncoding = "UTF-8";
+	private Locale locale = Locale.getDefault();
+	private int status = SC_OK;
+	private boolean committed = false;
+
+	/**
+	 * Creates a response that is written to a file.
+	 *
+	 * @param file The file to which the response is written.
+	 *
+	 * @throws IOException The file could not be opened.
+	 */
+	ExportHttpServletResponse(final File file) throws IOException {
+		fileOutputStream =
+			new GZIPOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)));
+
+		outputStream = new ServletOutputStream() {
+			@Override
+			public void write(final int b) throws IOException {
+				committed = true;
+				fileOutputStream.write(b);
+			}
+
+			@Override
+			public void write(
+					final byte[] b,
+					final int off,
+					final int len)
+					throws IOException {
+
+				committed = true;
+				fileOutputStream.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				fileOutputStream.flush();
+			}
+
+			/**
+			 * The file is closed by the task, not the request.
+			 */
+			@Override
+			public void close() throws IOException {
+				fileOutputStream.flush();
+			}
+		};
+	}
+
+	/**
+	 * Flushes anything left in the writer and closes the file.
+	 *
+	 * @throws IOException The file could not be written.
+	 */
+	void close() throws IOException {
+		if(writer != null) {
+			writer.flush();
+		}
+		fileOutputStream.close();
+	}
+
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if(writer == null) {
+			writer =
+				new PrintWriter(
+					new OutputStreamWriter(outputStream, characterEncoding));
+		}
+		return writer;
+	}
+
+	@Override
+	public String getCharacterEncoding() {
+		return characterEncoding;
+	}
+
+	@Override
+	public void setCharacterEncoding(final String charset) {
+		characterEncoding = charset;
+	}
+
+	@Override
+	public String getContentType() {
+		return contentType;
+	}
+
+	@Override
+	public void setContentType(final String type) {
+		contentType = type;
+	}
+
+	@Override
+	public void setContentLength(final int len) {
+		setIntHeader("Content-Length", len);
+	}
+
+	@Override
+	public void setBufferSize(final int size) {
+		// The file is always buffered.
+	}
+
+	@Override
+	public int getBufferSize() {
+		return 0;
+	}
+
+	@Override
+	public void flushBuffer() throws IOException {
+		if(writer != null) {
+			writer.flush();
+		}
+		outputStream.flush();
+	}
+
+	@Override
+	public void resetBuffer() {
+		if(committed) {
+			throw new IllegalStateException(
+				"The export has already been written.");
+		}
+	}
+
+	@Override
+	public boolean isCommitted() {
+		return committed;
+	}
+
+	@Override
+	public void reset() {
+		resetBuffer();
+		headers.clear();
+		contentType = null;
+		status = SC_OK;
+	}
+
+	@Override
+	public void setLocale(final Locale loc) {
+		locale = loc;
+	}
+
+	@Override
+	public Locale getLocale() {
+		return locale;
+	}
+
+	@Override
+	public void addCookie(final Cookie cookie) {
+		// The export is never sent to a client.
+	}
+
+	@Override
+	public boolean containsHeader(final String name) {
+		return headers.containsKey(name.toLowerCase(Locale.ENGLISH));
+	}
+
+	@Override
+	public String encodeURL(final String url) {
+		return url;
+	}
+
+	@Override
+	public String encodeRedirectURL(final String url) {
+		return url;
+	}
+
+	@Override
+	@Deprecated
+	public String encodeUrl(final String url) {
+		return url;
+	}
+
+	@Override
+	@Deprecated
+	public String encodeRedirectUrl(final String url) {
+		return url;
+	}
+
+	@Override
+	public void sendError(final int sc, final String msg) {
+		status = sc;
+	}
+
+	@Override
+	public void sendError(final int sc) {
+		status = sc;
+	}
+
+	@Override
+	public void sendRedirect(final String location) {
+		status = SC_FOUND;
+	}
+
+	@Override
+	public void setDateHeader(final String name, final long date) {
+		setHeader(name, Long.toString(date));
+	}
+
+	@Override
+	public void addDateHeader(final String name, final long date) {
+		addHeader(name, Long.toString(date));
+	}
+
+	@Override
+	public void setHeader(final String name, final String value) {
+		headers.remove(name.toLowerCase(Locale.ENGLISH));
+		addHeader(name, value);
+	}
+
+	@Override
+	public void addHeader(final String name, final String value) {
+		String key = name.toLowerCase(Locale.ENGLISH);
+		List<String> values = headers.get(key);
+		if(values == null) {
+			values = new ArrayList<String>(1);
+			headers.put(key, values);
+		}
+		values.add(value);
+	}
+
+	@Override
+	public void setIntHeader(final String name, final int value) {
+		setHeader(name, Integer.toString(value));
+	}
+
+	@Override
+	public void addIntHeader(final String name, final int value) {
+		addHeader(name, Integer.toString(value));
+	}
+
+	@Override
+	public void setStatus(final int sc) {
+		status = sc;
+	}
+
+	@Override
+	@Deprecated
+	public void setStatus(final int sc, final String sm) {
+		status = sc;
+	}
+
+	@Override
+	public int getStatus() {
+		return status;
+	}
+
+	@Override
+	public String getHeader(final String name) {
+		List<String> values = headers.get(name.toLowerCase(Locale.ENGLISH));
+		return (values == null) ? null : values.get(0);
+	}
+
+	@Override
+	public Collection<String> getHeaders(final String name) {
+		List<String> values = headers.get(name.toLowerCase(Locale.ENGLISH));
+		if(values == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(values);
+	}
+
+	@Override
+	public Collection<String> getHeaderNames() {
+		return Collections.unmodifiableSet(headers.keySet());
+	}
+}
@@ -0,0 +1,219 @@
+package org.ohmage.request.export;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.ExportJobExecutor;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest;
+import org.ohmage.request.mobility.MobilityReadCsvRequest;
+import org.ohmage.request.observer.StreamReadRequest;
+import org.ohmage.request.survey.SurveyResponseReadRequest;
+import org.ohmage.service.ExportJobServices;
+import org.ohmage.validator.ExportJobValidators;
+
+/**
+ * <p>Creates a job that executes a survey response, Mobility, or stream read
+ * in the background and writes its result to a file that may be downloaded
+ * once the job completes. Other than the export type, the parameters are
+ * exactly those of the read being exported and are validated when the job is
+ * created.</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#EXPORT_TYPE}</td>
+ *     <td>The read to export, one of "survey_response", "mobility", or
+ *       "stream".</td>
+ *     <td>true</td>
+ *   </tr>
+ * </table>
+ * 
+ * @see SurveyResponseReadRequest
+ * @see MobilityReadCsvRequest
+ * @see StreamReadRequest
+ */
+public class ExportJobCreationRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(ExportJobCreationRequest.class);
+
+	private final ExportJob.Type type;
+	private final UserRequest readRequest;
+
+	private UUID jobId = null;
+
+	/**
+	 * Creates an export job creation request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public ExportJobCreationRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		ExportJob.Type tType = null;
+		UserRequest tReadRequest = null;
+
+		if(! isFailed()) {
+			LOGGER.info("Creating an export job creation request.");
+			String[] t;
+
+			try {
+				t = getParameterValues(InputKeys.EXPORT_TYPE);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.EXPORT_INVALID_TYPE,
+						"Multiple export types were given: " +
+							InputKeys.EXPORT_TYPE);
+				}
+				else if(t.length == 1) {
+					tType = ExportJobValidators.validateType(t[0]);
+				}
+				if(tType == null) {
+					throw new ValidationException(
+						ErrorCode.EXPORT_INVALID_TYPE,
+						"The export type is missing: " +
+							InputKeys.EXPORT_TYPE);
+				}
+
+				switch(tType) {
+				case SURVEY_RESPONSE:
+					tReadRequest = new SurveyResponseReadRequest(httpRequest);
+					break;
+
+				case MOBILITY:
+					tReadRequest = new MobilityReadCsvRequest(httpRequest);
+					break;
+
+				case STREAM:
+					tReadRequest = new StreamReadRequest(httpRequest);
+					break;
+				}
+
+				if(tReadRequest.isFailed()) {
+					setFailed(
+						tReadRequest.getAnnotator().getErrorCode(),
+						tReadRequest.getAnnotator().getErrorText());
+				}
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+
+		type = tType;
+		readRequest = tReadRequest;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing an export job creation request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		// The read runs as this user, who is authenticated now rather than
+		// when the job runs, by which time the token may have expired. The
+		// token is then dropped, so that the job never replays it or writes
+		// it into the export, such as in a stream read's paging URLs.
+		if(! readRequest.authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			if(readRequest.isFailed()) {
+				setFailed(
+					readRequest.getAnnotator().getErrorCode(),
+					readRequest.getAnnotator().getErrorText());
+			}
+			else {
+				setFailed(
+					ErrorCode.AUTHENTICATION_FAILED,
+					"The export's user could not be authenticated.");
+			}
+			return;
+		}
+		readRequest.getUser().setToken(null);
+
+		UUID tJobId = UUID.randomUUID();
+		try {
+			LOGGER.info("Creating the export job.");
+			ExportJobServices.instance().createExportJob(
+				tJobId,
+				getUser().getUsername(),
+				type);
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+			return;
+		}
+
+		try {
+			LOGGER.info("Queueing the export job.");
+			ExportJobExecutor.execute(new ExportJobTask(tJobId, readRequest));
+			jobId = tJobId;
+		}
+		catch(RejectedExecutionException e) {
+			LOGGER.warn("The export job queue is full.", e);
+			setFailed(
+				ErrorCode.EXPORT_QUEUE_FULL,
+				"Too many exports are waiting. Please try again later.");
+
+			try {
+				ExportJobServices.instance().failExportJob(
+					tJobId,
+					"The export job queue was full.");
+			}
+			catch(ServiceException serviceException) {
+				serviceException.logException(LOGGER);
+			}
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to an export job creation request.");
+
+		respond(
+			httpRequest,
+			httpResponse,
+			InputKeys.EXPORT_ID,
+			(jobId == null) ? null : jobId.toString());
+	}
+}
@@ -0,0 +1,385 @@
+package org.ohmage.request.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.json.JSONObject;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.ExportJobServices;
+import org.ohmage.validator.ExportJobValidators;
+
+/**
+ * <p>Downloads the result of one of the requesting user's completed export
+ * jobs. The result is returned exactly as it is stored, gzip-compressed, so
+ * that an interrupted download may be resumed with a single HTTP byte range,
+ * e.g. "Range: bytes=1048576-".</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#EXPORT_ID}</td>
+ *     <td>The export job's unique identifier.</td>
+ *     <td>true</td>
+ *   </tr>
+ * </table>
+ */
+public class ExportJobDownloadRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(ExportJobDownloadRequest.class);
+
+	/**
+	 * The size of a chunk when writing the file.
+	 */
+	private static final int CHUNK_SIZE = 4096;
+
+	/**
+	 * The only range unit that is supported.
+	 */
+	private static final String RANGE_UNIT = "bytes";
+
+	private final UUID jobId;
+
+	private ExportJob job = null;
+	private File file = null;
+
+	/**
+	 * Creates an export job download request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public ExportJobDownloadRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		UUID tJobId = null;
+
+		if(! isFailed()) {
+			LOGGER.info("Creating an export job download request.");
+
+			try {
+				String[] t = getParameterValues(InputKeys.EXPORT_ID);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.EXPORT_INVALID_ID,
+						"Multiple export job IDs were given: " +
+							InputKeys.EXPORT_ID);
+				}
+				else if(t.length == 1) {
+					tJobId = ExportJobValidators.validateId(t[0]);
+				}
+				if(tJobId == null) {
+					throw new ValidationException(
+						ErrorCode.EXPORT_INVALID_ID,
+						"The export job ID is missing: " +
+							InputKeys.EXPORT_ID);
+				}
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+
+		jobId = tJobId;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing an export job download request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Reading the export job.");
+			job =
+				ExportJobServices.instance().getExportJob(
+					jobId,
+					getUser().getUsername());
+
+			if(! ExportJob.Status.COMPLETE.equals(job.getStatus())) {
+				throw new ServiceException(
+					ErrorCode.EXPORT_NOT_COMPLETE,
+					"The export job is " + job.getStatus() + ": " + jobId);
+			}
+
+			file = ExportJobServices.instance().getExportFile(jobId);
+			if(! file.isFile()) {
+				throw new ServiceException(
+					"The export job is complete, but its file is missing: " +
+						file.getAbsolutePath());
+			}
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to an export job download request.");
+
+		if(isFailed()) {
+			super.respond(httpRequest, httpResponse, (JSONObject) null);
+			return;
+		}
+
+		long length = file.length();
+		String eTag = getETag(jobId, length);
+
+		// Determine which bytes to return. A range whose validator doesn't
+		// match this file is ignored and the whole file is returned.
+		long start = 0;
+		long end = length - 1;
+		boolean partial = false;
+		String range = httpRequest.getHeader("Range");
+		String ifRange = httpRequest.getHeader("If-Range");
+		if((range != null) && matchesIfRange(ifRange, eTag)) {
+			long[] bounds = parseRange(range, length);
+			if(bounds == null) {
+				LOGGER.info("The range is not satisfiable: " + range);
+				setFailed(
+					ErrorCode.EXPORT_INVALID_RANGE,
+					"The range is not satisfiable: " + range);
+				httpResponse.setStatus(
+					HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+				httpResponse.setHeader(
+					"Content-Range",
+					RANGE_UNIT + " */" + length);
+				super.respond(httpRequest, httpResponse, (JSONObject) null);
+				return;
+			}
+			else if(bounds.length == 2) {
+				start = bounds[0];
+				end = bounds[1];
+				partial = true;
+			}
+		}
+
+		refreshTokenCookie(httpResponse);
+
+		httpResponse.setContentType("application/x-gzip");
+		httpResponse.setHeader(
+			"Content-Disposition",
+			"attachment; filename=" + jobId +
+				(((job.getContentType() != null) &&
+					job.getContentType().startsWith("text/csv")) ?
+					".csv.gz" :
+					".json.gz"));
+		httpResponse.setHeader("Accept-Ranges", RANGE_UNIT);
+		httpResponse.setHeader("ETag", eTag);
+		httpResponse.setHeader(
+			"Content-Length",
+			Long.toString(end - start + 1));
+		if(partial) {
+			httpResponse.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+			httpResponse.setHeader(
+				"Content-Range",
+				RANGE_UNIT + " " + start + "-" + end + "/" + length);
+		}
+
+		RandomAccessFile input = null;
+		try {
+			input = new RandomAccessFile(file, "r");
+			input.seek(start);
+
+			OutputStream os = httpResponse.getOutputStream();
+			byte[] bytes = new byte[CHUNK_SIZE];
+			long remaining = end - start + 1;
+			while(remaining > 0) {
+				int currRead =
+					input.read(
+						bytes,
+						0,
+						(int) Math.min(bytes.length, remaining));
+				if(currRead == -1) {
+					break;
+				}
+				os.write(bytes, 0, currRead);
+				remaining -= currRead;
+			}
+
+			os.flush();
+			os.close();
+		}
+		catch(IOException e) {
+			LOGGER.info(
+				"The export could not be read or written to the response.",
+				e);
+			setFailed();
+		}
+		finally {
+			if(input != null) {
+				try {
+					input.close();
+				}
+				catch(IOException e) {
+					LOGGER.info("Could not close the export file.");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the entity tag of an export's file. The file is never changed
+	 * once the job is complete, so its ID and length identify it.
+	 * 
+	 * @param jobId The export job's unique identifier.
+	 * 
+	 * @param length The length of the file.
+	 * 
+	 * @return The entity tag, quoted.
+	 */
+	static String getETag(final UUID jobId, final long length) {
+		return "\"" + jobId + "-" + length + "\"";
+	}
+
+	/**
+	 * Returns whether an If-Range header allows a range to be returned. Only
+	 * the file's own entity tag matches. A date, or any other entity tag,
+	 * means that the client has a different copy, so the whole file must be
+	 * returned.
+	 * 
+	 * @param ifRange The header's value, which may be null.
+	 * 
+	 * @param eTag The file's entity tag.
+	 * 
+	 * @return Whether the range may be returned.
+	 */
+	static boolean matchesIfRange(final String ifRange, final String eTag) {
+		return (ifRange == null) || ifRange.trim().equals(eTag);
+	}
+
+	/**
+	 * Parses a Range header that names a single byte range.
+	 * 
+	 * @param range The header's value.
+	 * 
+	 * @param length The length of the file.
+	 * 
+	 * @return The first and last byte of the range, inclusive; an empty array
+	 * 		   if the header is malformed or names multiple ranges, in which
+	 * 		   case it should be ignored; or null if the range cannot be
+	 * 		   satisfied.
+	 */
+	static long[] parseRange(final String range, final long length) {
+		String trimmed = range.trim();
+		if((! trimmed.startsWith(RANGE_UNIT + "=")) ||
+			(trimmed.indexOf(',') != -1)) {
+
+			return new long[0];
+		}
+
+		String spec = trimmed.substring(RANGE_UNIT.length() + 1).trim();
+		int dash = spec.indexOf('-');
+		if(dash == -1) {
+			return new long[0];
+		}
+
+		String first = spec.substring(0, dash).trim();
+		String last = spec.substring(dash + 1).trim();
+		if((! isDigits(first)) || (! isDigits(last)) ||
+			((first.length() == 0) && (last.length() == 0))) {
+
+			return new long[0];
+		}
+
+		long start;
+		long end;
+		try {
+			// A suffix range, e.g. the last 500 bytes.
+			if(first.length() == 0) {
+				long suffix = Long.parseLong(last);
+				if(suffix == 0) {
+					return null;
+				}
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			}
+			else {
+				start = Long.parseLong(first);
+				if(last.length() == 0) {
+					end = length - 1;
+				}
+				else {
+					end = Long.parseLong(last);
+					// A range that ends before it starts is malformed.
+					if(end < start) {
+						return new long[0];
+					}
+					end = Math.min(end, length - 1);
+				}
+			}
+		}
+		catch(NumberFormatException e) {
+			// The number is too large.
+			return new long[0];
+		}
+
+		if((start >= length) || (end < start)) {
+			return null;
+		}
+
+		return new long[] { start, end };
+	}
+
+	/**
+	 * Returns whether a string contains only the digits 0 through 9. The
+	 * empty string does.
+	 * 
+	 * @param value The string.
+	 * 
+	 * @return Whether it contains only digits.
+	 */
+	private static boolean isDigits(final String value) {
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if((c < '0') || (c > '9')) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
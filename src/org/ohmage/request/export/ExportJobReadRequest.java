@@ -0,0 +1,148 @@
+package org.ohmage.request.export;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.ExportJobServices;
+import org.ohmage.validator.ExportJobValidators;
+
+/**
+ * <p>Returns the status of one of the requesting user's export jobs.</p>
+ * 
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#EXPORT_ID}</td>
+ *     <td>The export job's unique identifier.</td>
+ *     <td>true</td>
+ *   </tr>
+ * </table>
+ */
+public class ExportJobReadRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(ExportJobReadRequest.class);
+
+	private final UUID jobId;
+
+	private ExportJob job = null;
+
+	/**
+	 * Creates an export job read request.
+	 * 
+	 * @param httpRequest The HTTP request containing the parameters.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public ExportJobReadRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		UUID tJobId = null;
+
+		if(! isFailed()) {
+			LOGGER.info("Creating an export job read request.");
+
+			try {
+				String[] t = getParameterValues(InputKeys.EXPORT_ID);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.EXPORT_INVALID_ID,
+						"Multiple export job IDs were given: " +
+							InputKeys.EXPORT_ID);
+				}
+				else if(t.length == 1) {
+					tJobId = ExportJobValidators.validateId(t[0]);
+				}
+				if(tJobId == null) {
+					throw new ValidationException(
+						ErrorCode.EXPORT_INVALID_ID,
+						"The export job ID is missing: " +
+							InputKeys.EXPORT_ID);
+				}
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+
+		jobId = tJobId;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing an export job read request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			LOGGER.info("Reading the export job.");
+			job =
+				ExportJobServices.instance().getExportJob(
+					jobId,
+					getUser().getUsername());
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		LOGGER.info("Responding to an export job read request.");
+
+		JSONObject result = null;
+		if(job != null) {
+			try {
+				result = job.toJson();
+			}
+			catch(JSONException e) {
+				LOGGER.error("Error building the response.", e);
+				setFailed();
+			}
+		}
+
+		respond(httpRequest, httpResponse, JSON_KEY_DATA, result);
+	}
+}
@@ -0,0 +1,114 @@
+package org.ohmage.request.export;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.request.Request;
+import org.ohmage.service.ExportJobServices;
+
+/**
+ * Executes an export job. The read request was built, and its user
+ * authenticated, when the job was created. It is serviced as that user and
+ * then responds to an {@link ExportHttpServletResponse}, which compresses
+ * its output into the job's file.
+ */
+class ExportJobTask implements Runnable {
+	private static final Logger LOGGER = Logger.getLogger(ExportJobTask.class);
+
+	private final UUID id;
+	private final Request request;
+
+	/**
+	 * Creates a task that executes an export job.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param request The read request whose response is exported. Its user
+	 * 				  must already be authenticated.
+	 */
+	ExportJobTask(final UUID id, final Request request) {
+		this.id = id;
+		this.request = request;
+	}
+
+	/**
+	 * Marks the job as running, services the read request, writes its
+	 * response to the job's file, and marks the job as complete or failed.
+	 */
+	@Override
+	public void run() {
+		try {
+			if(! ExportJobServices.instance().startExportJob(id)) {
+				LOGGER.info("The export job is no longer pending: " + id);
+				return;
+			}
+		}
+		catch(ServiceException e) {
+			e.logException(LOGGER);
+			return;
+		}
+
+		LOGGER.info("Executing the export job: " + id);
+
+		try {
+			request.service();
+
+			File file = ExportJobServices.instance().getExportFile(id);
+			ExportHttpServletResponse response =
+				new ExportHttpServletResponse(file);
+			try {
+				request.respond(new ExportHttpServletRequest(), response);
+			}
+			finally {
+				response.close();
+			}
+
+			if(request.isFailed()) {
+				ExportJobServices.instance().failExportJob(
+					id,
+					request.getFailureMessage());
+			}
+			else if(response.getStatus() >= 400) {
+				ExportJobServices.instance().failExportJob(
+					id,
+					"The read failed with the status: " +
+						response.getStatus());
+			}
+			else {
+				ExportJobServices.instance().completeExportJob(
+					id,
+					response.getContentType(),
+					file.length());
+			}
+		}
+		catch(IOException e) {
+			LOGGER.error("The export file could not be written: " + id, e);
+			fail("The export could not be written.");
+		}
+		catch(ServiceException e) {
+			e.logException(LOGGER);
+			fail("The export could not be written.");
+		}
+		catch(RuntimeException e) {
+			LOGGER.error("The export job failed: " + id, e);
+			fail("The export failed.");
+		}
+	}
+
+	/**
+	 * Marks the job as failed, logging rather than throwing any error.
+	 * 
+	 * @param error The failure message.
+	 */
+	private void fail(final String error) {
+		try {
+			ExportJobServices.instance().failExportJob(id, error);
+		}
+		catch(ServiceException e) {
+			e.logException(LOGGER);
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package org.ohmage.request.image;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
@@ -8,8 +9,19 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -99,6 +111,70 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 	private static final Logger LOGGER = 
 			Logger.getLogger(ImageBatchZipReadRequest.class);
 	
+	/**
+	 * The number of threads used to read the images, which are shared by
+	 * every request.
+	 */
+	private static final int NUM_PREFETCH_THREADS = 8;
+	
+	/**
+	 * The number of image reads that may wait for a prefetch thread. Once it
+	 * is full, a request reads its images on its own thread.
+	 */
+	private static final int PREFETCH_QUEUE_SIZE = 64;
+	
+	/**
+	 * The number of milliseconds an idle prefetch thread is kept.
+	 */
+	private static final long PREFETCH_KEEP_ALIVE = 1000 * 60;
+	
+	/**
+	 * The number that is given to the next prefetch thread that is created.
+	 */
+	private static final AtomicInteger PREFETCH_THREAD_NUMBER = 
+		new AtomicInteger(1);
+	
+	/**
+	 * The pool on which every request's images are read. Its threads exit
+	 * when they have been idle for a while, so it holds nothing while no
+	 * images are being read.
+	 */
+	private static final ThreadPoolExecutor PREFETCHER;
+	static {
+		PREFETCHER = 
+			new ThreadPoolExecutor(
+				NUM_PREFETCH_THREADS,
+				NUM_PREFETCH_THREADS,
+				PREFETCH_KEEP_ALIVE,
+				TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(PREFETCH_QUEUE_SIZE),
+				new ThreadFactory() {
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						Thread result =
+							new Thread(
+								runnable,
+								"ImageBatchZipReadRequest - Reading images " +
+									PREFETCH_THREAD_NUMBER.getAndIncrement());
+						result.setDaemon(true);
+						return result;
+					}
+				},
+				new ThreadPoolExecutor.CallerRunsPolicy());
+		PREFETCHER.allowCoreThreadTimeOut(true);
+	}
+	
+	/**
+	 * The maximum number of images that may be read ahead of the one that is
+	 * being written. This bounds the memory used by a single export.
+	 */
+	private static final int PREFETCH_WINDOW = 8;
+	
+	/**
+	 * The size of the buffer used when reading an image.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+	
 	private final Map<UUID, URL> imageUrls;
 	
 	/**
@@ -152,18 +228,14 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 			imageIds.addAll(getImageIds(surveyResponse.getResponses().values()));
 		}
 		
-		LOGGER.info("Getting the URL for each UUID.");
+		LOGGER.info("Getting the URLs for the UUIDs.");
 		try {
-			for(UUID imageId : imageIds) {
-				URL imageUrl = ImageServices.instance().getImageUrl(imageId);
-				if(imageUrl == null) {
-					LOGGER.debug(
-							"The image doesn't have a URL: " + 
-								imageId.toString());
-				}
-				else {
-					imageUrls.put(imageId, imageUrl);
-				}
+			imageUrls.putAll(ImageServices.instance().getImageUrls(imageIds));
+			
+			if(LOGGER.isDebugEnabled()) {
+				LOGGER.debug(
+						(imageIds.size() - imageUrls.size()) + 
+							" images don't have a URL.");
 			}
 		}
 		catch(ServiceException e) {
@@ -205,89 +277,68 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 			return;
 		}
 		
-		// Stream each image into the input of the ZIP stream.
-		int lengthRead;
-		byte[] buffer = new byte[4096];
-		for(UUID imageId : imageUrls.keySet()) {
-			// First, attempt to connect to the image. If this cannot be done,
-			// we will simply skip this image and not return it in the ZIP 
-			// file.
-			InputStream imageStream;
-			try {
-				URL imageUrl = imageUrls.get(imageId);
-				imageStream = imageUrl.openStream();
-			}
-			catch(IOException e) {
-				LOGGER.info(
-						"The image does not exist, so it will not be added to the ZIP file: " +
-							imageId.toString(),
-						e);
-				continue;
-			}
-			
-			// Next, we create a new entry in the ZIP file for this image.
-			try {
-				zipStream.putNextEntry(new ZipEntry(imageId.toString() + ".png"));
-			}
-			catch(IOException e) {
-				LOGGER.error(
-						"Unable to add an entry to the stream: " +
-							imageId.toString(),
-						e);
-				break;
-			}
-			
-			// Attempt to read from the image buffer and shuffle it into the 
-			// ZIP file buffer.
-			try {
-				while((lengthRead = imageStream.read(buffer)) != -1) {
-					try {
-						zipStream.write(buffer, 0, lengthRead);
-					}
-					catch(IOException e) {
-						LOGGER.error(
-								"There was a problem writing the response: " +
-									imageId.toString(),
-								e);
-						break;
-					}
+		// Read the images in parallel, keeping a bounded number of them in
+		// memory, and write them to the ZIP stream in order.
+		List<UUID> imageIds = new ArrayList<UUID>(imageUrls.keySet());
+		Queue<Future<byte[]>> pending = new LinkedList<Future<byte[]>>();
+		try {
+			int nextToRead = 0;
+			for(UUID imageId : imageIds) {
+				// Keep the prefetch window full.
+				while(
+					(nextToRead < imageIds.size()) && 
+					(pending.size() < PREFETCH_WINDOW)) {
+					
+					pending.add(
+						PREFETCHER.submit(
+							new ImageReader(
+								imageUrls.get(imageIds.get(nextToRead)))));
+					nextToRead++;
 				}
-			}
-			catch(IOException e) {
-				LOGGER.error(
-						"There was a problem reading the image's contents: " +
-							imageId.toString(),
-						e);
-				break;
-			}
-			
-			// Once we have copied the entire image into the buffer, we can 
-			// close it. If it fails to close, we don't really care because we
-			// have supposedly read everything we need.
-			try {
-				imageStream.close();	
-			}
-			catch(IOException e) {
-				LOGGER.error(
-						"There was a problem closing the connection to the image: " +
-							imageId.toString(),
-						e);
 				
-				// We don't abort here, because everything should have been
-				// successfully written to to the stream. Therefore, we should
-				// log that it happened, but we can safely continue.
-			}
-			
-			// Finally, close this entry in the ZIP file.
-			try {
-				zipStream.closeEntry();
+				// Wait for the next image in order. If it cannot be read, we
+				// will simply skip this image and not return it in the ZIP
+				// file.
+				byte[] imageData;
+				try {
+					imageData = pending.remove().get();
+				}
+				catch(ExecutionException e) {
+					LOGGER.info(
+							"The image does not exist, so it will not be added to the ZIP file: " +
+								imageId.toString(),
+							e.getCause());
+					continue;
+				}
+				catch(InterruptedException e) {
+					LOGGER.error(
+							"Interrupted while reading the images.", 
+							e);
+					Thread.currentThread().interrupt();
+					break;
+				}
+				
+				try {
+					writeEntry(
+						zipStream, 
+						imageId, 
+						imageUrls.get(imageId), 
+						imageData);
+				}
+				catch(IOException e) {
+					LOGGER.error(
+							"There was a problem writing the response: " +
+								imageId.toString(),
+							e);
+					break;
+				}
 			}
-			catch(IOException e) {
-				LOGGER.error(
-						"There was a problem closing this image's entry: " +
-							imageId.toString(),
-						e);
-				break;
+		}
+		finally {
+			// Any images that were read ahead but won't be written are
+			// abandoned.
+			for(Future<byte[]> future : pending) {
+				future.cancel(true);
 			}
 		}
 		
@@ -309,6 +360,164 @@ public class ImageBatchZipReadRequest extends SurveyResponseRequest {
 		}
 	}
 	
+	/**
+	 * Writes an image as a new entry in the ZIP file. The entry is named 
+	 * after the image's ID with an extension based on its format. Formats 
+	 * that are already compressed are STORED rather than being deflated 
+	 * again.
+	 * 
+	 * @param zipStream The ZIP stream to write to.
+	 * 
+	 * @param imageId The image's unique identifier.
+	 * 
+	 * @param imageUrl The image's URL, used when the format isn't known.
+	 * 
+	 * @param imageData The image's contents.
+	 * 
+	 * @throws IOException There was an error writing to the stream.
+	 */
+	private static void writeEntry(
+			final ZipOutputStream zipStream,
+			final UUID imageId,
+			final URL imageUrl,
+			final byte[] imageData) 
+			throws IOException {
+		
+		String extension = getCompressedImageExtension(imageData);
+		
+		ZipEntry entry;
+		if(extension == null) {
+			// We don't recognize it, so let the ZIP stream compress it.
+			entry = new ZipEntry(imageId.toString() + getUrlExtension(imageUrl));
+		}
+		else {
+			entry = new ZipEntry(imageId.toString() + "." + extension);
+			
+			CRC32 crc = new CRC32();
+			crc.update(imageData);
+			
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(imageData.length);
+			entry.setCompressedSize(imageData.length);
+			entry.setCrc(crc.getValue());
+		}
+		
+		zipStream.putNextEntry(entry);
+		zipStream.write(imageData);
+		zipStream.closeEntry();
+	}
+	
+	/**
+	 * Returns the file extension for an image based on its leading bytes if
+	 * it is in a format that is already compressed.
+	 * 
+	 * @param imageData The image's contents.
+	 * 
+	 * @return The extension without the leading period, or null if the 
+	 * 		   format isn't recognized.
+	 */
+	private static String getCompressedImageExtension(final byte[] imageData) {
+		if(imageData.length < 4) {
+			return null;
+		}
+		else if(
+			((imageData[0] & 0xFF) == 0xFF) && 
+			((imageData[1] & 0xFF) == 0xD8) && 
+			((imageData[2] & 0xFF) == 0xFF)) {
+			
+			return "jpg";
+		}
+		else if(
+			((imageData[0] & 0xFF) == 0x89) && 
+			(imageData[1] == 'P') && 
+			(imageData[2] == 'N') && 
+			(imageData[3] == 'G')) {
+			
+			return "png";
+		}
+		else if(
+			(imageData[0] == 'G') && 
+			(imageData[1] == 'I') && 
+			(imageData[2] == 'F') && 
+			(imageData[3] == '8')) {
+			
+			return "gif";
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns the extension, including the leading period, of the file that a
+	 * URL points to.
+	 * 
+	 * @param url The URL.
+	 * 
+	 * @return The extension, or an empty string if the file doesn't have one.
+	 */
+	private static String getUrlExtension(final URL url) {
+		String path = url.getPath();
+		int lastSlash = path.lastIndexOf('/');
+		int lastPeriod = path.lastIndexOf('.');
+		
+		if(lastPeriod > lastSlash) {
+			return path.substring(lastPeriod);
+		}
+		
+		return "";
+	}
+	
+	/**
+	 * Reads the entire contents of an image into memory so that it may be
+	 * read ahead of being written to the ZIP stream.
+	 */
+	private static final class ImageReader implements Callable<byte[]> {
+		private final URL imageUrl;
+		
+		/**
+		 * Creates a reader for the image.
+		 * 
+		 * @param imageUrl The image's URL.
+		 */
+		private ImageReader(final URL imageUrl) {
+			this.imageUrl = imageUrl;
+		}
+		
+		/**
+		 * Reads the image.
+		 * 
+		 * @return The image's contents.
+		 * 
+		 * @throws IOException There was an error reading the image.
+		 */
+		@Override
+		public byte[] call() throws IOException {
+			InputStream imageStream = imageUrl.openStream();
+			try {
+				ByteArrayOutputStream result = new ByteArrayOutputStream();
+				
+				int lengthRead;
+				byte[] buffer = new byte[CHUNK_SIZE];
+				while((lengthRead = imageStream.read(buffer)) != -1) {
+					result.write(buffer, 0, lengthRead);
+				}
+				
+				return result.toByteArray();
+			}
+			finally {
+				try {
+					imageStream.close();
+				}
+				catch(IOException e) {
+					LOGGER.info(
+							"There was a problem closing the connection to the image: " +
+								imageUrl,
+							e);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Cycles through a collection of responses and retrieves the photo prompt
 	 * response's UUIDs.
@@ -16,20 +16,19 @@
 package org.ohmage.request.mobility;
 
 import java.io.IOException;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonGenerator.Feature;
+import org.codehaus.jackson.map.MappingJsonFactory;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.Location;
@@ -40,6 +39,7 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
+import org.ohmage.query.IUserMobilityQueries.MobilityPointHandler;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.MobilityServices;
@@ -98,11 +98,210 @@ public class MobilityReadChunkedRequest extends UserRequest {
 	// 10 days
 	private static final long MAX_MILLIS_BETWEEN_START_AND_END_DATES = 1000 * 60 * 60 * 24 * 10; 
 	
+	/**
+	 * The factory for the response's generator. A response that fails after
+	 * it has begun is closed as it is, so its open array and object must not
+	 * be closed for it. Otherwise, the truncated response would be valid JSON
+	 * that the client couldn't tell from a complete one.
+	 */
+	private static final JsonFactory JSON_FACTORY = 
+		(new MappingJsonFactory())
+			.configure(Feature.AUTO_CLOSE_TARGET, true)
+			.configure(Feature.AUTO_CLOSE_JSON_CONTENT, false);
+	
 	private final DateTime startDate;
 	private final DateTime endDate;
 	private final long millisPerChunk;
 	
-	private List<MobilityPoint> result;
+	/**
+	 * Combines the points into chunks as they are read and writes each chunk
+	 * as soon as it is complete. The points arrive in chronological order, so
+	 * a chunk is complete once a point for a later chunk arrives. The 
+	 * response is not started until the first chunk is written so that a
+	 * failure before then can still be reported normally.
+	 */
+	private final class ChunkWriter implements MobilityPointHandler {
+		private final HttpServletRequest httpRequest;
+		private final HttpServletResponse httpResponse;
+		
+		private JsonGenerator generator = null;
+		
+		// The current chunk.
+		private Long chunkStart = null;
+		private String timestamp = null;
+		private DateTimeZone timezone = null;
+		private LocationStatus locationStatus = null;
+		private Location location = null;
+		private final Map<String, Integer> modeCountMap = 
+				new LinkedHashMap<String, Integer>();
+		
+		/**
+		 * Creates a writer for a response.
+		 * 
+		 * @param httpRequest The HTTP request.
+		 * 
+		 * @param httpResponse The HTTP response.
+		 */
+		private ChunkWriter(
+				final HttpServletRequest httpRequest,
+				final HttpServletResponse httpResponse) {
+			
+			this.httpRequest = httpRequest;
+			this.httpResponse = httpResponse;
+		}
+		
+		/**
+		 * Adds a point to its chunk, first writing the current chunk if the 
+		 * point belongs to a later one.
+		 */
+		@Override
+		public void handle(
+				final MobilityPoint mobilityPoint)
+				throws DomainException, IOException {
+			
+			// Get this point's chunk.
+			long time = 
+				(mobilityPoint.getTime() / millisPerChunk) * millisPerChunk;
+			
+			if((chunkStart == null) || (chunkStart != time)) {
+				writeChunk();
+				
+				// The first point sets the information.
+				chunkStart = time;
+				timestamp = 
+						DateTimeUtils.getIso8601DateString(
+							mobilityPoint.getDate(), 
+							true);
+				timezone = mobilityPoint.getTimezone();
+				locationStatus = mobilityPoint.getLocationStatus();
+				location = mobilityPoint.getLocation();
+				modeCountMap.clear();
+			}
+			
+			// For all points, get the mode.
+			String mode = mobilityPoint.getMode().toString().toLowerCase();
+			Integer count = modeCountMap.get(mode);
+			
+			if(count == null) {
+				modeCountMap.put(mode, 1);
+			}
+			else {
+				modeCountMap.put(mode, count + 1);
+			}
+		}
+		
+		/**
+		 * Writes the last chunk and ends the response.
+		 * 
+		 * @throws DomainException The chunk could not be written.
+		 * 
+		 * @throws IOException There was an error writing the response.
+		 */
+		private void finish() throws DomainException, IOException {
+			writeChunk();
+			
+			start();
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+		
+		/**
+		 * Returns whether or not any of the response has been written.
+		 * 
+		 * @return Whether or not the response has been started.
+		 */
+		private boolean isStarted() {
+			return generator != null;
+		}
+		
+		/**
+		 * Closes the response if it was started. Unless {@link #finish()} was
+		 * called, the response is left unterminated.
+		 */
+		private void close() {
+			if(generator != null) {
+				try {
+					generator.close();
+				}
+				catch(IOException e) {
+					LOGGER.info("Could not close the generator.", e);
+				}
+			}
+		}
+		
+		/**
+		 * Abandons the response after a failure. The status only reaches the
+		 * client if none of the response has been sent yet. Otherwise, the
+		 * body ends where the failure happened, without closing its array 
+		 * and object, when the response is closed, so that it is not valid
+		 * JSON.
+		 */
+		private void abort() {
+			httpResponse.setStatus(
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		}
+		
+		/**
+		 * Writes the current chunk, if there is one.
+		 * 
+		 * @throws DomainException The chunk's location could not be written.
+		 * 
+		 * @throws IOException There was an error writing the response.
+		 */
+		private void writeChunk() throws DomainException, IOException {
+			if(chunkStart == null) {
+				return;
+			}
+			
+			start();
+			
+			generator.writeStartObject();
+			generator.writeObjectFieldStart(JSON_KEY_MODE_COUNT);
+			for(String mode : modeCountMap.keySet()) {
+				generator.writeNumberField(mode, modeCountMap.get(mode));
+			}
+			generator.writeEndObject();
+			generator.writeNumberField(JSON_KEY_DURATION, millisPerChunk);
+			generator.writeStringField(JSON_KEY_TIMESTAMP, timestamp);
+			generator.writeStringField(JSON_KEY_TIMEZONE, timezone.getID());
+			generator.writeStringField(
+					JSON_KEY_LOCATION_STATUS, 
+					locationStatus.toString().toLowerCase());
+			if(location != null) {
+				generator.writeObjectFieldStart(JSON_KEY_LOCATION);
+				location.streamJson(
+						generator, 
+						true, 
+						LocationColumnKey.ALL_COLUMNS);
+				generator.writeEndObject();
+			}
+			generator.writeEndObject();
+		}
+		
+		/**
+		 * Begins the response, if it hasn't already begun, up to the start of
+		 * the array of chunks.
+		 * 
+		 * @throws IOException There was an error writing the response.
+		 */
+		private void start() throws IOException {
+			if(generator != null) {
+				return;
+			}
+			
+			refreshTokenCookie(httpResponse);
+			expireResponse(httpResponse);
+			httpResponse.setContentType("application/json");
+			
+			generator = 
+				JSON_FACTORY.createJsonGenerator(
+					getOutputStream(httpRequest, httpResponse));
+			
+			generator.writeStartObject();
+			generator.writeStringField(JSON_KEY_RESULT, RESULT_SUCCESS);
+			generator.writeArrayFieldStart(JSON_KEY_DATA);
+		}
+	}
 	
 	/**
 	 * Creates a new Mobility read chunked request.
@@ -212,129 +411,72 @@ public class MobilityReadChunkedRequest extends UserRequest {
 		startDate = tStartDate;
 		endDate = tEndDate;
 		millisPerChunk = tMillisPerChunk;
-		
-		result = Collections.emptyList();
 	}
 
 	/**
-	 * Service the request.
+	 * Service the request. The points are read and combined into chunks as 
+	 * the response is written.
 	 */
 	@Override
 	public void service() {
 		LOGGER.info("Servicing the Mobility read chunked request.");
 		
-		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
-			return;
-		}
-		
-		try {
-			LOGGER.info("Gathering the data.");
-			result =
-					MobilityServices.instance().retrieveMobilityData(
-						getUser().getUsername(), 
-						startDate, 
-						endDate, 
-						null, 
-						null, 
-						null);
-			LOGGER.info("Found " + result.size() + " results.");
-		}
-		catch(ServiceException e) {
-			e.failRequest(this);
-			e.logException(LOGGER);
-		}
+		authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED);
 	}
 
 	/**
-	 * Responds to the Mobility read chunked request.
+	 * Responds to the Mobility read chunked request by streaming the points
+	 * from the database and writing each chunk as it is completed.
 	 */
 	@Override
 	public void respond(HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
 		LOGGER.info("Responding to the Mobility read chunked request.");
 		
-		Map<Long, List<MobilityPoint>> millisToPointMap =
-				new HashMap<Long, List<MobilityPoint>>();
+		if(isFailed()) {
+			super.respond(httpRequest, httpResponse, (JSONObject) null);
+			return;
+		}
 		
-		// Bucket the items preserving order in the bucket.
-		for(MobilityPoint mobilityPoint : result) {
-			long time = mobilityPoint.getTime();
-			
-			// Get this point's bucket.
-			time = (time / millisPerChunk) * millisPerChunk;
+		ChunkWriter writer = new ChunkWriter(httpRequest, httpResponse);
+		try {
+			LOGGER.info("Gathering the data.");
+			MobilityServices.instance().processMobilityData(
+					getUser().getUsername(), 
+					startDate, 
+					endDate, 
+					null, 
+					null, 
+					null,
+					false,
+					writer);
 			
-			List<MobilityPoint> bucket = millisToPointMap.get(time);
+			writer.finish();
+		}
+		catch(ServiceException e) {
+			e.logException(LOGGER);
 			
-			if(bucket == null) {
-				bucket = new LinkedList<MobilityPoint>();
-				millisToPointMap.put(time, bucket);
+			// If nothing has been written, the failure can still be 
+			// reported.
+			if(! writer.isStarted()) {
+				e.failRequest(this);
+				super.respond(httpRequest, httpResponse, (JSONObject) null);
+				return;
 			}
 			
-			bucket.add(mobilityPoint);
+			writer.abort();
 		}
-
-		JSONArray outputArray = new JSONArray();
-		
-		// Process the buckets.
-		try {
-			for(Long time : millisToPointMap.keySet()) {
-				Map<String, Integer> modeCountMap =
-						new HashMap<String, Integer>();
-				String timestamp = null;
-				DateTimeZone timezone = null;
-				LocationStatus locationStatus = null;
-				Location location = null;
-				
-				for(MobilityPoint mobilityPoint : millisToPointMap.get(time)) {
-					// The first point sets the information.
-					if(timestamp == null) {
-						timestamp = 
-								DateTimeUtils.getIso8601DateString(
-									mobilityPoint.getDate(), 
-									true);
-						timezone = mobilityPoint.getTimezone();
-						
-						locationStatus = mobilityPoint.getLocationStatus();
-						location = mobilityPoint.getLocation();
-					}
-					
-					// For all points, get the mode.
-					String mode = mobilityPoint.getMode().toString().toLowerCase();
-					Integer count = modeCountMap.get(mode);
-					
-					if(count == null) {
-						modeCountMap.put(mode, 1);
-					}
-					else {
-						modeCountMap.put(mode, count + 1);
-					}
-				}
-				
-				JSONObject currResult = new JSONObject();
-				currResult.put(JSON_KEY_MODE_COUNT, modeCountMap);
-				currResult.put(JSON_KEY_DURATION, millisPerChunk);
-				currResult.put(JSON_KEY_TIMESTAMP, timestamp);
-				currResult.put(JSON_KEY_TIMEZONE, timezone.getID());
-				currResult.put(
-						JSON_KEY_LOCATION_STATUS, 
-						locationStatus.toString().toLowerCase());
-				try {
-					currResult.put(
-							JSON_KEY_LOCATION, 
-							((location == null) ? null : location.toJson(true, LocationColumnKey.ALL_COLUMNS)));
-				} 
-				catch(DomainException e) {
-					LOGGER.error("Error creating the JSON.", e);
-					setFailed();
-				}
-				
-				outputArray.put(currResult);
-			}
+		catch(DomainException e) {
+			LOGGER.error("Error creating the JSON.", e);
+			writer.abort();
 		}
-		catch(JSONException e) {
-			LOGGER.error("Error building the response." , e);
-			setFailed();
+		catch(IOException e) {
+			LOGGER.info(
+					"The response could no longer be written to the response", 
+					e);
+			writer.abort();
+		}
+		finally {
+			writer.close();
 		}
-		
-		super.respond(httpRequest, httpResponse, JSON_KEY_DATA, outputArray);
 	}
 }
@@ -22,6 +22,7 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
+import org.ohmage.query.IUserMobilityQueries.MobilityPointHandler;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.MobilityServices;
@@ -83,7 +84,163 @@ public class MobilityReadCsvRequest extends UserRequest {
 	private final String username;
 	private final List<ColumnKey> columns;
 	
-	private List<MobilityPoint> points;
+	/**
+	 * Writes each point as a CSV row as soon as it is read. The response is
+	 * not started until the first row is written so that a failure before 
+	 * then can still be reported normally.
+	 */
+	private final class CsvWriter implements MobilityPointHandler {
+		private final HttpServletRequest httpRequest;
+		private final HttpServletResponse httpResponse;
+		
+		private OutputStream os = null;
+		private List<Object> emptyList = null;
+		
+		/**
+		 * Creates a writer for a response.
+		 * 
+		 * @param httpRequest The HTTP request.
+		 * 
+		 * @param httpResponse The HTTP response.
+		 */
+		private CsvWriter(
+				final HttpServletRequest httpRequest,
+				final HttpServletResponse httpResponse) {
+			
+			this.httpRequest = httpRequest;
+			this.httpResponse = httpResponse;
+		}
+		
+		/**
+		 * Writes the point as a row.
+		 */
+		@Override
+		public void handle(
+				final MobilityPoint point)
+				throws DomainException, IOException {
+			
+			start();
+			
+			List<Object> currResult = new ArrayList<Object>(emptyList);
+			point.toCsvRow(columns, currResult);
+			
+			boolean firstPass = true;
+			for(Object currColumn : currResult) {
+				if(firstPass) {
+					firstPass = false;
+				}
+				else {
+					os.write(',');
+				}
+				
+				if(currColumn == null) {
+					continue;
+				}
+				
+				if(currColumn instanceof Number) {
+					os.write(((Number) currColumn).toString().getBytes());
+				}
+				else {
+					os.write('"');
+					
+					if(currColumn instanceof Collection) {
+						boolean innerFirstPass = true;
+						for(Object currItem : (Collection<?>) currColumn) {
+							if(innerFirstPass) {
+								innerFirstPass = false;
+							}
+							else {
+								os.write(',');
+							}
+							
+							os.write(currItem.toString().getBytes());
+						}
+					}
+					else {
+						os.write(currColumn.toString().getBytes());
+					}
+					
+					os.write('"');
+				}
+			}
+			
+			os.write('\n');
+		}
+		
+		/**
+		 * Returns whether or not any of the response has been written.
+		 * 
+		 * @return Whether or not the response has been started.
+		 */
+		private boolean isStarted() {
+			return os != null;
+		}
+		
+		/**
+		 * Flushes and closes the response if it was started.
+		 */
+		private void close() {
+			if(os != null) {
+				try {
+					os.flush();
+					os.close();
+				}
+				catch(IOException e) {
+					LOGGER.info("Could not close the output stream.", e);
+				}
+			}
+		}
+		
+		/**
+		 * Begins the response, if it hasn't already begun, by setting the 
+		 * headers and writing the header row.
+		 * 
+		 * @throws IOException There was an error writing the response.
+		 */
+		private void start() throws IOException {
+			if(os != null) {
+				return;
+			}
+			
+			os = getOutputStream(httpRequest, httpResponse);
+			
+			// Sets the HTTP headers to disable caching
+			expireResponse(httpResponse);
+			
+			// Set the type and force the browser to download it as the 
+			// last step before beginning to stream the response.
+			httpResponse.setContentType("text/csv");
+			httpResponse.setHeader("Content-Disposition", "attachment; filename=Mobility.csv");
+			
+			// If available, set the token.
+			if(getUser() != null) {
+				final String token = getUser().getToken(); 
+				if(token != null) {
+					CookieUtils.setCookieValue(httpResponse, InputKeys.AUTH_TOKEN, token);
+				}
+			}
+			
+			boolean firstPass = true;
+			int numColumns = 0;
+			for(ColumnKey column : columns) {
+				if(firstPass) {
+					firstPass = false;
+				}
+				else {
+					os.write(',');
+				}
+				
+				os.write(column.toString().getBytes());
+				numColumns++;
+			}
+			os.write('\n');
+			
+			emptyList = new ArrayList<Object>(numColumns);
+			for(int i = 0; i < numColumns; i++) {
+				emptyList.add(null);
+			}
+		}
+	}
 	
 	/**
 	 * Creates a Mobility read request where the result is a CSV file 
@@ -172,8 +329,6 @@ public class MobilityReadCsvRequest extends UserRequest {
 		endDate = tEndDate;
 		username = tUsername;
 		columns = tColumns;
-		
-		points = new ArrayList<MobilityPoint>(0);
 	}
 	
 	/*
@@ -222,14 +377,6 @@ public class MobilityReadCsvRequest extends UserRequest {
 				
 				UserServices.instance().checkUserExistance(username, true);
 			}
-			
-			points = MobilityServices.instance().retrieveMobilityData(
-					(username == null) ? getUser().getUsername() : username,
-					startDate, 
-					endDate, 
-					null, 
-					null, 
-					null);
 		}
 		catch(ServiceException e) {
 			e.failRequest(this);
@@ -254,104 +401,39 @@ public class MobilityReadCsvRequest extends UserRequest {
 			return;
 		}
 		
-		// Creates the writer that will write the response, success or fail.
-		OutputStream os;
+		// The points are read from the database and written as rows as the
+		// response is written.
+		CsvWriter writer = new CsvWriter(httpRequest, httpResponse);
 		try {
-			os = getOutputStream(httpRequest, httpResponse);
-		}
-		catch(IOException e) {
-			LOGGER.error("Unable to create writer object. Aborting.", e);
-			return;
-		}
-		
-		// Sets the HTTP headers to disable caching
-		expireResponse(httpResponse);
-				
-		try {
-			// Set the type and force the browser to download it as the 
-			// last step before beginning to stream the response.
-			httpResponse.setContentType("text/csv");
-			httpResponse.setHeader("Content-Disposition", "attachment; filename=Mobility.csv");
-			
-			// If available, set the token.
-			if(getUser() != null) {
-				final String token = getUser().getToken(); 
-				if(token != null) {
-					CookieUtils.setCookieValue(httpResponse, InputKeys.AUTH_TOKEN, token);
-				}
-			}
-			
-			boolean firstPass = true;
-			int numColumns = 0;
-			for(ColumnKey column : columns) {
-				if(firstPass) {
-					firstPass = false;
-				}
-				else {
-					os.write(',');
-				}
-				
-				os.write(column.toString().getBytes());
-				numColumns++;
-			}
-			os.write('\n');
+			MobilityServices.instance().processMobilityData(
+					(username == null) ? getUser().getUsername() : username,
+					startDate, 
+					endDate, 
+					null, 
+					null, 
+					null,
+					true,
+					writer);
 			
-			List<Object> emptyList = new ArrayList<Object>(numColumns);
-			for(int i = 0; i < numColumns; i++) {
-				emptyList.add(null);
-			}
+			// If there were no points, there is still a header row.
+			writer.start();
+		}
+		catch(ServiceException e) {
+			e.logException(LOGGER);
 			
-			for(MobilityPoint point : points) {
-				List<Object> currResult = new ArrayList<Object>(emptyList);
-				point.toCsvRow(columns, currResult);
-				
-				firstPass = true;
-				for(Object currColumn : currResult) {
-					if(firstPass) {
-						firstPass = false;
-					}
-					else {
-						os.write(',');
-					}
-					
-					if(currColumn == null) {
-						continue;
-					}
-					
-					if(currColumn instanceof Number) {
-						os.write(((Number) currColumn).toString().getBytes());
-					}
-					else {
-						os.write('"');
-						
-						if(currColumn instanceof Collection) {
-							boolean innerFirstPass = true;
-							for(Object currItem : (Collection<?>) currColumn) {
-								if(innerFirstPass) {
-									innerFirstPass = false;
-								}
-								else {
-									os.write(',');
-								}
-								
-								os.write(currItem.toString().getBytes());
-							}
-						}
-						else {
-							os.write(currColumn.toString().getBytes());
-						}
-						
-						os.write('"');
-					}
-				}
-				
-				os.write('\n');
+			// If nothing has been written, the failure can still be 
+			// reported.
+			if(! writer.isStarted()) {
+				e.failRequest(this);
+				super.respond(httpRequest, httpResponse, (JSONObject) null);
+				return;
 			}
 			
-			// Flush and close the output stream that was used to generate
-			// the data output stream.
-			os.flush();
-			os.close();
+			// Otherwise, we are mid writing to the output stream, so we are 
+			// simply in trouble.
+			setFailed();
+			httpResponse.setStatus(
+					HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
 		}
 		// If we fail while writing to the output stream, then the connection 
 		// was broken and there is nothing we can do.
@@ -359,13 +441,8 @@ public class MobilityReadCsvRequest extends UserRequest {
 			LOGGER.error("The contents of the file could not be read or written to the response.", e);
 			setFailed();
 		}
-		// If we fail while creating a result, we are mid writing to the output
-		// stream, so we are simply in trouble.
-		catch(DomainException e) {
-			LOGGER.error("Could not create a CSV row.", e);
-			setFailed();
-			httpResponse.setStatus(
-					HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+		finally {
+			writer.close();
 		}
 	}
-}
\ No newline at end of file
+}
@@ -16,6 +16,7 @@
 package org.ohmage.request.mobility;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -25,7 +26,6 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
@@ -38,10 +38,12 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
+import org.ohmage.jee.filter.StreamedParameter;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.Request;
 import org.ohmage.request.observer.StreamUploadRequest;
 import org.ohmage.service.ObserverServices;
+import org.ohmage.util.JsonArrayReader;
 
 /**
  * <p>Creates a new Mobility data point. There are no restrictions on who can
@@ -171,6 +173,7 @@ public class MobilityUploadRequest extends Request {
 	private final Map<Integer, String> invalidPointsMap;
 	private final Collection<JSONObject> invalidPointsJson;
 	
+	private final ConvertedPointReader convertedPoints;
 	private final StreamUploadRequest streamUploadRequest;
 	
 	/**
@@ -193,144 +196,75 @@ public class MobilityUploadRequest extends Request {
 		invalidPointsMap = new HashMap<Integer, String>();
 		invalidPointsJson = new LinkedList<JSONObject>();
 		
+		ConvertedPointReader tConvertedPoints = null;
 		StreamUploadRequest tStreamUploadRequest = null;
 		
 		if(! isFailed()) {
 			try {
-				String[] dataArray = getParameterValues(InputKeys.DATA);
-				if(dataArray.length == 0) {
-					throw new ValidationException(
-						ErrorCode.MOBILITY_INVALID_DATA,
-						"The upload data is missing: " + 
-							ErrorCode.MOBILITY_INVALID_DATA);
-				}
-				else if(dataArray.length > 1) {
-					throw new ValidationException(
-						ErrorCode.MOBILITY_INVALID_DATA,
-						"Multiple data parameters were given: " + 
-							ErrorCode.MOBILITY_INVALID_DATA);
-				}
-				else {
-					JSONArray jsonDataArray;
-					try {
-						jsonDataArray = new JSONArray(dataArray[0]);
+				// Read the points one at a time so that only the current
+				// point's JSON is ever built. Large uploads are read directly
+				// from the temporary file that the GZIP filter streamed them
+				// to.
+				JsonArrayReader reader;
+				StreamedParameter streamedData = 
+					getStreamedParameter(InputKeys.DATA);
+				try {
+					if(streamedData != null) {
+						reader = 
+							new JsonArrayReader(streamedData.openReader());
 					}
-					catch(JSONException e) {
-						throw new ValidationException(
-							ErrorCode.MOBILITY_INVALID_DATA,
-							"The data is not well formed.",
-							e);
-					}
-					
-					JSONArray resultDataArray = new JSONArray();
-					for(int i = 0; i < jsonDataArray.length(); i++) {
-						JSONObject pointJson;
-						try {
-							pointJson = jsonDataArray.getJSONObject(i);
-						}
-						catch(JSONException e) {
+					else {
+						String[] dataArray = getParameterValues(InputKeys.DATA);
+						if(dataArray.length == 0) {
 							throw new ValidationException(
 								ErrorCode.MOBILITY_INVALID_DATA,
-								"A Mobility data point was not a JSON object.",
-								e);
+								"The upload data is missing: " + 
+									ErrorCode.MOBILITY_INVALID_DATA);
 						}
-						
-						MobilityPoint point;
-						try {
-							point = 
-								new MobilityPoint(
-									pointJson,
-									MobilityPoint.PrivacyState.PRIVATE);
-						}
-						catch(DomainException e) {
-							invalidPointsMap.put(i, e.getMessage());
-							invalidPointsJson.add(pointJson);
-							continue;
-						}
-
-						validIds.add(point.getId().toString());
-						
-						try {
-							JSONObject jsonPoint = new JSONObject();
-							if(MobilityPoint.Mode.ERROR.equals(point.getMode())) {
-								jsonPoint.put("stream_id", "error");
-								
-								// Create the error object.
-								JSONObject errorObject = new JSONObject();
-								errorObject.put("mode", MobilityPoint.Mode.ERROR.toString().toLowerCase());
-								
-								jsonPoint.put("data", errorObject);
-								jsonPoint.put("stream_version", 2012061300);
-							}
-							else if(MobilityPoint.SubType.MODE_ONLY.equals(point.getSubType())) {
-								jsonPoint.put("stream_id", "mode_only");
-								
-								// Create the mode object.
-								JSONObject modeObject = new JSONObject();
-								modeObject.put("mode", point.getMode().toString());
-								
-								jsonPoint.put("data", modeObject);
-								jsonPoint.put("stream_version", 2012050700);
-							}
-							else {
-								jsonPoint.put("stream_id", "extended");
-								
-								// Add the sensor data and rename it to "data".
-								Collection<ColumnKey> columns = new LinkedList<ColumnKey>();
-								columns.add(MobilityColumnKey.SENSOR_DATA);
-								JSONObject mobilityJson;
-								try {
-									mobilityJson = point.toJson(false, columns);
-								}
-								catch(DomainException e) {
-									throw new ValidationException(
-										"The point could not be converted back to a JSON object.",
-										e);
-								}
-								jsonPoint.put("data", mobilityJson.getJSONObject("sensor_data"));
-								jsonPoint.put("stream_version", 2012050700);
-							}
-							
-							JSONObject metadata = new JSONObject();
-							metadata.put("id", point.getId().toString());
-							metadata.put("time", point.getTime());
-							metadata.put("timezone", point.getTimezone().getID());
-							
-							Location location = point.getLocation();
-							if(location != null) {
-								try {
-									metadata.put(
-										"location", 
-										location.toJson(
-											false, 
-											LocationColumnKey.ALL_COLUMNS));
-								}
-								catch(DomainException e) {
-									throw new ValidationException(
-										"The location could not be converted back to a JSON object.",
-										e);
-								}
-							}
-							jsonPoint.put("metadata", metadata);
-	
-							resultDataArray.put(jsonPoint);
-						}
-						catch(JSONException e) {
+						else if(dataArray.length > 1) {
 							throw new ValidationException(
-								"The stream information could not be built.",
-								e);
+								ErrorCode.MOBILITY_INVALID_DATA,
+								"Multiple data parameters were given: " + 
+									ErrorCode.MOBILITY_INVALID_DATA);
 						}
+						reader = new JsonArrayReader(dataArray[0]);
 					}
-					
+				}
+				catch(IOException e) {
+					throw new ValidationException(
+						"The streamed data could not be read.",
+						e);
+				}
+				catch(JSONException e) {
+					throw new ValidationException(
+						ErrorCode.MOBILITY_INVALID_DATA,
+						"The data is not well formed.",
+						e);
+				}
+				
+				// The converted points are read by the stream upload request as
+				// it parses them, so the converted upload is never built in
+				// memory.
+				tConvertedPoints = new ConvertedPointReader(reader);
+				try {
 					tStreamUploadRequest =
 						new StreamUploadRequest(
 							httpRequest,
 							getParameterMap(),
 							OBSERVER_ID,
 							OBSERVER_VERSION,
-							resultDataArray.toString(),
+							tConvertedPoints,
 							false);
 				}
+				finally {
+					// If it will never be serviced, the points will never be
+					// read.
+					if((tStreamUploadRequest == null) ||
+						tStreamUploadRequest.isFailed()) {
+						
+						tConvertedPoints.close();
+					}
+				}
 			}
 			catch(ValidationException e) {
 				e.failRequest(this);
@@ -338,6 +272,7 @@ public class MobilityUploadRequest extends Request {
 			}
 		}
 		
+		convertedPoints = tConvertedPoints;
 		streamUploadRequest = tStreamUploadRequest;
 	}
 
@@ -361,7 +296,20 @@ public class MobilityUploadRequest extends Request {
 			}
 				
 			LOGGER.info("Delegating to the stream upload service layer.");
-			streamUploadRequest.service();
+			try {
+				streamUploadRequest.service();
+			}
+			finally {
+				convertedPoints.close();
+			}
+			
+			// If the upload itself was invalid, that is the error, not that
+			// the stream upload request could not read it.
+			ValidationException e = convertedPoints.getException();
+			if(e != null) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
 		}
 	}
 
@@ -458,4 +406,227 @@ public class MobilityUploadRequest extends Request {
 		
 		return result;
 	}
+	
+	/**
+	 * Converts a Mobility point into the observer stream data point that it
+	 * is stored as.
+	 * 
+	 * @param point The Mobility point.
+	 * 
+	 * @return The stream data point.
+	 * 
+	 * @throws ValidationException The point could not be converted.
+	 * 
+	 * @throws JSONException The stream data point could not be built.
+	 */
+	private static JSONObject convertPoint(
+			final MobilityPoint point)
+			throws ValidationException, JSONException {
+		
+		JSONObject jsonPoint = new JSONObject();
+		if(MobilityPoint.Mode.ERROR.equals(point.getMode())) {
+			jsonPoint.put("stream_id", "error");
+			
+			// Create the error object.
+			JSONObject errorObject = new JSONObject();
+			errorObject.put("mode", MobilityPoint.Mode.ERROR.toString().toLowerCase());
+			
+			jsonPoint.put("data", errorObject);
+			jsonPoint.put("stream_version", 2012061300);
+		}
+		else if(MobilityPoint.SubType.MODE_ONLY.equals(point.getSubType())) {
+			jsonPoint.put("stream_id", "mode_only");
+			
+			// Create the mode object.
+			JSONObject modeObject = new JSONObject();
+			modeObject.put("mode", point.getMode().toString());
+			
+			jsonPoint.put("data", modeObject);
+			jsonPoint.put("stream_version", 2012050700);
+		}
+		else {
+			jsonPoint.put("stream_id", "extended");
+			
+			// Add the sensor data and rename it to "data".
+			Collection<ColumnKey> columns = new LinkedList<ColumnKey>();
+			columns.add(MobilityColumnKey.SENSOR_DATA);
+			JSONObject mobilityJson;
+			try {
+				mobilityJson = point.toJson(false, columns);
+			}
+			catch(DomainException e) {
+				throw new ValidationException(
+					"The point could not be converted back to a JSON object.",
+					e);
+			}
+			jsonPoint.put("data", mobilityJson.getJSONObject("sensor_data"));
+			jsonPoint.put("stream_version", 2012050700);
+		}
+		
+		JSONObject metadata = new JSONObject();
+		metadata.put("id", point.getId().toString());
+		metadata.put("time", point.getTime());
+		metadata.put("timezone", point.getTimezone().getID());
+		
+		Location location = point.getLocation();
+		if(location != null) {
+			try {
+				metadata.put(
+					"location", 
+					location.toJson(
+						false, 
+						LocationColumnKey.ALL_COLUMNS));
+			}
+			catch(DomainException e) {
+				throw new ValidationException(
+					"The location could not be converted back to a JSON object.",
+					e);
+			}
+		}
+		jsonPoint.put("metadata", metadata);
+		
+		return jsonPoint;
+	}
+	
+	/**
+	 * Reads the uploaded Mobility points as a JSON array of observer stream
+	 * data points, converting each point only when it is reached. As points
+	 * are reached, the IDs of the valid points and the invalid points are
+	 * recorded. If the upload is invalid, the read fails and the reason is
+	 * kept for {@link #getException()}.
+	 */
+	private final class ConvertedPointReader extends Reader {
+		private final JsonArrayReader points;
+		
+		private String buffer = "[";
+		private int position = 0;
+		private boolean first = true;
+		private boolean finished = false;
+		private ValidationException exception = null;
+		
+		/**
+		 * Creates a reader over the converted points.
+		 * 
+		 * @param points The uploaded points. They are closed when this reader
+		 * 				 is closed.
+		 */
+		private ConvertedPointReader(final JsonArrayReader points) {
+			this.points = points;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.io.Reader#read(char[], int, int)
+		 */
+		@Override
+		public int read(
+				final char[] cbuf,
+				final int off,
+				final int len)
+				throws IOException {
+			
+			if(len == 0) {
+				return 0;
+			}
+			
+			while(position >= buffer.length()) {
+				if(finished) {
+					return -1;
+				}
+				buffer = nextPoint();
+				position = 0;
+			}
+			
+			int numChars = Math.min(len, buffer.length() - position);
+			buffer.getChars(position, position + numChars, cbuf, off);
+			position += numChars;
+			return numChars;
+		}
+		
+		/*
+		 * (non-Javadoc)
+		 * @see java.io.Reader#close()
+		 */
+		@Override
+		public void close() {
+			points.close();
+		}
+		
+		/**
+		 * Returns why the upload was invalid.
+		 * 
+		 * @return The reason the upload was invalid or null if it has not been
+		 * 		   found to be invalid.
+		 */
+		public ValidationException getException() {
+			return exception;
+		}
+		
+		/**
+		 * Converts the next valid point, skipping and recording any invalid
+		 * points before it.
+		 * 
+		 * @return The next point's JSON, preceded by a comma if it is not the
+		 * 		   first, or the end of the array if there are no more points.
+		 * 
+		 * @throws IOException The upload is invalid.
+		 */
+		private String nextPoint() throws IOException {
+			try {
+				while(true) {
+					JSONObject pointJson;
+					try {
+						pointJson = points.next();
+					}
+					catch(JSONException e) {
+						throw new ValidationException(
+							ErrorCode.MOBILITY_INVALID_DATA,
+							"A Mobility data point was not a JSON object.",
+							e);
+					}
+					if(pointJson == null) {
+						finished = true;
+						return "]";
+					}
+					int i = points.getIndex();
+					
+					MobilityPoint point;
+					try {
+						point = 
+							new MobilityPoint(
+								pointJson,
+								MobilityPoint.PrivacyState.PRIVATE);
+					}
+					catch(DomainException e) {
+						invalidPointsMap.put(i, e.getMessage());
+						invalidPointsJson.add(pointJson);
+						continue;
+					}
+					
+					validIds.add(point.getId().toString());
+					
+					String result;
+					try {
+						result = convertPoint(point).toString();
+					}
+					catch(JSONException e) {
+						throw new ValidationException(
+							"The stream information could not be built.",
+							e);
+					}
+					
+					if(first) {
+						first = false;
+						return result;
+					}
+					return "," + result;
+				}
+			}
+			catch(ValidationException e) {
+				exception = e;
+				finished = true;
+				throw new IOException(e.getMessage(), e);
+			}
+		}
+	}
 }
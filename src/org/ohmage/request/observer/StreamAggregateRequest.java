@@ -0,0 +1,547 @@
+package org.ohmage.request.observer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonGenerator.Feature;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.MappingJsonFactory;
+import org.joda.time.DateTime;
+import org.json.JSONObject;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.ColumnNode;
+import org.ohmage.domain.DataStreamBucket;
+import org.ohmage.domain.Observer;
+import org.ohmage.exception.InvalidRequestException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.request.InputKeys;
+import org.ohmage.request.UserRequest;
+import org.ohmage.service.ObserverServices;
+import org.ohmage.validator.ObserverValidators;
+import org.ohmage.validator.UserValidators;
+
+/**
+ * <p>Summarizes uploaded data for a stream over consecutive time buckets.
+ * For each bucket that contains any points, the number of points is
+ * returned along with the count, minimum, maximum, mean, first, and last
+ * value of each of the requested numeric columns. The data is summarized in
+ * a single pass over the points, ordered by their adjusted time, so only the
+ * buckets are ever kept in memory.</p>
+ * <table border="1">
+ *   <tr>
+ *     <td>Parameter Name</td>
+ *     <td>Description</td>
+ *     <td>Required</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CLIENT}</td>
+ *     <td>A string describing the client that is making this request.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#OBSERVER_ID}</td>
+ *     <td>The unique ID for the observer that contains the stream.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#OBSERVER_VERSION}</td>
+ *     <td>The version of the observer to limit the results to only those that
+ *       were generated with this version of the observer.</td>
+ *     <td>false</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#STREAM_ID}</td>
+ *     <td>The unique ID for the stream.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#STREAM_VERSION}</td>
+ *     <td>A specific version of the stream.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#START_DATE}</td>
+ *     <td>An ISO-8601 date-time-zone that limits the results to only those on
+ *       or after this date. The buckets are aligned to this date.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#END_DATE}</td>
+ *     <td>An ISO-8601 date-time-zone that limits the results to only those on
+ *       or before this date.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#BUCKET_SIZE}</td>
+ *     <td>The length of each bucket in milliseconds. The range between the
+ *       start and end dates may be divided into at most
+ *       {@value #MAX_NUMBER_OF_BUCKETS} buckets.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#COLUMN_LIST}</td>
+ *     <td>The list of numeric columns to summarize, formatted as in the
+ *       stream read request, e.g. "<tt>r2,r1:s2</tt>". Each column must be
+ *       a number in the stream's schema.</td>
+ *     <td>true</td>
+ *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#USERNAME}</td>
+ *     <td>The username of the user whose data should be summarized. This
+ *       defaults to the requesting user.</td>
+ *     <td>false</td>
+ *   </tr>
+ * </table>
+ */
+public class StreamAggregateRequest extends UserRequest {
+	private static final Logger LOGGER =
+		Logger.getLogger(StreamAggregateRequest.class);
+
+	/**
+	 * The single factory instance for the writer.
+	 */
+	private static final JsonFactory JSON_FACTORY =
+		(new MappingJsonFactory()).configure(Feature.AUTO_CLOSE_TARGET, true);
+
+	/**
+	 * The maximum number of buckets that the range may be divided into.
+	 */
+	public static final long MAX_NUMBER_OF_BUCKETS = 10000;
+
+	// The username of the user whose data is being summarized.
+	private final String username;
+
+	// Required.
+	private final String observerId;
+
+	// Optional.
+	private final Long observerVersion;
+
+	// Required parameters.
+	private final String streamId;
+	private final Long streamVersion;
+	private final DateTime startDate;
+	private final DateTime endDate;
+	private final Long bucketSize;
+	private final ColumnNode<String> columnsRoot;
+
+	// The buckets generated during the servicing of the request.
+	private final List<DataStreamBucket> results;
+
+	/**
+	 * Creates a stream aggregate request.
+	 * 
+	 * @param httpRequest The HTTP request.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public StreamAggregateRequest(
+			final HttpServletRequest httpRequest)
+			throws IOException, InvalidRequestException {
+
+		super(httpRequest, false, TokenLocation.EITHER, null);
+
+		String tUsername = null;
+		String tObserverId = null;
+		Long tObserverVersion = null;
+		String tStreamId = null;
+		Long tStreamVersion = null;
+		DateTime tStartDate = null;
+		DateTime tEndDate = null;
+		Long tBucketSize = null;
+		ColumnNode<String> tColumnsRoot = null;
+
+		if(! isFailed()) {
+			LOGGER.info("Creating a stream aggregate request.");
+			String[] t;
+
+			try {
+				t = getParameterValues(InputKeys.USERNAME);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.USER_INVALID_USERNAME,
+						"Multiple usernames were given: " +
+							InputKeys.USERNAME);
+				}
+				else if(t.length == 1) {
+					tUsername = UserValidators.validateUsername(t[0]);
+				}
+
+				t = getParameterValues(InputKeys.OBSERVER_ID);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_ID,
+						"Multiple observer IDs were given: " +
+							InputKeys.OBSERVER_ID);
+				}
+				else if(t.length == 1) {
+					tObserverId =
+						ObserverValidators.validateObserverId(t[0]);
+				}
+				if(tObserverId == null) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_ID,
+						"The observer's ID is missing.");
+				}
+
+				t = getParameterValues(InputKeys.OBSERVER_VERSION);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_VERSION,
+						"Multiple observer versions were given: " +
+							InputKeys.OBSERVER_VERSION);
+				}
+				else if(t.length == 1) {
+					tObserverVersion =
+						ObserverValidators.validateObserverVersion(t[0]);
+				}
+
+				t = getParameterValues(InputKeys.STREAM_ID);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_STREAM_ID,
+						"Multiple stream IDs were given: " +
+							InputKeys.STREAM_ID);
+				}
+				else if(t.length == 1) {
+					tStreamId = ObserverValidators.validateStreamId(t[0]);
+				}
+				if(tStreamId == null) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_STREAM_ID,
+						"The stream ID is missing: " + InputKeys.STREAM_ID);
+				}
+
+				t = getParameterValues(InputKeys.STREAM_VERSION);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_STREAM_VERSION,
+						"Multiple stream versions were given: " +
+							InputKeys.STREAM_VERSION);
+				}
+				else if(t.length == 1) {
+					tStreamVersion =
+						ObserverValidators.validateStreamVersion(t[0]);
+				}
+				if(tStreamVersion == null) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_STREAM_VERSION,
+						"The stream version is missing: " +
+							InputKeys.STREAM_VERSION);
+				}
+
+				t = getParameterValues(InputKeys.START_DATE);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.SERVER_INVALID_DATE,
+						"Multiple start dates were given: " +
+							InputKeys.START_DATE);
+				}
+				else if(t.length == 1) {
+					tStartDate =
+						ObserverValidators.validateDate(t[0]);
+				}
+				if(tStartDate == null) {
+					throw new ValidationException(
+						ErrorCode.SERVER_INVALID_DATE,
+						"The start date is missing: " +
+							InputKeys.START_DATE);
+				}
+
+				t = getParameterValues(InputKeys.END_DATE);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.SERVER_INVALID_DATE,
+						"Multiple end dates were given: " +
+							InputKeys.END_DATE);
+				}
+				else if(t.length == 1) {
+					tEndDate =
+						ObserverValidators.validateDate(t[0]);
+				}
+				if(tEndDate == null) {
+					throw new ValidationException(
+						ErrorCode.SERVER_INVALID_DATE,
+						"The end date is missing: " +
+							InputKeys.END_DATE);
+				}
+				if(tEndDate.isBefore(tStartDate)) {
+					throw new ValidationException(
+						ErrorCode.SERVER_INVALID_DATE,
+						"The end date is before the start date.");
+				}
+
+				t = getParameterValues(InputKeys.BUCKET_SIZE);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_BUCKET_SIZE,
+						"Multiple bucket sizes were given: " +
+							InputKeys.BUCKET_SIZE);
+				}
+				else if(t.length == 1) {
+					tBucketSize =
+						ObserverValidators.validateBucketSize(t[0]);
+				}
+				if(tBucketSize == null) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_BUCKET_SIZE,
+						"The bucket size is missing: " +
+							InputKeys.BUCKET_SIZE);
+				}
+				long numBuckets =
+					((tEndDate.getMillis() - tStartDate.getMillis()) /
+						tBucketSize) + 1;
+				if(numBuckets > MAX_NUMBER_OF_BUCKETS) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_BUCKET_SIZE,
+						"The bucket size would divide the range into more " +
+							"than the allowed maximum number of buckets (" +
+							MAX_NUMBER_OF_BUCKETS +
+							"): " +
+							numBuckets);
+				}
+
+				t = getParameterValues(InputKeys.COLUMN_LIST);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_COLUMN_LIST,
+						"Multiple column lists were given: " +
+							InputKeys.COLUMN_LIST);
+				}
+				else if(t.length == 1) {
+					tColumnsRoot =
+						ObserverValidators.validateColumnList(t[0]);
+				}
+				if((tColumnsRoot == null) || tColumnsRoot.isLeaf()) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_COLUMN_LIST,
+						"The column list is missing: " +
+							InputKeys.COLUMN_LIST);
+				}
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+
+		username = tUsername;
+		observerId = tObserverId;
+		observerVersion = tObserverVersion;
+		streamId = tStreamId;
+		streamVersion = tStreamVersion;
+		startDate = tStartDate;
+		endDate = tEndDate;
+		bucketSize = tBucketSize;
+		columnsRoot = tColumnsRoot;
+
+		results = new LinkedList<DataStreamBucket>();
+	}
+
+	/**
+	 * Returns an unmodifiable copy of the results. If {@link #service()} has
+	 * not been call on this request, this will be an empty list.
+	 * 
+	 * @return The list of buckets generated thus far.
+	 */
+	public List<DataStreamBucket> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#service()
+	 */
+	@Override
+	public void service() {
+		LOGGER.info("Servicing a stream aggregate request.");
+
+		if(! authenticate(AllowNewAccount.NEW_ACCOUNT_DISALLOWED)) {
+			return;
+		}
+
+		try {
+			if((username != null) && (! username.equals(getUser().getUsername()))) {
+				StreamReadRequest.verifyRequesterCanReadUser(
+					getUser().getUsername(),
+					username);
+			}
+
+			LOGGER.info("Retrieving the stream definition.");
+			Observer.Stream stream =
+				ObserverServices.instance().getStream(
+					observerId,
+					streamId,
+					streamVersion);
+
+			if(stream == null) {
+				LOGGER.info(
+					"The stream doesn't exist, so we will return no data.");
+				return;
+			}
+
+			LOGGER.info("Verifying that the columns are numeric.");
+			ObserverServices.instance().verifyColumnsAreNumeric(
+				stream,
+				columnsRoot.toPaths());
+
+			LOGGER.info("Summarizing the data.");
+			results.addAll(
+				ObserverServices.instance().getStreamAggregates(
+					stream,
+					(username == null) ? getUser().getUsername() : username,
+					observerId,
+					observerVersion,
+					startDate,
+					endDate,
+					bucketSize,
+					columnsRoot));
+			LOGGER.info("Returning " + results.size() + " buckets.");
+		}
+		catch(ServiceException e) {
+			e.failRequest(this);
+			e.logException(LOGGER);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.ohmage.request.Request#respond(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
+	 */
+	@Override
+	public void respond(
+			final HttpServletRequest httpRequest,
+			final HttpServletResponse httpResponse) {
+
+		// Check for failure.
+		if(isFailed()) {
+			super.respond(httpRequest, httpResponse, (JSONObject) null);
+			return;
+		}
+
+		// Refresh the token cookie.
+		refreshTokenCookie(httpResponse);
+
+		// Expire the response, but this may be a bad idea.
+		expireResponse(httpResponse);
+
+		// Set the content type to JSON.
+		httpResponse.setContentType("application/json");
+
+		// Connect a stream to the response.
+		OutputStream outputStream;
+		try {
+			outputStream = getOutputStream(httpRequest, httpResponse);
+		}
+		catch(IOException e) {
+			LOGGER.warn("Could not connect to the output stream.", e);
+			return;
+		}
+
+		// Create the generator that will stream to the requester.
+		JsonGenerator generator;
+		try {
+			generator = JSON_FACTORY.createJsonGenerator(outputStream);
+		}
+		catch(IOException generatorException) {
+			LOGGER.error(
+				"Could not create the JSON generator.",
+				generatorException);
+
+			try {
+				outputStream.close();
+			}
+			catch(IOException streamCloseException) {
+				LOGGER.warn(
+					"Could not close the output stream.",
+					streamCloseException);
+			}
+
+			return;
+		}
+
+		/*
+		 * Example output:
+		 * 
+		 * 	{
+		 * 		"result":"success",
+		 * 		"metadata":{
+		 * 			"count":<The number of buckets.>,
+		 * 			"bucket_size":<The length of each bucket in millis.>
+		 * 		},
+		 * 		"data":[
+		 * 			{
+		 * 				"start":"<The local date-time at which the bucket begins.>",
+		 * 				"count":<The number of points in the bucket.>,
+		 * 				"data":{
+		 * 					"<column>":{
+		 * 						"count":<The number of values.>,
+		 * 						"min":<The smallest value.>,
+		 * 						"max":<The largest value.>,
+		 * 						"mean":<The mean of the values.>,
+		 * 						"first":<The first value.>,
+		 * 						"last":<The last value.>
+		 * 					},
+		 * 					...
+		 * 				}
+		 * 			},
+		 * 			...
+		 * 		]
+		 * 	}
+		 */
+		try {
+			generator.writeStartObject();
+
+			generator.writeObjectField("result", "success");
+
+			generator.writeObjectFieldStart("metadata");
+			generator.writeNumberField("count", results.size());
+			generator.writeNumberField(InputKeys.BUCKET_SIZE, bucketSize);
+			generator.writeEndObject();
+
+			generator.writeArrayFieldStart("data");
+			for(DataStreamBucket bucket : results) {
+				bucket.toJson(generator);
+			}
+			generator.writeEndArray();
+
+			generator.writeEndObject();
+		}
+		catch(JsonProcessingException e) {
+			LOGGER.error("The JSON could not be processed.", e);
+			httpResponse.setStatus(
+				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			return;
+		}
+		catch(IOException e) {
+			LOGGER.info(
+				"The response could no longer be written to the response",
+				e);
+			httpResponse.setStatus(
+				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			return;
+		}
+		finally {
+			// Flush and close the writer.
+			try {
+				generator.close();
+			}
+			catch(IOException e) {
+				LOGGER.info("Could not close the generator.", e);
+			}
+		}
+	}
+}
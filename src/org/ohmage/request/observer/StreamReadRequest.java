@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,6 +19,7 @@ import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.JsonGenerator.Feature;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.JsonStreamContext;
 import org.codehaus.jackson.map.MappingJsonFactory;
 import org.codehaus.jackson.node.ArrayNode;
 import org.codehaus.jackson.node.ObjectNode;
@@ -28,6 +28,7 @@ import org.joda.time.format.ISODateTimeFormat;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.domain.DataStream;
 import org.ohmage.domain.Location;
 import org.ohmage.domain.Location.LocationColumnKey;
@@ -118,6 +119,15 @@ import org.ohmage.validator.UserValidators;
  *       returned after skipping. This is used to facilitate paging.</td>
  *     <td>false</td>
  *   </tr>
+ *   <tr>
+ *     <td>{@value org.ohmage.request.InputKeys#CURSOR}</td>
+ *     <td>An opaque value from the "previous" or "next" URL of an earlier
+ *       response. The points immediately before or after that response are
+ *       returned, regardless of how deep into the stream they are. This 
+ *       cannot be combined with 
+ *       {@value org.ohmage.request.InputKeys#NUM_TO_SKIP}.</td>
+ *     <td>false</td>
+ *   </tr>
  * </table>
  * 
  * @author John Jenkins
@@ -140,144 +150,6 @@ public class StreamReadRequest
 	 */
 	public static final long MAX_NUMBER_TO_RETURN = 2000;
 	
-	/**
-	 * This is being used to facilitate an n-ary tree.
-	 *
-	 * @author John Jenkins
-	 */
-	public static class ColumnNode<T> {
-		private Map<T, ColumnNode<T>> children;
-		
-		/**
-		 * Creates a node with a value.
-		 */
-		public ColumnNode() {
-			this.children = new HashMap<T, ColumnNode<T>>();
-		}
-		
-		/**
-		 * Adds a child to this node. Adding null has no effect.
-		 * 
-		 * @param value The value of the child.
-		 */
-		public void addChild(final T value) {
-			if(value == null) {
-				return;
-			}
-			
-			children.put(value, new ColumnNode<T>());
-		}
-		
-		/**
-		 * Checks if this node has a child with the given value.
-		 * 
-		 * @param value The value to check for.
-		 * 
-		 * @return True if this node has a sub-node with the given value; 
-		 * 		   false, otherwise.
-		 */
-		public boolean hasChild(final T value) {
-			return children.containsKey(value);
-		}
-		
-		/**
-		 * Returns the child with the given value.
-		 * 
-		 * @param value The value.
-		 * 
-		 * @return The child or null if no such child exists.
-		 */
-		public ColumnNode<T> getChild(final T value) {
-			return children.get(value);
-		}
-		
-		/**
-		 * The values for this node's children.
-		 * 
-		 * @return An unmodifiable collection of this node's children. 
-		 */
-		public Collection<T> getChildrenValues() {
-			return Collections.unmodifiableSet(children.keySet());
-		}
-		
-		/**
-		 * Returns whether or not this node is a leaf node.
-		 * 
-		 * @return Whether or not this node is a leaf node.
-		 */
-		public boolean isLeaf() {
-			return children.size() == 0;
-		}
-		
-		/**
-		 * Creates a string that is a list of all of the descendants of this
-		 * node. For example, if this node had one leaf child, "leaf", and
-		 * another child, "other", and "other" had one leaf child, "otherLeaf",
-		 * the result of this function would be a string with two nodes:
-		 * "leaf,other:otherLeaf".
-		 * 
-		 * @return The comma-separated string representation of the list of the
-		 * 		   descendants of this node, each prepended with their parent's
-		 * 		   name separated by a colon.
-		 * 
-		 * @throws IllegalStateException This is a leaf node which has no 
-		 * 								 descendants.
-		 */
-		public String toListString() {
-			StringBuilder result = new StringBuilder();
-			
-			boolean firstPass = true;
-			for(String node : toList()) {
-				if(firstPass) {
-					firstPass = false;
-				}
-				else {
-					result.append(',');
-				}
-				
-				result.append(node);
-			}
-			
-			return result.toString();
-		}
-		
-		/**
-		 * Creates a list of column nodes for each of this node's descendants.
-		 * For example, if this node had one leaf child, "leaf", and another 
-		 * child, "other", and "other" had one leaf child, "otherLeaf", the 
-		 * result of this function would be a list with two nodes: "leaf" and 
-		 * "other:otherLeaf".
-		 * 
-		 * @return The list of children and their children where the grand
-		 * 		   children and beyond are prepended with the child's name.  
-		 * 
-		 * @throws IllegalStateException This is a leaf node which has no 
-		 * 								 children.
-		 */
-		private List<String> toList() {
-			if(isLeaf()) {
-				throw new IllegalStateException(
-					"This is a leaf node, which doesn't have a column list.");
-			}
-			
-			List<String> result = new LinkedList<String>();
-			for(T child : children.keySet()) {
-				ColumnNode<T> childNode = children.get(child);
-				
-				if(childNode.isLeaf()) {
-					result.add(child.toString());
-				}
-				else {
-					List<String> subChildren = childNode.toList();
-					for(String subChild : subChildren) {
-						result.add(child.toString() + ":" + subChild);
-					}
-				}
-			}
-			return result;
-		}
-	}
-	
 	// The username of the user whose data is being read.
 	private final String username;
 	
@@ -301,6 +173,9 @@ public class StreamReadRequest
 	private final long numToSkip;
 	private final long numToReturn;
 	
+	// Optional.
+	private final DataStream.Cursor cursor;
+	
 	// The stream created during the servicing of the request.
 	private Observer.Stream stream;
 	
@@ -419,6 +294,8 @@ public class StreamReadRequest
 			this.numToReturn = numToReturn;
 		}
 		
+		cursor = null;
+		
 		results = new LinkedList<DataStream>();
 	}
 	
@@ -449,6 +326,7 @@ public class StreamReadRequest
 		boolean tChronological = true;
 		long tNumToSkip = 0;
 		long tNumToReturn = MAX_NUMBER_TO_RETURN;
+		DataStream.Cursor tCursor = null;
 		
 		if(! isFailed()) {
 			LOGGER.info("Creating a stream read request.");
@@ -600,6 +478,23 @@ public class StreamReadRequest
 						ObserverValidators
 							.validateNumToReturn(t[0], MAX_NUMBER_TO_RETURN);
 				}
+				
+				t = getParameterValues(InputKeys.CURSOR);
+				if(t.length > 1) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_CURSOR,
+						"Multiple cursors were given: " + 
+							InputKeys.CURSOR);
+				}
+				else if(t.length == 1) {
+					tCursor = ObserverValidators.validateCursor(t[0]);
+				}
+				if((tCursor != null) && (tNumToSkip != 0)) {
+					throw new ValidationException(
+						ErrorCode.OBSERVER_INVALID_CURSOR,
+						"A cursor cannot be combined with a number to skip: " +
+							InputKeys.NUM_TO_SKIP);
+				}
 			}
 			catch(ValidationException e) {
 				e.failRequest(this);
@@ -618,6 +513,7 @@ public class StreamReadRequest
 		chronological = tChronological;
 		numToSkip = tNumToSkip;
 		numToReturn = tNumToReturn;
+		cursor = tCursor;
 		
 		results = new LinkedList<DataStream>();
 	}
@@ -655,42 +551,7 @@ public class StreamReadRequest
 		
 		try {
 			if((username != null) && (! username.equals(getUser().getUsername()))) {
-				try {
-					LOGGER.info("Checking if the user is an admin.");
-					UserServices.instance().verifyUserIsAdmin(
-						getUser().getUsername());
-				}
-				catch(ServiceException notAdmin) {
-					LOGGER.info("The user is not an admin.");
-
-					LOGGER.info(
-						"Checking if reading stream data about another user is even allowed.");
-					boolean isPlausible;
-					try {
-						isPlausible = 
-							StringUtils.decodeBoolean(
-								PreferenceCache.instance().lookup(
-									PreferenceCache.KEY_PRIVILEGED_USER_IN_CLASS_CAN_VIEW_MOBILITY_FOR_EVERYONE_IN_CLASS));
-					}
-					catch(CacheMissException e) {
-						throw new ServiceException(e);
-					}
-					
-					if(isPlausible) {
-						LOGGER.info(
-							"Checking if the requester is allowed to read stream data about the user.");
-						UserClassServices
-							.instance()
-							.userIsPrivilegedInAnotherUserClass(
-								getUser().getUsername(), 
-								username);
-					}
-					else {
-						throw new ServiceException(
-							ErrorCode.OBSERVER_INSUFFICIENT_PERMISSIONS,
-							"This user is not allowed to query stream data about the requested user.");
-					}
-				}
+				verifyRequesterCanReadUser(getUser().getUsername(), username);
 			}
 			
 			LOGGER.info("Retrieving the stream definition.");
@@ -716,8 +577,10 @@ public class StreamReadRequest
 					startDate,
 					endDate,
 					chronological,
+					cursor,
 					numToSkip,
-					numToReturn));
+					numToReturn,
+					columnsRoot));
 			LOGGER.info("Returning " + results.size() + " points.");
 		}
 		catch(ServiceException e) {
@@ -798,7 +661,8 @@ public class StreamReadRequest
 		 * 				"data":{} // Data based on the columns.
 		 * 			},
 		 * 			...
-		 * 		]
+		 * 		],
+		 * 		"truncated":true // Only if a point could not be read.
 		 * 	}
 		 */
 		try {
@@ -818,64 +682,118 @@ public class StreamReadRequest
 			// URLs.
 			StringBuilder prevAndNextUrlBuilder = buildNextAndPrevUrl();
 			
-			// If the number of entries skipped was non-zero, add a previous
-			// pointer.
-			if((prevAndNextUrlBuilder != null) && (numToSkip != 0)) {
+			// Once there are points, the "previous" and "next" URLs are 
+			// cursors at the first and last point. Reading further then 
+			// doesn't require the database to count the points that are being
+			// skipped, and points that are uploaded in the meantime don't 
+			// shift the pages.
+			DataStream.Cursor firstCursor = null;
+			DataStream.Cursor lastCursor = null;
+			if(! results.isEmpty()) {
+				firstCursor = results.get(0).getCursor();
+				lastCursor = results.get(results.size() - 1).getCursor();
+			}
+			boolean pageIsFull = (numToReturn == results.size());
+			
+			// Without a cursor, there are previous points if any were 
+			// skipped and there may be more points if this page is full. A
+			// cursor in the direction of reading always follows a previous
+			// page, and a cursor in the opposite direction always precedes a
+			// next page.
+			boolean hasPrevious;
+			boolean hasNext;
+			if(cursor == null) {
+				hasPrevious = (numToSkip != 0);
+				hasNext = pageIsFull;
+			}
+			else {
+				hasPrevious = (! cursor.isBefore()) || pageIsFull;
+				hasNext = cursor.isBefore() || pageIsFull;
+			}
+			
+			// Add the "previous" URL to the meta-data.
+			if((prevAndNextUrlBuilder != null) && hasPrevious) {
 				// Create a copy of the existing string builder.
 				StringBuilder prevUrl = 
 					new StringBuilder(prevAndNextUrlBuilder);
 				
-				// Calculate the number of results to skip and return for the
-				// "previous" URL.
-				long prevNumToSkip = numToSkip - numToReturn - 1;
-				boolean returnNumToSkipAsNumToReturn = false;
-				if(prevNumToSkip < 0) {
-					returnNumToSkipAsNumToReturn = true;
-					prevNumToSkip = 0;
+				if(firstCursor != null) {
+					prevUrl
+						.append('&')
+						.append(InputKeys.CURSOR)
+						.append('=')
+						.append(firstCursor.toBefore().encode());
+					prevUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_RETURN)
+						.append('=')
+						.append(numToReturn);
+					
+					generator.writeStringField("previous", prevUrl.toString());
+				}
+				else if(cursor == null) {
+					// Calculate the number of results to skip and return for
+					// the "previous" URL.
+					long prevNumToSkip = numToSkip - numToReturn - 1;
+					boolean returnNumToSkipAsNumToReturn = false;
+					if(prevNumToSkip < 0) {
+						returnNumToSkipAsNumToReturn = true;
+						prevNumToSkip = 0;
+					}
+					
+					// Add the number of results to skip and return.
+					prevUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_SKIP)
+						.append('=')
+						.append(prevNumToSkip);
+					prevUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_RETURN)
+						.append('=')
+						.append((returnNumToSkipAsNumToReturn) ? numToSkip - 1 : numToReturn);
+					
+					generator.writeStringField("previous", prevUrl.toString());
 				}
-				
-				// Add the number of results to skip and return.
-				prevUrl
-					.append('&')
-					.append(InputKeys.NUM_TO_SKIP)
-					.append('=')
-					.append(prevNumToSkip);
-				prevUrl
-					.append('&')
-					.append(InputKeys.NUM_TO_RETURN)
-					.append('=')
-					.append((returnNumToSkipAsNumToReturn) ? numToSkip - 1 : numToReturn);
-				
-				// Add the "previous" URL to the meta-data.
-				generator.writeStringField("previous", prevUrl.toString());
 			}
 			
-			// Generate and add the "next" URL if the number of results is 
-			// to the number requested. The only reason it would be less is if
-			// there weren't that many to return. If there were more than that
-			if((prevAndNextUrlBuilder != null) &&
-				(numToReturn == results.size())) {
-				
+			// Add the "next" URL to the meta-data.
+			if((prevAndNextUrlBuilder != null) && hasNext) {
 				StringBuilder nextUrl = prevAndNextUrlBuilder;
 				
-				// Calculate the number to skip.
-				long nextNumToSkip = numToSkip + numToReturn;
-				
-				// Add the number of results to skip and return to the "next"
-				// URL.
-				nextUrl
-					.append('&')
-					.append(InputKeys.NUM_TO_SKIP)
-					.append('=')
-					.append(nextNumToSkip);
-				nextUrl
-					.append('&')
-					.append(InputKeys.NUM_TO_RETURN)
-					.append('=')
-					.append(numToReturn);
-				
-				// Add the "next" URL to the meta-data.
-				generator.writeStringField("next", nextUrl.toString());
+				if(lastCursor != null) {
+					nextUrl
+						.append('&')
+						.append(InputKeys.CURSOR)
+						.append('=')
+						.append(lastCursor.encode());
+					nextUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_RETURN)
+						.append('=')
+						.append(numToReturn);
+					
+					generator.writeStringField("next", nextUrl.toString());
+				}
+				else if(cursor == null) {
+					// Calculate the number to skip.
+					long nextNumToSkip = numToSkip + numToReturn;
+					
+					// Add the number of results to skip and return to the
+					// "next" URL.
+					nextUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_SKIP)
+						.append('=')
+						.append(nextNumToSkip);
+					nextUrl
+						.append('&')
+						.append(InputKeys.NUM_TO_RETURN)
+						.append('=')
+						.append(numToReturn);
+					
+					generator.writeStringField("next", nextUrl.toString());
+				}
 			}
 			
 			// End the meta-data.
@@ -883,52 +801,35 @@ public class StreamReadRequest
 			
 			// Add a "data" key that is an array of the results.
 			generator.writeArrayFieldStart("data");
-			for(DataStream dataStream : results) {
-				// Begin this data stream.
-				generator.writeStartObject();
-				
-				// Write the meta-data.
-				DataStream.MetaData metaData = dataStream.getMetaData();
-				if(metaData != null) {
-					generator.writeObjectFieldStart("metadata");
-					
-					String id = metaData.getId();
-					if(id != null) {
-						generator.writeStringField("id", id);
-					}
-					
-					DateTime timestamp = metaData.getTimestamp();
-					if(timestamp != null) {
-						generator.writeStringField(
-							"timestamp",
-							ISODateTimeFormat.dateTime().print(timestamp));
+			JsonStreamContext dataContext = generator.getOutputContext();
+			boolean truncated = false;
+			try {
+				for(DataStream dataStream : results) {
+					writeDataStream(generator, dataStream, columnsRoot);
+				}
+			}
+			catch(DomainException e) {
+				// The response has already begun, so it can no longer fail.
+				// Close whatever the point had opened and report that the
+				// data stops here.
+				LOGGER.error("Could not read one of the objects.", e);
+				truncated = true;
+				while(generator.getOutputContext() != dataContext) {
+					if(generator.getOutputContext().inArray()) {
+						generator.writeEndArray();
 					}
-					
-					Location location = metaData.getLocation();
-					if(location != null) {
-						generator.writeObjectFieldStart("location");
-						location.streamJson(
-							generator, 
-							false, 
-							LocationColumnKey.ALL_COLUMNS);
+					else {
 						generator.writeEndObject();
 					}
-					
-					generator.writeEndObject();
 				}
-				
-				// Write the data.
-				handleGeneric(
-					generator,
-					dataStream.getData(), 
-					columnsRoot, 
-					"data");
-				
-				// End this data stream.
-				generator.writeEndObject();
 			}
 			generator.writeEndArray();
 			
+			// Report that not every point was returned.
+			if(truncated) {
+				generator.writeBooleanField("truncated", true);
+			}
+			
 			// End the overall object.
 			generator.writeEndObject();
 		}
@@ -936,6 +837,10 @@ public class StreamReadRequest
 			LOGGER.error("The JSON could not be processed.", e);
 			httpResponse.setStatus(
 				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			
+			// Don't let closing the generator close the JSON, which would
+			// make a truncated response look complete.
+			generator.disable(Feature.AUTO_CLOSE_JSON_CONTENT);
 			return;
 		}
 		catch(IOException e) {
@@ -944,12 +849,7 @@ public class StreamReadRequest
 				e);
 			httpResponse.setStatus(
 				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-			return;
-		}
-		catch(DomainException e) {
-			LOGGER.error("Could not read one of the objects.", e);
-			httpResponse.setStatus(
-				HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			generator.disable(Feature.AUTO_CLOSE_JSON_CONTENT);
 			return;
 		}
 		finally {
@@ -976,6 +876,59 @@ public class StreamReadRequest
 		writeData(generator, columns);
 	}
 	
+	/**
+	 * Verifies that the requesting user may read the stream data of another
+	 * user. This is allowed for admins and, if the server allows it, for 
+	 * users that are privileged in one of the other user's classes.
+	 * 
+	 * @param requester The username of the requesting user.
+	 * 
+	 * @param username The username of the user whose data is being read.
+	 * 
+	 * @throws ServiceException The requester may not read the user's data.
+	 */
+	static void verifyRequesterCanReadUser(
+			final String requester,
+			final String username)
+			throws ServiceException {
+		
+		try {
+			LOGGER.info("Checking if the user is an admin.");
+			UserServices.instance().verifyUserIsAdmin(requester);
+		}
+		catch(ServiceException notAdmin) {
+			LOGGER.info("The user is not an admin.");
+
+			LOGGER.info(
+				"Checking if reading stream data about another user is even allowed.");
+			boolean isPlausible;
+			try {
+				isPlausible = 
+					StringUtils.decodeBoolean(
+						PreferenceCache.instance().lookup(
+							PreferenceCache.KEY_PRIVILEGED_USER_IN_CLASS_CAN_VIEW_MOBILITY_FOR_EVERYONE_IN_CLASS));
+			}
+			catch(CacheMissException e) {
+				throw new ServiceException(e);
+			}
+			
+			if(isPlausible) {
+				LOGGER.info(
+					"Checking if the requester is allowed to read stream data about the user.");
+				UserClassServices
+					.instance()
+					.userIsPrivilegedInAnotherUserClass(
+						requester, 
+						username);
+			}
+			else {
+				throw new ServiceException(
+					ErrorCode.OBSERVER_INSUFFICIENT_PERMISSIONS,
+					"This user is not allowed to query stream data about the requested user.");
+			}
+		}
+	}
+	
 	/**
 	 * Generates a URL for the "previous" and "next" URLs in the result's 
 	 * meta-data. This includes all of the given parameters except the number 
@@ -1021,6 +974,15 @@ public class StreamReadRequest
 		// Add the client value.
 		result.append(InputKeys.CLIENT).append('=').append(getClient());
 		
+		// Add the username if it was given.
+		if(username != null) {
+			result
+				.append('&')
+				.append(InputKeys.USERNAME)
+				.append('=')
+				.append(username);
+		}
+		
 		// Add the observer ID.
 		result
 			.append('&')
@@ -1076,6 +1038,16 @@ public class StreamReadRequest
 				.append(columnsRoot.toListString());
 		}
 		
+		// Add the order if it isn't the default. Cursors are relative to the
+		// order, so it must be preserved.
+		if(! chronological) {
+			result
+				.append('&')
+				.append(InputKeys.CHRONOLOGICAL)
+				.append('=')
+				.append(chronological);
+		}
+		
 		return result;
 	}
 	
@@ -1102,49 +1074,73 @@ public class StreamReadRequest
 			throws JsonGenerationException, IOException, DomainException {
 		
 		for(DataStream dataStream : results) {
-			// Begin this data stream.
-			generator.writeStartObject();
+			writeDataStream(generator, dataStream, columns);
+		}
+	}
+	
+	/**
+	 * Writes a data point to the generator as an object.
+	 * 
+	 * @param generator The generator to write to.
+	 * 
+	 * @param dataStream The data point.
+	 * 
+	 * @param columns The columns to write the data.
+	 * 
+	 * @throws JsonGenerationException There was an error generating the JSON.
+	 * 
+	 * @throws IOException There was an error writing to the generator.
+	 * 
+	 * @throws DomainException There was an error reading the point.
+	 */
+	private static void writeDataStream(
+			final JsonGenerator generator,
+			final DataStream dataStream,
+			final ColumnNode<String> columns)
+			throws JsonGenerationException, IOException, DomainException {
+		
+		// Begin this data stream.
+		generator.writeStartObject();
+		
+		// Write the meta-data.
+		DataStream.MetaData metaData = dataStream.getMetaData();
+		if(metaData != null) {
+			generator.writeObjectFieldStart("metadata");
 			
-			// Write the meta-data.
-			DataStream.MetaData metaData = dataStream.getMetaData();
-			if(metaData != null) {
-				generator.writeObjectFieldStart("metadata");
-				
-				String id = metaData.getId();
-				if(id != null) {
-					generator.writeStringField("id", id);
-				}
-				
-				DateTime timestamp = metaData.getTimestamp();
-				if(timestamp != null) {
-					generator.writeStringField(
-						"timestamp",
-						ISODateTimeFormat.dateTime().print(timestamp));
-				}
-				
-				Location location = metaData.getLocation();
-				if(location != null) {
-					generator.writeObjectFieldStart("location");
-					location.streamJson(
-						generator, 
-						false, 
-						LocationColumnKey.ALL_COLUMNS);
-					generator.writeEndObject();
-				}
-				
-				generator.writeEndObject();
+			String id = metaData.getId();
+			if(id != null) {
+				generator.writeStringField("id", id);
 			}
 			
-			// Write the data.
-			handleGeneric(
-				generator,
-				dataStream.getData(), 
-				columns, 
-				"data");
+			DateTime timestamp = metaData.getTimestamp();
+			if(timestamp != null) {
+				generator.writeStringField(
+					"timestamp",
+					ISODateTimeFormat.dateTime().print(timestamp));
+			}
+			
+			Location location = metaData.getLocation();
+			if(location != null) {
+				generator.writeObjectFieldStart("location");
+				location.streamJson(
+					generator, 
+					false, 
+					LocationColumnKey.ALL_COLUMNS);
+				generator.writeEndObject();
+			}
 			
-			// End this data stream.
 			generator.writeEndObject();
 		}
+		
+		// Write the data.
+		handleGeneric(
+			generator,
+			dataStream.getData(), 
+			columns, 
+			"data");
+		
+		// End this data stream.
+		generator.writeEndObject();
 	}
 	
 	/**
@@ -1159,7 +1155,7 @@ public class StreamReadRequest
 	 * 
 	 * @param columns The columns to restrict the output. If this is null, all
 	 *				  data in the object will be output.
-	 *
+	 * 
 	 * @throws JsonGenerationException Could not serialize the data into JSON.
 	 * 
 	 * @throws IOException Could not write to the output stream.
@@ -1210,7 +1206,7 @@ public class StreamReadRequest
 	 * 
 	 * @param currColumn The columns to restrict the output. If this is null,
 	 * 					 all data in the array will be output.
-	 *
+	 * 
 	 * @throws JsonGenerationException Could not serialize the data into JSON.
 	 * 
 	 * @throws IOException Could not write to the output stream.
@@ -1256,7 +1252,7 @@ public class StreamReadRequest
 	 * 
 	 * @param currColumn The columns to restrict the output. If this is null,
 	 * 					 all data in the object will be output.
-	 *
+	 * 
 	 * @throws JsonGenerationException Could not serialize the data into JSON.
 	 * 
 	 * @throws IOException Could not write to the output stream.
@@ -1,6 +1,7 @@
 package org.ohmage.request.observer;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -20,6 +21,7 @@ import org.ohmage.domain.Observer;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
+import org.ohmage.jee.filter.StreamedParameter;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.UserRequest;
 import org.ohmage.service.ObserverServices;
@@ -154,6 +156,70 @@ public class StreamUploadRequest extends UserRequest {
 		this.preserveInvalidPoints = optIn;
 	}
 	
+	/**
+	 * Creates a stream upload request whose data is read incrementally, e.g.
+	 * as another request converts it, rather than built as a string first.
+	 * The reader is closed when the data has been read.
+	 * 
+	 * @param httpRequest The HTTP request.
+	 * 
+	 * @param observerId The observer's ID.
+	 * 
+	 * @param observerVersion The observer's version.
+	 * 
+	 * @param data The reader for the data to be uploaded.
+	 * 
+	 * @throws InvalidRequestException Thrown if the parameters cannot be 
+	 * 								   parsed.
+	 * 
+	 * @throws IOException There was an error reading from the request.
+	 */
+	public StreamUploadRequest(
+			final HttpServletRequest httpRequest, 
+			final Map<String, String[]> parameters,
+			final String observerId,
+			final Long observerVersion,
+			final Reader data,
+			final boolean optIn)
+			throws IOException, InvalidRequestException {
+		
+		super(httpRequest, false, TokenLocation.PARAMETER, parameters);
+		
+		String tObserverId = null;
+		Long tObserverVersion = null;
+		JsonParser tData = null;
+		
+		if(! isFailed()) {
+			LOGGER.info("Creating a stream upload request.");
+			
+			if(observerId == null) {
+				setFailed(
+					ErrorCode.OBSERVER_INVALID_ID, 
+					"The observer ID is missing.");
+			}
+			if(data == null) {
+				setFailed(
+					ErrorCode.OBSERVER_INVALID_STREAM_DATA,
+					"The data is missing.");
+			}
+		
+			try {
+				tObserverId = ObserverValidators.validateObserverId(observerId);
+				tObserverVersion = observerVersion;
+				tData = ObserverValidators.validateData(data);
+			}
+			catch(ValidationException e) {
+				e.failRequest(this);
+				e.logException(LOGGER);
+			}
+		}
+		
+		this.observerId = tObserverId;
+		this.observerVersion = tObserverVersion;
+		this.data = tData;
+		this.preserveInvalidPoints = optIn;
+	}
+	
 	/**
 	 * Creates a stream upload request.
 	 * 
@@ -214,8 +280,27 @@ public class StreamUploadRequest extends UserRequest {
 						"The observer's version is missing.");
 				}
 				
-				t = getParameterValues(InputKeys.DATA);
-				if(t.length == 0) {
+				// Large uploads are read directly from the temporary file
+				// that the GZIP filter streamed them to.
+				StreamedParameter streamedData = 
+					getStreamedParameter(InputKeys.DATA);
+				if(streamedData != null) {
+					try {
+						tData = 
+							ObserverValidators
+								.validateData(streamedData.openReader());
+					}
+					catch(IOException e) {
+						throw new ValidationException(
+							"The streamed data could not be read.",
+							e);
+					}
+					t = new String[0];
+				}
+				else {
+					t = getParameterValues(InputKeys.DATA);
+				}
+				if((tData == null) && (t.length == 0)) {
 					LOGGER
 						.info(
 							"Attempting to get the data as a multipart part.");
@@ -283,23 +368,10 @@ public class StreamUploadRequest extends UserRequest {
 		
 		try {
 			LOGGER.info("Getting the observer definition.");
-			Collection<Observer> observers = 
-				ObserverServices.instance().getObservers(
+			Observer observer = 
+				ObserverServices.instance().getObserver(
 					observerId, 
-					observerVersion,
-					0,
-					1);
-			
-			// Determine if the observer exists.
-			if(observers.size() == 0) {
-				throw new ServiceException(
-					ErrorCode.OBSERVER_INVALID_ID,
-					"No observer exists with the given ID-version pair: " + 
-						"Observer ID: " + observerId + " " +
-						"Observer Version: " + observerVersion);
-			}
-			// Get the first observer which should be the most recent.
-			Observer observer = observers.iterator().next();
+					observerVersion);
 			
 			LOGGER.info("Validating the uploaded data.");
 			Collection<DataStream> dataStreams =
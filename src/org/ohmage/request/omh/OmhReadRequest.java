@@ -20,6 +20,7 @@ import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.domain.PayloadId;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
@@ -30,7 +31,6 @@ import org.ohmage.request.Request;
 import org.ohmage.request.UserRequest;
 import org.ohmage.request.UserRequest.TokenLocation;
 import org.ohmage.request.observer.StreamReadRequest;
-import org.ohmage.request.observer.StreamReadRequest.ColumnNode;
 import org.ohmage.service.OmhServices;
 import org.ohmage.util.CookieUtils;
 import org.ohmage.validator.ObserverValidators;
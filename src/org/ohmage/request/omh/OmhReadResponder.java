@@ -4,8 +4,8 @@ import java.io.IOException;
 
 import org.codehaus.jackson.JsonGenerationException;
 import org.codehaus.jackson.JsonGenerator;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.exception.DomainException;
-import org.ohmage.request.observer.StreamReadRequest.ColumnNode;
 
 /**
  * This interface defines the methods for requests that can be used to respond
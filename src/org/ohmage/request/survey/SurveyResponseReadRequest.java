@@ -50,6 +50,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.domain.Location;
 import org.ohmage.domain.Location.LocationColumnKey;
 import org.ohmage.domain.campaign.Prompt;
@@ -76,7 +77,6 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.exception.InvalidRequestException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
-import org.ohmage.request.observer.StreamReadRequest.ColumnNode;
 import org.ohmage.request.omh.OmhReadResponder;
 import org.ohmage.util.DateTimeUtils;
 import org.ohmage.validator.SurveyResponseValidators;
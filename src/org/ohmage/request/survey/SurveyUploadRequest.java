@@ -122,7 +122,7 @@ public class SurveyUploadRequest extends UserRequest {
 	private final String campaignUrn;
 	private final DateTime campaignCreationTimestamp;
 	private final Boolean allowSurveyUpdate;
-	private List<JSONObject> jsonData;
+	private String jsonData;
 	private final Map<UUID, Image> imageContentsMap;
 	private final Map<UUID, Video> videoContentsMap;
 	private final Map<UUID, Audio> audioContentsMap;
@@ -142,7 +142,7 @@ public class SurveyUploadRequest extends UserRequest {
 		super(httpRequest, false, TokenLocation.PARAMETER, parameters);
 		
 		String tCampaignUrn = null;
-		List<JSONObject> tJsonData = null;
+		String tJsonData = null;
 		
 		if(! isFailed()) {
 			LOGGER.info("Creating a survey response upload request.");
@@ -201,7 +201,7 @@ public class SurveyUploadRequest extends UserRequest {
 		String tCampaignUrn = null;
 		DateTime tCampaignCreationTimestamp = null;
 		Boolean tAllowSurveyUpdate = false;
-		List<JSONObject> tJsonData = null;
+		String tJsonData = null;
 		Map<UUID, Image> tImageContentsMap = null;
 		Map<UUID, Video> tVideoContentsMap = null;
 		Map<UUID, Audio> tAudioContentsMap = null;
@@ -30,11 +30,13 @@ import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
 import org.ohmage.request.UserRequest;
+import org.ohmage.service.DeletionJobServices;
 import org.ohmage.service.UserServices;
 import org.ohmage.validator.UserValidators;
 
 /**
- * <p>Deletes a list of users.</p>
+ * <p>Deletes a list of users. The users are disabled and hidden
+ * immediately, and their data and media are deleted in the background.</p>
  * <table border="1">
  *   <tr>
  *     <td>Parameter Name</td>
@@ -117,7 +119,7 @@ public class UserDeletionRequest extends UserRequest {
 			UserServices.instance().verifyUsersExist(usernames, true);
 			
 			LOGGER.info("Deleting the user(s).");
-			UserServices.instance().deleteUser(usernames);
+			DeletionJobServices.instance().deleteUsers(usernames);
 		}
 		catch(ServiceException e) {
 			e.failRequest(this);
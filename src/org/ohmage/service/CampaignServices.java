@@ -17,7 +17,6 @@ package org.ohmage.service;
 
 import java.io.IOException;
 import java.io.StringReader;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -35,19 +34,20 @@ import nu.xom.ValidityException;
 
 import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.SearchIndexCache;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.SurveyResponse;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ServiceException;
-import org.ohmage.query.ICampaignImageQueries;
 import org.ohmage.query.ICampaignQueries;
-import org.ohmage.query.IImageQueries;
 import org.ohmage.query.IUserCampaignQueries;
 import org.ohmage.query.impl.QueryResultsList;
 import org.ohmage.request.campaign.CampaignSearchRequest;
+import org.ohmage.util.JsonArrayReader;
 
 /**
  * This class contains the services that pertain to campaigns.
@@ -60,8 +60,6 @@ public class CampaignServices {
 
 	private static CampaignServices instance;
 	private ICampaignQueries campaignQueries;
-	private ICampaignImageQueries campaignImageQueries;
-	private IImageQueries imageQueries;
 	
 	/**
 	 * Default constructor. Privately instantiated via dependency injection
@@ -72,9 +70,7 @@ public class CampaignServices {
 	 * 
 	 * @throws IllegalArgumentException if iCampaignQueries is null
 	 */
-	private CampaignServices(ICampaignQueries iCampaignQueries,
-			ICampaignImageQueries iCampaignImageQueries,
-			IImageQueries iImageQueries) {
+	private CampaignServices(ICampaignQueries iCampaignQueries) {
 		
 		if(instance != null) {
 			throw new IllegalStateException("An instance of this class already exists.");
@@ -82,16 +78,8 @@ public class CampaignServices {
 		if(iCampaignQueries == null) {
 			throw new IllegalArgumentException("An instance of ICampaignQueries is required.");
 		}
-		if(iCampaignImageQueries == null) {
-			throw new IllegalArgumentException("An instance of ICampaignImageQueries is a required argument.");
-		}
-		if(iImageQueries == null) {
-			throw new IllegalArgumentException("An instance of IImageQueries is a required argument.");
-		}
 		
 		campaignQueries = iCampaignQueries;
-		campaignImageQueries = iCampaignImageQueries;
-		imageQueries = iImageQueries;
 		
 		instance = this;
 	}
@@ -504,16 +492,64 @@ public class CampaignServices {
 			throws ServiceException {
 		
 		try {
+			// If the search index is available, use it to resolve the partial
+			// values to the exact set of matching campaigns. Otherwise, the
+			// partial values are compared in the database.
+			Set<String> campaignIds = null;
+			boolean indexed = false;
+			if(SearchIndexCache.isReady()) {
+				indexed = true;
+				
+				SearchIndexCache index = SearchIndexCache.instance();
+				campaignIds =
+					narrowCampaignIds(
+						campaignIds,
+						index,
+						SearchIndexCache.FIELD_CAMPAIGN_ID,
+						partialCampaignId);
+				campaignIds =
+					narrowCampaignIds(
+						campaignIds,
+						index,
+						SearchIndexCache.FIELD_CAMPAIGN_NAME,
+						partialCampaignName);
+				campaignIds =
+					narrowCampaignIds(
+						campaignIds,
+						index,
+						SearchIndexCache.FIELD_CAMPAIGN_DESCRIPTION,
+						partialDescription);
+				campaignIds =
+					narrowCampaignIds(
+						campaignIds,
+						index,
+						SearchIndexCache.FIELD_CAMPAIGN_XML,
+						partialXml);
+				campaignIds =
+					narrowCampaignIds(
+						campaignIds,
+						index,
+						SearchIndexCache.FIELD_CAMPAIGN_AUTHORED_BY,
+						partialAuthoredBy);
+				
+				// If nothing matched, there is no reason to query the
+				// database.
+				if((campaignIds != null) && campaignIds.isEmpty()) {
+					return new LinkedList<Campaign>();
+				}
+			}
+			
 			Collection<Object> campaignSqlParameters = new LinkedList<Object>();
 			
 			String campaignSqlStmt = campaignQueries.getVisibleCampaignSearchSql(
 					campaignSqlParameters,
 					requestUsername,
-					partialCampaignId,
-					partialCampaignName,
-					partialDescription,
-					partialXml,
-					partialAuthoredBy,
+					campaignIds,
+					(indexed) ? null : partialCampaignId,
+					(indexed) ? null : partialCampaignName,
+					(indexed) ? null : partialDescription,
+					(indexed) ? null : partialXml,
+					(indexed) ? null : partialAuthoredBy,
 					startDate,
 					endDate,
 					privacyState,
@@ -537,8 +573,45 @@ public class CampaignServices {
 	
 
 	/**
-	 * Verifies that the survey responses as JSONObjects are valid survey
-	 * responses for the given campaign.
+	 * Narrows a set of campaign IDs to only those whose field in the search
+	 * index contains the partial value.
+	 * 
+	 * @param campaignIds The current set of campaign IDs or null if no field
+	 * 					  has been searched yet.
+	 * 
+	 * @param index The search index.
+	 * 
+	 * @param field The campaign field to search.
+	 * 
+	 * @param partialValue The partial value or null if this field shouldn't
+	 * 					   limit the results.
+	 * 
+	 * @return The narrowed set of campaign IDs, which will be null if no 
+	 * 		   field has been searched yet.
+	 */
+	private static Set<String> narrowCampaignIds(
+			final Set<String> campaignIds,
+			final SearchIndexCache index,
+			final String field,
+			final String partialValue) {
+		
+		if(partialValue == null) {
+			return campaignIds;
+		}
+		
+		Set<String> matches = index.searchCampaigns(field, partialValue);
+		if(campaignIds == null) {
+			return matches;
+		}
+		
+		campaignIds.retainAll(matches);
+		return campaignIds;
+	}
+
+	/**
+	 * Verifies that the survey responses in a JSONArray are valid survey
+	 * responses for the given campaign. The responses are read and converted
+	 * one at a time, so only the current response's JSONObject is built.
 	 * 
 	 * @param username The username of the user that generated these survey
 	 * 				   responses.
@@ -547,7 +620,7 @@ public class CampaignServices {
 	 * 
 	 * @param campaign The campaign.
 	 * 
-	 * @param jsonSurveyResponses The collection of survey responses as 
+	 * @param jsonSurveyResponses The survey responses as a JSONArray of
 	 * 							  JSONObjects.
 	 * 
 	 * @return A list of SurveyResponse objects representing the JSON survey 
@@ -559,19 +632,27 @@ public class CampaignServices {
 	public List<SurveyResponse> getSurveyResponses(
 			final String username, final String client, 
 			final Campaign campaign, 
-			final Collection<JSONObject> jsonSurveyResponses,
+			final String jsonSurveyResponses,
 			final boolean allowPartialSurvey) 
 			throws ServiceException {
 		
 		try {
-			List<SurveyResponse> result = new ArrayList<SurveyResponse>(jsonSurveyResponses.size());
+			List<SurveyResponse> result = new ArrayList<SurveyResponse>();
 			
-			for(JSONObject jsonResponse : jsonSurveyResponses) {
+			JsonArrayReader reader = new JsonArrayReader(jsonSurveyResponses);
+			JSONObject jsonResponse;
+			while((jsonResponse = reader.next()) != null) {
 				result.add(new SurveyResponse(username, campaign.getId(), client, campaign, jsonResponse, allowPartialSurvey));
 			}
 			
 			return result;
 		}
+		catch(JSONException e) {
+			throw new ServiceException(
+					ErrorCode.SERVER_INVALID_JSON, 
+					"One of the survey responses was not valid JSON.", 
+					e);
+		}
 		catch(DomainException e) {
 			throw new ServiceException(e);
 		}
@@ -633,40 +714,6 @@ public class CampaignServices {
 		}
 	}
 		
-	/**
-	 * Deletes a campaign and everything associated with it.
-	 * 
-	 * @param campaignId The unique identifier for the campaign.
-	 * 
-	 * @throws ServiceException Thrown if there is an error.
-	 */
-	public void deleteCampaign(final String campaignId) 
-			throws ServiceException {
-		// First, retrieve the path information for all of the images 
-		// associated with this campaign.
-		Collection<URL> imageUrls;
-		try {
-			imageUrls =
-				campaignImageQueries.getImageUrlsFromCampaign(campaignId);
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
-		}
-		
-		try {
-			campaignQueries.deleteCampaign(campaignId);
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
-		}
-		
-		// If the transaction succeeded, delete all of the images from the 
-		// disk.
-		for(URL imageUrl : imageUrls) {
-			imageQueries.deleteImageDiskOnly(imageUrl);
-		}
-	}
-
 	// ---------------- deprecated methods -----------------------
 	/**
 	 * Begins with all of the campaigns that exist in the system and then 
@@ -0,0 +1,259 @@
+package org.ohmage.service;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.ohmage.cache.DeletionJobExecutor;
+import org.ohmage.cache.KeycloakCache;
+import org.ohmage.cache.UserBin;
+import org.ohmage.domain.DeletionJob;
+import org.ohmage.domain.Image;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.exception.DomainException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.query.IDeletionJobQueries;
+
+/**
+ * This class contains the services that pertain to deleting campaigns and
+ * users. A deleted campaign or user is hidden immediately and then deleted,
+ * along with its data and media files, in batches in the background.
+ */
+public class DeletionJobServices {
+	private static final Logger LOGGER =
+		Logger.getLogger(DeletionJobServices.class);
+
+	private static DeletionJobServices instance;
+
+	private final IDeletionJobQueries deletionJobQueries;
+
+	/**
+	 * Private constructor called by reflection via Spring.
+	 * 
+	 * @param iDeletionJobQueries The queries for deletion jobs.
+	 */
+	private DeletionJobServices(
+			final IDeletionJobQueries iDeletionJobQueries) {
+
+		if(instance != null) {
+			throw new IllegalStateException(
+				"An instance of this class already exists.");
+		}
+
+		if(iDeletionJobQueries == null) {
+			throw new IllegalArgumentException(
+				"The IDeletionJobQueries is null.");
+		}
+
+		deletionJobQueries = iDeletionJobQueries;
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the singleton instance of this class.
+	 * 
+	 * @return The singleton instance of this class.
+	 */
+	public static DeletionJobServices instance() {
+		return instance;
+	}
+
+	/**
+	 * Deletes a campaign. The campaign is replaced by a tombstone and
+	 * everyone's access to it is revoked immediately, and its survey
+	 * responses, their media, and finally the campaign itself are deleted in
+	 * the background.
+	 * 
+	 * @param campaignId The campaign's unique identifier.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public void deleteCampaign(final String campaignId) throws ServiceException {
+		try {
+			deletionJobQueries.createCampaignDeletionJob(campaignId);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+
+		DeletionJobExecutor.requestPurge();
+	}
+
+	/**
+	 * Deletes users. Each user is replaced by a disabled tombstone, their
+	 * roles are revoked, and their authentication tokens are invalidated
+	 * immediately, and their data, media, and finally the users themselves
+	 * are deleted in the background.
+	 * 
+	 * @param usernames The usernames of the users.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public void deleteUsers(
+			final Collection<String> usernames)
+			throws ServiceException {
+
+		try {
+			deletionJobQueries.createUserDeletionJobs(usernames);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+
+		// Remove the users' authentication tokens if any exist, and forget
+		// that they were provisioned so that a keycloak user whose account
+		// was deleted is created again.
+		for(String username : usernames) {
+			UserBin.removeUser(username);
+			KeycloakCache.removeProvisionedUser(username);
+		}
+
+		DeletionJobExecutor.requestPurge();
+	}
+
+	/**
+	 * Returns every deletion job, the most recent first.
+	 * 
+	 * @return The deletion jobs.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public List<DeletionJob> getDeletionJobs() throws ServiceException {
+		try {
+			return deletionJobQueries.getDeletionJobs();
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Deletes the next batch of the oldest unfinished deletion job. A
+	 * campaign's survey responses are deleted first. A user's survey
+	 * responses are deleted first, then their remaining media, and then
+	 * their other data. Once nothing else is left, the entity itself is
+	 * deleted. The media files of each batch are deleted once the batch has
+	 * been committed.
+	 * 
+	 * @param batchSize The maximum number of rows to delete.
+	 * 
+	 * @return Whether or not there was a job to work on.
+	 * 
+	 * @throws ServiceException The batch failed. It is recorded with the job
+	 * 							and will be retried.
+	 */
+	public boolean purge(final int batchSize) throws ServiceException {
+		DeletionJob job;
+		try {
+			job = deletionJobQueries.getNextDeletionJob();
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+		if(job == null) {
+			return false;
+		}
+
+		try {
+			List<URL> mediaUrls = new ArrayList<URL>();
+			int rowsDeleted =
+				deletionJobQueries
+					.deleteSurveyResponses(job, batchSize, mediaUrls);
+
+			if((rowsDeleted == 0) &&
+				DeletionJob.Type.USER.equals(job.getType())) {
+
+				rowsDeleted =
+					deletionJobQueries
+						.deleteUserMedia(job, batchSize, mediaUrls);
+
+				if(rowsDeleted == 0) {
+					rowsDeleted =
+						deletionJobQueries.deleteUserData(job, batchSize);
+				}
+			}
+
+			if(rowsDeleted == 0) {
+				deletionJobQueries.completeDeletionJob(job);
+				LOGGER.info(
+					"Deleted the " +
+						job.getType() +
+						" " +
+						job.getName() +
+						".");
+				return true;
+			}
+
+			long filesDeleted = 0;
+			long bytesDeleted = 0;
+			for(URL mediaUrl : mediaUrls) {
+				for(File file : getMediaFiles(mediaUrl)) {
+					long length = file.length();
+					if(file.delete()) {
+						filesDeleted++;
+						bytesDeleted += length;
+					}
+				}
+			}
+
+			deletionJobQueries
+				.updateDeletionJobProgress(
+					job.getId(),
+					rowsDeleted,
+					filesDeleted,
+					bytesDeleted);
+			return true;
+		}
+		catch(DataAccessException e) {
+			try {
+				deletionJobQueries.setDeletionJobError(
+					job.getId(),
+					e.getMessage());
+			}
+			catch(DataAccessException recordError) {
+				LOGGER.error(
+					"Could not record the error of deletion job " +
+						job.getId() +
+						".",
+					recordError);
+			}
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns the files that may belong to a media. Images have a file for
+	 * each size in addition to the original, and the other media have only
+	 * the original.
+	 * 
+	 * @param mediaUrl The media's URL.
+	 * 
+	 * @return The files, some of which may not exist.
+	 */
+	private static Set<File> getMediaFiles(final URL mediaUrl) {
+		Set<File> result = new LinkedHashSet<File>();
+		result.add(new File(mediaUrl.getFile()));
+
+		for(Image.Size size : Image.getSizes()) {
+			try {
+				result.add(new File(Image.Size.getUrl(size, mediaUrl).getFile()));
+			}
+			catch(DomainException e) {
+				LOGGER.warn(
+					"Can't get the URL for image size " +
+						size.getName() +
+						" of " +
+						mediaUrl,
+					e);
+			}
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,105 @@
+package org.ohmage.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.BackgroundTaskScheduler;
+import org.ohmage.cache.KeyValueCache;
+import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.CacheStatistics;
+import org.ohmage.domain.SqlStatistics;
+import org.ohmage.domain.TaskStatistics;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.query.impl.SqlProfiler;
+
+/**
+ * This class contains the services that report on the server's own
+ * performance.
+ */
+public class DiagnosticServices {
+	/**
+	 * Default constructor. Made private so that it cannot be instantiated.
+	 */
+	private DiagnosticServices() {}
+
+	/**
+	 * Returns the statistics for every SQL statement that has been executed
+	 * since the server started or the statistics were last reset.
+	 * 
+	 * @param reset Whether or not to discard the statistics once they have
+	 * 				been read.
+	 * 
+	 * @return The statistics, ordered by the total time spent executing each
+	 * 		   statement.
+	 * 
+	 * @throws ServiceException Thrown if SQL profiling is disabled.
+	 */
+	public static List<SqlStatistics> getSqlStatistics(
+			final boolean reset)
+			throws ServiceException {
+
+		SqlProfiler profiler = SqlProfiler.instance();
+		if(profiler == null) {
+			throw new ServiceException(
+					ErrorCode.SYSTEM_GENERAL_ERROR,
+					"SQL profiling is disabled.");
+		}
+
+		List<SqlStatistics> result = profiler.getStatistics();
+		if(reset) {
+			profiler.reset();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the refresh statistics of the caches that are refreshed from
+	 * the database in the background.
+	 * 
+	 * @param invalidate Whether or not to re-read the caches from the
+	 * 					 database before their statistics are read, which
+	 * 					 should be done after their values were changed in
+	 * 					 the database.
+	 * 
+	 * @return The statistics for each cache.
+	 */
+	public static List<CacheStatistics> getCacheStatistics(
+			final boolean invalidate) {
+
+		List<KeyValueCache> caches = new ArrayList<KeyValueCache>();
+		if(PreferenceCache.instance() != null) {
+			caches.add(PreferenceCache.instance());
+		}
+
+		List<CacheStatistics> result =
+			new ArrayList<CacheStatistics>(caches.size());
+		for(KeyValueCache cache : caches) {
+			if(invalidate) {
+				cache.invalidate();
+			}
+			result.add(cache.getStatistics());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the state of every background task.
+	 * 
+	 * @return The statistics for each task, ordered by their names.
+	 * 
+	 * @throws ServiceException Thrown if the scheduler has not been created.
+	 */
+	public static List<TaskStatistics> getTaskStatistics()
+			throws ServiceException {
+
+		BackgroundTaskScheduler scheduler = BackgroundTaskScheduler.instance();
+		if(scheduler == null) {
+			throw new ServiceException(
+					ErrorCode.SYSTEM_GENERAL_ERROR,
+					"The background task scheduler is not running.");
+		}
+
+		return scheduler.getStatistics();
+	}
+}
@@ -0,0 +1,330 @@
+package org.ohmage.service;
+
+import java.io.File;
+import java.util.UUID;
+
+import org.apache.log4j.Logger;
+import org.joda.time.DateTime;
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.CacheMissException;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.query.IExportJobQueries;
+
+/**
+ * This class contains the services that pertain to export jobs.
+ */
+public class ExportJobServices {
+	private static final Logger LOGGER =
+		Logger.getLogger(ExportJobServices.class);
+
+	/**
+	 * The number of hours for which a finished job is kept if the preference
+	 * is missing or invalid.
+	 */
+	private static final int DEFAULT_LIFETIME_HOURS = 24;
+
+	/**
+	 * The extension of the files to which the jobs' results are written.
+	 */
+	private static final String FILE_EXTENSION = ".gz";
+
+	private static ExportJobServices instance;
+
+	private final IExportJobQueries exportJobQueries;
+
+	/**
+	 * Private constructor called by reflection via Spring.
+	 * 
+	 * @param iExportJobQueries The queries for export jobs.
+	 */
+	private ExportJobServices(final IExportJobQueries iExportJobQueries) {
+		if(instance != null) {
+			throw new IllegalStateException(
+				"An instance of this class already exists.");
+		}
+
+		if(iExportJobQueries == null) {
+			throw new IllegalArgumentException(
+				"The IExportJobQueries is null.");
+		}
+
+		exportJobQueries = iExportJobQueries;
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the singleton instance of this class.
+	 * 
+	 * @return The singleton instance of this class.
+	 */
+	public static ExportJobServices instance() {
+		return instance;
+	}
+
+	/**
+	 * Creates a new, pending export job.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param username The username of the user creating the job.
+	 * 
+	 * @param type The kind of read the job executes.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public void createExportJob(
+			final UUID id,
+			final String username,
+			final ExportJob.Type type)
+			throws ServiceException {
+
+		try {
+			exportJobQueries.createExportJob(id, username, type);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns an export job, verifying that it belongs to the given user.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param username The username of the user requesting the job.
+	 * 
+	 * @return The job.
+	 * 
+	 * @throws ServiceException The job doesn't exist, it belongs to another
+	 * 							user, or there was an error.
+	 */
+	public ExportJob getExportJob(
+			final UUID id,
+			final String username)
+			throws ServiceException {
+
+		try {
+			ExportJob result = exportJobQueries.getExportJob(id);
+
+			if(result == null) {
+				throw new ServiceException(
+					ErrorCode.EXPORT_INVALID_ID,
+					"The export job does not exist: " + id);
+			}
+			if(! result.getUsername().equals(username)) {
+				throw new ServiceException(
+					ErrorCode.EXPORT_INSUFFICIENT_PERMISSIONS,
+					"The export job belongs to another user: " + id);
+			}
+
+			return result;
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Marks a pending export job as running.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @return Whether or not the job was pending. If not, it should not be
+	 * 		   executed.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public boolean startExportJob(final UUID id) throws ServiceException {
+		try {
+			return exportJobQueries.startExportJob(id);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Marks an export job as complete. It will expire after the configured
+	 * lifetime.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param contentType The content type of the job's uncompressed result.
+	 * 
+	 * @param size The size, in bytes, of the job's compressed result.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public void completeExportJob(
+			final UUID id,
+			final String contentType,
+			final long size)
+			throws ServiceException {
+
+		try {
+			exportJobQueries.completeExportJob(
+				id,
+				contentType,
+				size,
+				getExpirationTimestamp());
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Marks an export job as failed and deletes any partial result. It will
+	 * expire after the configured lifetime.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @param error The failure message.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public void failExportJob(
+			final UUID id,
+			final String error)
+			throws ServiceException {
+
+		deleteExportFile(id);
+
+		try {
+			exportJobQueries.failExportJob(
+				id,
+				error,
+				getExpirationTimestamp());
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Marks every job that is pending or running as failed. Jobs are only
+	 * executed by the server that created them, so this should be called
+	 * when the server starts.
+	 * 
+	 * @return The number of jobs that were marked as failed.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public int failUnfinishedExportJobs() throws ServiceException {
+		try {
+			return
+				exportJobQueries.failUnfinishedExportJobs(
+					"The server restarted before the export completed.",
+					getExpirationTimestamp());
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Deletes the jobs that have expired and their results.
+	 * 
+	 * @return The number of jobs that were deleted.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public int deleteExpiredExportJobs() throws ServiceException {
+		try {
+			int result = 0;
+			for(UUID id :
+				exportJobQueries.getExpiredExportJobIds(new DateTime())) {
+
+				deleteExportFile(id);
+				exportJobQueries.deleteExportJob(id);
+				result++;
+			}
+			return result;
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Returns the file to which an export job's result is written, creating
+	 * the export directory if necessary.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @return The file.
+	 * 
+	 * @throws ServiceException The export directory is unknown or could not
+	 * 							be created.
+	 */
+	public File getExportFile(final UUID id) throws ServiceException {
+		String directoryName;
+		try {
+			directoryName =
+				PreferenceCache.instance().lookup(
+					PreferenceCache.KEY_EXPORT_DIRECTORY);
+		}
+		catch(CacheMissException e) {
+			throw new ServiceException(
+				"The export directory preference is missing.",
+				e);
+		}
+
+		File directory = new File(directoryName);
+		if((! directory.isDirectory()) && (! directory.mkdirs())) {
+			throw new ServiceException(
+				"The export directory could not be created: " +
+					directoryName);
+		}
+
+		return new File(directory, id.toString() + FILE_EXTENSION);
+	}
+
+	/**
+	 * Deletes an export job's result if it exists.
+	 * 
+	 * @param id The job's unique identifier.
+	 * 
+	 * @throws ServiceException The export directory is unknown.
+	 */
+	private void deleteExportFile(final UUID id) throws ServiceException {
+		File file = getExportFile(id);
+		if(file.exists() && (! file.delete())) {
+			LOGGER.warn(
+				"The export file could not be deleted: " +
+					file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Returns when a job that finishes now should expire.
+	 * 
+	 * @return When a job that finishes now should expire.
+	 */
+	private DateTime getExpirationTimestamp() {
+		int hours = DEFAULT_LIFETIME_HOURS;
+		try {
+			hours =
+				Integer.decode(
+					PreferenceCache.instance().lookup(
+						PreferenceCache.KEY_EXPORT_JOB_LIFETIME));
+		}
+		catch(CacheMissException e) {
+			LOGGER.info(
+				"The export job lifetime preference is missing, so the " +
+					"default is used.");
+		}
+		catch(NumberFormatException e) {
+			LOGGER.warn(
+				"The export job lifetime preference is not a number, so " +
+					"the default is used.",
+				e);
+		}
+
+		return (new DateTime()).plusHours(hours);
+	}
+}
@@ -16,7 +16,9 @@
 package org.ohmage.service;
 
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.ohmage.annotator.Annotator.ErrorCode;
@@ -167,6 +169,28 @@ public final class ImageServices {
 		}
 	}
 	
+	/**
+	 * Retrieves the URLs of many images with a single lookup. Images that
+	 * don't exist are not included in the result.
+	 * 
+	 * @param imageIds The images' unique identifiers.
+	 * 
+	 * @return A map of each existing image's unique identifier to its URL.
+	 * 
+	 * @throws ServiceException Thrown if there is an error.
+	 */
+	public Map<UUID, URL> getImageUrls(
+			final Collection<UUID> imageIds)
+			throws ServiceException {
+		
+		try {
+			return imageQueries.getImageUrls(imageIds);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Retrieves the Images that have not yet been processed.
 	 * 
@@ -15,6 +15,11 @@
  ******************************************************************************/
 package org.ohmage.service;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+
 import org.ohmage.exception.ServiceException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.service.UserServices;
@@ -27,6 +32,7 @@ import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.apache.log4j.Logger;
 import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
 
 
 /**
@@ -47,6 +53,18 @@ public final class KeycloakServices {
 	 * Allowable clock skew for JWT expiration validation.
 	 */
 	private static final Integer JWT_ALLOW_CLOCK_SKEW_SECONDS = 10;
+
+	/*
+	 * The algorithm used to hash bearer tokens before they are remembered.
+	 */
+	private static final String TOKEN_HASH_ALGORITHM = "SHA-256";
+
+	/*
+	 * The consumer that verifies bearer tokens and the key with which it was
+	 * built. It is rebuilt whenever the realm's key changes.
+	 */
+	private static JwtConsumer consumer = null;
+	private static PublicKey consumerKey = null;
   
 	/**
 	 * Default constructor. Made private so that it cannot be instantiated.
@@ -55,37 +73,48 @@ public final class KeycloakServices {
 	
 	/*
 	 * Inspects a bearer token for username and returns a new KeycloakUser object
-	 * for user.
+	 * for user. A token's signature is only verified the first time it is
+	 * seen, after which its claims are reused until it expires.
 	 */
 	public static KeycloakUser getUser(
 			final String bearerToken) 
 					throws ServiceException {
 
-		JwtConsumer consumer = new JwtConsumerBuilder()
-				.setRequireExpirationTime()
-				.setSkipDefaultAudienceValidation()
-				.setAllowedClockSkewInSeconds(JWT_ALLOW_CLOCK_SKEW_SECONDS)
-				.setVerificationKey(KeycloakCache.getPublicKey())
-				.build(); // create the JwtConsumer instance
-
-		try {
-			JwtContext jwtContext = consumer.process(bearerToken);
+		String tokenHash = hashToken(bearerToken);
+		JwtContext jwtContext = KeycloakCache.getVerifiedToken(tokenHash);
+		if(jwtContext == null) {
 			try {
-				String username = jwtContext.getJwtClaims().getClaimValue(KEY_CLAIM_USERNAME, String.class);
-				return new KeycloakUser(username, jwtContext);
+				jwtContext = getConsumer().process(bearerToken);
+			}
+			catch (InvalidJwtException e) {
+				throw new ServiceException("Bearer token is invalid or expired.", e);
 			}
-			catch(MalformedClaimException e){
-				throw new ServiceException("Unabled to handle keycloak user request. "
-						+ "Bearer token has no claim for " 
-						+ KEY_CLAIM_USERNAME,
-						e);
+
+			try {
+				NumericDate expiration = jwtContext.getJwtClaims().getExpirationTime();
+				KeycloakCache.setVerifiedToken(
+						tokenHash,
+						jwtContext,
+						expiration.getValueInMillis() + 
+							(JWT_ALLOW_CLOCK_SKEW_SECONDS * 1000L));
 			}
-			catch(DomainException e) {
-				throw new ServiceException("Unable to handle keycloak user request", e);
+			catch(MalformedClaimException e) {
+				throw new ServiceException("Bearer token is invalid or expired.", e);
 			}
 		}
-		catch (InvalidJwtException e) {
-			throw new ServiceException("Bearer token is invalid or expired.", e);
+
+		try {
+			String username = jwtContext.getJwtClaims().getClaimValue(KEY_CLAIM_USERNAME, String.class);
+			return new KeycloakUser(username, jwtContext);
+		}
+		catch(MalformedClaimException e){
+			throw new ServiceException("Unabled to handle keycloak user request. "
+					+ "Bearer token has no claim for " 
+					+ KEY_CLAIM_USERNAME,
+					e);
+		}
+		catch(DomainException e) {
+			throw new ServiceException("Unable to handle keycloak user request", e);
 		}
 	}
 
@@ -107,10 +136,14 @@ public final class KeycloakServices {
 		} catch (ServiceException e) {
 			throw new ServiceException("Unable to create keycloak user", e);
 		}
+
+		KeycloakCache.setProvisionedUser(user);
 	}
 	
 	/**
-	 * Updates a keycloak user's info.
+	 * Updates a keycloak user's info. The user's account is only compared
+	 * with its claims the first time the user is seen and whenever the claims
+	 * change.
 	 * 
 	 * @param user A keycloak user object to test for changes.
 	 * 
@@ -119,6 +152,11 @@ public final class KeycloakServices {
 	public static void updateUser(
 			final KeycloakUser user)
 					throws ServiceException{
+		if(user.hasSameProfile(
+				KeycloakCache.getProvisionedUser(user.getUsername()))) {
+			return;
+		}
+
 		try {
 			Boolean updateEmail = false;
 			Boolean updatePersonalInfo = false;
@@ -172,13 +210,61 @@ public final class KeycloakServices {
 						tPersonalId,  //pid
 						deletePersonalInfo); //delete personal info				
 			}
-
-			// check if userpersonal info
-			//   if so, check if matches?
-			//    if not matches, update
 		}
 		catch (ServiceException e) {
 			throw new ServiceException("Unable to update keycloak user details", e);
 		}
+
+		KeycloakCache.setProvisionedUser(user);
+	}
+
+	/*
+	 * Returns the consumer that verifies bearer tokens with the realm's
+	 * current key.
+	 */
+	private static synchronized JwtConsumer getConsumer() {
+		PublicKey key = KeycloakCache.getPublicKey();
+		if((consumer == null) || (key != consumerKey)) {
+			consumer = new JwtConsumerBuilder()
+					.setRequireExpirationTime()
+					.setSkipDefaultAudienceValidation()
+					.setAllowedClockSkewInSeconds(JWT_ALLOW_CLOCK_SKEW_SECONDS)
+					.setVerificationKey(key)
+					.build(); // create the JwtConsumer instance
+			consumerKey = key;
+		}
+
+		return consumer;
+	}
+
+	/*
+	 * Hashes a bearer token, so that the tokens that are remembered cannot be
+	 * replayed by anyone who can read them.
+	 */
+	private static String hashToken(
+			final String bearerToken)
+					throws ServiceException {
+
+		try {
+			byte[] digestBytes =
+					MessageDigest
+						.getInstance(TOKEN_HASH_ALGORITHM)
+						.digest(bearerToken.getBytes("UTF-8"));
+
+			StringBuilder buffer = new StringBuilder();
+			for(int i = 0; i < digestBytes.length; i++) {
+				buffer.append(
+						Integer.toString(
+								(digestBytes[i] & 0xff) + 0x100, 16)
+									.substring(1));
+			}
+			return buffer.toString();
+		}
+		catch(NoSuchAlgorithmException e) {
+			throw new ServiceException("The hashing algorithm is unknown.", e);
+		}
+		catch(UnsupportedEncodingException e) {
+			throw new ServiceException("The token could not be encoded.", e);
+		}
 	}
 }
\ No newline at end of file
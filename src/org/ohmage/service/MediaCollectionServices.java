@@ -0,0 +1,704 @@
+package org.ohmage.service;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.apache.log4j.Logger;
+import org.ohmage.cache.PreferenceCache;
+import org.ohmage.domain.Image;
+import org.ohmage.domain.MediaCollection;
+import org.ohmage.exception.CacheMissException;
+import org.ohmage.exception.DataAccessException;
+import org.ohmage.exception.ServiceException;
+import org.ohmage.query.IMediaCollectionQueries;
+import org.ohmage.util.StringUtils;
+
+/**
+ * This class contains the services that find and remove the media and
+ * document files that nothing refers to anymore. Each media directory is
+ * walked one leaf directory at a time, the names of its files are checked
+ * against the database in bulk, and the files that are orphaned are first
+ * moved into a quarantine directory and only deleted once they have stayed
+ * orphaned for a while.
+ */
+public class MediaCollectionServices {
+	private static final Logger LOGGER =
+		Logger.getLogger(MediaCollectionServices.class);
+
+	/**
+	 * The name of the directory, directly under each media directory, into
+	 * which orphaned files are moved. It is not a number, so it is never
+	 * mistaken for part of the storage hierarchy.
+	 */
+	public static final String QUARANTINE_DIRECTORY = "quarantine";
+
+	/**
+	 * How long a file must have existed before it may be considered orphaned,
+	 * because a file is written before the row that refers to it is
+	 * committed.
+	 */
+	private static final long MINIMUM_AGE_MILLIS = 1000L * 60 * 60 * 24;
+
+	/**
+	 * How long an orphaned file stays in quarantine before it is deleted.
+	 */
+	private static final long QUARANTINE_MILLIS = 1000L * 60 * 60 * 24 * 7;
+
+	/**
+	 * The maximum number of unique identifiers to check in one query.
+	 */
+	private static final int BATCH_SIZE = 500;
+
+	/**
+	 * Only the numbered directories belong to the storage hierarchy.
+	 */
+	private static final Pattern DIRECTORY_PATTERN = Pattern.compile("[0-9]+");
+
+	private static final FileFilter DIRECTORY_FILTER = new FileFilter() {
+		@Override
+		public boolean accept(final File file) {
+			return
+				file.isDirectory() &&
+				DIRECTORY_PATTERN.matcher(file.getName()).matches();
+		}
+	};
+
+	private static final Comparator<File> DIRECTORY_ORDER =
+		new Comparator<File>() {
+			@Override
+			public int compare(final File first, final File second) {
+				return
+					Long.valueOf(first.getName())
+						.compareTo(Long.valueOf(second.getName()));
+			}
+		};
+
+	/**
+	 * What was done while checking a leaf directory or the quarantine.
+	 */
+	private static final class Tally {
+		private long filesScanned = 0;
+		private long filesQuarantined = 0;
+		private long filesRestored = 0;
+		private long filesDeleted = 0;
+		private long bytesDeleted = 0;
+	}
+
+	private static MediaCollectionServices instance;
+
+	private final IMediaCollectionQueries mediaCollectionQueries;
+
+	/**
+	 * Private constructor called by reflection via Spring.
+	 * 
+	 * @param iMediaCollectionQueries The queries for the collector's
+	 * 								  progress.
+	 */
+	private MediaCollectionServices(
+			final IMediaCollectionQueries iMediaCollectionQueries) {
+
+		if(instance != null) {
+			throw new IllegalStateException(
+				"An instance of this class already exists.");
+		}
+
+		if(iMediaCollectionQueries == null) {
+			throw new IllegalArgumentException(
+				"The IMediaCollectionQueries is null.");
+		}
+
+		mediaCollectionQueries = iMediaCollectionQueries;
+
+		instance = this;
+	}
+
+	/**
+	 * Returns the singleton instance of this class.
+	 * 
+	 * @return The singleton instance of this class.
+	 */
+	public static MediaCollectionServices instance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the collector's progress through every media directory.
+	 * 
+	 * @return The progress of each media directory.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public List<MediaCollection> getMediaCollections()
+			throws ServiceException {
+
+		try {
+			return mediaCollectionQueries.getMediaCollections();
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Checks part of a media directory. First, every quarantined file is
+	 * checked again: those that are referenced again are moved back, and
+	 * those that have stayed orphaned long enough are deleted. Then the leaf directories after the one that was checked
+	 * last are checked, one at a time, until the limit is reached. When the
+	 * last leaf directory has been checked, the pass is complete and the next
+	 * one starts from the beginning.
+	 * 
+	 * @param directory The media directory.
+	 * 
+	 * @param maxFiles The number of files after which no further leaf
+	 * 				   directory is started.
+	 * 
+	 * @return The number of files that were checked, which is zero if the
+	 * 		   media directory doesn't exist.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public long collect(
+			final MediaCollection.Directory directory,
+			final long maxFiles)
+			throws ServiceException {
+
+		File root = getRoot(directory);
+		if(! root.isDirectory()) {
+			LOGGER.info(
+				"The " +
+					directory +
+					" directory doesn't exist, so it isn't collected: " +
+					root);
+			return 0;
+		}
+		// Without any levels, the media directory would be its own leaf
+		// directory and the quarantine would be inside it.
+		int depth = getDepth();
+		if(depth < 1) {
+			LOGGER.warn(
+				"The storage hierarchy has no levels, so the " +
+					directory +
+					" directory isn't collected.");
+			return 0;
+		}
+
+		Tally total = new Tally();
+		try {
+			MediaCollection collection =
+				mediaCollectionQueries.getMediaCollection(directory);
+			String lastDirectory = collection.getLastDirectory();
+
+			Tally quarantine = new Tally();
+			purgeQuarantine(
+				root,
+				new File(root, QUARANTINE_DIRECTORY),
+				"",
+				System.currentTimeMillis() - QUARANTINE_MILLIS,
+				maxFiles,
+				quarantine);
+			mediaCollectionQueries.updateMediaCollectionProgress(
+				directory,
+				lastDirectory,
+				0,
+				0,
+				quarantine.filesRestored,
+				quarantine.filesDeleted,
+				quarantine.bytesDeleted);
+			add(total, quarantine);
+
+			while(total.filesScanned < maxFiles) {
+				File leaf = getNextLeaf(root, depth, lastDirectory);
+				if(leaf == null) {
+					LOGGER.info(
+						"Finished a pass over the " +
+							directory +
+							" directory.");
+					mediaCollectionQueries.completeMediaCollectionPass(
+						directory);
+					break;
+				}
+				lastDirectory = getRelativePath(root, leaf);
+
+				Tally tally = new Tally();
+				collectLeaf(
+					leaf,
+					new File(
+						new File(root, QUARANTINE_DIRECTORY),
+						lastDirectory),
+					tally);
+				mediaCollectionQueries.updateMediaCollectionProgress(
+					directory,
+					lastDirectory,
+					tally.filesScanned,
+					tally.filesQuarantined,
+					0,
+					0,
+					0);
+				add(total, tally);
+			}
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+
+		if((total.filesQuarantined > 0) || (total.filesDeleted > 0)) {
+			LOGGER.info(
+				"Quarantined " +
+					total.filesQuarantined +
+					" orphaned files and reclaimed " +
+					total.bytesDeleted +
+					" bytes from " +
+					total.filesDeleted +
+					" quarantined files in the " +
+					directory +
+					" directory.");
+		}
+
+		return total.filesScanned;
+	}
+
+	/**
+	 * Moves the orphaned files of a leaf directory into quarantine.
+	 * 
+	 * @param leaf The leaf directory.
+	 * 
+	 * @param quarantine The directory into which its orphans are moved.
+	 * 
+	 * @param tally Where what was done is added.
+	 * 
+	 * @throws DataAccessException There was an error checking the files.
+	 */
+	private void collectLeaf(
+			final File leaf,
+			final File quarantine,
+			final Tally tally)
+			throws DataAccessException {
+
+		File[] files = leaf.listFiles();
+		if(files == null) {
+			return;
+		}
+
+		long youngest = System.currentTimeMillis() - MINIMUM_AGE_MILLIS;
+		List<File> candidates = new ArrayList<File>(files.length);
+		for(File file : files) {
+			if(! file.isFile()) {
+				continue;
+			}
+
+			tally.filesScanned++;
+			if(file.lastModified() < youngest) {
+				candidates.add(file);
+			}
+		}
+
+		for(File file : getOrphans(candidates)) {
+			if((! quarantine.isDirectory()) && (! quarantine.mkdirs())) {
+				LOGGER.warn(
+					"Could not create the quarantine directory: " +
+						quarantine);
+				return;
+			}
+
+			File target = new File(quarantine, file.getName());
+			if(file.renameTo(target)) {
+				// The time it was quarantined, not written, decides when it
+				// is deleted.
+				target.setLastModified(System.currentTimeMillis());
+				tally.filesQuarantined++;
+			}
+			else {
+				LOGGER.warn("Could not quarantine the file: " + file);
+			}
+		}
+	}
+
+	/**
+	 * Moves back the quarantined files that are referenced again, however
+	 * recently they were quarantined, and deletes the ones that have been
+	 * orphaned long enough. Each quarantined file's path mirrors its original
+	 * path, so it can be moved back to where it was. Emptied quarantine
+	 * directories are removed.
+	 * 
+	 * @param root The media directory.
+	 * 
+	 * @param directory The quarantine directory being purged.
+	 * 
+	 * @param relativePath The directory's path relative to the quarantine.
+	 * 
+	 * @param oldest Orphaned files that were quarantined after this time, in
+	 * 				 milliseconds since the epoch, are kept.
+	 * 
+	 * @param maxFiles The number of files after which no further directory
+	 * 				   is started.
+	 * 
+	 * @param tally Where what was done is added.
+	 * 
+	 * @throws DataAccessException There was an error checking the files.
+	 */
+	private void purgeQuarantine(
+			final File root,
+			final File directory,
+			final String relativePath,
+			final long oldest,
+			final long maxFiles,
+			final Tally tally)
+			throws DataAccessException {
+
+		File[] files = directory.listFiles();
+		if(files == null) {
+			return;
+		}
+
+		List<File> candidates = new ArrayList<File>(files.length);
+		for(File file : files) {
+			if(file.isDirectory()) {
+				if(tally.filesScanned < maxFiles) {
+					purgeQuarantine(
+						root,
+						file,
+						relativePath + file.getName() + "/",
+						oldest,
+						maxFiles,
+						tally);
+				}
+			}
+			else {
+				tally.filesScanned++;
+				candidates.add(file);
+			}
+		}
+
+		// A file that is referenced again is restored right away, so only
+		// the deletions wait for the quarantine to end.
+		Set<File> orphans = new HashSet<File>(getOrphans(candidates));
+		for(File file : orphans) {
+			if(file.lastModified() >= oldest) {
+				continue;
+			}
+
+			long length = file.length();
+			if(file.delete()) {
+				tally.filesDeleted++;
+				tally.bytesDeleted += length;
+			}
+			else {
+				LOGGER.warn("Could not delete the quarantined file: " + file);
+			}
+		}
+
+		candidates.removeAll(orphans);
+		for(File file : candidates) {
+			File original =
+				new File(new File(root, relativePath), file.getName());
+			original.getParentFile().mkdirs();
+			if(file.renameTo(original)) {
+				LOGGER.warn(
+					"A quarantined file is referenced and was restored: " +
+						original);
+				tally.filesRestored++;
+			}
+			else {
+				LOGGER.error(
+					"A quarantined file is referenced but could not be " +
+						"restored: " +
+						file);
+			}
+		}
+
+		// Only the directories below the quarantine directory itself are
+		// removed, and a directory that isn't empty can't be.
+		if(relativePath.length() > 0) {
+			directory.delete();
+		}
+	}
+
+	/**
+	 * Returns the files whose names are not the unique identifier of any
+	 * media or document. Images are stored once for each size, with the
+	 * size's extension appended to the name. Files that aren't named for a
+	 * unique identifier were not written by the server and are never
+	 * considered orphaned.
+	 * 
+	 * @param files The files to check.
+	 * 
+	 * @return The orphaned files.
+	 * 
+	 * @throws DataAccessException There was an error checking the files.
+	 */
+	private List<File> getOrphans(
+			final List<File> files)
+			throws DataAccessException {
+
+		Map<String, List<File>> filesByUuid =
+			new HashMap<String, List<File>>();
+		for(File file : files) {
+			String uuid = getUuid(file.getName());
+			if(uuid == null) {
+				continue;
+			}
+
+			List<File> uuidFiles = filesByUuid.get(uuid);
+			if(uuidFiles == null) {
+				uuidFiles = new LinkedList<File>();
+				filesByUuid.put(uuid, uuidFiles);
+			}
+			uuidFiles.add(file);
+		}
+
+		List<File> result = new LinkedList<File>();
+		List<String> uuids = new ArrayList<String>(filesByUuid.keySet());
+		for(int i = 0; i < uuids.size(); i += BATCH_SIZE) {
+			List<String> batch =
+				uuids.subList(i, Math.min(i + BATCH_SIZE, uuids.size()));
+
+			Set<String> referenced = new HashSet<String>();
+			for(String uuid : mediaCollectionQueries.getReferencedUuids(batch)) {
+				referenced.add(uuid.toLowerCase());
+			}
+			for(String uuid : batch) {
+				if(! referenced.contains(uuid)) {
+					result.addAll(filesByUuid.get(uuid));
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the unique identifier for which a file is named.
+	 * 
+	 * @param name The file's name.
+	 * 
+	 * @return The lower-case unique identifier or null if the file isn't
+	 * 		   named for one.
+	 */
+	private static String getUuid(final String name) {
+		String uuid = name;
+		for(Image.Size size : Image.getSizes()) {
+			String extension = size.getExtension();
+			if((extension.length() > 0) && name.endsWith(extension)) {
+				uuid = name.substring(0, name.length() - extension.length());
+				break;
+			}
+		}
+
+		// Only the canonical form is written, so anything else is someone
+		// else's file.
+		if(StringUtils.isValidUuid(uuid) && (uuid.length() == 36)) {
+			return uuid.toLowerCase();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the leaf directory that follows another in the storage
+	 * hierarchy, where the numbered directories at each level are ordered by
+	 * their numbers.
+	 * 
+	 * @param root The media directory.
+	 * 
+	 * @param depth The depth of the leaf directories.
+	 * 
+	 * @param lastDirectory The path, relative to the media directory, of the
+	 * 						previous leaf directory or an empty string to
+	 * 						get the first one.
+	 * 
+	 * @return The next leaf directory or null if there isn't one.
+	 */
+	private static File getNextLeaf(
+			final File root,
+			final int depth,
+			final String lastDirectory) {
+
+		// If the depth has changed since the path was recorded, start over.
+		long[] last = null;
+		if(lastDirectory.length() > 0) {
+			String[] names = lastDirectory.split("/");
+			if(names.length == depth) {
+				last = new long[depth];
+				try {
+					for(int i = 0; i < depth; i++) {
+						last[i] = Long.parseLong(names[i]);
+					}
+				}
+				catch(NumberFormatException e) {
+					last = null;
+				}
+			}
+		}
+
+		return getNextLeaf(root, 0, depth, last);
+	}
+
+	/**
+	 * Returns the first leaf directory below some directory that follows the
+	 * previous leaf directory.
+	 * 
+	 * @param directory The directory.
+	 * 
+	 * @param level The directory's depth.
+	 * 
+	 * @param depth The depth of the leaf directories.
+	 * 
+	 * @param last The numbers of the previous leaf directory's path if the
+	 * 			   path to this directory is the beginning of it, otherwise
+	 * 			   null.
+	 * 
+	 * @return The next leaf directory or null if there isn't one.
+	 */
+	private static File getNextLeaf(
+			final File directory,
+			final int level,
+			final int depth,
+			final long[] last) {
+
+		if(level == depth) {
+			return (last == null) ? directory : null;
+		}
+
+		File[] directories = directory.listFiles(DIRECTORY_FILTER);
+		if(directories == null) {
+			return null;
+		}
+		Arrays.sort(directories, DIRECTORY_ORDER);
+
+		for(File child : directories) {
+			long[] childLast = null;
+			if(last != null) {
+				long number = Long.parseLong(child.getName());
+				if(number < last[level]) {
+					continue;
+				}
+				else if(number == last[level]) {
+					childLast = last;
+				}
+			}
+
+			File result = getNextLeaf(child, level + 1, depth, childLast);
+			if(result != null) {
+				return result;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the path of a directory relative to the media directory.
+	 * 
+	 * @param root The media directory.
+	 * 
+	 * @param directory A directory below it.
+	 * 
+	 * @return The relative path, separated by "/"s.
+	 */
+	private static String getRelativePath(
+			final File root,
+			final File directory) {
+
+		return
+			directory
+				.getAbsolutePath()
+				.substring(root.getAbsolutePath().length() + 1)
+				.replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Returns a media directory.
+	 * 
+	 * @param directory The media directory.
+	 * 
+	 * @return The media directory's root, which may not exist.
+	 * 
+	 * @throws ServiceException The directory is not configured.
+	 */
+	private static File getRoot(
+			final MediaCollection.Directory directory)
+			throws ServiceException {
+
+		String key;
+		switch(directory) {
+		case IMAGE:
+			key = PreferenceCache.KEY_IMAGE_DIRECTORY;
+			break;
+		case AUDIO:
+			key = PreferenceCache.KEY_AUDIO_DIRECTORY;
+			break;
+		case VIDEO:
+			key = PreferenceCache.KEY_VIDEO_DIRECTORY;
+			break;
+		case FILE:
+			key = PreferenceCache.KEY_FILE_DIRECTORY;
+			break;
+		default:
+			key = PreferenceCache.KEY_DOCUMENT_DIRECTORY;
+			break;
+		}
+
+		try {
+			return new File(PreferenceCache.instance().lookup(key));
+		}
+		catch(CacheMissException e) {
+			throw new ServiceException(
+				"Preference cache doesn't know about 'known' key: " + key,
+				e);
+		}
+	}
+
+	/**
+	 * Returns the depth of the leaf directories in the storage hierarchy.
+	 * 
+	 * @return The depth.
+	 * 
+	 * @throws ServiceException The depth is not configured or is not a
+	 * 							number.
+	 */
+	private static int getDepth() throws ServiceException {
+		try {
+			return
+				Integer.decode(
+					PreferenceCache.instance().lookup(
+						PreferenceCache.KEY_FILE_HIERARCHY_DEPTH));
+		}
+		catch(CacheMissException e) {
+			throw new ServiceException(
+				"Preference cache doesn't know about 'known' key: " +
+					PreferenceCache.KEY_FILE_HIERARCHY_DEPTH,
+				e);
+		}
+		catch(NumberFormatException e) {
+			throw new ServiceException(
+				"Stored value for key '" +
+					PreferenceCache.KEY_FILE_HIERARCHY_DEPTH +
+					"' is not decodable as a number.",
+				e);
+		}
+	}
+
+	/**
+	 * Adds one tally to another.
+	 * 
+	 * @param total The tally to which the other is added.
+	 * 
+	 * @param tally The tally that is added.
+	 */
+	private static void add(final Tally total, final Tally tally) {
+		total.filesScanned += tally.filesScanned;
+		total.filesQuarantined += tally.filesQuarantined;
+		total.filesRestored += tally.filesRestored;
+		total.filesDeleted += tally.filesDeleted;
+		total.bytesDeleted += tally.bytesDeleted;
+	}
+}
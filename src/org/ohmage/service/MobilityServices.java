@@ -32,6 +32,7 @@ import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ServiceException;
 import org.ohmage.query.IUserMobilityQueries;
+import org.ohmage.query.IUserMobilityQueries.MobilityPointHandler;
 import org.ohmage.query.IUserQueries;
 
 import edu.ucla.cens.mobilityclassifier.Classification;
@@ -349,6 +350,63 @@ public final class MobilityServices {
 		}
 	}
 	
+	/**
+	 * Streams the Mobility points that satisfy the parameters to a handler in
+	 * chronological order without collecting them. The parameters are the 
+	 * same as for {@link #retrieveMobilityData(String, DateTime, DateTime, 
+	 * MobilityPoint.PrivacyState, LocationStatus, Mode)}.
+	 * 
+	 * @param username The username of the user whose points are being queried.
+	 * 				   Required.
+	 * 
+	 * @param startDate A date to which all returned points must be on or 
+	 * 					after. Optional.
+	 * 
+	 * @param endDate A date to which all returned points must be on or before.
+	 * 				  Optional.
+	 * 
+	 * @param privacyState A privacy state to limit the results to only those
+	 * 					   with this privacy state. Optional.
+	 * 
+	 * @param locationStatus A location status to limit the results to only 
+	 * 						 those with this location status. Optional.
+	 * 
+	 * @param mode A mode to limit the results to only those with this mode.
+	 * 			   Optional.
+	 * 
+	 * @param withSensorData Whether or not the points should include their
+	 * 						 sensor data and features.
+	 * 
+	 * @param handler The handler that receives each point.
+	 * 
+	 * @throws ServiceException Thrown if there is an error, including if the
+	 * 							handler failed.
+	 */
+	public void processMobilityData(
+			final String username,  
+			final DateTime startDate, final DateTime endDate, 
+			final MobilityPoint.PrivacyState privacyState,
+			final LocationStatus locationStatus, final Mode mode,
+			final boolean withSensorData,
+			final MobilityPointHandler handler) 
+			throws ServiceException {
+		
+		try {
+			userMobilityQueries.processMobilityInformation(
+					username, 
+					startDate, 
+					endDate, 
+					privacyState, 
+					locationStatus, 
+					mode,
+					withSensorData,
+					handler);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
 	/**
 	 * Retrieves the Mobility aggregate information for a user within a range.
 	 * 
@@ -19,8 +19,11 @@ import org.codehaus.jackson.annotate.JsonProperty;
 import org.codehaus.jackson.map.annotate.JsonSerialize;
 import org.joda.time.DateTime;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.ObserverCache;
+import org.ohmage.domain.ColumnNode;
 import org.ohmage.domain.DataStream;
 import org.ohmage.domain.DataStream.MetaData;
+import org.ohmage.domain.DataStreamBucket;
 import org.ohmage.domain.Observer;
 import org.ohmage.domain.Observer.Stream;
 import org.ohmage.exception.DataAccessException;
@@ -398,11 +401,13 @@ public class ObserverServices {
 	}
 	
 	/**
-	 * Retrieves the observer.
+	 * Retrieves the observer. Observers are cached, so this only reads from
+	 * the database the first time an observer is requested.
 	 * 
 	 * @param observerId The observer's unique identifier.
 	 * 
-	 * @param observerVersion The observer's version.
+	 * @param observerVersion The observer's version or null for its greatest
+	 * 						  version.
 	 * 
 	 * @return The observer.
 	 * 
@@ -413,10 +418,28 @@ public class ObserverServices {
 			final Long observerVersion) 
 			throws ServiceException {
 		
+		long generation = ObserverCache.getGeneration();
+		
+		Long version = observerVersion;
+		if(version == null) {
+			version = ObserverCache.getLatestVersion(observerId);
+		}
+		if(version != null) {
+			Observer observer = ObserverCache.getObserver(observerId, version);
+			if(observer != null) {
+				return observer;
+			}
+		}
+		
 		try {
+			// Without a version, only the greatest version is returned.
 			Collection<Observer> result = 
 				observerQueries
-					.getObservers(observerId, observerVersion, 0, 2);
+					.getObservers(
+						observerId, 
+						observerVersion, 
+						0, 
+						(observerVersion == null) ? 1 : 2);
 		
 			if(result.size() == 0) {
 				throw new ServiceException(
@@ -433,7 +456,17 @@ public class ObserverServices {
 						"Version: " + observerVersion);
 			}
 			
-			return result.iterator().next();
+			Observer observer = result.iterator().next();
+			
+			ObserverCache.putObserver(observer, generation);
+			if(observerVersion == null) {
+				ObserverCache.putLatestVersion(
+					observerId, 
+					observer.getVersion(), 
+					generation);
+			}
+			
+			return observer;
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -475,7 +508,8 @@ public class ObserverServices {
 	}
 	
 	/**
-	 * Retrieves the stream.
+	 * Retrieves the stream. Streams are cached, so this only reads from the
+	 * database the first time a stream is requested.
 	 * 
 	 * @param observerId The observer's unique identifier.
 	 * 
@@ -504,6 +538,14 @@ public class ObserverServices {
 			throw new ServiceException("The stream version is null.");
 		}
 		
+		long generation = ObserverCache.getGeneration();
+		
+		Observer.Stream cachedStream = 
+			ObserverCache.getStream(observerId, streamId, streamVersion);
+		if(cachedStream != null) {
+			return cachedStream;
+		}
+		
 		try {
 			// Get all of the streams for the observers. This should have only
 			// 0 or 1 elements.
@@ -551,7 +593,10 @@ public class ObserverServices {
 						"Stream Version: " + streamVersion);
 			}
 			
-			return streams.iterator().next();
+			Observer.Stream stream = streams.iterator().next();
+			ObserverCache.putStream(observerId, stream, generation);
+			
+			return stream;
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -839,10 +884,16 @@ public class ObserverServices {
 	 * 						If false, the values will be sorted reverse
 	 * 						chronologically. Required.
 	 * 
+	 * @param cursor The position from which to continue reading. If given,
+	 * 				 the number to skip is ignored. Optional.
+	 * 
 	 * @param numToSkip The number of data points to skip. Required.
 	 * 
 	 * @param numToReturn The number of data points to return. Required.
 	 * 
+	 * @param columns The columns of the data to read. If this is null or a 
+	 * 				  leaf, all of the data is read. Optional.
+	 * 
 	 * @return A list of data points in chronological order that match the 
 	 * 		   query.
 	 * 
@@ -856,8 +907,10 @@ public class ObserverServices {
 			final DateTime startDate,
 			final DateTime endDate,
 			final boolean chronological,
+			final DataStream.Cursor cursor,
 			final long numToSkip,
-			final long numToReturn) 
+			final long numToReturn,
+			final ColumnNode<String> columns) 
 			throws ServiceException {
 		
 		try {
@@ -870,8 +923,159 @@ public class ObserverServices {
 					startDate,
 					endDate,
 					chronological,
+					cursor,
 					numToSkip,
-					numToReturn);
+					numToReturn,
+					columns);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Verifies that each of the columns is a numeric field in the stream's 
+	 * schema. Only fields that are reached through nested objects can be 
+	 * summarized; fields within arrays cannot.
+	 * 
+	 * @param stream The stream whose schema defines the columns.
+	 * 
+	 * @param columns The paths of the columns, as generated by 
+	 * 				  {@link ColumnNode#toPaths()}.
+	 * 
+	 * @throws ServiceException One of the columns does not exist in the 
+	 * 							schema or is not a number.
+	 */
+	public void verifyColumnsAreNumeric(
+			final Stream stream,
+			final List<List<String>> columns)
+			throws ServiceException {
+		
+		List<List<String>> numericColumns;
+		try {
+			numericColumns = stream.getNumericColumns();
+		}
+		catch(DomainException e) {
+			throw new ServiceException(e);
+		}
+		
+		for(List<String> column : columns) {
+			if(! numericColumns.contains(column)) {
+				throw new ServiceException(
+					ErrorCode.OBSERVER_INVALID_COLUMN_LIST,
+					"The column does not exist in the stream or is not " +
+						"numeric: " + 
+						column);
+			}
+		}
+	}
+	
+	/**
+	 * Summarizes the data for a stream over consecutive time buckets.
+	 * 
+	 * @param stream The Stream object for the stream whose data is in 
+	 * 				 question. Required.
+	 * 
+	 * @param username The username of the user to which the data must belong.
+	 * 				   Required.
+	 * 
+	 * @param observerId The observer's unique identifier. Required.
+	 * 
+	 * @param observerVersion The observer's version. Optional.
+	 * 
+	 * @param startDate The earliest data point to summarize. The buckets are
+	 * 					aligned to this date. Required.
+	 * 
+	 * @param endDate The latest data point to summarize. Required.
+	 * 
+	 * @param bucketSize The length of each bucket in milliseconds. Required.
+	 * 
+	 * @param columns The numeric columns to summarize. Required.
+	 * 
+	 * @return The non-empty buckets in chronological order.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public List<DataStreamBucket> getStreamAggregates(
+			final Stream stream,
+			final String username,
+			final String observerId,
+			final Long observerVersion,
+			final DateTime startDate,
+			final DateTime endDate,
+			final long bucketSize,
+			final ColumnNode<String> columns)
+			throws ServiceException {
+		
+		try {
+			return
+				observerQueries.aggregateData(
+					stream,
+					username,
+					observerId,
+					observerVersion,
+					startDate,
+					endDate,
+					bucketSize,
+					columns);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+
+	/**
+	 * Recomputes the summaries of a batch of the hours that have received
+	 * new points.
+	 * 
+	 * @param maxHours The maximum number of hours to recompute.
+	 * 
+	 * @return The number of hours that were recomputed.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public int processStreamRollups(final int maxHours) throws ServiceException {
+		try {
+			return observerQueries.processRollups(maxHours);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
+	/**
+	 * Moves a batch of the raw points that have outlived their stream's 
+	 * retention policy into the archive.
+	 * 
+	 * @param maxPoints The maximum number of points to move.
+	 * 
+	 * @return The number of points that were moved.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public int archiveStreamData(final int maxPoints) throws ServiceException {
+		try {
+			return observerQueries.archiveData(maxPoints);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
+	
+	/**
+	 * Adds the days of a batch of the points that were uploaded before the 
+	 * day index existed to that index.
+	 * 
+	 * @param batchSize The maximum number of points to read.
+	 * 
+	 * @return The number of points that were read. Zero means that the 
+	 * 		   backfill is complete.
+	 * 
+	 * @throws ServiceException There was an error.
+	 */
+	public int backfillStreamDays(final int batchSize) throws ServiceException {
+		try {
+			return observerQueries.backfillStreamDays(batchSize);
 		}
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
@@ -72,4 +72,24 @@ public final class PromptResponseServices {
 			throw new ServiceException(e);
 		}				
 	}
+	
+	/**
+	 * Adds the next batch of prompt responses that were uploaded before the
+	 * token index existed to the index.
+	 * 
+	 * @param batchSize the maximum number of prompt responses to index
+	 * @return the number of prompt responses that were indexed, which will be
+	 * zero once the index is complete
+	 * @throws ServiceException if an error occurs
+	 */
+	public int backfillPromptResponseTokens(int batchSize) 
+	    throws ServiceException {
+		
+		try {
+			return promptResponseQueries.backfillPromptResponseTokens(batchSize);
+		}
+		catch(DataAccessException e) {
+			throw new ServiceException(e);
+		}
+	}
 }
@@ -56,8 +56,9 @@ import org.apache.log4j.Logger;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.cache.KeycloakCache;
 import org.ohmage.cache.PreferenceCache;
-import org.ohmage.cache.UserBin;
+import org.ohmage.cache.SearchIndexCache;
 import org.ohmage.domain.Clazz;
 import org.ohmage.domain.KeycloakUser;
 import org.ohmage.domain.User;
@@ -69,10 +70,8 @@ import org.ohmage.exception.CacheMissException;
 import org.ohmage.exception.DataAccessException;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ServiceException;
-import org.ohmage.query.IImageQueries;
 import org.ohmage.query.IUserCampaignQueries;
 import org.ohmage.query.IUserClassQueries;
-import org.ohmage.query.IUserImageQueries;
 import org.ohmage.query.IUserQueries;
 import org.ohmage.query.impl.QueryResultsList;
 import org.ohmage.request.InputKeys;
@@ -119,8 +118,6 @@ public final class UserServices {
 	private IUserQueries userQueries;
 	private IUserCampaignQueries userCampaignQueries;
 	private IUserClassQueries userClassQueries;
-	private IUserImageQueries userImageQueries;
-	private IImageQueries imageQueries;
 	
 	/**
 	 * Default constructor. Privately instantiated via dependency injection
@@ -133,8 +130,7 @@ public final class UserServices {
 	 * or iUserCampaignQueries is null
 	 */
 	private UserServices(IUserQueries iUserQueries, 
-			IUserCampaignQueries iUserCampaignQueries, IUserClassQueries iUserClassQueries,
-			IUserImageQueries iUserImageQueries, IImageQueries iImageQueries) {
+			IUserCampaignQueries iUserCampaignQueries, IUserClassQueries iUserClassQueries) {
 		
 		if(instance != null) {
 			throw new IllegalStateException("An instance of this class already exists.");
@@ -150,18 +146,10 @@ public final class UserServices {
 		if(iUserClassQueries == null) {
 			throw new IllegalArgumentException("An instance of IUserClassQueries is required.");
 		}
-		if(iUserImageQueries == null) {
-			throw new IllegalArgumentException("An instance of IUserImageQueries is required.");
-		}
-		if(iImageQueries == null) {
-			throw new IllegalArgumentException("An instance of IIimageQueries is required.");
-		}
 		
 		userQueries = iUserQueries;
 		userCampaignQueries = iUserCampaignQueries;
 		userClassQueries = iUserClassQueries;
-		userImageQueries = iUserImageQueries;
-		imageQueries = iImageQueries;
 	}
 	
 	/**
@@ -1477,6 +1465,7 @@ public final class UserServices {
 					userSubSelectParameters,
 					requesterUsername,
 					usernameCompilation,
+					null,
 					emailAddressCompilation, 
 					admin, 
 					enabled, 
@@ -1601,39 +1590,91 @@ public final class UserServices {
 		
 		try {
 			Set<String> usernameTokens = null;
-			if(partialUsername != null) {
-				usernameTokens = new HashSet<String>();
-				usernameTokens.add('%' + partialUsername + '%');
-			}
-			
 			Set<String> emailAddressTokens = null;
-			if(partialEmailAddress != null) {
-				emailAddressTokens = new HashSet<String>();
-				emailAddressTokens.add('%' + partialEmailAddress + '%');
-			}
-			
 			Set<String> firstNameTokens = null;
-			if(partialFirstName != null) {
-				firstNameTokens = new HashSet<String>();
-				firstNameTokens.add('%' + partialFirstName + '%');
-			}
-			
 			Set<String> lastNameTokens = null;
-			if(partialLastName != null) {
-				lastNameTokens = new HashSet<String>();
-				lastNameTokens.add('%' + partialLastName + '%');
-			}
-			
 			Set<String> organizationTokens = null;
-			if(partialOrganization != null) {
-				organizationTokens = new HashSet<String>();
-				organizationTokens.add('%' + partialOrganization + '%');
-			}
-			
 			Set<String> personalIdTokens = null;
-			if(partialPersonalId != null) {
-				personalIdTokens = new HashSet<String>();
-				personalIdTokens.add('%' + partialPersonalId + '%');
+			
+			// If the search index is available, use it to resolve the partial
+			// values to the exact set of matching usernames. Otherwise, fall
+			// back to LIKE comparisons in the database.
+			Set<String> exactUsernames = null;
+			if(SearchIndexCache.isReady()) {
+				SearchIndexCache index = SearchIndexCache.instance();
+				exactUsernames =
+					narrowUsernames(
+						exactUsernames,
+						index,
+						SearchIndexCache.FIELD_USER_USERNAME,
+						partialUsername);
+				exactUsernames =
+					narrowUsernames(
+						exactUsernames,
+						index,
+						SearchIndexCache.FIELD_USER_EMAIL_ADDRESS,
+						partialEmailAddress);
+				exactUsernames =
+					narrowUsernames(
+						exactUsernames,
+						index,
+						SearchIndexCache.FIELD_USER_FIRST_NAME,
+						partialFirstName);
+				exactUsernames =
+					narrowUsernames(
+						exactUsernames,
+						index,
+						SearchIndexCache.FIELD_USER_LAST_NAME,
+						partialLastName);
+				exactUsernames =
+					narrowUsernames(
+						exactUsernames,
+						index,
+						SearchIndexCache.FIELD_USER_ORGANIZATION,
+						partialOrganization);
+				exactUsernames =
+					narrowUsernames(
+						exactUsernames,
+						index,
+						SearchIndexCache.FIELD_USER_PERSONAL_ID,
+						partialPersonalId);
+				
+				// If nothing matched, there is no reason to query the
+				// database.
+				if((exactUsernames != null) && exactUsernames.isEmpty()) {
+					return 0;
+				}
+			}
+			else {
+				if(partialUsername != null) {
+					usernameTokens = new HashSet<String>();
+					usernameTokens.add('%' + partialUsername + '%');
+				}
+				
+				if(partialEmailAddress != null) {
+					emailAddressTokens = new HashSet<String>();
+					emailAddressTokens.add('%' + partialEmailAddress + '%');
+				}
+				
+				if(partialFirstName != null) {
+					firstNameTokens = new HashSet<String>();
+					firstNameTokens.add('%' + partialFirstName + '%');
+				}
+				
+				if(partialLastName != null) {
+					lastNameTokens = new HashSet<String>();
+					lastNameTokens.add('%' + partialLastName + '%');
+				}
+				
+				if(partialOrganization != null) {
+					organizationTokens = new HashSet<String>();
+					organizationTokens.add('%' + partialOrganization + '%');
+				}
+				
+				if(partialPersonalId != null) {
+					personalIdTokens = new HashSet<String>();
+					personalIdTokens.add('%' + partialPersonalId + '%');
+				}
 			}
 
 			Collection<Object> userSubSelectParameters = new LinkedList<Object>();
@@ -1641,6 +1682,7 @@ public final class UserServices {
 					userSubSelectParameters,
 					requesterUsername,
 					usernameTokens,
+					exactUsernames,
 					emailAddressTokens, 
 					admin, 
 					enabled, 
@@ -1702,6 +1744,46 @@ public final class UserServices {
 		}
 	}
 	
+	/**
+	 * Narrows a set of usernames to only those whose field in the search index
+	 * contains the partial value.
+	 * 
+	 * @param usernames
+	 *        The current set of usernames or null if no field has been
+	 *        searched yet.
+	 * 
+	 * @param index
+	 *        The search index.
+	 * 
+	 * @param field
+	 *        The user field to search.
+	 * 
+	 * @param partialValue
+	 *        The partial value or null if this field shouldn't limit the
+	 *        results.
+	 * 
+	 * @return The narrowed set of usernames, which will be null if no field
+	 *         has been searched yet.
+	 */
+	private static Set<String> narrowUsernames(
+			final Set<String> usernames,
+			final SearchIndexCache index,
+			final String field,
+			final String partialValue) {
+		
+		if(partialValue == null) {
+			return usernames;
+		}
+		
+		Set<String> matches = index.searchUsers(field, partialValue);
+		if(usernames == null) {
+			return matches;
+		}
+		
+		usernames.retainAll(matches);
+		return usernames;
+	}
+	
 	/**
 	 * Based on personal information, this will either return a user's
 	 * information if they exist or null if they do not.
@@ -1746,6 +1828,7 @@ public final class UserServices {
 					userSubSelectParameters,
 					requesterUsername,
 					null,
+					null,
 					null, 
 					null, 
 					null, 
@@ -1990,6 +2073,9 @@ public final class UserServices {
 		catch(DataAccessException e) {
 			throw new ServiceException(e);
 		}
+
+		// The account may no longer match the keycloak user's claims.
+		KeycloakCache.removeProvisionedUser(username);
 	}
 
 	/**
@@ -2223,47 +2309,6 @@ public final class UserServices {
 		}
 	}
 	
-	/**
-	 * Deletes all of the users from the Collection.
-	 * 
-	 * @param usernames A Collection of usernames of the users to delete.
-	 * 
-	 * @throws ServiceException Thrown if there is an error.
-	 */
-	public void deleteUser(final Collection<String> usernames) 
-			throws ServiceException {
-		// First, retrieve the path information for all of the images 
-		// associated with each user.
-		Collection<URL> imageUrls = new HashSet<URL>();
-		try {
-			for(String username : usernames) {
-				imageUrls.addAll(
-					userImageQueries.getImageUrlsFromUsername(username));
-			}
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
-		}
-				
-		try {
-			userQueries.deleteUsers(usernames);
-		}
-		catch(DataAccessException e) {
-			throw new ServiceException(e);
-		}
-		
-		// Remove the users' authentication tokens if any exist.
-		for(String username : usernames) {
-			UserBin.removeUser(username);
-		}
-		
-		// If the transaction succeeded, delete all of the images from the 
-		// disk.
-		for(URL imageUrl : imageUrls) {
-			imageQueries.deleteImageDiskOnly(imageUrl);
-		}
-	}
-	
 	/**
 	 * Generates a plaintext temporary password based that does not observe our
 	 * rule set.
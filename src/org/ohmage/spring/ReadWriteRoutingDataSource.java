@@ -0,0 +1,205 @@
+package org.ohmage.spring;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.sql.DataSource;
+
+import org.apache.log4j.Logger;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * A DataSource that sends reads to a replica and everything else to the
+ * primary database.
+ * 
+ * A connection only comes from the replica while a read has been marked as
+ * read-only, see {@link #setReadOnly(boolean)}, and only if neither the
+ * current thread nor the current user has written to the primary recently.
+ * The latter lets a user read what they just uploaded even while the replica
+ * is behind. Connections that are already bound to a transaction are reused
+ * by Spring without consulting this class, so reads inside a write
+ * transaction always see that transaction's writes.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+	private static final Logger LOGGER =
+		Logger.getLogger(ReadWriteRoutingDataSource.class);
+
+	/**
+	 * The keys for the two target DataSources.
+	 */
+	private static enum Target { PRIMARY, REPLICA };
+
+	/**
+	 * Whether or not the current thread is executing a read that may use the
+	 * replica.
+	 */
+	private static final ThreadLocal<Boolean> READ_ONLY =
+		new ThreadLocal<Boolean>();
+
+	/**
+	 * Whether or not the current thread has written to the primary since its
+	 * request began.
+	 */
+	private static final ThreadLocal<Boolean> WROTE =
+		new ThreadLocal<Boolean>();
+
+	/**
+	 * The username of the user whose request the current thread is
+	 * executing.
+	 */
+	private static final ThreadLocal<String> CURRENT_USER =
+		new ThreadLocal<String>();
+
+	/**
+	 * The last time each user wrote to the primary.
+	 */
+	private static final ConcurrentMap<String, Long> LAST_WRITES =
+		new ConcurrentHashMap<String, Long>();
+
+	private final boolean replicaEnabled;
+	private final long consistencyWindow;
+
+	/**
+	 * Creates the routing DataSource. This is called by Spring.
+	 * 
+	 * @param primary The primary database.
+	 * 
+	 * @param replica The replica database.
+	 * 
+	 * @param replicaEnabled Whether or not reads should be sent to the
+	 * 						 replica at all.
+	 * 
+	 * @param consistencyWindow The number of milliseconds after a user writes
+	 * 							during which their reads go to the primary.
+	 * 							This should exceed the replica's usual lag.
+	 */
+	public ReadWriteRoutingDataSource(
+			final DataSource primary,
+			final DataSource replica,
+			final boolean replicaEnabled,
+			final long consistencyWindow) {
+
+		if(primary == null) {
+			throw new IllegalArgumentException(
+				"The primary data source is null.");
+		}
+		if(replica == null) {
+			throw new IllegalArgumentException(
+				"The replica data source is null.");
+		}
+		if(consistencyWindow < 0) {
+			throw new IllegalArgumentException(
+				"The consistency window is negative.");
+		}
+
+		Map<Object, Object> targets = new HashMap<Object, Object>();
+		targets.put(Target.PRIMARY, primary);
+		targets.put(Target.REPLICA, replica);
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+
+		this.replicaEnabled = replicaEnabled;
+		this.consistencyWindow = consistencyWindow;
+
+		LOGGER.info(
+			"Reads will " + (replicaEnabled ? "" : "not ") +
+				"be sent to the replica.");
+	}
+
+	/**
+	 * Marks whether or not the reads the current thread executes may use the
+	 * replica.
+	 * 
+	 * @param readOnly Whether or not the reads may use the replica.
+	 * 
+	 * @return The previous value, which should be restored when the read is
+	 * 		   done.
+	 */
+	public static boolean setReadOnly(final boolean readOnly) {
+		boolean result = Boolean.TRUE.equals(READ_ONLY.get());
+		if(readOnly) {
+			READ_ONLY.set(true);
+		}
+		else {
+			READ_ONLY.remove();
+		}
+		return result;
+	}
+
+	/**
+	 * Records that the current thread, and the user on whose behalf it is
+	 * working, has written to the primary.
+	 */
+	public static void markWrite() {
+		WROTE.set(true);
+
+		String username = CURRENT_USER.get();
+		if(username != null) {
+			LAST_WRITES.put(username, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Records the user whose request the current thread is about to execute.
+	 * 
+	 * @param username The user's username or null if it is unknown.
+	 */
+	public static void beginRequest(final String username) {
+		WROTE.remove();
+		setUser(username);
+	}
+
+	/**
+	 * Records the user whose request the current thread is executing once it
+	 * is known, e.g. after the request has been built. Writes the thread
+	 * already made are kept.
+	 * 
+	 * @param username The user's username or null if it is unknown.
+	 */
+	public static void setUser(final String username) {
+		if(username == null) {
+			CURRENT_USER.remove();
+		}
+		else {
+			CURRENT_USER.set(username);
+		}
+	}
+
+	/**
+	 * Forgets the current thread's request. This must be called when the
+	 * request is done, as the thread will be reused.
+	 */
+	public static void endRequest() {
+		WROTE.remove();
+		CURRENT_USER.remove();
+	}
+
+	/**
+	 * Chooses the replica for read-only reads unless the current thread or
+	 * user wrote too recently for the replica to have caught up.
+	 */
+	@Override
+	protected Object determineCurrentLookupKey() {
+		if((! replicaEnabled) ||
+			(! Boolean.TRUE.equals(READ_ONLY.get())) ||
+			Boolean.TRUE.equals(WROTE.get())) {
+
+			return Target.PRIMARY;
+		}
+
+		String username = CURRENT_USER.get();
+		if(username != null) {
+			Long lastWrite = LAST_WRITES.get(username);
+			if(lastWrite != null) {
+				if(System.currentTimeMillis() - lastWrite < consistencyWindow) {
+					return Target.PRIMARY;
+				}
+				LAST_WRITES.remove(username, lastWrite);
+			}
+		}
+
+		return Target.REPLICA;
+	}
+}
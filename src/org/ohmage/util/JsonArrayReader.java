@@ -0,0 +1,272 @@
+package org.ohmage.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * <p>
+ * Reads the JSON objects in a JSON array one at a time. The array is
+ * tokenized as it is read, so only the current element is ever built as a
+ * JSONObject. This allows an upload to be converted into its domain objects
+ * without the JSON of the entire upload being held in memory alongside
+ * them.
+ * </p>
+ * 
+ * <p>
+ * Errors are reported as JSONExceptions, like the json.org library's own
+ * parser, so that this can replace building a JSONArray. This class is not
+ * thread-safe.
+ * </p>
+ */
+public final class JsonArrayReader {
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+	private final JsonParser parser;
+	private int index = -1;
+	private boolean finished = false;
+
+	/**
+	 * Creates a reader for a JSON array.
+	 * 
+	 * @param json The JSON array.
+	 * 
+	 * @throws JSONException The JSON is not an array.
+	 */
+	public JsonArrayReader(final String json) throws JSONException {
+		if(json == null) {
+			throw new JSONException("The JSON is null.");
+		}
+
+		try {
+			parser = JSON_FACTORY.createJsonParser(json);
+		}
+		catch(IOException e) {
+			throw new JSONException(e);
+		}
+		start();
+	}
+
+	/**
+	 * Creates a reader for a JSON array that is read from a character
+	 * stream, such as a streamed parameter's temporary file. The stream is
+	 * closed when this reader is closed.
+	 * 
+	 * @param json The JSON array.
+	 * 
+	 * @throws JSONException The JSON is not an array.
+	 */
+	public JsonArrayReader(final Reader json) throws JSONException {
+		if(json == null) {
+			throw new JSONException("The JSON is null.");
+		}
+
+		try {
+			parser = JSON_FACTORY.createJsonParser(json);
+		}
+		catch(IOException e) {
+			throw new JSONException(e);
+		}
+		start();
+	}
+
+	/**
+	 * Reads the start of the array.
+	 * 
+	 * @throws JSONException The JSON is not an array.
+	 */
+	private void start() throws JSONException {
+		try {
+			if(parser.nextToken() != JsonToken.START_ARRAY) {
+				close();
+				throw new JSONException("The JSON is not an array.");
+			}
+		}
+		catch(JsonParseException e) {
+			close();
+			throw new JSONException(e);
+		}
+		catch(IOException e) {
+			close();
+			throw new JSONException(e);
+		}
+	}
+
+	/**
+	 * Reads the next element of the array, which must be a JSON object.
+	 * 
+	 * @return The next element or null if there are no more elements.
+	 * 
+	 * @throws JSONException The element is not a JSON object or the JSON is
+	 * 						 malformed.
+	 */
+	public JSONObject next() throws JSONException {
+		try {
+			if(! advance()) {
+				return null;
+			}
+
+			return readObject();
+		}
+		catch(JsonParseException e) {
+			throw new JSONException(e);
+		}
+		catch(IOException e) {
+			throw new JSONException(e);
+		}
+	}
+
+	/**
+	 * Returns the index of the element that was last read.
+	 * 
+	 * @return The index of the last element or -1 if no element has been
+	 * 		   read.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Closes the reader and the stream from which it reads. Any elements that
+	 * were not read are never parsed.
+	 */
+	public void close() {
+		try {
+			parser.close();
+		}
+		catch(IOException e) {
+			// The stream is only read, so there is nothing to lose.
+		}
+	}
+
+	/**
+	 * Moves the parser to the start of the next element.
+	 * 
+	 * @return Whether or not there is another element.
+	 * 
+	 * @throws JSONException The next element is not a JSON object or there
+	 * 						 is data after the end of the array.
+	 * 
+	 * @throws IOException The JSON is malformed.
+	 */
+	private boolean advance() throws JSONException, IOException {
+		if(finished) {
+			return false;
+		}
+
+		JsonToken token = parser.nextToken();
+		if(token == JsonToken.END_ARRAY) {
+			finished = true;
+			index++;
+
+			if(parser.nextToken() != null) {
+				throw new JSONException("There is data after the array.");
+			}
+			return false;
+		}
+
+		index++;
+		if(token != JsonToken.START_OBJECT) {
+			throw new JSONException(
+				"The element at index " + index + " is not a JSON object.");
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the object whose start the parser is on.
+	 * 
+	 * @return The object.
+	 * 
+	 * @throws JSONException The object could not be built.
+	 * 
+	 * @throws IOException The JSON is malformed.
+	 */
+	private JSONObject readObject() throws JSONException, IOException {
+		JSONObject result = new JSONObject();
+
+		while(parser.nextToken() == JsonToken.FIELD_NAME) {
+			String name = parser.getCurrentName();
+			result.put(name, readValue(parser.nextToken()));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reads the array whose start the parser is on.
+	 * 
+	 * @return The array.
+	 * 
+	 * @throws JSONException The array could not be built.
+	 * 
+	 * @throws IOException The JSON is malformed.
+	 */
+	private JSONArray readArray() throws JSONException, IOException {
+		JSONArray result = new JSONArray();
+
+		JsonToken token;
+		while((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+			result.put(readValue(token));
+		}
+
+		return result;
+	}
+
+	/**
+	 * Reads the value whose first token the parser is on, in the form that
+	 * the json.org library would have parsed it.
+	 * 
+	 * @param token The value's first token.
+	 * 
+	 * @return The value.
+	 * 
+	 * @throws JSONException The value could not be built.
+	 * 
+	 * @throws IOException The JSON is malformed.
+	 */
+	private Object readValue(
+			final JsonToken token)
+			throws JSONException, IOException {
+
+		if(token == null) {
+			throw new JSONException("The JSON ended unexpectedly.");
+		}
+
+		switch(token) {
+		case START_OBJECT:
+			return readObject();
+
+		case START_ARRAY:
+			return readArray();
+
+		case VALUE_STRING:
+			return parser.getText();
+
+		case VALUE_NUMBER_INT:
+			return parser.getNumberValue();
+
+		case VALUE_NUMBER_FLOAT:
+			return parser.getDoubleValue();
+
+		case VALUE_TRUE:
+			return Boolean.TRUE;
+
+		case VALUE_FALSE:
+			return Boolean.FALSE;
+
+		case VALUE_NULL:
+			return JSONObject.NULL;
+
+		default:
+			throw new JSONException("Unexpected token: " + token);
+		}
+	}
+}
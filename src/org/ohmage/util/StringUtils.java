@@ -25,6 +25,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -42,6 +43,10 @@ public final class StringUtils {
 	 * The minimum number of URN segments.
 	 */
 	public static final int NUM_URN_SEGMENTS = 3;
+	/**
+	 * The maximum length of a word returned by {@link #tokenizeWords(String)}.
+	 */
+	public static final int MAX_WORD_TOKEN_LENGTH = 64;
 	private static final Pattern URN_PATTERN = Pattern.compile("[a-z0-9_]+");
 	
 	private static final String FORMAT_AMERICAN_DATE = "MM/dd/yyyy";
@@ -475,6 +480,45 @@ public final class StringUtils {
 		return result;
 	}
 	
+	/**
+	 * Divides a string into its words for use in a token index. A word is any
+	 * run of letters and digits, so all whitespace and punctuation are
+	 * treated as dividers. The words are lower-cased and any word longer than
+	 * {@link #MAX_WORD_TOKEN_LENGTH} is truncated to that length. For example,
+	 * the string "Hello, World! hello." will be divided into two words,
+	 * "hello" and "world".
+	 * 
+	 * @param string The string to be divided.
+	 * 
+	 * @return A set of distinct words. If the string is null or contains no
+	 * 		   letters or digits, it will be an empty set.
+	 */
+	public static Set<String> tokenizeWords(final String string) {
+		if(string == null) {
+			return Collections.emptySet();
+		}
+		
+		Set<String> result = new HashSet<String>();
+		int length = string.length();
+		int start = -1;
+		for(int i = 0; i <= length; i++) {
+			boolean wordChar = 
+				(i < length) && Character.isLetterOrDigit(string.charAt(i));
+			
+			if(wordChar && (start < 0)) {
+				start = i;
+			}
+			else if((! wordChar) && (start >= 0)) {
+				int end = Math.min(i, start + MAX_WORD_TOKEN_LENGTH);
+				result.add(
+					string.substring(start, end).toLowerCase(Locale.ENGLISH));
+				start = -1;
+			}
+		}
+		
+		return result;
+	}
+	
 	/**
 	 * Takes a collection of objects and converts them to a list where each 
 	 * item is converted to a string by its toString() method.
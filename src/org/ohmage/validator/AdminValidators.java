@@ -0,0 +1,72 @@
+package org.ohmage.validator;
+
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.util.StringUtils;
+
+/**
+ * This class is responsible for validating the parameters of the
+ * administrative requests.
+ */
+public final class AdminValidators {
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private AdminValidators() {}
+
+	/**
+	 * Validates whether or not the statistics should be reset after they are
+	 * read. If the value is null or whitespace only, false is returned.
+	 * 
+	 * @param value The value to validate.
+	 * 
+	 * @return Whether or not the statistics should be reset.
+	 * 
+	 * @throws ValidationException Thrown if the value is not a valid boolean.
+	 */
+	public static boolean validateReset(
+			final String value)
+			throws ValidationException {
+
+		if(StringUtils.isEmptyOrWhitespaceOnly(value)) {
+			return false;
+		}
+
+		Boolean result = StringUtils.decodeBoolean(value.trim());
+		if(result == null) {
+			throw new ValidationException(
+					ErrorCode.ADMIN_INVALID_RESET,
+					"The reset value is not a valid boolean: " + value);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Validates whether or not the caches should be re-read from the
+	 * database. If the value is null or whitespace only, false is returned.
+	 * 
+	 * @param value The value to validate.
+	 * 
+	 * @return Whether or not the caches should be re-read.
+	 * 
+	 * @throws ValidationException Thrown if the value is not a valid boolean.
+	 */
+	public static boolean validateInvalidate(
+			final String value)
+			throws ValidationException {
+
+		if(StringUtils.isEmptyOrWhitespaceOnly(value)) {
+			return false;
+		}
+
+		Boolean result = StringUtils.decodeBoolean(value.trim());
+		if(result == null) {
+			throw new ValidationException(
+					ErrorCode.ADMIN_INVALID_INVALIDATE,
+					"The invalidate value is not a valid boolean: " + value);
+		}
+
+		return result;
+	}
+}
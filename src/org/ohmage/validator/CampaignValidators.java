@@ -26,7 +26,6 @@ import org.apache.log4j.Logger;
 import org.joda.time.DateTime;
 import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 import org.ohmage.annotator.Annotator.ErrorCode;
 import org.ohmage.domain.campaign.Campaign;
 import org.ohmage.domain.campaign.Campaign.OutputFormat;
@@ -34,6 +33,7 @@ import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
 import org.ohmage.util.DateTimeUtils;
+import org.ohmage.util.JsonArrayReader;
 import org.ohmage.util.StringUtils;
 
 /**
@@ -541,16 +541,18 @@ public final class CampaignValidators {
 	}
 
 	/**
-	 * Validates that a string uploaded by a client is a valid JSONArray of
-	 * JSONObjects. It does no validation of the individual survey responses.
+	 * Validates that a string uploaded by a client is a JSONArray. Only the
+	 * start of the array is read here; the responses themselves are parsed
+	 * once, as they are read one at a time with a {@link JsonArrayReader},
+	 * and are only validated then.
 	 * 
 	 * @param uploadValue The string uploaded by the client.
 	 * 
-	 * @return A list of the survey responses as JSONObjects.
+	 * @return The uploaded string.
 	 * 
-	 * @throws ValidationException Thrown if the response was not valid JSON.
+	 * @throws ValidationException Thrown if the upload was not a JSONArray.
 	 */
-	public static List<JSONObject> validateUploadedJson(
+	public static String validateUploadedJson(
 			final String uploadValue) throws ValidationException {
 		LOGGER.info("Validating the uploaded JSON.");
 
@@ -558,9 +560,8 @@ public final class CampaignValidators {
 			return null;
 		}
 
-		JSONArray surveyResponseJson;
 		try {
-			surveyResponseJson = new JSONArray(uploadValue);
+			new JsonArrayReader(uploadValue).close();
 		}
 		catch(JSONException e) {
 			throw new ValidationException(
@@ -569,22 +570,94 @@ public final class CampaignValidators {
 					"The uploaded JSON was not a JSONArray: " + uploadValue, 
 					e);
 		}
-		int numResponses = surveyResponseJson.length();
 
-		List<JSONObject> result = new ArrayList<JSONObject>(numResponses);
+		return uploadValue;
+	}
 
-		for(int i = 0; i < numResponses; i++) {
-			try {
-				result.add(surveyResponseJson.getJSONObject(i));
+	/**
+	 * Validates that the number of campaigns to skip is a non-negative 
+	 * number.
+	 * 
+	 * @param value The value to validate.
+	 *  
+	 * @return The validated number of campaigns to skip.
+	 * 
+	 * @throws ValidationException There was a problem decoding the number or 
+	 * 							   it was an invalid number.
+	 */
+	public static int validateNumToSkip(
+			final String value) 
+			throws ValidationException {
+		
+		LOGGER.info("Validating that a number of campaigns to skip is valid.");
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(value)) {
+			return 0;
+		}
+		
+		try {
+			int numToSkip = Integer.decode(value);
+			
+			if(numToSkip < 0) {
+				throw new ValidationException(
+						ErrorCode.SERVER_INVALID_NUM_TO_SKIP,
+						"The number of campaigns to skip is negative: " +
+							value);
 			}
-			catch(JSONException e) {
+			
+			return numToSkip;
+		}
+		catch(NumberFormatException e) {
+			throw new ValidationException(
+					ErrorCode.SERVER_INVALID_NUM_TO_SKIP,
+					"The number of campaigns to skip is not a number: " +
+							value);
+		}
+	}
+	
+	/**
+	 * Validates that a number of campaigns to return is a non-negative number
+	 * less than or equal to the maximum allowed number of campaigns to 
+	 * return.
+	 * 
+	 * @param value The value to be validated.
+	 * 
+	 * @return A number between 0 and {@link Campaign#MAX_NUM_TO_RETURN}.
+	 * 
+	 * @throws ValidationException The number was not valid.
+	 */
+	public static int validateNumToReturn(final String value) 
+			throws ValidationException {
+		
+		LOGGER.info("Validating that a number of campaigns to return is valid.");
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(value)) {
+			return Campaign.MAX_NUM_TO_RETURN;
+		}
+		
+		try {
+			int numToReturn = Integer.decode(value);
+			
+			if(numToReturn < 0) {
+				throw new ValidationException(
+						ErrorCode.SERVER_INVALID_NUM_TO_RETURN,
+						"The number of campaigns to return cannot be negative: " +
+								value);
+			}
+			else if(numToReturn > Campaign.MAX_NUM_TO_RETURN) {
 				throw new ValidationException(
-						ErrorCode.SERVER_INVALID_JSON, 
-						"One of the survey responses was not valid JSON.", 
-						e);
+						ErrorCode.SERVER_INVALID_NUM_TO_RETURN,
+						"The number of campaigns to return is greater than the max allowed: " +
+							Campaign.MAX_NUM_TO_RETURN);
 			}
+			
+			return numToReturn;
+		}
+		catch(NumberFormatException e) {
+			throw new ValidationException(
+					ErrorCode.SERVER_INVALID_NUM_TO_RETURN,
+					"The number of campaigns to return is not a number: " +
+							value);
 		}
-
-		return result;
 	}
 }
@@ -0,0 +1,78 @@
+package org.ohmage.validator;
+
+import java.util.UUID;
+
+import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.util.StringUtils;
+
+/**
+ * This class is responsible for validating information about export jobs.
+ */
+public final class ExportJobValidators {
+	/**
+	 * Default constructor. Private so that it cannot be instantiated.
+	 */
+	private ExportJobValidators() {}
+
+	/**
+	 * Validates that an export job's ID is a valid ID. If it is null or
+	 * whitespace only, null is returned.
+	 * 
+	 * @param id The export job's ID.
+	 * 
+	 * @return Returns null if the ID is null or whitespace only; otherwise,
+	 * 		   the ID is returned.
+	 * 
+	 * @throws ValidationException Thrown if the ID is not null, not
+	 * 							   whitespace only, and not a valid ID.
+	 */
+	public static UUID validateId(
+			final String id)
+			throws ValidationException {
+
+		if(StringUtils.isEmptyOrWhitespaceOnly(id)) {
+			return null;
+		}
+
+		try {
+			return UUID.fromString(id.trim());
+		}
+		catch(IllegalArgumentException e) {
+			throw new ValidationException(
+					ErrorCode.EXPORT_INVALID_ID,
+					"The export job ID is not a valid ID: " + id);
+		}
+	}
+
+	/**
+	 * Validates that an export type is one of the known types. If it is null
+	 * or whitespace only, null is returned.
+	 * 
+	 * @param type The export type.
+	 * 
+	 * @return Returns null if the type is null or whitespace only; otherwise,
+	 * 		   the type is returned.
+	 * 
+	 * @throws ValidationException Thrown if the type is not null, not
+	 * 							   whitespace only, and not a known type.
+	 */
+	public static ExportJob.Type validateType(
+			final String type)
+			throws ValidationException {
+
+		if(StringUtils.isEmptyOrWhitespaceOnly(type)) {
+			return null;
+		}
+
+		try {
+			return ExportJob.Type.getValue(type.trim());
+		}
+		catch(IllegalArgumentException e) {
+			throw new ValidationException(
+					ErrorCode.EXPORT_INVALID_TYPE,
+					"The export type is unknown: " + type);
+		}
+	}
+}
@@ -34,6 +34,7 @@ import org.ohmage.domain.MobilityPoint.MobilityColumnKey;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
+import org.ohmage.util.JsonArrayReader;
 import org.ohmage.util.StringUtils;
 import org.ohmage.util.DateTimeUtils;
 
@@ -126,13 +127,13 @@ public final class MobilityValidators {
 			return null;
 		}
 		
+		JsonArrayReader reader = null;
 		try {
-			JSONArray jsonArray = new JSONArray(data.trim());
+			reader = new JsonArrayReader(data.trim());
 			
 			List<MobilityPoint> result = new LinkedList<MobilityPoint>();
-			for(int i = 0; i < jsonArray.length(); i++) {
-				JSONObject mobilityPointJson = jsonArray.getJSONObject(i);
-				
+			JSONObject mobilityPointJson;
+			while((mobilityPointJson = reader.next()) != null) {
 				try {
 					result.add(
 							new MobilityPoint(
@@ -153,6 +154,11 @@ public final class MobilityValidators {
 					"The JSONArray containing the data is malformed.", 
 					e);
 		}
+		finally {
+			if(reader != null) {
+				reader.close();
+			}
+		}
 	}
 	
 	/**
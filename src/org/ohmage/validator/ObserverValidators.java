@@ -1,6 +1,7 @@
 package org.ohmage.validator;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -12,12 +13,13 @@ import org.codehaus.jackson.map.MappingJsonFactory;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormatter;
 import org.ohmage.annotator.Annotator.ErrorCode;
+import org.ohmage.domain.ColumnNode;
+import org.ohmage.domain.DataStream;
 import org.ohmage.domain.ISOW3CDateTimeFormat;
 import org.ohmage.domain.Observer;
 import org.ohmage.exception.DomainException;
 import org.ohmage.exception.ValidationException;
 import org.ohmage.request.InputKeys;
-import org.ohmage.request.observer.StreamReadRequest.ColumnNode;
 import org.ohmage.util.StringUtils;
 
 /**
@@ -281,6 +283,41 @@ public class ObserverValidators {
 		}
 	}
 	
+	/**
+	 * Decodes uploaded data that is being read incrementally, e.g. from a
+	 * parameter that was streamed to a temporary file, as a JSON array of JSON
+	 * objects. The reader is closed when the parser is closed or reaches the
+	 * end of the data.
+	 * 
+	 * @param value The reader for the value to be validated.
+	 * 
+	 * @return A parser over the data or null if the reader was null.
+	 * 
+	 * @throws ValidationException The data is invalid.
+	 */
+	public static final JsonParser validateData(
+			final Reader value)
+			throws ValidationException {
+		
+		if(value == null) {
+			return null;
+		}
+		
+		try {
+			return (new MappingJsonFactory()).createJsonParser(value);
+		}
+		catch(JsonParseException e) {
+			throw
+				new ValidationException(
+					ErrorCode.OBSERVER_INVALID_STREAM_DATA,
+					"The data is not valid JSON.",
+					e);
+		}
+		catch(IOException e) {
+			throw new ValidationException("The data could not be read.", e);
+		}
+	}
+	
 	/**
 	 * Validates that a date is a valid date with or without time.
 	 * 
@@ -436,6 +473,35 @@ public class ObserverValidators {
 		}
 	}
 	
+	/**
+	 * Validates that a cursor is one that was generated by the server.
+	 * 
+	 * @param value The value to validate.
+	 * 
+	 * @return The decoded cursor or null if the value was null or only
+	 * 		   whitespace.
+	 * 
+	 * @throws ValidationException The value is not a valid cursor.
+	 */
+	public static final DataStream.Cursor validateCursor(
+			final String value)
+			throws ValidationException {
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(value)) {
+			return null;
+		}
+		
+		try {
+			return DataStream.Cursor.decode(value.trim());
+		}
+		catch(DomainException e) {
+			throw new ValidationException(
+				ErrorCode.OBSERVER_INVALID_CURSOR,
+				"The cursor is invalid: " + value,
+				e);
+		}
+	}
+	
 	/**
 	 * Validates that the number to return is positive or zero and less than or
 	 * equal to the maximum allowed.
@@ -482,4 +548,42 @@ public class ObserverValidators {
 				e);
 		}
 	}
+	
+	/**
+	 * Validates that a bucket size is a positive number of milliseconds.
+	 * 
+	 * @param value The value to validate.
+	 * 
+	 * @return The bucket size in milliseconds or null if the value was null 
+	 * 		   or only whitespace.
+	 * 
+	 * @throws ValidationException The value is not a number or is not 
+	 * 							   positive.
+	 */
+	public static final Long validateBucketSize(
+			final String value)
+			throws ValidationException {
+		
+		if(StringUtils.isEmptyOrWhitespaceOnly(value)) {
+			return null;
+		}
+		
+		try {
+			long result = Long.decode(value.trim());
+			
+			if(result <= 0) {
+				throw new ValidationException(
+					ErrorCode.OBSERVER_INVALID_BUCKET_SIZE,
+					"The bucket size must be positive: " + result);
+			}
+			
+			return result;
+		}
+		catch(NumberFormatException e) {
+			throw new ValidationException(
+				ErrorCode.OBSERVER_INVALID_BUCKET_SIZE,
+				"The bucket size is not a valid number: " + value,
+				e);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package org.ohmage.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the n-gram index.
+ */
+public class NGramIndexTest extends TestCase {
+	private static final String FIELD_NAME = "name";
+	private static final String FIELD_DESCRIPTION = "description";
+
+	private NGramIndex index;
+
+	/**
+	 * Creates an index with a few entities.
+	 */
+	@Override
+	protected void setUp() {
+		index = new NGramIndex("test");
+		index.put("a", fields("Alice Anderson", "Likes Java"));
+		index.put("b", fields("Bob Brown", "Likes JavaScript"));
+		index.put("c", fields("Carol Cox", null));
+	}
+
+	/**
+	 * Tests that values shorter than an n-gram are still found anywhere in a
+	 * field.
+	 */
+	@Test
+	public void testSearchShortValues() {
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a", "c")),
+			index.search(FIELD_NAME, "c"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("b")),
+			index.search(FIELD_NAME, "ob"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a", "b", "c")),
+			index.search(FIELD_NAME, ""));
+		Assert.assertEquals(
+			Collections.emptySet(),
+			index.search(FIELD_NAME, "zz"));
+
+		// A field that is missing never matches, even the empty value.
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a", "b")),
+			index.search(FIELD_DESCRIPTION, ""));
+	}
+
+	/**
+	 * Tests that the values and the search are compared without case.
+	 */
+	@Test
+	public void testSearchIgnoresCase() {
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a")),
+			index.search(FIELD_NAME, "ALICE"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a")),
+			index.search(FIELD_NAME, "aNdErS"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a", "b")),
+			index.search(FIELD_DESCRIPTION, "java"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("b")),
+			index.search(FIELD_DESCRIPTION, "JAVASCRIPT"));
+	}
+
+	/**
+	 * Tests that only the given field is searched.
+	 */
+	@Test
+	public void testSearchField() {
+		Assert.assertEquals(
+			Collections.emptySet(),
+			index.search(FIELD_NAME, "likes"));
+		Assert.assertEquals(
+			Collections.emptySet(),
+			index.search("unknown", "alice"));
+		Assert.assertEquals(
+			Collections.emptySet(),
+			index.search(null, "alice"));
+		Assert.assertEquals(
+			Collections.emptySet(),
+			index.search(FIELD_NAME, null));
+	}
+
+	/**
+	 * Tests that a value whose n-grams are all in a field, but not next to
+	 * each other, does not match.
+	 */
+	@Test
+	public void testSearchNonContiguousGrams() {
+		NGramIndex grams = new NGramIndex("grams");
+		// Has "abc" and "cde", but not "abcde".
+		grams.put("x", fields("abc-cde", null));
+		grams.put("y", fields("xxabcdexx", null));
+
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("y")),
+			grams.search(FIELD_NAME, "abcde"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("x", "y")),
+			grams.search(FIELD_NAME, "abc"));
+	}
+
+	/**
+	 * Tests that replacing an entity removes the postings of its old values
+	 * and that removing it removes all of its postings.
+	 */
+	@Test
+	public void testPutReplacesAndRemoveCleansPostings() {
+		NGramIndex single = new NGramIndex("single");
+		single.put("a", fields("abcd", null));
+		// "abc" and "bcd".
+		Assert.assertEquals(2, single.getNumPostings());
+
+		single.put("a", fields("wxyz", "abc"));
+		Assert.assertEquals(1, single.size());
+		Assert.assertEquals(
+			Collections.emptySet(),
+			single.search(FIELD_NAME, "abcd"));
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("a")),
+			single.search(FIELD_NAME, "wxyz"));
+		// "wxy" and "xyz" for the name and "abc" for the description.
+		Assert.assertEquals(3, single.getNumPostings());
+
+		// A posting shared with another entity is kept until both are gone.
+		single.put("b", fields("xyz", null));
+		Assert.assertEquals(3, single.getNumPostings());
+		single.remove("a");
+		Assert.assertFalse(single.contains("a"));
+		Assert.assertEquals(1, single.getNumPostings());
+		Assert.assertEquals(
+			new TreeSet<String>(Arrays.asList("b")),
+			single.search(FIELD_NAME, "xyz"));
+
+		single.remove("b");
+		single.remove("unknown");
+		single.remove(null);
+		Assert.assertEquals(0, single.size());
+		Assert.assertEquals(0, single.getNumPostings());
+	}
+
+	/**
+	 * Tests that the keys are returned in their natural order.
+	 */
+	@Test
+	public void testGetKeys() {
+		Assert.assertEquals(
+			Arrays.asList("a", "b", "c"),
+			new ArrayList<String>(index.getKeys()));
+	}
+
+	/**
+	 * Builds an entity's fields.
+	 */
+	private static Map<String, String> fields(
+			final String name,
+			final String description) {
+
+		Map<String, String> result = new HashMap<String, String>();
+		result.put(FIELD_NAME, name);
+		result.put(FIELD_DESCRIPTION, description);
+		return result;
+	}
+}
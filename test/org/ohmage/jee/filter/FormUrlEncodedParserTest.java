@@ -0,0 +1,263 @@
+package org.ohmage.jee.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ohmage.jee.filter.FormUrlEncodedParser.LimitExceededException;
+import org.ohmage.jee.filter.FormUrlEncodedParser.MalformedBodyException;
+
+/**
+ * Tests the form body parser and its limits.
+ */
+public class FormUrlEncodedParserTest extends TestCase {
+	private static final long MAX_BODY_SIZE = 1024;
+	private static final long MAX_IN_MEMORY_SIZE = 64;
+	private static final int MAX_PARAMETERS = 4;
+	private static final long STREAM_THRESHOLD = 16;
+	private static final Collection<String> STREAMABLE =
+		Collections.singleton("data");
+
+	private File tempDirectory;
+
+	/**
+	 * Creates an empty directory for the temporary files.
+	 */
+	@Override
+	protected void setUp() throws IOException {
+		tempDirectory = File.createTempFile("ohmage-parser-test", "");
+		tempDirectory.delete();
+		tempDirectory.mkdir();
+	}
+
+	/**
+	 * Deletes the directory for the temporary files.
+	 */
+	@Override
+	protected void tearDown() {
+		File[] files = tempDirectory.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.delete();
+			}
+		}
+		tempDirectory.delete();
+	}
+
+	/**
+	 * Tests that the keys and values are decoded.
+	 */
+	@Test
+	public void testDecoding() throws Exception {
+		FormUrlEncodedParser parser =
+			parse("a=b+c&a=%C3%A9%2B&empty=&&trailing=1&");
+		Map<String, String[]> parameters = parser.getParameters();
+
+		Assert.assertEquals(3, parameters.size());
+		Assert.assertEquals(
+			Arrays.asList("b c", "é+"),
+			Arrays.asList(parameters.get("a")));
+		Assert.assertEquals(
+			Arrays.asList(""),
+			Arrays.asList(parameters.get("empty")));
+		Assert.assertEquals(
+			Arrays.asList("1"),
+			Arrays.asList(parameters.get("trailing")));
+		Assert.assertTrue(parser.getStreamedParameters().isEmpty());
+	}
+
+	/**
+	 * Tests that a body that is too large is rejected.
+	 */
+	@Test
+	public void testMaxBodySize() throws Exception {
+		StringBuilder body = new StringBuilder("a=");
+		while(body.length() < MAX_BODY_SIZE) {
+			body.append("1");
+		}
+		parse(body.toString(), MAX_BODY_SIZE, Long.MAX_VALUE);
+
+		body.append("1");
+		try {
+			parse(body.toString(), MAX_BODY_SIZE, Long.MAX_VALUE);
+			fail("A body that was too large was accepted.");
+		}
+		catch(LimitExceededException e) {
+			// Passed.
+		}
+	}
+
+	/**
+	 * Tests that the decoded parameters kept in memory are limited, but
+	 * streamed values are not counted.
+	 */
+	@Test
+	public void testMaxInMemorySize() throws Exception {
+		StringBuilder value = new StringBuilder();
+		while(value.length() < MAX_IN_MEMORY_SIZE) {
+			value.append("1");
+		}
+
+		try {
+			parse("a=" + value);
+			fail("Parameters that were too large were accepted.");
+		}
+		catch(LimitExceededException e) {
+			// Passed.
+		}
+
+		// Escaped bytes count once they are decoded.
+		StringBuilder escaped = new StringBuilder("a=");
+		for(int i = 0; i < MAX_IN_MEMORY_SIZE - 1; i++) {
+			escaped.append("%31");
+		}
+		Assert.assertEquals(
+			MAX_IN_MEMORY_SIZE - 1,
+			parse(escaped.toString()).getParameters().get("a")[0].length());
+
+		FormUrlEncodedParser parser = parse("data=" + value + value);
+		Assert.assertTrue(parser.getParameters().isEmpty());
+		Assert.assertEquals(
+			(value.toString() + value),
+			parser.getStreamedParameters().get("data").getValue());
+	}
+
+	/**
+	 * Tests that the number of parameters is limited and that empty pairs are
+	 * not counted.
+	 */
+	@Test
+	public void testMaxParameters() throws Exception {
+		parse("a=1&b=2&&c=3&d=4&");
+
+		try {
+			parse("a=1&b=2&c=3&d=4&e=5");
+			fail("Too many parameters were accepted.");
+		}
+		catch(LimitExceededException e) {
+			// Passed.
+		}
+	}
+
+	/**
+	 * Tests that only a streamable value beyond the threshold is streamed.
+	 */
+	@Test
+	public void testStreamThreshold() throws Exception {
+		StringBuilder small = new StringBuilder();
+		while(small.length() < STREAM_THRESHOLD) {
+			small.append("x");
+		}
+		String large = small + "%20y";
+
+		FormUrlEncodedParser parser =
+			parse("data=" + small + "&other=" + small);
+		Assert.assertTrue(parser.getStreamedParameters().isEmpty());
+		Assert.assertEquals(
+			small.toString(),
+			parser.getParameters().get("data")[0]);
+
+		parser = parse("data=" + large + "&other=" + small);
+		Assert.assertFalse(parser.getParameters().containsKey("data"));
+		StreamedParameter streamed =
+			parser.getStreamedParameters().get("data");
+		Assert.assertEquals(small + " y", streamed.getValue());
+		Assert.assertEquals(STREAM_THRESHOLD + 2, streamed.getLength());
+		streamed.delete();
+	}
+
+	/**
+	 * Tests that malformed bodies are rejected.
+	 */
+	@Test
+	public void testMalformed() throws Exception {
+		String[] bodies =
+			new String[] {
+				"a=1=2",
+				"a=%zz",
+				"a=%2",
+				"a",
+				"a=1&b"
+			};
+		for(String body : bodies) {
+			try {
+				parse(body);
+				fail("A malformed body was accepted: " + body);
+			}
+			catch(MalformedBodyException e) {
+				// Passed.
+			}
+		}
+	}
+
+	/**
+	 * Tests that a streamed value cannot be combined with another value and
+	 * that the temporary files are deleted when the body is rejected.
+	 */
+	@Test
+	public void testFailureDeletesTemporaryFiles() throws Exception {
+		StringBuilder large = new StringBuilder();
+		while(large.length() <= STREAM_THRESHOLD) {
+			large.append("x");
+		}
+
+		String[] bodies =
+			new String[] {
+				"data=" + large + "&data=" + large,
+				"data=1&data=" + large,
+				"data=" + large + "&a=%zz",
+				"data=" + large + "%2"
+			};
+		for(String body : bodies) {
+			try {
+				parse(body);
+				fail("A malformed body was accepted: " + body);
+			}
+			catch(MalformedBodyException e) {
+				// Passed.
+			}
+			Assert.assertEquals(
+				"A temporary file was left behind: " + body,
+				0,
+				tempDirectory.list().length);
+		}
+	}
+
+	/**
+	 * Parses a body with the default limits.
+	 */
+	private FormUrlEncodedParser parse(final String body)
+			throws IOException, MalformedBodyException, LimitExceededException {
+
+		return parse(body, MAX_BODY_SIZE, MAX_IN_MEMORY_SIZE);
+	}
+
+	/**
+	 * Parses a body.
+	 */
+	private FormUrlEncodedParser parse(
+			final String body,
+			final long maxBodySize,
+			final long maxInMemorySize)
+			throws IOException, MalformedBodyException, LimitExceededException {
+
+		FormUrlEncodedParser result =
+			new FormUrlEncodedParser(
+				maxBodySize,
+				maxInMemorySize,
+				MAX_PARAMETERS,
+				STREAMABLE,
+				STREAM_THRESHOLD,
+				tempDirectory);
+		result.parse(new ByteArrayInputStream(body.getBytes("UTF-8")));
+		return result;
+	}
+}
@@ -0,0 +1,822 @@
+package org.ohmage.query.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonNode;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.MappingJsonFactory;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.junit.Assert;
+import org.junit.Test;
+import org.ohmage.domain.ColumnNode;
+import org.ohmage.domain.DataStream;
+import org.ohmage.domain.DataStreamBucket;
+import org.ohmage.domain.DataStreamBucket.Statistics;
+
+/**
+ * Tests the parts of the observer queries that don't need a database.
+ */
+public class ObserverQueriesTest extends TestCase {
+	private static final ObjectMapper JSON_MAPPER =
+		new ObjectMapper(new MappingJsonFactory());
+	private static final ObjectMapper SMILE_MAPPER =
+		new ObjectMapper(new SmileFactory());
+
+	private static final long HOUR = ObserverQueries.ROLLUP_HOUR;
+	private static final long DAY = ObserverQueries.ROLLUP_DAY;
+
+	private static final String DATA =
+		"{" +
+			"\"battery\":78," +
+			"\"charging\":true," +
+			"\"network\":{\"type\":\"lte\",\"signal\":-57,\"roaming\":false}," +
+			"\"devices\":[" +
+				"{\"address\":\"a\",\"rssi\":-50,\"name\":\"x\"}," +
+				"{\"address\":\"b\",\"rssi\":-90}," +
+				"[{\"address\":\"c\",\"rssi\":-1}]" +
+			"]," +
+			"\"note\":null" +
+		"}";
+
+	/**
+	 * Tests that reading without a projection keeps all of the data.
+	 */
+	@Test
+	public void testReadColumnsAll() throws IOException {
+		JsonNode expected = JSON_MAPPER.readTree(DATA);
+
+		Assert.assertEquals(expected, readJson(null));
+		Assert.assertEquals(expected, readSmile(null));
+		Assert.assertEquals(expected, readJson(new ColumnNode<String>()));
+		Assert.assertEquals(expected, readSmile(new ColumnNode<String>()));
+	}
+
+	/**
+	 * Tests that only the requested fields are kept, that a leaf keeps its
+	 * whole value, and that the columns of an array apply to each element,
+	 * for both the JSON text and the binary encoding.
+	 */
+	@Test
+	public void testReadColumnsProjection() throws IOException {
+		ColumnNode<String> columns = new ColumnNode<String>();
+		columns.addChild("battery");
+		columns.addChild("network");
+		columns.getChild("network").addChild("signal");
+		columns.addChild("devices");
+		columns.getChild("devices").addChild("rssi");
+		columns.addChild("missing");
+
+		JsonNode expected =
+			JSON_MAPPER.readTree(
+				"{" +
+					"\"battery\":78," +
+					"\"network\":{\"signal\":-57}," +
+					"\"devices\":[" +
+						"{\"rssi\":-50}," +
+						"{\"rssi\":-90}," +
+						"[{\"rssi\":-1}]" +
+					"]" +
+				"}");
+
+		Assert.assertEquals(expected, readJson(columns));
+		Assert.assertEquals(expected, readSmile(columns));
+
+		// A leaf keeps the entire object.
+		columns = new ColumnNode<String>();
+		columns.addChild("network");
+		columns.addChild("note");
+		expected =
+			JSON_MAPPER.readTree(
+				"{" +
+					"\"network\":{\"type\":\"lte\",\"signal\":-57,\"roaming\":false}," +
+					"\"note\":null" +
+				"}");
+
+		Assert.assertEquals(expected, readJson(columns));
+		Assert.assertEquals(expected, readSmile(columns));
+	}
+
+	/**
+	 * Tests that the parser is left at the end of the value, so that the
+	 * fields after a skipped one are still read.
+	 */
+	@Test
+	public void testReadColumnsSkipsNestedValues() throws IOException {
+		ColumnNode<String> columns = new ColumnNode<String>();
+		columns.addChild("note");
+
+		JsonNode expected = JSON_MAPPER.readTree("{\"note\":null}");
+		Assert.assertEquals(expected, readJson(columns));
+		Assert.assertEquals(expected, readSmile(columns));
+
+		columns = new ColumnNode<String>();
+		columns.addChild("unknown");
+		expected = JSON_MAPPER.readTree("{}");
+		Assert.assertEquals(expected, readJson(columns));
+		Assert.assertEquals(expected, readSmile(columns));
+	}
+
+	/**
+	 * Tests that both tables are limited to a page, or to the end of the
+	 * page when points are skipped, and that a cursor seeks in both.
+	 */
+	@Test
+	public void testBuildReadDataSql() {
+		List<Object> parameters = new LinkedList<Object>();
+		String sql =
+			ObserverQueries.buildReadDataSql(
+				"user", 7, null, null, true, null, 20, 10, parameters);
+		Assert.assertEquals(
+			Arrays.<Object>asList(
+				"user", 7L, 30L, "user", 7L, 30L, 20L, 10L),
+			parameters);
+		Assert.assertTrue(sql.contains("observer_stream_data_query"));
+		Assert.assertTrue(sql.contains("observer_stream_data_archive_query"));
+		Assert.assertTrue(sql.endsWith("ORDER BY osd.time ASC, osd.id ASC LIMIT ?, ?"));
+
+		parameters.clear();
+		sql =
+			ObserverQueries.buildReadDataSql(
+				"user",
+				7,
+				null,
+				null,
+				true,
+				new DataStream.Cursor(100, 5, true),
+				0,
+				10,
+				parameters);
+		Assert.assertEquals(
+			Arrays.<Object>asList(
+				"user", 7L, 100L, 100L, 5L, 10L,
+				"user", 7L, 100L, 100L, 5L, 10L,
+				10L),
+			parameters);
+		Assert.assertTrue(sql.contains("observer_stream_data_cursor"));
+		Assert.assertTrue(sql.contains("observer_stream_data_archive_cursor"));
+		Assert.assertTrue(sql.contains("(time < ? OR (time = ? AND id < ?))"));
+		Assert.assertTrue(sql.endsWith("ORDER BY osd.time DESC, osd.id DESC LIMIT ?"));
+	}
+
+	/**
+	 * Tests that paging through points that are split between the live and
+	 * archive tables, with the number to skip or with cursors in either
+	 * direction, returns every point once and in order. Many points share a
+	 * time, and their IDs don't follow their times.
+	 */
+	@Test
+	public void testReadDataPaging() {
+		List<long[]> points = new ArrayList<long[]>();
+		for(long id = 1; id <= 40; id++) {
+			points.add(new long[] { (id * 7) % 10, id });
+		}
+
+		// The archive holds every third point or only the older points.
+		for(int split = 0; split < 2; split++) {
+			List<long[]> live = new ArrayList<long[]>();
+			List<long[]> archive = new ArrayList<long[]>();
+			for(long[] point : points) {
+				boolean archived =
+					(split == 0) ? (point[1] % 3 == 0) : (point[0] < 5);
+				(archived ? archive : live).add(point);
+			}
+
+			for(boolean chronological : new boolean[] { true, false }) {
+				List<long[]> expected = new ArrayList<long[]>(points);
+				Collections.sort(expected, getOrder(chronological));
+
+				for(int numToReturn : new int[] { 1, 3, 7, 40, 50 }) {
+					assertPaging(
+						live,
+						archive,
+						chronological,
+						numToReturn,
+						expected);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Pages through the points every way and compares each with the points
+	 * in the expected order.
+	 */
+	private static void assertPaging(
+			final List<long[]> live,
+			final List<long[]> archive,
+			final boolean chronological,
+			final int numToReturn,
+			final List<long[]> expected) {
+
+		String message =
+			"chronological: " + chronological + ", page: " + numToReturn;
+
+		// Skip the points.
+		for(int numToSkip = 0; numToSkip < expected.size(); numToSkip++) {
+			Assert.assertEquals(
+				message,
+				toIds(
+					expected.subList(
+						numToSkip,
+						Math.min(numToSkip + numToReturn, expected.size()))),
+				toIds(
+					readData(
+						live,
+						archive,
+						chronological,
+						null,
+						numToSkip,
+						numToReturn)));
+		}
+
+		// Follow the "next" cursors from the first page.
+		List<long[]> page =
+			readData(live, archive, chronological, null, 0, numToReturn);
+		List<long[]> read = new ArrayList<long[]>(page);
+		while(page.size() == numToReturn) {
+			long[] last = page.get(page.size() - 1);
+			page =
+				readData(
+					live,
+					archive,
+					chronological,
+					new DataStream.Cursor(last[0], last[1], false),
+					0,
+					numToReturn);
+			read.addAll(page);
+		}
+		Assert.assertEquals(message, toIds(expected), toIds(read));
+
+		// Follow the "previous" cursors from the last page.
+		int lastStart = expected.size() - numToReturn;
+		if(lastStart < 0) {
+			lastStart = 0;
+		}
+		page =
+			readData(
+				live,
+				archive,
+				chronological,
+				null,
+				lastStart,
+				numToReturn);
+		read = new ArrayList<long[]>(page);
+		while(! page.isEmpty()) {
+			long[] first = page.get(0);
+			page =
+				readData(
+					live,
+					archive,
+					chronological,
+					new DataStream.Cursor(first[0], first[1], false)
+						.toBefore(),
+					0,
+					numToReturn);
+			read.addAll(0, page);
+		}
+		Assert.assertEquals(message, toIds(expected), toIds(read));
+	}
+
+	/**
+	 * Reads a page of points as the query that is built for it would, by
+	 * filtering, ordering, and limiting each table, and then the union, as
+	 * the query says to.
+	 */
+	private static List<long[]> readData(
+			final List<long[]> live,
+			final List<long[]> archive,
+			final boolean chronological,
+			final DataStream.Cursor cursor,
+			final long numToSkip,
+			final long numToReturn) {
+
+		List<Object> parameters = new ArrayList<Object>();
+		String sql =
+			ObserverQueries.buildReadDataSql(
+				"user",
+				1,
+				null,
+				null,
+				chronological,
+				cursor,
+				numToSkip,
+				numToReturn,
+				parameters);
+
+		boolean ascending = sql.contains("ORDER BY osd.time ASC, osd.id ASC");
+		Assert.assertTrue(
+			ascending || sql.contains("ORDER BY osd.time DESC, osd.id DESC"));
+		Comparator<long[]> order = getOrder(ascending);
+
+		// The parameters of each table's query.
+		int numWhereParameters = 2;
+		Long cursorTime = null;
+		Long cursorId = null;
+		if(sql.contains("(time > ? OR (time = ? AND id > ?))") ||
+			sql.contains("(time < ? OR (time = ? AND id < ?))")) {
+
+			Assert.assertEquals(
+				ascending,
+				sql.contains("(time > ? OR (time = ? AND id > ?))"));
+			numWhereParameters += 3;
+			cursorTime = (Long) parameters.get(2);
+			cursorId = (Long) parameters.get(4);
+		}
+		long innerLimit = (Long) parameters.get(numWhereParameters);
+		Assert.assertEquals(
+			innerLimit,
+			parameters.get((2 * numWhereParameters) + 1));
+
+		List<long[]> union = new ArrayList<long[]>();
+		for(List<long[]> table : Arrays.asList(live, archive)) {
+			List<long[]> rows = new ArrayList<long[]>();
+			for(long[] point : table) {
+				if((cursorTime == null) ||
+					(order.compare(point, new long[] { cursorTime, cursorId }) > 0)) {
+
+					rows.add(point);
+				}
+			}
+			Collections.sort(rows, order);
+			union.addAll(rows.subList(0, (int) Math.min(innerLimit, rows.size())));
+		}
+		Collections.sort(union, order);
+
+		long skip;
+		long limit = (Long) parameters.get(parameters.size() - 1);
+		if(sql.endsWith("LIMIT ?, ?")) {
+			skip = (Long) parameters.get(parameters.size() - 2);
+		}
+		else {
+			skip = 0;
+		}
+		List<long[]> result =
+			new ArrayList<long[]>(
+				union.subList(
+					(int) Math.min(skip, union.size()),
+					(int) Math.min(skip + limit, union.size())));
+
+		// As readData does.
+		if((cursor != null) && cursor.isBefore()) {
+			Collections.reverse(result);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the order of the points by their time and then their ID.
+	 */
+	private static Comparator<long[]> getOrder(final boolean ascending) {
+		return new Comparator<long[]>() {
+			@Override
+			public int compare(final long[] first, final long[] second) {
+				int result =
+					(first[0] == second[0]) ?
+						Long.valueOf(first[1]).compareTo(second[1]) :
+						Long.valueOf(first[0]).compareTo(second[0]);
+				return (ascending) ? result : -result;
+			}
+		};
+	}
+
+	/**
+	 * Returns the IDs of the points.
+	 */
+	private static List<Long> toIds(final List<long[]> points) {
+		List<Long> result = new ArrayList<Long>(points.size());
+		for(long[] point : points) {
+			result.add(point[1]);
+		}
+		return result;
+	}
+
+	/**
+	 * Tests that whole days are only read from the daily summaries and whole
+	 * hours from the hourly summaries when both the origin and the bucket
+	 * size allow it, and that the remainder is left to the raw points.
+	 */
+	@Test
+	public void testGetRollupEnds() {
+		long origin = 10 * DAY;
+		long end = origin + (2 * DAY) + (3 * HOUR) + 5;
+
+		// Buckets smaller than an hour are read from the raw points.
+		assertRollupEnds(origin, origin, origin, end, HOUR / 4);
+		// Hourly buckets only use the hourly summaries.
+		assertRollupEnds(origin, origin + (51 * HOUR), origin, end, HOUR);
+		// Daily buckets use the daily summaries for the whole days.
+		assertRollupEnds(
+			origin + (2 * DAY),
+			origin + (51 * HOUR),
+			origin,
+			end,
+			DAY);
+
+		// An inclusive end just before an hour completes that hour, leaving
+		// nothing for the raw points.
+		assertRollupEnds(
+			origin + DAY,
+			origin + DAY,
+			origin,
+			origin + DAY - 1,
+			DAY);
+		assertRollupEnds(origin, origin, origin, origin + HOUR - 2, HOUR);
+
+		// An origin that is on an hour but not a day can't use the daily
+		// summaries, and one that isn't on an hour can't use either.
+		assertRollupEnds(
+			origin + HOUR,
+			origin + (51 * HOUR),
+			origin + HOUR,
+			end,
+			DAY);
+		assertRollupEnds(origin + 1, origin + 1, origin + 1, end, DAY);
+	}
+
+	/**
+	 * Tests that the buckets are aligned to the origin, that a point is added
+	 * to the last bucket if it belongs there, and that empty buckets are not
+	 * created.
+	 */
+	@Test
+	public void testGetBucket() {
+		List<String> names = Arrays.asList("v");
+		List<DataStreamBucket> buckets = new ArrayList<DataStreamBucket>();
+
+		DataStreamBucket first =
+			ObserverQueries.getBucket(buckets, 1000, 1000, 100, names);
+		Assert.assertSame(
+			first,
+			ObserverQueries.getBucket(buckets, 1099, 1000, 100, names));
+		DataStreamBucket second =
+			ObserverQueries.getBucket(buckets, 1100, 1000, 100, names);
+		DataStreamBucket third =
+			ObserverQueries.getBucket(buckets, 1350, 1000, 100, names);
+
+		Assert.assertEquals(Arrays.asList(first, second, third), buckets);
+		Assert.assertEquals(1000, first.getStart());
+		Assert.assertEquals(1100, second.getStart());
+		Assert.assertEquals(1300, third.getStart());
+	}
+
+	/**
+	 * Tests that times are truncated to the start of their period, including
+	 * times before the epoch.
+	 */
+	@Test
+	public void testTruncate() {
+		Assert.assertEquals(0, ObserverQueries.truncate(0, HOUR));
+		Assert.assertEquals(0, ObserverQueries.truncate(HOUR - 1, HOUR));
+		Assert.assertEquals(HOUR, ObserverQueries.truncate(HOUR + 5, HOUR));
+		Assert.assertEquals(-HOUR, ObserverQueries.truncate(-1, HOUR));
+		Assert.assertEquals(-HOUR, ObserverQueries.truncate(-HOUR, HOUR));
+		Assert.assertEquals(
+			-2 * DAY,
+			ObserverQueries.truncate(-DAY - 1, DAY));
+	}
+
+	/**
+	 * Tests that the columns are named by their paths and that only numbers
+	 * are summarized.
+	 */
+	@Test
+	public void testGetValues() throws IOException {
+		List<List<String>> paths =
+			Arrays.asList(
+				Arrays.asList("battery"),
+				Arrays.asList("network", "signal"),
+				Arrays.asList("network", "type"),
+				Arrays.asList("network", "missing"),
+				Arrays.asList("battery", "level"),
+				Arrays.asList("devices"));
+
+		Assert.assertEquals(
+			Arrays.asList(
+				"battery",
+				"network:signal",
+				"network:type",
+				"network:missing",
+				"battery:level",
+				"devices"),
+			ObserverQueries.getColumnNames(paths));
+		Assert.assertEquals(
+			Arrays.asList(78.0, -57.0, null, null, null, null),
+			ObserverQueries.getValues(JSON_MAPPER.readTree(DATA), paths));
+	}
+
+	/**
+	 * Tests that a bucket counts every point but only summarizes the values
+	 * that are present.
+	 */
+	@Test
+	public void testBucketStatistics() {
+		DataStreamBucket bucket =
+			new DataStreamBucket(0, Arrays.asList("a", "b"));
+		bucket.add(Arrays.<Double>asList(3.0, null));
+		bucket.add(Arrays.<Double>asList(-1.0, null));
+		bucket.add(Arrays.<Double>asList(4.0, 7.0));
+		bucket.add(Arrays.<Double>asList(null, null));
+
+		Assert.assertEquals(4, bucket.getCount());
+
+		Statistics a = bucket.getColumns().get("a");
+		Assert.assertEquals(3, a.getCount());
+		Assert.assertEquals(-1.0, a.getMin(), 0);
+		Assert.assertEquals(4.0, a.getMax(), 0);
+		Assert.assertEquals(2.0, a.getMean(), 0);
+		Assert.assertEquals(3.0, a.getFirst(), 0);
+		Assert.assertEquals(4.0, a.getLast(), 0);
+
+		Statistics b = bucket.getColumns().get("b");
+		Assert.assertEquals(1, b.getCount());
+		Assert.assertEquals(7.0, b.getFirst(), 0);
+		Assert.assertEquals(7.0, b.getLast(), 0);
+	}
+
+	/**
+	 * Tests that reading the summaries where they can be used, and the raw
+	 * points for the remainder, results in the same buckets as reading only
+	 * the raw points, for origins and bucket sizes that can use the daily,
+	 * the hourly, or none of the summaries.
+	 */
+	@Test
+	public void testRollupsMatchRaw() throws IOException, SQLException {
+		List<String> names = Arrays.asList("v", "w");
+
+		// Points over a few days, with gaps and missing values.
+		Random random = new Random(42);
+		List<long[]> times = new ArrayList<long[]>();
+		List<List<Double>> values = new ArrayList<List<Double>>();
+		long time = 10 * DAY;
+		for(int i = 0; i < 2000; i++) {
+			time += (random.nextInt(8) == 0) ? HOUR : random.nextInt(4 * 60000);
+			times.add(new long[] { time });
+			values.add(
+				Arrays.asList(
+					(random.nextInt(10) == 0) ?
+						null :
+						Double.valueOf(random.nextInt(1000) - 500),
+					((i % 3) == 0) ? Double.valueOf(random.nextDouble()) : null));
+		}
+		long last = time;
+
+		// Summarize each hour that has points, and each day from its hours,
+		// and store and read them back as the summaries are.
+		List<DataStreamBucket> hours = new ArrayList<DataStreamBucket>();
+		for(int i = 0; i < times.size(); i++) {
+			long start = ObserverQueries.truncate(times.get(i)[0], HOUR);
+			ObserverQueries
+				.getBucket(hours, start, 0, HOUR, names)
+				.add(values.get(i));
+		}
+		List<DataStreamBucket> days = new ArrayList<DataStreamBucket>();
+		for(DataStreamBucket hour : hours) {
+			ObserverQueries
+				.getBucket(days, hour.getStart(), 0, DAY, names)
+				.merge(hour);
+		}
+		hours = storeSummaries(hours, names);
+		days = storeSummaries(days, names);
+
+		long[] origins =
+			new long[] {
+				10 * DAY,
+				(11 * DAY) + (5 * HOUR),
+				(10 * DAY) + 1234
+			};
+		long[] bucketSizes =
+			new long[] { 15 * 60000, HOUR, 3 * HOUR, DAY, 2 * DAY };
+		for(long origin : origins) {
+			for(long bucketSize : bucketSizes) {
+				for(long end : new long[] { last, (12 * DAY) - 1 }) {
+					String message =
+						"origin " + origin +
+						", bucket size " + bucketSize +
+						", end " + end;
+
+					List<DataStreamBucket> expected =
+						new ArrayList<DataStreamBucket>();
+					addPoints(
+						expected, times, values, origin, end + 1,
+						origin, bucketSize, names);
+
+					long[] ends =
+						ObserverQueries.getRollupEnds(origin, end, bucketSize);
+					List<DataStreamBucket> actual =
+						new ArrayList<DataStreamBucket>();
+					addSummaries(
+						actual, days, origin, ends[0],
+						origin, bucketSize, names);
+					addSummaries(
+						actual, hours, ends[0], ends[1],
+						origin, bucketSize, names);
+					addPoints(
+						actual, times, values, ends[1], end + 1,
+						origin, bucketSize, names);
+
+					assertBuckets(message, expected, actual);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the data from its JSON text.
+	 */
+	private static JsonNode readJson(
+			final ColumnNode<String> columns)
+			throws IOException {
+
+		return read(JSON_MAPPER.getJsonFactory().createJsonParser(DATA), columns);
+	}
+
+	/**
+	 * Reads the data from its binary encoding, as it is stored.
+	 */
+	private static JsonNode readSmile(
+			final ColumnNode<String> columns)
+			throws IOException {
+
+		byte[] smile = SMILE_MAPPER.writeValueAsBytes(JSON_MAPPER.readTree(DATA));
+		return
+			read(
+				SMILE_MAPPER.getJsonFactory().createJsonParser(smile),
+				columns);
+	}
+
+	/**
+	 * Reads the data as the queries do.
+	 */
+	private static JsonNode read(
+			final JsonParser parser,
+			final ColumnNode<String> columns)
+			throws IOException {
+
+		try {
+			parser.nextToken();
+			return ObserverQueries.readColumns(parser, columns);
+		}
+		finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * Asserts the ends of the daily and hourly summaries of an aggregate.
+	 */
+	private static void assertRollupEnds(
+			final long dayEnd,
+			final long hourEnd,
+			final long origin,
+			final long end,
+			final long bucketSize) {
+
+		long[] ends = ObserverQueries.getRollupEnds(origin, end, bucketSize);
+		Assert.assertEquals("The end of the days", dayEnd, ends[0]);
+		Assert.assertEquals("The end of the hours", hourEnd, ends[1]);
+	}
+
+	/**
+	 * Stores the summaries as they are in the database and reads them back.
+	 */
+	private static List<DataStreamBucket> storeSummaries(
+			final List<DataStreamBucket> summaries,
+			final List<String> names)
+			throws IOException, SQLException {
+
+		List<DataStreamBucket> result =
+			new ArrayList<DataStreamBucket>(summaries.size());
+		for(DataStreamBucket summary : summaries) {
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			JsonGenerator generator =
+				SMILE_MAPPER.getJsonFactory().createJsonGenerator(data);
+			summary.writeSummary(generator);
+			generator.close();
+
+			result.add(
+				new DataStreamBucket(
+					summary.getStart(),
+					summary.getCount(),
+					names,
+					ObserverQueries.decodeSummary(data.toByteArray())));
+		}
+		return result;
+	}
+
+	/**
+	 * Adds the points in a range to the buckets, as the raw points are read.
+	 */
+	private static void addPoints(
+			final List<DataStreamBucket> buckets,
+			final List<long[]> times,
+			final List<List<Double>> values,
+			final long start,
+			final long end,
+			final long origin,
+			final long bucketSize,
+			final List<String> names) {
+
+		for(int i = 0; i < times.size(); i++) {
+			long time = times.get(i)[0];
+			if((time >= start) && (time < end)) {
+				ObserverQueries
+					.getBucket(buckets, time, origin, bucketSize, names)
+					.add(values.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Merges the summaries that begin in a range into the buckets, as the
+	 * summaries are read.
+	 */
+	private static void addSummaries(
+			final List<DataStreamBucket> buckets,
+			final List<DataStreamBucket> summaries,
+			final long start,
+			final long end,
+			final long origin,
+			final long bucketSize,
+			final List<String> names) {
+
+		for(DataStreamBucket summary : summaries) {
+			if((summary.getStart() >= start) && (summary.getStart() < end)) {
+				ObserverQueries
+					.getBucket(
+						buckets,
+						summary.getStart(),
+						origin,
+						bucketSize,
+						names)
+					.merge(summary);
+			}
+		}
+	}
+
+	/**
+	 * Asserts that two lists of buckets have the same statistics. The means
+	 * may differ slightly as the values were summed in a different order.
+	 */
+	private static void assertBuckets(
+			final String message,
+			final List<DataStreamBucket> expected,
+			final List<DataStreamBucket> actual) {
+
+		Assert.assertEquals(message, expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++) {
+			DataStreamBucket expectedBucket = expected.get(i);
+			DataStreamBucket actualBucket = actual.get(i);
+			String bucketMessage =
+				message + ", bucket " + expectedBucket.getStart();
+
+			Assert.assertEquals(
+				bucketMessage,
+				expectedBucket.getStart(),
+				actualBucket.getStart());
+			Assert.assertEquals(
+				bucketMessage,
+				expectedBucket.getCount(),
+				actualBucket.getCount());
+
+			for(String name : expectedBucket.getColumns().keySet()) {
+				Statistics e = expectedBucket.getColumns().get(name);
+				Statistics a = actualBucket.getColumns().get(name);
+				String columnMessage = bucketMessage + ", column " + name;
+
+				Assert.assertEquals(columnMessage, e.getCount(), a.getCount());
+				if(e.getCount() > 0) {
+					Assert.assertEquals(columnMessage, e.getMin(), a.getMin(), 0);
+					Assert.assertEquals(columnMessage, e.getMax(), a.getMax(), 0);
+					Assert.assertEquals(
+						columnMessage,
+						e.getMean(),
+						a.getMean(),
+						1e-9);
+					Assert.assertEquals(
+						columnMessage,
+						e.getFirst(),
+						a.getFirst(),
+						0);
+					Assert.assertEquals(
+						columnMessage,
+						e.getLast(),
+						a.getLast(),
+						0);
+				}
+			}
+		}
+	}
+}
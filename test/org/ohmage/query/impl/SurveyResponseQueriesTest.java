@@ -0,0 +1,229 @@
+package org.ohmage.query.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ohmage.util.StringUtils;
+
+/**
+ * Tests the prompt response token search.
+ */
+public class SurveyResponseQueriesTest extends TestCase {
+	private static final String LONG_WORD;
+	static {
+		StringBuilder builder = new StringBuilder();
+		for(int i = 0; i < StringUtils.MAX_WORD_TOKEN_LENGTH + 10; i++) {
+			builder.append((char) ('a' + (i % 26)));
+		}
+		LONG_WORD = builder.toString();
+	}
+
+	private static final List<String> RESPONSES =
+		Arrays.asList(
+			"The big dog barked.",
+			"A BIG DOGHOUSE",
+			"bigdog",
+			"Big-dog; small cat",
+			"My password is secret",
+			"pass word",
+			"ambiguous dog",
+			"the big  dog",
+			"x " + LONG_WORD + " y",
+			"x " + LONG_WORD + "z y",
+			"cat big dog cat",
+			"",
+			"12 34 5678");
+
+	private static final List<String> SEARCH_TOKENS =
+		Arrays.asList(
+			"dog",
+			"big dog",
+			"ig dog",
+			"big do",
+			"Big-Dog",
+			"word",
+			"pass word",
+			"s word",
+			"x " + LONG_WORD,
+			LONG_WORD + "z y",
+			"big dog cat",
+			"  dog",
+			"34 56",
+			"-");
+
+	/**
+	 * Tests that a word at the start of a search token is not a prefix, as it
+	 * may be the end of a longer word.
+	 */
+	@Test
+	public void testGetTokenPrefixesLeadingWord() {
+		Assert.assertEquals(
+			Collections.emptySet(),
+			SurveyResponseQueries.getTokenPrefixes("dog"));
+		Assert.assertEquals(
+			Collections.emptySet(),
+			SurveyResponseQueries.getTokenPrefixes("---"));
+		Assert.assertEquals(
+			Collections.singleton("dog"),
+			SurveyResponseQueries.getTokenPrefixes("big DOG"));
+		Assert.assertEquals(
+			Collections.singleton("dog"),
+			SurveyResponseQueries.getTokenPrefixes(" dog"));
+		Assert.assertEquals(
+			new HashSet<String>(Arrays.asList("dog", "cat")),
+			SurveyResponseQueries.getTokenPrefixes("big dog, cat"));
+	}
+
+	/**
+	 * Tests that a long word is truncated the same way as the words that are
+	 * indexed.
+	 */
+	@Test
+	public void testGetTokenPrefixesTruncated() {
+		Set<String> prefixes =
+			SurveyResponseQueries.getTokenPrefixes("x " + LONG_WORD);
+		Assert.assertEquals(1, prefixes.size());
+		Assert.assertEquals(
+			LONG_WORD.substring(0, StringUtils.MAX_WORD_TOKEN_LENGTH),
+			prefixes.iterator().next());
+	}
+
+	/**
+	 * Tests that the sub-query only uses prefix patterns, that the longest
+	 * prefix drives it regardless of the order the prefixes were given, and
+	 * that it is limited to the campaign.
+	 */
+	@Test
+	public void testBuildTokenIntersectionSql() {
+		List<Object> parameters = new ArrayList<Object>();
+		String sql =
+			SurveyResponseQueries.buildTokenIntersectionSql(
+				"urn:campaign:test",
+				new LinkedHashSet<String>(Arrays.asList("ab", "abcd", "abc")),
+				parameters);
+
+		Assert.assertEquals(
+			Arrays.<Object>asList("abc%", "ab%", "abcd%", "urn:campaign:test"),
+			parameters);
+		Assert.assertTrue(sql.contains("WHERE prt0.token LIKE ?"));
+		Assert.assertTrue(sql.contains("prt_sr.campaign_id"));
+		for(Object parameter : parameters) {
+			Assert.assertFalse(((String) parameter).startsWith("%"));
+		}
+
+		List<Object> reversed = new ArrayList<Object>();
+		Assert.assertEquals(
+			sql,
+			SurveyResponseQueries.buildTokenIntersectionSql(
+				"urn:campaign:test",
+				new LinkedHashSet<String>(Arrays.asList("abc", "abcd", "ab")),
+				reversed));
+		Assert.assertEquals(parameters, reversed);
+	}
+
+	/**
+	 * Tests that limiting the responses to those whose tokens match the
+	 * prefixes before the LIKE returns the same responses as the LIKE alone.
+	 */
+	@Test
+	public void testIndexedSearchMatchesLike() {
+		for(String searchToken : SEARCH_TOKENS) {
+			Set<String> searchTokens = Collections.singleton(searchToken);
+			Assert.assertEquals(
+				"The indexed search differs for: " + searchToken,
+				searchLike(searchTokens),
+				searchIndexed(searchTokens));
+		}
+
+		// Multiple search tokens must all match.
+		for(String first : SEARCH_TOKENS) {
+			for(String second : SEARCH_TOKENS) {
+				Set<String> searchTokens =
+					new HashSet<String>(Arrays.asList(first, second));
+				Assert.assertEquals(
+					"The indexed search differs for: " + searchTokens,
+					searchLike(searchTokens),
+					searchIndexed(searchTokens));
+			}
+		}
+	}
+
+	/**
+	 * Returns the responses that match the search tokens as the LIKE does,
+	 * ignoring case.
+	 */
+	private static Set<String> searchLike(final Set<String> searchTokens) {
+		Set<String> result = new HashSet<String>();
+		for(String response : RESPONSES) {
+			if(like(response, searchTokens)) {
+				result.add(response);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the responses that match the search tokens when they are first
+	 * limited to those with a token that begins with each prefix, as the
+	 * token index's sub-query does.
+	 */
+	private static Set<String> searchIndexed(final Set<String> searchTokens) {
+		Set<String> prefixes = new HashSet<String>();
+		for(String searchToken : searchTokens) {
+			prefixes.addAll(SurveyResponseQueries.getTokenPrefixes(searchToken));
+		}
+
+		Set<String> result = new HashSet<String>();
+		for(String response : RESPONSES) {
+			Set<String> tokens = StringUtils.tokenizeWords(response);
+
+			boolean candidate = true;
+			for(String prefix : prefixes) {
+				boolean found = false;
+				for(String token : tokens) {
+					if(token.startsWith(prefix)) {
+						found = true;
+						break;
+					}
+				}
+				if(! found) {
+					candidate = false;
+					break;
+				}
+			}
+
+			if(candidate && like(response, searchTokens)) {
+				result.add(response);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns whether a response contains every search token, ignoring case.
+	 */
+	private static boolean like(
+			final String response,
+			final Set<String> searchTokens) {
+
+		String lowerResponse = response.toLowerCase(Locale.ENGLISH);
+		for(String searchToken : searchTokens) {
+			if(! lowerResponse.contains(
+					searchToken.toLowerCase(Locale.ENGLISH))) {
+
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,140 @@
+package org.ohmage.request.export;
+
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the parsing of the byte ranges of an export download.
+ */
+public class ExportJobDownloadRequestTest extends TestCase {
+	private static final long LENGTH = 1000;
+
+	/**
+	 * Tests a range with both a first and last byte, including one that ends
+	 * past the end of the file.
+	 */
+	@Test
+	public void testParseRange() {
+		assertRange(0, 0, "bytes=0-0");
+		assertRange(100, 199, "bytes=100-199");
+		assertRange(100, 199, " bytes=100-199 ");
+		assertRange(900, 999, "bytes=900-5000");
+		assertRange(999, 999, "bytes=999-999");
+	}
+
+	/**
+	 * Tests a range that is open-ended, as used to resume a download.
+	 */
+	@Test
+	public void testParseRangeOpenEnded() {
+		assertRange(0, 999, "bytes=0-");
+		assertRange(500, 999, "bytes=500-");
+		assertRange(999, 999, "bytes=999-");
+	}
+
+	/**
+	 * Tests a suffix range, including one that is longer than the file.
+	 */
+	@Test
+	public void testParseRangeSuffix() {
+		assertRange(500, 999, "bytes=-500");
+		assertRange(999, 999, "bytes=-1");
+		assertRange(0, 999, "bytes=-5000");
+	}
+
+	/**
+	 * Tests that a range that is well-formed but names no bytes in the file
+	 * cannot be satisfied.
+	 */
+	@Test
+	public void testParseRangeUnsatisfiable() {
+		Assert.assertNull(
+			ExportJobDownloadRequest.parseRange("bytes=1000-", LENGTH));
+		Assert.assertNull(
+			ExportJobDownloadRequest.parseRange("bytes=1000-2000", LENGTH));
+		Assert.assertNull(
+			ExportJobDownloadRequest.parseRange("bytes=-0", LENGTH));
+		Assert.assertNull(
+			ExportJobDownloadRequest.parseRange("bytes=0-", 0));
+		Assert.assertNull(
+			ExportJobDownloadRequest.parseRange("bytes=-10", 0));
+	}
+
+	/**
+	 * Tests that a range that is malformed, uses another unit, or names
+	 * multiple ranges is ignored.
+	 */
+	@Test
+	public void testParseRangeIgnored() {
+		String[] ranges =
+			new String[] {
+				"",
+				"bytes",
+				"bytes=",
+				"bytes=-",
+				"bytes=100",
+				"bytes=abc-",
+				"bytes=+5-",
+				"bytes=5--3",
+				"bytes=-+5",
+				"bytes=200-100",
+				"bytes=0-99,200-299",
+				"bytes=99999999999999999999-",
+				"items=0-10"
+			};
+		for(String range : ranges) {
+			long[] bounds = ExportJobDownloadRequest.parseRange(range, LENGTH);
+			Assert.assertNotNull("The range was unsatisfiable: " + range, bounds);
+			Assert.assertEquals("The range was used: " + range, 0, bounds.length);
+		}
+	}
+
+	/**
+	 * Tests that only the file's own entity tag allows a range, so a client
+	 * with a different copy gets the whole file.
+	 */
+	@Test
+	public void testMatchesIfRange() {
+		UUID jobId = UUID.randomUUID();
+		String eTag = ExportJobDownloadRequest.getETag(jobId, LENGTH);
+
+		Assert.assertTrue(ExportJobDownloadRequest.matchesIfRange(null, eTag));
+		Assert.assertTrue(ExportJobDownloadRequest.matchesIfRange(eTag, eTag));
+		Assert.assertTrue(
+			ExportJobDownloadRequest.matchesIfRange(" " + eTag + " ", eTag));
+
+		String[] ifRanges =
+			new String[] {
+				ExportJobDownloadRequest.getETag(jobId, LENGTH + 1),
+				ExportJobDownloadRequest.getETag(UUID.randomUUID(), LENGTH),
+				"W/" + eTag,
+				eTag.substring(1, eTag.length() - 1),
+				"Mon, 19 Oct 2026 01:06:24 GMT",
+				""
+			};
+		for(String ifRange : ifRanges) {
+			Assert.assertFalse(
+				"The validator matched: " + ifRange,
+				ExportJobDownloadRequest.matchesIfRange(ifRange, eTag));
+		}
+	}
+
+	/**
+	 * Asserts that a range names the given bytes of the file.
+	 */
+	private static void assertRange(
+			final long start,
+			final long end,
+			final String range) {
+
+		long[] bounds = ExportJobDownloadRequest.parseRange(range, LENGTH);
+		Assert.assertNotNull("The range was unsatisfiable: " + range, bounds);
+		Assert.assertEquals("The range was ignored: " + range, 2, bounds.length);
+		Assert.assertEquals(range, start, bounds[0]);
+		Assert.assertEquals(range, end, bounds[1]);
+	}
+}
@@ -0,0 +1,66 @@
+package org.ohmage.validator;
+
+import junit.framework.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.test.ParameterSets;
+
+/**
+ * Tests the admin validators.
+ */
+public class AdminValidatorsTest extends TestCase {
+	/**
+	 * Tests the reset validator.
+	 */
+	@Test
+	public void testValidateReset() {
+		try {
+			for(String emptyValue : ParameterSets.getEmptyValues()) {
+				Assert.assertFalse(AdminValidators.validateReset(emptyValue));
+			}
+			
+			try {
+				AdminValidators.validateReset("Invalid value.");
+				fail("The reset value was invalid.");
+			}
+			catch(ValidationException e) {
+				// Passed.
+			}
+			
+			Assert.assertTrue(AdminValidators.validateReset("true"));
+			Assert.assertFalse(AdminValidators.validateReset("false"));
+		}
+		catch(ValidationException e) {
+			fail("A validation exception was thrown: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Tests the invalidate validator.
+	 */
+	@Test
+	public void testValidateInvalidate() {
+		try {
+			for(String emptyValue : ParameterSets.getEmptyValues()) {
+				Assert.assertFalse(
+					AdminValidators.validateInvalidate(emptyValue));
+			}
+			
+			try {
+				AdminValidators.validateInvalidate("Invalid value.");
+				fail("The invalidate value was invalid.");
+			}
+			catch(ValidationException e) {
+				// Passed.
+			}
+			
+			Assert.assertTrue(AdminValidators.validateInvalidate("true"));
+			Assert.assertFalse(AdminValidators.validateInvalidate("false"));
+		}
+		catch(ValidationException e) {
+			fail("A validation exception was thrown: " + e.getMessage());
+		}
+	}
+}
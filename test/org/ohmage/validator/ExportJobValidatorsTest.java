@@ -0,0 +1,73 @@
+package org.ohmage.validator;
+
+import java.util.UUID;
+
+import junit.framework.TestCase;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.ohmage.domain.ExportJob;
+import org.ohmage.exception.ValidationException;
+import org.ohmage.test.ParameterSets;
+
+/**
+ * Tests the export job validators.
+ */
+public class ExportJobValidatorsTest extends TestCase {
+	/**
+	 * Tests the export job ID validator.
+	 */
+	@Test
+	public void testValidateId() {
+		try {
+			for(String emptyValue : ParameterSets.getEmptyValues()) {
+				Assert.assertNull(ExportJobValidators.validateId(emptyValue));
+			}
+			
+			try {
+				ExportJobValidators.validateId("Invalid value.");
+				fail("The export job ID was invalid.");
+			}
+			catch(ValidationException e) {
+				// Passed.
+			}
+			
+			UUID uuid = UUID.randomUUID();
+			Assert.assertEquals(
+				uuid,
+				ExportJobValidators.validateId(uuid.toString()));
+		}
+		catch(ValidationException e) {
+			fail("A validation exception was thrown: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests the export type validator.
+	 */
+	@Test
+	public void testValidateType() {
+		try {
+			for(String emptyValue : ParameterSets.getEmptyValues()) {
+				Assert.assertNull(ExportJobValidators.validateType(emptyValue));
+			}
+			
+			try {
+				ExportJobValidators.validateType("Invalid value.");
+				fail("The export type was invalid.");
+			}
+			catch(ValidationException e) {
+				// Passed.
+			}
+			
+			for(ExportJob.Type type : ExportJob.Type.values()) {
+				Assert.assertEquals(
+					type,
+					ExportJobValidators.validateType(type.toString()));
+			}
+		}
+		catch(ValidationException e) {
+			fail("A validation exception was thrown: " + e.getMessage());
+		}
+	}
+}
@@ -39,6 +39,7 @@ public class ValidatorTests {
 		
 		TestSuite suite = new TestSuite(ValidatorTests.class.getName());
 		
+		suite.addTestSuite(AdminValidatorsTest.class);
 		suite.addTestSuite(AuditValidatorsTest.class);
 		suite.addTestSuite(CampaignClassValidatorsTest.class);
 		suite.addTestSuite(CampaignDocumentValidatorsTest.class);
@@ -47,6 +48,7 @@ public class ValidatorTests {
 		suite.addTestSuite(ClassValidatorsTest.class);
 		//suite.addTestSuite(DateValidatorsTest.class);
 		suite.addTestSuite(DocumentValidatorsTest.class);
+		suite.addTestSuite(ExportJobValidatorsTest.class);
 		suite.addTestSuite(ImageValidatorsTest.class);
 		suite.addTestSuite(MobilityValidatorsTest.class);
 		suite.addTestSuite(SurveyResponseValidatorsTest.class);